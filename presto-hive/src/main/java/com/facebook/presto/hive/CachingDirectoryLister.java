@@ -0,0 +1,197 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.Duration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.weakref.jmx.Managed;
+
+import javax.inject.Inject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Caches the listings of directories below path prefixes that are known to be
+ * immutable, such as partitions of append-only tables that are written once and
+ * never modified. Other directories are always listed from the file system.
+ * <p>
+ * The cache is bounded by the total number of cached file statuses. A listing is
+ * only cached once it has been fully iterated, so an aborted or failed listing is
+ * never served from the cache.
+ */
+public class CachingDirectoryLister
+        implements DirectoryLister
+{
+    private final DirectoryLister delegate;
+    private final List<String> cachedPathPrefixes;
+    private final Cache<Path, List<LocatedFileStatus>> cache;
+
+    @Inject
+    public CachingDirectoryLister(HiveClientConfig hiveClientConfig)
+    {
+        this(new HadoopDirectoryLister(),
+                hiveClientConfig.getFileStatusCachePaths(),
+                hiveClientConfig.getFileStatusCacheMaxSize(),
+                hiveClientConfig.getFileStatusCacheExpireAfterWrite());
+    }
+
+    public CachingDirectoryLister(DirectoryLister delegate, List<String> cachedPathPrefixes, long maxFileStatuses, Duration expireAfterWrite)
+    {
+        this.delegate = checkNotNull(delegate, "delegate is null");
+        checkNotNull(cachedPathPrefixes, "cachedPathPrefixes is null");
+        // prefixes are matched on path boundaries, so the trailing slash is optional
+        ImmutableList.Builder<String> prefixes = ImmutableList.builder();
+        for (String prefix : cachedPathPrefixes) {
+            prefixes.add(CharMatcher.is('/').trimTrailingFrom(prefix));
+        }
+        this.cachedPathPrefixes = prefixes.build();
+        checkNotNull(expireAfterWrite, "expireAfterWrite is null");
+
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxFileStatuses)
+                .weigher((Path path, List<LocatedFileStatus> files) -> files.size())
+                .expireAfterWrite(expireAfterWrite.toMillis(), MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public RemoteIterator<LocatedFileStatus> list(FileSystem fs, Path path)
+            throws IOException
+    {
+        if (!isCacheable(path)) {
+            return delegate.list(fs, path);
+        }
+
+        List<LocatedFileStatus> files = cache.getIfPresent(path);
+        if (files != null) {
+            return new SimpleRemoteIterator(files.iterator());
+        }
+        return new CachingRemoteIterator(delegate.list(fs, path), path);
+    }
+
+    @VisibleForTesting
+    boolean isCacheable(Path path)
+    {
+        String location = path.toString();
+        for (String prefix : cachedPathPrefixes) {
+            // a prefix of /logs must not match a sibling such as /logs_staging
+            if (location.equals(prefix) || (location.startsWith(prefix) && location.charAt(prefix.length()) == '/')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Managed
+    public void flushCache()
+    {
+        cache.invalidateAll();
+    }
+
+    @Managed
+    public long getCachedDirectories()
+    {
+        return cache.size();
+    }
+
+    @Managed
+    public long getHitCount()
+    {
+        return cache.stats().hitCount();
+    }
+
+    @Managed
+    public long getMissCount()
+    {
+        return cache.stats().missCount();
+    }
+
+    @Managed
+    public double getHitRate()
+    {
+        return cache.stats().hitRate();
+    }
+
+    private class CachingRemoteIterator
+            implements RemoteIterator<LocatedFileStatus>
+    {
+        private final RemoteIterator<LocatedFileStatus> iterator;
+        private final Path path;
+        private final List<LocatedFileStatus> files = new ArrayList<>();
+
+        public CachingRemoteIterator(RemoteIterator<LocatedFileStatus> iterator, Path path)
+        {
+            this.iterator = iterator;
+            this.path = path;
+        }
+
+        @Override
+        public boolean hasNext()
+                throws IOException
+        {
+            boolean hasNext = iterator.hasNext();
+            if (!hasNext) {
+                cache.put(path, ImmutableList.copyOf(files));
+            }
+            return hasNext;
+        }
+
+        @Override
+        public LocatedFileStatus next()
+                throws IOException
+        {
+            LocatedFileStatus status = iterator.next();
+            files.add(status);
+            return status;
+        }
+    }
+
+    private static class SimpleRemoteIterator
+            implements RemoteIterator<LocatedFileStatus>
+    {
+        private final Iterator<LocatedFileStatus> iterator;
+
+        public SimpleRemoteIterator(Iterator<LocatedFileStatus> iterator)
+        {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public LocatedFileStatus next()
+        {
+            return iterator.next();
+        }
+    }
+}
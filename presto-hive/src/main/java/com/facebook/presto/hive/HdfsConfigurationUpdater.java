@@ -13,6 +13,8 @@
  */
 package com.facebook.presto.hive;
 
+import com.facebook.presto.hive.cache.CachingFileSystem;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.net.HostAndPort;
 import com.google.common.primitives.Ints;
@@ -27,6 +29,7 @@ import javax.inject.Inject;
 import javax.net.SocketFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -55,6 +58,10 @@ public class HdfsConfigurationUpdater
     private final File s3StagingDirectory;
     private final List<String> resourcePaths;
     private final boolean verifyChecksum;
+    private final boolean localCacheEnabled;
+    private final File localCacheDirectory;
+    private final DataSize localCacheMaxSize;
+    private final DataSize localCachePageSize;
 
     @Inject
     public HdfsConfigurationUpdater(HiveClientConfig hiveClientConfig)
@@ -82,6 +89,10 @@ public class HdfsConfigurationUpdater
         this.s3StagingDirectory = hiveClientConfig.getS3StagingDirectory();
         this.resourcePaths = hiveClientConfig.getResourceConfigFiles();
         this.verifyChecksum = hiveClientConfig.isVerifyChecksum();
+        this.localCacheEnabled = hiveClientConfig.isLocalCacheEnabled();
+        this.localCacheDirectory = hiveClientConfig.getLocalCacheDirectory();
+        this.localCacheMaxSize = hiveClientConfig.getLocalCacheMaxSize();
+        this.localCachePageSize = hiveClientConfig.getLocalCachePageSize();
     }
 
     public boolean verifyChecksum()
@@ -146,6 +157,18 @@ public class HdfsConfigurationUpdater
         config.setInt(PrestoS3FileSystem.S3_MAX_CONNECTIONS, s3MaxConnections);
         config.setLong(PrestoS3FileSystem.S3_MULTIPART_MIN_FILE_SIZE, s3MultipartMinFileSize.toBytes());
         config.setLong(PrestoS3FileSystem.S3_MULTIPART_MIN_PART_SIZE, s3MultipartMinPartSize.toBytes());
+
+        // serve reads of remote storage from local disk
+        if (localCacheEnabled) {
+            for (String scheme : ImmutableList.of("hdfs", "s3", "s3n")) {
+                try {
+                    CachingFileSystem.install(config, scheme, localCacheDirectory, localCacheMaxSize, localCachePageSize);
+                }
+                catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+        }
     }
 
     public static class NoOpDNSToSwitchMapping
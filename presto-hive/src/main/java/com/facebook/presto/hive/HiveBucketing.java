@@ -15,6 +15,7 @@ package com.facebook.presto.hive;
 
 import com.facebook.presto.spi.ConnectorColumnHandle;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import io.airlift.log.Logger;
 import io.airlift.slice.Slice;
 import org.apache.hadoop.hive.metastore.api.Table;
@@ -67,30 +68,17 @@ final class HiveBucketing
 
     public static Optional<HiveBucket> getHiveBucket(Table table, Map<ConnectorColumnHandle, ?> bindings)
     {
-        if (!table.getSd().isSetBucketCols() || table.getSd().getBucketCols().isEmpty() ||
-                !table.getSd().isSetNumBuckets() || (table.getSd().getNumBuckets() <= 0) ||
-                bindings.isEmpty()) {
+        if (bindings.isEmpty()) {
             return Optional.empty();
         }
 
-        List<String> bucketColumns = table.getSd().getBucketCols();
-        Map<String, ObjectInspector> objectInspectors = new HashMap<>();
-
-        // Get column name to object inspector mapping
-        for (StructField field : getTableStructFields(table)) {
-            objectInspectors.put(field.getFieldName(), field.getFieldObjectInspector());
+        Optional<Map<String, ObjectInspector>> bucketColumnInspectors = getBucketColumnInspectors(table);
+        if (!bucketColumnInspectors.isPresent()) {
+            return Optional.empty();
         }
 
-        // Verify the bucket column types are supported
-        for (String column : bucketColumns) {
-            ObjectInspector inspector = objectInspectors.get(column);
-            if ((inspector == null) || (inspector.getCategory() != Category.PRIMITIVE)) {
-                return Optional.empty();
-            }
-            if (!SUPPORTED_TYPES.contains(((PrimitiveObjectInspector) inspector).getPrimitiveCategory())) {
-                return Optional.empty();
-            }
-        }
+        List<String> bucketColumns = table.getSd().getBucketCols();
+        Map<String, ObjectInspector> objectInspectors = bucketColumnInspectors.get();
 
         // Get bindings for bucket columns
         Map<String, Object> bucketBindings = new HashMap<>();
@@ -115,6 +103,39 @@ final class HiveBucketing
         return getHiveBucket(columnBindings.build(), table.getSd().getNumBuckets());
     }
 
+    /**
+     * Returns the object inspectors of the bucket columns of the table, or empty if
+     * the table is not bucketed or the bucket of a row can not be computed.
+     */
+    public static Optional<Map<String, ObjectInspector>> getBucketColumnInspectors(Table table)
+    {
+        if (!table.getSd().isSetBucketCols() || table.getSd().getBucketCols().isEmpty() ||
+                !table.getSd().isSetNumBuckets() || (table.getSd().getNumBuckets() <= 0)) {
+            return Optional.empty();
+        }
+
+        Map<String, ObjectInspector> objectInspectors = new HashMap<>();
+
+        // Get column name to object inspector mapping
+        for (StructField field : getTableStructFields(table)) {
+            objectInspectors.put(field.getFieldName(), field.getFieldObjectInspector());
+        }
+
+        // Verify the bucket column types are supported
+        ImmutableMap.Builder<String, ObjectInspector> bucketColumnInspectors = ImmutableMap.builder();
+        for (String column : table.getSd().getBucketCols()) {
+            ObjectInspector inspector = objectInspectors.get(column);
+            if ((inspector == null) || (inspector.getCategory() != Category.PRIMITIVE)) {
+                return Optional.empty();
+            }
+            if (!SUPPORTED_TYPES.contains(((PrimitiveObjectInspector) inspector).getPrimitiveCategory())) {
+                return Optional.empty();
+            }
+            bucketColumnInspectors.put(column, inspector);
+        }
+        return Optional.of(bucketColumnInspectors.build());
+    }
+
     public static Optional<HiveBucket> getHiveBucket(List<Entry<ObjectInspector, Object>> columnBindings, int bucketCount)
     {
         try {
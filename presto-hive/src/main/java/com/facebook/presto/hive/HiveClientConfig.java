@@ -16,11 +16,13 @@ package com.facebook.presto.hive;
 import com.google.common.base.Splitter;
 import com.google.common.base.StandardSystemProperty;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.net.HostAndPort;
 import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
+import io.airlift.units.MaxDataSize;
 import io.airlift.units.MinDataSize;
 import io.airlift.units.MinDuration;
 
@@ -29,14 +31,17 @@ import javax.validation.constraints.NotNull;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
+import static io.airlift.units.DataSize.Unit.GIGABYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 
 public class HiveClientConfig
 {
     private static final Splitter SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+    private static final Splitter.MapSplitter MAP_SPLITTER = SPLITTER.withKeyValueSeparator(Splitter.on('=').trimResults());
 
     private TimeZone timeZone = TimeZone.getDefault();
 
@@ -49,6 +54,7 @@ public class HiveClientConfig
     private int maxInitialSplits = 200;
     private DataSize maxInitialSplitSize;
     private boolean forceLocalScheduling;
+    private boolean bucketExecutionEnabled;
     private boolean allowDropTable;
     private boolean allowRenameTable;
 
@@ -57,6 +63,10 @@ public class HiveClientConfig
     private Duration metastoreCacheTtl = new Duration(1, TimeUnit.HOURS);
     private Duration metastoreRefreshInterval = new Duration(2, TimeUnit.MINUTES);
     private int maxMetastoreRefreshThreads = 100;
+    private File metastoreCacheSnapshotFile;
+    private Duration metastoreCacheSnapshotInterval = new Duration(10, TimeUnit.MINUTES);
+    private boolean metastoreCacheBackgroundRefreshEnabled;
+    private Map<String, Duration> metastoreCacheSchemaRefreshIntervals = ImmutableMap.of();
     private HostAndPort metastoreSocksProxy;
     private Duration metastoreTimeout = new Duration(10, TimeUnit.SECONDS);
 
@@ -81,17 +91,37 @@ public class HiveClientConfig
     private DataSize s3MultipartMinFileSize = new DataSize(16, MEGABYTE);
     private DataSize s3MultipartMinPartSize = new DataSize(5, MEGABYTE);
 
+    private boolean localCacheEnabled;
+    private File localCacheDirectory = new File(StandardSystemProperty.JAVA_IO_TMPDIR.value(), "presto-hive-cache");
+    private DataSize localCacheMaxSize = new DataSize(10, GIGABYTE);
+    private DataSize localCachePageSize = new DataSize(1, MEGABYTE);
+    private boolean localCacheAffinitySchedulingEnabled = true;
+
     private HiveStorageFormat hiveStorageFormat = HiveStorageFormat.RCBINARY;
 
     private List<String> resourceConfigFiles;
 
+    private List<String> fileStatusCachePaths = ImmutableList.of();
+    private long fileStatusCacheMaxSize = 1_000_000;
+    private Duration fileStatusCacheExpireAfterWrite = new Duration(1, TimeUnit.HOURS);
+
     private boolean optimizedReaderEnabled = true;
 
     private boolean assumeCanonicalPartitionKeys;
+    private boolean metastorePartitionFilterEnabled = true;
+    private boolean metastorePartitionRangeFilterEnabled;
 
     private DataSize orcMaxMergeDistance = new DataSize(1, MEGABYTE);
     private DataSize orcMaxBufferSize = new DataSize(8, MEGABYTE);
     private DataSize orcStreamBufferSize = new DataSize(8, MEGABYTE);
+    private DataSize orcMetadataCacheSize = new DataSize(32, MEGABYTE);
+    private DataSize orcMaxPrefetchSize = new DataSize(0, MEGABYTE);
+
+    private boolean optimizedWriterEnabled = true;
+    private int writerFilesPerTask = 1;
+    private DataSize targetFileSize = new DataSize(1, GIGABYTE);
+
+    private boolean parquetOptimizedReaderEnabled;
 
     public int getMaxInitialSplits()
     {
@@ -132,6 +162,19 @@ public class HiveClientConfig
         return this;
     }
 
+    public boolean isBucketExecutionEnabled()
+    {
+        return bucketExecutionEnabled;
+    }
+
+    @Config("hive.bucket-execution.enabled")
+    @ConfigDescription("Expose the bucketing of tables to the engine, which requires every partition to contain one file per bucket")
+    public HiveClientConfig setBucketExecutionEnabled(boolean bucketExecutionEnabled)
+    {
+        this.bucketExecutionEnabled = bucketExecutionEnabled;
+        return this;
+    }
+
     @NotNull
     public TimeZone getTimeZone()
     {
@@ -283,6 +326,72 @@ public class HiveClientConfig
         return this;
     }
 
+    public File getMetastoreCacheSnapshotFile()
+    {
+        return metastoreCacheSnapshotFile;
+    }
+
+    @Config("hive.metastore-cache.snapshot-file")
+    @ConfigDescription("File used to persist the metastore cache across restarts (persistence is disabled if not set)")
+    public HiveClientConfig setMetastoreCacheSnapshotFile(File metastoreCacheSnapshotFile)
+    {
+        this.metastoreCacheSnapshotFile = metastoreCacheSnapshotFile;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1s")
+    public Duration getMetastoreCacheSnapshotInterval()
+    {
+        return metastoreCacheSnapshotInterval;
+    }
+
+    @Config("hive.metastore-cache.snapshot-interval")
+    public HiveClientConfig setMetastoreCacheSnapshotInterval(Duration metastoreCacheSnapshotInterval)
+    {
+        this.metastoreCacheSnapshotInterval = metastoreCacheSnapshotInterval;
+        return this;
+    }
+
+    public boolean isMetastoreCacheBackgroundRefreshEnabled()
+    {
+        return metastoreCacheBackgroundRefreshEnabled;
+    }
+
+    @Config("hive.metastore-cache.background-refresh.enabled")
+    @ConfigDescription("Refresh cached tables and partition lists in the background, fetching only partitions added since the last refresh")
+    public HiveClientConfig setMetastoreCacheBackgroundRefreshEnabled(boolean metastoreCacheBackgroundRefreshEnabled)
+    {
+        this.metastoreCacheBackgroundRefreshEnabled = metastoreCacheBackgroundRefreshEnabled;
+        return this;
+    }
+
+    @NotNull
+    public Map<String, Duration> getMetastoreCacheSchemaRefreshIntervals()
+    {
+        return metastoreCacheSchemaRefreshIntervals;
+    }
+
+    @Config("hive.metastore-cache.schema-refresh-intervals")
+    @ConfigDescription("Background refresh interval for individual schemas, e.g. web=1m,logs=30m; other schemas use hive.metastore-refresh-interval")
+    public HiveClientConfig setMetastoreCacheSchemaRefreshIntervals(String intervals)
+    {
+        ImmutableMap.Builder<String, Duration> builder = ImmutableMap.builder();
+        if (intervals != null) {
+            for (Map.Entry<String, String> entry : MAP_SPLITTER.split(intervals).entrySet()) {
+                builder.put(entry.getKey(), Duration.valueOf(entry.getValue()));
+            }
+        }
+        this.metastoreCacheSchemaRefreshIntervals = builder.build();
+        return this;
+    }
+
+    public HiveClientConfig setMetastoreCacheSchemaRefreshIntervals(Map<String, Duration> intervals)
+    {
+        this.metastoreCacheSchemaRefreshIntervals = ImmutableMap.copyOf(intervals);
+        return this;
+    }
+
     public HostAndPort getMetastoreSocksProxy()
     {
         return metastoreSocksProxy;
@@ -352,6 +461,53 @@ public class HiveClientConfig
         return this;
     }
 
+    @NotNull
+    public List<String> getFileStatusCachePaths()
+    {
+        return fileStatusCachePaths;
+    }
+
+    @Config("hive.file-status-cache.paths")
+    @ConfigDescription("Comma separated list of path prefixes whose directory listings never change and may be cached, e.g. hdfs://warehouse/logs/")
+    public HiveClientConfig setFileStatusCachePaths(String paths)
+    {
+        this.fileStatusCachePaths = (paths == null) ? ImmutableList.of() : SPLITTER.splitToList(paths);
+        return this;
+    }
+
+    public HiveClientConfig setFileStatusCachePaths(List<String> paths)
+    {
+        this.fileStatusCachePaths = ImmutableList.copyOf(paths);
+        return this;
+    }
+
+    @Min(0)
+    public long getFileStatusCacheMaxSize()
+    {
+        return fileStatusCacheMaxSize;
+    }
+
+    @Config("hive.file-status-cache.max-size")
+    @ConfigDescription("Maximum number of file statuses held in the directory listing cache")
+    public HiveClientConfig setFileStatusCacheMaxSize(long fileStatusCacheMaxSize)
+    {
+        this.fileStatusCacheMaxSize = fileStatusCacheMaxSize;
+        return this;
+    }
+
+    @NotNull
+    public Duration getFileStatusCacheExpireAfterWrite()
+    {
+        return fileStatusCacheExpireAfterWrite;
+    }
+
+    @Config("hive.file-status-cache.expire-after-write")
+    public HiveClientConfig setFileStatusCacheExpireAfterWrite(Duration fileStatusCacheExpireAfterWrite)
+    {
+        this.fileStatusCacheExpireAfterWrite = fileStatusCacheExpireAfterWrite;
+        return this;
+    }
+
     @NotNull
     @MinDuration("1ms")
     public Duration getDfsTimeout()
@@ -604,6 +760,76 @@ public class HiveClientConfig
         return this;
     }
 
+    public boolean isLocalCacheEnabled()
+    {
+        return localCacheEnabled;
+    }
+
+    @Config("hive.local-cache.enabled")
+    @ConfigDescription("Cache pages of remote HDFS and S3 files on local disk")
+    public HiveClientConfig setLocalCacheEnabled(boolean localCacheEnabled)
+    {
+        this.localCacheEnabled = localCacheEnabled;
+        return this;
+    }
+
+    @NotNull
+    public File getLocalCacheDirectory()
+    {
+        return localCacheDirectory;
+    }
+
+    @Config("hive.local-cache.directory")
+    @ConfigDescription("Directory for the local file cache, the pages cached by a previous run are deleted on startup")
+    public HiveClientConfig setLocalCacheDirectory(File localCacheDirectory)
+    {
+        this.localCacheDirectory = localCacheDirectory;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getLocalCacheMaxSize()
+    {
+        return localCacheMaxSize;
+    }
+
+    @Config("hive.local-cache.max-size")
+    @ConfigDescription("Maximum disk space used by the local file cache")
+    public HiveClientConfig setLocalCacheMaxSize(DataSize localCacheMaxSize)
+    {
+        this.localCacheMaxSize = localCacheMaxSize;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("4kB")
+    @MaxDataSize("64MB")
+    public DataSize getLocalCachePageSize()
+    {
+        return localCachePageSize;
+    }
+
+    @Config("hive.local-cache.page-size")
+    @ConfigDescription("Size of the file pages stored in the local file cache")
+    public HiveClientConfig setLocalCachePageSize(DataSize localCachePageSize)
+    {
+        this.localCachePageSize = localCachePageSize;
+        return this;
+    }
+
+    public boolean isLocalCacheAffinitySchedulingEnabled()
+    {
+        return localCacheAffinitySchedulingEnabled;
+    }
+
+    @Config("hive.local-cache.affinity-scheduling-enabled")
+    @ConfigDescription("Prefer running the splits of a file on the same worker, so the file is read from its local cache")
+    public HiveClientConfig setLocalCacheAffinitySchedulingEnabled(boolean localCacheAffinitySchedulingEnabled)
+    {
+        this.localCacheAffinitySchedulingEnabled = localCacheAffinitySchedulingEnabled;
+        return this;
+    }
+
     @Deprecated
     public boolean isOptimizedReaderEnabled()
     {
@@ -657,6 +883,34 @@ public class HiveClientConfig
         return this;
     }
 
+    @NotNull
+    public DataSize getOrcMetadataCacheSize()
+    {
+        return orcMetadataCacheSize;
+    }
+
+    @Config("hive.orc.metadata-cache-size")
+    @ConfigDescription("Maximum size of the parsed ORC and DWRF file metadata cached across queries (0 to disable)")
+    public HiveClientConfig setOrcMetadataCacheSize(DataSize orcMetadataCacheSize)
+    {
+        this.orcMetadataCacheSize = orcMetadataCacheSize;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getOrcMaxPrefetchSize()
+    {
+        return orcMaxPrefetchSize;
+    }
+
+    @Config("hive.orc.max-prefetch-size")
+    @ConfigDescription("Maximum size of the next ORC or DWRF stripe read in the background while the current stripe is processed (0 to disable). This memory is not counted against the query memory limit")
+    public HiveClientConfig setOrcMaxPrefetchSize(DataSize orcMaxPrefetchSize)
+    {
+        this.orcMaxPrefetchSize = orcMaxPrefetchSize;
+        return this;
+    }
+
     public boolean isAssumeCanonicalPartitionKeys()
     {
         return assumeCanonicalPartitionKeys;
@@ -668,4 +922,84 @@ public class HiveClientConfig
         this.assumeCanonicalPartitionKeys = assumeCanonicalPartitionKeys;
         return this;
     }
+
+    public boolean isMetastorePartitionFilterEnabled()
+    {
+        return metastorePartitionFilterEnabled;
+    }
+
+    @Config("hive.metastore.partition-filter.enabled")
+    @ConfigDescription("Let the metastore filter partitions using predicates on string partition keys instead of listing all partitions")
+    public HiveClientConfig setMetastorePartitionFilterEnabled(boolean metastorePartitionFilterEnabled)
+    {
+        this.metastorePartitionFilterEnabled = metastorePartitionFilterEnabled;
+        return this;
+    }
+
+    public boolean isMetastorePartitionRangeFilterEnabled()
+    {
+        return metastorePartitionRangeFilterEnabled;
+    }
+
+    @Config("hive.metastore.partition-range-filter.enabled")
+    @ConfigDescription("Also push range predicates to the metastore (requires the metastore database to use a binary collation)")
+    public HiveClientConfig setMetastorePartitionRangeFilterEnabled(boolean metastorePartitionRangeFilterEnabled)
+    {
+        this.metastorePartitionRangeFilterEnabled = metastorePartitionRangeFilterEnabled;
+        return this;
+    }
+
+    public boolean isOptimizedWriterEnabled()
+    {
+        return optimizedWriterEnabled;
+    }
+
+    @Config("hive.optimized-writer.enabled")
+    @ConfigDescription("Write ORC and RCFile tables directly from pages instead of through the Hive SerDes")
+    public HiveClientConfig setOptimizedWriterEnabled(boolean optimizedWriterEnabled)
+    {
+        this.optimizedWriterEnabled = optimizedWriterEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getWriterFilesPerTask()
+    {
+        return writerFilesPerTask;
+    }
+
+    @Config("hive.writer-files-per-task")
+    @ConfigDescription("Number of files each writer task writes in parallel")
+    public HiveClientConfig setWriterFilesPerTask(int writerFilesPerTask)
+    {
+        this.writerFilesPerTask = writerFilesPerTask;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getTargetFileSize()
+    {
+        return targetFileSize;
+    }
+
+    @Config("hive.target-file-size")
+    @ConfigDescription("Size at which a writer starts a new file")
+    public HiveClientConfig setTargetFileSize(DataSize targetFileSize)
+    {
+        this.targetFileSize = targetFileSize;
+        return this;
+    }
+
+    public boolean isParquetOptimizedReaderEnabled()
+    {
+        return parquetOptimizedReaderEnabled;
+    }
+
+    @Config("hive.parquet-optimized-reader.enabled")
+    @ConfigDescription("Read Parquet files with the native reader instead of the parquet-mr record reader")
+    public HiveClientConfig setParquetOptimizedReaderEnabled(boolean parquetOptimizedReaderEnabled)
+    {
+        this.parquetOptimizedReaderEnabled = parquetOptimizedReaderEnabled;
+        return this;
+    }
 }
@@ -33,7 +33,9 @@ public enum HiveErrorCode
     HIVE_INVALID_PARTITION_VALUE(0x0100_000A),
     HIVE_TIMEZONE_MISMATCH(0x0100_000B),
     HIVE_INVALID_METADATA(0x0100_000C),
-    HIVE_INVALID_VIEW_DATA(0x0100_000D);
+    HIVE_INVALID_VIEW_DATA(0x0100_000D),
+    HIVE_WRITER_ERROR(0x0100_000E),
+    HIVE_INVALID_BUCKET_FILES(0x0100_000F);
 
     private final ErrorCode errorCode;
 
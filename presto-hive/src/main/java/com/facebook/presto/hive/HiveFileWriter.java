@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.spi.Page;
+
+/**
+ * Writes pages to a single file of a Hive table.
+ */
+public interface HiveFileWriter
+{
+    void appendPage(Page page);
+
+    long getRowCount();
+
+    /**
+     * @return the number of bytes written to the file so far, including data buffered by the writer
+     */
+    long getWrittenBytes();
+
+    /**
+     * Closes the file. After this call, {@link #getWrittenBytes()} is the final size of the file.
+     */
+    void commit();
+
+    /**
+     * Closes and deletes the file.
+     */
+    void rollback();
+}
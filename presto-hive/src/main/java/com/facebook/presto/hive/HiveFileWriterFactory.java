@@ -0,0 +1,70 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.hive.orc.OrcFileWriter;
+import com.facebook.presto.hive.rcfile.RcFileWriter;
+import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.type.Type;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+
+import javax.inject.Inject;
+
+import java.io.IOException;
+import java.util.List;
+
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_WRITER_ERROR;
+import static com.facebook.presto.hive.HiveSessionProperties.isOptimizedWriterEnabled;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Creates the writer for a new file. The native writers encode whole pages and are
+ * used for ORC and RCFile tables of primitive types. Everything else is written
+ * through the Hive SerDe.
+ */
+public class HiveFileWriterFactory
+{
+    private final HdfsEnvironment hdfsEnvironment;
+    private final boolean optimizedWriterEnabled;
+
+    @Inject
+    public HiveFileWriterFactory(HdfsEnvironment hdfsEnvironment, HiveClientConfig config)
+    {
+        this.hdfsEnvironment = checkNotNull(hdfsEnvironment, "hdfsEnvironment is null");
+        this.optimizedWriterEnabled = checkNotNull(config, "config is null").isOptimizedWriterEnabled();
+    }
+
+    public HiveFileWriter createFileWriter(Path path, List<String> columnNames, List<Type> columnTypes, HiveStorageFormat storageFormat, ConnectorSession session)
+    {
+        JobConf conf = new JobConf(hdfsEnvironment.getConfiguration(path));
+
+        if (isOptimizedWriterEnabled(session, optimizedWriterEnabled)) {
+            if (storageFormat == HiveStorageFormat.ORC && OrcFileWriter.isSupported(columnTypes)) {
+                try {
+                    return new OrcFileWriter(hdfsEnvironment.getFileSystem(path), path, columnNames, columnTypes);
+                }
+                catch (IOException e) {
+                    throw new PrestoException(HIVE_WRITER_ERROR, "Failed to get file system for " + path, e);
+                }
+            }
+            if ((storageFormat == HiveStorageFormat.RCBINARY || storageFormat == HiveStorageFormat.RCTEXT) && RcFileWriter.isSupported(columnTypes)) {
+                return new RcFileWriter(path, columnNames, columnTypes, storageFormat, conf);
+            }
+        }
+
+        return new RecordFileWriter(path, columnNames, columnTypes, storageFormat, conf, session);
+    }
+}
@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.hive;
 
+import com.facebook.presto.hive.cache.CachingFileSystem;
 import com.facebook.presto.hive.metastore.HiveMetastore;
 import com.facebook.presto.spi.ColumnMetadata;
 import com.facebook.presto.spi.ConnectorColumnHandle;
@@ -20,6 +21,7 @@ import com.facebook.presto.spi.ConnectorInsertTableHandle;
 import com.facebook.presto.spi.ConnectorMetadata;
 import com.facebook.presto.spi.ConnectorOutputTableHandle;
 import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.ConnectorTableBucketing;
 import com.facebook.presto.spi.ConnectorTableHandle;
 import com.facebook.presto.spi.ConnectorTableMetadata;
 import com.facebook.presto.spi.PrestoException;
@@ -31,20 +33,26 @@ import com.facebook.presto.spi.ViewNotFoundException;
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.spi.type.TypeManager;
 import com.google.common.base.Function;
+import com.google.common.base.Joiner;
 import com.google.common.base.StandardSystemProperty;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import io.airlift.json.JsonCodec;
 import io.airlift.log.Logger;
 import io.airlift.slice.Slice;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.StatsSetupConst;
 import org.apache.hadoop.hive.metastore.TableType;
 import org.apache.hadoop.hive.metastore.api.Database;
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
 import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
+import org.apache.hadoop.hive.metastore.api.Order;
 import org.apache.hadoop.hive.metastore.api.SerDeInfo;
 import org.apache.hadoop.hive.metastore.api.StorageDescriptor;
 import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.joda.time.DateTimeZone;
 
 import javax.inject.Inject;
@@ -53,8 +61,10 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 
+import static com.facebook.presto.hive.HiveBucketing.getBucketColumnInspectors;
 import static com.facebook.presto.hive.HiveColumnHandle.SAMPLE_WEIGHT_COLUMN_NAME;
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_TIMEZONE_MISMATCH;
 import static com.facebook.presto.hive.HiveSessionProperties.getHiveStorageFormat;
@@ -73,6 +83,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.transform;
+import static com.google.common.collect.Maps.uniqueIndex;
 import static java.lang.String.format;
 import static java.util.UUID.randomUUID;
 import static org.apache.hadoop.hive.serde.serdeConstants.STRING_TYPE_NAME;
@@ -86,11 +97,13 @@ public class HiveMetadata
     private final boolean allowDropTable;
     private final boolean allowRenameTable;
     private final boolean allowCorruptWritesForTesting;
+    private final boolean bucketExecutionEnabled;
     private final HiveMetastore metastore;
     private final HdfsEnvironment hdfsEnvironment;
     private final DateTimeZone timeZone;
     private final HiveStorageFormat hiveStorageFormat;
     private final TypeManager typeManager;
+    private final JsonCodec<HiveWrittenFile> writtenFileCodec;
 
     @Inject
     @SuppressWarnings("deprecation")
@@ -100,7 +113,8 @@ public class HiveMetadata
             HiveMetastore metastore,
             HdfsEnvironment hdfsEnvironment,
             @ForHiveClient ExecutorService executorService,
-            TypeManager typeManager)
+            TypeManager typeManager,
+            JsonCodec<HiveWrittenFile> writtenFileCodec)
     {
         this(connectorId,
                 metastore,
@@ -109,8 +123,10 @@ public class HiveMetadata
                 hiveClientConfig.getAllowDropTable(),
                 hiveClientConfig.getAllowRenameTable(),
                 hiveClientConfig.getAllowCorruptWritesForTesting(),
+                hiveClientConfig.isBucketExecutionEnabled(),
                 hiveClientConfig.getHiveStorageFormat(),
-                typeManager);
+                typeManager,
+                writtenFileCodec);
     }
 
     public HiveMetadata(
@@ -121,20 +137,24 @@ public class HiveMetadata
             boolean allowDropTable,
             boolean allowRenameTable,
             boolean allowCorruptWritesForTesting,
+            boolean bucketExecutionEnabled,
             HiveStorageFormat hiveStorageFormat,
-            TypeManager typeManager)
+            TypeManager typeManager,
+            JsonCodec<HiveWrittenFile> writtenFileCodec)
     {
         this.connectorId = checkNotNull(connectorId, "connectorId is null").toString();
 
         this.allowDropTable = allowDropTable;
         this.allowRenameTable = allowRenameTable;
         this.allowCorruptWritesForTesting = allowCorruptWritesForTesting;
+        this.bucketExecutionEnabled = bucketExecutionEnabled;
 
         this.metastore = checkNotNull(metastore, "metastore is null");
         this.hdfsEnvironment = checkNotNull(hdfsEnvironment, "hdfsEnvironment is null");
         this.timeZone = checkNotNull(timeZone, "timeZone is null");
         this.hiveStorageFormat = hiveStorageFormat;
         this.typeManager = checkNotNull(typeManager, "typeManager is null");
+        this.writtenFileCodec = checkNotNull(writtenFileCodec, "writtenFileCodec is null");
 
         if (!allowCorruptWritesForTesting && !timeZone.equals(DateTimeZone.getDefault())) {
             log.warn("Hive writes are disabled. " +
@@ -236,6 +256,66 @@ public class HiveMetadata
         }
     }
 
+    @Override
+    public ConnectorTableBucketing getTableBucketing(ConnectorTableHandle tableHandle)
+    {
+        if (!bucketExecutionEnabled) {
+            return null;
+        }
+
+        SchemaTableName tableName = schemaTableName(tableHandle);
+        try {
+            Table table = metastore.getTable(tableName.getSchemaName(), tableName.getTableName());
+            Optional<Map<String, ObjectInspector>> bucketColumnInspectors = getBucketColumnInspectors(table);
+            if (!bucketColumnInspectors.isPresent()) {
+                return null;
+            }
+
+            Map<String, HiveColumnHandle> columnHandles = uniqueIndex(hiveColumnHandles(typeManager, connectorId, table, true), HiveColumnHandle::getName);
+            ImmutableList.Builder<ConnectorColumnHandle> bucketColumns = ImmutableList.builder();
+            ImmutableList.Builder<String> bucketColumnTypes = ImmutableList.builder();
+            for (String column : table.getSd().getBucketCols()) {
+                bucketColumns.add(columnHandles.get(column));
+                bucketColumnTypes.add(bucketColumnInspectors.get().get(column).getTypeName());
+            }
+
+            // Hive hashes each type differently (e.g. int and bigint), and both map to the same
+            // engine type, so the bucket function is identified by the Hive types of the columns
+            String bucketFunction = "hive:" + Joiner.on(',').join(bucketColumnTypes.build());
+            return new ConnectorTableBucketing(bucketColumns.build(), table.getSd().getNumBuckets(), bucketFunction);
+        }
+        catch (NoSuchObjectException e) {
+            throw new TableNotFoundException(tableName);
+        }
+    }
+
+    @Override
+    public List<ConnectorColumnHandle> getSortedColumns(ConnectorTableHandle tableHandle)
+    {
+        SchemaTableName tableName = schemaTableName(tableHandle);
+        try {
+            Table table = metastore.getTable(tableName.getSchemaName(), tableName.getTableName());
+            // Hive only sorts the files of bucketed tables
+            if (!table.getSd().isSetBucketCols() || table.getSd().getBucketCols().isEmpty() || !table.getSd().isSetSortCols()) {
+                return ImmutableList.of();
+            }
+
+            Map<String, HiveColumnHandle> columnHandles = uniqueIndex(hiveColumnHandles(typeManager, connectorId, table, true), HiveColumnHandle::getName);
+            ImmutableList.Builder<ConnectorColumnHandle> sortedColumns = ImmutableList.builder();
+            for (Order order : table.getSd().getSortCols()) {
+                HiveColumnHandle columnHandle = columnHandles.get(order.getCol());
+                if (columnHandle == null) {
+                    break;
+                }
+                sortedColumns.add(columnHandle);
+            }
+            return sortedColumns.build();
+        }
+        catch (NoSuchObjectException e) {
+            throw new TableNotFoundException(tableName);
+        }
+    }
+
     @Override
     public boolean canCreateSampledTables(ConnectorSession session)
     {
@@ -348,7 +428,7 @@ public class HiveMetadata
         ImmutableList.Builder<Type> columnTypes = ImmutableList.builder();
         for (ColumnMetadata column : tableMetadata.getColumns()) {
             // TODO: also verify that the OutputFormat supports the type
-            if (!HiveRecordSink.isTypeSupported(column.getType())) {
+            if (!RecordFileWriter.isTypeSupported(column.getType())) {
                 throw new PrestoException(NOT_SUPPORTED, format("Cannot create table with unsupported type: %s", column.getType().getDisplayName()));
             }
             columnNames.add(column.getName());
@@ -481,7 +561,24 @@ public class HiveMetadata
         if (sampled) {
             tableComment = "Sampled table created by Presto. Only query this table from Hive if you understand how Presto implements sampling.";
         }
-        table.setParameters(ImmutableMap.of("comment", tableComment));
+
+        // record the basic statistics of the written files, as Hive does after an insert
+        long fileCount = 0;
+        long rowCount = 0;
+        long totalSize = 0;
+        for (Slice fragment : fragments) {
+            HiveWrittenFile writtenFile = writtenFileCodec.fromJson(fragment.getBytes());
+            fileCount++;
+            rowCount += writtenFile.getRowCount();
+            totalSize += writtenFile.getSizeInBytes();
+        }
+
+        table.setParameters(ImmutableMap.<String, String>builder()
+                .put("comment", tableComment)
+                .put(StatsSetupConst.NUM_FILES, String.valueOf(fileCount))
+                .put(StatsSetupConst.ROW_COUNT, String.valueOf(rowCount))
+                .put(StatsSetupConst.TOTAL_SIZE, String.valueOf(totalSize))
+                .build());
         table.setPartitionKeys(ImmutableList.<FieldSchema>of());
         table.setSd(sd);
 
@@ -502,7 +599,11 @@ public class HiveMetadata
     {
         try {
             // skip using temporary directory for S3
-            return !(hdfsEnvironment.getFileSystem(path) instanceof PrestoS3FileSystem);
+            FileSystem fileSystem = hdfsEnvironment.getFileSystem(path);
+            if (fileSystem instanceof CachingFileSystem) {
+                fileSystem = ((CachingFileSystem) fileSystem).getRawFileSystem();
+            }
+            return !(fileSystem instanceof PrestoS3FileSystem);
         }
         catch (IOException e) {
             throw new RuntimeException("Failed checking path: " + path, e);
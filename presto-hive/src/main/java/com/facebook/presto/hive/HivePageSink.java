@@ -0,0 +1,244 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.spi.ConnectorPageSink;
+import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.airlift.json.JsonCodec;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.airlift.units.DataSize;
+import org.apache.hadoop.fs.Path;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static com.facebook.presto.hive.HiveColumnHandle.SAMPLE_WEIGHT_COLUMN_NAME;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.UUID.randomUUID;
+
+/**
+ * Writes pages to one or more files in the temporary directory of the table.
+ * <p>
+ * With more than one file per task, pages are assigned to the files round-robin and
+ * each file is written by a task on the executor, so encoding and compression of the
+ * files happens in parallel. The pages of a single file are written in order.
+ * A file is closed when it reaches the target size, and the next page for that slot
+ * starts a new file. Each committed file is reported as a {@link HiveWrittenFile} fragment.
+ */
+public class HivePageSink
+        implements ConnectorPageSink
+{
+    private final HiveFileWriterFactory fileWriterFactory;
+    private final String temporaryPath;
+    private final List<String> columnNames;
+    private final List<Type> columnTypes;
+    private final HiveStorageFormat storageFormat;
+    private final ConnectorSession session;
+    private final int sampleWeightField;
+    private final long targetFileSize;
+    private final ListeningExecutorService executor;
+    private final JsonCodec<HiveWrittenFile> writtenFileCodec;
+
+    private final List<WriterSlot> slots;
+    private int nextSlot;
+
+    public HivePageSink(
+            HiveFileWriterFactory fileWriterFactory,
+            HiveOutputTableHandle handle,
+            int writerFilesPerTask,
+            DataSize targetFileSize,
+            ListeningExecutorService executor,
+            JsonCodec<HiveWrittenFile> writtenFileCodec)
+    {
+        this.fileWriterFactory = checkNotNull(fileWriterFactory, "fileWriterFactory is null");
+        checkNotNull(handle, "handle is null");
+        this.temporaryPath = handle.getTemporaryPath();
+        this.columnNames = ImmutableList.copyOf(handle.getColumnNames());
+        this.columnTypes = ImmutableList.copyOf(handle.getColumnTypes());
+        this.storageFormat = handle.getHiveStorageFormat();
+        this.session = handle.getConnectorSession();
+        this.sampleWeightField = columnNames.indexOf(SAMPLE_WEIGHT_COLUMN_NAME);
+        checkArgument(writerFilesPerTask > 0, "writerFilesPerTask must be at least 1");
+        this.targetFileSize = checkNotNull(targetFileSize, "targetFileSize is null").toBytes();
+        this.executor = checkNotNull(executor, "executor is null");
+        this.writtenFileCodec = checkNotNull(writtenFileCodec, "writtenFileCodec is null");
+
+        ImmutableList.Builder<WriterSlot> slots = ImmutableList.builder();
+        for (int i = 0; i < writerFilesPerTask; i++) {
+            slots.add(new WriterSlot());
+        }
+        this.slots = slots.build();
+    }
+
+    @Override
+    public void appendPage(Page page, Block sampleWeightBlock)
+    {
+        if (page.getPositionCount() == 0) {
+            return;
+        }
+
+        if (sampleWeightField >= 0) {
+            page = createPageWithSampleWeightBlock(page, sampleWeightBlock);
+        }
+
+        if (slots.size() > 1) {
+            // the page is written by another thread after this call returns,
+            // so lazy blocks must not reference the reader state anymore
+            for (int channel = 0; channel < page.getChannelCount(); channel++) {
+                page.getBlock(channel).assureLoaded();
+            }
+        }
+
+        WriterSlot slot = slots.get(nextSlot);
+        nextSlot = (nextSlot + 1) % slots.size();
+        slot.append(page);
+    }
+
+    @Override
+    public Collection<Slice> commit()
+    {
+        ImmutableList.Builder<Slice> fragments = ImmutableList.builder();
+        for (WriterSlot slot : slots) {
+            for (HiveWrittenFile writtenFile : slot.commit()) {
+                fragments.add(Slices.wrappedBuffer(writtenFileCodec.toJsonBytes(writtenFile)));
+            }
+        }
+        return fragments.build();
+    }
+
+    @Override
+    public void rollback()
+    {
+        RuntimeException failure = null;
+        for (WriterSlot slot : slots) {
+            try {
+                slot.rollback();
+            }
+            catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Page createPageWithSampleWeightBlock(Page page, Block sampleWeightBlock)
+    {
+        checkArgument(page.getPositionCount() == sampleWeightBlock.getPositionCount(), "position count of page and sampleWeightBlock must match");
+        int outputChannelCount = page.getChannelCount() + 1;
+        Block[] blocks = new Block[outputChannelCount];
+        blocks[sampleWeightField] = sampleWeightBlock;
+
+        int pageChannel = 0;
+        for (int channel = 0; channel < outputChannelCount; channel++) {
+            if (channel == sampleWeightField) {
+                continue;
+            }
+            blocks[channel] = page.getBlock(pageChannel);
+            pageChannel++;
+        }
+        return new Page(blocks);
+    }
+
+    private static void waitFor(ListenableFuture<?> future)
+    {
+        try {
+            future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        }
+        catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * A sequence of files written one after another. All writer state is only
+     * accessed by the task writing the previous page, or after that task completed.
+     */
+    private class WriterSlot
+    {
+        private final List<HiveWrittenFile> writtenFiles = new ArrayList<>();
+        private ListenableFuture<?> pendingWrite = immediateFuture(null);
+        private Path path;
+        private HiveFileWriter writer;
+
+        public void append(Page page)
+        {
+            waitFor(pendingWrite);
+            pendingWrite = executor.submit(() -> write(page));
+        }
+
+        public List<HiveWrittenFile> commit()
+        {
+            waitFor(pendingWrite);
+            if (writer != null) {
+                finishFile();
+            }
+            return writtenFiles;
+        }
+
+        public void rollback()
+        {
+            try {
+                waitFor(pendingWrite);
+            }
+            catch (RuntimeException ignored) {
+                // the writer is rolled back below
+            }
+            if (writer != null) {
+                HiveFileWriter writer = this.writer;
+                this.writer = null;
+                writer.rollback();
+            }
+        }
+
+        private void write(Page page)
+        {
+            if (writer == null) {
+                path = new Path(temporaryPath, randomUUID().toString());
+                writer = fileWriterFactory.createFileWriter(path, columnNames, columnTypes, storageFormat, session);
+            }
+            writer.appendPage(page);
+            if (writer.getWrittenBytes() >= targetFileSize) {
+                finishFile();
+            }
+        }
+
+        private void finishFile()
+        {
+            writer.commit();
+            writtenFiles.add(new HiveWrittenFile(path.getName(), writer.getRowCount(), writer.getWrittenBytes()));
+            writer = null;
+            path = null;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.spi.ConnectorInsertTableHandle;
+import com.facebook.presto.spi.ConnectorOutputTableHandle;
+import com.facebook.presto.spi.ConnectorPageSink;
+import com.facebook.presto.spi.ConnectorPageSinkProvider;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.airlift.json.JsonCodec;
+import io.airlift.units.DataSize;
+
+import javax.inject.Inject;
+
+import java.util.concurrent.ExecutorService;
+
+import static com.facebook.presto.hive.util.Types.checkType;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+
+public class HivePageSinkProvider
+        implements ConnectorPageSinkProvider
+{
+    private final HiveFileWriterFactory fileWriterFactory;
+    private final int writerFilesPerTask;
+    private final DataSize targetFileSize;
+    private final ListeningExecutorService executor;
+    private final JsonCodec<HiveWrittenFile> writtenFileCodec;
+
+    @Inject
+    public HivePageSinkProvider(
+            HiveFileWriterFactory fileWriterFactory,
+            HiveClientConfig config,
+            @ForHiveClient ExecutorService executorService,
+            JsonCodec<HiveWrittenFile> writtenFileCodec)
+    {
+        this.fileWriterFactory = checkNotNull(fileWriterFactory, "fileWriterFactory is null");
+        checkNotNull(config, "config is null");
+        this.writerFilesPerTask = config.getWriterFilesPerTask();
+        this.targetFileSize = config.getTargetFileSize();
+        checkNotNull(executorService, "executorService is null");
+        // a single file is written by the driver thread
+        this.executor = (writerFilesPerTask == 1) ? newDirectExecutorService() : listeningDecorator(executorService);
+        this.writtenFileCodec = checkNotNull(writtenFileCodec, "writtenFileCodec is null");
+    }
+
+    @Override
+    public ConnectorPageSink createPageSink(ConnectorOutputTableHandle tableHandle)
+    {
+        HiveOutputTableHandle handle = checkType(tableHandle, HiveOutputTableHandle.class, "tableHandle");
+        return new HivePageSink(fileWriterFactory, handle, writerFilesPerTask, targetFileSize, executor, writtenFileCodec);
+    }
+
+    @Override
+    public ConnectorPageSink createPageSink(ConnectorInsertTableHandle tableHandle)
+    {
+        throw new UnsupportedOperationException();
+    }
+}
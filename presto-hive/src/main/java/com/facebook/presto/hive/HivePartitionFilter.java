@@ -0,0 +1,168 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.spi.ConnectorColumnHandle;
+import com.facebook.presto.spi.Domain;
+import com.facebook.presto.spi.Marker;
+import com.facebook.presto.spi.Range;
+import com.facebook.presto.spi.SortedRangeSet;
+import com.facebook.presto.spi.TupleDomain;
+import com.google.common.base.Joiner;
+import io.airlift.slice.Slice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import static com.facebook.presto.hive.HivePartitionKey.HIVE_DEFAULT_DYNAMIC_PARTITION;
+import static com.facebook.presto.hive.HiveType.HIVE_STRING;
+
+/**
+ * Translates the partition key part of a predicate into a filter expression
+ * that the metastore can evaluate while listing partitions.
+ * <p>
+ * The filter never excludes a partition matching the predicate, but may include
+ * partitions that do not match, so partitions must still be filtered by the caller.
+ */
+public final class HivePartitionFilter
+{
+    // limits the size of the filter for large IN lists
+    private static final int MAX_DISJUNCTS_PER_COLUMN = 100;
+
+    // the metastore filter grammar only accepts plain identifiers as keys
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-zA-Z0-9][a-zA-Z0-9_]*");
+
+    private HivePartitionFilter() {}
+
+    /**
+     * Only string partition keys are translated, as older metastores reject
+     * filters on other types and compare numbers as strings.
+     *
+     * @param rangesEnabled translate range predicates in addition to equality
+     * predicates; this is only correct if the metastore database compares strings
+     * the same way as Presto, using a binary collation
+     * @return the filter, or empty if no partition key could be translated
+     */
+    public static Optional<String> toMetastoreFilter(List<HiveColumnHandle> partitionKeys, TupleDomain<ConnectorColumnHandle> predicate, boolean rangesEnabled)
+    {
+        List<String> conjuncts = new ArrayList<>();
+        for (HiveColumnHandle partitionKey : partitionKeys) {
+            Domain domain = predicate.getDomains().get(partitionKey);
+            if (domain == null || !partitionKey.getHiveType().equals(HIVE_STRING) || !IDENTIFIER.matcher(partitionKey.getName()).matches()) {
+                continue;
+            }
+            toColumnFilter(partitionKey.getName(), domain, rangesEnabled).ifPresent(conjuncts::add);
+        }
+
+        if (conjuncts.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(Joiner.on(" and ").join(conjuncts));
+    }
+
+    private static Optional<String> toColumnFilter(String key, Domain domain, boolean rangesEnabled)
+    {
+        SortedRangeSet ranges = domain.getRanges();
+        if (ranges.getRangeCount() + 1 > MAX_DISJUNCTS_PER_COLUMN) {
+            return Optional.empty();
+        }
+
+        List<String> disjuncts = new ArrayList<>();
+        for (Range range : ranges) {
+            Optional<String> rangeFilter = toRangeFilter(key, range, rangesEnabled);
+            if (!rangeFilter.isPresent()) {
+                // the column cannot be constrained
+                return Optional.empty();
+            }
+            disjuncts.add(rangeFilter.get());
+        }
+
+        if (domain.isNullAllowed()) {
+            // null partition values are stored using the default partition name
+            disjuncts.add(compare(key, "=", HIVE_DEFAULT_DYNAMIC_PARTITION).get());
+        }
+
+        if (disjuncts.isEmpty()) {
+            // the domain is none, which is never pushed into the partition listing
+            return Optional.empty();
+        }
+        return Optional.of("(" + Joiner.on(" or ").join(disjuncts) + ")");
+    }
+
+    private static Optional<String> toRangeFilter(String key, Range range, boolean rangesEnabled)
+    {
+        if (range.isSingleValue()) {
+            return compare(key, "=", range.getSingleValue());
+        }
+        if (!rangesEnabled || range.isAll()) {
+            return Optional.empty();
+        }
+
+        List<String> bounds = new ArrayList<>();
+
+        Marker low = range.getLow();
+        if (!low.isLowerUnbounded()) {
+            Optional<String> bound = compare(key, (low.getBound() == Marker.Bound.EXACTLY) ? ">=" : ">", low.getValue());
+            if (!bound.isPresent()) {
+                return Optional.empty();
+            }
+            bounds.add(bound.get());
+        }
+
+        Marker high = range.getHigh();
+        if (!high.isUpperUnbounded()) {
+            Optional<String> bound = compare(key, (high.getBound() == Marker.Bound.EXACTLY) ? "<=" : "<", high.getValue());
+            if (!bound.isPresent()) {
+                return Optional.empty();
+            }
+            bounds.add(bound.get());
+        }
+
+        return Optional.of("(" + Joiner.on(" and ").join(bounds) + ")");
+    }
+
+    private static Optional<String> compare(String key, String operator, Object value)
+    {
+        Optional<String> literal = toStringLiteral(value);
+        if (!literal.isPresent()) {
+            return Optional.empty();
+        }
+        return Optional.of(key + " " + operator + " " + literal.get());
+    }
+
+    private static Optional<String> toStringLiteral(Object value)
+    {
+        String string;
+        if (value instanceof Slice) {
+            string = ((Slice) value).toStringUtf8();
+        }
+        else if (value instanceof String) {
+            string = (String) value;
+        }
+        else {
+            return Optional.empty();
+        }
+
+        // the filter grammar does not support escapes in string literals
+        if (string.indexOf('"') == -1) {
+            return Optional.of('"' + string + '"');
+        }
+        if (string.indexOf('\'') == -1) {
+            return Optional.of('\'' + string + '\'');
+        }
+        return Optional.empty();
+    }
+}
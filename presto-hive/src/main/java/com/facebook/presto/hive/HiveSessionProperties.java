@@ -23,9 +23,12 @@ public final class HiveSessionProperties
 {
     public static final String STORAGE_FORMAT_PROPERTY = "storage_format";
     private static final String OPTIMIZED_READER_ENABLED = "optimized_reader_enabled";
+    private static final String OPTIMIZED_WRITER_ENABLED = "optimized_writer_enabled";
     private static final String ORC_MAX_MERGE_DISTANCE = "orc_max_merge_distance";
     private static final String ORC_MAX_BUFFER_SIZE = "orc_max_buffer_size";
     private static final String ORC_STREAM_BUFFER_SIZE = "orc_stream_buffer_size";
+    private static final String ORC_MAX_PREFETCH_SIZE = "orc_max_prefetch_size";
+    private static final String PARQUET_OPTIMIZED_READER_ENABLED = "parquet_optimized_reader_enabled";
 
     private HiveSessionProperties()
     {
@@ -51,6 +54,16 @@ public final class HiveSessionProperties
         return isEnabled(OPTIMIZED_READER_ENABLED, session, defaultValue);
     }
 
+    public static boolean isOptimizedWriterEnabled(ConnectorSession session, boolean defaultValue)
+    {
+        return isEnabled(OPTIMIZED_WRITER_ENABLED, session, defaultValue);
+    }
+
+    public static boolean isParquetOptimizedReaderEnabled(ConnectorSession session, boolean defaultValue)
+    {
+        return isEnabled(PARQUET_OPTIMIZED_READER_ENABLED, session, defaultValue);
+    }
+
     public static DataSize getOrcMaxMergeDistance(ConnectorSession session, DataSize defaultValue)
     {
         String maxMergeDistanceString = session.getProperties().get(ORC_MAX_MERGE_DISTANCE);
@@ -96,6 +109,21 @@ public final class HiveSessionProperties
         }
     }
 
+    public static DataSize getOrcMaxPrefetchSize(ConnectorSession session, DataSize defaultValue)
+    {
+        String maxPrefetchSizeString = session.getProperties().get(ORC_MAX_PREFETCH_SIZE);
+        if (maxPrefetchSizeString == null) {
+            return defaultValue;
+        }
+
+        try {
+            return DataSize.valueOf(maxPrefetchSizeString);
+        }
+        catch (IllegalArgumentException e) {
+            throw new PrestoException(INVALID_SESSION_PROPERTY, ORC_MAX_PREFETCH_SIZE + " is invalid: " + maxPrefetchSizeString);
+        }
+    }
+
     private static boolean isEnabled(String propertyName, ConnectorSession session, boolean defaultValue)
     {
         String enabled = session.getProperties().get(propertyName);
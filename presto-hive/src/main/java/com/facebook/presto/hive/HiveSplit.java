@@ -23,6 +23,8 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Properties;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
@@ -45,6 +47,7 @@ public class HiveSplit
     private final ConnectorSession session;
     private final TupleDomain<HiveColumnHandle> effectivePredicate;
     private final boolean forceLocalScheduling;
+    private final Optional<Integer> bucketNumber;
 
     @JsonCreator
     public HiveSplit(
@@ -60,7 +63,8 @@ public class HiveSplit
             @JsonProperty("addresses") List<HostAddress> addresses,
             @JsonProperty("forceLocalScheduling") boolean forceLocalScheduling,
             @JsonProperty("session") ConnectorSession session,
-            @JsonProperty("effectivePredicate") TupleDomain<HiveColumnHandle> effectivePredicate)
+            @JsonProperty("effectivePredicate") TupleDomain<HiveColumnHandle> effectivePredicate,
+            @JsonProperty("bucketNumber") Optional<Integer> bucketNumber)
     {
         checkNotNull(clientId, "clientId is null");
         checkArgument(start >= 0, "start must be positive");
@@ -73,6 +77,7 @@ public class HiveSplit
         checkNotNull(partitionKeys, "partitionKeys is null");
         checkNotNull(addresses, "addresses is null");
         checkNotNull(effectivePredicate, "tupleDomain is null");
+        checkNotNull(bucketNumber, "bucketNumber is null");
 
         this.clientId = clientId;
         this.database = database;
@@ -87,6 +92,7 @@ public class HiveSplit
         this.forceLocalScheduling = forceLocalScheduling;
         this.session = session;
         this.effectivePredicate = effectivePredicate;
+        this.bucketNumber = bucketNumber;
     }
 
     @JsonProperty
@@ -168,6 +174,18 @@ public class HiveSplit
         return forceLocalScheduling;
     }
 
+    @JsonProperty
+    public Optional<Integer> getBucketNumber()
+    {
+        return bucketNumber;
+    }
+
+    @Override
+    public OptionalInt getBucket()
+    {
+        return bucketNumber.isPresent() ? OptionalInt.of(bucketNumber.get()) : OptionalInt.empty();
+    }
+
     @Override
     public boolean isRemotelyAccessible()
     {
@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.hive;
 
+import com.facebook.presto.hive.cache.CacheAffinity;
 import com.facebook.presto.hive.metastore.HiveMetastore;
 import com.facebook.presto.spi.ConnectorColumnHandle;
 import com.facebook.presto.spi.ConnectorPartition;
@@ -63,9 +64,11 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import static com.facebook.presto.hive.HiveBucketing.getBucketColumnInspectors;
 import static com.facebook.presto.hive.HiveBucketing.getHiveBucket;
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_PARTITION_SCHEMA_MISMATCH;
 import static com.facebook.presto.hive.HivePartition.UNPARTITIONED_ID;
+import static com.facebook.presto.hive.HivePartitionFilter.toMetastoreFilter;
 import static com.facebook.presto.hive.HiveUtil.getPartitionKeyColumnHandles;
 import static com.facebook.presto.hive.HiveUtil.parsePartitionValue;
 import static com.facebook.presto.hive.HiveUtil.schemaTableName;
@@ -98,6 +101,7 @@ public class HiveSplitManager
     private final NamenodeStats namenodeStats;
     private final HdfsEnvironment hdfsEnvironment;
     private final DirectoryLister directoryLister;
+    private final CacheAffinity cacheAffinity;
     private final DateTimeZone timeZone;
     private final Executor executor;
     private final int maxOutstandingSplits;
@@ -109,7 +113,10 @@ public class HiveSplitManager
     private final int maxInitialSplits;
     private final boolean forceLocalScheduling;
     private final boolean recursiveDfsWalkerEnabled;
+    private final boolean bucketExecutionEnabled;
     private final boolean assumeCanonicalPartitionKeys;
+    private final boolean metastorePartitionFilterEnabled;
+    private final boolean metastorePartitionRangeFilterEnabled;
 
     @Inject
     public HiveSplitManager(
@@ -119,6 +126,7 @@ public class HiveSplitManager
             NamenodeStats namenodeStats,
             HdfsEnvironment hdfsEnvironment,
             DirectoryLister directoryLister,
+            CacheAffinity cacheAffinity,
             @ForHiveClient ExecutorService executorService)
     {
         this(connectorId,
@@ -126,6 +134,7 @@ public class HiveSplitManager
                 namenodeStats,
                 hdfsEnvironment,
                 directoryLister,
+                cacheAffinity,
                 DateTimeZone.forTimeZone(hiveClientConfig.getTimeZone()),
                 new BoundedExecutor(executorService, hiveClientConfig.getMaxGlobalSplitIteratorThreads()),
                 hiveClientConfig.getMaxOutstandingSplits(),
@@ -137,7 +146,10 @@ public class HiveSplitManager
                 hiveClientConfig.getMaxInitialSplits(),
                 hiveClientConfig.isForceLocalScheduling(),
                 hiveClientConfig.isAssumeCanonicalPartitionKeys(),
-                false);
+                hiveClientConfig.isMetastorePartitionFilterEnabled(),
+                hiveClientConfig.isMetastorePartitionRangeFilterEnabled(),
+                false,
+                hiveClientConfig.isBucketExecutionEnabled());
     }
 
     public HiveSplitManager(
@@ -146,6 +158,7 @@ public class HiveSplitManager
             NamenodeStats namenodeStats,
             HdfsEnvironment hdfsEnvironment,
             DirectoryLister directoryLister,
+            CacheAffinity cacheAffinity,
             DateTimeZone timeZone,
             Executor executor,
             int maxOutstandingSplits,
@@ -157,13 +170,17 @@ public class HiveSplitManager
             int maxInitialSplits,
             boolean forceLocalScheduling,
             boolean assumeCanonicalPartitionKeys,
-            boolean recursiveDfsWalkerEnabled)
+            boolean metastorePartitionFilterEnabled,
+            boolean metastorePartitionRangeFilterEnabled,
+            boolean recursiveDfsWalkerEnabled,
+            boolean bucketExecutionEnabled)
     {
         this.connectorId = checkNotNull(connectorId, "connectorId is null").toString();
         this.metastore = checkNotNull(metastore, "metastore is null");
         this.namenodeStats = checkNotNull(namenodeStats, "namenodeStats is null");
         this.hdfsEnvironment = checkNotNull(hdfsEnvironment, "hdfsEnvironment is null");
         this.directoryLister = checkNotNull(directoryLister, "directoryLister is null");
+        this.cacheAffinity = checkNotNull(cacheAffinity, "cacheAffinity is null");
         this.timeZone = checkNotNull(timeZone, "timeZone is null");
         this.executor = checkNotNull(executor, "executor is null");
         checkArgument(maxOutstandingSplits >= 1, "maxOutstandingSplits must be at least 1");
@@ -176,7 +193,10 @@ public class HiveSplitManager
         this.maxInitialSplits = maxInitialSplits;
         this.forceLocalScheduling = forceLocalScheduling;
         this.recursiveDfsWalkerEnabled = recursiveDfsWalkerEnabled;
+        this.bucketExecutionEnabled = bucketExecutionEnabled;
         this.assumeCanonicalPartitionKeys = assumeCanonicalPartitionKeys;
+        this.metastorePartitionFilterEnabled = metastorePartitionFilterEnabled;
+        this.metastorePartitionRangeFilterEnabled = metastorePartitionRangeFilterEnabled;
     }
 
     @Override
@@ -277,6 +297,22 @@ public class HiveSplitManager
 
     private List<String> getFilteredPartitionNames(SchemaTableName tableName, List<HiveColumnHandle> partitionKeys, TupleDomain<ConnectorColumnHandle> effectivePredicate)
     {
+        if (metastorePartitionFilterEnabled) {
+            Optional<String> filterExpression = toMetastoreFilter(partitionKeys, effectivePredicate, metastorePartitionRangeFilterEnabled);
+            if (filterExpression.isPresent()) {
+                try {
+                    Optional<List<String>> partitionNames = metastore.getPartitionNamesByFilter(tableName.getSchemaName(), tableName.getTableName(), filterExpression.get());
+                    if (partitionNames.isPresent()) {
+                        return partitionNames.get();
+                    }
+                    // the metastore cannot evaluate the filter, so fall back to listing by partition values
+                }
+                catch (NoSuchObjectException e) {
+                    throw new TableNotFoundException(tableName);
+                }
+            }
+        }
+
         List<String> filter = new ArrayList<>();
         for (HiveColumnHandle partitionKey : partitionKeys) {
             Domain domain = effectivePredicate.getDomains().get(partitionKey);
@@ -381,13 +417,15 @@ public class HiveSplitManager
                 hdfsEnvironment,
                 namenodeStats,
                 directoryLister,
+                cacheAffinity,
                 executor,
                 maxPartitionBatchSize,
                 hiveTableHandle.getSession(),
                 maxInitialSplitSize,
                 maxInitialSplits,
                 forceLocalScheduling,
-                recursiveDfsWalkerEnabled).get();
+                recursiveDfsWalkerEnabled,
+                bucketExecutionEnabled && getBucketColumnInspectors(table).isPresent()).get();
     }
 
     private Iterable<HivePartitionMetadata> getPartitionMetadata(final Table table, final SchemaTableName tableName, List<HivePartition> partitions)
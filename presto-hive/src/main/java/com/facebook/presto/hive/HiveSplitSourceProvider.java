@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.hive;
 
+import com.facebook.presto.hive.cache.CacheAffinity;
 import com.facebook.presto.hive.util.AsyncWalker;
 import com.facebook.presto.hive.util.FileStatusCallback;
 import com.facebook.presto.hive.util.SuspendingExecutor;
@@ -29,6 +30,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import io.airlift.concurrent.BoundedExecutor;
 import io.airlift.concurrent.SetThreadName;
 import io.airlift.units.DataSize;
@@ -71,6 +73,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import static com.facebook.presto.hadoop.HadoopFileStatus.isFile;
 import static com.facebook.presto.hive.HiveBucketing.HiveBucket;
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_FILE_NOT_FOUND;
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_INVALID_BUCKET_FILES;
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_UNKNOWN_ERROR;
 import static com.facebook.presto.hive.HiveType.getSupportedHiveType;
 import static com.facebook.presto.hive.HiveUtil.getInputFormat;
@@ -80,6 +83,7 @@ import static com.facebook.presto.spi.StandardErrorCode.NOT_SUPPORTED;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
 
 class HiveSplitSourceProvider
 {
@@ -115,6 +119,7 @@ class HiveSplitSourceProvider
     private final HdfsEnvironment hdfsEnvironment;
     private final NamenodeStats namenodeStats;
     private final DirectoryLister directoryLister;
+    private final CacheAffinity cacheAffinity;
     private final Executor executor;
     private final ClassLoader classLoader;
     private final DataSize maxSplitSize;
@@ -124,6 +129,7 @@ class HiveSplitSourceProvider
     private final ConnectorSession session;
     private final boolean recursiveDirWalkerEnabled;
     private final boolean forceLocalScheduling;
+    private final boolean bucketExecutionEnabled;
 
     HiveSplitSourceProvider(String connectorId,
             Table table,
@@ -135,13 +141,15 @@ class HiveSplitSourceProvider
             HdfsEnvironment hdfsEnvironment,
             NamenodeStats namenodeStats,
             DirectoryLister directoryLister,
+            CacheAffinity cacheAffinity,
             Executor executor,
             int maxPartitionBatchSize,
             ConnectorSession session,
             DataSize maxInitialSplitSize,
             int maxInitialSplits,
             boolean forceLocalScheduling,
-            boolean recursiveDirWalkerEnabled)
+            boolean recursiveDirWalkerEnabled,
+            boolean bucketExecutionEnabled)
     {
         this.connectorId = connectorId;
         this.table = table;
@@ -154,6 +162,7 @@ class HiveSplitSourceProvider
         this.hdfsEnvironment = hdfsEnvironment;
         this.namenodeStats = namenodeStats;
         this.directoryLister = directoryLister;
+        this.cacheAffinity = cacheAffinity;
         this.executor = executor;
         this.session = session;
         this.classLoader = Thread.currentThread().getContextClassLoader();
@@ -161,6 +170,7 @@ class HiveSplitSourceProvider
         this.remainingInitialSplits = maxInitialSplits;
         this.recursiveDirWalkerEnabled = recursiveDirWalkerEnabled;
         this.forceLocalScheduling = forceLocalScheduling;
+        this.bucketExecutionEnabled = bucketExecutionEnabled;
     }
 
     public ConnectorSplitSource get()
@@ -193,68 +203,7 @@ class HiveSplitSourceProvider
             ImmutableList.Builder<ListenableFuture<Void>> futureBuilder = ImmutableList.builder();
 
             for (HivePartitionMetadata partition : partitions) {
-                final String partitionName = partition.getHivePartition().getPartitionId();
-                final Properties schema = getPartitionSchema(table, partition.getPartition());
-                final List<HivePartitionKey> partitionKeys = getPartitionKeys(table, partition.getPartition());
-                final TupleDomain<HiveColumnHandle> effectivePredicate = partition.getHivePartition().getEffectivePredicate();
-
-                Path path = new Path(getPartitionLocation(table, partition.getPartition()));
-                Configuration configuration = hdfsEnvironment.getConfiguration(path);
-                final InputFormat<?, ?> inputFormat = getInputFormat(configuration, schema, false);
-
-                if (inputFormat instanceof SymlinkTextInputFormat) {
-                    JobConf jobConf = new JobConf(configuration);
-                    FileInputFormat.setInputPaths(jobConf, path);
-                    InputSplit[] splits = inputFormat.getSplits(jobConf, 0);
-                    for (InputSplit rawSplit : splits) {
-                        FileSplit split = ((SymlinkTextInputFormat.SymlinkTextInputSplit) rawSplit).getTargetSplit();
-
-                        // get the filesystem for the target path -- it may be a different hdfs instance
-                        FileSystem targetFilesystem = hdfsEnvironment.getFileSystem(split.getPath());
-                        FileStatus fileStatus = targetFilesystem.getFileStatus(split.getPath());
-                        hiveSplitSource.addToQueue(createHiveSplits(
-                                partitionName,
-                                fileStatus,
-                                targetFilesystem.getFileBlockLocations(fileStatus, split.getStart(), split.getLength()),
-                                split.getStart(),
-                                split.getLength(),
-                                schema,
-                                partitionKeys,
-                                false,
-                                session,
-                                effectivePredicate));
-                    }
-                    continue;
-                }
-
-                // TODO: this is currently serial across all partitions and should be done in suspendingExecutor
-                FileSystem fs = hdfsEnvironment.getFileSystem(path);
-                if (bucket.isPresent()) {
-                    Optional<FileStatus> bucketFile = getBucketFile(bucket.get(), fs, path);
-                    if (bucketFile.isPresent()) {
-                        FileStatus file = bucketFile.get();
-                        BlockLocation[] blockLocations = fs.getFileBlockLocations(file, 0, file.getLen());
-                        boolean splittable = isSplittable(inputFormat, fs, file.getPath());
-
-                        hiveSplitSource.addToQueue(createHiveSplits(
-                                partitionName,
-                                file,
-                                blockLocations,
-                                0,
-                                file.getLen(),
-                                schema,
-                                partitionKeys,
-                                splittable,
-                                session,
-                                effectivePredicate));
-
-                        continue;
-                    }
-                }
-
                 // Acquire semaphore so that we only have a fixed number of outstanding partitions being processed asynchronously
-                // NOTE: there must not be any calls that throw in the space between acquiring the semaphore and setting the Future
-                // callback to release it. Otherwise, we will need a try-finally block around this section.
                 try {
                     semaphore.acquire();
                 }
@@ -263,31 +212,22 @@ class HiveSplitSourceProvider
                     return;
                 }
 
-                ListenableFuture<Void> partitionFuture = createAsyncWalker(fs, suspendingExecutor).beginWalk(path, new FileStatusCallback()
-                {
-                    @Override
-                    public void process(FileStatus file, BlockLocation[] blockLocations)
-                    {
-                        try {
-                            boolean splittable = isSplittable(inputFormat, hdfsEnvironment.getFileSystem(file.getPath()), file.getPath());
-
-                            hiveSplitSource.addToQueue(createHiveSplits(
-                                    partitionName,
-                                    file,
-                                    blockLocations,
-                                    0,
-                                    file.getLen(),
-                                    schema,
-                                    partitionKeys,
-                                    splittable,
-                                    session,
-                                    effectivePredicate));
-                        }
-                        catch (IOException e) {
-                            hiveSplitSource.fail(e);
+                // All work for the partition, including listing the directory, happens in the suspending executor,
+                // so many partitions are listed concurrently. The total number of concurrent listings is bounded by
+                // the global split loader executor.
+                ListenableFuture<Void> partitionFuture;
+                try {
+                    ListenableFutureTask<ListenableFuture<Void>> task = ListenableFutureTask.create(() -> {
+                        try (ThreadContextClassLoader threadContextClassLoader = new ThreadContextClassLoader(classLoader)) {
+                            return loadPartition(hiveSplitSource, suspendingExecutor, session, partition);
                         }
-                    }
-                });
+                    });
+                    suspendingExecutor.execute(task);
+                    partitionFuture = Futures.dereference(task);
+                }
+                catch (Throwable t) {
+                    partitionFuture = Futures.immediateFailedFuture(t);
+                }
 
                 // release the semaphore when the partition finishes
                 Futures.addCallback(partitionFuture, new FutureCallback<Void>()
@@ -330,16 +270,152 @@ class HiveSplitSourceProvider
         }
     }
 
+    private ListenableFuture<Void> loadPartition(final HiveSplitSource hiveSplitSource, SuspendingExecutor suspendingExecutor, final ConnectorSession session, HivePartitionMetadata partition)
+            throws IOException
+    {
+        final String partitionName = partition.getHivePartition().getPartitionId();
+        final Properties schema = getPartitionSchema(table, partition.getPartition());
+        final List<HivePartitionKey> partitionKeys = getPartitionKeys(table, partition.getPartition());
+        final TupleDomain<HiveColumnHandle> effectivePredicate = partition.getHivePartition().getEffectivePredicate();
+
+        Path path = new Path(getPartitionLocation(table, partition.getPartition()));
+        Configuration configuration = hdfsEnvironment.getConfiguration(path);
+        final InputFormat<?, ?> inputFormat = getInputFormat(configuration, schema, false);
+
+        if (inputFormat instanceof SymlinkTextInputFormat) {
+            if (bucketExecutionEnabled) {
+                throw new PrestoException(HIVE_INVALID_BUCKET_FILES, format("Partition %s of bucketed table %s.%s uses a symlink input format", partitionName, table.getDbName(), table.getTableName()));
+            }
+            JobConf jobConf = new JobConf(configuration);
+            FileInputFormat.setInputPaths(jobConf, path);
+            InputSplit[] splits = inputFormat.getSplits(jobConf, 0);
+            for (InputSplit rawSplit : splits) {
+                FileSplit split = ((SymlinkTextInputFormat.SymlinkTextInputSplit) rawSplit).getTargetSplit();
+
+                // get the filesystem for the target path -- it may be a different hdfs instance
+                FileSystem targetFilesystem = hdfsEnvironment.getFileSystem(split.getPath());
+                FileStatus fileStatus = targetFilesystem.getFileStatus(split.getPath());
+                hiveSplitSource.addToQueue(createHiveSplits(
+                        partitionName,
+                        fileStatus,
+                        targetFilesystem.getFileBlockLocations(fileStatus, split.getStart(), split.getLength()),
+                        split.getStart(),
+                        split.getLength(),
+                        schema,
+                        partitionKeys,
+                        false,
+                        session,
+                        effectivePredicate,
+                        Optional.empty()));
+            }
+            return Futures.immediateFuture(null);
+        }
+
+        FileSystem fs = hdfsEnvironment.getFileSystem(path);
+        if (bucketExecutionEnabled) {
+            // each file of the partition holds one bucket, and the splits of a file are tagged
+            // with its bucket number so the engine can process them together with the same
+            // bucket of other tables
+            int bucketCount = table.getSd().getNumBuckets();
+            List<FileStatus> bucketFiles = getBucketFiles(fs, path, bucketCount)
+                    .orElseThrow(() -> new PrestoException(HIVE_INVALID_BUCKET_FILES, format("Partition %s of table %s.%s does not contain exactly %s files", partitionName, table.getDbName(), table.getTableName(), bucketCount)));
+
+            for (int bucketNumber = 0; bucketNumber < bucketFiles.size(); bucketNumber++) {
+                if (bucket.isPresent() && bucket.get().getBucketNumber() != bucketNumber) {
+                    continue;
+                }
+                FileStatus file = bucketFiles.get(bucketNumber);
+                BlockLocation[] blockLocations = fs.getFileBlockLocations(file, 0, file.getLen());
+                boolean splittable = isSplittable(inputFormat, fs, file.getPath());
+
+                hiveSplitSource.addToQueue(createHiveSplits(
+                        partitionName,
+                        file,
+                        blockLocations,
+                        0,
+                        file.getLen(),
+                        schema,
+                        partitionKeys,
+                        splittable,
+                        session,
+                        effectivePredicate,
+                        Optional.of(bucketNumber)));
+            }
+            return Futures.immediateFuture(null);
+        }
+
+        if (bucket.isPresent()) {
+            Optional<FileStatus> bucketFile = getBucketFile(bucket.get(), fs, path);
+            if (bucketFile.isPresent()) {
+                FileStatus file = bucketFile.get();
+                BlockLocation[] blockLocations = fs.getFileBlockLocations(file, 0, file.getLen());
+                boolean splittable = isSplittable(inputFormat, fs, file.getPath());
+
+                hiveSplitSource.addToQueue(createHiveSplits(
+                        partitionName,
+                        file,
+                        blockLocations,
+                        0,
+                        file.getLen(),
+                        schema,
+                        partitionKeys,
+                        splittable,
+                        session,
+                        effectivePredicate,
+                        Optional.empty()));
+
+                return Futures.immediateFuture(null);
+            }
+        }
+
+        return createAsyncWalker(fs, suspendingExecutor).beginWalk(path, new FileStatusCallback()
+        {
+            @Override
+            public void process(FileStatus file, BlockLocation[] blockLocations)
+            {
+                try {
+                    boolean splittable = isSplittable(inputFormat, hdfsEnvironment.getFileSystem(file.getPath()), file.getPath());
+
+                    hiveSplitSource.addToQueue(createHiveSplits(
+                            partitionName,
+                            file,
+                            blockLocations,
+                            0,
+                            file.getLen(),
+                            schema,
+                            partitionKeys,
+                            splittable,
+                            session,
+                            effectivePredicate,
+                            Optional.empty()));
+                }
+                catch (IOException e) {
+                    hiveSplitSource.fail(e);
+                }
+            }
+        });
+    }
+
     private AsyncWalker createAsyncWalker(FileSystem fs, SuspendingExecutor suspendingExecutor)
     {
         return new AsyncWalker(fs, suspendingExecutor, directoryLister, namenodeStats, recursiveDirWalkerEnabled);
     }
 
     private static Optional<FileStatus> getBucketFile(HiveBucket bucket, FileSystem fs, Path path)
+    {
+        return getBucketFiles(fs, path, bucket.getBucketCount())
+                .map(files -> files.get(bucket.getBucketNumber()));
+    }
+
+    /**
+     * Returns the files of the partition ordered by bucket number, or empty
+     * if the partition does not contain exactly one file per bucket.
+     */
+    private static Optional<List<FileStatus>> getBucketFiles(FileSystem fs, Path path, int bucketCount)
     {
         FileStatus[] statuses = listStatus(fs, path);
 
-        if (statuses.length != bucket.getBucketCount()) {
+        if (statuses.length != bucketCount) {
             return Optional.empty();
         }
 
@@ -357,8 +433,11 @@ class HiveSplitSourceProvider
         // Hive sorts the paths as strings lexicographically
         Collections.sort(paths);
 
-        String pathString = paths.get(bucket.getBucketNumber());
-        return Optional.of(map.get(pathString));
+        ImmutableList.Builder<FileStatus> files = ImmutableList.builder();
+        for (String pathString : paths) {
+            files.add(map.get(pathString));
+        }
+        return Optional.of(files.build());
     }
 
     private static FileStatus[] listStatus(FileSystem fs, Path path)
@@ -381,17 +460,24 @@ class HiveSplitSourceProvider
             List<HivePartitionKey> partitionKeys,
             boolean splittable,
             ConnectorSession session,
-            TupleDomain<HiveColumnHandle> effectivePredicate)
+            TupleDomain<HiveColumnHandle> effectivePredicate,
+            Optional<Integer> bucketNumber)
             throws IOException
     {
         ImmutableList.Builder<HiveSplit> builder = ImmutableList.builder();
 
         boolean forceLocalScheduling = getForceLocalScheduling(session);
 
+        // prefer the workers that have the file in their local cache over the block locations
+        Optional<List<HostAddress>> preferredHosts = Optional.empty();
+        if (!forceLocalScheduling) {
+            preferredHosts = cacheAffinity.getPreferredHosts(file.getPath().toString());
+        }
+
         if (splittable) {
             for (BlockLocation blockLocation : blockLocations) {
                 // get the addresses for the block
-                List<HostAddress> addresses = toHostAddress(blockLocation.getHosts());
+                List<HostAddress> addresses = preferredHosts.orElse(toHostAddress(blockLocation.getHosts()));
 
                 long maxBytes = maxSplitSize.toBytes();
 
@@ -421,7 +507,8 @@ class HiveSplitSourceProvider
                             addresses,
                             forceLocalScheduling,
                             session,
-                            effectivePredicate));
+                            effectivePredicate,
+                            bucketNumber));
 
                     chunkOffset += chunkLength;
                     remainingInitialSplits--;
@@ -432,7 +519,10 @@ class HiveSplitSourceProvider
         else {
             // not splittable, use the hosts from the first block if it exists
             List<HostAddress> addresses = ImmutableList.of();
-            if (blockLocations.length > 0) {
+            if (preferredHosts.isPresent()) {
+                addresses = preferredHosts.get();
+            }
+            else if (blockLocations.length > 0) {
                 addresses = toHostAddress(blockLocations[0].getHosts());
             }
 
@@ -448,7 +538,8 @@ class HiveSplitSourceProvider
                     addresses,
                     forceLocalScheduling,
                     session,
-                    effectivePredicate));
+                    effectivePredicate,
+                    bucketNumber));
         }
         return builder.build();
     }
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A file written by a {@link HivePageSink}. These are the commit fragments of a Hive write.
+ */
+public final class HiveWrittenFile
+{
+    private final String fileName;
+    private final long rowCount;
+    private final long sizeInBytes;
+
+    @JsonCreator
+    public HiveWrittenFile(
+            @JsonProperty("fileName") String fileName,
+            @JsonProperty("rowCount") long rowCount,
+            @JsonProperty("sizeInBytes") long sizeInBytes)
+    {
+        this.fileName = checkNotNull(fileName, "fileName is null");
+        checkArgument(rowCount >= 0, "rowCount is negative");
+        checkArgument(sizeInBytes >= 0, "sizeInBytes is negative");
+        this.rowCount = rowCount;
+        this.sizeInBytes = sizeInBytes;
+    }
+
+    @JsonProperty
+    public String getFileName()
+    {
+        return fileName;
+    }
+
+    @JsonProperty
+    public long getRowCount()
+    {
+        return rowCount;
+    }
+
+    @JsonProperty
+    public long getSizeInBytes()
+    {
+        return sizeInBytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("fileName", fileName)
+                .add("rowCount", rowCount)
+                .add("sizeInBytes", sizeInBytes)
+                .toString();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(fileName, rowCount, sizeInBytes);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        HiveWrittenFile other = (HiveWrittenFile) obj;
+        return Objects.equals(this.fileName, other.fileName) &&
+                Objects.equals(this.rowCount, other.rowCount) &&
+                Objects.equals(this.sizeInBytes, other.sizeInBytes);
+    }
+}
@@ -15,6 +15,7 @@ package com.facebook.presto.hive;
 
 import io.airlift.stats.CounterStat;
 import io.airlift.stats.TimeStat;
+import io.airlift.units.Duration;
 import org.weakref.jmx.Managed;
 import org.weakref.jmx.Nested;
 
@@ -24,6 +25,7 @@ public class NamenodeStats
 {
     private final CallStats listLocatedStatus = new CallStats();
     private final CallStats remoteIteratorNext = new CallStats();
+    private final CallStats listDirectory = new CallStats();
 
     @Managed
     @Nested
@@ -39,6 +41,16 @@ public class NamenodeStats
         return remoteIteratorNext;
     }
 
+    /**
+     * Total time spent listing a directory, excluding the time spent generating splits for the listed files.
+     */
+    @Managed
+    @Nested
+    public CallStats getListDirectory()
+    {
+        return listDirectory;
+    }
+
     public static class CallStats
     {
         private final TimeStat time = new TimeStat();
@@ -50,6 +62,11 @@ public class NamenodeStats
             return time.time();
         }
 
+        public void record(Duration duration)
+        {
+            time.add(duration);
+        }
+
         public void recordException(Exception exception)
         {
             if (exception instanceof IOException) {
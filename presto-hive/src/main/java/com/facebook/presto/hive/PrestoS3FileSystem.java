@@ -37,6 +37,7 @@ import com.amazonaws.services.s3.transfer.Transfer;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerConfiguration;
 import com.amazonaws.services.s3.transfer.Upload;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractSequentialIterator;
 import com.google.common.collect.Iterators;
@@ -60,6 +61,7 @@ import org.apache.hadoop.fs.s3.S3Credentials;
 import org.apache.hadoop.util.Progressable;
 
 import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -71,6 +73,11 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static com.facebook.presto.hive.RetryDriver.retry;
@@ -79,12 +86,17 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Strings.nullToEmpty;
 import static com.google.common.collect.Iterables.toArray;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.String.format;
 import static java.nio.file.Files.createDirectories;
 import static java.nio.file.Files.createTempFile;
 import static org.apache.http.HttpStatus.SC_FORBIDDEN;
 import static org.apache.http.HttpStatus.SC_NOT_FOUND;
+import static org.apache.http.HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
 
 public class PrestoS3FileSystem
         extends FileSystem
@@ -105,6 +117,10 @@ public class PrestoS3FileSystem
 
     private static final DataSize BLOCK_SIZE = new DataSize(32, MEGABYTE);
     private static final DataSize MAX_SKIP_SIZE = new DataSize(1, MEGABYTE);
+    private static final DataSize READ_AHEAD_SIZE = new DataSize(64, KILOBYTE);
+    private static final DataSize PARALLEL_READ_CHUNK_SIZE = new DataSize(4, MEGABYTE);
+
+    private static final PrestoS3FileSystemStats STATS = new PrestoS3FileSystemStats();
 
     private final TransferManagerConfiguration transferConfig = new TransferManagerConfiguration();
     private URI uri;
@@ -114,6 +130,12 @@ public class PrestoS3FileSystem
     private int maxClientRetries;
     private Duration maxBackoffTime;
     private Duration maxRetryTime;
+    private ExecutorService readExecutor;
+
+    public static PrestoS3FileSystemStats getFileSystemStats()
+    {
+        return STATS;
+    }
 
     @Override
     public void initialize(URI uri, Configuration conf)
@@ -151,6 +173,37 @@ public class PrestoS3FileSystem
 
         transferConfig.setMultipartUploadThreshold(minFileSize);
         transferConfig.setMinimumUploadPartSize(minPartSize);
+
+        // chunks beyond the connection limit would only wait for a pooled connection
+        ThreadPoolExecutor readExecutor = new ThreadPoolExecutor(
+                maxConnections,
+                maxConnections,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                daemonThreadsNamed("s3-read-" + uri.getHost() + "-%s"));
+        readExecutor.allowCoreThreadTimeOut(true);
+        this.readExecutor = readExecutor;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        try {
+            super.close();
+        }
+        finally {
+            if (readExecutor != null) {
+                readExecutor.shutdownNow();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    void setS3Client(AmazonS3 client)
+    {
+        s3 = client;
     }
 
     @Override
@@ -255,8 +308,8 @@ public class PrestoS3FileSystem
     {
         return new FSDataInputStream(
                 new BufferedFSInputStream(
-                        new PrestoS3InputStream(s3, uri.getHost(), path, maxClientRetries, maxBackoffTime, maxRetryTime),
-                        bufferSize));
+                        new PrestoS3InputStream(s3, uri.getHost(), path, maxClientRetries, maxBackoffTime, maxRetryTime, readExecutor),
+                        Ints.checkedCast(max(bufferSize, READ_AHEAD_SIZE.toBytes()))));
     }
 
     @Override
@@ -317,7 +370,7 @@ public class PrestoS3FileSystem
                 .withPrefix(key)
                 .withDelimiter("/");
 
-        Iterator<ObjectListing> listings = new AbstractSequentialIterator<ObjectListing>(s3.listObjects(request))
+        Iterator<ObjectListing> listings = new AbstractSequentialIterator<ObjectListing>(listObjects(request))
         {
             @Override
             protected ObjectListing computeNext(ObjectListing previous)
@@ -325,6 +378,7 @@ public class PrestoS3FileSystem
                 if (!previous.isTruncated()) {
                     return null;
                 }
+                STATS.newListObjectsRequest();
                 return s3.listNextBatchOfObjects(previous);
             }
         };
@@ -332,6 +386,12 @@ public class PrestoS3FileSystem
         return Iterators.concat(Iterators.transform(listings, this::statusFromListing));
     }
 
+    private ObjectListing listObjects(ListObjectsRequest request)
+    {
+        STATS.newListObjectsRequest();
+        return s3.listObjects(request);
+    }
+
     private Iterator<LocatedFileStatus> statusFromListing(ObjectListing listing)
     {
         return Iterators.concat(
@@ -389,6 +449,7 @@ public class PrestoS3FileSystem
                     .exponentialBackoff(new Duration(1, TimeUnit.SECONDS), maxBackoffTime, maxRetryTime, 2.0)
                     .stopOn(InterruptedException.class, UnrecoverableS3OperationException.class)
                     .run("getS3ObjectMetadata", () -> {
+                        STATS.newGetObjectMetadataRequest();
                         try {
                             return s3.getObjectMetadata(uri.getHost(), keyFromPath(path));
                         }
@@ -464,12 +525,14 @@ public class PrestoS3FileSystem
         private final int maxClientRetry;
         private final Duration maxBackoffTime;
         private final Duration maxRetryTime;
+        private final ExecutorService readExecutor;
 
         private boolean closed;
         private S3ObjectInputStream in;
+        private long streamPosition;
         private long position;
 
-        public PrestoS3InputStream(AmazonS3 s3, String host, Path path, int maxClientRetry, Duration maxBackoffTime, Duration maxRetryTime)
+        public PrestoS3InputStream(AmazonS3 s3, String host, Path path, int maxClientRetry, Duration maxBackoffTime, Duration maxRetryTime, ExecutorService readExecutor)
         {
             this.s3 = checkNotNull(s3, "s3 is null");
             this.host = checkNotNull(host, "host is null");
@@ -479,6 +542,7 @@ public class PrestoS3FileSystem
             this.maxClientRetry = maxClientRetry;
             this.maxBackoffTime = checkNotNull(maxBackoffTime, "maxBackoffTime is null");
             this.maxRetryTime = checkNotNull(maxRetryTime, "maxRetryTime is null");
+            this.readExecutor = checkNotNull(readExecutor, "readExecutor is null");
         }
 
         @Override
@@ -496,27 +560,9 @@ public class PrestoS3FileSystem
             checkState(!closed, "already closed");
             checkArgument(pos >= 0, "position is negative: %s", pos);
 
-            if ((in != null) && (pos == position)) {
-                // already at specified position
-                return;
-            }
-
-            if ((in != null) && (pos > position)) {
-                // seeking forwards
-                long skip = pos - position;
-                if (skip <= max(in.available(), MAX_SKIP_SIZE.toBytes())) {
-                    // already buffered or seek is small enough
-                    if (in.skip(skip) == skip) {
-                        position = pos;
-                        return;
-                    }
-                }
-            }
-
-            // close the stream and open at desired position
+            // the stream is repositioned lazily on the next read, so a seek
+            // followed by positioned reads or another seek costs no request
             position = pos;
-            closeStream();
-            openStream();
         }
 
         @Override
@@ -538,24 +584,28 @@ public class PrestoS3FileSystem
         public int read(final byte[] buffer, final int offset, final int length)
                 throws IOException
         {
+            checkState(!closed, "already closed");
             try {
                 int bytesRead = retry()
                         .maxAttempts(maxClientRetry)
                         .exponentialBackoff(new Duration(1, TimeUnit.SECONDS), maxBackoffTime, maxRetryTime, 2.0)
                         .stopOn(InterruptedException.class)
                         .run("readStream", () -> {
-                            openStream();
+                            seekStream();
                             try {
                                 return in.read(buffer, offset, length);
                             }
                             catch (Exception e) {
+                                STATS.readFailed(e);
                                 closeStream();
                                 throw e;
                             }
                         });
 
                 if (bytesRead != -1) {
+                    STATS.bytesRead(bytesRead);
                     position += bytesRead;
+                    streamPosition += bytesRead;
                 }
                 return bytesRead;
             }
@@ -569,6 +619,74 @@ public class PrestoS3FileSystem
             }
         }
 
+        /**
+         * Reads using a bounded ranged GET. The sequential stream is not touched,
+         * so columnar readers can interleave positioned reads without forcing
+         * the stream to be reopened.
+         */
+        @Override
+        public int read(long position, byte[] buffer, int offset, int length)
+                throws IOException
+        {
+            checkState(!closed, "already closed");
+            checkArgument(position >= 0, "position is negative: %s", position);
+            if (length == 0) {
+                return 0;
+            }
+            return readRange(position, buffer, offset, length);
+        }
+
+        /**
+         * Large ranges are split into chunks that are fetched in parallel, as the
+         * throughput of a single S3 connection is limited.
+         */
+        @Override
+        public void readFully(long position, byte[] buffer, int offset, int length)
+                throws IOException
+        {
+            checkState(!closed, "already closed");
+            checkArgument(position >= 0, "position is negative: %s", position);
+
+            int chunkSize = Ints.checkedCast(PARALLEL_READ_CHUNK_SIZE.toBytes());
+            if (length <= chunkSize) {
+                readRangeFully(position, buffer, offset, length);
+                return;
+            }
+
+            // the first chunk is read by the calling thread
+            List<Future<?>> futures = new ArrayList<>();
+            try {
+                for (int chunkOffset = chunkSize; chunkOffset < length; chunkOffset += chunkSize) {
+                    long chunkPosition = position + chunkOffset;
+                    int bufferOffset = offset + chunkOffset;
+                    int chunkLength = min(chunkSize, length - chunkOffset);
+                    futures.add(readExecutor.submit(() -> {
+                        readRangeFully(chunkPosition, buffer, bufferOffset, chunkLength);
+                        return null;
+                    }));
+                }
+
+                readRangeFully(position, buffer, offset, chunkSize);
+
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            catch (ExecutionException e) {
+                Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+                throw Throwables.propagate(e.getCause());
+            }
+            finally {
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+
         @Override
         public boolean seekToNewSource(long targetPos)
                 throws IOException
@@ -576,6 +694,79 @@ public class PrestoS3FileSystem
             return false;
         }
 
+        private void readRangeFully(long position, byte[] buffer, int offset, int length)
+                throws IOException
+        {
+            int bytesRead = readRange(position, buffer, offset, length);
+            if (bytesRead < length) {
+                throw new EOFException(format("Read %s of %s bytes at position %s from %s", max(bytesRead, 0), length, position, path));
+            }
+        }
+
+        /**
+         * @return number of bytes read, which is less than the length only at the end of the
+         * object, or -1 if the position is past the end of the object
+         */
+        private int readRange(final long position, final byte[] buffer, final int offset, final int length)
+                throws IOException
+        {
+            try {
+                return retry()
+                        .maxAttempts(maxClientRetry)
+                        .exponentialBackoff(new Duration(1, TimeUnit.SECONDS), maxBackoffTime, maxRetryTime, 2.0)
+                        .stopOn(InterruptedException.class, UnrecoverableS3OperationException.class)
+                        .run("readRange", () -> {
+                            long start = System.nanoTime();
+                            GetObjectRequest request = new GetObjectRequest(host, keyFromPath(path)).withRange(position, position + length - 1);
+                            S3Object object;
+                            try {
+                                object = s3.getObject(request);
+                            }
+                            catch (AmazonServiceException e) {
+                                if (e.getStatusCode() == SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                                    return -1;
+                                }
+                                STATS.readFailed(e);
+                                if (e.getStatusCode() == SC_FORBIDDEN) {
+                                    throw new UnrecoverableS3OperationException(e);
+                                }
+                                throw Throwables.propagate(e);
+                            }
+
+                            S3ObjectInputStream stream = object.getObjectContent();
+                            try {
+                                int bytesRead = 0;
+                                while (bytesRead < length) {
+                                    int n = stream.read(buffer, offset + bytesRead, length - bytesRead);
+                                    if (n < 0) {
+                                        break;
+                                    }
+                                    bytesRead += n;
+                                }
+                                STATS.rangedGetObjectCompleted(start, bytesRead);
+                                return bytesRead;
+                            }
+                            catch (Exception e) {
+                                STATS.readFailed(e);
+                                throw e;
+                            }
+                            finally {
+                                // the whole range has normally been consumed, so
+                                // this releases the connection back to the pool
+                                stream.close();
+                            }
+                        });
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Throwables.propagate(e);
+            }
+            catch (Exception e) {
+                Throwables.propagateIfInstanceOf(e, IOException.class);
+                throw Throwables.propagate(e);
+            }
+        }
+
         private S3Object getS3Object(final Path path, final long start)
                 throws IOException
         {
@@ -585,10 +776,14 @@ public class PrestoS3FileSystem
                         .exponentialBackoff(new Duration(1, TimeUnit.SECONDS), maxBackoffTime, maxRetryTime, 2.0)
                         .stopOn(InterruptedException.class, UnrecoverableS3OperationException.class)
                         .run("getS3Object", () -> {
+                            long startNanos = System.nanoTime();
                             try {
-                                return s3.getObject(new GetObjectRequest(host, keyFromPath(path)).withRange(start, Long.MAX_VALUE));
+                                S3Object object = s3.getObject(new GetObjectRequest(host, keyFromPath(path)).withRange(start, Long.MAX_VALUE));
+                                STATS.getObjectCompleted(startNanos);
+                                return object;
                             }
                             catch (AmazonServiceException e) {
+                                STATS.readFailed(e);
                                 if (e.getStatusCode() == SC_FORBIDDEN) {
                                     throw new UnrecoverableS3OperationException(e);
                                 }
@@ -606,11 +801,37 @@ public class PrestoS3FileSystem
             }
         }
 
+        private void seekStream()
+                throws IOException
+        {
+            if ((in != null) && (position == streamPosition)) {
+                // already at specified position
+                return;
+            }
+
+            if ((in != null) && (position > streamPosition)) {
+                // seeking forwards
+                long skip = position - streamPosition;
+                if (skip <= max(in.available(), MAX_SKIP_SIZE.toBytes())) {
+                    // already buffered or seek is small enough
+                    if (in.skip(skip) == skip) {
+                        streamPosition = position;
+                        return;
+                    }
+                }
+            }
+
+            // close the stream and open at desired position
+            closeStream();
+            openStream();
+        }
+
         private void openStream()
                 throws IOException
         {
             if (in == null) {
                 in = getS3Object(path, position).getObjectContent();
+                streamPosition = position;
             }
         }
 
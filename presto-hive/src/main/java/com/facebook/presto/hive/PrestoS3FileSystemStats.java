@@ -0,0 +1,148 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.TimeStat;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.io.IOException;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+public class PrestoS3FileSystemStats
+{
+    private final CounterStat getObjectRequests = new CounterStat();
+    private final CounterStat rangedGetObjectRequests = new CounterStat();
+    private final CounterStat getObjectMetadataRequests = new CounterStat();
+    private final CounterStat listObjectsRequests = new CounterStat();
+    private final CounterStat bytesRead = new CounterStat();
+    private final CounterStat readFailures = new CounterStat();
+    private final CounterStat readIoExceptions = new CounterStat();
+    private final TimeStat getObjectTime = new TimeStat();
+    private final TimeStat rangedGetObjectTime = new TimeStat();
+
+    @Managed
+    @Nested
+    public CounterStat getGetObjectRequests()
+    {
+        return getObjectRequests;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRangedGetObjectRequests()
+    {
+        return rangedGetObjectRequests;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getGetObjectMetadataRequests()
+    {
+        return getObjectMetadataRequests;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getListObjectsRequests()
+    {
+        return listObjectsRequests;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getReadFailures()
+    {
+        return readFailures;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getReadIoExceptions()
+    {
+        return readIoExceptions;
+    }
+
+    /**
+     * Time until the response of a streaming GET is available, which is
+     * dominated by the time to first byte.
+     */
+    @Managed
+    @Nested
+    public TimeStat getGetObjectTime()
+    {
+        return getObjectTime;
+    }
+
+    /**
+     * Time to fetch the complete body of a bounded ranged GET.
+     */
+    @Managed
+    @Nested
+    public TimeStat getRangedGetObjectTime()
+    {
+        return rangedGetObjectTime;
+    }
+
+    public void getObjectCompleted(long startNanos)
+    {
+        getObjectRequests.update(1);
+        getObjectTime.add(elapsedSince(startNanos));
+    }
+
+    public void rangedGetObjectCompleted(long startNanos, long bytes)
+    {
+        rangedGetObjectRequests.update(1);
+        rangedGetObjectTime.add(elapsedSince(startNanos));
+        bytesRead.update(bytes);
+    }
+
+    public void newGetObjectMetadataRequest()
+    {
+        getObjectMetadataRequests.update(1);
+    }
+
+    public void newListObjectsRequest()
+    {
+        listObjectsRequests.update(1);
+    }
+
+    public void bytesRead(long bytes)
+    {
+        bytesRead.update(bytes);
+    }
+
+    public void readFailed(Exception exception)
+    {
+        if (exception instanceof IOException) {
+            readIoExceptions.update(1);
+        }
+        readFailures.update(1);
+    }
+
+    private static Duration elapsedSince(long startNanos)
+    {
+        return new Duration(System.nanoTime() - startNanos, NANOSECONDS);
+    }
+}
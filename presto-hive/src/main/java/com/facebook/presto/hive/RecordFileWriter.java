@@ -14,7 +14,9 @@
 package com.facebook.presto.hive;
 
 import com.facebook.presto.spi.ConnectorSession;
-import com.facebook.presto.spi.RecordSink;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.block.Block;
 import com.facebook.presto.spi.type.BigintType;
 import com.facebook.presto.spi.type.BooleanType;
 import com.facebook.presto.spi.type.DateType;
@@ -24,10 +26,9 @@ import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.spi.type.VarbinaryType;
 import com.facebook.presto.spi.type.VarcharType;
 import com.google.common.base.Joiner;
-import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
-import io.airlift.slice.Slice;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.ql.io.HiveOutputFormat;
 import org.apache.hadoop.hive.serde2.SerDeException;
@@ -43,17 +44,16 @@ import org.apache.hadoop.mapred.Reporter;
 import java.io.IOException;
 import java.sql.Date;
 import java.sql.Timestamp;
-import java.util.Collection;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
 
-import static com.facebook.presto.hive.HiveColumnHandle.SAMPLE_WEIGHT_COLUMN_NAME;
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_WRITER_ERROR;
 import static com.facebook.presto.hive.HiveUtil.isArrayType;
 import static com.facebook.presto.hive.HiveUtil.isMapType;
-import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Iterables.transform;
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.hadoop.hive.metastore.api.hive_metastoreConstants.META_TABLE_COLUMNS;
 import static org.apache.hadoop.hive.metastore.api.hive_metastoreConstants.META_TABLE_COLUMN_TYPES;
 import static org.apache.hadoop.hive.ql.exec.FileSinkOperator.RecordWriter;
@@ -66,166 +66,146 @@ import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveO
 import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory.javaStringObjectInspector;
 import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory.javaTimestampObjectInspector;
 
-public class HiveRecordSink
-        implements RecordSink
+/**
+ * Writes rows through the SerDe and OutputFormat of the storage format. This works
+ * for every format and type, but converts each value to a Java object first.
+ */
+public class RecordFileWriter
+        implements HiveFileWriter
 {
-    private final int fieldCount;
+    private final Path path;
+    private final JobConf conf;
+    private final List<Type> columnTypes;
+    private final ConnectorSession session;
+
     @SuppressWarnings("deprecation")
     private final Serializer serializer;
     private final RecordWriter recordWriter;
     private final SettableStructObjectInspector tableInspector;
     private final List<StructField> structFields;
-    private final List<Type> columnTypes;
     private final Object row;
-    private final int sampleWeightField;
-    private final ConnectorSession connectorSession;
 
-    private int field = -1;
+    private long rowCount;
+    private long writtenBytes;
 
-    public HiveRecordSink(HiveOutputTableHandle handle, Path target, JobConf conf)
+    public RecordFileWriter(Path path, List<String> columnNames, List<Type> columnTypes, HiveStorageFormat storageFormat, JobConf conf, ConnectorSession session)
     {
-        fieldCount = handle.getColumnNames().size();
+        this.path = checkNotNull(path, "path is null");
+        this.conf = checkNotNull(conf, "conf is null");
+        this.columnTypes = ImmutableList.copyOf(checkNotNull(columnTypes, "columnTypes is null"));
+        this.session = checkNotNull(session, "session is null");
+        checkNotNull(columnNames, "columnNames is null");
+        checkArgument(columnNames.size() == columnTypes.size(), "columnNames and columnTypes sizes don't match");
+        checkNotNull(storageFormat, "storageFormat is null");
 
-        sampleWeightField = handle.getColumnNames().indexOf(SAMPLE_WEIGHT_COLUMN_NAME);
-        columnTypes = ImmutableList.copyOf(handle.getColumnTypes());
-        connectorSession = handle.getConnectorSession();
-
-        Iterable<String> hiveTypeNames = transform(transform(handle.getColumnTypes(), HiveType::toHiveType), HiveType::getHiveTypeName);
+        Iterable<String> hiveTypeNames = transform(transform(columnTypes, HiveType::toHiveType), HiveType::getHiveTypeName);
 
         Properties properties = new Properties();
-        properties.setProperty(META_TABLE_COLUMNS, Joiner.on(',').join(handle.getColumnNames()));
+        properties.setProperty(META_TABLE_COLUMNS, Joiner.on(',').join(columnNames));
         properties.setProperty(META_TABLE_COLUMN_TYPES, Joiner.on(':').join(hiveTypeNames));
 
-        serializer = initializeSerializer(conf, properties, handle.getHiveStorageFormat().getSerDe());
-        recordWriter = createRecordWriter(target, conf, properties, handle.getHiveStorageFormat().getOutputFormat());
+        serializer = initializeSerializer(conf, properties, storageFormat.getSerDe());
+        recordWriter = createRecordWriter(path, conf, properties, storageFormat.getOutputFormat());
 
-        tableInspector = getStandardStructObjectInspector(handle.getColumnNames(), getJavaObjectInspectors(columnTypes));
+        tableInspector = getStandardStructObjectInspector(columnNames, getJavaObjectInspectors(columnTypes));
         structFields = ImmutableList.copyOf(tableInspector.getAllStructFieldRefs());
         row = tableInspector.create();
     }
 
     @Override
-    public void beginRecord(long sampleWeight)
+    public void appendPage(Page page)
     {
-        checkState(field == -1, "already in record");
-        if (sampleWeightField >= 0) {
-            tableInspector.setStructFieldData(row, structFields.get(sampleWeightField), sampleWeight);
-        }
-        field = 0;
-        if (sampleWeightField == 0) {
-            field++;
-        }
-    }
-
-    @Override
-    public void finishRecord()
-    {
-        checkState(field != -1, "not in record");
-        checkState(field == fieldCount, "not all fields set");
-        field = -1;
-
-        try {
-            recordWriter.write(serializer.serialize(row, tableInspector));
-        }
-        catch (SerDeException | IOException e) {
-            throw Throwables.propagate(e);
+        checkArgument(page.getChannelCount() == columnTypes.size(), "channelCount does not match");
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            for (int channel = 0; channel < page.getChannelCount(); channel++) {
+                Object value = getValue(page.getBlock(channel), position, columnTypes.get(channel));
+                tableInspector.setStructFieldData(row, structFields.get(channel), value);
+            }
+            try {
+                recordWriter.write(serializer.serialize(row, tableInspector));
+            }
+            catch (SerDeException | IOException e) {
+                throw new PrestoException(HIVE_WRITER_ERROR, "Failed to write record", e);
+            }
         }
+        rowCount += page.getPositionCount();
+        // the record writer does not expose its size, so use the size of the input as an estimate
+        writtenBytes += page.getSizeInBytes();
     }
 
     @Override
-    public void appendNull()
+    public long getRowCount()
     {
-        append(null);
-    }
-
-    @Override
-    public void appendBoolean(boolean value)
-    {
-        append(value);
-    }
-
-    @Override
-    public void appendLong(long value)
-    {
-        Type type = columnTypes.get(field);
-        if (type == DateType.DATE) {
-            // todo should this be adjusted to midnight in JVM timezone?
-            append(new Date(TimeUnit.DAYS.toMillis(value)));
-        }
-        else if (type == TimestampType.TIMESTAMP) {
-            append(new Timestamp(value));
-        }
-        else {
-            append(value);
-        }
+        return rowCount;
     }
 
     @Override
-    public void appendDouble(double value)
+    public long getWrittenBytes()
     {
-        append(value);
+        return writtenBytes;
     }
 
     @Override
-    public void appendString(byte[] value)
+    public void commit()
     {
-        Type type = columnTypes.get(field);
-        if (type == VarbinaryType.VARBINARY) {
-            append(value);
-        }
-        else {
-            append(new String(value, UTF_8));
-        }
-    }
-
-    @Override
-    public Collection<Slice> commit()
-    {
-        checkState(field == -1, "record not finished");
-
         try {
             recordWriter.close(false);
+            FileSystem fileSystem = path.getFileSystem(conf);
+            writtenBytes = fileSystem.getFileStatus(path).getLen();
         }
         catch (IOException e) {
-            throw Throwables.propagate(e);
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to close writer", e);
         }
-
-        // the committer can list the directory
-        return ImmutableList.of();
     }
 
     @Override
     public void rollback()
     {
         try {
-            recordWriter.close(true);
+            try {
+                recordWriter.close(true);
+            }
+            finally {
+                path.getFileSystem(conf).delete(path, false);
+            }
         }
         catch (IOException e) {
-            throw Throwables.propagate(e);
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to abort writer", e);
         }
     }
 
-    @Override
-    public List<Type> getColumnTypes()
-    {
-        return columnTypes;
-    }
-
-    private void append(Object value)
+    private Object getValue(Block block, int position, Type type)
     {
-        checkState(field != -1, "not in record");
-        checkState(field < fieldCount, "all fields already set");
-
-        Type type = columnTypes.get(field);
+        if (block.isNull(position)) {
+            return null;
+        }
+        if (type.equals(BooleanType.BOOLEAN)) {
+            return type.getBoolean(block, position);
+        }
+        if (type.equals(BigintType.BIGINT)) {
+            return type.getLong(block, position);
+        }
+        if (type.equals(DoubleType.DOUBLE)) {
+            return type.getDouble(block, position);
+        }
+        if (type.equals(VarcharType.VARCHAR)) {
+            return type.getSlice(block, position).toStringUtf8();
+        }
+        if (type.equals(VarbinaryType.VARBINARY)) {
+            return type.getSlice(block, position).getBytes();
+        }
+        if (type.equals(DateType.DATE)) {
+            // todo should this be adjusted to midnight in JVM timezone?
+            return new Date(TimeUnit.DAYS.toMillis(type.getLong(block, position)));
+        }
+        if (type.equals(TimestampType.TIMESTAMP)) {
+            return new Timestamp(type.getLong(block, position));
+        }
         if (isMapType(type) || isArrayType(type)) {
             // Hive expects a List<>/Map<> to write, so decode the value
-            value = TypeJsonUtils.stackRepresentationToObject(connectorSession, (String) value, type);
-        }
-        tableInspector.setStructFieldData(row, structFields.get(field), value);
-        field++;
-        if (field == sampleWeightField) {
-            field++;
+            return TypeJsonUtils.stackRepresentationToObject(session, type.getSlice(block, position).toStringUtf8(), type);
         }
+        throw new IllegalArgumentException("unsupported type: " + type);
     }
 
     @SuppressWarnings("deprecation")
@@ -237,7 +217,7 @@ public class HiveRecordSink
             return result;
         }
         catch (SerDeException | ReflectiveOperationException e) {
-            throw Throwables.propagate(e);
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to create serializer: " + serializerName, e);
         }
     }
 
@@ -248,7 +228,7 @@ public class HiveRecordSink
             return ((HiveOutputFormat<?, ?>) writer).getHiveRecordWriter(conf, target, Text.class, false, properties, Reporter.NULL);
         }
         catch (IOException | ReflectiveOperationException e) {
-            throw Throwables.propagate(e);
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to create writer for " + target, e);
         }
     }
 
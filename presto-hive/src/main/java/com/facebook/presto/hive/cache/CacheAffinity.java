@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import com.facebook.presto.hive.HiveClientConfig;
+import com.facebook.presto.hive.HiveConnectorId;
+import com.facebook.presto.spi.HostAddress;
+import com.facebook.presto.spi.Node;
+import com.facebook.presto.spi.NodeManager;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import com.google.common.hash.Hashing;
+
+import javax.inject.Inject;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Chooses the workers that should preferably read a file, so that the splits of the file
+ * tend to run where the file is already in the {@link LocalFileCache}.
+ * <p>
+ * Workers are chosen by rendezvous hashing of the file path, so adding or removing a worker
+ * only moves the files preferred by that worker. The hosts are scheduling hints, the splits
+ * can still run on any worker.
+ */
+public class CacheAffinity
+{
+    private static final int PREFERRED_NODES = 2;
+
+    private final String connectorId;
+    private final NodeManager nodeManager;
+    private final boolean enabled;
+
+    @Inject
+    public CacheAffinity(HiveConnectorId connectorId, HiveClientConfig config, NodeManager nodeManager)
+    {
+        this(checkNotNull(connectorId, "connectorId is null").toString(),
+                nodeManager,
+                config.isLocalCacheEnabled() && config.isLocalCacheAffinitySchedulingEnabled());
+    }
+
+    public CacheAffinity(String connectorId, NodeManager nodeManager, boolean enabled)
+    {
+        this.connectorId = checkNotNull(connectorId, "connectorId is null");
+        this.nodeManager = checkNotNull(nodeManager, "nodeManager is null");
+        this.enabled = enabled;
+    }
+
+    public Optional<List<HostAddress>> getPreferredHosts(String path)
+    {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Set<Node> nodes = nodeManager.getActiveDatasourceNodes(connectorId);
+        if (nodes.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<Node> preferred = Ordering.natural()
+                .onResultOf((Node node) -> score(node, path))
+                .greatestOf(nodes, PREFERRED_NODES);
+
+        ImmutableList.Builder<HostAddress> hosts = ImmutableList.builder();
+        for (Node node : preferred) {
+            hosts.add(node.getHostAndPort());
+        }
+        return Optional.of(hosts.build());
+    }
+
+    private static long score(Node node, String path)
+    {
+        return Hashing.murmur3_128().newHasher()
+                .putString(node.getNodeIdentifier(), UTF_8)
+                .putString(path, UTF_8)
+                .hash()
+                .asLong();
+    }
+}
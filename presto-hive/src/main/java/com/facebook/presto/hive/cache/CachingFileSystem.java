@@ -0,0 +1,253 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import io.airlift.units.DataSize;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FilterFileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.min;
+import static java.lang.String.format;
+
+/**
+ * Serves reads of another file system from a {@link LocalFileCache}. All other operations
+ * are passed through unchanged.
+ * <p>
+ * The file system is installed for a scheme by {@link #install}, which keeps the original
+ * implementation of the scheme as the delegate.
+ */
+public class CachingFileSystem
+        extends FilterFileSystem
+{
+    public static final String LOCAL_CACHE_DIRECTORY = "presto.local-cache.directory";
+    public static final String LOCAL_CACHE_MAX_SIZE = "presto.local-cache.max-size";
+    public static final String LOCAL_CACHE_PAGE_SIZE = "presto.local-cache.page-size";
+    private static final String DELEGATE_IMPL = "presto.local-cache.delegate.fs.%s.impl";
+
+    private LocalFileCache cache;
+
+    public static void install(Configuration config, String scheme, File directory, DataSize maxSize, DataSize pageSize)
+            throws IOException
+    {
+        Class<? extends FileSystem> delegateClass = FileSystem.getFileSystemClass(scheme, config);
+        checkArgument(delegateClass != CachingFileSystem.class, "cache is already installed for scheme: %s", scheme);
+
+        config.setClass(format(DELEGATE_IMPL, scheme), delegateClass, FileSystem.class);
+        config.setClass(format("fs.%s.impl", scheme), CachingFileSystem.class, FileSystem.class);
+        config.set(LOCAL_CACHE_DIRECTORY, directory.getPath());
+        config.set(LOCAL_CACHE_MAX_SIZE, maxSize.toString());
+        config.set(LOCAL_CACHE_PAGE_SIZE, pageSize.toString());
+    }
+
+    @Override
+    public void initialize(URI uri, Configuration conf)
+            throws IOException
+    {
+        Class<? extends FileSystem> delegateClass = conf.getClass(format(DELEGATE_IMPL, uri.getScheme()), null, FileSystem.class);
+        checkState(delegateClass != null, "no delegate file system configured for scheme: %s", uri.getScheme());
+        fs = ReflectionUtils.newInstance(delegateClass, conf);
+        fs.initialize(uri, conf);
+
+        super.initialize(uri, conf);
+
+        cache = LocalFileCache.getInstance(
+                new File(conf.get(LOCAL_CACHE_DIRECTORY)),
+                DataSize.valueOf(conf.get(LOCAL_CACHE_MAX_SIZE)),
+                DataSize.valueOf(conf.get(LOCAL_CACHE_PAGE_SIZE)));
+    }
+
+    @Override
+    public FSDataInputStream open(Path path, int bufferSize)
+            throws IOException
+    {
+        FileStatus status = fs.getFileStatus(path);
+        String fileId = LocalFileCache.getFileId(status.getPath().toString(), status.getModificationTime(), status.getLen());
+        return new FSDataInputStream(new CachingInputStream(fs, path, bufferSize, status.getLen(), fileId, cache));
+    }
+
+    @Override
+    public RemoteIterator<LocatedFileStatus> listLocatedStatus(Path path)
+            throws IOException
+    {
+        // some file systems implement listing located files more efficiently than the default
+        return fs.listLocatedStatus(path);
+    }
+
+    private static class CachingInputStream
+            extends FSInputStream
+    {
+        private final FileSystem fileSystem;
+        private final Path path;
+        private final int bufferSize;
+        private final long length;
+        private final String fileId;
+        private final LocalFileCache cache;
+        private final int pageSize;
+
+        private FSDataInputStream remote;
+        private boolean closed;
+        private long position;
+
+        // last page read, so small sequential reads do not go to disk for every call
+        private byte[] currentPage;
+        private long currentPageIndex = -1;
+
+        public CachingInputStream(FileSystem fileSystem, Path path, int bufferSize, long length, String fileId, LocalFileCache cache)
+        {
+            this.fileSystem = checkNotNull(fileSystem, "fileSystem is null");
+            this.path = checkNotNull(path, "path is null");
+            this.bufferSize = bufferSize;
+            this.length = length;
+            this.fileId = checkNotNull(fileId, "fileId is null");
+            this.cache = checkNotNull(cache, "cache is null");
+            this.pageSize = cache.getPageSize();
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            closed = true;
+            currentPage = null;
+            if (remote != null) {
+                remote.close();
+                remote = null;
+            }
+        }
+
+        @Override
+        public void seek(long pos)
+                throws IOException
+        {
+            checkState(!closed, "already closed");
+            if (pos < 0 || pos > length) {
+                throw new EOFException(format("Cannot seek to %s in %s of length %s", pos, path, length));
+            }
+            position = pos;
+        }
+
+        @Override
+        public long getPos()
+        {
+            return position;
+        }
+
+        @Override
+        public boolean seekToNewSource(long targetPos)
+        {
+            return false;
+        }
+
+        @Override
+        public int available()
+        {
+            return (int) min(length - position, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int read()
+                throws IOException
+        {
+            byte[] buffer = new byte[1];
+            if (read(buffer, 0, 1) <= 0) {
+                return -1;
+            }
+            return buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length)
+                throws IOException
+        {
+            int bytesRead = read(position, buffer, offset, length);
+            if (bytesRead > 0) {
+                position += bytesRead;
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public int read(long position, byte[] buffer, int offset, int length)
+                throws IOException
+        {
+            checkState(!closed, "already closed");
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= this.length) {
+                return -1;
+            }
+
+            int bytesToRead = (int) min(length, this.length - position);
+            int bytesRead = 0;
+            while (bytesRead < bytesToRead) {
+                long pageIndex = (position + bytesRead) / pageSize;
+                byte[] page = getPage(pageIndex);
+                int pageOffset = (int) ((position + bytesRead) - (pageIndex * pageSize));
+                int chunk = min(bytesToRead - bytesRead, page.length - pageOffset);
+                System.arraycopy(page, pageOffset, buffer, offset + bytesRead, chunk);
+                bytesRead += chunk;
+            }
+            return bytesRead;
+        }
+
+        private byte[] getPage(long pageIndex)
+                throws IOException
+        {
+            if (pageIndex == currentPageIndex) {
+                return currentPage;
+            }
+
+            byte[] page = cache.readPage(fileId, pageIndex);
+            if (page == null) {
+                page = readRemotePage(pageIndex);
+                cache.writePage(fileId, pageIndex, page, page.length);
+            }
+
+            currentPage = page;
+            currentPageIndex = pageIndex;
+            return page;
+        }
+
+        private byte[] readRemotePage(long pageIndex)
+                throws IOException
+        {
+            if (remote == null) {
+                remote = fileSystem.open(path, bufferSize);
+            }
+
+            long pageOffset = pageIndex * pageSize;
+            byte[] page = new byte[(int) min(pageSize, length - pageOffset)];
+            remote.readFully(pageOffset, page);
+            cache.getStats().pageMiss(page.length);
+            return page;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Ints;
+import io.airlift.log.Logger;
+import io.airlift.units.DataSize;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+/**
+ * Worker local cache of fixed size pages of remote files, stored as one file per page
+ * on local disk and evicted in least recently used order.
+ * <p>
+ * Pages are identified by the path, modification time and length of the remote file,
+ * so a rewritten file never returns stale data. The pages are stored in a subdirectory
+ * of the configured directory that contains a marker file. The cache is not persisted,
+ * so the pages of a previous cache are deleted when the cache is created. A subdirectory
+ * without the marker file is never deleted.
+ */
+@ThreadSafe
+public class LocalFileCache
+{
+    private static final Logger log = Logger.get(LocalFileCache.class);
+
+    private static final String PAGES_DIRECTORY = "presto-page-cache";
+    private static final String MARKER_FILE = ".presto-page-cache";
+
+    // CachingFileSystem is created by Hadoop and cannot be injected, so there is one cache per directory
+    private static final ConcurrentMap<File, LocalFileCache> INSTANCES = new ConcurrentHashMap<>();
+    private static final LocalFileCacheStats SHARED_STATS = new LocalFileCacheStats();
+
+    private final File directory;
+    private final long maxSizeBytes;
+    private final int pageSize;
+    private final LocalFileCacheStats stats;
+
+    @GuardedBy("this")
+    private final LinkedHashMap<PageKey, Integer> pages = new LinkedHashMap<>(16, 0.75f, true);
+    @GuardedBy("this")
+    private long cachedBytes;
+
+    public static LocalFileCache getInstance(File directory, DataSize maxSize, DataSize pageSize)
+    {
+        LocalFileCache cache = INSTANCES.computeIfAbsent(directory.getAbsoluteFile(), file -> new LocalFileCache(file, maxSize, pageSize, SHARED_STATS));
+        checkArgument(cache.maxSizeBytes == maxSize.toBytes() && cache.pageSize == pageSize.toBytes(),
+                "Local file cache in %s already exists with a different configuration: %s", directory, cache);
+        return cache;
+    }
+
+    /**
+     * Statistics of all caches created by {@link #getInstance}.
+     */
+    public static LocalFileCacheStats getSharedStats()
+    {
+        return SHARED_STATS;
+    }
+
+    public LocalFileCache(File directory, DataSize maxSize, DataSize pageSize, LocalFileCacheStats stats)
+    {
+        this.directory = new File(checkNotNull(directory, "directory is null"), PAGES_DIRECTORY);
+        this.maxSizeBytes = checkNotNull(maxSize, "maxSize is null").toBytes();
+        this.pageSize = Ints.checkedCast(checkNotNull(pageSize, "pageSize is null").toBytes());
+        checkArgument(this.pageSize > 0, "pageSize must be positive");
+        checkArgument(maxSizeBytes >= this.pageSize, "maxSize must be at least pageSize");
+        this.stats = checkNotNull(stats, "stats is null");
+
+        Path marker = this.directory.toPath().resolve(MARKER_FILE);
+        try {
+            if (this.directory.exists()) {
+                String[] files = this.directory.list();
+                checkArgument(Files.isRegularFile(marker) || (files != null && files.length == 0), "Directory %s exists but was not created by the local file cache", this.directory);
+                deleteContents(this.directory.toPath());
+            }
+            createDirectories(this.directory.toPath());
+            Files.createFile(marker);
+        }
+        catch (IOException e) {
+            throw propagate(e);
+        }
+    }
+
+    public static String getFileId(String path, long modificationTime, long length)
+    {
+        return Hashing.sha256().newHasher()
+                .putString(path, UTF_8)
+                .putLong(modificationTime)
+                .putLong(length)
+                .hash()
+                .toString();
+    }
+
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    public LocalFileCacheStats getStats()
+    {
+        return stats;
+    }
+
+    /**
+     * @return the page, or null if it is not cached
+     */
+    public byte[] readPage(String fileId, long pageIndex)
+    {
+        PageKey key = new PageKey(fileId, pageIndex);
+
+        Integer length;
+        synchronized (this) {
+            length = pages.get(key);
+        }
+        if (length == null) {
+            return null;
+        }
+
+        byte[] page = new byte[length];
+        try (RandomAccessFile file = new RandomAccessFile(getPageFile(key), "r")) {
+            if (file.length() != length) {
+                throw new IOException("Unexpected page length: " + file.length());
+            }
+            file.readFully(page);
+        }
+        catch (IOException e) {
+            // the page was evicted concurrently or removed from disk, so it is loaded again
+            invalidate(key);
+            return null;
+        }
+
+        stats.pageHit(length);
+        return page;
+    }
+
+    public void writePage(String fileId, long pageIndex, byte[] page, int length)
+    {
+        checkArgument(length <= pageSize, "page is larger than pageSize");
+        PageKey key = new PageKey(fileId, pageIndex);
+        synchronized (this) {
+            if (pages.containsKey(key)) {
+                return;
+            }
+        }
+
+        // write to a temporary file, so readers never see a partial page
+        File pageFile = getPageFile(key);
+        Path tempFile = null;
+        try {
+            createDirectories(pageFile.getParentFile().toPath());
+            tempFile = Files.createTempFile(pageFile.getParentFile().toPath(), pageFile.getName(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                out.write(page, 0, length);
+            }
+            Files.move(tempFile, pageFile.toPath(), ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            log.warn(e, "Failed to write cache page %s", pageFile);
+            if (tempFile != null) {
+                tempFile.toFile().delete();
+            }
+            return;
+        }
+
+        List<File> evicted = new ArrayList<>();
+        synchronized (this) {
+            Integer oldLength = pages.put(key, length);
+            long delta = length - (oldLength == null ? 0 : oldLength);
+            cachedBytes += delta;
+            stats.cachedBytesChanged(delta);
+
+            Iterator<Entry<PageKey, Integer>> iterator = pages.entrySet().iterator();
+            while (cachedBytes > maxSizeBytes && iterator.hasNext()) {
+                Entry<PageKey, Integer> entry = iterator.next();
+                iterator.remove();
+                cachedBytes -= entry.getValue();
+                stats.cachedBytesChanged(-entry.getValue());
+                stats.pageEvicted();
+                evicted.add(getPageFile(entry.getKey()));
+            }
+        }
+
+        // open readers of an evicted page can still read the deleted file
+        for (File file : evicted) {
+            file.delete();
+        }
+    }
+
+    public synchronized long getCachedBytes()
+    {
+        return cachedBytes;
+    }
+
+    private synchronized void invalidate(PageKey key)
+    {
+        Integer length = pages.remove(key);
+        if (length != null) {
+            cachedBytes -= length;
+            stats.cachedBytesChanged(-length);
+        }
+    }
+
+    private File getPageFile(PageKey key)
+    {
+        // spread pages over subdirectories to keep directories small
+        File parent = new File(directory, key.getFileId().substring(0, 2));
+        return new File(parent, key.getFileId() + "-" + key.getPageIndex());
+    }
+
+    private static void deleteContents(Path directory)
+            throws IOException
+    {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+                    throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e)
+                    throws IOException
+            {
+                if (e != null) {
+                    throw e;
+                }
+                if (!dir.equals(directory)) {
+                    Files.delete(dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("directory", directory)
+                .add("maxSizeBytes", maxSizeBytes)
+                .add("pageSize", pageSize)
+                .toString();
+    }
+
+    private static final class PageKey
+    {
+        private final String fileId;
+        private final long pageIndex;
+
+        private PageKey(String fileId, long pageIndex)
+        {
+            this.fileId = checkNotNull(fileId, "fileId is null");
+            this.pageIndex = pageIndex;
+        }
+
+        public String getFileId()
+        {
+            return fileId;
+        }
+
+        public long getPageIndex()
+        {
+            return pageIndex;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(fileId, pageIndex);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            PageKey other = (PageKey) obj;
+            return Objects.equals(this.fileId, other.fileId) &&
+                    this.pageIndex == other.pageIndex;
+        }
+    }
+}
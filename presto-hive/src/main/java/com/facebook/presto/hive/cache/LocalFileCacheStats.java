@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import io.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LocalFileCacheStats
+{
+    private final CounterStat hits = new CounterStat();
+    private final CounterStat misses = new CounterStat();
+    private final CounterStat bytesReadFromCache = new CounterStat();
+    private final CounterStat bytesReadFromRemote = new CounterStat();
+    private final CounterStat evictions = new CounterStat();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    public void pageHit(int bytes)
+    {
+        hits.update(1);
+        bytesReadFromCache.update(bytes);
+    }
+
+    public void pageMiss(int bytes)
+    {
+        misses.update(1);
+        bytesReadFromRemote.update(bytes);
+    }
+
+    public void pageEvicted()
+    {
+        evictions.update(1);
+    }
+
+    public void cachedBytesChanged(long delta)
+    {
+        cachedBytes.addAndGet(delta);
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHits()
+    {
+        return hits;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getMisses()
+    {
+        return misses;
+    }
+
+    @Managed
+    public double getHitRatio()
+    {
+        long hitCount = hits.getTotalCount();
+        long total = hitCount + misses.getTotalCount();
+        if (total == 0) {
+            return 0;
+        }
+        return ((double) hitCount) / total;
+    }
+
+    /**
+     * Bytes served from local disk, i.e. not read from remote storage.
+     */
+    @Managed
+    @Nested
+    public CounterStat getBytesReadFromCache()
+    {
+        return bytesReadFromCache;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getBytesReadFromRemote()
+    {
+        return bytesReadFromRemote;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getEvictions()
+    {
+        return evictions;
+    }
+
+    @Managed
+    public long getCachedBytes()
+    {
+        return cachedBytes.get();
+    }
+}
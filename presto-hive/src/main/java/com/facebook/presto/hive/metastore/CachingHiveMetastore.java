@@ -28,14 +28,20 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.airlift.log.Logger;
 import io.airlift.units.Duration;
 import org.apache.hadoop.hive.common.FileUtils;
 import org.apache.hadoop.hive.metastore.TableType;
 import org.apache.hadoop.hive.metastore.Warehouse;
 import org.apache.hadoop.hive.metastore.api.AlreadyExistsException;
 import org.apache.hadoop.hive.metastore.api.Database;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
 import org.apache.hadoop.hive.metastore.api.InvalidObjectException;
 import org.apache.hadoop.hive.metastore.api.InvalidOperationException;
 import org.apache.hadoop.hive.metastore.api.MetaException;
@@ -51,13 +57,19 @@ import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_METASTORE_ERROR;
 import static com.facebook.presto.hive.HiveUtil.PRESTO_VIEW_FLAG;
@@ -78,6 +90,11 @@ import static org.apache.hadoop.hive.metastore.api.hive_metastoreConstants.HIVE_
 public class CachingHiveMetastore
         implements HiveMetastore
 {
+    private static final Logger log = Logger.get(CachingHiveMetastore.class);
+    private static final int REFRESH_PARTITION_BATCH_SIZE = 100;
+    // larger results are listed by name and fetched in batches instead
+    private static final short MAX_PARTITIONS_BY_FILTER = 10_000;
+
     private final CachingHiveMetastoreStats stats = new CachingHiveMetastoreStats();
     protected final HiveCluster clientProvider;
     private final LoadingCache<String, List<String>> databaseNamesCache;
@@ -88,6 +105,12 @@ public class CachingHiveMetastore
     private final LoadingCache<HiveTableName, Table> tableCache;
     private final LoadingCache<HivePartitionName, Partition> partitionCache;
     private final LoadingCache<PartitionFilter, List<String>> partitionFilterCache;
+    private final LoadingCache<PartitionFilterExpression, Optional<List<String>>> partitionFilterExpressionCache;
+
+    private final long expiresAfterWriteMillis;
+    private final long refreshMillis;
+    // entries loaded from a snapshot, which expire based on the age of the snapshot instead of the load time
+    private final Map<LoadingCache<?, ?>, ConcurrentMap<Object, SnapshotEntry>> snapshotEntries;
 
     @Inject
     public CachingHiveMetastore(HiveCluster hiveCluster, @ForHiveMetastore ExecutorService executor, HiveClientConfig hiveClientConfig)
@@ -104,6 +127,8 @@ public class CachingHiveMetastore
 
         long expiresAfterWriteMillis = checkNotNull(cacheTtl, "cacheTtl is null").toMillis();
         long refreshMills = checkNotNull(refreshInterval, "refreshInterval is null").toMillis();
+        this.expiresAfterWriteMillis = expiresAfterWriteMillis;
+        this.refreshMillis = refreshMills;
 
         databaseNamesCache = CacheBuilder.newBuilder()
                 .expireAfterWrite(expiresAfterWriteMillis, MILLISECONDS)
@@ -196,6 +221,19 @@ public class CachingHiveMetastore
                     }
                 }, executor));
 
+        partitionFilterExpressionCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(expiresAfterWriteMillis, MILLISECONDS)
+                .refreshAfterWrite(refreshMills, MILLISECONDS)
+                .build(asyncReloading(new CacheLoader<PartitionFilterExpression, Optional<List<String>>>()
+                {
+                    @Override
+                    public Optional<List<String>> load(PartitionFilterExpression filterExpression)
+                            throws Exception
+                    {
+                        return loadPartitionNamesByFilter(filterExpression);
+                    }
+                }, executor));
+
         partitionCache = CacheBuilder.newBuilder()
                 .expireAfterWrite(expiresAfterWriteMillis, MILLISECONDS)
                 .refreshAfterWrite(refreshMills, MILLISECONDS)
@@ -215,6 +253,11 @@ public class CachingHiveMetastore
                         return loadPartitionsByNames(partitionNames);
                     }
                 }, executor));
+
+        snapshotEntries = ImmutableMap.<LoadingCache<?, ?>, ConcurrentMap<Object, SnapshotEntry>>of(
+                tableCache, new ConcurrentHashMap<>(),
+                partitionNamesCache, new ConcurrentHashMap<>(),
+                partitionCache, new ConcurrentHashMap<>());
     }
 
     @Managed
@@ -236,11 +279,187 @@ public class CachingHiveMetastore
         tableCache.invalidateAll();
         partitionCache.invalidateAll();
         partitionFilterCache.invalidateAll();
+        partitionFilterExpressionCache.invalidateAll();
+        for (ConcurrentMap<Object, SnapshotEntry> entries : snapshotEntries.values()) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return tables that have cached metadata
+     */
+    public Set<SchemaTableName> getCachedTables()
+    {
+        ImmutableSet.Builder<SchemaTableName> tables = ImmutableSet.builder();
+        for (HiveTableName hiveTableName : Iterables.concat(tableCache.asMap().keySet(), partitionNamesCache.asMap().keySet())) {
+            tables.add(new SchemaTableName(hiveTableName.getDatabaseName(), hiveTableName.getTableName()));
+        }
+        return tables.build();
     }
 
-    private static <K, V, E extends Exception> V get(LoadingCache<K, V> cache, K key, Class<E> exceptionClass)
+    /**
+     * Reloads the table and its partition names from the metastore. Only the partitions
+     * that were added since the partition names were last loaded are fetched; cached
+     * partitions are refreshed on access as usual.
+     *
+     * @return number of partitions that were added or dropped
+     */
+    public int refreshTable(String databaseName, String tableName)
+            throws Exception
+    {
+        HiveTableName hiveTableName = HiveTableName.table(databaseName, tableName);
+
+        List<String> cachedNames = partitionNamesCache.getIfPresent(hiveTableName);
+        try {
+            putFresh(tableCache, hiveTableName, loadTable(hiveTableName));
+            if (cachedNames == null) {
+                // partitions were never listed, so there is nothing to keep up to date
+                return 0;
+            }
+
+            List<String> currentNames = loadPartitionNames(hiveTableName);
+            Set<String> cached = ImmutableSet.copyOf(cachedNames);
+            Set<String> current = ImmutableSet.copyOf(currentNames);
+
+            List<HivePartitionName> added = new ArrayList<>();
+            for (String partitionName : Sets.difference(current, cached)) {
+                added.add(HivePartitionName.partition(databaseName, tableName, partitionName));
+            }
+            for (List<HivePartitionName> batch : Lists.partition(added, REFRESH_PARTITION_BATCH_SIZE)) {
+                partitionCache.putAll(loadPartitionsByNames(batch));
+            }
+
+            Set<String> dropped = Sets.difference(cached, current);
+            for (String partitionName : dropped) {
+                invalidate(partitionCache, HivePartitionName.partition(databaseName, tableName, partitionName));
+            }
+
+            putFresh(partitionNamesCache, hiveTableName, currentNames);
+            if (!added.isEmpty() || !dropped.isEmpty()) {
+                invalidatePartitionFilters(hiveTableName);
+            }
+            return added.size() + dropped.size();
+        }
+        catch (NoSuchObjectException | HiveViewNotSupportedException e) {
+            invalidateTable(hiveTableName, cachedNames);
+            return 0;
+        }
+    }
+
+    public MetastoreCacheSnapshot createSnapshot()
+    {
+        ImmutableMap.Builder<SchemaTableName, List<String>> partitionNames = ImmutableMap.builder();
+        for (Entry<HiveTableName, List<String>> entry : partitionNamesCache.asMap().entrySet()) {
+            partitionNames.put(entry.getKey().toSchemaTableName(), entry.getValue());
+        }
+
+        Map<SchemaTableName, ImmutableMap.Builder<String, Partition>> partitions = new HashMap<>();
+        for (Entry<HivePartitionName, Partition> entry : partitionCache.asMap().entrySet()) {
+            partitions.computeIfAbsent(entry.getKey().getHiveTableName().toSchemaTableName(), key -> ImmutableMap.builder())
+                    .put(entry.getKey().getPartitionName(), entry.getValue());
+        }
+
+        return new MetastoreCacheSnapshot(
+                System.currentTimeMillis(),
+                ImmutableList.copyOf(tableCache.asMap().values()),
+                partitionNames.build(),
+                Maps.transformValues(partitions, ImmutableMap.Builder::build));
+    }
+
+    /**
+     * Adds the entries of the snapshot to the cache. The cache resets the write time of an
+     * added entry, so the entries are tracked separately: they are refreshed once the snapshot
+     * is older than the refresh interval, and expire once it is older than the cache TTL.
+     * A snapshot that is already older than the cache TTL is ignored.
+     *
+     * @return whether the snapshot was loaded
+     */
+    public boolean loadSnapshot(MetastoreCacheSnapshot snapshot)
+    {
+        if (System.currentTimeMillis() - snapshot.getCreateTime() >= expiresAfterWriteMillis) {
+            return false;
+        }
+
+        long createTime = snapshot.getCreateTime();
+        for (Table table : snapshot.getTables()) {
+            putSnapshotEntry(tableCache, HiveTableName.table(table.getDbName(), table.getTableName()), table, createTime);
+        }
+        for (Entry<SchemaTableName, List<String>> entry : snapshot.getPartitionNames().entrySet()) {
+            putSnapshotEntry(partitionNamesCache, HiveTableName.table(entry.getKey().getSchemaName(), entry.getKey().getTableName()), entry.getValue(), createTime);
+        }
+        for (Entry<SchemaTableName, Map<String, Partition>> entry : snapshot.getPartitions().entrySet()) {
+            SchemaTableName tableName = entry.getKey();
+            for (Entry<String, Partition> partition : entry.getValue().entrySet()) {
+                putSnapshotEntry(partitionCache, HivePartitionName.partition(tableName.getSchemaName(), tableName.getTableName(), partition.getKey()), partition.getValue(), createTime);
+            }
+        }
+        return true;
+    }
+
+    private <K, V> void putSnapshotEntry(LoadingCache<K, V> cache, K key, V value, long createTime)
+    {
+        snapshotEntries.get(cache).put(key, new SnapshotEntry(createTime));
+        cache.put(key, value);
+    }
+
+    private <K, V> void putFresh(LoadingCache<K, V> cache, K key, V value)
+    {
+        cache.put(key, value);
+        snapshotEntries.get(cache).remove(key);
+    }
+
+    private <K> void invalidate(LoadingCache<K, ?> cache, K key)
+    {
+        cache.invalidate(key);
+        snapshotEntries.get(cache).remove(key);
+    }
+
+    /**
+     * Refreshes or expires an entry that was loaded from a snapshot, based on the age of the snapshot.
+     */
+    private <K> void checkSnapshotEntry(LoadingCache<K, ?> cache, K key)
+    {
+        ConcurrentMap<Object, SnapshotEntry> entries = snapshotEntries.get(cache);
+        if (entries == null) {
+            return;
+        }
+        SnapshotEntry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+
+        long age = System.currentTimeMillis() - entry.getCreateTime();
+        if (age >= expiresAfterWriteMillis) {
+            entries.remove(key, entry);
+            cache.invalidate(key);
+        }
+        else if (age >= refreshMillis && entry.startRefresh()) {
+            cache.refresh(key);
+        }
+    }
+
+    private void invalidateTable(HiveTableName hiveTableName, List<String> partitionNames)
+    {
+        invalidate(tableCache, hiveTableName);
+        invalidate(partitionNamesCache, hiveTableName);
+        if (partitionNames != null) {
+            for (String partitionName : partitionNames) {
+                invalidate(partitionCache, new HivePartitionName(hiveTableName, partitionName));
+            }
+        }
+        invalidatePartitionFilters(hiveTableName);
+    }
+
+    private void invalidatePartitionFilters(HiveTableName hiveTableName)
+    {
+        partitionFilterCache.asMap().keySet().removeIf(filter -> filter.getHiveTableName().equals(hiveTableName));
+        partitionFilterExpressionCache.asMap().keySet().removeIf(filter -> filter.getHiveTableName().equals(hiveTableName));
+    }
+
+    private <K, V, E extends Exception> V get(LoadingCache<K, V> cache, K key, Class<E> exceptionClass)
             throws E
     {
+        checkSnapshotEntry(cache, key);
         try {
             return cache.get(key);
         }
@@ -251,9 +470,12 @@ public class CachingHiveMetastore
         }
     }
 
-    private static <K, V, E extends Exception> Map<K, V> getAll(LoadingCache<K, V> cache, Iterable<K> keys, Class<E> exceptionClass)
+    private <K, V, E extends Exception> Map<K, V> getAll(LoadingCache<K, V> cache, Iterable<K> keys, Class<E> exceptionClass)
             throws E
     {
+        for (K key : keys) {
+            checkSnapshotEntry(cache, key);
+        }
         try {
             return cache.getAll(keys);
         }
@@ -439,7 +661,7 @@ public class CachingHiveMetastore
                         try (HiveMetastoreClient client = clientProvider.createMetastoreClient()) {
                             client.drop_table(databaseName, tableName, true);
                         }
-                        tableCache.invalidate(new HiveTableName(databaseName, tableName));
+                        invalidate(tableCache, new HiveTableName(databaseName, tableName));
                         tableNamesCache.invalidate(databaseName);
                         viewNamesCache.invalidate(databaseName);
                         return null;
@@ -473,7 +695,7 @@ public class CachingHiveMetastore
                             table.setTableName(newTableName);
                             client.alter_table(databaseName, tableName, table);
                         }
-                        tableCache.invalidate(new HiveTableName(databaseName, tableName));
+                        invalidate(tableCache, new HiveTableName(databaseName, tableName));
                         tableNamesCache.invalidate(databaseName);
                         viewNamesCache.invalidate(databaseName);
                         return null;
@@ -577,6 +799,75 @@ public class CachingHiveMetastore
         }
     }
 
+    /**
+     * @return the partition names, or empty if the filter cannot be evaluated by the metastore,
+     * it matches too many partitions, or the metastore call failed
+     */
+    @Override
+    public Optional<List<String>> getPartitionNamesByFilter(String databaseName, String tableName, String filter)
+            throws NoSuchObjectException
+    {
+        try {
+            return get(partitionFilterExpressionCache, PartitionFilterExpression.filterExpression(databaseName, tableName, filter), NoSuchObjectException.class);
+        }
+        catch (PrestoException e) {
+            if (e.getErrorCode().getCode() != HIVE_METASTORE_ERROR.toErrorCode().getCode()) {
+                throw e;
+            }
+            // failures are not cached, so the filter is tried again by the next query
+            log.debug(e, "Error evaluating partition filter %s on %s.%s", filter, databaseName, tableName);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<List<String>> loadPartitionNamesByFilter(final PartitionFilterExpression filterExpression)
+            throws Exception
+    {
+        final String databaseName = filterExpression.getHiveTableName().getDatabaseName();
+        final String tableName = filterExpression.getHiveTableName().getTableName();
+        final List<String> partitionColumnNames = ImmutableList.copyOf(transform(getTable(databaseName, tableName).getPartitionKeys(), FieldSchema::getName));
+
+        List<Partition> partitions;
+        try {
+            // a failed filter falls back to listing the partition names, so it is not retried
+            partitions = retry()
+                    .stopOn(TException.class)
+                    .stopOnIllegalExceptions()
+                    .run("getPartitionsByFilter", stats.getGetPartitionsByFilter().wrap(() -> {
+                        try (HiveMetastoreClient client = clientProvider.createMetastoreClient()) {
+                            return client.get_partitions_by_filter(databaseName, tableName, filterExpression.getFilter(), (short) (MAX_PARTITIONS_BY_FILTER + 1));
+                        }
+                    }));
+        }
+        catch (NoSuchObjectException e) {
+            throw e;
+        }
+        catch (MetaException e) {
+            // the metastore rejects filters it cannot evaluate, e.g. comparisons on
+            // non-string partition keys, so let the caller fall back to listing names
+            log.debug("Metastore cannot evaluate partition filter %s on %s.%s: %s", filterExpression.getFilter(), databaseName, tableName, e.getMessage());
+            return Optional.empty();
+        }
+        catch (TException e) {
+            throw new PrestoException(HIVE_METASTORE_ERROR, e);
+        }
+
+        if (partitions.size() > MAX_PARTITIONS_BY_FILTER) {
+            log.debug("Partition filter %s on %s.%s matches more than %s partitions", filterExpression.getFilter(), databaseName, tableName, MAX_PARTITIONS_BY_FILTER);
+            return Optional.empty();
+        }
+
+        // the partitions are usually fetched right after listing, so populate the cache with them
+        ImmutableList.Builder<String> partitionNames = ImmutableList.builder();
+        for (Partition partition : partitions) {
+            String partitionName = FileUtils.makePartName(partitionColumnNames, partition.getValues(), null);
+            putFresh(partitionCache, HivePartitionName.partition(databaseName, tableName, partitionName), partition);
+            partitionNames.add(partitionName);
+        }
+        return Optional.of(partitionNames.build());
+    }
+
+    @Override
     public Map<String, Partition> getPartitionsByNames(String databaseName, String tableName, List<String> partitionNames)
             throws NoSuchObjectException
     {
@@ -683,6 +974,11 @@ public class CachingHiveMetastore
             return tableName;
         }
 
+        public SchemaTableName toSchemaTableName()
+        {
+            return new SchemaTableName(databaseName, tableName);
+        }
+
         @Override
         public String toString()
         {
@@ -827,4 +1123,85 @@ public class CachingHiveMetastore
             return Objects.hash(hiveTableName, parts);
         }
     }
+
+    private static class PartitionFilterExpression
+    {
+        private final HiveTableName hiveTableName;
+        private final String filter;
+
+        private PartitionFilterExpression(HiveTableName hiveTableName, String filter)
+        {
+            this.hiveTableName = hiveTableName;
+            this.filter = filter;
+        }
+
+        public static PartitionFilterExpression filterExpression(String databaseName, String tableName, String filter)
+        {
+            return new PartitionFilterExpression(HiveTableName.table(databaseName, tableName), filter);
+        }
+
+        public HiveTableName getHiveTableName()
+        {
+            return hiveTableName;
+        }
+
+        public String getFilter()
+        {
+            return filter;
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("hiveTableName", hiveTableName)
+                    .add("filter", filter)
+                    .toString();
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            PartitionFilterExpression other = (PartitionFilterExpression) o;
+            return Objects.equals(hiveTableName, other.hiveTableName) &&
+                    Objects.equals(filter, other.filter);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(hiveTableName, filter);
+        }
+    }
+
+    private static class SnapshotEntry
+    {
+        private final long createTime;
+        private final AtomicBoolean refreshStarted = new AtomicBoolean();
+
+        public SnapshotEntry(long createTime)
+        {
+            this.createTime = createTime;
+        }
+
+        public long getCreateTime()
+        {
+            return createTime;
+        }
+
+        /**
+         * @return true the first time it is called
+         */
+        public boolean startRefresh()
+        {
+            return refreshStarted.compareAndSet(false, true);
+        }
+    }
 }
@@ -25,6 +25,7 @@ public class CachingHiveMetastoreStats
     private final HiveMetastoreApiStats getTable = new HiveMetastoreApiStats();
     private final HiveMetastoreApiStats getPartitionNames = new HiveMetastoreApiStats();
     private final HiveMetastoreApiStats getPartitionNamesPs = new HiveMetastoreApiStats();
+    private final HiveMetastoreApiStats getPartitionsByFilter = new HiveMetastoreApiStats();
     private final HiveMetastoreApiStats getPartitionByName = new HiveMetastoreApiStats();
     private final HiveMetastoreApiStats getPartitionsByNames = new HiveMetastoreApiStats();
     private final HiveMetastoreApiStats createTable = new HiveMetastoreApiStats();
@@ -80,6 +81,13 @@ public class CachingHiveMetastoreStats
         return getPartitionNamesPs;
     }
 
+    @Managed
+    @Nested
+    public HiveMetastoreApiStats getGetPartitionsByFilter()
+    {
+        return getPartitionsByFilter;
+    }
+
     @Managed
     @Nested
     public HiveMetastoreApiStats getGetPartitionByName()
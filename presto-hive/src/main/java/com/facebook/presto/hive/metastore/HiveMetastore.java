@@ -21,6 +21,7 @@ import org.weakref.jmx.Managed;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public interface HiveMetastore
 {
@@ -50,6 +51,13 @@ public interface HiveMetastore
     List<String> getPartitionNamesByParts(String databaseName, String tableName, List<String> parts)
             throws NoSuchObjectException;
 
+    /**
+     * @param filter partition filter expression in the metastore filter language
+     * @return names of the partitions matching the filter, or empty if the metastore cannot evaluate the filter
+     */
+    Optional<List<String>> getPartitionNamesByFilter(String databaseName, String tableName, String filter)
+            throws NoSuchObjectException;
+
     Map<String, Partition> getPartitionsByNames(String databaseName, String tableName, List<String> partitionNames)
             throws NoSuchObjectException;
 
@@ -28,6 +28,7 @@ import java.io.File;
 import java.net.URI;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -153,6 +154,13 @@ public class InMemoryHiveMetastore
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Optional<List<String>> getPartitionNamesByFilter(String databaseName, String tableName, String filter)
+            throws NoSuchObjectException
+    {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public Map<String, Partition> getPartitionsByNames(String databaseName, String tableName, List<String> partitionNames)
             throws NoSuchObjectException
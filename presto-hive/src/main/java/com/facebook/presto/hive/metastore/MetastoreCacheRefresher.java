@@ -0,0 +1,246 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.metastore;
+
+import com.facebook.presto.hive.HiveClientConfig;
+import com.facebook.presto.hive.HiveConnectorId;
+import com.facebook.presto.spi.SchemaTableName;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.log.Logger;
+import io.airlift.stats.CounterStat;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Keeps a {@link CachingHiveMetastore} warm across restarts and cache expiry.
+ * <p>
+ * The cache contents are periodically written to a snapshot file, which is loaded
+ * on startup so that the first queries do not have to load all metadata again. In
+ * addition, cached tables can be refreshed in the background at a per schema
+ * interval, which bounds the staleness of partition lists without the latency of a
+ * synchronous reload.
+ */
+public class MetastoreCacheRefresher
+{
+    private static final Logger log = Logger.get(MetastoreCacheRefresher.class);
+
+    private final CachingHiveMetastore metastore;
+    private final Optional<File> snapshotFile;
+    private final Duration snapshotInterval;
+    private final boolean backgroundRefreshEnabled;
+    private final Duration defaultRefreshInterval;
+    private final Map<String, Duration> schemaRefreshIntervals;
+
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Map<SchemaTableName, Long> lastRefreshTimes = new ConcurrentHashMap<>();
+
+    private final CounterStat tableRefreshes = new CounterStat();
+    private final CounterStat tableRefreshFailures = new CounterStat();
+    private final CounterStat partitionChanges = new CounterStat();
+    private final CounterStat snapshotWrites = new CounterStat();
+    private final CounterStat snapshotFailures = new CounterStat();
+
+    @Inject
+    public MetastoreCacheRefresher(HiveConnectorId connectorId, CachingHiveMetastore metastore, HiveClientConfig hiveClientConfig)
+    {
+        this(connectorId,
+                metastore,
+                Optional.ofNullable(hiveClientConfig.getMetastoreCacheSnapshotFile()),
+                hiveClientConfig.getMetastoreCacheSnapshotInterval(),
+                hiveClientConfig.isMetastoreCacheBackgroundRefreshEnabled(),
+                hiveClientConfig.getMetastoreRefreshInterval(),
+                hiveClientConfig.getMetastoreCacheSchemaRefreshIntervals());
+    }
+
+    public MetastoreCacheRefresher(
+            HiveConnectorId connectorId,
+            CachingHiveMetastore metastore,
+            Optional<File> snapshotFile,
+            Duration snapshotInterval,
+            boolean backgroundRefreshEnabled,
+            Duration defaultRefreshInterval,
+            Map<String, Duration> schemaRefreshIntervals)
+    {
+        checkNotNull(connectorId, "connectorId is null");
+        this.metastore = checkNotNull(metastore, "metastore is null");
+        this.snapshotFile = checkNotNull(snapshotFile, "snapshotFile is null");
+        this.snapshotInterval = checkNotNull(snapshotInterval, "snapshotInterval is null");
+        this.backgroundRefreshEnabled = backgroundRefreshEnabled;
+        this.defaultRefreshInterval = checkNotNull(defaultRefreshInterval, "defaultRefreshInterval is null");
+        this.schemaRefreshIntervals = ImmutableMap.copyOf(checkNotNull(schemaRefreshIntervals, "schemaRefreshIntervals is null"));
+        this.executor = newSingleThreadScheduledExecutor(daemonThreadsNamed("hive-metastore-cache-" + connectorId));
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (snapshotFile.isPresent()) {
+            loadSnapshot(snapshotFile.get());
+            long interval = snapshotInterval.toMillis();
+            executor.scheduleWithFixedDelay(() -> writeSnapshot(snapshotFile.get()), interval, interval, MILLISECONDS);
+        }
+
+        if (backgroundRefreshEnabled) {
+            long interval = getMinRefreshInterval().toMillis();
+            executor.scheduleWithFixedDelay(this::refreshTables, 0, interval, MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        executor.shutdownNow();
+        if (started.get() && snapshotFile.isPresent()) {
+            writeSnapshot(snapshotFile.get());
+        }
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getTableRefreshes()
+    {
+        return tableRefreshes;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getTableRefreshFailures()
+    {
+        return tableRefreshFailures;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getPartitionChanges()
+    {
+        return partitionChanges;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getSnapshotWrites()
+    {
+        return snapshotWrites;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getSnapshotFailures()
+    {
+        return snapshotFailures;
+    }
+
+    public Duration getRefreshInterval(String schemaName)
+    {
+        Duration interval = schemaRefreshIntervals.get(schemaName);
+        return (interval != null) ? interval : defaultRefreshInterval;
+    }
+
+    public void refreshTables()
+    {
+        long now = System.currentTimeMillis();
+        Set<SchemaTableName> tables = metastore.getCachedTables();
+        lastRefreshTimes.keySet().retainAll(tables);
+
+        for (SchemaTableName table : tables) {
+            // tables loaded on demand are fresh when they are first seen
+            long lastRefresh = lastRefreshTimes.computeIfAbsent(table, key -> now);
+            if (now - lastRefresh < getRefreshInterval(table.getSchemaName()).toMillis()) {
+                continue;
+            }
+
+            try {
+                partitionChanges.update(metastore.refreshTable(table.getSchemaName(), table.getTableName()));
+                tableRefreshes.update(1);
+            }
+            catch (Exception e) {
+                tableRefreshFailures.update(1);
+                log.warn(e, "Error refreshing metastore cache for table %s", table);
+            }
+            // do not retry failed tables until the next interval
+            lastRefreshTimes.put(table, System.currentTimeMillis());
+        }
+    }
+
+    private void loadSnapshot(File file)
+    {
+        if (!file.exists()) {
+            return;
+        }
+
+        try {
+            MetastoreCacheSnapshot snapshot = MetastoreCacheSnapshot.readFrom(file);
+            if (!metastore.loadSnapshot(snapshot)) {
+                log.info("Ignoring metastore cache snapshot %s that is older than the cache TTL", file);
+                return;
+            }
+            // entries older than the refresh interval of their schema are refreshed right away
+            for (SchemaTableName table : metastore.getCachedTables()) {
+                lastRefreshTimes.put(table, snapshot.getCreateTime());
+            }
+            log.info("Loaded metastore cache snapshot %s with %s tables", file, snapshot.getTables().size());
+        }
+        catch (IOException | RuntimeException e) {
+            log.warn(e, "Error loading metastore cache snapshot %s", file);
+        }
+    }
+
+    private void writeSnapshot(File file)
+    {
+        try {
+            metastore.createSnapshot().writeTo(file);
+            snapshotWrites.update(1);
+        }
+        catch (IOException | RuntimeException e) {
+            snapshotFailures.update(1);
+            log.warn(e, "Error writing metastore cache snapshot %s", file);
+        }
+    }
+
+    private Duration getMinRefreshInterval()
+    {
+        long millis = defaultRefreshInterval.toMillis();
+        for (Duration interval : schemaRefreshIntervals.values()) {
+            millis = min(millis, interval.toMillis());
+        }
+        // avoid spinning on tiny intervals
+        return new Duration(max(millis, 1000), MILLISECONDS);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.metastore;
+
+import com.facebook.presto.spi.SchemaTableName;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TCompactProtocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Point in time copy of the contents of a {@link CachingHiveMetastore}.
+ * <p>
+ * The snapshot is stored as a compressed stream of Thrift encoded metastore objects.
+ */
+public class MetastoreCacheSnapshot
+{
+    private static final int MAGIC = 0x484d4353; // HMCS
+    private static final int VERSION = 1;
+
+    private final long createTime;
+    private final List<Table> tables;
+    private final Map<SchemaTableName, List<String>> partitionNames;
+    private final Map<SchemaTableName, Map<String, Partition>> partitions;
+
+    public MetastoreCacheSnapshot(
+            long createTime,
+            List<Table> tables,
+            Map<SchemaTableName, List<String>> partitionNames,
+            Map<SchemaTableName, Map<String, Partition>> partitions)
+    {
+        this.createTime = createTime;
+        this.tables = ImmutableList.copyOf(checkNotNull(tables, "tables is null"));
+        this.partitionNames = ImmutableMap.copyOf(checkNotNull(partitionNames, "partitionNames is null"));
+        this.partitions = ImmutableMap.copyOf(checkNotNull(partitions, "partitions is null"));
+    }
+
+    /**
+     * @return creation time in milliseconds since the epoch
+     */
+    public long getCreateTime()
+    {
+        return createTime;
+    }
+
+    public List<Table> getTables()
+    {
+        return tables;
+    }
+
+    public Map<SchemaTableName, List<String>> getPartitionNames()
+    {
+        return partitionNames;
+    }
+
+    public Map<SchemaTableName, Map<String, Partition>> getPartitions()
+    {
+        return partitions;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file that is then renamed, so a crash
+     * while writing never leaves a truncated snapshot behind.
+     */
+    public void writeTo(File file)
+            throws IOException
+    {
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temporary))))) {
+                TSerializer serializer = new TSerializer(new TCompactProtocol.Factory());
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(createTime);
+
+                out.writeInt(tables.size());
+                for (Table table : tables) {
+                    writeObject(out, serializer, table);
+                }
+
+                out.writeInt(partitionNames.size());
+                for (Map.Entry<SchemaTableName, List<String>> entry : partitionNames.entrySet()) {
+                    writeTableName(out, entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (String partitionName : entry.getValue()) {
+                        out.writeUTF(partitionName);
+                    }
+                }
+
+                out.writeInt(partitions.size());
+                for (Map.Entry<SchemaTableName, Map<String, Partition>> entry : partitions.entrySet()) {
+                    writeTableName(out, entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (Map.Entry<String, Partition> partition : entry.getValue().entrySet()) {
+                        out.writeUTF(partition.getKey());
+                        writeObject(out, serializer, partition.getValue());
+                    }
+                }
+            }
+            move(temporary.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        }
+        finally {
+            deleteIfExists(temporary.toPath());
+        }
+    }
+
+    public static MetastoreCacheSnapshot readFrom(File file)
+            throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+            TDeserializer deserializer = new TDeserializer(new TCompactProtocol.Factory());
+
+            if (in.readInt() != MAGIC) {
+                throw new IOException(format("File is not a metastore cache snapshot: %s", file));
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(format("Unsupported metastore cache snapshot version %s: %s", version, file));
+            }
+            long createTime = in.readLong();
+
+            ImmutableList.Builder<Table> tables = ImmutableList.builder();
+            int tableCount = in.readInt();
+            for (int i = 0; i < tableCount; i++) {
+                tables.add(readObject(in, deserializer, new Table()));
+            }
+
+            Map<SchemaTableName, List<String>> partitionNames = new HashMap<>();
+            int partitionNamesCount = in.readInt();
+            for (int i = 0; i < partitionNamesCount; i++) {
+                SchemaTableName tableName = readTableName(in);
+                ImmutableList.Builder<String> names = ImmutableList.builder();
+                int count = in.readInt();
+                for (int j = 0; j < count; j++) {
+                    names.add(in.readUTF());
+                }
+                partitionNames.put(tableName, names.build());
+            }
+
+            Map<SchemaTableName, Map<String, Partition>> partitions = new HashMap<>();
+            int partitionsCount = in.readInt();
+            for (int i = 0; i < partitionsCount; i++) {
+                SchemaTableName tableName = readTableName(in);
+                ImmutableMap.Builder<String, Partition> tablePartitions = ImmutableMap.builder();
+                int count = in.readInt();
+                for (int j = 0; j < count; j++) {
+                    tablePartitions.put(in.readUTF(), readObject(in, deserializer, new Partition()));
+                }
+                partitions.put(tableName, tablePartitions.build());
+            }
+
+            return new MetastoreCacheSnapshot(createTime, tables.build(), partitionNames, partitions);
+        }
+    }
+
+    private static void writeTableName(DataOutputStream out, SchemaTableName tableName)
+            throws IOException
+    {
+        out.writeUTF(tableName.getSchemaName());
+        out.writeUTF(tableName.getTableName());
+    }
+
+    private static SchemaTableName readTableName(DataInputStream in)
+            throws IOException
+    {
+        String schemaName = in.readUTF();
+        return new SchemaTableName(schemaName, in.readUTF());
+    }
+
+    private static void writeObject(DataOutputStream out, TSerializer serializer, TBase<?, ?> object)
+            throws IOException
+    {
+        try {
+            byte[] bytes = serializer.serialize(object);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        catch (TException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static <T extends TBase<?, ?>> T readObject(DataInputStream in, TDeserializer deserializer, T object)
+            throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        try {
+            deserializer.deserialize(object, bytes);
+            return object;
+        }
+        catch (TException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -14,10 +14,12 @@
 package com.facebook.presto.hive.orc;
 
 import com.facebook.hive.orc.OrcSerde;
+import com.facebook.presto.hive.ForHiveClient;
 import com.facebook.presto.hive.HiveClientConfig;
 import com.facebook.presto.hive.HiveColumnHandle;
 import com.facebook.presto.hive.HivePageSourceFactory;
 import com.facebook.presto.hive.HivePartitionKey;
+import com.facebook.presto.orc.OrcMetadataCache;
 import com.facebook.presto.orc.metadata.DwrfMetadataReader;
 import com.facebook.presto.spi.ConnectorPageSource;
 import com.facebook.presto.spi.ConnectorSession;
@@ -33,14 +35,18 @@ import javax.inject.Inject;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 import static com.facebook.presto.hive.HiveSessionProperties.getOrcMaxBufferSize;
 import static com.facebook.presto.hive.HiveSessionProperties.getOrcMaxMergeDistance;
+import static com.facebook.presto.hive.HiveSessionProperties.getOrcMaxPrefetchSize;
 import static com.facebook.presto.hive.HiveSessionProperties.getOrcStreamBufferSize;
 import static com.facebook.presto.hive.HiveSessionProperties.isOptimizedReaderEnabled;
 import static com.facebook.presto.hive.HiveUtil.isDeserializerClass;
 import static com.facebook.presto.hive.orc.OrcPageSourceFactory.createOrcPageSource;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 
 public class DwrfPageSourceFactory
@@ -51,26 +57,47 @@ public class DwrfPageSourceFactory
     private final DataSize orcMaxMergeDistance;
     private final DataSize orcMaxBufferSize;
     private final DataSize orcStreamBufferSize;
+    private final OrcMetadataCache metadataCache;
+    private final Executor prefetchExecutor;
+    private final DataSize orcMaxPrefetchSize;
 
     @Inject
-    public DwrfPageSourceFactory(TypeManager typeManager, HiveClientConfig config)
+    public DwrfPageSourceFactory(TypeManager typeManager, HiveClientConfig config, OrcMetadataCache metadataCache, @ForHiveClient ExecutorService executorService)
     {
         //noinspection deprecation
-        this(typeManager, config.isOptimizedReaderEnabled(), config.getOrcMaxMergeDistance(), config.getOrcMaxBufferSize(), config.getOrcStreamBufferSize());
+        this(typeManager,
+                config.isOptimizedReaderEnabled(),
+                config.getOrcMaxMergeDistance(),
+                config.getOrcMaxBufferSize(),
+                config.getOrcStreamBufferSize(),
+                metadataCache,
+                executorService,
+                config.getOrcMaxPrefetchSize());
     }
 
     public DwrfPageSourceFactory(TypeManager typeManager)
     {
-        this(typeManager, true, new DataSize(1, MEGABYTE), new DataSize(8, MEGABYTE), new DataSize(8, MEGABYTE));
+        this(typeManager, true, new DataSize(1, MEGABYTE), new DataSize(8, MEGABYTE), new DataSize(8, MEGABYTE), OrcMetadataCache.disabled(), sameThreadExecutor(), new DataSize(0, MEGABYTE));
     }
 
-    public DwrfPageSourceFactory(TypeManager typeManager, boolean enabled, DataSize orcMaxMergeDistance, DataSize orcMaxBufferSize, DataSize orcStreamBufferSize)
+    public DwrfPageSourceFactory(
+            TypeManager typeManager,
+            boolean enabled,
+            DataSize orcMaxMergeDistance,
+            DataSize orcMaxBufferSize,
+            DataSize orcStreamBufferSize,
+            OrcMetadataCache metadataCache,
+            Executor prefetchExecutor,
+            DataSize orcMaxPrefetchSize)
     {
         this.typeManager = checkNotNull(typeManager, "typeManager is null");
         this.enabled = enabled;
         this.orcMaxMergeDistance = checkNotNull(orcMaxMergeDistance, "orcMaxMergeDistance is null");
         this.orcMaxBufferSize = checkNotNull(orcMaxBufferSize, "orcMaxBufferSize is null");
         this.orcStreamBufferSize = checkNotNull(orcStreamBufferSize, "orcStreamBufferSize is null");
+        this.metadataCache = checkNotNull(metadataCache, "metadataCache is null");
+        this.prefetchExecutor = checkNotNull(prefetchExecutor, "prefetchExecutor is null");
+        this.orcMaxPrefetchSize = checkNotNull(orcMaxPrefetchSize, "orcMaxPrefetchSize is null");
     }
 
     @Override
@@ -95,6 +122,7 @@ public class DwrfPageSourceFactory
 
         return Optional.of(createOrcPageSource(
                 new DwrfMetadataReader(),
+                metadataCache,
                 configuration,
                 path,
                 start,
@@ -106,6 +134,8 @@ public class DwrfPageSourceFactory
                 typeManager,
                 getOrcMaxMergeDistance(session, orcMaxMergeDistance),
                 getOrcMaxBufferSize(session, orcMaxBufferSize),
-                getOrcStreamBufferSize(session, orcStreamBufferSize)));
+                getOrcStreamBufferSize(session, orcStreamBufferSize),
+                prefetchExecutor,
+                getOrcMaxPrefetchSize(session, orcMaxPrefetchSize)));
     }
 }
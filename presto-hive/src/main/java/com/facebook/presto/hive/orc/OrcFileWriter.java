@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.orc;
+
+import com.facebook.presto.hive.HiveFileWriter;
+import com.facebook.presto.orc.OrcWriter;
+import com.facebook.presto.orc.metadata.OrcMetadataWriter;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableSet;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Set;
+
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_WRITER_ERROR;
+import static com.facebook.presto.orc.metadata.CompressionKind.ZLIB;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.spi.type.DoubleType.DOUBLE;
+import static com.facebook.presto.spi.type.VarbinaryType.VARBINARY;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Writes an ORC file with the native Presto ORC writer.
+ */
+public class OrcFileWriter
+        implements HiveFileWriter
+{
+    private static final Set<Type> SUPPORTED_TYPES = ImmutableSet.<Type>of(BOOLEAN, BIGINT, DOUBLE, VARCHAR, VARBINARY);
+
+    private final FileSystem fileSystem;
+    private final Path path;
+    private final OutputStream outputStream;
+    private final OrcWriter orcWriter;
+
+    public OrcFileWriter(FileSystem fileSystem, Path path, List<String> columnNames, List<Type> columnTypes)
+    {
+        this.fileSystem = checkNotNull(fileSystem, "fileSystem is null");
+        this.path = checkNotNull(path, "path is null");
+
+        try {
+            outputStream = fileSystem.create(path, false);
+        }
+        catch (IOException e) {
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to create file: " + path, e);
+        }
+
+        try {
+            // Hive writes ORC files with ZLIB by default
+            orcWriter = new OrcWriter(outputStream, columnNames, columnTypes, ZLIB, new OrcMetadataWriter());
+        }
+        catch (IOException | RuntimeException e) {
+            abort();
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to create writer for " + path, e);
+        }
+    }
+
+    /**
+     * The writer stores values in the ORC type that matches the Java type of the
+     * Presto type, which is only the Hive column type for these types.
+     */
+    public static boolean isSupported(List<Type> columnTypes)
+    {
+        return SUPPORTED_TYPES.containsAll(columnTypes);
+    }
+
+    @Override
+    public void appendPage(Page page)
+    {
+        try {
+            orcWriter.write(page);
+        }
+        catch (IOException e) {
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to write to " + path, e);
+        }
+    }
+
+    @Override
+    public long getRowCount()
+    {
+        return orcWriter.getRowCount();
+    }
+
+    @Override
+    public long getWrittenBytes()
+    {
+        return orcWriter.getWrittenBytes() + orcWriter.getBufferedBytes();
+    }
+
+    @Override
+    public void commit()
+    {
+        try {
+            orcWriter.close();
+        }
+        catch (IOException e) {
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to close " + path, e);
+        }
+    }
+
+    @Override
+    public void rollback()
+    {
+        abort();
+    }
+
+    private void abort()
+    {
+        try {
+            try {
+                outputStream.close();
+            }
+            finally {
+                fileSystem.delete(path, false);
+            }
+        }
+        catch (IOException e) {
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to delete " + path, e);
+        }
+    }
+}
@@ -214,7 +214,7 @@ public class OrcPageSource
     @Override
     public long getReadTimeNanos()
     {
-        return orcDataSource.getReadTimeNanos();
+        return recordReader.getReadTimeNanos();
     }
 
     @Override
@@ -13,11 +13,14 @@
  */
 package com.facebook.presto.hive.orc;
 
+import com.facebook.presto.hive.ForHiveClient;
 import com.facebook.presto.hive.HiveClientConfig;
 import com.facebook.presto.hive.HiveColumnHandle;
 import com.facebook.presto.hive.HivePageSourceFactory;
 import com.facebook.presto.hive.HivePartitionKey;
 import com.facebook.presto.orc.OrcDataSource;
+import com.facebook.presto.orc.OrcFileId;
+import com.facebook.presto.orc.OrcMetadataCache;
 import com.facebook.presto.orc.OrcPredicate;
 import com.facebook.presto.orc.OrcReader;
 import com.facebook.presto.orc.OrcRecordReader;
@@ -36,6 +39,7 @@ import com.google.common.collect.ImmutableSet;
 import io.airlift.units.DataSize;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.ql.io.orc.OrcSerde;
@@ -48,16 +52,20 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_CANNOT_OPEN_SPLIT;
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_MISSING_DATA;
 import static com.facebook.presto.hive.HiveSessionProperties.getOrcMaxBufferSize;
 import static com.facebook.presto.hive.HiveSessionProperties.getOrcMaxMergeDistance;
+import static com.facebook.presto.hive.HiveSessionProperties.getOrcMaxPrefetchSize;
 import static com.facebook.presto.hive.HiveSessionProperties.getOrcStreamBufferSize;
 import static com.facebook.presto.hive.HiveSessionProperties.isOptimizedReaderEnabled;
 import static com.facebook.presto.hive.HiveUtil.isDeserializerClass;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.nullToEmpty;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.lang.String.format;
 
@@ -69,26 +77,47 @@ public class OrcPageSourceFactory
     private final DataSize orcMaxMergeDistance;
     private final DataSize orcMaxBufferSize;
     private final DataSize orcStreamBufferSize;
+    private final OrcMetadataCache metadataCache;
+    private final Executor prefetchExecutor;
+    private final DataSize orcMaxPrefetchSize;
 
     @Inject
-    public OrcPageSourceFactory(TypeManager typeManager, HiveClientConfig config)
+    public OrcPageSourceFactory(TypeManager typeManager, HiveClientConfig config, OrcMetadataCache metadataCache, @ForHiveClient ExecutorService executorService)
     {
         //noinspection deprecation
-        this(typeManager, config.isOptimizedReaderEnabled(), config.getOrcMaxMergeDistance(), config.getOrcMaxBufferSize(), config.getOrcStreamBufferSize());
+        this(typeManager,
+                config.isOptimizedReaderEnabled(),
+                config.getOrcMaxMergeDistance(),
+                config.getOrcMaxBufferSize(),
+                config.getOrcStreamBufferSize(),
+                metadataCache,
+                executorService,
+                config.getOrcMaxPrefetchSize());
     }
 
     public OrcPageSourceFactory(TypeManager typeManager)
     {
-        this(typeManager, true, new DataSize(1, MEGABYTE), new DataSize(8, MEGABYTE), new DataSize(8, MEGABYTE));
+        this(typeManager, true, new DataSize(1, MEGABYTE), new DataSize(8, MEGABYTE), new DataSize(8, MEGABYTE), OrcMetadataCache.disabled(), sameThreadExecutor(), new DataSize(0, MEGABYTE));
     }
 
-    public OrcPageSourceFactory(TypeManager typeManager, boolean enabled, DataSize orcMaxMergeDistance, DataSize orcMaxBufferSize, DataSize orcStreamBufferSize)
+    public OrcPageSourceFactory(
+            TypeManager typeManager,
+            boolean enabled,
+            DataSize orcMaxMergeDistance,
+            DataSize orcMaxBufferSize,
+            DataSize orcStreamBufferSize,
+            OrcMetadataCache metadataCache,
+            Executor prefetchExecutor,
+            DataSize orcMaxPrefetchSize)
     {
         this.typeManager = checkNotNull(typeManager, "typeManager is null");
         this.enabled = enabled;
         this.orcMaxMergeDistance = checkNotNull(orcMaxMergeDistance, "orcMaxMergeDistance is null");
         this.orcMaxBufferSize = checkNotNull(orcMaxBufferSize, "orcMaxBufferSize is null");
         this.orcStreamBufferSize = checkNotNull(orcStreamBufferSize, "orcStreamBufferSize is null");
+        this.metadataCache = checkNotNull(metadataCache, "metadataCache is null");
+        this.prefetchExecutor = checkNotNull(prefetchExecutor, "prefetchExecutor is null");
+        this.orcMaxPrefetchSize = checkNotNull(orcMaxPrefetchSize, "orcMaxPrefetchSize is null");
     }
 
     @Override
@@ -114,6 +143,7 @@ public class OrcPageSourceFactory
 
         return Optional.of(createOrcPageSource(
                 new OrcMetadataReader(),
+                metadataCache,
                 configuration,
                 path,
                 start,
@@ -125,10 +155,13 @@ public class OrcPageSourceFactory
                 typeManager,
                 getOrcMaxMergeDistance(session, orcMaxMergeDistance),
                 getOrcMaxBufferSize(session, orcMaxBufferSize),
-                getOrcStreamBufferSize(session, orcStreamBufferSize)));
+                getOrcStreamBufferSize(session, orcStreamBufferSize),
+                prefetchExecutor,
+                getOrcMaxPrefetchSize(session, orcMaxPrefetchSize)));
     }
 
     public static OrcPageSource createOrcPageSource(MetadataReader metadataReader,
+            OrcMetadataCache metadataCache,
             Configuration configuration,
             Path path,
             long start,
@@ -140,12 +173,17 @@ public class OrcPageSourceFactory
             TypeManager typeManager,
             DataSize maxMergeDistance,
             DataSize maxBufferSize,
-            DataSize streamBufferSize)
+            DataSize streamBufferSize,
+            Executor prefetchExecutor,
+            DataSize maxPrefetchSize)
     {
         OrcDataSource orcDataSource;
+        OrcFileId fileId;
         try {
             FileSystem fileSystem = path.getFileSystem(configuration);
-            long size = fileSystem.getFileStatus(path).getLen();
+            FileStatus fileStatus = fileSystem.getFileStatus(path);
+            long size = fileStatus.getLen();
+            fileId = new OrcFileId(path.toString(), size, fileStatus.getModificationTime());
             FSDataInputStream inputStream = fileSystem.open(path);
             orcDataSource = new HdfsOrcDataSource(path.toString(), size, maxMergeDistance, maxBufferSize, streamBufferSize, inputStream);
         }
@@ -170,13 +208,15 @@ public class OrcPageSourceFactory
         OrcPredicate predicate = new TupleDomainOrcPredicate<>(effectivePredicate, columnReferences.build());
 
         try {
-            OrcReader reader = new OrcReader(orcDataSource, metadataReader);
+            OrcReader reader = new OrcReader(orcDataSource, metadataReader, fileId, metadataCache);
             OrcRecordReader recordReader = reader.createRecordReader(
                     includedColumns.build(),
                     predicate,
                     start,
                     length,
-                    hiveStorageTimeZone);
+                    hiveStorageTimeZone,
+                    prefetchExecutor,
+                    maxPrefetchSize);
 
             return new OrcPageSource(
                     recordReader,
@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import parquet.column.ColumnDescriptor;
+import parquet.column.values.ValuesReader;
+
+import java.io.IOException;
+
+/**
+ * Reads BINARY columns as slices. Null positions are left as null slices.
+ */
+public class ParquetBinaryColumnReader
+        extends ParquetColumnReader
+{
+    private Slice[] vector;
+
+    public ParquetBinaryColumnReader(ColumnDescriptor descriptor)
+    {
+        super(descriptor);
+    }
+
+    public void readVector(Slice[] vector, boolean[] isNull)
+            throws IOException
+    {
+        this.vector = vector;
+        readBatch(isNull);
+        this.vector = null;
+    }
+
+    @Override
+    protected void readValue(ValuesReader valuesReader, int position)
+    {
+        vector[position] = Slices.wrappedBuffer(valuesReader.readBytes().getBytes());
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import parquet.column.ColumnDescriptor;
+import parquet.column.Dictionary;
+import parquet.column.page.DictionaryPage;
+import parquet.column.page.Page;
+import parquet.column.page.PageReader;
+import parquet.column.values.ValuesReader;
+import parquet.io.ParquetDecodingException;
+
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static parquet.column.ValuesType.DEFINITION_LEVEL;
+import static parquet.column.ValuesType.REPETITION_LEVEL;
+import static parquet.column.ValuesType.VALUES;
+
+/**
+ * Decodes the pages of a single flat (non-repeated) column chunk directly into arrays.
+ * Definition levels are decoded once per value to find the nulls, and the values are
+ * decoded by the plain or dictionary values reader of the page, without assembling records.
+ * <p>
+ * Reads are done in batches. Batches that are never read are skipped, so only the
+ * definition levels and values of columns actually accessed by the query are decoded.
+ */
+public abstract class ParquetColumnReader
+{
+    protected final ColumnDescriptor descriptor;
+    private final int maxDefinitionLevel;
+
+    private PageReader pageReader;
+    private Dictionary dictionary;
+
+    private ValuesReader definitionReader;
+    private ValuesReader valuesReader;
+    private int remainingValuesInPage;
+
+    private int readOffset;
+    private int nextBatchSize;
+
+    protected ParquetColumnReader(ColumnDescriptor descriptor)
+    {
+        this.descriptor = checkNotNull(descriptor, "descriptor is null");
+        checkArgument(descriptor.getMaxRepetitionLevel() == 0, "repeated columns are not supported: %s", descriptor);
+        this.maxDefinitionLevel = descriptor.getMaxDefinitionLevel();
+    }
+
+    public static ParquetColumnReader createReader(ColumnDescriptor descriptor)
+    {
+        switch (descriptor.getType()) {
+            case BOOLEAN:
+                return new ParquetBooleanColumnReader(descriptor);
+            case INT32:
+            case INT64:
+                return new ParquetLongColumnReader(descriptor);
+            case FLOAT:
+            case DOUBLE:
+                return new ParquetDoubleColumnReader(descriptor);
+            case BINARY:
+                return new ParquetBinaryColumnReader(descriptor);
+            default:
+                throw new IllegalArgumentException("Unsupported parquet type: " + descriptor.getType());
+        }
+    }
+
+    /**
+     * Starts reading the column chunk of a new row group.
+     */
+    public void setPageReader(PageReader pageReader)
+            throws IOException
+    {
+        this.pageReader = checkNotNull(pageReader, "pageReader is null");
+
+        DictionaryPage dictionaryPage = pageReader.readDictionaryPage();
+        if (dictionaryPage != null) {
+            dictionary = dictionaryPage.getEncoding().initDictionary(descriptor, dictionaryPage);
+        }
+        else {
+            dictionary = null;
+        }
+
+        definitionReader = null;
+        valuesReader = null;
+        remainingValuesInPage = 0;
+        readOffset = 0;
+        nextBatchSize = 0;
+    }
+
+    public void prepareNextRead(int batchSize)
+    {
+        readOffset += nextBatchSize;
+        nextBatchSize = batchSize;
+    }
+
+    /**
+     * Reads the values of the current batch. Positions with a null value are
+     * marked in {@code isNull}, and {@link #readValue} is called for the others.
+     */
+    protected void readBatch(boolean[] isNull)
+            throws IOException
+    {
+        checkState(pageReader != null, "no row group");
+        checkArgument(isNull.length >= nextBatchSize, "isNull is too small");
+
+        // skip the batches that were not read
+        if (readOffset > 0) {
+            skipValues(readOffset);
+            readOffset = 0;
+        }
+
+        int position = 0;
+        while (position < nextBatchSize) {
+            if (remainingValuesInPage == 0) {
+                readNextPage();
+            }
+            int chunkSize = Math.min(remainingValuesInPage, nextBatchSize - position);
+            for (int i = 0; i < chunkSize; i++) {
+                if (definitionReader.readInteger() == maxDefinitionLevel) {
+                    readValue(valuesReader, position);
+                    isNull[position] = false;
+                }
+                else {
+                    isNull[position] = true;
+                }
+                position++;
+            }
+            remainingValuesInPage -= chunkSize;
+        }
+
+        // the batch has been consumed
+        nextBatchSize = 0;
+    }
+
+    protected int getBatchSize()
+    {
+        return nextBatchSize;
+    }
+
+    protected abstract void readValue(ValuesReader valuesReader, int position);
+
+    private void skipValues(int count)
+            throws IOException
+    {
+        while (count > 0) {
+            if (remainingValuesInPage == 0) {
+                readNextPage();
+            }
+            int chunkSize = Math.min(remainingValuesInPage, count);
+            for (int i = 0; i < chunkSize; i++) {
+                if (definitionReader.readInteger() == maxDefinitionLevel) {
+                    valuesReader.skip();
+                }
+            }
+            remainingValuesInPage -= chunkSize;
+            count -= chunkSize;
+        }
+    }
+
+    private void readNextPage()
+            throws IOException
+    {
+        Page page = pageReader.readPage();
+        if (page == null) {
+            throw new ParquetDecodingException("Not enough values in column chunk " + descriptor);
+        }
+
+        // the repetition levels, definition levels and values are stored one after the other
+        byte[] bytes = page.getBytes().toByteArray();
+        int valueCount = page.getValueCount();
+
+        ValuesReader repetitionReader = page.getRlEncoding().getValuesReader(descriptor, REPETITION_LEVEL);
+        repetitionReader.initFromPage(valueCount, bytes, 0);
+        int offset = repetitionReader.getNextOffset();
+
+        definitionReader = page.getDlEncoding().getValuesReader(descriptor, DEFINITION_LEVEL);
+        definitionReader.initFromPage(valueCount, bytes, offset);
+        offset = definitionReader.getNextOffset();
+
+        if (page.getValueEncoding().usesDictionary()) {
+            if (dictionary == null) {
+                throw new ParquetDecodingException("Dictionary encoded page without dictionary in column chunk " + descriptor);
+            }
+            valuesReader = page.getValueEncoding().getDictionaryBasedValuesReader(descriptor, VALUES, dictionary);
+        }
+        else {
+            valuesReader = page.getValueEncoding().getValuesReader(descriptor, VALUES);
+        }
+        valuesReader.initFromPage(valueCount, bytes, offset);
+
+        remainingValuesInPage = valueCount;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import parquet.column.ColumnDescriptor;
+import parquet.column.values.ValuesReader;
+
+import java.io.IOException;
+
+import static parquet.schema.PrimitiveType.PrimitiveTypeName.INT32;
+
+/**
+ * Reads INT32 and INT64 columns as longs.
+ */
+public class ParquetLongColumnReader
+        extends ParquetColumnReader
+{
+    private final boolean int32;
+    private long[] vector;
+
+    public ParquetLongColumnReader(ColumnDescriptor descriptor)
+    {
+        super(descriptor);
+        this.int32 = (descriptor.getType() == INT32);
+    }
+
+    public void readVector(long[] vector, boolean[] isNull)
+            throws IOException
+    {
+        this.vector = vector;
+        readBatch(isNull);
+        this.vector = null;
+    }
+
+    @Override
+    protected void readValue(ValuesReader valuesReader, int position)
+    {
+        if (int32) {
+            vector[position] = valuesReader.readInteger();
+        }
+        else {
+            vector[position] = valuesReader.readLong();
+        }
+    }
+}
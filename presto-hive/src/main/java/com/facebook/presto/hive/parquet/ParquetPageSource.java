@@ -0,0 +1,416 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import com.facebook.presto.hive.HiveColumnHandle;
+import com.facebook.presto.hive.HivePartitionKey;
+import com.facebook.presto.hive.HiveUtil;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.block.BlockBuilderStatus;
+import com.facebook.presto.spi.block.LazyBlockLoader;
+import com.facebook.presto.spi.block.LazyFixedWidthBlock;
+import com.facebook.presto.spi.block.LazySliceArrayBlock;
+import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.spi.type.TypeManager;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import org.joda.time.DateTimeZone;
+import parquet.io.ParquetDecodingException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_BAD_DATA;
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_CURSOR_ERROR;
+import static com.facebook.presto.hive.HiveUtil.bigintPartitionKey;
+import static com.facebook.presto.hive.HiveUtil.booleanPartitionKey;
+import static com.facebook.presto.hive.HiveUtil.datePartitionKey;
+import static com.facebook.presto.hive.HiveUtil.doublePartitionKey;
+import static com.facebook.presto.hive.HiveUtil.timestampPartitionKey;
+import static com.facebook.presto.hive.parquet.ParquetReader.MAX_VECTOR_LENGTH;
+import static com.facebook.presto.spi.StandardErrorCode.NOT_SUPPORTED;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.spi.type.DateType.DATE;
+import static com.facebook.presto.spi.type.DoubleType.DOUBLE;
+import static com.facebook.presto.spi.type.TimestampType.TIMESTAMP;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Maps.uniqueIndex;
+import static io.airlift.slice.Slices.wrappedBooleanArray;
+import static io.airlift.slice.Slices.wrappedDoubleArray;
+import static io.airlift.slice.Slices.wrappedLongArray;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class ParquetPageSource
+        implements ConnectorPageSource
+{
+    private final ParquetReader parquetReader;
+
+    private final List<String> columnNames;
+    private final List<Type> types;
+
+    private final Block[] constantBlocks;
+    private final int[] readerColumnIndexes;
+
+    private int batchId;
+    private boolean closed;
+
+    public ParquetPageSource(
+            ParquetReader parquetReader,
+            List<HivePartitionKey> partitionKeys,
+            List<HiveColumnHandle> columns,
+            DateTimeZone hiveStorageTimeZone,
+            TypeManager typeManager)
+    {
+        this.parquetReader = checkNotNull(parquetReader, "parquetReader is null");
+
+        Map<String, HivePartitionKey> partitionKeysByName = uniqueIndex(checkNotNull(partitionKeys, "partitionKeys is null"), HivePartitionKey::getName);
+
+        int size = checkNotNull(columns, "columns is null").size();
+
+        this.constantBlocks = new Block[size];
+        this.readerColumnIndexes = new int[size];
+
+        ImmutableList.Builder<String> namesBuilder = ImmutableList.builder();
+        ImmutableList.Builder<Type> typesBuilder = ImmutableList.builder();
+        for (int columnIndex = 0; columnIndex < columns.size(); columnIndex++) {
+            HiveColumnHandle column = columns.get(columnIndex);
+
+            String name = column.getName();
+            Type type = typeManager.getType(column.getTypeSignature());
+
+            namesBuilder.add(name);
+            typesBuilder.add(type);
+
+            if (column.isPartitionKey()) {
+                HivePartitionKey partitionKey = partitionKeysByName.get(name);
+                checkArgument(partitionKey != null, "No value provided for partition key %s", name);
+
+                byte[] bytes = partitionKey.getValue().getBytes(UTF_8);
+
+                BlockBuilder blockBuilder = type.createBlockBuilder(new BlockBuilderStatus());
+
+                if (HiveUtil.isHiveNull(bytes)) {
+                    for (int i = 0; i < MAX_VECTOR_LENGTH; i++) {
+                        blockBuilder.appendNull();
+                    }
+                }
+                else if (type.equals(BOOLEAN)) {
+                    boolean value = booleanPartitionKey(partitionKey.getValue(), name);
+                    for (int i = 0; i < MAX_VECTOR_LENGTH; i++) {
+                        BOOLEAN.writeBoolean(blockBuilder, value);
+                    }
+                }
+                else if (type.equals(BIGINT)) {
+                    long value = bigintPartitionKey(partitionKey.getValue(), name);
+                    for (int i = 0; i < MAX_VECTOR_LENGTH; i++) {
+                        BIGINT.writeLong(blockBuilder, value);
+                    }
+                }
+                else if (type.equals(DOUBLE)) {
+                    double value = doublePartitionKey(partitionKey.getValue(), name);
+                    for (int i = 0; i < MAX_VECTOR_LENGTH; i++) {
+                        DOUBLE.writeDouble(blockBuilder, value);
+                    }
+                }
+                else if (type.equals(VARCHAR)) {
+                    Slice value = Slices.wrappedBuffer(bytes);
+                    for (int i = 0; i < MAX_VECTOR_LENGTH; i++) {
+                        VARCHAR.writeSlice(blockBuilder, value);
+                    }
+                }
+                else if (type.equals(DATE)) {
+                    long value = datePartitionKey(partitionKey.getValue(), name);
+                    for (int i = 0; i < MAX_VECTOR_LENGTH; i++) {
+                        DATE.writeLong(blockBuilder, value);
+                    }
+                }
+                else if (type.equals(TIMESTAMP)) {
+                    long value = timestampPartitionKey(partitionKey.getValue(), hiveStorageTimeZone, name);
+                    for (int i = 0; i < MAX_VECTOR_LENGTH; i++) {
+                        TIMESTAMP.writeLong(blockBuilder, value);
+                    }
+                }
+                else {
+                    throw new PrestoException(NOT_SUPPORTED, format("Unsupported column type %s for partition key: %s", type.getDisplayName(), name));
+                }
+
+                constantBlocks[columnIndex] = blockBuilder.build();
+                readerColumnIndexes[columnIndex] = -1;
+            }
+            else {
+                readerColumnIndexes[columnIndex] = parquetReader.getColumnIndex(name);
+                if (readerColumnIndexes[columnIndex] < 0) {
+                    // the column was added to the table after the file was written
+                    BlockBuilder blockBuilder = type.createBlockBuilder(new BlockBuilderStatus());
+                    for (int i = 0; i < MAX_VECTOR_LENGTH; i++) {
+                        blockBuilder.appendNull();
+                    }
+                    constantBlocks[columnIndex] = blockBuilder.build();
+                }
+            }
+        }
+        types = typesBuilder.build();
+        columnNames = namesBuilder.build();
+    }
+
+    @Override
+    public long getTotalBytes()
+    {
+        return parquetReader.getTotalBytes();
+    }
+
+    @Override
+    public long getCompletedBytes()
+    {
+        return parquetReader.getCompletedBytes();
+    }
+
+    @Override
+    public long getReadTimeNanos()
+    {
+        return parquetReader.getReadTimeNanos();
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return closed;
+    }
+
+    @Override
+    public Page getNextPage()
+    {
+        try {
+            batchId++;
+            int batchSize = parquetReader.nextBatch();
+            if (batchSize <= 0) {
+                close();
+                return null;
+            }
+
+            Block[] blocks = new Block[readerColumnIndexes.length];
+            for (int fieldId = 0; fieldId < blocks.length; fieldId++) {
+                Type type = types.get(fieldId);
+                int readerColumnIndex = readerColumnIndexes[fieldId];
+                if (constantBlocks[fieldId] != null) {
+                    blocks[fieldId] = constantBlocks[fieldId].getRegion(0, batchSize);
+                }
+                else if (BOOLEAN.equals(type)) {
+                    blocks[fieldId] = new LazyFixedWidthBlock(BOOLEAN.getFixedSize(), batchSize, new LazyBooleanBlockLoader(readerColumnIndex, batchSize));
+                }
+                else if (BIGINT.equals(type)) {
+                    blocks[fieldId] = new LazyFixedWidthBlock(BIGINT.getFixedSize(), batchSize, new LazyLongBlockLoader(readerColumnIndex, batchSize));
+                }
+                else if (DOUBLE.equals(type)) {
+                    blocks[fieldId] = new LazyFixedWidthBlock(DOUBLE.getFixedSize(), batchSize, new LazyDoubleBlockLoader(readerColumnIndex, batchSize));
+                }
+                else if (VARCHAR.equals(type)) {
+                    blocks[fieldId] = new LazySliceArrayBlock(batchSize, new LazySliceBlockLoader(readerColumnIndex, batchSize));
+                }
+                else {
+                    throw new PrestoException(NOT_SUPPORTED, "Unsupported column type: " + type);
+                }
+            }
+            return new Page(batchSize, blocks);
+        }
+        catch (PrestoException e) {
+            closeWithSuppression(e);
+            throw e;
+        }
+        catch (ParquetDecodingException e) {
+            closeWithSuppression(e);
+            throw new PrestoException(HIVE_BAD_DATA, e);
+        }
+        catch (IOException | RuntimeException e) {
+            closeWithSuppression(e);
+            throw new PrestoException(HIVE_CURSOR_ERROR, e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            parquetReader.close();
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("columnNames", columnNames)
+                .add("types", types)
+                .toString();
+    }
+
+    protected void closeWithSuppression(Throwable throwable)
+    {
+        checkNotNull(throwable, "throwable is null");
+        try {
+            close();
+        }
+        catch (RuntimeException e) {
+            throwable.addSuppressed(e);
+        }
+    }
+
+    private final class LazyBooleanBlockLoader
+            implements LazyBlockLoader<LazyFixedWidthBlock>
+    {
+        private final int expectedBatchId = batchId;
+        private final int batchSize;
+        private final int readerColumnIndex;
+
+        public LazyBooleanBlockLoader(int readerColumnIndex, int batchSize)
+        {
+            this.batchSize = batchSize;
+            this.readerColumnIndex = readerColumnIndex;
+        }
+
+        @Override
+        public void load(LazyFixedWidthBlock block)
+        {
+            checkState(batchId == expectedBatchId);
+            try {
+                boolean[] isNull = new boolean[batchSize];
+                boolean[] vector = new boolean[batchSize];
+                parquetReader.readVector(readerColumnIndex, vector, isNull);
+                block.setNullVector(isNull);
+                block.setRawSlice(wrappedBooleanArray(vector, 0, batchSize));
+            }
+            catch (IOException | ParquetDecodingException e) {
+                throw propagateException(e);
+            }
+        }
+    }
+
+    private final class LazyLongBlockLoader
+            implements LazyBlockLoader<LazyFixedWidthBlock>
+    {
+        private final int expectedBatchId = batchId;
+        private final int batchSize;
+        private final int readerColumnIndex;
+
+        public LazyLongBlockLoader(int readerColumnIndex, int batchSize)
+        {
+            this.batchSize = batchSize;
+            this.readerColumnIndex = readerColumnIndex;
+        }
+
+        @Override
+        public void load(LazyFixedWidthBlock block)
+        {
+            checkState(batchId == expectedBatchId);
+            try {
+                boolean[] isNull = new boolean[batchSize];
+                long[] vector = new long[batchSize];
+                parquetReader.readVector(readerColumnIndex, vector, isNull);
+                block.setNullVector(isNull);
+                block.setRawSlice(wrappedLongArray(vector, 0, batchSize));
+            }
+            catch (IOException | ParquetDecodingException e) {
+                throw propagateException(e);
+            }
+        }
+    }
+
+    private final class LazyDoubleBlockLoader
+            implements LazyBlockLoader<LazyFixedWidthBlock>
+    {
+        private final int expectedBatchId = batchId;
+        private final int batchSize;
+        private final int readerColumnIndex;
+
+        public LazyDoubleBlockLoader(int readerColumnIndex, int batchSize)
+        {
+            this.batchSize = batchSize;
+            this.readerColumnIndex = readerColumnIndex;
+        }
+
+        @Override
+        public void load(LazyFixedWidthBlock block)
+        {
+            checkState(batchId == expectedBatchId);
+            try {
+                boolean[] isNull = new boolean[batchSize];
+                double[] vector = new double[batchSize];
+                parquetReader.readVector(readerColumnIndex, vector, isNull);
+                block.setNullVector(isNull);
+                block.setRawSlice(wrappedDoubleArray(vector, 0, batchSize));
+            }
+            catch (IOException | ParquetDecodingException e) {
+                throw propagateException(e);
+            }
+        }
+    }
+
+    private final class LazySliceBlockLoader
+            implements LazyBlockLoader<LazySliceArrayBlock>
+    {
+        private final int expectedBatchId = batchId;
+        private final int batchSize;
+        private final int readerColumnIndex;
+
+        public LazySliceBlockLoader(int readerColumnIndex, int batchSize)
+        {
+            this.batchSize = batchSize;
+            this.readerColumnIndex = readerColumnIndex;
+        }
+
+        @Override
+        public void load(LazySliceArrayBlock block)
+        {
+            checkState(batchId == expectedBatchId);
+            try {
+                boolean[] isNull = new boolean[batchSize];
+                Slice[] vector = new Slice[batchSize];
+                parquetReader.readVector(readerColumnIndex, vector, isNull);
+                block.setValues(vector);
+            }
+            catch (IOException | ParquetDecodingException e) {
+                throw propagateException(e);
+            }
+        }
+    }
+
+    private static RuntimeException propagateException(Exception e)
+    {
+        if (e instanceof ParquetDecodingException) {
+            throw new PrestoException(HIVE_BAD_DATA, e);
+        }
+        throw new PrestoException(HIVE_CURSOR_ERROR, e);
+    }
+}
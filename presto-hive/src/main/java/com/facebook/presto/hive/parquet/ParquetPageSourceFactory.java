@@ -0,0 +1,343 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import com.facebook.presto.hive.HiveClientConfig;
+import com.facebook.presto.hive.HiveColumnHandle;
+import com.facebook.presto.hive.HivePageSourceFactory;
+import com.facebook.presto.hive.HivePartitionKey;
+import com.facebook.presto.hive.HiveType;
+import com.facebook.presto.hive.parquet.TupleDomainParquetPredicate.ColumnReference;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.TupleDomain;
+import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.spi.type.TypeManager;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.io.parquet.serde.ParquetHiveSerDe;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.joda.time.DateTimeZone;
+import parquet.bytes.BytesInput;
+import parquet.column.ColumnDescriptor;
+import parquet.column.Dictionary;
+import parquet.column.Encoding;
+import parquet.column.page.DictionaryPage;
+import parquet.column.statistics.Statistics;
+import parquet.format.DictionaryPageHeader;
+import parquet.format.PageHeader;
+import parquet.format.PageType;
+import parquet.format.Util;
+import parquet.hadoop.ParquetFileReader;
+import parquet.hadoop.metadata.BlockMetaData;
+import parquet.hadoop.metadata.ColumnChunkMetaData;
+import parquet.hadoop.metadata.CompressionCodecName;
+import parquet.hadoop.metadata.ParquetMetadata;
+import parquet.schema.MessageType;
+import parquet.schema.PrimitiveType.PrimitiveTypeName;
+
+import javax.inject.Inject;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_BAD_DATA;
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_CANNOT_OPEN_SPLIT;
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_MISSING_DATA;
+import static com.facebook.presto.hive.HiveSessionProperties.isParquetOptimizedReaderEnabled;
+import static com.facebook.presto.hive.HiveUtil.isDeserializerClass;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.spi.type.DoubleType.DOUBLE;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.nullToEmpty;
+import static java.lang.String.format;
+import static parquet.column.Encoding.BIT_PACKED;
+import static parquet.column.Encoding.PLAIN_DICTIONARY;
+import static parquet.column.Encoding.RLE;
+import static parquet.schema.PrimitiveType.PrimitiveTypeName.BINARY;
+import static parquet.schema.PrimitiveType.PrimitiveTypeName.FLOAT;
+import static parquet.schema.PrimitiveType.PrimitiveTypeName.INT32;
+import static parquet.schema.PrimitiveType.PrimitiveTypeName.INT64;
+import static parquet.schema.Type.Repetition.REPEATED;
+
+public class ParquetPageSourceFactory
+        implements HivePageSourceFactory
+{
+    private static final Set<HiveType> SUPPORTED_TYPES = ImmutableSet.of(
+            HiveType.HIVE_BOOLEAN,
+            HiveType.HIVE_BYTE,
+            HiveType.HIVE_SHORT,
+            HiveType.HIVE_INT,
+            HiveType.HIVE_LONG,
+            HiveType.HIVE_FLOAT,
+            HiveType.HIVE_DOUBLE,
+            HiveType.HIVE_STRING);
+
+    private static final Set<Encoding> DICTIONARY_ONLY_ENCODINGS = ImmutableSet.of(PLAIN_DICTIONARY, RLE, BIT_PACKED);
+
+    private final TypeManager typeManager;
+    private final boolean enabled;
+    private final ParquetReaderStats stats;
+
+    @Inject
+    public ParquetPageSourceFactory(TypeManager typeManager, HiveClientConfig config, ParquetReaderStats stats)
+    {
+        this(typeManager, checkNotNull(config, "config is null").isParquetOptimizedReaderEnabled(), stats);
+    }
+
+    public ParquetPageSourceFactory(TypeManager typeManager, boolean enabled, ParquetReaderStats stats)
+    {
+        this.typeManager = checkNotNull(typeManager, "typeManager is null");
+        this.enabled = enabled;
+        this.stats = checkNotNull(stats, "stats is null");
+    }
+
+    @Override
+    public Optional<? extends ConnectorPageSource> createPageSource(
+            Configuration configuration,
+            ConnectorSession session,
+            Path path,
+            long start,
+            long length,
+            Properties schema,
+            List<HiveColumnHandle> columns,
+            List<HivePartitionKey> partitionKeys,
+            TupleDomain<HiveColumnHandle> effectivePredicate,
+            DateTimeZone hiveStorageTimeZone)
+    {
+        if (!isParquetOptimizedReaderEnabled(session, enabled)) {
+            return Optional.empty();
+        }
+
+        if (!isDeserializerClass(schema, ParquetHiveSerDe.class)) {
+            return Optional.empty();
+        }
+
+        // structural and timestamp columns are read with the record cursor
+        for (HiveColumnHandle column : columns) {
+            if (!column.isPartitionKey() && !SUPPORTED_TYPES.contains(column.getHiveType())) {
+                return Optional.empty();
+            }
+        }
+
+        return Optional.of(createParquetPageSource(
+                configuration,
+                path,
+                start,
+                length,
+                columns,
+                partitionKeys,
+                effectivePredicate,
+                hiveStorageTimeZone,
+                typeManager,
+                stats));
+    }
+
+    public static ParquetPageSource createParquetPageSource(
+            Configuration configuration,
+            Path path,
+            long start,
+            long length,
+            List<HiveColumnHandle> columns,
+            List<HivePartitionKey> partitionKeys,
+            TupleDomain<HiveColumnHandle> effectivePredicate,
+            DateTimeZone hiveStorageTimeZone,
+            TypeManager typeManager,
+            ParquetReaderStats stats)
+    {
+        try {
+            ParquetMetadata parquetMetadata = ParquetFileReader.readFooter(configuration, path);
+            MessageType fileSchema = parquetMetadata.getFileMetaData().getSchema();
+
+            ImmutableList.Builder<ColumnDescriptor> descriptors = ImmutableList.builder();
+            ImmutableList.Builder<ColumnReference<HiveColumnHandle>> columnReferences = ImmutableList.builder();
+            for (HiveColumnHandle column : columns) {
+                if (column.isPartitionKey()) {
+                    continue;
+                }
+                parquet.schema.Type parquetType = getParquetType(fileSchema, column.getName());
+                if (parquetType == null) {
+                    // missing columns are read as nulls
+                    continue;
+                }
+                Type type = typeManager.getType(column.getTypeSignature());
+                if (!parquetType.isPrimitive() || parquetType.isRepetition(REPEATED) || !isCompatible(type, parquetType.asPrimitiveType().getPrimitiveTypeName())) {
+                    throw new PrestoException(HIVE_BAD_DATA, format("Parquet column %s of type %s can not be read as %s", column.getName(), parquetType, type));
+                }
+                ColumnDescriptor descriptor = fileSchema.getColumnDescription(new String[] {parquetType.getName()});
+                descriptors.add(descriptor);
+                columnReferences.add(new ColumnReference<>(column, descriptor, type));
+            }
+            TupleDomainParquetPredicate<HiveColumnHandle> predicate = new TupleDomainParquetPredicate<>(effectivePredicate, columnReferences.build());
+
+            // a row group belongs to the split that contains its first data page
+            ImmutableList.Builder<BlockMetaData> blocks = ImmutableList.builder();
+            List<ColumnDescriptor> dictionaryColumns = predicate.getDictionaryColumns();
+            FSDataInputStream dictionaryStream = null;
+            try {
+                for (BlockMetaData block : parquetMetadata.getBlocks()) {
+                    long firstDataPage = block.getColumns().get(0).getFirstDataPageOffset();
+                    if (firstDataPage < start || firstDataPage >= start + length) {
+                        continue;
+                    }
+                    if (!predicate.matches(block.getRowCount(), getStatistics(block, fileSchema))) {
+                        stats.rowGroupSkippedByStatistics();
+                        continue;
+                    }
+                    if (!dictionaryColumns.isEmpty()) {
+                        // the file is opened at most once per split for all row groups
+                        if (dictionaryStream == null) {
+                            dictionaryStream = path.getFileSystem(configuration).open(path);
+                        }
+                        if (!predicate.matches(readDictionaries(configuration, dictionaryStream, block, fileSchema, dictionaryColumns))) {
+                            stats.rowGroupSkippedByDictionary();
+                            continue;
+                        }
+                    }
+                    stats.rowGroupRead();
+                    blocks.add(block);
+                }
+            }
+            finally {
+                if (dictionaryStream != null) {
+                    dictionaryStream.close();
+                }
+            }
+
+            ParquetReader parquetReader = new ParquetReader(configuration, path, blocks.build(), descriptors.build());
+            return new ParquetPageSource(parquetReader, partitionKeys, columns, hiveStorageTimeZone, typeManager);
+        }
+        catch (Exception e) {
+            if (e instanceof PrestoException) {
+                throw (PrestoException) e;
+            }
+            if (nullToEmpty(e.getMessage()).trim().equals("Filesystem closed") ||
+                    e instanceof FileNotFoundException) {
+                throw new PrestoException(HIVE_CANNOT_OPEN_SPLIT, e);
+            }
+            String message = splitError(e, path, start, length);
+            if (e.getClass().getSimpleName().equals("BlockMissingException")) {
+                throw new PrestoException(HIVE_MISSING_DATA, message, e);
+            }
+            throw new PrestoException(HIVE_CANNOT_OPEN_SPLIT, message, e);
+        }
+    }
+
+    private static Map<ColumnDescriptor, Statistics<?>> getStatistics(BlockMetaData block, MessageType fileSchema)
+    {
+        ImmutableMap.Builder<ColumnDescriptor, Statistics<?>> statistics = ImmutableMap.builder();
+        for (ColumnChunkMetaData chunk : block.getColumns()) {
+            if (chunk.getStatistics() != null) {
+                statistics.put(fileSchema.getColumnDescription(chunk.getPath().toArray()), chunk.getStatistics());
+            }
+        }
+        return statistics.build();
+    }
+
+    /**
+     * Reads the dictionaries of the given columns, skipping column chunks that fall back
+     * to plain encoding for some pages, since their dictionary does not cover all values.
+     */
+    private static Map<ColumnDescriptor, Dictionary> readDictionaries(Configuration configuration, FSDataInputStream inputStream, BlockMetaData block, MessageType fileSchema, List<ColumnDescriptor> columns)
+            throws IOException
+    {
+        ImmutableMap.Builder<ColumnDescriptor, Dictionary> dictionaries = ImmutableMap.builder();
+        for (ColumnChunkMetaData chunk : block.getColumns()) {
+            ColumnDescriptor descriptor = fileSchema.getColumnDescription(chunk.getPath().toArray());
+            if (!columns.contains(descriptor) || !chunk.getEncodings().contains(PLAIN_DICTIONARY) || !DICTIONARY_ONLY_ENCODINGS.containsAll(chunk.getEncodings())) {
+                continue;
+            }
+            DictionaryPage dictionaryPage = readDictionaryPage(configuration, inputStream, chunk);
+            if (dictionaryPage != null) {
+                dictionaries.put(descriptor, dictionaryPage.getEncoding().initDictionary(descriptor, dictionaryPage));
+            }
+        }
+        return dictionaries.build();
+    }
+
+    private static DictionaryPage readDictionaryPage(Configuration configuration, FSDataInputStream inputStream, ColumnChunkMetaData chunk)
+            throws IOException
+    {
+        inputStream.seek(chunk.getStartingPos());
+        PageHeader pageHeader = Util.readPageHeader(inputStream);
+        if (pageHeader.getType() != PageType.DICTIONARY_PAGE) {
+            return null;
+        }
+
+        byte[] data = new byte[pageHeader.getCompressed_page_size()];
+        inputStream.readFully(data);
+        if (chunk.getCodec() != CompressionCodecName.UNCOMPRESSED) {
+            CompressionCodec codec = (CompressionCodec) ReflectionUtils.newInstance(chunk.getCodec().getHadoopCompressionCodecClass(), configuration);
+            byte[] uncompressed = new byte[pageHeader.getUncompressed_page_size()];
+            try (InputStream decompressed = codec.createInputStream(new ByteArrayInputStream(data))) {
+                ByteStreams.readFully(decompressed, uncompressed);
+            }
+            data = uncompressed;
+        }
+
+        DictionaryPageHeader dictionaryHeader = pageHeader.getDictionary_page_header();
+        return new DictionaryPage(
+                BytesInput.from(data),
+                dictionaryHeader.getNum_values(),
+                Encoding.valueOf(dictionaryHeader.getEncoding().name()));
+    }
+
+    private static parquet.schema.Type getParquetType(MessageType fileSchema, String name)
+    {
+        for (parquet.schema.Type type : fileSchema.getFields()) {
+            if (type.getName().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isCompatible(Type type, PrimitiveTypeName parquetType)
+    {
+        if (type.equals(BOOLEAN)) {
+            return parquetType == PrimitiveTypeName.BOOLEAN;
+        }
+        if (type.equals(BIGINT)) {
+            return parquetType == INT32 || parquetType == INT64;
+        }
+        if (type.equals(DOUBLE)) {
+            return parquetType == FLOAT || parquetType == PrimitiveTypeName.DOUBLE;
+        }
+        if (type.equals(VARCHAR)) {
+            return parquetType == BINARY;
+        }
+        return false;
+    }
+
+    private static String splitError(Throwable t, Path path, long start, long length)
+    {
+        return format("Error opening Hive split %s (offset=%s, length=%s): %s", path, start, length, t.getMessage());
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slice;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import parquet.column.ColumnDescriptor;
+import parquet.column.page.PageReadStore;
+import parquet.hadoop.ParquetFileReader;
+import parquet.hadoop.metadata.BlockMetaData;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.Math.min;
+
+/**
+ * Reads the row groups of a split in batches of at most {@link #MAX_VECTOR_LENGTH} rows.
+ * Only the column chunks of the requested columns are read from the file.
+ */
+public class ParquetReader
+        implements Closeable
+{
+    public static final int MAX_VECTOR_LENGTH = 1024;
+
+    private final ParquetFileReader fileReader;
+    private final List<BlockMetaData> blocks;
+    private final List<ColumnDescriptor> columns;
+    private final ParquetColumnReader[] columnReaders;
+    private final long totalBytes;
+
+    private int currentBlock;
+    private long currentGroupRowCount;
+    private long nextRowInGroup;
+
+    private long completedBytes;
+    private long readTimeNanos;
+
+    public ParquetReader(Configuration configuration, Path path, List<BlockMetaData> blocks, List<ColumnDescriptor> columns)
+            throws IOException
+    {
+        checkNotNull(configuration, "configuration is null");
+        checkNotNull(path, "path is null");
+        this.blocks = ImmutableList.copyOf(checkNotNull(blocks, "blocks is null"));
+        this.columns = ImmutableList.copyOf(checkNotNull(columns, "columns is null"));
+
+        this.columnReaders = new ParquetColumnReader[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            columnReaders[i] = ParquetColumnReader.createReader(columns.get(i));
+        }
+
+        long totalBytes = 0;
+        for (BlockMetaData block : blocks) {
+            totalBytes += block.getCompressedSize();
+        }
+        this.totalBytes = totalBytes;
+
+        this.fileReader = new ParquetFileReader(configuration, path, this.blocks, this.columns);
+    }
+
+    /**
+     * @return the index of the column with the specified name, or -1 if the column is not read
+     */
+    public int getColumnIndex(String name)
+    {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).getPath()[0].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public long getTotalBytes()
+    {
+        return totalBytes;
+    }
+
+    public long getCompletedBytes()
+    {
+        return completedBytes;
+    }
+
+    public long getReadTimeNanos()
+    {
+        return readTimeNanos;
+    }
+
+    /**
+     * @return the number of rows in the next batch, or -1 if there are no more rows
+     */
+    public int nextBatch()
+            throws IOException
+    {
+        while (nextRowInGroup >= currentGroupRowCount) {
+            if (!advanceToNextRowGroup()) {
+                return -1;
+            }
+        }
+
+        int batchSize = (int) min(MAX_VECTOR_LENGTH, currentGroupRowCount - nextRowInGroup);
+        nextRowInGroup += batchSize;
+        for (ParquetColumnReader columnReader : columnReaders) {
+            columnReader.prepareNextRead(batchSize);
+        }
+        return batchSize;
+    }
+
+    public void readVector(int column, boolean[] vector, boolean[] isNull)
+            throws IOException
+    {
+        ((ParquetBooleanColumnReader) columnReaders[column]).readVector(vector, isNull);
+    }
+
+    public void readVector(int column, long[] vector, boolean[] isNull)
+            throws IOException
+    {
+        ((ParquetLongColumnReader) columnReaders[column]).readVector(vector, isNull);
+    }
+
+    public void readVector(int column, double[] vector, boolean[] isNull)
+            throws IOException
+    {
+        ((ParquetDoubleColumnReader) columnReaders[column]).readVector(vector, isNull);
+    }
+
+    public void readVector(int column, Slice[] vector, boolean[] isNull)
+            throws IOException
+    {
+        ((ParquetBinaryColumnReader) columnReaders[column]).readVector(vector, isNull);
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        fileReader.close();
+    }
+
+    private boolean advanceToNextRowGroup()
+            throws IOException
+    {
+        if (currentBlock >= blocks.size()) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        PageReadStore pages = fileReader.readNextRowGroup();
+        readTimeNanos += System.nanoTime() - start;
+        if (pages == null) {
+            return false;
+        }
+
+        completedBytes += blocks.get(currentBlock).getCompressedSize();
+        currentBlock++;
+
+        currentGroupRowCount = pages.getRowCount();
+        nextRowInGroup = 0;
+        for (int i = 0; i < columnReaders.length; i++) {
+            columnReaders[i].setPageReader(pages.getPageReader(columns.get(i)));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import io.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+public class ParquetReaderStats
+{
+    private final CounterStat rowGroupsRead = new CounterStat();
+    private final CounterStat rowGroupsSkippedByStatistics = new CounterStat();
+    private final CounterStat rowGroupsSkippedByDictionary = new CounterStat();
+
+    public void rowGroupRead()
+    {
+        rowGroupsRead.update(1);
+    }
+
+    public void rowGroupSkippedByStatistics()
+    {
+        rowGroupsSkippedByStatistics.update(1);
+    }
+
+    public void rowGroupSkippedByDictionary()
+    {
+        rowGroupsSkippedByDictionary.update(1);
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRowGroupsRead()
+    {
+        return rowGroupsRead;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRowGroupsSkippedByStatistics()
+    {
+        return rowGroupsSkippedByStatistics;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRowGroupsSkippedByDictionary()
+    {
+        return rowGroupsSkippedByDictionary;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import com.facebook.presto.spi.Domain;
+import com.facebook.presto.spi.Range;
+import com.facebook.presto.spi.SortedRangeSet;
+import com.facebook.presto.spi.TupleDomain;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Primitives;
+import io.airlift.slice.Slices;
+import parquet.column.ColumnDescriptor;
+import parquet.column.Dictionary;
+import parquet.column.statistics.BooleanStatistics;
+import parquet.column.statistics.DoubleStatistics;
+import parquet.column.statistics.FloatStatistics;
+import parquet.column.statistics.IntStatistics;
+import parquet.column.statistics.LongStatistics;
+import parquet.column.statistics.Statistics;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Decides if a row group can contain rows matching the effective predicate, first using the
+ * column chunk statistics from the footer, and then, for columns constrained to a set of values,
+ * using the dictionary of the column chunk.
+ * <p>
+ * Minimum and maximum statistics of binary columns are ignored, because older writers compare
+ * binary values as signed bytes, so the recorded bounds are not reliable for non-ASCII values.
+ */
+public class TupleDomainParquetPredicate<C>
+{
+    private final TupleDomain<C> effectivePredicate;
+    private final List<ColumnReference<C>> columnReferences;
+
+    public TupleDomainParquetPredicate(TupleDomain<C> effectivePredicate, List<ColumnReference<C>> columnReferences)
+    {
+        this.effectivePredicate = checkNotNull(effectivePredicate, "effectivePredicate is null");
+        this.columnReferences = ImmutableList.copyOf(checkNotNull(columnReferences, "columnReferences is null"));
+    }
+
+    public boolean matches(long numberOfRows, Map<ColumnDescriptor, Statistics<?>> statisticsByColumn)
+    {
+        ImmutableMap.Builder<C, Domain> domains = ImmutableMap.builder();
+
+        for (ColumnReference<C> columnReference : columnReferences) {
+            Statistics<?> statistics = statisticsByColumn.get(columnReference.getDescriptor());
+            domains.put(columnReference.getColumn(), getDomain(columnReference.getType(), numberOfRows, statistics));
+        }
+        TupleDomain<C> rowGroupDomain = TupleDomain.withColumnDomains(domains.build());
+
+        return effectivePredicate.overlaps(rowGroupDomain);
+    }
+
+    /**
+     * Columns for which a dictionary can prove that a row group does not match, that is, columns
+     * constrained to a set of values and not to null.
+     */
+    public List<ColumnDescriptor> getDictionaryColumns()
+    {
+        if (effectivePredicate.isNone()) {
+            return ImmutableList.of();
+        }
+
+        ImmutableList.Builder<ColumnDescriptor> columns = ImmutableList.builder();
+        for (ColumnReference<C> columnReference : columnReferences) {
+            Domain domain = effectivePredicate.getDomains().get(columnReference.getColumn());
+            if (domain != null && isDiscrete(domain)) {
+                columns.add(columnReference.getDescriptor());
+            }
+        }
+        return columns.build();
+    }
+
+    /**
+     * @param dictionaries dictionaries of column chunks that are entirely dictionary encoded
+     */
+    public boolean matches(Map<ColumnDescriptor, Dictionary> dictionaries)
+    {
+        if (effectivePredicate.isNone()) {
+            return false;
+        }
+
+        for (ColumnReference<C> columnReference : columnReferences) {
+            Dictionary dictionary = dictionaries.get(columnReference.getDescriptor());
+            Domain domain = effectivePredicate.getDomains().get(columnReference.getColumn());
+            if (dictionary == null || domain == null || !isDiscrete(domain)) {
+                continue;
+            }
+
+            if (!dictionaryMatches(domain, columnReference.getDescriptor(), dictionary)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDiscrete(Domain domain)
+    {
+        if (domain.isNullAllowed() || domain.getRanges().isNone()) {
+            return false;
+        }
+        for (Range range : domain.getRanges()) {
+            if (!range.isSingleValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean dictionaryMatches(Domain domain, ColumnDescriptor descriptor, Dictionary dictionary)
+    {
+        for (int id = 0; id <= dictionary.getMaxId(); id++) {
+            Comparable<?> value;
+            switch (descriptor.getType()) {
+                case INT32:
+                    value = (long) dictionary.decodeToInt(id);
+                    break;
+                case INT64:
+                    value = dictionary.decodeToLong(id);
+                    break;
+                case FLOAT:
+                    value = (double) dictionary.decodeToFloat(id);
+                    break;
+                case DOUBLE:
+                    value = dictionary.decodeToDouble(id);
+                    break;
+                case BINARY:
+                    value = Slices.wrappedBuffer(dictionary.decodeToBinary(id).getBytes());
+                    break;
+                default:
+                    return true;
+            }
+
+            if (domain.includesValue(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Domain getDomain(Type type, long rowCount, Statistics<?> statistics)
+    {
+        Class<?> boxedJavaType = Primitives.wrap(type.getJavaType());
+        if (rowCount == 0) {
+            return Domain.none(boxedJavaType);
+        }
+
+        if (statistics == null) {
+            return Domain.all(boxedJavaType);
+        }
+
+        if (statistics.isEmpty()) {
+            // files written without statistics have empty statistics with no nulls
+            if (statistics.getNumNulls() == rowCount) {
+                return Domain.onlyNull(boxedJavaType);
+            }
+            return Domain.all(boxedJavaType);
+        }
+
+        boolean hasNullValue = statistics.getNumNulls() != 0;
+
+        if (boxedJavaType == Boolean.class && statistics instanceof BooleanStatistics) {
+            BooleanStatistics booleanStatistics = (BooleanStatistics) statistics;
+
+            boolean hasTrueValues = booleanStatistics.getMax();
+            boolean hasFalseValues = !booleanStatistics.getMin();
+            if (hasTrueValues && hasFalseValues) {
+                return Domain.all(Boolean.class);
+            }
+            if (hasTrueValues) {
+                return Domain.create(SortedRangeSet.singleValue(true), hasNullValue);
+            }
+            if (hasFalseValues) {
+                return Domain.create(SortedRangeSet.singleValue(false), hasNullValue);
+            }
+        }
+        else if (boxedJavaType == Long.class && statistics instanceof IntStatistics) {
+            IntStatistics intStatistics = (IntStatistics) statistics;
+            return createDomain(hasNullValue, (long) intStatistics.getMin(), (long) intStatistics.getMax());
+        }
+        else if (boxedJavaType == Long.class && statistics instanceof LongStatistics) {
+            LongStatistics longStatistics = (LongStatistics) statistics;
+            return createDomain(hasNullValue, longStatistics.getMin(), longStatistics.getMax());
+        }
+        else if (boxedJavaType == Double.class && statistics instanceof FloatStatistics) {
+            FloatStatistics floatStatistics = (FloatStatistics) statistics;
+            return createDomain(boxedJavaType, hasNullValue, (double) floatStatistics.getMin(), (double) floatStatistics.getMax());
+        }
+        else if (boxedJavaType == Double.class && statistics instanceof DoubleStatistics) {
+            DoubleStatistics doubleStatistics = (DoubleStatistics) statistics;
+            return createDomain(boxedJavaType, hasNullValue, doubleStatistics.getMin(), doubleStatistics.getMax());
+        }
+        return Domain.create(SortedRangeSet.all(boxedJavaType), hasNullValue);
+    }
+
+    private static Domain createDomain(boolean hasNullValue, long min, long max)
+    {
+        return Domain.create(SortedRangeSet.of(Range.range(min, true, max, true)), hasNullValue);
+    }
+
+    private static Domain createDomain(Class<?> boxedJavaType, boolean hasNullValue, double min, double max)
+    {
+        if (Double.isNaN(min) || Double.isNaN(max)) {
+            return Domain.create(SortedRangeSet.all(boxedJavaType), hasNullValue);
+        }
+        return Domain.create(SortedRangeSet.of(Range.range(min, true, max, true)), hasNullValue);
+    }
+
+    public static class ColumnReference<C>
+    {
+        private final C column;
+        private final ColumnDescriptor descriptor;
+        private final Type type;
+
+        public ColumnReference(C column, ColumnDescriptor descriptor, Type type)
+        {
+            this.column = checkNotNull(column, "column is null");
+            this.descriptor = checkNotNull(descriptor, "descriptor is null");
+            this.type = checkNotNull(type, "type is null");
+        }
+
+        public C getColumn()
+        {
+            return column;
+        }
+
+        public ColumnDescriptor getDescriptor()
+        {
+            return descriptor;
+        }
+
+        public Type getType()
+        {
+            return type;
+        }
+
+        @Override
+        public String toString()
+        {
+            return MoreObjects.toStringHelper(this)
+                    .add("column", column)
+                    .add("descriptor", descriptor)
+                    .add("type", type)
+                    .toString();
+        }
+    }
+}
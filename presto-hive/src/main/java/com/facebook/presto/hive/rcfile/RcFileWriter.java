@@ -0,0 +1,311 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.rcfile;
+
+import com.facebook.presto.hive.HiveFileWriter;
+import com.facebook.presto.hive.HiveStorageFormat;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceOutput;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.io.RCFile;
+import org.apache.hadoop.hive.ql.io.RCFileOutputFormat;
+import org.apache.hadoop.hive.serde2.columnar.BytesRefArrayWritable;
+import org.apache.hadoop.hive.serde2.columnar.BytesRefWritable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_WRITER_ERROR;
+import static com.facebook.presto.hive.HiveStorageFormat.RCBINARY;
+import static com.facebook.presto.hive.HiveStorageFormat.RCTEXT;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.spi.type.DateType.DATE;
+import static com.facebook.presto.spi.type.DoubleType.DOUBLE;
+import static com.facebook.presto.spi.type.VarbinaryType.VARBINARY;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Writes an RCFile by encoding each column of a page directly in the
+ * LazyBinaryColumnarSerDe (RCBINARY) or ColumnarSerDe (RCTEXT) format.
+ * The encoding is the inverse of {@link RcBinaryBlockLoader} and {@link RcTextBlockLoader}.
+ */
+public class RcFileWriter
+        implements HiveFileWriter
+{
+    private static final Set<Type> SUPPORTED_TYPES = ImmutableSet.<Type>of(BOOLEAN, BIGINT, DOUBLE, VARCHAR, VARBINARY, DATE);
+
+    private static final byte HIVE_EMPTY_STRING_BYTE = (byte) 0xbf;
+    private static final byte[] TEXT_NULL = "\\N".getBytes(US_ASCII);
+    private static final byte[] TEXT_TRUE = "true".getBytes(US_ASCII);
+    private static final byte[] TEXT_FALSE = "false".getBytes(US_ASCII);
+    private static final DateTimeFormatter HIVE_DATE_FORMATTER = ISODateTimeFormat.date().withZoneUTC();
+
+    private final Path path;
+    private final JobConf conf;
+    private final List<Type> columnTypes;
+    private final boolean binary;
+    private final RCFile.Writer writer;
+
+    private final BytesRefArrayWritable row;
+    private final BytesRefWritable[] fields;
+    private final DynamicSliceOutput buffer = new DynamicSliceOutput(64 * 1024);
+
+    private long rowCount;
+    private long writtenBytes;
+
+    // length of the file when it was last checked, and the encoded bytes appended since it changed
+    private long flushedBytes;
+    private long bufferedBytes;
+
+    public RcFileWriter(Path path, List<String> columnNames, List<Type> columnTypes, HiveStorageFormat storageFormat, JobConf conf)
+    {
+        this.path = checkNotNull(path, "path is null");
+        this.conf = checkNotNull(conf, "conf is null");
+        this.columnTypes = ImmutableList.copyOf(checkNotNull(columnTypes, "columnTypes is null"));
+        checkNotNull(columnNames, "columnNames is null");
+        checkArgument(columnNames.size() == columnTypes.size(), "columnNames and columnTypes sizes don't match");
+        checkArgument(storageFormat == RCBINARY || storageFormat == RCTEXT, "storageFormat is not RCFile: %s", storageFormat);
+        this.binary = (storageFormat == RCBINARY);
+
+        // use the writer directly, instead of through the output format, to get the length of the written file
+        RCFileOutputFormat.setColumnNumber(conf, columnTypes.size());
+        try {
+            CompressionCodec codec = null;
+            if (FileOutputFormat.getCompressOutput(conf)) {
+                codec = ReflectionUtils.newInstance(FileOutputFormat.getOutputCompressorClass(conf, DefaultCodec.class), conf);
+            }
+            writer = new RCFile.Writer(path.getFileSystem(conf), conf, path, Reporter.NULL, codec);
+        }
+        catch (IOException e) {
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to create writer for " + path, e);
+        }
+
+        row = new BytesRefArrayWritable(columnTypes.size());
+        fields = new BytesRefWritable[columnTypes.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = new BytesRefWritable();
+            row.set(i, fields[i]);
+        }
+    }
+
+    public static boolean isSupported(List<Type> columnTypes)
+    {
+        return SUPPORTED_TYPES.containsAll(columnTypes);
+    }
+
+    @Override
+    public void appendPage(Page page)
+    {
+        checkArgument(page.getChannelCount() == columnTypes.size(), "channelCount does not match");
+
+        // encode each column of the page into a single buffer, and then point the fields of each row at the encoded values
+        int positionCount = page.getPositionCount();
+        int[][] offsets = new int[columnTypes.size()][];
+        buffer.reset();
+        for (int channel = 0; channel < columnTypes.size(); channel++) {
+            offsets[channel] = encodeColumn(columnTypes.get(channel), page.getBlock(channel), buffer);
+        }
+        byte[] data = buffer.slice().getBytes();
+
+        try {
+            for (int position = 0; position < positionCount; position++) {
+                for (int channel = 0; channel < fields.length; channel++) {
+                    int start = offsets[channel][position];
+                    fields[channel].set(data, start, offsets[channel][position + 1] - start);
+                }
+                writer.append(row);
+            }
+        }
+        catch (IOException e) {
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to write to " + path, e);
+        }
+
+        rowCount += positionCount;
+        updateWrittenBytes(data.length);
+    }
+
+    /**
+     * RCFile buffers rows until a row group is full, and then compresses and writes the whole
+     * row group. The estimate is the length of the file so far plus the encoded, uncompressed,
+     * size of the rows appended since the file last grew.
+     */
+    private void updateWrittenBytes(long appendedBytes)
+    {
+        long length;
+        try {
+            length = writer.getLength();
+        }
+        catch (IOException e) {
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to get length of " + path, e);
+        }
+
+        if (length != flushedBytes) {
+            flushedBytes = length;
+            bufferedBytes = 0;
+        }
+        else {
+            bufferedBytes += appendedBytes;
+        }
+        writtenBytes = flushedBytes + bufferedBytes;
+    }
+
+    @Override
+    public long getRowCount()
+    {
+        return rowCount;
+    }
+
+    @Override
+    public long getWrittenBytes()
+    {
+        return writtenBytes;
+    }
+
+    @Override
+    public void commit()
+    {
+        try {
+            writer.close();
+            writtenBytes = path.getFileSystem(conf).getFileStatus(path).getLen();
+        }
+        catch (IOException e) {
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to close " + path, e);
+        }
+    }
+
+    @Override
+    public void rollback()
+    {
+        try {
+            try {
+                writer.close();
+            }
+            finally {
+                path.getFileSystem(conf).delete(path, false);
+            }
+        }
+        catch (IOException e) {
+            throw new PrestoException(HIVE_WRITER_ERROR, "Failed to delete " + path, e);
+        }
+    }
+
+    private int[] encodeColumn(Type type, Block block, SliceOutput output)
+    {
+        int positionCount = block.getPositionCount();
+        int[] offsets = new int[positionCount + 1];
+        for (int position = 0; position < positionCount; position++) {
+            offsets[position] = output.size();
+            if (binary) {
+                encodeBinaryValue(type, block, position, output);
+            }
+            else {
+                encodeTextValue(type, block, position, output);
+            }
+        }
+        offsets[positionCount] = output.size();
+        return offsets;
+    }
+
+    private static void encodeBinaryValue(Type type, Block block, int position, SliceOutput output)
+    {
+        // nulls are stored as zero length values
+        if (block.isNull(position)) {
+            return;
+        }
+        try {
+            if (type.equals(BOOLEAN)) {
+                output.writeByte(type.getBoolean(block, position) ? 1 : 0);
+            }
+            else if (type.equals(BIGINT) || type.equals(DATE)) {
+                WritableUtils.writeVLong(output, type.getLong(block, position));
+            }
+            else if (type.equals(DOUBLE)) {
+                // the file format uses big endian
+                output.writeLong(Long.reverseBytes(Double.doubleToLongBits(type.getDouble(block, position))));
+            }
+            else if (type.equals(VARCHAR)) {
+                Slice value = type.getSlice(block, position);
+                if (value.length() == 0) {
+                    // an empty value would be read back as null
+                    output.writeByte(HIVE_EMPTY_STRING_BYTE);
+                }
+                else {
+                    output.writeBytes(value);
+                }
+            }
+            else if (type.equals(VARBINARY)) {
+                output.writeBytes(type.getSlice(block, position));
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported type: " + type);
+            }
+        }
+        catch (IOException e) {
+            // writing to a slice output can not fail
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void encodeTextValue(Type type, Block block, int position, SliceOutput output)
+    {
+        if (block.isNull(position)) {
+            output.writeBytes(TEXT_NULL);
+        }
+        else if (type.equals(BOOLEAN)) {
+            output.writeBytes(type.getBoolean(block, position) ? TEXT_TRUE : TEXT_FALSE);
+        }
+        else if (type.equals(BIGINT)) {
+            output.writeBytes(Long.toString(type.getLong(block, position)).getBytes(US_ASCII));
+        }
+        else if (type.equals(DOUBLE)) {
+            output.writeBytes(Double.toString(type.getDouble(block, position)).getBytes(US_ASCII));
+        }
+        else if (type.equals(DATE)) {
+            long millis = TimeUnit.DAYS.toMillis(type.getLong(block, position));
+            output.writeBytes(HIVE_DATE_FORMATTER.print(millis).getBytes(US_ASCII));
+        }
+        else if (type.equals(VARCHAR)) {
+            output.writeBytes(type.getSlice(block, position));
+        }
+        else if (type.equals(VARBINARY)) {
+            output.writeBytes(Base64.getEncoder().encode(type.getSlice(block, position).getBytes()));
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported type: " + type);
+        }
+    }
+}
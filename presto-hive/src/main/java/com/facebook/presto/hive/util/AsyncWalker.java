@@ -19,6 +19,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.airlift.concurrent.SetThreadName;
 import io.airlift.stats.TimeStat;
+import io.airlift.units.Duration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
@@ -31,6 +32,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import static com.facebook.presto.hadoop.HadoopFileStatus.isDirectory;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class AsyncWalker
 {
@@ -82,10 +84,21 @@ public class AsyncWalker
     private void doWalk(Path path, FileStatusCallback callback, AtomicLong taskCount, SettableFuture<Void> future)
     {
         try (SetThreadName ignored = new SetThreadName("HiveHdfsWalker")) {
+            // time spent talking to the file system, excluding the callbacks
+            long listingNanos = 0;
+
+            long start = System.nanoTime();
             RemoteIterator<LocatedFileStatus> iterator = getLocatedFileStatusRemoteIterator(path);
+            listingNanos += System.nanoTime() - start;
 
-            while (iterator.hasNext()) {
+            while (true) {
+                start = System.nanoTime();
+                if (!iterator.hasNext()) {
+                    listingNanos += System.nanoTime() - start;
+                    break;
+                }
                 LocatedFileStatus status = getLocatedFileStatus(iterator);
+                listingNanos += System.nanoTime() - start;
 
                 // ignore hidden files. Hive ignores files starting with _ and . as well.
                 String fileName = status.getPath().getName();
@@ -102,6 +115,7 @@ public class AsyncWalker
                     return;
                 }
             }
+            namenodeStats.getListDirectory().record(new Duration(listingNanos, NANOSECONDS));
         }
         catch (FileNotFoundException e) {
             future.setException(new FileNotFoundException("Partition location does not exist: " + path));
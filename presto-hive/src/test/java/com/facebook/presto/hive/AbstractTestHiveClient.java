@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.hive;
 
+import com.facebook.presto.hive.cache.CacheAffinity;
 import com.facebook.presto.hive.metastore.CachingHiveMetastore;
 import com.facebook.presto.hive.metastore.HiveMetastore;
 import com.facebook.presto.hive.orc.DwrfHiveRecordCursor;
@@ -21,15 +22,17 @@ import com.facebook.presto.hive.orc.OrcHiveRecordCursor;
 import com.facebook.presto.hive.orc.OrcPageSource;
 import com.facebook.presto.hive.orc.OrcRecordCursorProvider;
 import com.facebook.presto.hive.rcfile.RcFilePageSource;
+import com.facebook.presto.metadata.InMemoryNodeManager;
 import com.facebook.presto.spi.ColumnMetadata;
 import com.facebook.presto.spi.ConnectorColumnHandle;
 import com.facebook.presto.spi.ConnectorMetadata;
 import com.facebook.presto.spi.ConnectorOutputTableHandle;
+import com.facebook.presto.spi.ConnectorPageSink;
+import com.facebook.presto.spi.ConnectorPageSinkProvider;
 import com.facebook.presto.spi.ConnectorPageSource;
 import com.facebook.presto.spi.ConnectorPageSourceProvider;
 import com.facebook.presto.spi.ConnectorPartition;
 import com.facebook.presto.spi.ConnectorPartitionResult;
-import com.facebook.presto.spi.ConnectorRecordSinkProvider;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.ConnectorSplit;
 import com.facebook.presto.spi.ConnectorSplitManager;
@@ -37,15 +40,17 @@ import com.facebook.presto.spi.ConnectorSplitSource;
 import com.facebook.presto.spi.ConnectorTableHandle;
 import com.facebook.presto.spi.ConnectorTableMetadata;
 import com.facebook.presto.spi.Domain;
+import com.facebook.presto.spi.PageBuilder;
 import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.RecordPageSource;
-import com.facebook.presto.spi.RecordSink;
 import com.facebook.presto.spi.SchemaTableName;
 import com.facebook.presto.spi.SchemaTablePrefix;
 import com.facebook.presto.spi.SerializableNativeValue;
 import com.facebook.presto.spi.TableNotFoundException;
 import com.facebook.presto.spi.TupleDomain;
 import com.facebook.presto.spi.ViewNotFoundException;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.block.BlockBuilderStatus;
 import com.facebook.presto.spi.type.SqlDate;
 import com.facebook.presto.spi.type.SqlTimestamp;
 import com.facebook.presto.spi.type.SqlVarbinary;
@@ -118,6 +123,7 @@ import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.common.collect.Maps.uniqueIndex;
 import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static io.airlift.json.JsonCodec.jsonCodec;
 import static io.airlift.slice.Slices.utf8Slice;
 import static io.airlift.testing.Assertions.assertInstanceOf;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -179,7 +185,7 @@ public abstract class AbstractTestHiveClient
     protected ConnectorMetadata metadata;
     protected ConnectorSplitManager splitManager;
     protected ConnectorPageSourceProvider pageSourceProvider;
-    protected ConnectorRecordSinkProvider recordSinkProvider;
+    protected ConnectorPageSinkProvider pageSinkProvider;
     protected ExecutorService executor;
 
     @BeforeClass
@@ -301,14 +307,17 @@ public abstract class AbstractTestHiveClient
                 true,
                 true,
                 true,
+                false,
                 hiveClientConfig.getHiveStorageFormat(),
-                new TypeRegistry());
+                new TypeRegistry(),
+                jsonCodec(HiveWrittenFile.class));
         splitManager = new HiveSplitManager(
                 connectorId,
                 metastoreClient,
                 new NamenodeStats(),
                 hdfsEnvironment,
                 new HadoopDirectoryLister(),
+                new CacheAffinity(connectorName, new InMemoryNodeManager(), false),
                 timeZone,
                 newDirectExecutorService(),
                 maxOutstandingSplits,
@@ -320,8 +329,15 @@ public abstract class AbstractTestHiveClient
                 hiveClientConfig.getMaxInitialSplits(),
                 false,
                 false,
+                hiveClientConfig.isMetastorePartitionFilterEnabled(),
+                hiveClientConfig.isMetastorePartitionRangeFilterEnabled(),
+                false,
                 false);
-        recordSinkProvider = new HiveRecordSinkProvider(hdfsEnvironment);
+        pageSinkProvider = new HivePageSinkProvider(
+                new HiveFileWriterFactory(hdfsEnvironment, hiveClientConfig),
+                hiveClientConfig,
+                newDirectExecutorService(),
+                jsonCodec(HiveWrittenFile.class));
         pageSourceProvider = new HivePageSourceProvider(hiveClientConfig, hdfsEnvironment, DEFAULT_HIVE_RECORD_CURSOR_PROVIDER, DEFAULT_HIVE_DATA_STREAM_FACTORIES, TYPE_MANAGER);
     }
 
@@ -1213,21 +1229,20 @@ public abstract class AbstractTestHiveClient
         ConnectorOutputTableHandle outputHandle = metadata.beginCreateTable(SESSION, tableMetadata);
 
         // write the records
-        RecordSink sink = recordSinkProvider.getRecordSink(outputHandle);
-
-        sink.beginRecord(8);
-        sink.appendLong(2);
-        sink.finishRecord();
-
-        sink.beginRecord(5);
-        sink.appendLong(3);
-        sink.finishRecord();
-
-        sink.beginRecord(7);
-        sink.appendLong(4);
-        sink.finishRecord();
+        ConnectorPageSink sink = pageSinkProvider.createPageSink(outputHandle);
+
+        PageBuilder pageBuilder = new PageBuilder(ImmutableList.of(BIGINT));
+        BlockBuilder sampleWeightBlockBuilder = BIGINT.createBlockBuilder(new BlockBuilderStatus());
+        long[][] rows = {{2, 8}, {3, 5}, {4, 7}};
+        for (long[] row : rows) {
+            pageBuilder.declarePosition();
+            BIGINT.writeLong(pageBuilder.getBlockBuilder(0), row[0]);
+            BIGINT.writeLong(sampleWeightBlockBuilder, row[1]);
+        }
+        sink.appendPage(pageBuilder.build(), sampleWeightBlockBuilder.build());
 
         Collection<Slice> fragments = sink.commit();
+        assertEquals(fragments.size(), 1);
 
         // commit the table
         metadata.commitCreateTable(outputHandle, fragments);
@@ -1295,33 +1310,34 @@ public abstract class AbstractTestHiveClient
         ConnectorOutputTableHandle outputHandle = metadata.beginCreateTable(session, tableMetadata);
 
         // write the records
-        RecordSink sink = recordSinkProvider.getRecordSink(outputHandle);
-
-        sink.beginRecord(1);
-        sink.appendLong(1);
-        sink.appendString("hello".getBytes(UTF_8));
-        sink.appendLong(123);
-        sink.appendDouble(43.5);
-        sink.appendBoolean(true);
-        sink.finishRecord();
-
-        sink.beginRecord(1);
-        sink.appendLong(2);
-        sink.appendNull();
-        sink.appendNull();
-        sink.appendNull();
-        sink.appendNull();
-        sink.finishRecord();
-
-        sink.beginRecord(1);
-        sink.appendLong(3);
-        sink.appendString("bye".getBytes(UTF_8));
-        sink.appendLong(456);
-        sink.appendDouble(98.1);
-        sink.appendBoolean(false);
-        sink.finishRecord();
-
+        ConnectorPageSink sink = pageSinkProvider.createPageSink(outputHandle);
+
+        PageBuilder pageBuilder = new PageBuilder(ImmutableList.of(BIGINT, VARCHAR, BIGINT, DOUBLE, BOOLEAN));
+
+        pageBuilder.declarePosition();
+        BIGINT.writeLong(pageBuilder.getBlockBuilder(0), 1);
+        VARCHAR.writeSlice(pageBuilder.getBlockBuilder(1), utf8Slice("hello"));
+        BIGINT.writeLong(pageBuilder.getBlockBuilder(2), 123);
+        DOUBLE.writeDouble(pageBuilder.getBlockBuilder(3), 43.5);
+        BOOLEAN.writeBoolean(pageBuilder.getBlockBuilder(4), true);
+
+        pageBuilder.declarePosition();
+        BIGINT.writeLong(pageBuilder.getBlockBuilder(0), 2);
+        pageBuilder.getBlockBuilder(1).appendNull();
+        pageBuilder.getBlockBuilder(2).appendNull();
+        pageBuilder.getBlockBuilder(3).appendNull();
+        pageBuilder.getBlockBuilder(4).appendNull();
+
+        pageBuilder.declarePosition();
+        BIGINT.writeLong(pageBuilder.getBlockBuilder(0), 3);
+        VARCHAR.writeSlice(pageBuilder.getBlockBuilder(1), utf8Slice("bye"));
+        BIGINT.writeLong(pageBuilder.getBlockBuilder(2), 456);
+        DOUBLE.writeDouble(pageBuilder.getBlockBuilder(3), 98.1);
+        BOOLEAN.writeBoolean(pageBuilder.getBlockBuilder(4), false);
+
+        sink.appendPage(pageBuilder.build(), null);
         Collection<Slice> fragments = sink.commit();
+        assertEquals(fragments.size(), 1);
 
         // commit the table
         metadata.commitCreateTable(outputHandle, fragments);
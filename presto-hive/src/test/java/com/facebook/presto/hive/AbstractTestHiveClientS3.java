@@ -13,20 +13,23 @@
  */
 package com.facebook.presto.hive;
 
+import com.facebook.presto.hive.cache.CacheAffinity;
 import com.facebook.presto.hive.metastore.CachingHiveMetastore;
+import com.facebook.presto.metadata.InMemoryNodeManager;
 import com.facebook.presto.spi.ColumnMetadata;
 import com.facebook.presto.spi.ConnectorColumnHandle;
+import com.facebook.presto.spi.ConnectorPageSink;
+import com.facebook.presto.spi.ConnectorPageSinkProvider;
 import com.facebook.presto.spi.ConnectorPageSource;
 import com.facebook.presto.spi.ConnectorPageSourceProvider;
 import com.facebook.presto.spi.ConnectorPartitionResult;
-import com.facebook.presto.spi.ConnectorRecordSinkProvider;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.ConnectorSplit;
 import com.facebook.presto.spi.ConnectorSplitManager;
 import com.facebook.presto.spi.ConnectorSplitSource;
 import com.facebook.presto.spi.ConnectorTableHandle;
 import com.facebook.presto.spi.ConnectorTableMetadata;
-import com.facebook.presto.spi.RecordSink;
+import com.facebook.presto.spi.PageBuilder;
 import com.facebook.presto.spi.SchemaTableName;
 import com.facebook.presto.spi.TupleDomain;
 import com.facebook.presto.testing.MaterializedResult;
@@ -66,6 +69,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static io.airlift.json.JsonCodec.jsonCodec;
 import static java.util.Locale.ENGLISH;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static org.testng.Assert.assertEquals;
@@ -85,7 +89,7 @@ public abstract class AbstractTestHiveClientS3
     protected TestingHiveMetastore metastoreClient;
     protected HiveMetadata metadata;
     protected ConnectorSplitManager splitManager;
-    protected ConnectorRecordSinkProvider recordSinkProvider;
+    protected ConnectorPageSinkProvider pageSinkProvider;
     protected ConnectorPageSourceProvider pageSourceProvider;
 
     private ExecutorService executor;
@@ -142,7 +146,8 @@ public abstract class AbstractTestHiveClientS3
                 metastoreClient,
                 hdfsEnvironment,
                 newDirectExecutorService(),
-                new TypeRegistry());
+                new TypeRegistry(),
+                jsonCodec(HiveWrittenFile.class));
         splitManager = new HiveSplitManager(
                 connectorId,
                 hiveClientConfig,
@@ -150,8 +155,13 @@ public abstract class AbstractTestHiveClientS3
                 new NamenodeStats(),
                 hdfsEnvironment,
                 new HadoopDirectoryLister(),
+                new CacheAffinity(connectorId, hiveClientConfig, new InMemoryNodeManager()),
                 executor);
-        recordSinkProvider = new HiveRecordSinkProvider(hdfsEnvironment);
+        pageSinkProvider = new HivePageSinkProvider(
+                new HiveFileWriterFactory(hdfsEnvironment, hiveClientConfig),
+                hiveClientConfig,
+                executor,
+                jsonCodec(HiveWrittenFile.class));
         pageSourceProvider = new HivePageSourceProvider(hiveClientConfig, hdfsEnvironment, DEFAULT_HIVE_RECORD_CURSOR_PROVIDER, DEFAULT_HIVE_DATA_STREAM_FACTORIES, TYPE_MANAGER);
     }
 
@@ -220,19 +230,14 @@ public abstract class AbstractTestHiveClientS3
         HiveOutputTableHandle outputHandle = metadata.beginCreateTable(SESSION, tableMetadata);
 
         // write the records
-        RecordSink sink = recordSinkProvider.getRecordSink(outputHandle);
-
-        sink.beginRecord(1);
-        sink.appendLong(1);
-        sink.finishRecord();
+        ConnectorPageSink sink = pageSinkProvider.createPageSink(outputHandle);
 
-        sink.beginRecord(1);
-        sink.appendLong(3);
-        sink.finishRecord();
-
-        sink.beginRecord(1);
-        sink.appendLong(2);
-        sink.finishRecord();
+        PageBuilder pageBuilder = new PageBuilder(ImmutableList.of(BIGINT));
+        for (long value : new long[] {1, 3, 2}) {
+            pageBuilder.declarePosition();
+            BIGINT.writeLong(pageBuilder.getBlockBuilder(0), value);
+        }
+        sink.appendPage(pageBuilder.build(), null);
 
         Collection<Slice> fragments = sink.commit();
 
@@ -70,6 +70,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.List;
+import java.util.Optional;
 import java.util.Properties;
 
 import static com.facebook.presto.hive.HiveType.getType;
@@ -1680,7 +1681,8 @@ public final class BenchmarkHiveFileFormats
                 ImmutableList.<HostAddress>of(),
                 false,
                 SESSION,
-                TupleDomain.<HiveColumnHandle>all());
+                TupleDomain.<HiveColumnHandle>all(),
+                Optional.empty());
     }
 
     private static List<HiveColumnHandle> getHiveColumnHandles(TpchColumn<?>... tpchColumns)
@@ -80,7 +80,8 @@ public final class HiveBenchmarkQueryRunner
                 ImmutableMap.of("node.environment", "test"),
                 HiveBenchmarkQueryRunner.class.getClassLoader(),
                 metastore,
-                new TypeRegistry());
+                new TypeRegistry(),
+                nodeManager);
 
         Map<String, String> hiveCatalogConfig = ImmutableMap.<String, String>builder()
                 .put("hive.metastore.uri", "thrift://none.invalid:0")
@@ -52,6 +52,12 @@ public final class HiveQueryRunner
 
     public static QueryRunner createQueryRunner(Iterable<TpchTable<?>> tables)
             throws Exception
+    {
+        return createQueryRunner(tables, new InMemoryHiveMetastore(), ImmutableMap.<String, String>of());
+    }
+
+    public static QueryRunner createQueryRunner(Iterable<TpchTable<?>> tables, InMemoryHiveMetastore metastore, Map<String, String> extraHiveProperties)
+            throws Exception
     {
         assertEquals(DateTimeZone.getDefault(), TIME_ZONE, "Timezone not configured correctly. Add -Duser.timezone=Asia/Katmandu to your JVM arguments");
 
@@ -65,7 +71,6 @@ public final class HiveQueryRunner
             queryRunner.createCatalog("tpch_sampled", "tpch_sampled");
 
             File baseDir = queryRunner.getCoordinator().getBaseDataDir().toFile();
-            InMemoryHiveMetastore metastore = new InMemoryHiveMetastore();
             metastore.createDatabase(new Database("tpch", null, new File(baseDir, "tpch").toURI().toString(), null));
             metastore.createDatabase(new Database("tpch_sampled", null, new File(baseDir, "tpch_sampled").toURI().toString(), null));
 
@@ -75,6 +80,7 @@ public final class HiveQueryRunner
                     .put("hive.allow-drop-table", "true")
                     .put("hive.allow-rename-table", "true")
                     .put("hive.time-zone", TIME_ZONE.getID())
+                    .putAll(extraHiveProperties)
                     .build();
             queryRunner.createCatalog("hive", "hive", hiveProperties);
 
@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import org.apache.http.client.methods.HttpGet;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.min;
+import static org.apache.http.HttpStatus.SC_NOT_FOUND;
+import static org.apache.http.HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+
+/**
+ * In-process S3 stub that serves objects from memory and honors ranged GETs.
+ */
+public class MockAmazonS3
+        extends AmazonS3Client
+{
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final AtomicInteger getObjectRequests = new AtomicInteger();
+
+    public void putObject(String bucket, String key, byte[] data)
+    {
+        objects.put(bucket + "/" + key, data);
+    }
+
+    public int getGetObjectRequests()
+    {
+        return getObjectRequests.get();
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(String bucket, String key)
+            throws AmazonClientException
+    {
+        byte[] data = getData(bucket, key);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(data.length);
+        return metadata;
+    }
+
+    @Override
+    public S3Object getObject(GetObjectRequest request)
+            throws AmazonClientException
+    {
+        getObjectRequests.incrementAndGet();
+        byte[] data = getData(request.getBucketName(), request.getKey());
+
+        int start = 0;
+        int end = data.length - 1;
+        long[] range = request.getRange();
+        if (range != null) {
+            if (range[0] >= data.length) {
+                AmazonS3Exception exception = new AmazonS3Exception("Requested range not satisfiable");
+                exception.setStatusCode(SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                throw exception;
+            }
+            start = (int) range[0];
+            end = (int) min(range[1], data.length - 1);
+        }
+
+        S3Object object = new S3Object();
+        object.setBucketName(request.getBucketName());
+        object.setKey(request.getKey());
+        object.getObjectMetadata().setContentLength(end - start + 1);
+        object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(data, start, end - start + 1), new HttpGet()));
+        return object;
+    }
+
+    private byte[] getData(String bucket, String key)
+    {
+        byte[] data = objects.get(bucket + "/" + key);
+        if (data == null) {
+            AmazonS3Exception exception = new AmazonS3Exception("Not found");
+            exception.setStatusCode(SC_NOT_FOUND);
+            throw exception;
+        }
+        return data;
+    }
+}
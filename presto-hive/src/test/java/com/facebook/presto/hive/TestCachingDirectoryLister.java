@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.Duration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestCachingDirectoryLister
+{
+    private static final List<String> IMMUTABLE_PATHS = ImmutableList.of("hdfs://warehouse/logs/");
+
+    @Test
+    public void testCachesImmutablePaths()
+            throws Exception
+    {
+        CountingDirectoryLister delegate = new CountingDirectoryLister(3);
+        CachingDirectoryLister lister = new CachingDirectoryLister(delegate, IMMUTABLE_PATHS, 1000, new Duration(1, HOURS));
+
+        Path path = new Path("hdfs://warehouse/logs/ds=2015-01-01");
+        assertEquals(drain(lister.list(null, path)), 3);
+        assertEquals(drain(lister.list(null, path)), 3);
+        assertEquals(delegate.getListCount(), 1);
+        assertEquals(lister.getHitCount(), 1);
+        assertEquals(lister.getCachedDirectories(), 1);
+
+        lister.flushCache();
+        assertEquals(drain(lister.list(null, path)), 3);
+        assertEquals(delegate.getListCount(), 2);
+    }
+
+    @Test
+    public void testDoesNotCacheMutablePaths()
+            throws Exception
+    {
+        CountingDirectoryLister delegate = new CountingDirectoryLister(3);
+        CachingDirectoryLister lister = new CachingDirectoryLister(delegate, IMMUTABLE_PATHS, 1000, new Duration(1, HOURS));
+
+        Path path = new Path("hdfs://warehouse/orders/ds=2015-01-01");
+        assertFalse(lister.isCacheable(path));
+        assertEquals(drain(lister.list(null, path)), 3);
+        assertEquals(drain(lister.list(null, path)), 3);
+        assertEquals(delegate.getListCount(), 2);
+        assertEquals(lister.getCachedDirectories(), 0);
+    }
+
+    @Test
+    public void testPartialListingNotCached()
+            throws Exception
+    {
+        CountingDirectoryLister delegate = new CountingDirectoryLister(3);
+        CachingDirectoryLister lister = new CachingDirectoryLister(delegate, IMMUTABLE_PATHS, 1000, new Duration(1, HOURS));
+
+        Path path = new Path("hdfs://warehouse/logs/ds=2015-01-01");
+        assertTrue(lister.isCacheable(path));
+        RemoteIterator<LocatedFileStatus> iterator = lister.list(null, path);
+        iterator.hasNext();
+        iterator.next();
+        assertEquals(lister.getCachedDirectories(), 0);
+
+        assertEquals(drain(lister.list(null, path)), 3);
+        assertEquals(delegate.getListCount(), 2);
+        assertEquals(lister.getCachedDirectories(), 1);
+    }
+
+    @Test
+    public void testPrefixMatchesPathBoundaries()
+    {
+        CachingDirectoryLister lister = new CachingDirectoryLister(new CountingDirectoryLister(3), ImmutableList.of("hdfs://warehouse/logs", "hdfs://warehouse/events/"), 1000, new Duration(1, HOURS));
+
+        assertTrue(lister.isCacheable(new Path("hdfs://warehouse/logs")));
+        assertTrue(lister.isCacheable(new Path("hdfs://warehouse/logs/ds=2015-01-01")));
+        assertTrue(lister.isCacheable(new Path("hdfs://warehouse/events")));
+        assertTrue(lister.isCacheable(new Path("hdfs://warehouse/events/ds=2015-01-01")));
+
+        // siblings that share the prefix are not cached
+        assertFalse(lister.isCacheable(new Path("hdfs://warehouse/logs_staging/ds=2015-01-01")));
+        assertFalse(lister.isCacheable(new Path("hdfs://warehouse/eventsv2")));
+    }
+
+    @Test
+    public void testMaxSize()
+            throws Exception
+    {
+        CountingDirectoryLister delegate = new CountingDirectoryLister(3);
+        CachingDirectoryLister lister = new CachingDirectoryLister(delegate, IMMUTABLE_PATHS, 2, new Duration(1, HOURS));
+
+        // listings larger than the cache are never retained
+        Path path = new Path("hdfs://warehouse/logs/ds=2015-01-01");
+        assertEquals(drain(lister.list(null, path)), 3);
+        assertEquals(drain(lister.list(null, path)), 3);
+        assertEquals(delegate.getListCount(), 2);
+        assertEquals(lister.getCachedDirectories(), 0);
+    }
+
+    private static int drain(RemoteIterator<LocatedFileStatus> iterator)
+            throws IOException
+    {
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        return count;
+    }
+
+    private static class CountingDirectoryLister
+            implements DirectoryLister
+    {
+        private final int filesPerDirectory;
+        private int listCount;
+
+        public CountingDirectoryLister(int filesPerDirectory)
+        {
+            this.filesPerDirectory = filesPerDirectory;
+        }
+
+        public int getListCount()
+        {
+            return listCount;
+        }
+
+        @Override
+        public RemoteIterator<LocatedFileStatus> list(FileSystem fs, Path path)
+        {
+            listCount++;
+
+            ImmutableList.Builder<LocatedFileStatus> files = ImmutableList.builder();
+            for (int i = 0; i < filesPerDirectory; i++) {
+                FileStatus status = new FileStatus(100, false, 1, 64 * 1024 * 1024, 0, new Path(path, "file" + i));
+                files.add(new LocatedFileStatus(status, new BlockLocation[0]));
+            }
+            Iterator<LocatedFileStatus> iterator = files.build().iterator();
+
+            return new RemoteIterator<LocatedFileStatus>()
+            {
+                @Override
+                public boolean hasNext()
+                {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public LocatedFileStatus next()
+                {
+                    return iterator.next();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.hive.metastore.InMemoryHiveMetastore;
+import com.facebook.presto.testing.MaterializedResult;
+import com.facebook.presto.testing.QueryRunner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.intellij.lang.annotations.Language;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static com.facebook.presto.spi.type.TimeZoneKey.UTC_KEY;
+import static com.facebook.presto.tests.QueryAssertions.assertEqualsIgnoreOrder;
+import static io.airlift.tpch.TpchTable.LINE_ITEM;
+import static io.airlift.tpch.TpchTable.ORDERS;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestHiveBucketExecution
+{
+    private static final String SCHEMA = "tpch";
+    private static final int BUCKET_COUNT = 4;
+
+    private final InMemoryHiveMetastore metastore = new InMemoryHiveMetastore();
+    private QueryRunner queryRunner;
+    private Session bucketedSession;
+
+    @BeforeClass
+    public void setUp()
+            throws Exception
+    {
+        queryRunner = HiveQueryRunner.createQueryRunner(ImmutableList.of(ORDERS, LINE_ITEM), metastore, ImmutableMap.of("hive.bucket-execution.enabled", "true"));
+        bucketedSession = Session.builder()
+                .setUser("user")
+                .setSource("test")
+                .setCatalog("hive")
+                .setSchema(SCHEMA)
+                .setTimeZoneKey(UTC_KEY)
+                .setLocale(ENGLISH)
+                .setSystemProperties(ImmutableMap.of("bucket_execution", "true"))
+                .build();
+
+        createBucketedTable("orders_bucketed", "SELECT orderkey, custkey, totalprice FROM orders");
+        createBucketedTable("lineitem_bucketed", "SELECT orderkey, partkey, quantity FROM lineitem");
+    }
+
+    @AfterClass
+    public void tearDown()
+    {
+        queryRunner.close();
+    }
+
+    @Test
+    public void testColocatedJoin()
+            throws Exception
+    {
+        assertBucketedQuery(
+                "SELECT o.orderkey, o.totalprice, l.partkey, l.quantity FROM orders_bucketed o JOIN lineitem_bucketed l ON o.orderkey = l.orderkey",
+                "SELECT o.orderkey, o.totalprice, l.partkey, l.quantity FROM orders o JOIN lineitem l ON o.orderkey = l.orderkey");
+    }
+
+    @Test
+    public void testAggregationGroupedByBucketColumn()
+            throws Exception
+    {
+        assertBucketedQuery(
+                "SELECT orderkey, count(*), sum(quantity) FROM lineitem_bucketed GROUP BY orderkey",
+                "SELECT orderkey, count(*), sum(quantity) FROM lineitem GROUP BY orderkey");
+    }
+
+    @Test
+    public void testColocatedJoinWithAggregation()
+            throws Exception
+    {
+        assertBucketedQuery(
+                "SELECT o.orderkey, max(o.totalprice), sum(l.quantity) FROM orders_bucketed o JOIN lineitem_bucketed l ON o.orderkey = l.orderkey GROUP BY o.orderkey",
+                "SELECT o.orderkey, max(o.totalprice), sum(l.quantity) FROM orders o JOIN lineitem l ON o.orderkey = l.orderkey GROUP BY o.orderkey");
+    }
+
+    @Test
+    public void testAggregationGroupedByOtherColumn()
+            throws Exception
+    {
+        assertBucketedQuery(
+                "SELECT custkey, count(*) FROM orders_bucketed GROUP BY custkey",
+                "SELECT custkey, count(*) FROM orders GROUP BY custkey");
+    }
+
+    @Test
+    public void testInvalidBucketFiles()
+            throws Exception
+    {
+        // the table declares more buckets than it has files
+        queryRunner.execute("CREATE TABLE orders_single_file AS SELECT orderkey, totalprice FROM orders ORDER BY orderkey");
+        Table table = metastore.getTable(SCHEMA, "orders_single_file").deepCopy();
+        table.setTableName("orders_invalid_buckets");
+        table.getSd().setBucketCols(ImmutableList.of("orderkey"));
+        table.getSd().setNumBuckets(BUCKET_COUNT);
+        metastore.createTable(table);
+
+        try {
+            queryRunner.execute(bucketedSession, "SELECT count(*) FROM orders_invalid_buckets");
+            fail("expected exception");
+        }
+        catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("does not contain exactly " + BUCKET_COUNT + " files"), e.getMessage());
+        }
+    }
+
+    private void assertBucketedQuery(@Language("SQL") String bucketedSql, @Language("SQL") String expectedSql)
+    {
+        MaterializedResult actual = queryRunner.execute(bucketedSession, bucketedSql);
+        MaterializedResult expected = queryRunner.execute(expectedSql);
+        assertEquals(actual.getRowCount(), expected.getRowCount());
+        assertEqualsIgnoreOrder(actual.getMaterializedRows(), expected.getMaterializedRows());
+    }
+
+    /**
+     * Creates a table bucketed on orderkey with one file per bucket. Hive hashes a
+     * bigint smaller than 2^31 to its own value, so the bucket of a row is orderkey
+     * modulo the bucket count.
+     */
+    private void createBucketedTable(String tableName, @Language("SQL") String query)
+            throws Exception
+    {
+        File tableDirectory = null;
+        Table table = null;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            // the sort gathers the rows, so a single writer creates exactly one file
+            String bucketTableName = format("%s_bucket_%s", tableName, bucket);
+            queryRunner.execute(format("CREATE TABLE %s AS %s WHERE orderkey %% %s = %s ORDER BY orderkey", bucketTableName, query, BUCKET_COUNT, bucket));
+
+            Table bucketTable = metastore.getTable(SCHEMA, bucketTableName);
+            File bucketDirectory = new File(new Path(bucketTable.getSd().getLocation()).toUri().getPath());
+            File[] files = bucketDirectory.listFiles(file -> !file.getName().startsWith(".") && !file.getName().startsWith("_"));
+            assertEquals(files.length, 1, "files of bucket " + bucket);
+
+            if (table == null) {
+                table = bucketTable.deepCopy();
+                tableDirectory = new File(bucketDirectory.getParentFile(), tableName);
+                assertTrue(tableDirectory.mkdirs());
+            }
+            // Hive orders the bucket files by name
+            assertTrue(files[0].renameTo(new File(tableDirectory, format("%06d_0", bucket))));
+
+            queryRunner.execute(format("DROP TABLE %s", bucketTableName));
+        }
+
+        table.setTableName(tableName);
+        table.getSd().setLocation(tableDirectory.toURI().toString());
+        table.getSd().setBucketCols(ImmutableList.of("orderkey"));
+        table.getSd().setNumBuckets(BUCKET_COUNT);
+        metastore.createTable(table);
+    }
+}
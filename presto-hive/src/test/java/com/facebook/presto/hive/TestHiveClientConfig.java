@@ -49,6 +49,10 @@ public class TestHiveClientConfig
                 .setMetastoreCacheTtl(new Duration(1, TimeUnit.HOURS))
                 .setMetastoreRefreshInterval(new Duration(2, TimeUnit.MINUTES))
                 .setMaxMetastoreRefreshThreads(100)
+                .setMetastoreCacheSnapshotFile(null)
+                .setMetastoreCacheSnapshotInterval(new Duration(10, TimeUnit.MINUTES))
+                .setMetastoreCacheBackgroundRefreshEnabled(false)
+                .setMetastoreCacheSchemaRefreshIntervals((String) null)
                 .setMetastoreSocksProxy(null)
                 .setMetastoreTimeout(new Duration(10, TimeUnit.SECONDS))
                 .setMinPartitionBatchSize(10)
@@ -56,11 +60,15 @@ public class TestHiveClientConfig
                 .setMaxInitialSplits(200)
                 .setMaxInitialSplitSize(new DataSize(32, Unit.MEGABYTE))
                 .setForceLocalScheduling(false)
+                .setBucketExecutionEnabled(false)
                 .setDfsTimeout(new Duration(10, TimeUnit.SECONDS))
                 .setDfsConnectTimeout(new Duration(500, TimeUnit.MILLISECONDS))
                 .setDfsConnectMaxRetries(5)
                 .setVerifyChecksum(true)
                 .setResourceConfigFiles((String) null)
+                .setFileStatusCachePaths("")
+                .setFileStatusCacheMaxSize(1_000_000)
+                .setFileStatusCacheExpireAfterWrite(new Duration(1, TimeUnit.HOURS))
                 .setHiveStorageFormat(HiveStorageFormat.RCBINARY)
                 .setDomainSocketPath(null)
                 .setS3AwsAccessKey(null)
@@ -76,11 +84,24 @@ public class TestHiveClientConfig
                 .setS3MultipartMinPartSize(new DataSize(5, Unit.MEGABYTE))
                 .setS3MaxConnections(500)
                 .setS3StagingDirectory(new File(StandardSystemProperty.JAVA_IO_TMPDIR.value()))
+                .setLocalCacheEnabled(false)
+                .setLocalCacheDirectory(new File(StandardSystemProperty.JAVA_IO_TMPDIR.value(), "presto-hive-cache"))
+                .setLocalCacheMaxSize(new DataSize(10, Unit.GIGABYTE))
+                .setLocalCachePageSize(new DataSize(1, Unit.MEGABYTE))
+                .setLocalCacheAffinitySchedulingEnabled(true)
                 .setOptimizedReaderEnabled(true)
                 .setAssumeCanonicalPartitionKeys(false)
+                .setMetastorePartitionFilterEnabled(true)
+                .setMetastorePartitionRangeFilterEnabled(false)
                 .setOrcMaxMergeDistance(new DataSize(1, Unit.MEGABYTE))
                 .setOrcMaxBufferSize(new DataSize(8, Unit.MEGABYTE))
-                .setOrcStreamBufferSize(new DataSize(8, Unit.MEGABYTE)));
+                .setOrcStreamBufferSize(new DataSize(8, Unit.MEGABYTE))
+                .setOrcMetadataCacheSize(new DataSize(32, Unit.MEGABYTE))
+                .setOrcMaxPrefetchSize(new DataSize(0, Unit.MEGABYTE))
+                .setOptimizedWriterEnabled(true)
+                .setWriterFilesPerTask(1)
+                .setTargetFileSize(new DataSize(1, Unit.GIGABYTE))
+                .setParquetOptimizedReaderEnabled(false));
     }
 
     @Test
@@ -98,6 +119,10 @@ public class TestHiveClientConfig
                 .put("hive.metastore-cache-ttl", "2h")
                 .put("hive.metastore-refresh-interval", "30m")
                 .put("hive.metastore-refresh-max-threads", "2500")
+                .put("hive.metastore-cache.snapshot-file", "/tmp/metastore-cache")
+                .put("hive.metastore-cache.snapshot-interval", "1m")
+                .put("hive.metastore-cache.background-refresh.enabled", "true")
+                .put("hive.metastore-cache.schema-refresh-intervals", "web=1m, logs = 30m")
                 .put("hive.metastore.thrift.client.socks-proxy", "localhost:1080")
                 .put("hive.metastore-timeout", "20s")
                 .put("hive.metastore.partition-batch-size.min", "1")
@@ -107,11 +132,17 @@ public class TestHiveClientConfig
                 .put("hive.dfs.connect.max-retries", "10")
                 .put("hive.dfs.verify-checksum", "false")
                 .put("hive.config.resources", "/foo.xml,/bar.xml")
+                .put("hive.file-status-cache.paths", "hdfs://warehouse/logs/,s3://archive/")
+                .put("hive.file-status-cache.max-size", "1000")
+                .put("hive.file-status-cache.expire-after-write", "30m")
                 .put("hive.max-initial-splits", "10")
                 .put("hive.max-initial-split-size", "16MB")
                 .put("hive.storage-format", "SEQUENCEFILE")
                 .put("hive.force-local-scheduling", "true")
+                .put("hive.bucket-execution.enabled", "true")
                 .put("hive.assume-canonical-partition-keys", "true")
+                .put("hive.metastore.partition-filter.enabled", "false")
+                .put("hive.metastore.partition-range-filter.enabled", "true")
                 .put("dfs.domain-socket-path", "/foo")
                 .put("hive.s3.aws-access-key", "abc123")
                 .put("hive.s3.aws-secret-key", "secret")
@@ -126,10 +157,21 @@ public class TestHiveClientConfig
                 .put("hive.s3.multipart.min-part-size", "15MB")
                 .put("hive.s3.max-connections", "77")
                 .put("hive.s3.staging-directory", "/s3-staging")
+                .put("hive.local-cache.enabled", "true")
+                .put("hive.local-cache.directory", "/local-cache")
+                .put("hive.local-cache.max-size", "100GB")
+                .put("hive.local-cache.page-size", "256kB")
+                .put("hive.local-cache.affinity-scheduling-enabled", "false")
                 .put("hive.optimized-reader.enabled", "false")
                 .put("hive.orc.max-merge-distance", "22kB")
                 .put("hive.orc.max-buffer-size", "44kB")
                 .put("hive.orc.stream-buffer-size", "55kB")
+                .put("hive.orc.metadata-cache-size", "3MB")
+                .put("hive.orc.max-prefetch-size", "7MB")
+                .put("hive.optimized-writer.enabled", "false")
+                .put("hive.writer-files-per-task", "4")
+                .put("hive.target-file-size", "128MB")
+                .put("hive.parquet-optimized-reader.enabled", "true")
                 .build();
 
         HiveClientConfig expected = new HiveClientConfig()
@@ -144,6 +186,10 @@ public class TestHiveClientConfig
                 .setMetastoreCacheTtl(new Duration(2, TimeUnit.HOURS))
                 .setMetastoreRefreshInterval(new Duration(30, TimeUnit.MINUTES))
                 .setMaxMetastoreRefreshThreads(2500)
+                .setMetastoreCacheSnapshotFile(new File("/tmp/metastore-cache"))
+                .setMetastoreCacheSnapshotInterval(new Duration(1, TimeUnit.MINUTES))
+                .setMetastoreCacheBackgroundRefreshEnabled(true)
+                .setMetastoreCacheSchemaRefreshIntervals(ImmutableMap.of("web", new Duration(1, TimeUnit.MINUTES), "logs", new Duration(30, TimeUnit.MINUTES)))
                 .setMetastoreSocksProxy(HostAndPort.fromParts("localhost", 1080))
                 .setMetastoreTimeout(new Duration(20, TimeUnit.SECONDS))
                 .setMinPartitionBatchSize(1)
@@ -151,11 +197,15 @@ public class TestHiveClientConfig
                 .setMaxInitialSplits(10)
                 .setMaxInitialSplitSize(new DataSize(16, Unit.MEGABYTE))
                 .setForceLocalScheduling(true)
+                .setBucketExecutionEnabled(true)
                 .setDfsTimeout(new Duration(33, TimeUnit.SECONDS))
                 .setDfsConnectTimeout(new Duration(20, TimeUnit.SECONDS))
                 .setDfsConnectMaxRetries(10)
                 .setVerifyChecksum(false)
                 .setResourceConfigFiles(ImmutableList.of("/foo.xml", "/bar.xml"))
+                .setFileStatusCachePaths(ImmutableList.of("hdfs://warehouse/logs/", "s3://archive/"))
+                .setFileStatusCacheMaxSize(1000)
+                .setFileStatusCacheExpireAfterWrite(new Duration(30, TimeUnit.MINUTES))
                 .setHiveStorageFormat(HiveStorageFormat.SEQUENCEFILE)
                 .setDomainSocketPath("/foo")
                 .setS3AwsAccessKey("abc123")
@@ -171,11 +221,24 @@ public class TestHiveClientConfig
                 .setS3MultipartMinPartSize(new DataSize(15, Unit.MEGABYTE))
                 .setS3MaxConnections(77)
                 .setS3StagingDirectory(new File("/s3-staging"))
+                .setLocalCacheEnabled(true)
+                .setLocalCacheDirectory(new File("/local-cache"))
+                .setLocalCacheMaxSize(new DataSize(100, Unit.GIGABYTE))
+                .setLocalCachePageSize(new DataSize(256, Unit.KILOBYTE))
+                .setLocalCacheAffinitySchedulingEnabled(false)
                 .setOptimizedReaderEnabled(false)
                 .setAssumeCanonicalPartitionKeys(true)
+                .setMetastorePartitionFilterEnabled(false)
+                .setMetastorePartitionRangeFilterEnabled(true)
                 .setOrcMaxMergeDistance(new DataSize(22, Unit.KILOBYTE))
                 .setOrcMaxBufferSize(new DataSize(44, Unit.KILOBYTE))
-                .setOrcStreamBufferSize(new DataSize(55, Unit.KILOBYTE));
+                .setOrcStreamBufferSize(new DataSize(55, Unit.KILOBYTE))
+                .setOrcMetadataCacheSize(new DataSize(3, Unit.MEGABYTE))
+                .setOrcMaxPrefetchSize(new DataSize(7, Unit.MEGABYTE))
+                .setOptimizedWriterEnabled(false)
+                .setWriterFilesPerTask(4)
+                .setTargetFileSize(new DataSize(128, Unit.MEGABYTE))
+                .setParquetOptimizedReaderEnabled(true);
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
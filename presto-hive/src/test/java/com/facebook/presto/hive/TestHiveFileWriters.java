@@ -0,0 +1,334 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.hive.orc.OrcFileWriter;
+import com.facebook.presto.hive.orc.OrcRecordCursorProvider;
+import com.facebook.presto.hive.rcfile.RcFileWriter;
+import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.TupleDomain;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.block.BlockBuilderStatus;
+import com.facebook.presto.spi.type.TimeZoneKey;
+import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.type.TypeRegistry;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import io.airlift.slice.Slice;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.joda.time.DateTimeZone;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static com.facebook.presto.hive.HiveStorageFormat.ORC;
+import static com.facebook.presto.hive.HiveStorageFormat.RCBINARY;
+import static com.facebook.presto.hive.HiveStorageFormat.RCTEXT;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.spi.type.DateType.DATE;
+import static com.facebook.presto.spi.type.DoubleType.DOUBLE;
+import static com.facebook.presto.spi.type.VarbinaryType.VARBINARY;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static io.airlift.slice.Slices.utf8Slice;
+import static io.airlift.slice.Slices.wrappedBuffer;
+import static io.airlift.testing.FileUtils.deleteRecursively;
+import static java.util.Locale.ENGLISH;
+import static org.apache.hadoop.hive.metastore.api.hive_metastoreConstants.FILE_INPUT_FORMAT;
+import static org.apache.hadoop.hive.serde.serdeConstants.SERIALIZATION_LIB;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test(singleThreaded = true)
+public class TestHiveFileWriters
+{
+    private static final ConnectorSession SESSION = new ConnectorSession("user", TimeZoneKey.UTC_KEY, ENGLISH, System.currentTimeMillis(), null);
+    private static final TypeRegistry TYPE_MANAGER = new TypeRegistry();
+
+    private static final List<WriterColumn> RCFILE_COLUMNS = ImmutableList.of(
+            new WriterColumn("t_boolean", BOOLEAN, true, false, null, true),
+            new WriterColumn("t_bigint", BIGINT, 0L, Long.MAX_VALUE, Long.MIN_VALUE, null),
+            new WriterColumn("t_double", DOUBLE, 0.0, -1.5, null, Double.MAX_VALUE),
+            new WriterColumn("t_varchar", VARCHAR, utf8Slice("hello"), utf8Slice(""), null, utf8Slice("\u00e9t\u00e9")),
+            new WriterColumn("t_varbinary", VARBINARY, wrappedBuffer(new byte[] {1, 2, 3}), wrappedBuffer(new byte[] {0}), wrappedBuffer(new byte[] {(byte) 0xff}), null),
+            new WriterColumn("t_date", DATE, 0L, 16_000L, -1L, null));
+
+    // the native ORC writer does not support dates
+    private static final List<WriterColumn> ORC_COLUMNS = RCFILE_COLUMNS.subList(0, 5);
+
+    private File tempDir;
+    private JobConf conf;
+
+    @BeforeMethod
+    public void setup()
+    {
+        tempDir = Files.createTempDir();
+        conf = new JobConf(new Configuration());
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown()
+    {
+        deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void testRcBinaryRoundTrip()
+            throws Exception
+    {
+        Path path = path("rcbinary");
+        assertRoundTrip(new RcFileWriter(path, names(RCFILE_COLUMNS), types(RCFILE_COLUMNS), RCBINARY, conf), path, RCBINARY, new ColumnarBinaryHiveRecordCursorProvider(), RCFILE_COLUMNS);
+    }
+
+    @Test
+    public void testRcTextRoundTrip()
+            throws Exception
+    {
+        Path path = path("rctext");
+        assertRoundTrip(new RcFileWriter(path, names(RCFILE_COLUMNS), types(RCFILE_COLUMNS), RCTEXT, conf), path, RCTEXT, new ColumnarTextHiveRecordCursorProvider(), RCFILE_COLUMNS);
+    }
+
+    @Test
+    public void testOrcRoundTrip()
+            throws Exception
+    {
+        Path path = path("orc");
+        FileSystem fileSystem = path.getFileSystem(conf);
+        assertRoundTrip(new OrcFileWriter(fileSystem, path, names(ORC_COLUMNS), types(ORC_COLUMNS)), path, ORC, new OrcRecordCursorProvider(), ORC_COLUMNS);
+    }
+
+    @Test
+    public void testRollback()
+            throws Exception
+    {
+        Path path = path("rollback");
+        HiveFileWriter writer = new RcFileWriter(path, names(RCFILE_COLUMNS), types(RCFILE_COLUMNS), RCBINARY, conf);
+        writer.appendPage(createPage(RCFILE_COLUMNS));
+        writer.rollback();
+        assertFalse(new File(path.toUri()).exists());
+    }
+
+    @Test
+    public void testCompressedRcFileSizeEstimate()
+            throws Exception
+    {
+        FileOutputFormat.setCompressOutput(conf, true);
+
+        Path path = path("compressed");
+        List<Type> types = ImmutableList.<Type>of(VARCHAR);
+        HiveFileWriter writer = new RcFileWriter(path, ImmutableList.of("t_varchar"), types, RCBINARY, conf);
+
+        // highly compressible values, enough for several row groups
+        Slice value = utf8Slice(new String(new char[100]).replace('\0', 'a'));
+        long encodedBytes = 0;
+        for (int page = 0; page < 200; page++) {
+            BlockBuilder blockBuilder = VARCHAR.createBlockBuilder(new BlockBuilderStatus(), 1000);
+            for (int i = 0; i < 1000; i++) {
+                VARCHAR.writeSlice(blockBuilder, value);
+            }
+            writer.appendPage(new Page(blockBuilder.build()));
+            encodedBytes += 1000 * value.length();
+        }
+
+        // the estimate uses the compressed size of the row groups already written
+        long estimate = writer.getWrittenBytes();
+        assertTrue(estimate < encodedBytes / 2, "estimate " + estimate + " is close to the uncompressed size " + encodedBytes);
+
+        writer.commit();
+        assertEquals(writer.getWrittenBytes(), new File(path.toUri()).length());
+        assertTrue(writer.getWrittenBytes() < estimate);
+    }
+
+    private void assertRoundTrip(HiveFileWriter writer, Path path, HiveStorageFormat format, HiveRecordCursorProvider cursorProvider, List<WriterColumn> columns)
+            throws Exception
+    {
+        writer.appendPage(createPage(columns));
+        writer.appendPage(createPage(columns));
+        assertEquals(writer.getRowCount(), 2 * rowCount(columns));
+        writer.commit();
+
+        File file = new File(path.toUri());
+        assertEquals(writer.getWrittenBytes(), file.length());
+
+        Properties schema = new Properties();
+        schema.setProperty(FILE_INPUT_FORMAT, format.getInputFormat());
+        schema.setProperty(SERIALIZATION_LIB, format.getSerDe());
+        schema.setProperty("columns", Joiner.on(',').join(names(columns)));
+        List<String> hiveTypes = new ArrayList<>();
+        for (Type type : types(columns)) {
+            hiveTypes.add(HiveType.toHiveType(type).getHiveTypeName());
+        }
+        schema.setProperty("columns.types", Joiner.on(',').join(hiveTypes));
+
+        List<HiveColumnHandle> columnHandles = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            Type type = columns.get(i).getType();
+            columnHandles.add(new HiveColumnHandle("test", columns.get(i).getName(), i, HiveType.toHiveType(type), type.getTypeSignature(), i, false));
+        }
+
+        HiveRecordCursor cursor = cursorProvider.createHiveRecordCursor(
+                "test",
+                conf,
+                SESSION,
+                path,
+                0,
+                file.length(),
+                schema,
+                columnHandles,
+                ImmutableList.of(),
+                TupleDomain.<HiveColumnHandle>all(),
+                DateTimeZone.UTC,
+                TYPE_MANAGER).get();
+
+        try {
+            for (int page = 0; page < 2; page++) {
+                for (int row = 0; row < rowCount(columns); row++) {
+                    assertTrue(cursor.advanceNextPosition());
+                    for (int field = 0; field < columns.size(); field++) {
+                        assertValue(cursor, field, columns.get(field), row);
+                    }
+                }
+            }
+            assertFalse(cursor.advanceNextPosition());
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    private static void assertValue(HiveRecordCursor cursor, int field, WriterColumn column, int row)
+    {
+        Object expected = column.getValues().get(row);
+        String message = column.getName() + " row " + row;
+        if (expected == null) {
+            assertTrue(cursor.isNull(field), message);
+            return;
+        }
+        assertFalse(cursor.isNull(field), message);
+
+        Type type = column.getType();
+        if (type.getJavaType() == boolean.class) {
+            assertEquals(cursor.getBoolean(field), expected, message);
+        }
+        else if (type.getJavaType() == long.class) {
+            assertEquals(cursor.getLong(field), expected, message);
+        }
+        else if (type.getJavaType() == double.class) {
+            assertEquals(cursor.getDouble(field), expected, message);
+        }
+        else {
+            assertEquals(cursor.getSlice(field), expected, message);
+        }
+    }
+
+    private static Page createPage(List<WriterColumn> columns)
+    {
+        Block[] blocks = new Block[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            WriterColumn column = columns.get(i);
+            Type type = column.getType();
+            BlockBuilder blockBuilder = type.createBlockBuilder(new BlockBuilderStatus(), column.getValues().size());
+            for (Object value : column.getValues()) {
+                if (value == null) {
+                    blockBuilder.appendNull();
+                }
+                else if (type.getJavaType() == boolean.class) {
+                    type.writeBoolean(blockBuilder, (Boolean) value);
+                }
+                else if (type.getJavaType() == long.class) {
+                    type.writeLong(blockBuilder, (Long) value);
+                }
+                else if (type.getJavaType() == double.class) {
+                    type.writeDouble(blockBuilder, (Double) value);
+                }
+                else {
+                    type.writeSlice(blockBuilder, (Slice) value);
+                }
+            }
+            blocks[i] = blockBuilder.build();
+        }
+        return new Page(blocks);
+    }
+
+    private Path path(String name)
+    {
+        return new Path(new File(tempDir, name).toURI());
+    }
+
+    private static int rowCount(List<WriterColumn> columns)
+    {
+        return columns.get(0).getValues().size();
+    }
+
+    private static List<String> names(List<WriterColumn> columns)
+    {
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (WriterColumn column : columns) {
+            names.add(column.getName());
+        }
+        return names.build();
+    }
+
+    private static List<Type> types(List<WriterColumn> columns)
+    {
+        ImmutableList.Builder<Type> types = ImmutableList.builder();
+        for (WriterColumn column : columns) {
+            types.add(column.getType());
+        }
+        return types.build();
+    }
+
+    private static class WriterColumn
+    {
+        private final String name;
+        private final Type type;
+        private final List<Object> values;
+
+        public WriterColumn(String name, Type type, Object... values)
+        {
+            this.name = name;
+            this.type = type;
+            this.values = Arrays.asList(values);
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public Type getType()
+        {
+            return type;
+        }
+
+        public List<Object> getValues()
+        {
+            return values;
+        }
+    }
+}
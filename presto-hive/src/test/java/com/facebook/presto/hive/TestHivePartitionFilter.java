@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import com.facebook.presto.spi.ConnectorColumnHandle;
+import com.facebook.presto.spi.Domain;
+import com.facebook.presto.spi.Range;
+import com.facebook.presto.spi.SortedRangeSet;
+import com.facebook.presto.spi.TupleDomain;
+import com.facebook.presto.spi.type.StandardTypes;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.slice.Slice;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.hive.HivePartitionFilter.toMetastoreFilter;
+import static com.facebook.presto.hive.HiveType.HIVE_LONG;
+import static com.facebook.presto.hive.HiveType.HIVE_STRING;
+import static com.facebook.presto.spi.type.TypeSignature.parseTypeSignature;
+import static io.airlift.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+
+public class TestHivePartitionFilter
+{
+    private static final HiveColumnHandle DS = new HiveColumnHandle("test", "ds", 0, HIVE_STRING, parseTypeSignature(StandardTypes.VARCHAR), -1, true);
+    private static final HiveColumnHandle TYPE = new HiveColumnHandle("test", "type", 1, HIVE_STRING, parseTypeSignature(StandardTypes.VARCHAR), -1, true);
+    private static final HiveColumnHandle BUCKET = new HiveColumnHandle("test", "bucket", 2, HIVE_LONG, parseTypeSignature(StandardTypes.BIGINT), -1, true);
+    private static final List<HiveColumnHandle> PARTITION_KEYS = ImmutableList.of(DS, TYPE, BUCKET);
+
+    @Test
+    public void testNoPredicate()
+    {
+        assertEquals(toMetastoreFilter(PARTITION_KEYS, TupleDomain.<ConnectorColumnHandle>all(), true), Optional.empty());
+        assertEquals(filter(TYPE, Domain.all(Slice.class), true), Optional.empty());
+    }
+
+    @Test
+    public void testEquality()
+    {
+        assertEquals(filter(TYPE, Domain.singleValue(utf8Slice("a")), false), Optional.of("(type = \"a\")"));
+        assertEquals(filter(TYPE, Domain.singleValue(utf8Slice("a\"b")), false), Optional.of("(type = 'a\"b')"));
+        assertEquals(filter(TYPE, Domain.singleValue(utf8Slice("a\"'b")), false), Optional.empty());
+    }
+
+    @Test
+    public void testInList()
+    {
+        Domain domain = Domain.create(SortedRangeSet.of(Range.equal(utf8Slice("a")), Range.equal(utf8Slice("b"))), true);
+        assertEquals(filter(TYPE, domain, false), Optional.of("(type = \"a\" or type = \"b\" or type = \"__HIVE_DEFAULT_PARTITION__\")"));
+    }
+
+    @Test
+    public void testRanges()
+    {
+        Domain domain = Domain.create(SortedRangeSet.of(Range.range(utf8Slice("2015-01-01"), true, utf8Slice("2015-02-01"), false)), false);
+        assertEquals(filter(DS, domain, false), Optional.empty());
+        assertEquals(filter(DS, domain, true), Optional.of("((ds >= \"2015-01-01\" and ds < \"2015-02-01\"))"));
+
+        domain = Domain.create(SortedRangeSet.of(Range.greaterThan(utf8Slice("2015-01-01"))), false);
+        assertEquals(filter(DS, domain, true), Optional.of("((ds > \"2015-01-01\"))"));
+    }
+
+    @Test
+    public void testMultipleColumns()
+    {
+        TupleDomain<ConnectorColumnHandle> predicate = TupleDomain.withColumnDomains(ImmutableMap.<ConnectorColumnHandle, Domain>of(
+                DS, Domain.create(SortedRangeSet.of(Range.lessThanOrEqual(utf8Slice("2015-01-01"))), false),
+                TYPE, Domain.singleValue(utf8Slice("a")),
+                BUCKET, Domain.singleValue(1L)));
+
+        // non-string partition keys are filtered by the caller
+        assertEquals(toMetastoreFilter(PARTITION_KEYS, predicate, true), Optional.of("((ds <= \"2015-01-01\")) and (type = \"a\")"));
+        assertEquals(toMetastoreFilter(PARTITION_KEYS, predicate, false), Optional.of("(type = \"a\")"));
+    }
+
+    @Test
+    public void testOnlyNull()
+    {
+        assertEquals(filter(TYPE, Domain.onlyNull(Slice.class), false), Optional.of("(type = \"__HIVE_DEFAULT_PARTITION__\")"));
+    }
+
+    private static Optional<String> filter(HiveColumnHandle column, Domain domain, boolean rangesEnabled)
+    {
+        return toMetastoreFilter(PARTITION_KEYS, TupleDomain.withColumnDomains(ImmutableMap.<ConnectorColumnHandle, Domain>of(column, domain)), rangesEnabled);
+    }
+}
@@ -20,6 +20,8 @@ import com.google.common.collect.ImmutableList;
 import io.airlift.json.JsonCodec;
 import org.testng.annotations.Test;
 
+import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Properties;
 
 import static com.facebook.presto.spi.type.TimeZoneKey.UTC_KEY;
@@ -53,7 +55,8 @@ public class TestHiveSplit
                 addresses,
                 true,
                 SESSION,
-                TupleDomain.<HiveColumnHandle>all());
+                TupleDomain.<HiveColumnHandle>all(),
+                Optional.of(3));
 
         String json = codec.toJson(expected);
         HiveSplit actual = codec.fromJson(json);
@@ -73,5 +76,7 @@ public class TestHiveSplit
         assertEquals(actual.getSession().getTimeZoneKey(), expected.getSession().getTimeZoneKey());
         assertEquals(actual.getSession().getStartTime(), expected.getSession().getStartTime());
         assertEquals(actual.isForceLocalScheduling(), expected.isForceLocalScheduling());
+        assertEquals(actual.getBucketNumber(), expected.getBucketNumber());
+        assertEquals(actual.getBucket(), OptionalInt.of(3));
     }
 }
@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestPrestoS3FileSystem
+{
+    private static final String BUCKET = "test-bucket";
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private byte[] data;
+    private MockAmazonS3 s3;
+    private PrestoS3FileSystem fileSystem;
+
+    @BeforeMethod
+    public void setUp()
+            throws Exception
+    {
+        data = new byte[(CHUNK_SIZE * 2) + 12345];
+        new Random(42).nextBytes(data);
+
+        s3 = new MockAmazonS3();
+        s3.putObject(BUCKET, "data", data);
+
+        Configuration config = new Configuration();
+        config.set("fs.s3n.awsAccessKeyId", "test-access-key");
+        config.set("fs.s3n.awsSecretAccessKey", "test-secret-key");
+
+        fileSystem = new PrestoS3FileSystem();
+        fileSystem.initialize(new URI("s3n://" + BUCKET + "/"), config);
+        fileSystem.setS3Client(s3);
+    }
+
+    @AfterMethod
+    public void tearDown()
+            throws Exception
+    {
+        fileSystem.close();
+    }
+
+    @Test
+    public void testPositionedRead()
+            throws Exception
+    {
+        try (FSDataInputStream in = fileSystem.open(new Path("s3n://" + BUCKET + "/data"))) {
+            byte[] buffer = new byte[1000];
+            in.readFully(5000, buffer);
+            assertEquals(buffer, Arrays.copyOfRange(data, 5000, 6000));
+            assertEquals(s3.getGetObjectRequests(), 1);
+
+            // positioned reads do not move the stream
+            assertEquals(in.getPos(), 0);
+
+            // reads near the end of the object are short
+            assertEquals(in.read(data.length - 10, buffer, 0, buffer.length), 10);
+            assertEquals(Arrays.copyOf(buffer, 10), Arrays.copyOfRange(data, data.length - 10, data.length));
+
+            assertEquals(in.read(data.length, buffer, 0, buffer.length), -1);
+        }
+    }
+
+    @Test
+    public void testParallelReadFully()
+            throws Exception
+    {
+        try (FSDataInputStream in = fileSystem.open(new Path("s3n://" + BUCKET + "/data"))) {
+            byte[] buffer = new byte[data.length - 100];
+            in.readFully(100, buffer);
+            assertEquals(buffer, Arrays.copyOfRange(data, 100, data.length));
+
+            // one request per chunk
+            assertEquals(s3.getGetObjectRequests(), 3);
+        }
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testReadFullyPastEnd()
+            throws Exception
+    {
+        try (FSDataInputStream in = fileSystem.open(new Path("s3n://" + BUCKET + "/data"))) {
+            in.readFully(data.length - 10, new byte[100]);
+        }
+    }
+
+    @Test
+    public void testSequentialRead()
+            throws Exception
+    {
+        try (FSDataInputStream in = fileSystem.open(new Path("s3n://" + BUCKET + "/data"))) {
+            byte[] buffer = new byte[1000];
+            in.readFully(buffer);
+            assertEquals(buffer, Arrays.copyOfRange(data, 0, 1000));
+
+            // a seek without a read does not issue a request
+            in.seek(CHUNK_SIZE);
+            in.seek(300);
+            assertEquals(s3.getGetObjectRequests(), 1);
+
+            in.readFully(buffer);
+            assertEquals(buffer, Arrays.copyOfRange(data, 300, 1300));
+            assertEquals(in.getPos(), 1300);
+
+            // a small forward seek skips within the open stream
+            int requests = s3.getGetObjectRequests();
+            in.seek(500_000);
+            in.readFully(buffer);
+            assertEquals(buffer, Arrays.copyOfRange(data, 500_000, 501_000));
+            assertEquals(s3.getGetObjectRequests(), requests);
+        }
+    }
+
+    @Test
+    public void testFileStatus()
+            throws IOException
+    {
+        assertEquals(fileSystem.getFileStatus(new Path("s3n://" + BUCKET + "/data")).getLen(), data.length);
+    }
+}
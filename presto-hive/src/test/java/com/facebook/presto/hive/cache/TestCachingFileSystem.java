@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import com.google.common.io.Files;
+import io.airlift.units.DataSize;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static io.airlift.testing.FileUtils.deleteRecursively;
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.Arrays.copyOfRange;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestCachingFileSystem
+{
+    private static final int PAGE_SIZE = 1000;
+
+    private File tempDir;
+    private File dataFile;
+    private byte[] data;
+    private FileSystem fileSystem;
+
+    @BeforeClass
+    public void setup()
+            throws IOException
+    {
+        tempDir = Files.createTempDir();
+
+        data = new byte[10 * PAGE_SIZE + 123];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        dataFile = new File(tempDir, "data");
+        Files.write(data, dataFile);
+
+        Configuration config = new Configuration();
+        CachingFileSystem.install(config, "file", new File(tempDir, "cache"), new DataSize(1, MEGABYTE), new DataSize(PAGE_SIZE, BYTE));
+        fileSystem = FileSystem.newInstance(dataFile.toURI(), config);
+        assertTrue(fileSystem instanceof CachingFileSystem);
+    }
+
+    @AfterClass
+    public void tearDown()
+            throws IOException
+    {
+        fileSystem.close();
+        deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void testRead()
+            throws IOException
+    {
+        // use a separate file, so no page is cached by the other tests
+        File file = new File(tempDir, "sequential");
+        Files.write(data, file);
+
+        LocalFileCacheStats stats = LocalFileCache.getSharedStats();
+        long hits = stats.getHits().getTotalCount();
+        long misses = stats.getMisses().getTotalCount();
+
+        // the first read loads all pages from the file
+        assertEquals(readAll(file), data);
+        assertEquals(stats.getMisses().getTotalCount() - misses, 11);
+
+        // the second read is served from the cache
+        assertEquals(readAll(file), data);
+        assertEquals(stats.getMisses().getTotalCount() - misses, 11);
+        assertEquals(stats.getHits().getTotalCount() - hits, 11);
+    }
+
+    @Test
+    public void testPositionedRead()
+            throws IOException
+    {
+        try (FSDataInputStream input = fileSystem.open(new Path(dataFile.toURI()))) {
+            // crosses page boundaries
+            byte[] buffer = new byte[2500];
+            input.readFully(PAGE_SIZE - 100, buffer);
+            assertEquals(buffer, copyOfRange(data, PAGE_SIZE - 100, PAGE_SIZE + 2400));
+
+            // the tail of the file is a partial page
+            buffer = new byte[200];
+            input.readFully(data.length - 200, buffer);
+            assertEquals(buffer, copyOfRange(data, data.length - 200, data.length));
+
+            // positioned reads do not move the stream
+            assertEquals(input.getPos(), 0);
+            input.seek(5);
+            assertEquals(input.read(), data[5] & 0xFF);
+            assertEquals(input.getPos(), 6);
+        }
+    }
+
+    private byte[] readAll(File file)
+            throws IOException
+    {
+        byte[] buffer = new byte[data.length];
+        try (FSDataInputStream input = fileSystem.open(new Path(file.toURI()))) {
+            // read in chunks that do not align with the pages
+            int offset = 0;
+            while (offset < buffer.length) {
+                int bytesRead = input.read(buffer, offset, Math.min(333, buffer.length - offset));
+                assertTrue(bytesRead > 0);
+                offset += bytesRead;
+            }
+            assertEquals(input.read(), -1);
+        }
+        return buffer;
+    }
+}
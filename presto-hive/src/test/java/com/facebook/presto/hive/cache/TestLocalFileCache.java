@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.cache;
+
+import com.google.common.io.Files;
+import io.airlift.units.DataSize;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static io.airlift.testing.FileUtils.deleteRecursively;
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestLocalFileCache
+{
+    private static final int PAGE_SIZE = 100;
+
+    private File directory;
+    private LocalFileCacheStats stats;
+    private LocalFileCache cache;
+
+    @BeforeMethod
+    public void setup()
+    {
+        directory = Files.createTempDir();
+        stats = new LocalFileCacheStats();
+        cache = new LocalFileCache(directory, new DataSize(3 * PAGE_SIZE, BYTE), new DataSize(PAGE_SIZE, BYTE), stats);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        deleteRecursively(directory);
+    }
+
+    @Test
+    public void testReadWrite()
+    {
+        String fileId = LocalFileCache.getFileId("hdfs://test/file", 123, 1000);
+        assertNull(cache.readPage(fileId, 0));
+
+        cache.writePage(fileId, 0, page(PAGE_SIZE, 1), PAGE_SIZE);
+        cache.writePage(fileId, 1, page(PAGE_SIZE + 10, 2), 50);
+
+        assertEquals(cache.readPage(fileId, 0), page(PAGE_SIZE, 1));
+        assertEquals(cache.readPage(fileId, 1), page(50, 2));
+        assertEquals(cache.getCachedBytes(), PAGE_SIZE + 50);
+        assertEquals(stats.getHits().getTotalCount(), 2);
+        assertEquals(stats.getBytesReadFromCache().getTotalCount(), PAGE_SIZE + 50);
+
+        // a modified file has a different id
+        assertNull(cache.readPage(LocalFileCache.getFileId("hdfs://test/file", 456, 1000), 0));
+    }
+
+    @Test
+    public void testEviction()
+    {
+        String fileId = LocalFileCache.getFileId("hdfs://test/file", 123, 1000);
+        cache.writePage(fileId, 0, page(PAGE_SIZE, 0), PAGE_SIZE);
+        cache.writePage(fileId, 1, page(PAGE_SIZE, 1), PAGE_SIZE);
+        cache.writePage(fileId, 2, page(PAGE_SIZE, 2), PAGE_SIZE);
+
+        // page 0 becomes the most recently used page
+        assertNotNull(cache.readPage(fileId, 0));
+
+        cache.writePage(fileId, 3, page(PAGE_SIZE, 3), PAGE_SIZE);
+        assertEquals(cache.getCachedBytes(), 3 * PAGE_SIZE);
+        assertEquals(stats.getEvictions().getTotalCount(), 1);
+
+        assertNull(cache.readPage(fileId, 1));
+        assertNotNull(cache.readPage(fileId, 0));
+        assertNotNull(cache.readPage(fileId, 2));
+        assertNotNull(cache.readPage(fileId, 3));
+    }
+
+    @Test
+    public void testLostPage()
+    {
+        String fileId = LocalFileCache.getFileId("hdfs://test/file", 123, 1000);
+        cache.writePage(fileId, 0, page(PAGE_SIZE, 0), PAGE_SIZE);
+
+        // remove the page files behind the back of the cache
+        deleteRecursively(directory);
+        assertFalse(directory.exists());
+
+        assertNull(cache.readPage(fileId, 0));
+        assertEquals(cache.getCachedBytes(), 0);
+    }
+
+    @Test
+    public void testDirectoryIsClearedOnStartup()
+            throws Exception
+    {
+        String fileId = LocalFileCache.getFileId("hdfs://test/file", 123, 1000);
+        cache.writePage(fileId, 0, page(PAGE_SIZE, 0), PAGE_SIZE);
+
+        // files that do not belong to the cache are kept
+        File otherFile = new File(directory, "other");
+        Files.write(page(10, 0), otherFile);
+
+        cache = new LocalFileCache(directory, new DataSize(3 * PAGE_SIZE, BYTE), new DataSize(PAGE_SIZE, BYTE), stats);
+        assertNull(cache.readPage(fileId, 0));
+        assertTrue(otherFile.exists());
+
+        File pagesDirectory = new File(directory, "presto-page-cache");
+        assertEquals(pagesDirectory.list(), new String[] {".presto-page-cache"});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Directory .* exists but was not created by the local file cache")
+    public void testForeignDirectoryIsNotDeleted()
+            throws Exception
+    {
+        File otherDirectory = Files.createTempDir();
+        try {
+            File pagesDirectory = new File(otherDirectory, "presto-page-cache");
+            assertTrue(pagesDirectory.mkdir());
+            Files.write(page(10, 0), new File(pagesDirectory, "data"));
+
+            new LocalFileCache(otherDirectory, new DataSize(3 * PAGE_SIZE, BYTE), new DataSize(PAGE_SIZE, BYTE), stats);
+        }
+        finally {
+            assertTrue(new File(otherDirectory, "presto-page-cache/data").exists());
+            deleteRecursively(otherDirectory);
+        }
+    }
+
+    @Test
+    public void testSharedInstance()
+    {
+        File sharedDirectory = Files.createTempDir();
+        try {
+            LocalFileCache sharedCache = LocalFileCache.getInstance(sharedDirectory, new DataSize(3 * PAGE_SIZE, BYTE), new DataSize(PAGE_SIZE, BYTE));
+            assertSame(LocalFileCache.getInstance(sharedDirectory, new DataSize(3 * PAGE_SIZE, BYTE), new DataSize(PAGE_SIZE, BYTE)), sharedCache);
+
+            try {
+                LocalFileCache.getInstance(sharedDirectory, new DataSize(3 * PAGE_SIZE, BYTE), new DataSize(2 * PAGE_SIZE, BYTE));
+                fail("expected IllegalArgumentException");
+            }
+            catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("already exists with a different configuration"), e.getMessage());
+            }
+        }
+        finally {
+            deleteRecursively(sharedDirectory);
+        }
+    }
+
+    private static byte[] page(int length, int seed)
+    {
+        byte[] page = new byte[length];
+        for (int i = 0; i < length; i++) {
+            page[i] = (byte) (i * 31 + seed);
+        }
+        return page;
+    }
+}
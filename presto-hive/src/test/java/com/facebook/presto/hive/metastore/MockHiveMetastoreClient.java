@@ -30,6 +30,8 @@ import org.apache.thrift.transport.TTransport;
 
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class MockHiveMetastoreClient
         extends HiveMetastoreClient
@@ -39,9 +41,12 @@ public class MockHiveMetastoreClient
     static final String TEST_TABLE = "testtbl";
     static final String TEST_PARTITION1 = "key=testpartition1";
     static final String TEST_PARTITION2 = "key=testpartition2";
+    static final String TEST_PARTITION3 = "key=testpartition3";
 
     private final AtomicInteger accessCount = new AtomicInteger();
     private boolean throwException;
+    private List<String> partitionNames = ImmutableList.of(TEST_PARTITION1, TEST_PARTITION2);
+    private TException partitionFilterException;
 
     MockHiveMetastoreClient()
     {
@@ -58,6 +63,16 @@ public class MockHiveMetastoreClient
         return accessCount.get();
     }
 
+    public void setPartitionNames(List<String> partitionNames)
+    {
+        this.partitionNames = ImmutableList.copyOf(partitionNames);
+    }
+
+    public void setPartitionFilterException(TException partitionFilterException)
+    {
+        this.partitionFilterException = partitionFilterException;
+    }
+
     @Override
     public List<String> get_all_databases()
             throws TException
@@ -122,7 +137,7 @@ public class MockHiveMetastoreClient
         if (!dbName.equals(TEST_DATABASE) || !tableName.equals(TEST_TABLE)) {
             return ImmutableList.of();
         }
-        return ImmutableList.of(TEST_PARTITION1, TEST_PARTITION2);
+        return partitionNames;
     }
 
     @Override
@@ -161,7 +176,7 @@ public class MockHiveMetastoreClient
         if (throwException) {
             throw new RuntimeException();
         }
-        if (!dbName.equals(TEST_DATABASE) || !tableName.equals(TEST_TABLE) || !ImmutableSet.of(TEST_PARTITION1, TEST_PARTITION2).containsAll(names)) {
+        if (!dbName.equals(TEST_DATABASE) || !tableName.equals(TEST_TABLE) || !ImmutableSet.copyOf(partitionNames).containsAll(names)) {
             throw new NoSuchObjectException();
         }
         return Lists.transform(names, name -> {
@@ -174,6 +189,32 @@ public class MockHiveMetastoreClient
         });
     }
 
+    /**
+     * Supports filters of the form {@code key = "value"}, any other filter matches all partitions.
+     */
+    @Override
+    public List<Partition> get_partitions_by_filter(String dbName, String tableName, String filter, short maxParts)
+            throws TException
+    {
+        accessCount.incrementAndGet();
+        if (partitionFilterException != null) {
+            throw partitionFilterException;
+        }
+        if (!dbName.equals(TEST_DATABASE) || !tableName.equals(TEST_TABLE)) {
+            throw new NoSuchObjectException();
+        }
+        Matcher matcher = Pattern.compile("key = \"(.*)\"").matcher(filter);
+        ImmutableList.Builder<Partition> partitions = ImmutableList.builder();
+        int count = 0;
+        for (String name : partitionNames) {
+            if ((!matcher.matches() || name.equals("key=" + matcher.group(1))) && (maxParts < 0 || count < maxParts)) {
+                partitions.add(new Partition(ImmutableList.copyOf(Warehouse.getPartValuesFromPartName(name)), TEST_DATABASE, TEST_TABLE, 0, 0, null, null));
+                count++;
+            }
+        }
+        return partitions.build();
+    }
+
     @Override
     public void close()
     {
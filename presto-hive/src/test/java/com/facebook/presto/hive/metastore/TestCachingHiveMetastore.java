@@ -18,36 +18,48 @@ import com.facebook.presto.hive.HiveMetastoreClient;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import io.airlift.units.Duration;
+import org.apache.hadoop.hive.metastore.api.MetaException;
 import org.apache.hadoop.hive.metastore.api.NoSuchObjectException;
+import org.apache.thrift.transport.TTransportException;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static com.facebook.presto.hive.metastore.MockHiveMetastoreClient.BAD_DATABASE;
 import static com.facebook.presto.hive.metastore.MockHiveMetastoreClient.TEST_DATABASE;
 import static com.facebook.presto.hive.metastore.MockHiveMetastoreClient.TEST_PARTITION1;
 import static com.facebook.presto.hive.metastore.MockHiveMetastoreClient.TEST_PARTITION2;
+import static com.facebook.presto.hive.metastore.MockHiveMetastoreClient.TEST_PARTITION3;
 import static com.facebook.presto.hive.metastore.MockHiveMetastoreClient.TEST_TABLE;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestCachingHiveMetastore
 {
     private MockHiveMetastoreClient mockClient;
-    private HiveMetastore metastore;
+    private MockHiveCluster mockHiveCluster;
+    private ListeningExecutorService executor;
+    private CachingHiveMetastore metastore;
 
     @BeforeMethod
     public void setUp()
             throws Exception
     {
         mockClient = new MockHiveMetastoreClient();
-        MockHiveCluster mockHiveCluster = new MockHiveCluster(mockClient);
-        ListeningExecutorService executor = listeningDecorator(newCachedThreadPool(daemonThreadsNamed("test-%s")));
+        mockHiveCluster = new MockHiveCluster(mockClient);
+        executor = listeningDecorator(newCachedThreadPool(daemonThreadsNamed("test-%s")));
         metastore = new CachingHiveMetastore(mockHiveCluster, executor, new Duration(5, TimeUnit.MINUTES), new Duration(1, TimeUnit.MINUTES));
     }
 
@@ -223,6 +235,166 @@ public class TestCachingHiveMetastore
         assertEquals(mockClient.getAccessCount(), 2);
     }
 
+    @Test
+    public void testRefreshTable()
+            throws Exception
+    {
+        assertEquals(metastore.getPartitionNames(TEST_DATABASE, TEST_TABLE), ImmutableList.of(TEST_PARTITION1, TEST_PARTITION2));
+        assertEquals(metastore.getPartitionsByNames(TEST_DATABASE, TEST_TABLE, ImmutableList.of(TEST_PARTITION1, TEST_PARTITION2)).size(), 2);
+        assertEquals(mockClient.getAccessCount(), 2);
+
+        // one partition added, one dropped
+        mockClient.setPartitionNames(ImmutableList.of(TEST_PARTITION2, TEST_PARTITION3));
+        assertEquals(metastore.refreshTable(TEST_DATABASE, TEST_TABLE), 2);
+        // table, partition names and only the added partition
+        assertEquals(mockClient.getAccessCount(), 5);
+
+        assertEquals(metastore.getPartitionNames(TEST_DATABASE, TEST_TABLE), ImmutableList.of(TEST_PARTITION2, TEST_PARTITION3));
+        assertEquals(metastore.getPartitionsByNames(TEST_DATABASE, TEST_TABLE, ImmutableList.of(TEST_PARTITION2, TEST_PARTITION3)).size(), 2);
+        assertNotNull(metastore.getTable(TEST_DATABASE, TEST_TABLE));
+        assertEquals(mockClient.getAccessCount(), 5);
+
+        // nothing changed
+        assertEquals(metastore.refreshTable(TEST_DATABASE, TEST_TABLE), 0);
+        assertEquals(mockClient.getAccessCount(), 7);
+    }
+
+    @Test
+    public void testSnapshot()
+            throws Exception
+    {
+        metastore.getTable(TEST_DATABASE, TEST_TABLE);
+        metastore.getPartitionNames(TEST_DATABASE, TEST_TABLE);
+        metastore.getPartitionsByNames(TEST_DATABASE, TEST_TABLE, ImmutableList.of(TEST_PARTITION1, TEST_PARTITION2));
+        assertEquals(mockClient.getAccessCount(), 3);
+
+        File file = File.createTempFile("metastore-cache", ".snapshot");
+        try {
+            metastore.createSnapshot().writeTo(file);
+
+            CachingHiveMetastore restored = new CachingHiveMetastore(mockHiveCluster, executor, new Duration(5, TimeUnit.MINUTES), new Duration(1, TimeUnit.MINUTES));
+            restored.loadSnapshot(MetastoreCacheSnapshot.readFrom(file));
+
+            assertEquals(restored.getTable(TEST_DATABASE, TEST_TABLE), metastore.getTable(TEST_DATABASE, TEST_TABLE));
+            assertEquals(restored.getPartitionNames(TEST_DATABASE, TEST_TABLE), ImmutableList.of(TEST_PARTITION1, TEST_PARTITION2));
+            assertEquals(
+                    restored.getPartitionsByNames(TEST_DATABASE, TEST_TABLE, ImmutableList.of(TEST_PARTITION1, TEST_PARTITION2)),
+                    metastore.getPartitionsByNames(TEST_DATABASE, TEST_TABLE, ImmutableList.of(TEST_PARTITION1, TEST_PARTITION2)));
+            assertEquals(mockClient.getAccessCount(), 3);
+        }
+        finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testGetPartitionNamesByFilter()
+            throws Exception
+    {
+        assertEquals(metastore.getPartitionNamesByFilter(TEST_DATABASE, TEST_TABLE, "key = \"testpartition1\""), Optional.of(ImmutableList.of(TEST_PARTITION1)));
+        // the table and the filtered partitions
+        assertEquals(mockClient.getAccessCount(), 2);
+
+        // both the names and the partitions are cached
+        assertEquals(metastore.getPartitionNamesByFilter(TEST_DATABASE, TEST_TABLE, "key = \"testpartition1\""), Optional.of(ImmutableList.of(TEST_PARTITION1)));
+        assertEquals(metastore.getPartitionsByNames(TEST_DATABASE, TEST_TABLE, ImmutableList.of(TEST_PARTITION1)).size(), 1);
+        assertEquals(mockClient.getAccessCount(), 2);
+    }
+
+    @Test
+    public void testPartitionFilterRejectedByMetastore()
+            throws Exception
+    {
+        mockClient.setPartitionFilterException(new MetaException("Filtering is supported only on partition keys of type string"));
+        assertEquals(metastore.getPartitionNamesByFilter(TEST_DATABASE, TEST_TABLE, "key > 1"), Optional.empty());
+        assertEquals(mockClient.getAccessCount(), 2);
+
+        // the metastore rejects the filter every time, so the fallback is cached
+        assertEquals(metastore.getPartitionNamesByFilter(TEST_DATABASE, TEST_TABLE, "key > 1"), Optional.empty());
+        assertEquals(mockClient.getAccessCount(), 2);
+    }
+
+    @Test
+    public void testPartitionFilterTransportFailure()
+            throws Exception
+    {
+        mockClient.setPartitionFilterException(new TTransportException("Read timed out"));
+        assertEquals(metastore.getPartitionNamesByFilter(TEST_DATABASE, TEST_TABLE, "key = \"testpartition1\""), Optional.empty());
+        // the failed call is not retried
+        assertEquals(mockClient.getAccessCount(), 2);
+
+        // the failure is not cached
+        mockClient.setPartitionFilterException(null);
+        assertEquals(metastore.getPartitionNamesByFilter(TEST_DATABASE, TEST_TABLE, "key = \"testpartition1\""), Optional.of(ImmutableList.of(TEST_PARTITION1)));
+        assertEquals(mockClient.getAccessCount(), 3);
+    }
+
+    @Test
+    public void testPartitionFilterMatchingTooManyPartitions()
+            throws Exception
+    {
+        ImmutableList.Builder<String> partitionNames = ImmutableList.builder();
+        for (int i = 0; i <= 10_000; i++) {
+            partitionNames.add("key=value" + i);
+        }
+        mockClient.setPartitionNames(partitionNames.build());
+
+        assertEquals(metastore.getPartitionNamesByFilter(TEST_DATABASE, TEST_TABLE, "key <> \"other\""), Optional.empty());
+        assertEquals(metastore.getPartitionNamesByFilter(TEST_DATABASE, TEST_TABLE, "key = \"value42\""), Optional.of(ImmutableList.of("key=value42")));
+    }
+
+    @Test
+    public void testSnapshotEntriesExpireWithSnapshotAge()
+            throws Exception
+    {
+        metastore.getTable(TEST_DATABASE, TEST_TABLE);
+        metastore.getPartitionNames(TEST_DATABASE, TEST_TABLE);
+        assertEquals(mockClient.getAccessCount(), 2);
+        MetastoreCacheSnapshot snapshot = metastore.createSnapshot();
+
+        // refreshes run on the calling thread, so the access count is exact
+        ExecutorService sameThread = sameThreadExecutor();
+
+        // a snapshot older than the TTL is not loaded
+        CachingHiveMetastore restored = new CachingHiveMetastore(mockHiveCluster, sameThread, new Duration(5, TimeUnit.MINUTES), new Duration(1, TimeUnit.MINUTES));
+        assertFalse(restored.loadSnapshot(withAge(snapshot, new Duration(6, TimeUnit.MINUTES))));
+        assertNotNull(restored.getTable(TEST_DATABASE, TEST_TABLE));
+        assertEquals(mockClient.getAccessCount(), 3);
+
+        // entries of a snapshot older than the refresh interval are refreshed once on access
+        restored = new CachingHiveMetastore(mockHiveCluster, sameThread, new Duration(5, TimeUnit.MINUTES), new Duration(1, TimeUnit.MINUTES));
+        assertTrue(restored.loadSnapshot(withAge(snapshot, new Duration(2, TimeUnit.MINUTES))));
+        assertNotNull(restored.getTable(TEST_DATABASE, TEST_TABLE));
+        assertEquals(mockClient.getAccessCount(), 4);
+        assertNotNull(restored.getTable(TEST_DATABASE, TEST_TABLE));
+        assertEquals(mockClient.getAccessCount(), 4);
+
+        // entries of a recent snapshot are used as is
+        restored = new CachingHiveMetastore(mockHiveCluster, sameThread, new Duration(5, TimeUnit.MINUTES), new Duration(1, TimeUnit.MINUTES));
+        assertTrue(restored.loadSnapshot(withAge(snapshot, new Duration(0, TimeUnit.MINUTES))));
+        assertNotNull(restored.getTable(TEST_DATABASE, TEST_TABLE));
+        assertEquals(restored.getPartitionNames(TEST_DATABASE, TEST_TABLE), ImmutableList.of(TEST_PARTITION1, TEST_PARTITION2));
+        assertEquals(mockClient.getAccessCount(), 4);
+
+        // the entries expire once the snapshot is older than the TTL, before the TTL counted from the load
+        restored = new CachingHiveMetastore(mockHiveCluster, sameThread, new Duration(1, TimeUnit.SECONDS), new Duration(10, TimeUnit.MINUTES));
+        assertTrue(restored.loadSnapshot(withAge(snapshot, new Duration(500, TimeUnit.MILLISECONDS))));
+        assertNotNull(restored.getTable(TEST_DATABASE, TEST_TABLE));
+        assertEquals(mockClient.getAccessCount(), 4);
+        MILLISECONDS.sleep(600);
+        assertNotNull(restored.getTable(TEST_DATABASE, TEST_TABLE));
+        assertEquals(mockClient.getAccessCount(), 5);
+    }
+
+    private static MetastoreCacheSnapshot withAge(MetastoreCacheSnapshot snapshot, Duration age)
+    {
+        return new MetastoreCacheSnapshot(
+                System.currentTimeMillis() - age.toMillis(),
+                snapshot.getTables(),
+                snapshot.getPartitionNames(),
+                snapshot.getPartitions());
+    }
+
     private static class MockHiveCluster
             implements HiveCluster
     {
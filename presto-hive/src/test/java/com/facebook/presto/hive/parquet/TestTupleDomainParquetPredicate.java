@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import com.facebook.presto.hive.parquet.TupleDomainParquetPredicate.ColumnReference;
+import com.facebook.presto.spi.Domain;
+import com.facebook.presto.spi.Range;
+import com.facebook.presto.spi.SortedRangeSet;
+import com.facebook.presto.spi.TupleDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+import parquet.column.ColumnDescriptor;
+import parquet.column.Dictionary;
+import parquet.column.statistics.LongStatistics;
+import parquet.column.statistics.Statistics;
+
+import java.util.Map;
+
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static parquet.column.Encoding.PLAIN_DICTIONARY;
+import static parquet.schema.PrimitiveType.PrimitiveTypeName.INT64;
+
+public class TestTupleDomainParquetPredicate
+{
+    private static final String COLUMN = "column";
+    private static final ColumnDescriptor DESCRIPTOR = new ColumnDescriptor(new String[] {COLUMN}, INT64, 0, 1);
+
+    @Test
+    public void testStatistics()
+    {
+        TupleDomainParquetPredicate<String> predicate = createPredicate(Domain.singleValue(42L));
+
+        assertTrue(predicate.matches(100, statistics(0, 100, 0)));
+        assertFalse(predicate.matches(100, statistics(50, 100, 0)));
+        assertFalse(predicate.matches(100, statistics(0, 41, 10)));
+
+        // no statistics for the column
+        assertTrue(predicate.matches(100, ImmutableMap.<ColumnDescriptor, Statistics<?>>of()));
+        // empty statistics are written by old writers
+        assertTrue(predicate.matches(100, ImmutableMap.<ColumnDescriptor, Statistics<?>>of(DESCRIPTOR, new LongStatistics())));
+        // empty row group
+        assertFalse(predicate.matches(0, statistics(0, 100, 0)));
+    }
+
+    @Test
+    public void testNullStatistics()
+    {
+        TupleDomainParquetPredicate<String> predicate = createPredicate(Domain.onlyNull(Long.class));
+        assertFalse(predicate.matches(100, statistics(0, 100, 0)));
+        assertTrue(predicate.matches(100, statistics(0, 100, 10)));
+
+        LongStatistics onlyNulls = new LongStatistics();
+        onlyNulls.setNumNulls(100);
+        assertTrue(predicate.matches(100, ImmutableMap.<ColumnDescriptor, Statistics<?>>of(DESCRIPTOR, onlyNulls)));
+
+        predicate = createPredicate(Domain.notNull(Long.class));
+        assertFalse(predicate.matches(100, ImmutableMap.<ColumnDescriptor, Statistics<?>>of(DESCRIPTOR, onlyNulls)));
+    }
+
+    @Test
+    public void testDictionary()
+    {
+        TupleDomainParquetPredicate<String> predicate = createPredicate(Domain.create(SortedRangeSet.of(Range.equal(3L), Range.equal(7L)), false));
+        assertEquals(predicate.getDictionaryColumns(), ImmutableList.of(DESCRIPTOR));
+
+        assertTrue(predicate.matches(ImmutableMap.of(DESCRIPTOR, dictionary(1, 3, 5))));
+        assertFalse(predicate.matches(ImmutableMap.of(DESCRIPTOR, dictionary(1, 2, 5, 8))));
+        assertTrue(predicate.matches(ImmutableMap.<ColumnDescriptor, Dictionary>of()));
+    }
+
+    @Test
+    public void testDictionaryNotUsedForRanges()
+    {
+        TupleDomainParquetPredicate<String> predicate = createPredicate(Domain.create(SortedRangeSet.of(Range.greaterThan(3L)), false));
+        assertEquals(predicate.getDictionaryColumns(), ImmutableList.of());
+        assertTrue(predicate.matches(ImmutableMap.of(DESCRIPTOR, dictionary(1, 2))));
+
+        // a dictionary can not prove the absence of nulls
+        predicate = createPredicate(Domain.create(SortedRangeSet.of(Range.equal(3L)), true));
+        assertEquals(predicate.getDictionaryColumns(), ImmutableList.of());
+        assertTrue(predicate.matches(ImmutableMap.of(DESCRIPTOR, dictionary(1, 2))));
+    }
+
+    private static TupleDomainParquetPredicate<String> createPredicate(Domain domain)
+    {
+        return new TupleDomainParquetPredicate<>(
+                TupleDomain.withColumnDomains(ImmutableMap.of(COLUMN, domain)),
+                ImmutableList.of(new ColumnReference<>(COLUMN, DESCRIPTOR, BIGINT)));
+    }
+
+    private static Map<ColumnDescriptor, Statistics<?>> statistics(long min, long max, long numNulls)
+    {
+        LongStatistics statistics = new LongStatistics();
+        statistics.setMinMax(min, max);
+        statistics.setNumNulls(numNulls);
+        return ImmutableMap.<ColumnDescriptor, Statistics<?>>of(DESCRIPTOR, statistics);
+    }
+
+    private static Dictionary dictionary(long... values)
+    {
+        return new Dictionary(PLAIN_DICTIONARY)
+        {
+            @Override
+            public int getMaxId()
+            {
+                return values.length - 1;
+            }
+
+            @Override
+            public long decodeToLong(int id)
+            {
+                return values[id];
+            }
+        };
+    }
+}
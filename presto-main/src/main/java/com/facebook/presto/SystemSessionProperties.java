@@ -18,6 +18,8 @@ public final class SystemSessionProperties
     public static final String BIG_QUERY = "experimental_big_query";
     private static final String OPTIMIZE_HASH_GENERATION = "optimize_hash_generation";
     private static final String DISTRIBUTED_JOIN = "distributed_join";
+    private static final String BUCKET_EXECUTION = "bucket_execution";
+    private static final String STREAMING_AGGREGATION = "streaming_aggregation";
 
     private SystemSessionProperties() {}
 
@@ -45,4 +47,14 @@ public final class SystemSessionProperties
     {
         return isEnabled(DISTRIBUTED_JOIN, session, defaultValue);
     }
+
+    public static boolean isBucketExecutionEnabled(Session session, boolean defaultValue)
+    {
+        return isEnabled(BUCKET_EXECUTION, session, defaultValue);
+    }
+
+    public static boolean isStreamingAggregationEnabled(Session session, boolean defaultValue)
+    {
+        return isEnabled(STREAMING_AGGREGATION, session, defaultValue);
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.sql.parser.SqlParser;
+import com.facebook.presto.sql.tree.Statement;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Caches parsed statements by query text. Statements are immutable, so the parsed
+ * form of a query text can be shared by all executions of that text. Only the
+ * parser is skipped; every execution is still analyzed and planned.
+ */
+@ThreadSafe
+public class ParsedStatementCache
+{
+    private final SqlParser sqlParser;
+    private final Cache<String, Statement> cache;
+
+    public ParsedStatementCache(SqlParser sqlParser, int maxSize)
+    {
+        this.sqlParser = checkNotNull(sqlParser, "sqlParser is null");
+        checkArgument(maxSize >= 0, "maxSize is negative");
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Parse failures are not cached.
+     */
+    public Statement parse(String query)
+    {
+        Statement statement = cache.getIfPresent(query);
+        if (statement == null) {
+            statement = sqlParser.createStatement(query);
+            cache.put(query, statement);
+        }
+        return statement;
+    }
+
+    @Managed
+    public long getHitCount()
+    {
+        return cache.stats().hitCount();
+    }
+
+    @Managed
+    public long getMissCount()
+    {
+        return cache.stats().missCount();
+    }
+
+    @Managed
+    public long getSize()
+    {
+        return cache.size();
+    }
+}
@@ -37,6 +37,7 @@ public class QueryManagerConfig
     private Integer bigQueryInitialHashPartitions;
     private Duration maxQueryAge = new Duration(15, TimeUnit.MINUTES);
     private int maxQueryHistory = 100;
+    private int parsedStatementCacheSize;
     private Duration clientTimeout = new Duration(5, TimeUnit.MINUTES);
 
     private int queryManagerExecutorPoolSize = 5;
@@ -210,6 +211,19 @@ public class QueryManagerConfig
         return this;
     }
 
+    @Min(0)
+    public int getParsedStatementCacheSize()
+    {
+        return parsedStatementCacheSize;
+    }
+
+    @Config("query.parsed-statement-cache-size")
+    public QueryManagerConfig setParsedStatementCacheSize(int parsedStatementCacheSize)
+    {
+        this.parsedStatementCacheSize = parsedStatementCacheSize;
+        return this;
+    }
+
     @Min(1)
     public int getQueryManagerExecutorPoolSize()
     {
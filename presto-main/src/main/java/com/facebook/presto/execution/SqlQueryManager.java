@@ -64,7 +64,7 @@ public class SqlQueryManager
 {
     private static final Logger log = Logger.get(SqlQueryManager.class);
 
-    private final SqlParser sqlParser;
+    private final ParsedStatementCache parsedStatementCache;
 
     private final ExecutorService queryExecutor;
     private final ThreadPoolExecutorMBean queryExecutorMBean;
@@ -99,7 +99,7 @@ public class SqlQueryManager
             LocationFactory locationFactory,
             Map<Class<? extends Statement>, QueryExecutionFactory<?>> executionFactories)
     {
-        this.sqlParser = checkNotNull(sqlParser, "sqlParser is null");
+        checkNotNull(sqlParser, "sqlParser is null");
 
         this.executionFactories = checkNotNull(executionFactories, "executionFactories is null");
 
@@ -115,6 +115,7 @@ public class SqlQueryManager
 
         this.maxQueryAge = config.getMaxQueryAge();
         this.maxQueryHistory = config.getMaxQueryHistory();
+        this.parsedStatementCache = new ParsedStatementCache(sqlParser, config.getParsedStatementCacheSize());
         this.clientTimeout = config.getClientTimeout();
 
         queryManagementExecutor = Executors.newScheduledThreadPool(config.getQueryManagerExecutorPoolSize(), threadsNamed("query-management-%s"));
@@ -239,7 +240,7 @@ public class SqlQueryManager
 
         Statement statement;
         try {
-            statement = sqlParser.createStatement(query);
+            statement = parsedStatementCache.parse(query);
         }
         catch (ParsingException e) {
             // This is intentionally not a method, since after the state change listener is registered
@@ -307,6 +308,13 @@ public class SqlQueryManager
         }
     }
 
+    @Managed
+    @Nested
+    public ParsedStatementCache getParsedStatementCache()
+    {
+        return parsedStatementCache;
+    }
+
     @Managed
     @Flatten
     public SqlQueryManagerStats getStats()
@@ -37,6 +37,7 @@ import com.facebook.presto.sql.planner.plan.RemoteSourceNode;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Functions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
@@ -59,12 +60,15 @@ import javax.annotation.concurrent.ThreadSafe;
 
 import java.net.URI;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -116,6 +120,8 @@ public class SqlStageExecution
     private final ConcurrentMap<TaskId, RemoteTask> tasks = new ConcurrentHashMap<>();
 
     private final Optional<SplitSource> dataSource;
+    private final Map<PlanNodeId, SplitSource> colocatedDataSources;
+    private final Optional<List<String>> bucketNodeIds;
     private final RemoteTaskFactory remoteTaskFactory;
     private final Session session; // only used for remote task factory
     private final int splitBatchSize;
@@ -206,6 +212,8 @@ public class SqlStageExecution
             this.location = locationFactory.createStageLocation(stageId);
             this.fragment = plan.getFragment();
             this.dataSource = plan.getDataSource();
+            this.colocatedDataSources = plan.getColocatedDataSources();
+            this.bucketNodeIds = plan.getBucketNodes();
             this.remoteTaskFactory = remoteTaskFactory;
             this.session = session;
             this.splitBatchSize = splitBatchSize;
@@ -213,7 +221,7 @@ public class SqlStageExecution
             this.executor = executor;
 
             this.allSources = Stream.concat(
-                    Stream.of(fragment.getPartitionedSource()),
+                    Stream.concat(Stream.of(fragment.getPartitionedSource()), fragment.getColocatedSources().stream()),
                     fragment.getRemoteSourceNodes().stream()
                             .map(RemoteSourceNode::getId))
                     .filter(Objects::nonNull)
@@ -551,6 +559,9 @@ public class SqlStageExecution
                 else if (fragment.getDistribution() == PlanDistribution.FIXED) {
                     scheduleFixedNodeCount(initialHashPartitions);
                 }
+                else if (fragment.getDistribution() == PlanDistribution.SOURCE && fragment.isBucketed()) {
+                    scheduleBucketedNodes();
+                }
                 else if (fragment.getDistribution() == PlanDistribution.SOURCE) {
                     scheduleSourcePartitionedNodes();
                 }
@@ -658,6 +669,102 @@ public class SqlStageExecution
         setNoMoreStageNodes();
     }
 
+    private void scheduleBucketedNodes()
+            throws InterruptedException
+    {
+        // bucket N of every bucketed source must be processed by the same task, so
+        // all tasks are created upfront and the splits are assigned by bucket number
+        List<Node> nodes = getBucketNodes().orElseGet(() -> nodeSelector.selectRandomNodes(initialHashPartitions));
+        checkCondition(!nodes.isEmpty(), NO_NODES_AVAILABLE, "No worker nodes available");
+
+        // a node that owns several buckets processes all of them in one task
+        Map<Node, RemoteTask> nodeTasks = new LinkedHashMap<>();
+        ImmutableList.Builder<RemoteTask> bucketTasks = ImmutableList.builder();
+        for (Node node : nodes) {
+            RemoteTask task = nodeTasks.get(node);
+            if (task == null) {
+                task = scheduleTask(nodeTasks.size(), node);
+                nodeTasks.put(node, task);
+            }
+            bucketTasks.add(task);
+        }
+
+        // tell sub stages about all nodes and that there will not be more nodes
+        List<TaskId> taskIds = nodeTasks.values().stream()
+                .map(task -> task.getTaskInfo().getTaskId())
+                .collect(toImmutableList());
+        for (StageExecutionNode subStage : subStages.values()) {
+            subStage.parentTasksAdded(taskIds, true);
+        }
+
+        // the colocated sources are the build side of joins, so schedule them before the partitioned source
+        for (Entry<PlanNodeId, SplitSource> entry : colocatedDataSources.entrySet()) {
+            scheduleBucketedSplits(entry.getKey(), entry.getValue(), bucketTasks.build());
+        }
+        scheduleBucketedSplits(fragment.getPartitionedSource(), dataSource.get(), bucketTasks.build());
+    }
+
+    /**
+     * Returns the nodes the connector requires for each bucket, or empty if
+     * the buckets can run anywhere or one of the required nodes is gone.
+     */
+    private Optional<List<Node>> getBucketNodes()
+    {
+        if (!bucketNodeIds.isPresent() || bucketNodeIds.get().isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<String, Node> nodesById = new HashMap<>();
+        for (Node node : nodeSelector.allNodes()) {
+            nodesById.put(node.getNodeIdentifier(), node);
+        }
+
+        ImmutableList.Builder<Node> nodes = ImmutableList.builder();
+        for (String nodeId : bucketNodeIds.get()) {
+            Node node = nodesById.get(nodeId);
+            if (node == null) {
+                log.warn("Node %s of a bucket is not available, scheduling buckets on random nodes", nodeId);
+                return Optional.empty();
+            }
+            nodes.add(node);
+        }
+        return Optional.of(nodes.build());
+    }
+
+    private void scheduleBucketedSplits(PlanNodeId sourceId, SplitSource splitSource, List<RemoteTask> bucketTasks)
+            throws InterruptedException
+    {
+        try (SplitSource ignored = splitSource) {
+            while (!splitSource.isFinished()) {
+                // if query has been canceled, exit cleanly; query will never run regardless
+                if (getState().isDone()) {
+                    return;
+                }
+
+                long start = System.nanoTime();
+                List<Split> splits = splitSource.getNextBatch(splitBatchSize);
+                getSplitDistribution.add(System.nanoTime() - start);
+
+                long scheduleSplitStart = System.nanoTime();
+                Multimap<Integer, Split> splitAssignment = ArrayListMultimap.create();
+                for (Split split : splits) {
+                    OptionalInt bucket = split.getConnectorSplit().getBucket();
+                    checkState(bucket.isPresent(), "Split of bucketed source %s does not have a bucket: %s", sourceId, split);
+                    splitAssignment.put(bucket.getAsInt() % bucketTasks.size(), split);
+                }
+                for (Entry<Integer, Collection<Split>> taskSplits : splitAssignment.asMap().entrySet()) {
+                    bucketTasks.get(taskSplits.getKey()).addSplits(sourceId, taskSplits.getValue());
+                }
+                addSplitDistribution.add(System.nanoTime() - scheduleSplitStart);
+            }
+        }
+
+        for (RemoteTask task : ImmutableSet.copyOf(bucketTasks)) {
+            task.noMoreSplits(sourceId);
+        }
+        completeSources.add(sourceId);
+    }
+
     private void assignSplits(AtomicInteger nextTaskId, Multimap<Node, Split> splitAssignment)
     {
         for (Entry<Node, Collection<Split>> taskSplits : splitAssignment.asMap().entrySet()) {
@@ -40,7 +40,6 @@ import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.concurrent.SetThreadName;
 import io.airlift.units.Duration;
 
-import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 import java.lang.ref.WeakReference;
@@ -48,6 +47,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalInt;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -93,6 +93,11 @@ public class SqlTaskExecution
     private final PlanNodeId partitionedSourceId;
     private final DriverSplitRunnerFactory partitionedDriverFactory;
 
+    // splits of a bucketed partitioned source, grouped by bucket until all splits are known
+    private final boolean bucketed;
+    @GuardedBy("this")
+    private final Map<Integer, List<ScheduledSplit>> pendingBucketSplits = new HashMap<>();
+
     private final List<DriverSplitRunnerFactory> unpartitionedDriverFactories;
 
     public static SqlTaskExecution createSqlTaskExecution(
@@ -172,6 +177,7 @@ public class SqlTaskExecution
             }
             this.partitionedSourceId = fragment.getPartitionedSource();
             this.partitionedDriverFactory = partitionedDriverFactory;
+            this.bucketed = fragment.isBucketed();
 
             // don't register the task if it is already completed (most likely failed during planning above)
             if (!taskStateMachine.getState().isDone()) {
@@ -195,7 +201,7 @@ public class SqlTaskExecution
         List<DriverSplitRunner> runners = new ArrayList<>();
         for (DriverSplitRunnerFactory driverFactory : unpartitionedDriverFactories) {
             for (int i = 0; i < driverFactory.getDriverInstances(); i++) {
-                runners.add(driverFactory.createDriverRunner(null, false));
+                runners.add(driverFactory.createDriverRunner(ImmutableList.of(), false));
             }
             driverFactory.setNoMoreSplits();
         }
@@ -261,12 +267,26 @@ public class SqlTaskExecution
                 for (ScheduledSplit scheduledSplit : source.getSplits()) {
                     // only add a split if we have not already scheduled it
                     if (scheduledSplit.getSequenceId() > maxAcknowledgedSplit) {
-                        // create a new driver for the split
-                        runners.add(partitionedDriverFactory.createDriverRunner(scheduledSplit, true));
+                        if (bucketed) {
+                            int bucket = getBucket(scheduledSplit);
+                            pendingBucketSplits.computeIfAbsent(bucket, key -> new ArrayList<>()).add(scheduledSplit);
+                        }
+                        else {
+                            // create a new driver for the split
+                            runners.add(partitionedDriverFactory.createDriverRunner(ImmutableList.of(scheduledSplit), true));
+                        }
                         newMaxAcknowledgedSplit = max(scheduledSplit.getSequenceId(), newMaxAcknowledgedSplit);
                     }
                 }
 
+                if (bucketed && source.isNoMoreSplits() && !partitionedDriverFactory.isNoMoreSplits()) {
+                    // all rows of a bucket must be seen by the same driver, so create one driver per bucket
+                    for (List<ScheduledSplit> bucketSplits : pendingBucketSplits.values()) {
+                        runners.add(partitionedDriverFactory.createDriverRunner(bucketSplits, true));
+                    }
+                    pendingBucketSplits.clear();
+                }
+
                 enqueueDrivers(false, runners.build());
                 if (source.isNoMoreSplits()) {
                     partitionedDriverFactory.setNoMoreSplits();
@@ -302,6 +322,13 @@ public class SqlTaskExecution
         return updatedUnpartitionedSources;
     }
 
+    private static int getBucket(ScheduledSplit scheduledSplit)
+    {
+        OptionalInt bucket = scheduledSplit.getSplit().getConnectorSplit().getBucket();
+        checkState(bucket.isPresent(), "Split of bucketed source does not have a bucket: %s", scheduledSplit.getSplit());
+        return bucket.getAsInt();
+    }
+
     private synchronized void enqueueDrivers(boolean forceRunSplit, List<DriverSplitRunner> runners)
     {
         // schedule driver to be executed
@@ -442,16 +469,16 @@ public class SqlTaskExecution
             this.pipelineContext = taskContext.addPipelineContext(driverFactory.isInputDriver(), driverFactory.isOutputDriver());
         }
 
-        private DriverSplitRunner createDriverRunner(@Nullable ScheduledSplit partitionedSplit, boolean partitioned)
+        private DriverSplitRunner createDriverRunner(List<ScheduledSplit> partitionedSplits, boolean partitioned)
         {
             pendingCreation.incrementAndGet();
             // create driver context immediately so the driver existence is recorded in the stats
             // the number of drivers is used to balance work across nodes
             DriverContext driverContext = pipelineContext.addDriverContext(partitioned);
-            return new DriverSplitRunner(this, driverContext, partitionedSplit);
+            return new DriverSplitRunner(this, driverContext, partitionedSplits);
         }
 
-        private Driver createDriver(DriverContext driverContext, @Nullable ScheduledSplit partitionedSplit)
+        private Driver createDriver(DriverContext driverContext, List<ScheduledSplit> partitionedSplits)
         {
             Driver driver = driverFactory.createDriver(driverContext);
 
@@ -459,9 +486,9 @@ public class SqlTaskExecution
             // NOTE: this MUST be done before reading unpartitionedSources, so we see a consistent view of the unpartitioned sources
             drivers.add(new WeakReference<>(driver));
 
-            if (partitionedSplit != null) {
+            if (!partitionedSplits.isEmpty()) {
                 // TableScanOperator requires partitioned split to be added before the first call to process
-                driver.updateSource(new TaskSource(partitionedSourceId, ImmutableSet.of(partitionedSplit), true));
+                driver.updateSource(new TaskSource(partitionedSourceId, ImmutableSet.copyOf(partitionedSplits), true));
             }
 
             // add unpartitioned sources
@@ -508,17 +535,16 @@ public class SqlTaskExecution
         @GuardedBy("this")
         private boolean closed;
 
-        @Nullable
-        private final ScheduledSplit partitionedSplit;
+        private final List<ScheduledSplit> partitionedSplits;
 
         @GuardedBy("this")
         private Driver driver;
 
-        private DriverSplitRunner(DriverSplitRunnerFactory driverSplitRunnerFactory, DriverContext driverContext, @Nullable ScheduledSplit partitionedSplit)
+        private DriverSplitRunner(DriverSplitRunnerFactory driverSplitRunnerFactory, DriverContext driverContext, List<ScheduledSplit> partitionedSplits)
         {
             this.driverSplitRunnerFactory = checkNotNull(driverSplitRunnerFactory, "driverFactory is null");
             this.driverContext = checkNotNull(driverContext, "driverContext is null");
-            this.partitionedSplit = partitionedSplit;
+            this.partitionedSplits = ImmutableList.copyOf(checkNotNull(partitionedSplits, "partitionedSplits is null"));
         }
 
         public synchronized DriverContext getDriverContext()
@@ -554,7 +580,7 @@ public class SqlTaskExecution
                 }
 
                 if (this.driver == null) {
-                    this.driver = driverSplitRunnerFactory.createDriver(driverContext, partitionedSplit);
+                    this.driver = driverSplitRunnerFactory.createDriver(driverContext, partitionedSplits);
                 }
 
                 driver = this.driver;
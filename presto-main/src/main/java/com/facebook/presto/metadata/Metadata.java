@@ -78,6 +78,23 @@ public interface Metadata
     @NotNull
     Optional<ColumnHandle> getSampleWeightColumnHandle(TableHandle tableHandle);
 
+    /**
+     * Returns the bucketing of the table, or empty if the table is not bucketed.
+     *
+     * @throws RuntimeException if the table handle is no longer valid
+     */
+    @NotNull
+    Optional<TableBucketing> getTableBucketing(TableHandle tableHandle);
+
+    /**
+     * Returns the columns by which the rows of every split of the table are sorted,
+     * or an empty list if the splits are not sorted.
+     *
+     * @throws RuntimeException if the table handle is no longer valid
+     */
+    @NotNull
+    List<ColumnHandle> getSortedColumns(TableHandle tableHandle);
+
     /**
      * Returns true iff this catalog supports creation of sampled tables
      *
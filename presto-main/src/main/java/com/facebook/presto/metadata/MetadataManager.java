@@ -23,6 +23,7 @@ import com.facebook.presto.spi.ConnectorInsertTableHandle;
 import com.facebook.presto.spi.ConnectorMetadata;
 import com.facebook.presto.spi.ConnectorOutputTableHandle;
 import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.ConnectorTableBucketing;
 import com.facebook.presto.spi.ConnectorTableHandle;
 import com.facebook.presto.spi.ConnectorTableMetadata;
 import com.facebook.presto.spi.PrestoException;
@@ -66,6 +67,7 @@ import static com.facebook.presto.metadata.ViewDefinition.ViewColumn;
 import static com.facebook.presto.spi.StandardErrorCode.INVALID_VIEW;
 import static com.facebook.presto.spi.StandardErrorCode.NOT_FOUND;
 import static com.facebook.presto.spi.StandardErrorCode.SYNTAX_ERROR;
+import static com.facebook.presto.util.ImmutableCollectors.toImmutableList;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Iterables.transform;
@@ -261,6 +263,36 @@ public class MetadataManager
         return Optional.of(new ColumnHandle(tableHandle.getConnectorId(), handle));
     }
 
+    @Override
+    public Optional<TableBucketing> getTableBucketing(TableHandle tableHandle)
+    {
+        checkNotNull(tableHandle, "tableHandle is null");
+        ConnectorMetadata metadata = lookupConnectorFor(tableHandle);
+        ConnectorTableBucketing bucketing = metadata.getTableBucketing(tableHandle.getConnectorHandle());
+
+        if (bucketing == null) {
+            return Optional.empty();
+        }
+
+        ImmutableList.Builder<ColumnHandle> columns = ImmutableList.builder();
+        ImmutableList.Builder<Type> types = ImmutableList.builder();
+        for (ConnectorColumnHandle column : bucketing.getBucketColumns()) {
+            columns.add(new ColumnHandle(tableHandle.getConnectorId(), column));
+            types.add(metadata.getColumnMetadata(tableHandle.getConnectorHandle(), column).getType());
+        }
+        return Optional.of(new TableBucketing(tableHandle.getConnectorId(), columns.build(), types.build(), bucketing.getBucketCount(), bucketing.getBucketFunction()));
+    }
+
+    @Override
+    public List<ColumnHandle> getSortedColumns(TableHandle tableHandle)
+    {
+        checkNotNull(tableHandle, "tableHandle is null");
+        List<ConnectorColumnHandle> columns = lookupConnectorFor(tableHandle).getSortedColumns(tableHandle.getConnectorHandle());
+        return columns.stream()
+                .map(column -> new ColumnHandle(tableHandle.getConnectorId(), column))
+                .collect(toImmutableList());
+    }
+
     @Override
     public boolean canCreateSampledTables(Session session, String catalogName)
     {
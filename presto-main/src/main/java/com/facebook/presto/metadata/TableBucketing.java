@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.metadata;
+
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class TableBucketing
+{
+    private final String connectorId;
+    private final List<ColumnHandle> bucketColumns;
+    private final List<Type> bucketColumnTypes;
+    private final int bucketCount;
+    private final String bucketFunction;
+
+    public TableBucketing(String connectorId, List<ColumnHandle> bucketColumns, List<Type> bucketColumnTypes, int bucketCount, String bucketFunction)
+    {
+        this.connectorId = checkNotNull(connectorId, "connectorId is null");
+        this.bucketColumns = ImmutableList.copyOf(checkNotNull(bucketColumns, "bucketColumns is null"));
+        this.bucketColumnTypes = ImmutableList.copyOf(checkNotNull(bucketColumnTypes, "bucketColumnTypes is null"));
+        checkArgument(bucketColumns.size() == bucketColumnTypes.size(), "bucketColumns and bucketColumnTypes do not match");
+        checkArgument(bucketCount > 0, "bucketCount must be greater than zero");
+        this.bucketCount = bucketCount;
+        this.bucketFunction = checkNotNull(bucketFunction, "bucketFunction is null");
+    }
+
+    public String getConnectorId()
+    {
+        return connectorId;
+    }
+
+    public List<ColumnHandle> getBucketColumns()
+    {
+        return bucketColumns;
+    }
+
+    public List<Type> getBucketColumnTypes()
+    {
+        return bucketColumnTypes;
+    }
+
+    public int getBucketCount()
+    {
+        return bucketCount;
+    }
+
+    public String getBucketFunction()
+    {
+        return bucketFunction;
+    }
+
+    /**
+     * Rows with equal bucket column values are in buckets with the same number in both tables.
+     */
+    public boolean isCompatibleWith(TableBucketing other)
+    {
+        return connectorId.equals(other.connectorId) &&
+                bucketFunction.equals(other.bucketFunction) &&
+                bucketCount == other.bucketCount &&
+                bucketColumnTypes.equals(other.bucketColumnTypes);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("connectorId", connectorId)
+                .add("bucketColumns", bucketColumns)
+                .add("bucketCount", bucketCount)
+                .add("bucketFunction", bucketFunction)
+                .toString();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class ConjunctStatistics
+{
+    private final String expression;
+    private final int estimatedCost;
+    private final long evaluations;
+    private final long passes;
+
+    @JsonCreator
+    public ConjunctStatistics(
+            @JsonProperty("expression") String expression,
+            @JsonProperty("estimatedCost") int estimatedCost,
+            @JsonProperty("evaluations") long evaluations,
+            @JsonProperty("passes") long passes)
+    {
+        this.expression = checkNotNull(expression, "expression is null");
+        this.estimatedCost = estimatedCost;
+        this.evaluations = evaluations;
+        this.passes = passes;
+    }
+
+    @JsonProperty
+    public String getExpression()
+    {
+        return expression;
+    }
+
+    @JsonProperty
+    public int getEstimatedCost()
+    {
+        return estimatedCost;
+    }
+
+    @JsonProperty
+    public long getEvaluations()
+    {
+        return evaluations;
+    }
+
+    @JsonProperty
+    public long getPasses()
+    {
+        return passes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("expression", expression)
+                .add("estimatedCost", estimatedCost)
+                .add("evaluations", evaluations)
+                .add("passes", passes)
+                .toString();
+    }
+}
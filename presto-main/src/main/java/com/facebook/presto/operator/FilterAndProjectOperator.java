@@ -41,6 +41,10 @@ public class FilterAndProjectOperator
         this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
         this.types = ImmutableList.copyOf(checkNotNull(types, "types is null"));
         this.pageBuilder = new PageBuilder(getTypes());
+
+        if (processor.getFilterInfo() != null) {
+            operatorContext.setInfoSupplier(processor::getFilterInfo);
+        }
     }
 
     @Override
@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Evaluation statistics of the conjuncts of a compiled filter, listed in the order
+ * they are currently evaluated.
+ */
+public class FilterInfo
+{
+    private final List<ConjunctStatistics> conjuncts;
+    private final long reorders;
+
+    @JsonCreator
+    public FilterInfo(
+            @JsonProperty("conjuncts") List<ConjunctStatistics> conjuncts,
+            @JsonProperty("reorders") long reorders)
+    {
+        this.conjuncts = ImmutableList.copyOf(checkNotNull(conjuncts, "conjuncts is null"));
+        this.reorders = reorders;
+    }
+
+    @JsonProperty
+    public List<ConjunctStatistics> getConjuncts()
+    {
+        return conjuncts;
+    }
+
+    @JsonProperty
+    public long getReorders()
+    {
+        return reorders;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("conjuncts", conjuncts)
+                .add("reorders", reorders)
+                .toString();
+    }
+}
@@ -20,4 +20,12 @@ import com.facebook.presto.spi.PageBuilder;
 public interface PageProcessor
 {
     int process(ConnectorSession session, Page page, int start, int end, PageBuilder pageBuilder);
+
+    /**
+     * @return statistics about the conjuncts of the filter, or null if they are not tracked
+     */
+    default FilterInfo getFilterInfo()
+    {
+        return null;
+    }
 }
@@ -26,12 +26,16 @@ import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 import javax.annotation.concurrent.GuardedBy;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.Queue;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
@@ -56,6 +60,16 @@ public class ScanFilterAndProjectOperator
     @GuardedBy("this")
     private ConnectorPageSource pageSource;
 
+    // splits are read one after the other; a driver of a bucketed scan reads all splits of its bucket
+    @GuardedBy("this")
+    private final Queue<Split> pendingSplits = new ArrayDeque<>();
+    @GuardedBy("this")
+    private boolean noMoreSplits;
+    @GuardedBy("this")
+    private SettableFuture<?> blocked = SettableFuture.create();
+
+    private boolean currentSplitFinished = true;
+
     private Page currentPage;
     private int currentPosition;
 
@@ -100,44 +114,58 @@ public class ScanFilterAndProjectOperator
     public synchronized void addSplit(Split split)
     {
         checkNotNull(split, "split is null");
-        checkState(cursor == null && pageSource == null, "split already set");
+        checkState(!noMoreSplits, "No more splits already set");
 
-        ConnectorPageSource pageSource = pageSourceProvider.createPageSource(split, columns);
-        if (pageSource instanceof RecordPageSource) {
-            cursor = ((RecordPageSource) pageSource).getCursor();
-        }
-        else {
-            this.pageSource = pageSource;
+        if (finishing) {
+            return;
         }
 
-        Object splitInfo = split.getInfo();
-        if (splitInfo != null) {
-            operatorContext.setInfoSupplier(Suppliers.ofInstance(splitInfo));
-        }
+        pendingSplits.add(split);
+        blocked.set(null);
     }
 
     @Override
     public synchronized void noMoreSplits()
     {
-        if (cursor == null && pageSource == null) {
-            finishing = true;
-        }
+        noMoreSplits = true;
+        blocked.set(null);
     }
 
-    @Override
-    public final List<Type> getTypes()
+    /**
+     * Opens the next split once the current one is exhausted, and starts
+     * finishing when all splits have been read.
+     */
+    private synchronized void advanceSplit()
     {
-        return types;
-    }
+        if (pageSource != null && pageSource.isFinished() && currentPage == null) {
+            currentSplitFinished = true;
+        }
 
-    @Override
-    public final void finish()
-    {
-        close();
+        while (currentSplitFinished && !finishing && !pendingSplits.isEmpty()) {
+            closeSplit();
+
+            Split split = pendingSplits.remove();
+            ConnectorPageSource pageSource = pageSourceProvider.createPageSource(split, columns);
+            if (pageSource instanceof RecordPageSource) {
+                cursor = ((RecordPageSource) pageSource).getCursor();
+            }
+            else {
+                this.pageSource = pageSource;
+            }
+            currentSplitFinished = false;
+
+            Object splitInfo = split.getInfo();
+            if (splitInfo != null) {
+                operatorContext.setInfoSupplier(Suppliers.ofInstance(splitInfo));
+            }
+        }
+
+        if (currentSplitFinished && pendingSplits.isEmpty() && noMoreSplits) {
+            finishing = true;
+        }
     }
 
-    @Override
-    public void close()
+    private synchronized void closeSplit()
     {
         if (pageSource != null) {
             try {
@@ -150,19 +178,57 @@ public class ScanFilterAndProjectOperator
         else if (cursor != null) {
             cursor.close();
         }
+        pageSource = null;
+        cursor = null;
+        currentPage = null;
+        currentPosition = 0;
+        completedBytes = 0;
+        readTimeNanos = 0;
+    }
+
+    @Override
+    public final List<Type> getTypes()
+    {
+        return types;
+    }
+
+    @Override
+    public final void finish()
+    {
+        close();
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        pendingSplits.clear();
+        closeSplit();
         finishing = true;
     }
 
     @Override
     public final boolean isFinished()
     {
-        if (pageSource != null && pageSource.isFinished() && currentPage == null) {
-            finishing = true;
-        }
+        advanceSplit();
 
         return finishing && pageBuilder.isEmpty();
     }
 
+    @Override
+    public final synchronized ListenableFuture<?> isBlocked()
+    {
+        advanceSplit();
+        if (finishing || !currentSplitFinished) {
+            return NOT_BLOCKED;
+        }
+
+        // waiting for the next split
+        if (blocked.isDone()) {
+            blocked = SettableFuture.create();
+        }
+        return blocked;
+    }
+
     @Override
     public final boolean needsInput()
     {
@@ -178,7 +244,8 @@ public class ScanFilterAndProjectOperator
     @Override
     public Page getOutput()
     {
-        if (!finishing) {
+        advanceSplit();
+        if (!finishing && !currentSplitFinished) {
             if (cursor != null) {
                 int rowsProcessed = cursorProcessor.process(operatorContext.getSession().toConnectorSession(), cursor, ROWS_PER_PAGE, pageBuilder);
                 long bytesProcessed = cursor.getCompletedBytes() - completedBytes;
@@ -188,7 +255,7 @@ public class ScanFilterAndProjectOperator
                 readTimeNanos = cursor.getReadTimeNanos();
 
                 if (rowsProcessed == 0) {
-                    finishing = true;
+                    currentSplitFinished = true;
                 }
             }
             else {
@@ -0,0 +1,359 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.ExceededMemoryLimitException;
+import com.facebook.presto.operator.aggregation.Accumulator;
+import com.facebook.presto.operator.aggregation.AccumulatorFactory;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageBuilder;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.sql.planner.plan.AggregationNode.Step;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Aggregates input in which all rows of a group are adjacent. A group is emitted as soon
+ * as a row with a different key arrives, so only the accumulators of the current group
+ * are kept in memory.
+ */
+public class StreamingAggregationOperator
+        implements Operator
+{
+    public static class StreamingAggregationOperatorFactory
+            implements OperatorFactory
+    {
+        private final int operatorId;
+        private final List<Type> groupByTypes;
+        private final List<Integer> groupByChannels;
+        private final Step step;
+        private final List<AccumulatorFactory> accumulatorFactories;
+        private final Optional<Integer> hashChannel;
+        private final List<Type> types;
+        private boolean closed;
+
+        public StreamingAggregationOperatorFactory(
+                int operatorId,
+                List<? extends Type> groupByTypes,
+                List<Integer> groupByChannels,
+                Step step,
+                List<AccumulatorFactory> accumulatorFactories,
+                Optional<Integer> hashChannel)
+        {
+            this.operatorId = operatorId;
+            this.groupByTypes = ImmutableList.copyOf(checkNotNull(groupByTypes, "groupByTypes is null"));
+            this.groupByChannels = ImmutableList.copyOf(checkNotNull(groupByChannels, "groupByChannels is null"));
+            this.step = checkNotNull(step, "step is null");
+            this.accumulatorFactories = ImmutableList.copyOf(checkNotNull(accumulatorFactories, "accumulatorFactories is null"));
+            this.hashChannel = checkNotNull(hashChannel, "hashChannel is null");
+
+            this.types = toTypes(groupByTypes, step, accumulatorFactories, hashChannel);
+        }
+
+        @Override
+        public List<Type> getTypes()
+        {
+            return types;
+        }
+
+        @Override
+        public Operator createOperator(DriverContext driverContext)
+        {
+            checkState(!closed, "Factory is already closed");
+            OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, StreamingAggregationOperator.class.getSimpleName());
+            return new StreamingAggregationOperator(operatorContext, groupByTypes, groupByChannels, step, accumulatorFactories, hashChannel);
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+    }
+
+    private final OperatorContext operatorContext;
+    private final List<Type> groupByTypes;
+    private final List<Integer> groupByChannels;
+    private final Step step;
+    private final List<AccumulatorFactory> accumulatorFactories;
+    private final Optional<Integer> hashChannel;
+
+    private final List<Type> types;
+    private final MemoryManager memoryManager;
+    private final PageBuilder pageBuilder;
+
+    // group by values (and hash) of the current group, one position per block
+    private Block[] currentGroup;
+    private List<Aggregator> aggregators;
+    private boolean finishing;
+
+    public StreamingAggregationOperator(
+            OperatorContext operatorContext,
+            List<Type> groupByTypes,
+            List<Integer> groupByChannels,
+            Step step,
+            List<AccumulatorFactory> accumulatorFactories,
+            Optional<Integer> hashChannel)
+    {
+        this.operatorContext = checkNotNull(operatorContext, "operatorContext is null");
+        this.groupByTypes = ImmutableList.copyOf(checkNotNull(groupByTypes, "groupByTypes is null"));
+        this.groupByChannels = ImmutableList.copyOf(checkNotNull(groupByChannels, "groupByChannels is null"));
+        checkArgument(!groupByChannels.isEmpty(), "groupByChannels is empty");
+        checkArgument(groupByTypes.size() == groupByChannels.size(), "groupByTypes and groupByChannels do not match");
+        this.step = checkNotNull(step, "step is null");
+        this.accumulatorFactories = ImmutableList.copyOf(checkNotNull(accumulatorFactories, "accumulatorFactories is null"));
+        this.hashChannel = checkNotNull(hashChannel, "hashChannel is null");
+
+        this.types = toTypes(groupByTypes, step, accumulatorFactories, hashChannel);
+        this.memoryManager = new MemoryManager(operatorContext);
+        this.pageBuilder = new PageBuilder(types);
+    }
+
+    @Override
+    public OperatorContext getOperatorContext()
+    {
+        return operatorContext;
+    }
+
+    @Override
+    public List<Type> getTypes()
+    {
+        return types;
+    }
+
+    @Override
+    public void finish()
+    {
+        finishing = true;
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return finishing && currentGroup == null && pageBuilder.isEmpty();
+    }
+
+    @Override
+    public boolean needsInput()
+    {
+        // completed groups are handed out before more input is accepted
+        return !finishing && pageBuilder.isEmpty();
+    }
+
+    @Override
+    public void addInput(Page page)
+    {
+        checkState(needsInput(), "Operator is already finishing");
+        checkNotNull(page, "page is null");
+
+        int positionCount = page.getPositionCount();
+        int position = 0;
+        while (position < positionCount) {
+            if (currentGroup == null) {
+                startGroup(page, position);
+            }
+            else if (!isCurrentGroup(page, position)) {
+                closeGroup();
+                startGroup(page, position);
+            }
+
+            int groupEnd = findGroupEnd(page, position);
+            addToGroup(page.getRegion(position, groupEnd - position));
+            position = groupEnd;
+        }
+    }
+
+    @Override
+    public Page getOutput()
+    {
+        if (finishing && currentGroup != null) {
+            closeGroup();
+        }
+
+        if (pageBuilder.isEmpty()) {
+            return null;
+        }
+
+        Page page = pageBuilder.build();
+        pageBuilder.reset();
+        return page;
+    }
+
+    private void startGroup(Page page, int position)
+    {
+        int keyCount = groupByChannels.size() + (hashChannel.isPresent() ? 1 : 0);
+        currentGroup = new Block[keyCount];
+        for (int i = 0; i < groupByChannels.size(); i++) {
+            currentGroup[i] = page.getBlock(groupByChannels.get(i)).getSingleValueBlock(position);
+        }
+        if (hashChannel.isPresent()) {
+            currentGroup[keyCount - 1] = page.getBlock(hashChannel.get()).getSingleValueBlock(position);
+        }
+
+        ImmutableList.Builder<Aggregator> builder = ImmutableList.builder();
+        for (AccumulatorFactory accumulatorFactory : accumulatorFactories) {
+            builder.add(new Aggregator(accumulatorFactory, step));
+        }
+        aggregators = builder.build();
+    }
+
+    private void addToGroup(Page page)
+    {
+        long memorySize = 0;
+        for (Aggregator aggregator : aggregators) {
+            aggregator.processPage(page);
+            memorySize += aggregator.getEstimatedSize();
+        }
+        if (!memoryManager.canUse(memorySize)) {
+            throw new ExceededMemoryLimitException(memoryManager.getMaxMemorySize());
+        }
+    }
+
+    private void closeGroup()
+    {
+        pageBuilder.declarePosition();
+
+        int channel = 0;
+        for (Block value : currentGroup) {
+            types.get(channel).appendTo(value, 0, pageBuilder.getBlockBuilder(channel));
+            channel++;
+        }
+        for (Aggregator aggregator : aggregators) {
+            aggregator.evaluate(pageBuilder.getBlockBuilder(channel));
+            channel++;
+        }
+
+        currentGroup = null;
+        aggregators = null;
+    }
+
+    private boolean isCurrentGroup(Page page, int position)
+    {
+        for (int i = 0; i < groupByChannels.size(); i++) {
+            if (!valueEquals(groupByTypes.get(i), currentGroup[i], 0, page.getBlock(groupByChannels.get(i)), position)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int findGroupEnd(Page page, int startPosition)
+    {
+        int position = startPosition + 1;
+        while (position < page.getPositionCount() && isSameGroup(page, startPosition, position)) {
+            position++;
+        }
+        return position;
+    }
+
+    private boolean isSameGroup(Page page, int leftPosition, int rightPosition)
+    {
+        for (int i = 0; i < groupByChannels.size(); i++) {
+            Block block = page.getBlock(groupByChannels.get(i));
+            if (!valueEquals(groupByTypes.get(i), block, leftPosition, block, rightPosition)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean valueEquals(Type type, Block leftBlock, int leftPosition, Block rightBlock, int rightPosition)
+    {
+        boolean leftIsNull = leftBlock.isNull(leftPosition);
+        boolean rightIsNull = rightBlock.isNull(rightPosition);
+        if (leftIsNull || rightIsNull) {
+            // nulls form a group of their own
+            return leftIsNull && rightIsNull;
+        }
+        return type.equalTo(leftBlock, leftPosition, rightBlock, rightPosition);
+    }
+
+    private static List<Type> toTypes(List<? extends Type> groupByTypes, Step step, List<AccumulatorFactory> factories, Optional<Integer> hashChannel)
+    {
+        ImmutableList.Builder<Type> types = ImmutableList.builder();
+        types.addAll(groupByTypes);
+        if (hashChannel.isPresent()) {
+            types.add(BIGINT);
+        }
+        for (AccumulatorFactory factory : factories) {
+            types.add(new Aggregator(factory, step).getType());
+        }
+        return types.build();
+    }
+
+    private static class Aggregator
+    {
+        private final Accumulator aggregation;
+        private final Step step;
+        private final int intermediateChannel;
+
+        private Aggregator(AccumulatorFactory accumulatorFactory, Step step)
+        {
+            if (step == Step.FINAL) {
+                checkArgument(accumulatorFactory.getInputChannels().size() == 1, "expected 1 input channel for intermediate aggregation");
+                intermediateChannel = accumulatorFactory.getInputChannels().get(0);
+                aggregation = accumulatorFactory.createIntermediateAccumulator();
+            }
+            else {
+                intermediateChannel = -1;
+                aggregation = accumulatorFactory.createAccumulator();
+            }
+            this.step = step;
+        }
+
+        public Type getType()
+        {
+            if (step == Step.PARTIAL) {
+                return aggregation.getIntermediateType();
+            }
+            else {
+                return aggregation.getFinalType();
+            }
+        }
+
+        public void processPage(Page page)
+        {
+            if (step == Step.FINAL) {
+                aggregation.addIntermediate(page.getBlock(intermediateChannel));
+            }
+            else {
+                aggregation.addInput(page);
+            }
+        }
+
+        public long getEstimatedSize()
+        {
+            return aggregation.getEstimatedSize();
+        }
+
+        public void evaluate(BlockBuilder blockBuilder)
+        {
+            if (step == Step.PARTIAL) {
+                aggregation.evaluateIntermediate(blockBuilder);
+            }
+            else {
+                aggregation.evaluateFinal(blockBuilder);
+            }
+        }
+    }
+}
@@ -30,7 +30,9 @@ import javax.annotation.concurrent.GuardedBy;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.Queue;
 
 import static com.facebook.presto.operator.FinishedPageSource.FINISHED_PAGE_SOURCE;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -100,11 +102,21 @@ public class TableScanOperator
     private final PageSourceProvider pageSourceProvider;
     private final List<Type> types;
     private final List<ColumnHandle> columns;
-    private final SettableFuture<?> blocked;
+
+    @GuardedBy("this")
+    private SettableFuture<?> blocked = SettableFuture.create();
 
     @GuardedBy("this")
     private ConnectorPageSource source;
 
+    // splits are read one after the other; a driver of a bucketed scan reads all splits of its bucket
+    @GuardedBy("this")
+    private final Queue<Split> pendingSplits = new ArrayDeque<>();
+    @GuardedBy("this")
+    private boolean noMoreSplits;
+    @GuardedBy("this")
+    private boolean finished;
+
     private long completedBytes;
     private long readTimeNanos;
 
@@ -120,7 +132,6 @@ public class TableScanOperator
         this.types = checkNotNull(types, "types is null");
         this.pageSourceProvider = checkNotNull(pageSourceProvider, "pageSourceManager is null");
         this.columns = ImmutableList.copyOf(checkNotNull(columns, "columns is null"));
-        this.blocked = SettableFuture.create();
     }
 
     @Override
@@ -139,30 +150,62 @@ public class TableScanOperator
     public synchronized void addSplit(Split split)
     {
         checkNotNull(split, "split is null");
-        checkState(getSource() == null, "Table scan split already set");
-
-        source = pageSourceProvider.createPageSource(split, columns);
+        checkState(!noMoreSplits, "No more splits already set");
 
-        Object splitInfo = split.getInfo();
-        if (splitInfo != null) {
-            operatorContext.setInfoSupplier(Suppliers.ofInstance(splitInfo));
+        if (finished) {
+            return;
         }
+
+        pendingSplits.add(split);
         blocked.set(null);
     }
 
     @Override
     public synchronized void noMoreSplits()
     {
-        if (source == null) {
-            source = FINISHED_PAGE_SOURCE;
-        }
+        noMoreSplits = true;
+        blocked.set(null);
     }
 
+    /**
+     * Returns the page source of the split being read, advancing to the next
+     * split once the current one is exhausted.
+     */
     private synchronized ConnectorPageSource getSource()
     {
+        while (!finished && (source == null || source.isFinished()) && !pendingSplits.isEmpty()) {
+            closeSource();
+
+            Split split = pendingSplits.remove();
+            source = pageSourceProvider.createPageSource(split, columns);
+            completedBytes = 0;
+            readTimeNanos = 0;
+
+            Object splitInfo = split.getInfo();
+            if (splitInfo != null) {
+                operatorContext.setInfoSupplier(Suppliers.ofInstance(splitInfo));
+            }
+        }
+
+        if (source == null && noMoreSplits) {
+            source = FINISHED_PAGE_SOURCE;
+        }
         return source;
     }
 
+    private synchronized void closeSource()
+    {
+        if (source == null) {
+            return;
+        }
+        try {
+            source.close();
+        }
+        catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
     @Override
     public List<Type> getTypes()
     {
@@ -176,34 +219,35 @@ public class TableScanOperator
     }
 
     @Override
-    public void finish()
+    public synchronized void finish()
     {
-        ConnectorPageSource delegate = getSource();
-        if (delegate == null) {
-            return;
-        }
-        try {
-            delegate.close();
-        }
-        catch (IOException e) {
-            throw Throwables.propagate(e);
-        }
+        finished = true;
+        pendingSplits.clear();
+        closeSource();
     }
 
     @Override
-    public boolean isFinished()
+    public synchronized boolean isFinished()
     {
+        if (finished) {
+            return true;
+        }
         ConnectorPageSource delegate = getSource();
-        return delegate != null && delegate.isFinished();
+        return delegate != null && delegate.isFinished() && noMoreSplits;
     }
 
     @Override
-    public ListenableFuture<?> isBlocked()
+    public synchronized ListenableFuture<?> isBlocked()
     {
         ConnectorPageSource delegate = getSource();
-        if (delegate != null) {
+        if (finished || noMoreSplits || (delegate != null && !delegate.isFinished())) {
             return NOT_BLOCKED;
         }
+
+        // waiting for the next split
+        if (blocked.isDone()) {
+            blocked = SettableFuture.create();
+        }
         return blocked;
     }
 
@@ -73,6 +73,7 @@ import com.facebook.presto.sql.parser.SqlParserOptions;
 import com.facebook.presto.sql.planner.CompilerConfig;
 import com.facebook.presto.sql.planner.LocalExecutionPlanner;
 import com.facebook.presto.sql.planner.PlanOptimizersFactory;
+import com.facebook.presto.sql.planner.iterative.RuleStatsRecorder;
 import com.facebook.presto.sql.planner.optimizations.PlanOptimizer;
 import com.facebook.presto.sql.tree.Expression;
 import com.facebook.presto.sql.tree.FunctionCall;
@@ -260,6 +261,8 @@ public class ServerMainModule
         bindConfig(binder).to(PluginManagerConfig.class);
 
         // optimizers
+        binder.bind(RuleStatsRecorder.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(RuleStatsRecorder.class).withGeneratedName();
         binder.bind(new TypeLiteral<List<PlanOptimizer>>() {}).toProvider(PlanOptimizersFactory.class).in(Scopes.SINGLETON);
 
         // block encodings
@@ -83,6 +83,18 @@ public class SplitManager
         return new ConnectorAwareSplitSource(handle.getConnectorId(), source);
     }
 
+    /**
+     * Returns the identifiers of the nodes that must process each bucket of the table, indexed by bucket number.
+     */
+    public Optional<List<String>> getBucketNodes(TableHandle handle)
+    {
+        List<String> bucketNodes = getConnectorSplitManager(handle).getBucketNodes(handle.getConnectorHandle());
+        if (bucketNodes == null) {
+            return Optional.empty();
+        }
+        return Optional.of(ImmutableList.copyOf(bucketNodes));
+    }
+
     private ConnectorSplitManager getConnectorSplitManager(TableHandle handle)
     {
         String connectorId = handle.getConnectorId();
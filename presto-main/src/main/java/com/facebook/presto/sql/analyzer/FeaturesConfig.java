@@ -21,8 +21,11 @@ public class FeaturesConfig
     private boolean experimentalSyntaxEnabled;
     private boolean distributedIndexJoinsEnabled;
     private boolean distributedJoinsEnabled;
+    private boolean bucketExecutionEnabled;
     private boolean optimizeMetadataQueries;
     private boolean optimizeHashGeneration;
+    private boolean streamingAggregationEnabled = true;
+    private boolean iterativeOptimizerEnabled;
 
     @LegacyConfig("analyzer.experimental-syntax-enabled")
     @Config("experimental-syntax-enabled")
@@ -61,6 +64,18 @@ public class FeaturesConfig
         return distributedJoinsEnabled;
     }
 
+    @Config("bucket-execution-enabled")
+    public FeaturesConfig setBucketExecutionEnabled(boolean bucketExecutionEnabled)
+    {
+        this.bucketExecutionEnabled = bucketExecutionEnabled;
+        return this;
+    }
+
+    public boolean isBucketExecutionEnabled()
+    {
+        return bucketExecutionEnabled;
+    }
+
     public boolean isOptimizeMetadataQueries()
     {
         return optimizeMetadataQueries;
@@ -84,4 +99,28 @@ public class FeaturesConfig
         this.optimizeHashGeneration = optimizeHashGeneration;
         return this;
     }
+
+    public boolean isStreamingAggregationEnabled()
+    {
+        return streamingAggregationEnabled;
+    }
+
+    @Config("optimizer.streaming-aggregation-enabled")
+    public FeaturesConfig setStreamingAggregationEnabled(boolean streamingAggregationEnabled)
+    {
+        this.streamingAggregationEnabled = streamingAggregationEnabled;
+        return this;
+    }
+
+    public boolean isIterativeOptimizerEnabled()
+    {
+        return iterativeOptimizerEnabled;
+    }
+
+    @Config("optimizer.iterative-optimizer-enabled")
+    public FeaturesConfig setIterativeOptimizerEnabled(boolean iterativeOptimizerEnabled)
+    {
+        this.iterativeOptimizerEnabled = iterativeOptimizerEnabled;
+        return this;
+    }
 }
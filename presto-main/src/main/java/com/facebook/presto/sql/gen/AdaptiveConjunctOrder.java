@@ -0,0 +1,190 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.gen;
+
+import com.facebook.presto.operator.ConjunctStatistics;
+import com.facebook.presto.operator.FilterInfo;
+import com.facebook.presto.sql.relational.RowExpression;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.facebook.presto.sql.gen.FilterConjunctOrdering.cannotFail;
+import static com.facebook.presto.sql.gen.FilterConjunctOrdering.estimateCost;
+import static com.facebook.presto.sql.gen.FilterConjunctOrdering.order;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Tracks how often each conjunct of a compiled filter is evaluated and how often it
+ * passes, and periodically reorders the conjuncts so that the ones that are cheap and
+ * reject many rows are evaluated first. A conjunct is ranked by its estimated cost
+ * divided by the fraction of rows it rejects, which is the order that minimizes the
+ * expected cost of the filter if the conjuncts are independent. As in
+ * {@link FilterConjunctOrdering}, a conjunct that can fail is never moved ahead of a
+ * conjunct that precedes it.
+ * <p>
+ * One instance is shared by all drivers that use the same processor. Each call to the
+ * processor counts into its own {@link Batch} and only publishes the counts when it
+ * is done, so evaluating a row does not touch shared state.
+ */
+@ThreadSafe
+public final class AdaptiveConjunctOrder
+{
+    @VisibleForTesting
+    static final int REORDER_INTERVAL = 16 * 1024;
+
+    private final List<RowExpression> conjuncts;
+    private final boolean[] movable;
+    private final int[] costs;
+
+    private volatile int[] order;
+
+    @GuardedBy("this")
+    private final long[] evaluations;
+    @GuardedBy("this")
+    private final long[] passes;
+    // counts since the start, decayed at every reorder so the order follows changes in the data
+    @GuardedBy("this")
+    private final double[] recentEvaluations;
+    @GuardedBy("this")
+    private final double[] recentPasses;
+    @GuardedBy("this")
+    private long evaluationsSinceReorder;
+    @GuardedBy("this")
+    private long reorders;
+
+    public AdaptiveConjunctOrder(List<RowExpression> conjuncts)
+    {
+        this.conjuncts = ImmutableList.copyOf(checkNotNull(conjuncts, "conjuncts is null"));
+        checkArgument(!this.conjuncts.isEmpty(), "conjuncts is empty");
+
+        int size = this.conjuncts.size();
+        movable = new boolean[size];
+        costs = new int[size];
+        order = new int[size];
+        for (int i = 0; i < size; i++) {
+            movable[i] = cannotFail(this.conjuncts.get(i));
+            costs[i] = estimateCost(this.conjuncts.get(i));
+            order[i] = i;
+        }
+
+        evaluations = new long[size];
+        passes = new long[size];
+        recentEvaluations = new double[size];
+        recentPasses = new double[size];
+    }
+
+    public Batch startBatch()
+    {
+        return new Batch(this, order);
+    }
+
+    public synchronized FilterInfo getInfo()
+    {
+        ImmutableList.Builder<ConjunctStatistics> statistics = ImmutableList.builder();
+        for (int conjunct : order) {
+            statistics.add(new ConjunctStatistics(conjuncts.get(conjunct).toString(), costs[conjunct], evaluations[conjunct], passes[conjunct]));
+        }
+        return new FilterInfo(statistics.build(), reorders);
+    }
+
+    @VisibleForTesting
+    int[] getOrder()
+    {
+        return order.clone();
+    }
+
+    private synchronized void finishBatch(int[] batchEvaluations, int[] batchPasses)
+    {
+        for (int i = 0; i < conjuncts.size(); i++) {
+            evaluations[i] += batchEvaluations[i];
+            passes[i] += batchPasses[i];
+            recentEvaluations[i] += batchEvaluations[i];
+            recentPasses[i] += batchPasses[i];
+            evaluationsSinceReorder += batchEvaluations[i];
+        }
+
+        if (evaluationsSinceReorder < REORDER_INTERVAL) {
+            return;
+        }
+
+        double[] ranks = new double[conjuncts.size()];
+        for (int i = 0; i < conjuncts.size(); i++) {
+            // smoothed so that a conjunct that has not been evaluated yet or has never rejected a row still gets a finite rank
+            double rejectRate = (recentEvaluations[i] - recentPasses[i] + 1) / (recentEvaluations[i] + 2);
+            ranks[i] = costs[i] / rejectRate;
+
+            recentEvaluations[i] /= 2;
+            recentPasses[i] /= 2;
+        }
+        evaluationsSinceReorder = 0;
+
+        int[] newOrder = order(movable, ranks);
+        if (!Arrays.equals(newOrder, order)) {
+            order = newOrder;
+            reorders++;
+        }
+    }
+
+    /**
+     * Counts the evaluations of a single call to the processor, which runs on one thread.
+     */
+    // This methods are called by the generated code
+    @SuppressWarnings("UnusedDeclaration")
+    public static final class Batch
+    {
+        private final AdaptiveConjunctOrder parent;
+        private final int[] order;
+        private final int[] evaluations;
+        private final int[] passes;
+
+        private Batch(AdaptiveConjunctOrder parent, int[] order)
+        {
+            this.parent = parent;
+            this.order = order;
+            this.evaluations = new int[order.length];
+            this.passes = new int[order.length];
+        }
+
+        public int getConjunctCount()
+        {
+            return order.length;
+        }
+
+        public int getConjunct(int index)
+        {
+            return order[index];
+        }
+
+        public boolean record(int conjunct, boolean passed)
+        {
+            evaluations[conjunct]++;
+            if (passed) {
+                passes[conjunct]++;
+            }
+            return passed;
+        }
+
+        public void finish()
+        {
+            parent.finishBatch(evaluations, passes);
+        }
+    }
+}
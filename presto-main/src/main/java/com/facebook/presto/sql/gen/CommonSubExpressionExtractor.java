@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.gen;
+
+import com.facebook.presto.metadata.FunctionInfo;
+import com.facebook.presto.metadata.FunctionRegistry;
+import com.facebook.presto.sql.relational.CallExpression;
+import com.facebook.presto.sql.relational.ConstantExpression;
+import com.facebook.presto.sql.relational.InputReferenceExpression;
+import com.facebook.presto.sql.relational.RowExpression;
+import com.facebook.presto.sql.relational.RowExpressionVisitor;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.slice.Slice;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the deterministic call expressions that would be evaluated more than once per
+ * row by the filter and projections of a processor. An expression that only occurs
+ * inside another common subexpression is not reported, because it is evaluated once
+ * as part of its parent.
+ */
+public final class CommonSubExpressionExtractor
+{
+    // a WHEN clause is compiled by its enclosing SWITCH and cannot be evaluated on its own
+    private static final String WHEN = "WHEN";
+    private static final Set<Class<?>> SUPPORTED_JAVA_TYPES = ImmutableSet.<Class<?>>of(boolean.class, long.class, double.class, Slice.class);
+
+    private CommonSubExpressionExtractor()
+    {
+    }
+
+    public static List<CallExpression> extractCommonSubExpressions(FunctionRegistry registry, Iterable<RowExpression> expressions)
+    {
+        Map<CallExpression, Integer> occurrences = new HashMap<>();
+        for (RowExpression expression : expressions) {
+            countOccurrences(expression, occurrences);
+        }
+
+        // candidates are kept in order of discovery so generated code is stable
+        Set<CallExpression> candidates = new LinkedHashSet<>();
+        for (RowExpression expression : expressions) {
+            collectCandidates(registry, expression, occurrences, candidates);
+        }
+
+        // an expression referenced only from within a single other candidate is evaluated once anyway
+        while (true) {
+            Map<CallExpression, Integer> references = new HashMap<>();
+            for (RowExpression expression : expressions) {
+                countReferences(expression, candidates, references);
+            }
+            for (CallExpression candidate : candidates) {
+                for (RowExpression argument : candidate.getArguments()) {
+                    countReferences(argument, candidates, references);
+                }
+            }
+
+            boolean changed = candidates.removeIf(candidate -> references.getOrDefault(candidate, 0) < 2);
+            if (!changed) {
+                return ImmutableList.copyOf(candidates);
+            }
+        }
+    }
+
+    private static void countOccurrences(RowExpression expression, Map<CallExpression, Integer> occurrences)
+    {
+        if (expression instanceof CallExpression) {
+            CallExpression call = (CallExpression) expression;
+            occurrences.merge(call, 1, Integer::sum);
+            for (RowExpression argument : call.getArguments()) {
+                countOccurrences(argument, occurrences);
+            }
+        }
+    }
+
+    private static void collectCandidates(FunctionRegistry registry, RowExpression expression, Map<CallExpression, Integer> occurrences, Set<CallExpression> candidates)
+    {
+        if (!(expression instanceof CallExpression)) {
+            return;
+        }
+        CallExpression call = (CallExpression) expression;
+        if (occurrences.get(call) > 1 &&
+                !call.getSignature().getName().equals(WHEN) &&
+                SUPPORTED_JAVA_TYPES.contains(call.getType().getJavaType()) &&
+                isDeterministic(registry, call)) {
+            candidates.add(call);
+        }
+        for (RowExpression argument : call.getArguments()) {
+            collectCandidates(registry, argument, occurrences, candidates);
+        }
+    }
+
+    private static void countReferences(RowExpression expression, Set<CallExpression> candidates, Map<CallExpression, Integer> references)
+    {
+        if (!(expression instanceof CallExpression)) {
+            return;
+        }
+        CallExpression call = (CallExpression) expression;
+        if (candidates.contains(call)) {
+            // the arguments are evaluated by the common subexpression itself
+            references.merge(call, 1, Integer::sum);
+            return;
+        }
+        for (RowExpression argument : call.getArguments()) {
+            countReferences(argument, candidates, references);
+        }
+    }
+
+    private static boolean isDeterministic(FunctionRegistry registry, RowExpression expression)
+    {
+        return expression.accept(new RowExpressionVisitor<Void, Boolean>()
+        {
+            @Override
+            public Boolean visitCall(CallExpression call, Void context)
+            {
+                // special forms such as IF, SWITCH, WHEN or AND are not registered functions
+                // and are deterministic if all of their arguments are
+                FunctionInfo function = registry.getExactFunction(call.getSignature());
+                if (function != null && !function.isDeterministic()) {
+                    return false;
+                }
+                for (RowExpression argument : call.getArguments()) {
+                    if (!argument.accept(this, context)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Boolean visitInputReference(InputReferenceExpression reference, Void context)
+            {
+                return true;
+            }
+
+            @Override
+            public Boolean visitConstant(ConstantExpression literal, Void context)
+            {
+                return true;
+            }
+        }, null);
+    }
+}
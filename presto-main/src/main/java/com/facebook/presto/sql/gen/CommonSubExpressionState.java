@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.gen;
+
+import com.google.common.primitives.Primitives;
+
+import java.util.Arrays;
+
+/**
+ * Holds the values of the common subexpressions of a compiled page or cursor processor
+ * for the position currently being processed. A new instance is created by every call to
+ * the generated process method, so compiled processors stay stateless and can be
+ * shared between drivers.
+ */
+// This methods are called by the generated code
+@SuppressWarnings("UnusedDeclaration")
+public final class CommonSubExpressionState
+{
+    private final int[] positions;
+    private final boolean[] nulls;
+    private final boolean[] booleans;
+    private final long[] longs;
+    private final double[] doubles;
+    private final Object[] objects;
+
+    public CommonSubExpressionState(int size)
+    {
+        positions = new int[size];
+        Arrays.fill(positions, -1);
+        nulls = new boolean[size];
+        booleans = new boolean[size];
+        longs = new long[size];
+        doubles = new double[size];
+        objects = new Object[size];
+    }
+
+    public boolean isEvaluated(int index, int position)
+    {
+        return positions[index] == position;
+    }
+
+    public boolean isNull(int index)
+    {
+        return nulls[index];
+    }
+
+    public boolean getBoolean(int index)
+    {
+        return booleans[index];
+    }
+
+    public long getLong(int index)
+    {
+        return longs[index];
+    }
+
+    public double getDouble(int index)
+    {
+        return doubles[index];
+    }
+
+    public Object getObject(int index)
+    {
+        return objects[index];
+    }
+
+    public void setBoolean(int index, int position, boolean value, boolean isNull)
+    {
+        booleans[index] = value;
+        evaluated(index, position, isNull);
+    }
+
+    public void setLong(int index, int position, long value, boolean isNull)
+    {
+        longs[index] = value;
+        evaluated(index, position, isNull);
+    }
+
+    public void setDouble(int index, int position, double value, boolean isNull)
+    {
+        doubles[index] = value;
+        evaluated(index, position, isNull);
+    }
+
+    public void setObject(int index, int position, Object value, boolean isNull)
+    {
+        objects[index] = value;
+        evaluated(index, position, isNull);
+    }
+
+    /**
+     * Returns the type used to store a value of the given Java type
+     */
+    static Class<?> stateType(Class<?> javaType)
+    {
+        if (javaType == boolean.class || javaType == long.class || javaType == double.class) {
+            return javaType;
+        }
+        return Object.class;
+    }
+
+    /**
+     * Returns the suffix of the getter and setter for a value of the given state type
+     */
+    static String stateTypeName(Class<?> stateType)
+    {
+        return Primitives.wrap(stateType).getSimpleName();
+    }
+
+    private void evaluated(int index, int position, boolean isNull)
+    {
+        nulls[index] = isNull;
+        positions[index] = position;
+    }
+}
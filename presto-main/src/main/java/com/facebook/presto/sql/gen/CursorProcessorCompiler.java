@@ -18,10 +18,13 @@ import com.facebook.presto.byteCode.ByteCodeNode;
 import com.facebook.presto.byteCode.ClassDefinition;
 import com.facebook.presto.byteCode.CompilerContext;
 import com.facebook.presto.byteCode.MethodDefinition;
+import com.facebook.presto.byteCode.NamedParameterDefinition;
+import com.facebook.presto.byteCode.ParameterizedType;
 import com.facebook.presto.byteCode.Variable;
 import com.facebook.presto.byteCode.control.ForLoop;
 import com.facebook.presto.byteCode.control.IfStatement;
 import com.facebook.presto.byteCode.instruction.LabelNode;
+import com.facebook.presto.metadata.FunctionRegistry;
 import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.operator.CursorProcessor;
 import com.facebook.presto.spi.ConnectorSession;
@@ -34,9 +37,13 @@ import com.facebook.presto.sql.relational.ConstantExpression;
 import com.facebook.presto.sql.relational.InputReferenceExpression;
 import com.facebook.presto.sql.relational.RowExpression;
 import com.facebook.presto.sql.relational.RowExpressionVisitor;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.common.primitives.Primitives;
 
 import java.util.List;
+import java.util.Map;
 
 import static com.facebook.presto.byteCode.Access.PUBLIC;
 import static com.facebook.presto.byteCode.Access.a;
@@ -47,6 +54,9 @@ import static com.facebook.presto.byteCode.control.ForLoop.ForLoopBuilder;
 import static com.facebook.presto.byteCode.control.IfStatement.IfStatementBuilder;
 import static com.facebook.presto.sql.gen.Bootstrap.BOOTSTRAP_METHOD;
 import static com.facebook.presto.sql.gen.ByteCodeUtils.generateWrite;
+import static com.facebook.presto.sql.gen.CommonSubExpressionExtractor.extractCommonSubExpressions;
+import static com.facebook.presto.sql.gen.CommonSubExpressionState.stateType;
+import static com.facebook.presto.sql.gen.CommonSubExpressionState.stateTypeName;
 import static java.lang.String.format;
 
 public class CursorProcessorCompiler
@@ -62,16 +72,32 @@ public class CursorProcessorCompiler
     @Override
     public void generateMethods(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, RowExpression filter, List<RowExpression> projections)
     {
-        generateProcessMethod(classDefinition, projections.size());
-        generateFilterMethod(classDefinition, callSiteBinder, filter);
+        classDefinition.declareDefaultConstructor(a(PUBLIC));
+
+        // expressions shared by the filter and the projections are evaluated at most once per row
+        List<CallExpression> commonSubExpressions = extractCommonSubExpressions(metadata.getFunctionRegistry(), Iterables.concat(ImmutableList.of(filter), projections));
+        ImmutableMap.Builder<CallExpression, Integer> indexes = ImmutableMap.builder();
+        for (int i = 0; i < commonSubExpressions.size(); i++) {
+            indexes.put(commonSubExpressions.get(i), i);
+        }
+        Map<CallExpression, Integer> commonSubExpressionIndexes = indexes.build();
+
+        generateProcessMethod(classDefinition, projections.size(), commonSubExpressions.size());
+        generateFilterMethod(classDefinition, callSiteBinder, filter, commonSubExpressionIndexes);
 
         for (int i = 0; i < projections.size(); i++) {
-            generateProjectMethod(classDefinition, callSiteBinder, "project_" + i, projections.get(i));
+            generateProjectMethod(classDefinition, callSiteBinder, "project_" + i, projections.get(i), commonSubExpressionIndexes);
+        }
+
+        for (int i = 0; i < commonSubExpressions.size(); i++) {
+            generateCommonSubExpressionMethod(classDefinition, callSiteBinder, i, commonSubExpressions.get(i), commonSubExpressionIndexes);
         }
     }
 
-    private void generateProcessMethod(ClassDefinition classDefinition, int projections)
+    private void generateProcessMethod(ClassDefinition classDefinition, int projections, int commonSubExpressionCount)
     {
+        boolean hasCommonSubExpressions = commonSubExpressionCount > 0;
+
         CompilerContext context = new CompilerContext(BOOTSTRAP_METHOD);
         MethodDefinition method = classDefinition.declareMethod(context,
                 a(PUBLIC),
@@ -82,7 +108,6 @@ public class CursorProcessorCompiler
                 arg("count", int.class),
                 arg("pageBuilder", PageBuilder.class));
 
-        Variable sessionVariable = context.getVariable("session");
         Variable cursorVariable = context.getVariable("cursor");
         Variable countVariable = context.getVariable("count");
         Variable pageBuilderVariable = context.getVariable("pageBuilder");
@@ -93,6 +118,18 @@ public class CursorProcessorCompiler
                 .comment("int completedPositions = 0;")
                 .putVariable(completedPositionsVariable, 0);
 
+        if (hasCommonSubExpressions) {
+            // values are cached per row, which is identified by completedPositions within this call
+            Variable commonSubExpressionsVariable = context.declareVariable(CommonSubExpressionState.class, "cse");
+            method.getBody()
+                    .comment("CommonSubExpressionState cse = new CommonSubExpressionState(%s);", commonSubExpressionCount)
+                    .newObject(CommonSubExpressionState.class)
+                    .dup()
+                    .push(commonSubExpressionCount)
+                    .invokeConstructor(CommonSubExpressionState.class, int.class)
+                    .putVariable(commonSubExpressionsVariable);
+        }
+
         //
         // for loop loop body
         //
@@ -128,9 +165,8 @@ public class CursorProcessorCompiler
         IfStatementBuilder ifStatement = new IfStatementBuilder(context);
         ifStatement.condition(new Block(context)
                 .pushThis()
-                .getVariable(sessionVariable)
-                .getVariable(cursorVariable)
-                .invokeVirtual(classDefinition.getType(), "filter", type(boolean.class), type(ConnectorSession.class), type(RecordCursor.class)));
+                .append(pushArguments(context, "completedPositions", hasCommonSubExpressions))
+                .invokeVirtual(classDefinition.getType(), "filter", type(boolean.class), toParameterTypes(hasCommonSubExpressions)));
 
         Block trueBlock = new Block(context);
         ifStatement.ifTrue(trueBlock);
@@ -142,8 +178,7 @@ public class CursorProcessorCompiler
         // this.project_43(session, cursor, pageBuilder.getBlockBuilder(42)));
         for (int projectionIndex = 0; projectionIndex < projections; projectionIndex++) {
             trueBlock.pushThis()
-                    .getVariable(sessionVariable)
-                    .getVariable(cursorVariable);
+                    .append(pushArguments(context, "completedPositions", hasCommonSubExpressions));
 
             // pageBuilder.getBlockBuilder(0)
             trueBlock.getVariable(pageBuilderVariable)
@@ -154,9 +189,10 @@ public class CursorProcessorCompiler
             trueBlock.invokeVirtual(classDefinition.getType(),
                     "project_" + projectionIndex,
                     type(void.class),
-                    type(ConnectorSession.class),
-                    type(RecordCursor.class),
-                    type(BlockBuilder.class));
+                    ImmutableList.<ParameterizedType>builder()
+                            .addAll(toParameterTypes(hasCommonSubExpressions))
+                            .add(type(BlockBuilder.class))
+                            .build());
         }
         forLoopBody.append(ifStatement.build());
 
@@ -168,7 +204,7 @@ public class CursorProcessorCompiler
                 .retInt();
     }
 
-    private void generateFilterMethod(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, RowExpression filter)
+    private void generateFilterMethod(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, RowExpression filter, Map<CallExpression, Integer> commonSubExpressions)
     {
         CompilerContext context = new CompilerContext(BOOTSTRAP_METHOD);
         MethodDefinition method = classDefinition.declareMethod(
@@ -176,15 +212,19 @@ public class CursorProcessorCompiler
                 a(PUBLIC),
                 "filter",
                 type(boolean.class),
-                arg("session", ConnectorSession.class),
-                arg("cursor", RecordCursor.class));
+                toParameters(!commonSubExpressions.isEmpty()));
 
         method.comment("Filter: %s", filter);
 
         Variable wasNullVariable = context.declareVariable(type(boolean.class), "wasNull");
         Variable cursorVariable = context.getVariable("cursor");
 
-        ByteCodeExpressionVisitor visitor = new ByteCodeExpressionVisitor(callSiteBinder, fieldReferenceCompiler(cursorVariable, wasNullVariable), metadata.getFunctionRegistry());
+        ByteCodeExpressionVisitor visitor = new CommonSubExpressionVisitor(
+                classDefinition.getType(),
+                commonSubExpressions,
+                callSiteBinder,
+                fieldReferenceCompiler(cursorVariable, wasNullVariable),
+                metadata.getFunctionRegistry());
 
         LabelNode end = new LabelNode("end");
         method.getBody()
@@ -201,16 +241,17 @@ public class CursorProcessorCompiler
                 .retBoolean();
     }
 
-    private void generateProjectMethod(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, String methodName, RowExpression projection)
+    private void generateProjectMethod(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, String methodName, RowExpression projection, Map<CallExpression, Integer> commonSubExpressions)
     {
         CompilerContext context = new CompilerContext(BOOTSTRAP_METHOD);
         MethodDefinition method = classDefinition.declareMethod(context,
                 a(PUBLIC),
                 methodName,
                 type(void.class),
-                arg("session", ConnectorSession.class),
-                arg("cursor", RecordCursor.class),
-                arg("output", BlockBuilder.class));
+                ImmutableList.<NamedParameterDefinition>builder()
+                        .addAll(toParameters(!commonSubExpressions.isEmpty()))
+                        .add(arg("output", BlockBuilder.class))
+                        .build());
 
         method.comment("Projection: %s", projection.toString());
 
@@ -223,7 +264,12 @@ public class CursorProcessorCompiler
                 .comment("boolean wasNull = false;")
                 .putVariable(wasNullVariable, false);
 
-        ByteCodeExpressionVisitor visitor = new ByteCodeExpressionVisitor(callSiteBinder, fieldReferenceCompiler(cursorVariable, wasNullVariable), metadata.getFunctionRegistry());
+        ByteCodeExpressionVisitor visitor = new CommonSubExpressionVisitor(
+                classDefinition.getType(),
+                commonSubExpressions,
+                callSiteBinder,
+                fieldReferenceCompiler(cursorVariable, wasNullVariable),
+                metadata.getFunctionRegistry());
 
         body.getVariable(outputVariable)
                 .comment("evaluate projection: " + projection.toString())
@@ -232,6 +278,97 @@ public class CursorProcessorCompiler
                 .ret();
     }
 
+    private void generateCommonSubExpressionMethod(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, int index, CallExpression expression, Map<CallExpression, Integer> commonSubExpressions)
+    {
+        CompilerContext context = new CompilerContext(BOOTSTRAP_METHOD);
+        MethodDefinition method = classDefinition.declareMethod(context,
+                a(PUBLIC),
+                "cse_" + index,
+                type(void.class),
+                toParameters(true));
+
+        method.comment("Common subexpression: %s", expression.toString());
+
+        Variable positionVariable = context.getVariable("position");
+        Variable cursorVariable = context.getVariable("cursor");
+        Variable commonSubExpressionsVariable = context.getVariable("cse");
+        Variable wasNullVariable = context.declareVariable(type(boolean.class), "wasNull");
+
+        // this expression must be evaluated here, but nested common subexpressions are still shared
+        ImmutableMap.Builder<CallExpression, Integer> nested = ImmutableMap.builder();
+        for (Map.Entry<CallExpression, Integer> entry : commonSubExpressions.entrySet()) {
+            if (!entry.getKey().equals(expression)) {
+                nested.put(entry);
+            }
+        }
+        ByteCodeExpressionVisitor visitor = new CommonSubExpressionVisitor(
+                classDefinition.getType(),
+                nested.build(),
+                callSiteBinder,
+                fieldReferenceCompiler(cursorVariable, wasNullVariable),
+                metadata.getFunctionRegistry());
+
+        Class<?> stateType = stateType(expression.getType().getJavaType());
+        LabelNode evaluate = new LabelNode("evaluate");
+        method.getBody()
+                .comment("if (cse.isEvaluated(%s, position)) return;", index)
+                .getVariable(commonSubExpressionsVariable)
+                .push(index)
+                .getVariable(positionVariable)
+                .invokeVirtual(CommonSubExpressionState.class, "isEvaluated", boolean.class, int.class, int.class)
+                .ifFalseGoto(evaluate)
+                .ret()
+                .visitLabel(evaluate)
+                .comment("boolean wasNull = false;")
+                .putVariable(wasNullVariable, false)
+                .getVariable(commonSubExpressionsVariable)
+                .push(index)
+                .getVariable(positionVariable)
+                .append(expression.accept(visitor, context))
+                .getVariable(wasNullVariable)
+                .invokeVirtual(CommonSubExpressionState.class, "set" + stateTypeName(stateType), void.class, int.class, int.class, stateType, boolean.class)
+                .ret();
+    }
+
+    private static List<NamedParameterDefinition> toParameters(boolean hasCommonSubExpressions)
+    {
+        ImmutableList.Builder<NamedParameterDefinition> parameters = ImmutableList.builder();
+        parameters.add(arg("session", ConnectorSession.class));
+        if (hasCommonSubExpressions) {
+            parameters.add(arg("cse", CommonSubExpressionState.class));
+            parameters.add(arg("position", int.class));
+        }
+        parameters.add(arg("cursor", RecordCursor.class));
+        return parameters.build();
+    }
+
+    private static List<ParameterizedType> toParameterTypes(boolean hasCommonSubExpressions)
+    {
+        ImmutableList.Builder<ParameterizedType> parameters = ImmutableList.builder();
+        parameters.add(type(ConnectorSession.class));
+        if (hasCommonSubExpressions) {
+            parameters.add(type(CommonSubExpressionState.class));
+            parameters.add(type(int.class));
+        }
+        parameters.add(type(RecordCursor.class));
+        return parameters.build();
+    }
+
+    /**
+     * Pushes the arguments declared by {@link #toParameters} from the variables of the same name in the calling method
+     */
+    private static ByteCodeNode pushArguments(CompilerContext context, String positionVariable, boolean hasCommonSubExpressions)
+    {
+        Block block = new Block(context);
+        block.getVariable("session");
+        if (hasCommonSubExpressions) {
+            block.getVariable("cse");
+            block.getVariable(positionVariable);
+        }
+        block.getVariable("cursor");
+        return block;
+    }
+
     private RowExpressionVisitor<CompilerContext, ByteCodeNode> fieldReferenceCompiler(final Variable cursorVariable, final Variable wasNullVariable)
     {
         return new RowExpressionVisitor<CompilerContext, ByteCodeNode>()
@@ -277,4 +414,54 @@ public class CursorProcessorCompiler
             }
         };
     }
+
+    private static class CommonSubExpressionVisitor
+            extends ByteCodeExpressionVisitor
+    {
+        private final ParameterizedType processorType;
+        private final Map<CallExpression, Integer> commonSubExpressions;
+
+        public CommonSubExpressionVisitor(
+                ParameterizedType processorType,
+                Map<CallExpression, Integer> commonSubExpressions,
+                CallSiteBinder callSiteBinder,
+                RowExpressionVisitor<CompilerContext, ByteCodeNode> fieldReferenceCompiler,
+                FunctionRegistry registry)
+        {
+            super(callSiteBinder, fieldReferenceCompiler, registry);
+            this.processorType = processorType;
+            this.commonSubExpressions = commonSubExpressions;
+        }
+
+        @Override
+        public ByteCodeNode visitCall(CallExpression call, CompilerContext context)
+        {
+            Integer index = commonSubExpressions.get(call);
+            if (index == null) {
+                return super.visitCall(call, context);
+            }
+
+            Class<?> javaType = call.getType().getJavaType();
+            Class<?> stateType = stateType(javaType);
+
+            Block block = new Block(context)
+                    .comment("cse_%s(session, cse, position, cursor)", index)
+                    .pushThis()
+                    .append(pushArguments(context, "position", true))
+                    .invokeVirtual(processorType, "cse_" + index, type(void.class), toParameterTypes(true))
+                    .comment("wasNull = cse.isNull(%s);", index)
+                    .getVariable("cse")
+                    .push(index)
+                    .invokeVirtual(CommonSubExpressionState.class, "isNull", boolean.class, int.class)
+                    .putVariable("wasNull")
+                    .getVariable("cse")
+                    .push(index)
+                    .invokeVirtual(CommonSubExpressionState.class, "get" + stateTypeName(stateType), stateType, int.class);
+
+            if (stateType != javaType) {
+                block.checkCast(javaType);
+            }
+            return block;
+        }
+    }
 }
@@ -18,6 +18,7 @@ import com.facebook.presto.byteCode.CompilerContext;
 import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.operator.CursorProcessor;
 import com.facebook.presto.operator.PageProcessor;
+import com.facebook.presto.sql.planner.CompilerConfig;
 import com.facebook.presto.sql.relational.RowExpression;
 import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
@@ -39,20 +40,24 @@ import static com.facebook.presto.sql.gen.Bootstrap.BOOTSTRAP_METHOD;
 import static com.facebook.presto.sql.gen.ByteCodeUtils.invoke;
 import static com.facebook.presto.sql.gen.CompilerUtils.defineClass;
 import static com.facebook.presto.sql.gen.CompilerUtils.makeClassName;
+import static com.facebook.presto.sql.gen.FilterConjunctOrdering.orderConjuncts;
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 public class ExpressionCompiler
 {
     private final Metadata metadata;
+    private final boolean columnarProcessingEnabled;
 
-    private final LoadingCache<CacheKey, PageProcessor> pageProcessors = CacheBuilder.newBuilder().maximumSize(1000).build(
-            new CacheLoader<CacheKey, PageProcessor>()
+    // page processors track the selectivity of their filter, so every caller gets a new instance
+    private final LoadingCache<CacheKey, Class<? extends PageProcessor>> pageProcessors = CacheBuilder.newBuilder().maximumSize(1000).build(
+            new CacheLoader<CacheKey, Class<? extends PageProcessor>>()
             {
                 @Override
-                public PageProcessor load(CacheKey key)
+                public Class<? extends PageProcessor> load(CacheKey key)
                         throws Exception
                 {
-                    return compileAndInstantiate(key.getFilter(), key.getProjections(), new PageProcessorCompiler(metadata), PageProcessor.class);
+                    return compileProcessor(key.getFilter(), key.getProjections(), new PageProcessorCompiler(metadata, columnarProcessingEnabled), PageProcessor.class);
                 }
             });
 
@@ -67,10 +72,16 @@ public class ExpressionCompiler
                 }
             });
 
-    @Inject
     public ExpressionCompiler(Metadata metadata)
+    {
+        this(metadata, new CompilerConfig());
+    }
+
+    @Inject
+    public ExpressionCompiler(Metadata metadata, CompilerConfig config)
     {
         this.metadata = metadata;
+        this.columnarProcessingEnabled = checkNotNull(config, "config is null").isColumnarProcessingEnabled();
     }
 
     @Managed
@@ -86,13 +97,17 @@ public class ExpressionCompiler
 
     public PageProcessor compilePageProcessor(RowExpression filter, List<RowExpression> projections)
     {
-        return pageProcessors.getUnchecked(new CacheKey(filter, projections, null));
+        return instantiate(pageProcessors.getUnchecked(new CacheKey(filter, projections, null)));
     }
 
     private <T> T compileAndInstantiate(RowExpression filter, List<RowExpression> projections, BodyCompiler<T> bodyCompiler, Class<? extends T> superType)
     {
         // create filter and project page iterator class
-        Class<? extends T> clazz = compileProcessor(filter, projections, bodyCompiler, superType);
+        return instantiate(compileProcessor(filter, projections, bodyCompiler, superType));
+    }
+
+    private static <T> T instantiate(Class<? extends T> clazz)
+    {
         try {
             return clazz.newInstance();
         }
@@ -113,10 +128,8 @@ public class ExpressionCompiler
                 type(Object.class),
                 type(superType));
 
-        classDefinition.declareDefaultConstructor(a(PUBLIC));
-
         CallSiteBinder callSiteBinder = new CallSiteBinder();
-        bodyCompiler.generateMethods(classDefinition, callSiteBinder, filter, projections);
+        bodyCompiler.generateMethods(classDefinition, callSiteBinder, orderConjuncts(filter), projections);
 
         //
         // toString method
@@ -0,0 +1,205 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.gen;
+
+import com.facebook.presto.metadata.OperatorType;
+import com.facebook.presto.spi.type.BooleanType;
+import com.facebook.presto.sql.relational.CallExpression;
+import com.facebook.presto.sql.relational.RowExpression;
+import com.facebook.presto.sql.relational.Signatures;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static com.facebook.presto.metadata.FunctionRegistry.mangleOperatorName;
+import static com.facebook.presto.sql.relational.Expressions.call;
+import static com.facebook.presto.sql.relational.Signatures.logicalExpressionSignature;
+import static com.facebook.presto.sql.tree.LogicalBinaryExpression.Type.AND;
+import static com.facebook.presto.sql.tree.LogicalBinaryExpression.Type.OR;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Reorders the top level conjuncts of a filter so that cheap conjuncts are evaluated
+ * before expensive ones. The compiled AND short circuits, so a selective comparison
+ * placed first saves the evaluation of pattern matching or JSON functions for the
+ * rows it rejects. The sort is stable, so conjuncts of the same cost keep their order.
+ * <p>
+ * A conjunct that can fail, such as a cast or a division, may rely on an earlier
+ * conjunct to guard it, as in {@code x <> 0 AND y / x > 1}. Such a conjunct is never
+ * moved ahead of a conjunct that preceded it. Only conjuncts built entirely from
+ * comparisons, logical operators and other operations that cannot fail move freely.
+ * <p>
+ * This is the initial order of a compiled page processor, which then adapts it to the
+ * observed pass rates with {@link AdaptiveConjunctOrder}.
+ */
+public final class FilterConjunctOrdering
+{
+    private static final int CALL_COST = 1;
+    private static final int EXPENSIVE_CALL_COST = 100;
+
+    private static final Set<String> EXPENSIVE_FUNCTIONS = ImmutableSet.of("LIKE", "LIKE_PATTERN");
+    private static final List<String> EXPENSIVE_FUNCTION_PREFIXES = ImmutableList.of("regexp_", "json_", "url_");
+
+    private static final Set<String> NON_FAILING_FUNCTIONS = ImmutableSet.<String>builder()
+            .add(mangleOperatorName(OperatorType.EQUAL))
+            .add(mangleOperatorName(OperatorType.NOT_EQUAL))
+            .add(mangleOperatorName(OperatorType.LESS_THAN))
+            .add(mangleOperatorName(OperatorType.LESS_THAN_OR_EQUAL))
+            .add(mangleOperatorName(OperatorType.GREATER_THAN))
+            .add(mangleOperatorName(OperatorType.GREATER_THAN_OR_EQUAL))
+            .add(mangleOperatorName(OperatorType.BETWEEN))
+            .add("IS_DISTINCT_FROM")
+            .add(AND.name())
+            .add(OR.name())
+            .add("not")
+            .add("LIKE")
+            .add(Signatures.IS_NULL)
+            .add(Signatures.IN)
+            .add(Signatures.COALESCE)
+            .add(Signatures.TRY_CAST)
+            .build();
+
+    private FilterConjunctOrdering()
+    {
+    }
+
+    public static RowExpression orderConjuncts(RowExpression filter)
+    {
+        List<RowExpression> conjuncts = extractConjuncts(filter);
+        if (conjuncts.size() < 2) {
+            return filter;
+        }
+
+        boolean[] movable = new boolean[conjuncts.size()];
+        double[] costs = new double[conjuncts.size()];
+        for (int i = 0; i < conjuncts.size(); i++) {
+            movable[i] = cannotFail(conjuncts.get(i));
+            costs[i] = estimateCost(conjuncts.get(i));
+        }
+
+        List<RowExpression> ordered = new ArrayList<>(conjuncts.size());
+        for (int conjunct : order(movable, costs)) {
+            ordered.add(conjuncts.get(conjunct));
+        }
+        if (ordered.equals(conjuncts)) {
+            return filter;
+        }
+
+        RowExpression result = ordered.get(0);
+        for (int i = 1; i < ordered.size(); i++) {
+            result = call(logicalExpressionSignature(AND), BooleanType.BOOLEAN, result, ordered.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the indexes of the conjuncts in the order they should be evaluated.
+     * Repeatedly picks the conjunct with the lowest rank that may be evaluated next,
+     * preferring the earliest one on ties. A conjunct that is not movable may only be
+     * picked once all conjuncts before it have been picked.
+     */
+    static int[] order(boolean[] movable, double[] ranks)
+    {
+        checkArgument(movable.length == ranks.length, "movable and ranks must have the same length");
+
+        List<Integer> remaining = new ArrayList<>(ranks.length);
+        for (int i = 0; i < ranks.length; i++) {
+            remaining.add(i);
+        }
+
+        int[] order = new int[ranks.length];
+        for (int next = 0; next < order.length; next++) {
+            int best = -1;
+            for (int i = 0; i < remaining.size(); i++) {
+                int conjunct = remaining.get(i);
+                if (i > 0 && !movable[conjunct]) {
+                    continue;
+                }
+                if (best < 0 || ranks[conjunct] < ranks[remaining.get(best)]) {
+                    best = i;
+                }
+            }
+            order[next] = remaining.remove(best);
+        }
+        return order;
+    }
+
+    static boolean cannotFail(RowExpression expression)
+    {
+        if (!(expression instanceof CallExpression)) {
+            // input references and constants
+            return true;
+        }
+
+        CallExpression call = (CallExpression) expression;
+        if (!NON_FAILING_FUNCTIONS.contains(call.getSignature().getName())) {
+            return false;
+        }
+        for (RowExpression argument : call.getArguments()) {
+            if (!cannotFail(argument)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static List<RowExpression> extractConjuncts(RowExpression filter)
+    {
+        List<RowExpression> conjuncts = new ArrayList<>();
+        extractConjuncts(filter, conjuncts);
+        return conjuncts;
+    }
+
+    private static void extractConjuncts(RowExpression expression, List<RowExpression> conjuncts)
+    {
+        if (expression instanceof CallExpression && ((CallExpression) expression).getSignature().getName().equals(AND.name())) {
+            for (RowExpression argument : ((CallExpression) expression).getArguments()) {
+                extractConjuncts(argument, conjuncts);
+            }
+            return;
+        }
+        conjuncts.add(expression);
+    }
+
+    static int estimateCost(RowExpression expression)
+    {
+        if (!(expression instanceof CallExpression)) {
+            // input references and constants
+            return 0;
+        }
+
+        CallExpression call = (CallExpression) expression;
+        int cost = isExpensive(call.getSignature().getName()) ? EXPENSIVE_CALL_COST : CALL_COST;
+        for (RowExpression argument : call.getArguments()) {
+            cost += estimateCost(argument);
+        }
+        return cost;
+    }
+
+    private static boolean isExpensive(String name)
+    {
+        if (EXPENSIVE_FUNCTIONS.contains(name)) {
+            return true;
+        }
+        for (String prefix : EXPENSIVE_FUNCTION_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -17,14 +17,18 @@ import com.facebook.presto.byteCode.Block;
 import com.facebook.presto.byteCode.ByteCodeNode;
 import com.facebook.presto.byteCode.ClassDefinition;
 import com.facebook.presto.byteCode.CompilerContext;
+import com.facebook.presto.byteCode.FieldDefinition;
 import com.facebook.presto.byteCode.MethodDefinition;
 import com.facebook.presto.byteCode.NamedParameterDefinition;
 import com.facebook.presto.byteCode.ParameterizedType;
 import com.facebook.presto.byteCode.Variable;
 import com.facebook.presto.byteCode.control.ForLoop;
 import com.facebook.presto.byteCode.control.IfStatement;
+import com.facebook.presto.byteCode.control.LookupSwitch;
 import com.facebook.presto.byteCode.instruction.LabelNode;
+import com.facebook.presto.metadata.FunctionRegistry;
 import com.facebook.presto.metadata.Metadata;
+import com.facebook.presto.operator.FilterInfo;
 import com.facebook.presto.operator.PageProcessor;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.Page;
@@ -38,12 +42,18 @@ import com.facebook.presto.sql.relational.InputReferenceExpression;
 import com.facebook.presto.sql.relational.RowExpression;
 import com.facebook.presto.sql.relational.RowExpressionVisitor;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.primitives.Primitives;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.TreeSet;
 
+import static com.facebook.presto.byteCode.Access.FINAL;
+import static com.facebook.presto.byteCode.Access.PRIVATE;
 import static com.facebook.presto.byteCode.Access.PUBLIC;
 import static com.facebook.presto.byteCode.Access.a;
 import static com.facebook.presto.byteCode.NamedParameterDefinition.arg;
@@ -51,9 +61,14 @@ import static com.facebook.presto.byteCode.OpCode.NOP;
 import static com.facebook.presto.byteCode.ParameterizedType.type;
 import static com.facebook.presto.byteCode.control.ForLoop.ForLoopBuilder;
 import static com.facebook.presto.byteCode.control.IfStatement.IfStatementBuilder;
+import static com.facebook.presto.byteCode.control.LookupSwitch.lookupSwitchBuilder;
 import static com.facebook.presto.sql.gen.Bootstrap.BOOTSTRAP_METHOD;
 import static com.facebook.presto.sql.gen.ByteCodeUtils.generateWrite;
 import static com.facebook.presto.sql.gen.ByteCodeUtils.loadConstant;
+import static com.facebook.presto.sql.gen.CommonSubExpressionExtractor.extractCommonSubExpressions;
+import static com.facebook.presto.sql.gen.CommonSubExpressionState.stateType;
+import static com.facebook.presto.sql.gen.CommonSubExpressionState.stateTypeName;
+import static com.facebook.presto.sql.gen.FilterConjunctOrdering.extractConjuncts;
 import static java.lang.String.format;
 import static java.util.Collections.nCopies;
 
@@ -61,25 +76,74 @@ public class PageProcessorCompiler
         implements BodyCompiler<PageProcessor>
 {
     private final Metadata metadata;
+    private final boolean columnar;
 
     public PageProcessorCompiler(Metadata metadata)
+    {
+        this(metadata, false);
+    }
+
+    public PageProcessorCompiler(Metadata metadata, boolean columnar)
     {
         this.metadata = metadata;
+        this.columnar = columnar;
     }
 
     @Override
     public void generateMethods(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, RowExpression filter, List<RowExpression> projections)
     {
-        generateProcessMethod(classDefinition, filter, projections);
-        generateFilterMethod(classDefinition, callSiteBinder, filter);
+        if (columnar) {
+            // columnar processing evaluates one expression for all positions before moving to
+            // the next, so a value cached for the current position would never be reused
+            classDefinition.declareDefaultConstructor(a(PUBLIC));
+            generateColumnarProcessMethod(classDefinition, filter, projections);
+            generateFilterMethod(classDefinition, callSiteBinder, "filter", filter, ImmutableMap.<CallExpression, Integer>of());
+            for (int i = 0; i < projections.size(); i++) {
+                generateProjectMethod(classDefinition, callSiteBinder, "project_" + i, projections.get(i), ImmutableMap.<CallExpression, Integer>of());
+            }
+            return;
+        }
+
+        // expressions shared by the filter and the projections are evaluated at most once per position
+        List<CallExpression> commonSubExpressions = extractCommonSubExpressions(metadata.getFunctionRegistry(), Iterables.concat(ImmutableList.of(filter), projections));
+        ImmutableMap.Builder<CallExpression, Integer> indexes = ImmutableMap.builder();
+        for (int i = 0; i < commonSubExpressions.size(); i++) {
+            indexes.put(commonSubExpressions.get(i), i);
+        }
+        Map<CallExpression, Integer> commonSubExpressionIndexes = indexes.build();
+
+        // the order of the top level conjuncts adapts to how many rows each of them rejects
+        List<RowExpression> conjuncts = extractConjuncts(filter);
+        Optional<FieldDefinition> conjunctOrderField = Optional.empty();
+        if (conjuncts.size() > 1) {
+            conjunctOrderField = Optional.of(classDefinition.declareField(a(PRIVATE, FINAL), "conjunctOrder", AdaptiveConjunctOrder.class));
+            generateConstructor(classDefinition, callSiteBinder, conjuncts, conjunctOrderField.get());
+            generateGetFilterInfoMethod(classDefinition, conjunctOrderField.get());
+            generateAdaptiveFilterMethod(classDefinition, filter, conjuncts, !commonSubExpressionIndexes.isEmpty());
+            for (int i = 0; i < conjuncts.size(); i++) {
+                generateFilterMethod(classDefinition, callSiteBinder, "conjunct_" + i, conjuncts.get(i), commonSubExpressionIndexes);
+            }
+        }
+        else {
+            classDefinition.declareDefaultConstructor(a(PUBLIC));
+            generateFilterMethod(classDefinition, callSiteBinder, "filter", filter, commonSubExpressionIndexes);
+        }
+
+        generateProcessMethod(classDefinition, filter, projections, commonSubExpressions.size(), conjunctOrderField);
 
         for (int i = 0; i < projections.size(); i++) {
-            generateProjectMethod(classDefinition, callSiteBinder, "project_" + i, projections.get(i));
+            generateProjectMethod(classDefinition, callSiteBinder, "project_" + i, projections.get(i), commonSubExpressionIndexes);
+        }
+
+        for (int i = 0; i < commonSubExpressions.size(); i++) {
+            generateCommonSubExpressionMethod(classDefinition, callSiteBinder, i, commonSubExpressions.get(i), commonSubExpressionIndexes);
         }
     }
 
-    private void generateProcessMethod(ClassDefinition classDefinition, RowExpression filter, List<RowExpression> projections)
+    private void generateProcessMethod(ClassDefinition classDefinition, RowExpression filter, List<RowExpression> projections, int commonSubExpressionCount, Optional<FieldDefinition> conjunctOrderField)
     {
+        boolean hasCommonSubExpressions = commonSubExpressionCount > 0;
+
         CompilerContext context = new CompilerContext(BOOTSTRAP_METHOD);
         MethodDefinition method = classDefinition.declareMethod(context,
                 a(PUBLIC),
@@ -91,7 +155,6 @@ public class PageProcessorCompiler
                 arg("end", int.class),
                 arg("pageBuilder", PageBuilder.class));
 
-        Variable sessionVariable = context.getVariable("session");
         Variable pageVariable = context.getVariable("page");
         Variable startVariable = context.getVariable("start");
         Variable endVariable = context.getVariable("end");
@@ -115,6 +178,27 @@ public class PageProcessorCompiler
                     .putVariable(blockVariable);
         }
 
+        if (hasCommonSubExpressions) {
+            Variable commonSubExpressionsVariable = context.declareVariable(CommonSubExpressionState.class, "cse");
+            method.getBody()
+                    .comment("CommonSubExpressionState cse = new CommonSubExpressionState(%s);", commonSubExpressionCount)
+                    .newObject(CommonSubExpressionState.class)
+                    .dup()
+                    .push(commonSubExpressionCount)
+                    .invokeConstructor(CommonSubExpressionState.class, int.class)
+                    .putVariable(commonSubExpressionsVariable);
+        }
+
+        if (conjunctOrderField.isPresent()) {
+            Variable conjunctsVariable = context.declareVariable(AdaptiveConjunctOrder.Batch.class, "conjuncts");
+            method.getBody()
+                    .comment("AdaptiveConjunctOrder.Batch conjuncts = this.conjunctOrder.startBatch();")
+                    .pushThis()
+                    .getField(conjunctOrderField.get())
+                    .invokeVirtual(AdaptiveConjunctOrder.class, "startBatch", AdaptiveConjunctOrder.Batch.class)
+                    .putVariable(conjunctsVariable);
+        }
+
         //
         // for loop loop body
         //
@@ -144,19 +228,16 @@ public class PageProcessorCompiler
         IfStatementBuilder filterBlock = new IfStatementBuilder(context);
 
         Block trueBlock = new Block(context);
-        filterBlock.condition(new Block(context)
+        Block filterCall = new Block(context)
                 .pushThis()
-                .getVariable(sessionVariable)
-                .append(pushBlockVariables(context, getInputChannels(filter)))
-                .getVariable(positionVariable)
-                .invokeVirtual(classDefinition.getType(),
-                        "filter",
-                        type(boolean.class),
-                        ImmutableList.<ParameterizedType>builder()
-                                .add(type(ConnectorSession.class))
-                                .addAll(nCopies(getInputChannels(filter).size(), type(com.facebook.presto.spi.block.Block.class)))
-                                .add(type(int.class))
-                                .build()))
+                .append(pushArguments(context, getInputChannels(filter), hasCommonSubExpressions));
+        ImmutableList.Builder<ParameterizedType> filterParameterTypes = ImmutableList.<ParameterizedType>builder()
+                .addAll(toParameterTypes(getInputChannels(filter), hasCommonSubExpressions));
+        if (conjunctOrderField.isPresent()) {
+            filterCall.getVariable("conjuncts");
+            filterParameterTypes.add(type(AdaptiveConjunctOrder.Batch.class));
+        }
+        filterBlock.condition(filterCall.invokeVirtual(classDefinition.getType(), "filter", type(boolean.class), filterParameterTypes.build()))
                 .ifTrue(trueBlock);
 
         trueBlock.getVariable(pageBuilderVariable)
@@ -166,9 +247,7 @@ public class PageProcessorCompiler
             List<Integer> inputChannels = getInputChannels(projections.get(projectionIndex));
 
             trueBlock.pushThis()
-                    .getVariable(sessionVariable)
-                    .append(pushBlockVariables(context, inputChannels))
-                    .getVariable(positionVariable);
+                    .append(pushArguments(context, inputChannels, hasCommonSubExpressions));
 
             trueBlock.comment("pageBuilder.getBlockBuilder(" + projectionIndex + ")")
                     .getVariable(pageBuilderVariable)
@@ -180,9 +259,7 @@ public class PageProcessorCompiler
                             "project_" + projectionIndex,
                             type(void.class),
                             ImmutableList.<ParameterizedType>builder()
-                                    .add(type(ConnectorSession.class))
-                                    .addAll(nCopies(inputChannels.size(), type(com.facebook.presto.spi.block.Block.class)))
-                                    .add(type(int.class))
+                                    .addAll(toParameterTypes(inputChannels, hasCommonSubExpressions))
                                     .add(type(BlockBuilder.class))
                                     .build());
         }
@@ -191,13 +268,240 @@ public class PageProcessorCompiler
 
         method.getBody()
                 .append(loop.build())
-                .visitLabel(done)
+                .visitLabel(done);
+
+        if (conjunctOrderField.isPresent()) {
+            method.getBody()
+                    .comment("conjuncts.finish();")
+                    .getVariable("conjuncts")
+                    .invokeVirtual(AdaptiveConjunctOrder.Batch.class, "finish", void.class);
+        }
+
+        method.getBody()
                 .comment("return position;")
                 .getVariable(positionVariable)
                 .retInt();
     }
 
-    private void generateFilterMethod(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, RowExpression filter)
+    /**
+     * Evaluates the filter for a batch of positions into a {@link SelectedPositions} and then
+     * evaluates each projection in a loop over the selected positions, writing to a
+     * single block builder at a time. The page builder is checked between batches, so
+     * the output overshoots the page builder limit by at most one batch.
+     */
+    private void generateColumnarProcessMethod(ClassDefinition classDefinition, RowExpression filter, List<RowExpression> projections)
+    {
+        CompilerContext context = new CompilerContext(BOOTSTRAP_METHOD);
+        MethodDefinition method = classDefinition.declareMethod(context,
+                a(PUBLIC),
+                "process",
+                type(int.class),
+                arg("session", ConnectorSession.class),
+                arg("page", Page.class),
+                arg("start", int.class),
+                arg("end", int.class),
+                arg("pageBuilder", PageBuilder.class));
+
+        Variable pageVariable = context.getVariable("page");
+        Variable startVariable = context.getVariable("start");
+        Variable endVariable = context.getVariable("end");
+        Variable pageBuilderVariable = context.getVariable("pageBuilder");
+
+        Variable positionVariable = context.declareVariable(int.class, "position");
+        Variable batchEndVariable = context.declareVariable(int.class, "batchEnd");
+        Variable indexVariable = context.declareVariable(int.class, "index");
+        Variable selectedVariable = context.declareVariable(SelectedPositions.class, "selected");
+        Variable outputVariable = context.declareVariable(BlockBuilder.class, "output");
+
+        List<Integer> allInputChannels = getInputChannels(Iterables.concat(projections, ImmutableList.of(filter)));
+        for (int channel : allInputChannels) {
+            Variable blockVariable = context.declareVariable(com.facebook.presto.spi.block.Block.class, "block_" + channel);
+            method.getBody()
+                    .comment("Block %s = page.getBlock(%s);", blockVariable.getName(), channel)
+                    .getVariable(pageVariable)
+                    .push(channel)
+                    .invokeVirtual(Page.class, "getBlock", com.facebook.presto.spi.block.Block.class, int.class)
+                    .putVariable(blockVariable);
+        }
+
+        method.getBody()
+                .comment("SelectedPositions selected = new SelectedPositions(start, end);")
+                .newObject(SelectedPositions.class)
+                .dup()
+                .getVariable(startVariable)
+                .getVariable(endVariable)
+                .invokeConstructor(SelectedPositions.class, int.class, int.class)
+                .putVariable(selectedVariable);
+
+        //
+        // for (position = start; position < end; position = batchEnd) { process the batch starting at position }
+        //
+        Block batchBody = new Block(context);
+
+        LabelNode process = new LabelNode("process");
+        batchBody.comment("if (pageBuilder.isFull()) return position;")
+                .getVariable(pageBuilderVariable)
+                .invokeVirtual(PageBuilder.class, "isFull", boolean.class)
+                .ifFalseGoto(process)
+                .getVariable(positionVariable)
+                .retInt()
+                .visitLabel(process);
+
+        batchBody.comment("batchEnd = SelectedPositions.batchEnd(position, end);")
+                .getVariable(positionVariable)
+                .getVariable(endVariable)
+                .invokeStatic(SelectedPositions.class, "batchEnd", int.class, int.class, int.class)
+                .putVariable(batchEndVariable)
+                .comment("selected.reset();")
+                .getVariable(selectedVariable)
+                .invokeVirtual(SelectedPositions.class, "reset", void.class);
+
+        //
+        // for (; position < batchEnd; position++) if (filter(...)) selected.add(position);
+        //
+        Block filterTrue = new Block(context)
+                .getVariable(selectedVariable)
+                .getVariable(positionVariable)
+                .invokeVirtual(SelectedPositions.class, "add", void.class, int.class);
+
+        Block filterLoopBody = new Block(context)
+                .append(new IfStatementBuilder(context)
+                        .condition(new Block(context)
+                                .pushThis()
+                                .append(pushArguments(context, getInputChannels(filter), false))
+                                .invokeVirtual(classDefinition.getType(),
+                                        "filter",
+                                        type(boolean.class),
+                                        toParameterTypes(getInputChannels(filter), false)))
+                        .ifTrue(filterTrue)
+                        .build());
+
+        batchBody
+                .append(ForLoop.forLoopBuilder(context)
+                        .initialize(NOP)
+                        .condition(new Block(context)
+                                .comment("position < batchEnd")
+                                .getVariable(positionVariable)
+                                .getVariable(batchEndVariable)
+                                .invokeStatic(CompilerOperations.class, "lessThan", boolean.class, int.class, int.class))
+                        .update(new Block(context)
+                                .comment("position++")
+                                .incrementVariable(positionVariable, (byte) 1))
+                        .body(filterLoopBody)
+                        .build());
+
+        batchBody
+                .comment("selected.declarePositions(pageBuilder);")
+                .getVariable(selectedVariable)
+                .getVariable(pageBuilderVariable)
+                .invokeVirtual(SelectedPositions.class, "declarePositions", void.class, PageBuilder.class);
+
+        //
+        // for each projection: for (index = 0; index < selected.size(); index++) project_N(..., selected.get(index), output);
+        //
+        for (int projectionIndex = 0; projectionIndex < projections.size(); projectionIndex++) {
+            List<Integer> inputChannels = getInputChannels(projections.get(projectionIndex));
+
+            Block projectLoopBody = new Block(context)
+                    .comment("position = selected.get(index);")
+                    .getVariable(selectedVariable)
+                    .getVariable(indexVariable)
+                    .invokeVirtual(SelectedPositions.class, "get", int.class, int.class)
+                    .putVariable(positionVariable)
+                    .pushThis()
+                    .append(pushArguments(context, inputChannels, false))
+                    .getVariable(outputVariable)
+                    .invokeVirtual(classDefinition.getType(),
+                            "project_" + projectionIndex,
+                            type(void.class),
+                            ImmutableList.<ParameterizedType>builder()
+                                    .addAll(toParameterTypes(inputChannels, false))
+                                    .add(type(BlockBuilder.class))
+                                    .build());
+
+            batchBody
+                    .comment("output = pageBuilder.getBlockBuilder(%s);", projectionIndex)
+                    .getVariable(pageBuilderVariable)
+                    .push(projectionIndex)
+                    .invokeVirtual(PageBuilder.class, "getBlockBuilder", BlockBuilder.class, int.class)
+                    .putVariable(outputVariable)
+                    .append(ForLoop.forLoopBuilder(context)
+                            .initialize(new Block(context)
+                                    .comment("index = 0")
+                                    .putVariable(indexVariable, 0))
+                            .condition(new Block(context)
+                                    .comment("index < selected.size()")
+                                    .getVariable(indexVariable)
+                                    .getVariable(selectedVariable)
+                                    .invokeVirtual(SelectedPositions.class, "size", int.class)
+                                    .invokeStatic(CompilerOperations.class, "lessThan", boolean.class, int.class, int.class))
+                            .update(new Block(context)
+                                    .comment("index++")
+                                    .incrementVariable(indexVariable, (byte) 1))
+                            .body(projectLoopBody)
+                            .build());
+        }
+
+        method.getBody()
+                .append(ForLoop.forLoopBuilder(context)
+                        .initialize(new Block(context)
+                                .comment("position = start")
+                                .getVariable(startVariable)
+                                .putVariable(positionVariable))
+                        .condition(new Block(context)
+                                .comment("position < end")
+                                .getVariable(positionVariable)
+                                .getVariable(endVariable)
+                                .invokeStatic(CompilerOperations.class, "lessThan", boolean.class, int.class, int.class))
+                        .update(new Block(context)
+                                .comment("position = batchEnd (the projections reuse position)")
+                                .getVariable(batchEndVariable)
+                                .putVariable(positionVariable))
+                        .body(batchBody)
+                        .build());
+
+        method.getBody()
+                .comment("return end;")
+                .getVariable(endVariable)
+                .retInt();
+    }
+
+    private void generateConstructor(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, List<RowExpression> conjuncts, FieldDefinition conjunctOrderField)
+    {
+        CompilerContext context = new CompilerContext(BOOTSTRAP_METHOD);
+        classDefinition.declareConstructor(context, a(PUBLIC))
+                .getBody()
+                .comment("super();")
+                .pushThis()
+                .invokeConstructor(Object.class)
+                .comment("this.conjunctOrder = new AdaptiveConjunctOrder(conjuncts);")
+                .pushThis()
+                .newObject(AdaptiveConjunctOrder.class)
+                .dup()
+                .append(loadConstant(context, callSiteBinder.bind(conjuncts, List.class)))
+                .invokeConstructor(AdaptiveConjunctOrder.class, List.class)
+                .putField(conjunctOrderField)
+                .ret();
+    }
+
+    private static void generateGetFilterInfoMethod(ClassDefinition classDefinition, FieldDefinition conjunctOrderField)
+    {
+        CompilerContext context = new CompilerContext(BOOTSTRAP_METHOD);
+        classDefinition.declareMethod(context, a(PUBLIC), "getFilterInfo", type(FilterInfo.class))
+                .getBody()
+                .comment("return this.conjunctOrder.getInfo();")
+                .pushThis()
+                .getField(conjunctOrderField)
+                .invokeVirtual(AdaptiveConjunctOrder.class, "getInfo", FilterInfo.class)
+                .retObject();
+    }
+
+    /**
+     * Evaluates the conjuncts in the order given by the batch and stops at the first one that
+     * does not pass. The conjuncts are called through a switch on their index, so the order
+     * can change between calls to process without recompiling.
+     */
+    private static void generateAdaptiveFilterMethod(ClassDefinition classDefinition, RowExpression filter, List<RowExpression> conjuncts, boolean hasCommonSubExpressions)
     {
         CompilerContext context = new CompilerContext(BOOTSTRAP_METHOD);
         MethodDefinition method = classDefinition.declareMethod(context,
@@ -205,17 +509,95 @@ public class PageProcessorCompiler
                 "filter",
                 type(boolean.class),
                 ImmutableList.<NamedParameterDefinition>builder()
-                        .add(arg("session", ConnectorSession.class))
-                        .addAll(toBlockParameters(getInputChannels(filter)))
-                        .add(arg("position", int.class))
+                        .addAll(toParameters(getInputChannels(filter), hasCommonSubExpressions))
+                        .add(arg("conjuncts", AdaptiveConjunctOrder.Batch.class))
                         .build());
 
         method.comment("Filter: %s", filter.toString());
 
+        Variable conjunctsVariable = context.getVariable("conjuncts");
+        Variable indexVariable = context.declareVariable(int.class, "index");
+        Variable conjunctVariable = context.declareVariable(int.class, "conjunct");
+        Variable passedVariable = context.declareVariable(boolean.class, "passed");
+
+        // the last conjunct is the default case, so every path through the switch pushes a result
+        LabelNode record = new LabelNode("record");
+        List<LabelNode> labels = new ArrayList<>();
+        LookupSwitch.LookupSwitchBuilder switchBuilder = lookupSwitchBuilder();
+        Block cases = new Block(context);
+        for (int i = 0; i < conjuncts.size(); i++) {
+            LabelNode label = new LabelNode("conjunct_" + i);
+            labels.add(label);
+            if (i < conjuncts.size() - 1) {
+                switchBuilder.addCase(i, label);
+            }
+            List<Integer> inputChannels = getInputChannels(conjuncts.get(i));
+            cases.visitLabel(label)
+                    .comment("conjunct_%s(session, block_%s, position)", i, inputChannels)
+                    .pushThis()
+                    .append(pushArguments(context, inputChannels, hasCommonSubExpressions))
+                    .invokeVirtual(classDefinition.getType(), "conjunct_" + i, type(boolean.class), toParameterTypes(inputChannels, hasCommonSubExpressions))
+                    .gotoLabel(record);
+        }
+        switchBuilder.defaultCase(labels.get(labels.size() - 1));
+
+        LabelNode next = new LabelNode("next");
+        Block loopBody = new Block(context)
+                .comment("int conjunct = conjuncts.getConjunct(index);")
+                .getVariable(conjunctsVariable)
+                .getVariable(indexVariable)
+                .invokeVirtual(AdaptiveConjunctOrder.Batch.class, "getConjunct", int.class, int.class)
+                .putVariable(conjunctVariable)
+                .getVariable(conjunctVariable)
+                .append(switchBuilder.build())
+                .append(cases)
+                .visitLabel(record)
+                .comment("if (!conjuncts.record(conjunct, <result>)) return false;")
+                .putVariable(passedVariable)
+                .getVariable(conjunctsVariable)
+                .getVariable(conjunctVariable)
+                .getVariable(passedVariable)
+                .invokeVirtual(AdaptiveConjunctOrder.Batch.class, "record", boolean.class, int.class, boolean.class)
+                .ifTrueGoto(next)
+                .push(false)
+                .retBoolean()
+                .visitLabel(next);
+
+        ForLoopBuilder loop = ForLoop.forLoopBuilder(context)
+                .initialize(new Block(context).putVariable(indexVariable, 0))
+                .condition(new Block(context)
+                        .comment("index < conjuncts.getConjunctCount()")
+                        .getVariable(indexVariable)
+                        .getVariable(conjunctsVariable)
+                        .invokeVirtual(AdaptiveConjunctOrder.Batch.class, "getConjunctCount", int.class)
+                        .invokeStatic(CompilerOperations.class, "lessThan", boolean.class, int.class, int.class))
+                .update(new Block(context).incrementVariable(indexVariable, (byte) 1))
+                .body(loopBody);
+
+        method.getBody()
+                .append(loop.build())
+                .comment("return true;")
+                .push(true)
+                .retBoolean();
+    }
+
+    private void generateFilterMethod(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, String methodName, RowExpression filter, Map<CallExpression, Integer> commonSubExpressions)
+    {
+        CompilerContext context = new CompilerContext(BOOTSTRAP_METHOD);
+        MethodDefinition method = classDefinition.declareMethod(context,
+                a(PUBLIC),
+                methodName,
+                type(boolean.class),
+                toParameters(getInputChannels(filter), !commonSubExpressions.isEmpty()));
+
+        method.comment("Filter: %s", filter.toString());
+
         Variable positionVariable = context.getVariable("position");
         Variable wasNullVariable = context.declareVariable(type(boolean.class), "wasNull");
 
-        ByteCodeExpressionVisitor visitor = new ByteCodeExpressionVisitor(
+        ByteCodeExpressionVisitor visitor = new CommonSubExpressionVisitor(
+                classDefinition.getType(),
+                commonSubExpressions,
                 callSiteBinder,
                 fieldReferenceCompiler(callSiteBinder, positionVariable, wasNullVariable),
                 metadata.getFunctionRegistry());
@@ -235,7 +617,7 @@ public class PageProcessorCompiler
                 .retBoolean();
     }
 
-    private void generateProjectMethod(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, String methodName, RowExpression projection)
+    private void generateProjectMethod(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, String methodName, RowExpression projection, Map<CallExpression, Integer> commonSubExpressions)
     {
         CompilerContext context = new CompilerContext(BOOTSTRAP_METHOD);
         MethodDefinition method = classDefinition.declareMethod(context,
@@ -243,9 +625,7 @@ public class PageProcessorCompiler
                 methodName,
                 type(void.class),
                 ImmutableList.<NamedParameterDefinition>builder()
-                        .add(arg("session", ConnectorSession.class))
-                        .addAll(toBlockParameters(getInputChannels(projection)))
-                        .add(arg("position", int.class))
+                        .addAll(toParameters(getInputChannels(projection), !commonSubExpressions.isEmpty()))
                         .add(arg("output", BlockBuilder.class))
                         .build());
 
@@ -260,7 +640,12 @@ public class PageProcessorCompiler
                 .comment("boolean wasNull = false;")
                 .putVariable(wasNullVariable, projection.getType().getJavaType() == void.class);
 
-        ByteCodeExpressionVisitor visitor = new ByteCodeExpressionVisitor(callSiteBinder, fieldReferenceCompiler(callSiteBinder, positionVariable, wasNullVariable), metadata.getFunctionRegistry());
+        ByteCodeExpressionVisitor visitor = new CommonSubExpressionVisitor(
+                classDefinition.getType(),
+                commonSubExpressions,
+                callSiteBinder,
+                fieldReferenceCompiler(callSiteBinder, positionVariable, wasNullVariable),
+                metadata.getFunctionRegistry());
 
         body.getVariable(outputVariable)
                 .comment("evaluate projection: " + projection.toString())
@@ -269,6 +654,57 @@ public class PageProcessorCompiler
                 .ret();
     }
 
+    private void generateCommonSubExpressionMethod(ClassDefinition classDefinition, CallSiteBinder callSiteBinder, int index, CallExpression expression, Map<CallExpression, Integer> commonSubExpressions)
+    {
+        CompilerContext context = new CompilerContext(BOOTSTRAP_METHOD);
+        MethodDefinition method = classDefinition.declareMethod(context,
+                a(PUBLIC),
+                "cse_" + index,
+                type(void.class),
+                toParameters(getInputChannels(expression), true));
+
+        method.comment("Common subexpression: %s", expression.toString());
+
+        Variable positionVariable = context.getVariable("position");
+        Variable commonSubExpressionsVariable = context.getVariable("cse");
+        Variable wasNullVariable = context.declareVariable(type(boolean.class), "wasNull");
+
+        // this expression must be evaluated here, but nested common subexpressions are still shared
+        ImmutableMap.Builder<CallExpression, Integer> nested = ImmutableMap.builder();
+        for (Map.Entry<CallExpression, Integer> entry : commonSubExpressions.entrySet()) {
+            if (!entry.getKey().equals(expression)) {
+                nested.put(entry);
+            }
+        }
+        ByteCodeExpressionVisitor visitor = new CommonSubExpressionVisitor(
+                classDefinition.getType(),
+                nested.build(),
+                callSiteBinder,
+                fieldReferenceCompiler(callSiteBinder, positionVariable, wasNullVariable),
+                metadata.getFunctionRegistry());
+
+        Class<?> stateType = stateType(expression.getType().getJavaType());
+        LabelNode evaluate = new LabelNode("evaluate");
+        method.getBody()
+                .comment("if (cse.isEvaluated(%s, position)) return;", index)
+                .getVariable(commonSubExpressionsVariable)
+                .push(index)
+                .getVariable(positionVariable)
+                .invokeVirtual(CommonSubExpressionState.class, "isEvaluated", boolean.class, int.class, int.class)
+                .ifFalseGoto(evaluate)
+                .ret()
+                .visitLabel(evaluate)
+                .comment("boolean wasNull = false;")
+                .putVariable(wasNullVariable, false)
+                .getVariable(commonSubExpressionsVariable)
+                .push(index)
+                .getVariable(positionVariable)
+                .append(expression.accept(visitor, context))
+                .getVariable(wasNullVariable)
+                .invokeVirtual(CommonSubExpressionState.class, "set" + stateTypeName(stateType), void.class, int.class, int.class, stateType, boolean.class)
+                .ret();
+    }
+
     private static List<Integer> getInputChannels(Iterable<RowExpression> expressions)
     {
         TreeSet<Integer> channels = new TreeSet<>();
@@ -285,21 +721,46 @@ public class PageProcessorCompiler
         return getInputChannels(ImmutableList.of(expression));
     }
 
-    private static List<NamedParameterDefinition> toBlockParameters(List<Integer> inputChannels)
+    private static List<NamedParameterDefinition> toParameters(List<Integer> inputChannels, boolean hasCommonSubExpressions)
     {
         ImmutableList.Builder<NamedParameterDefinition> parameters = ImmutableList.builder();
+        parameters.add(arg("session", ConnectorSession.class));
+        if (hasCommonSubExpressions) {
+            parameters.add(arg("cse", CommonSubExpressionState.class));
+        }
         for (int channel : inputChannels) {
             parameters.add(arg("block_" + channel, com.facebook.presto.spi.block.Block.class));
         }
+        parameters.add(arg("position", int.class));
+        return parameters.build();
+    }
+
+    private static List<ParameterizedType> toParameterTypes(List<Integer> inputChannels, boolean hasCommonSubExpressions)
+    {
+        ImmutableList.Builder<ParameterizedType> parameters = ImmutableList.builder();
+        parameters.add(type(ConnectorSession.class));
+        if (hasCommonSubExpressions) {
+            parameters.add(type(CommonSubExpressionState.class));
+        }
+        parameters.addAll(nCopies(inputChannels.size(), type(com.facebook.presto.spi.block.Block.class)));
+        parameters.add(type(int.class));
         return parameters.build();
     }
 
-    private static ByteCodeNode pushBlockVariables(CompilerContext context, List<Integer> inputs)
+    /**
+     * Pushes the arguments declared by {@link #toParameters} from the variables of the same name in the calling method
+     */
+    private static ByteCodeNode pushArguments(CompilerContext context, List<Integer> inputChannels, boolean hasCommonSubExpressions)
     {
         Block block = new Block(context);
-        for (int channel : inputs) {
+        block.getVariable("session");
+        if (hasCommonSubExpressions) {
+            block.getVariable("cse");
+        }
+        for (int channel : inputChannels) {
             block.getVariable("block_" + channel);
         }
+        block.getVariable("position");
         return block;
     }
 
@@ -348,4 +809,55 @@ public class PageProcessorCompiler
             }
         };
     }
+
+    private static class CommonSubExpressionVisitor
+            extends ByteCodeExpressionVisitor
+    {
+        private final ParameterizedType processorType;
+        private final Map<CallExpression, Integer> commonSubExpressions;
+
+        public CommonSubExpressionVisitor(
+                ParameterizedType processorType,
+                Map<CallExpression, Integer> commonSubExpressions,
+                CallSiteBinder callSiteBinder,
+                RowExpressionVisitor<CompilerContext, ByteCodeNode> fieldReferenceCompiler,
+                FunctionRegistry registry)
+        {
+            super(callSiteBinder, fieldReferenceCompiler, registry);
+            this.processorType = processorType;
+            this.commonSubExpressions = commonSubExpressions;
+        }
+
+        @Override
+        public ByteCodeNode visitCall(CallExpression call, CompilerContext context)
+        {
+            Integer index = commonSubExpressions.get(call);
+            if (index == null) {
+                return super.visitCall(call, context);
+            }
+
+            List<Integer> inputChannels = getInputChannels(call);
+            Class<?> javaType = call.getType().getJavaType();
+            Class<?> stateType = stateType(javaType);
+
+            Block block = new Block(context)
+                    .comment("cse_%s(session, cse, block_%s, position)", index, inputChannels)
+                    .pushThis()
+                    .append(pushArguments(context, inputChannels, true))
+                    .invokeVirtual(processorType, "cse_" + index, type(void.class), toParameterTypes(inputChannels, true))
+                    .comment("wasNull = cse.isNull(%s);", index)
+                    .getVariable("cse")
+                    .push(index)
+                    .invokeVirtual(CommonSubExpressionState.class, "isNull", boolean.class, int.class)
+                    .putVariable("wasNull")
+                    .getVariable("cse")
+                    .push(index)
+                    .invokeVirtual(CommonSubExpressionState.class, "get" + stateTypeName(stateType), stateType, int.class);
+
+            if (stateType != javaType) {
+                block.checkCast(javaType);
+            }
+            return block;
+        }
+    }
 }
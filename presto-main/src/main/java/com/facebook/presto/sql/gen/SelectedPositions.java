@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.gen;
+
+import com.facebook.presto.spi.PageBuilder;
+
+/**
+ * Selection vector used by columnar page processors: the filter records the passing
+ * positions of a batch of a page, and each projection is then evaluated in a loop over them.
+ * Pages are processed in batches so the processor can stop once the page builder is full.
+ */
+// This methods are called by the generated code
+@SuppressWarnings("UnusedDeclaration")
+public final class SelectedPositions
+{
+    public static final int BATCH_SIZE = 1024;
+
+    private final int[] positions;
+    private int size;
+
+    public SelectedPositions(int start, int end)
+    {
+        positions = new int[Math.min(end - start, BATCH_SIZE)];
+    }
+
+    public static int batchEnd(int position, int end)
+    {
+        return Math.min(end, position + BATCH_SIZE);
+    }
+
+    public void reset()
+    {
+        size = 0;
+    }
+
+    public void add(int position)
+    {
+        positions[size] = position;
+        size++;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int get(int index)
+    {
+        return positions[index];
+    }
+
+    public void declarePositions(PageBuilder pageBuilder)
+    {
+        for (int i = 0; i < size; i++) {
+            pageBuilder.declarePosition();
+        }
+    }
+}
@@ -19,6 +19,7 @@ import io.airlift.configuration.Config;
 public class CompilerConfig
 {
     private boolean interpreterEnabled;
+    private boolean columnarProcessingEnabled;
 
     public boolean isInterpreterEnabled()
     {
@@ -32,4 +33,17 @@ public class CompilerConfig
         this.interpreterEnabled = interpreterEnabled;
         return this;
     }
+
+    public boolean isColumnarProcessingEnabled()
+    {
+        return columnarProcessingEnabled;
+    }
+
+    @Config("compiler.columnar-processing-enabled")
+    @Description("Evaluate filters and projections one column at a time over the selected positions of a page")
+    public CompilerConfig setColumnarProcessingEnabled(boolean columnarProcessingEnabled)
+    {
+        this.columnarProcessingEnabled = columnarProcessingEnabled;
+        return this;
+    }
 }
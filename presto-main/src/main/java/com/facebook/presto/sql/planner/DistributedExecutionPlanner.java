@@ -27,6 +27,7 @@ import com.facebook.presto.sql.planner.plan.LimitNode;
 import com.facebook.presto.sql.planner.plan.MarkDistinctNode;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.facebook.presto.sql.planner.plan.PlanVisitor;
 import com.facebook.presto.sql.planner.plan.ProjectNode;
 import com.facebook.presto.sql.planner.plan.RemoteSourceNode;
@@ -44,10 +45,12 @@ import com.facebook.presto.sql.planner.plan.UnnestNode;
 import com.facebook.presto.sql.planner.plan.ValuesNode;
 import com.facebook.presto.sql.planner.plan.WindowNode;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import javax.inject.Inject;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -67,7 +70,7 @@ public class DistributedExecutionPlanner
         PlanFragment currentFragment = root.getFragment();
 
         // get splits for this fragment, this is lazy so split assignments aren't actually calculated here
-        Visitor visitor = new Visitor();
+        Visitor visitor = new Visitor(currentFragment.getColocatedSources());
         Optional<SplitSource> splits = currentFragment.getRoot().accept(visitor, null);
 
         // create child stages
@@ -78,6 +81,8 @@ public class DistributedExecutionPlanner
 
         return new StageExecutionPlan(currentFragment,
                 splits,
+                visitor.getColocatedSplits(),
+                visitor.getBucketNodes(),
                 dependencies.build()
         );
     }
@@ -85,12 +90,42 @@ public class DistributedExecutionPlanner
     private final class Visitor
             extends PlanVisitor<Void, Optional<SplitSource>>
     {
+        private final List<PlanNodeId> colocatedSources;
+        private final ImmutableMap.Builder<PlanNodeId, SplitSource> colocatedSplits = ImmutableMap.builder();
+        private Optional<List<String>> bucketNodes = Optional.empty();
+
+        private Visitor(List<PlanNodeId> colocatedSources)
+        {
+            this.colocatedSources = colocatedSources;
+        }
+
+        public Map<PlanNodeId, SplitSource> getColocatedSplits()
+        {
+            return colocatedSplits.build();
+        }
+
+        public Optional<List<String>> getBucketNodes()
+        {
+            return bucketNodes;
+        }
+
         @Override
         public Optional<SplitSource> visitTableScan(TableScanNode node, Void context)
         {
             // get dataSource for table
             SplitSource splitSource = splitManager.getPartitionSplits(node.getTable(), getPartitions(node));
 
+            if (colocatedSources.contains(node.getId())) {
+                // splits of colocated scans are assigned to the nodes of their bucket, alongside the partitioned source
+                colocatedSplits.put(node.getId(), splitSource);
+                return Optional.empty();
+            }
+
+            if (node.isBucketed()) {
+                // the colocated tables have the same bucketing, so the partitioned source decides where the buckets run
+                bucketNodes = splitManager.getBucketNodes(node.getTable());
+            }
+
             return Optional.of(splitSource);
         }
 
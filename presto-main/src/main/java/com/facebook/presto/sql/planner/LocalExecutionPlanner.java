@@ -51,6 +51,7 @@ import com.facebook.presto.operator.ScanFilterAndProjectOperator;
 import com.facebook.presto.operator.SetBuilderOperator.SetBuilderOperatorFactory;
 import com.facebook.presto.operator.SetBuilderOperator.SetSupplier;
 import com.facebook.presto.operator.SourceOperatorFactory;
+import com.facebook.presto.operator.StreamingAggregationOperator.StreamingAggregationOperatorFactory;
 import com.facebook.presto.operator.TableScanOperator.TableScanOperatorFactory;
 import com.facebook.presto.operator.TopNOperator.TopNOperatorFactory;
 import com.facebook.presto.operator.TopNRowNumberOperator;
@@ -1480,6 +1481,17 @@ public class LocalExecutionPlanner
 
             Optional<Integer> hashChannel = node.getHashSymbol().map(channelGetter(source));
 
+            if (node.isStreaming()) {
+                OperatorFactory operatorFactory = new StreamingAggregationOperatorFactory(
+                        context.getNextOperatorId(),
+                        groupByTypes,
+                        groupByChannels,
+                        node.getStep(),
+                        accumulatorFactories,
+                        hashChannel);
+                return new PhysicalOperation(operatorFactory, outputMappings.build(), source);
+            }
+
             OperatorFactory operatorFactory = new HashAggregationOperatorFactory(
                     context.getNextOperatorId(),
                     groupByTypes,
@@ -18,6 +18,7 @@ import com.facebook.presto.sql.planner.plan.PlanFragmentId;
 import com.facebook.presto.sql.planner.plan.PlanNode;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.facebook.presto.sql.planner.plan.RemoteSourceNode;
+import com.facebook.presto.sql.planner.plan.TableScanNode;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
@@ -62,6 +63,7 @@ public class PlanFragment
     private final List<Type> types;
     private final PlanNode partitionedSourceNode;
     private final List<RemoteSourceNode> remoteSourceNodes;
+    private final List<PlanNodeId> colocatedSources;
     private final OutputPartitioning outputPartitioning;
     private final List<Symbol> partitionBy;
     private final Optional<Symbol> hash;
@@ -100,6 +102,12 @@ public class PlanFragment
         findRemoteSourceNodes(root, remoteSourceNodes);
         this.remoteSourceNodes = remoteSourceNodes.build();
 
+        ImmutableList.Builder<PlanNodeId> colocatedSources = ImmutableList.builder();
+        if (isBucketed()) {
+            findColocatedSources(root, partitionedSource, colocatedSources);
+        }
+        this.colocatedSources = colocatedSources.build();
+
         this.outputPartitioning = checkNotNull(outputPartitioning, "outputPartitioning is null");
     }
 
@@ -172,6 +180,23 @@ public class PlanFragment
         return remoteSourceNodes;
     }
 
+    /**
+     * Returns true if the partitioned source is scheduled by bucket.
+     */
+    public boolean isBucketed()
+    {
+        return partitionedSourceNode instanceof TableScanNode && ((TableScanNode) partitionedSourceNode).isBucketed();
+    }
+
+    /**
+     * Returns the table scans, other than the partitioned source, whose splits must be
+     * processed on the same node as the splits of the partitioned source with the same bucket.
+     */
+    public List<PlanNodeId> getColocatedSources()
+    {
+        return colocatedSources;
+    }
+
     private static PlanNode findSource(PlanNode node, PlanNodeId nodeId)
     {
         if (node.getId().equals(nodeId)) {
@@ -185,6 +210,17 @@ public class PlanFragment
                 .orElse(null);
     }
 
+    private static void findColocatedSources(PlanNode node, PlanNodeId partitionedSource, Builder<PlanNodeId> builder)
+    {
+        for (PlanNode source : node.getSources()) {
+            findColocatedSources(source, partitionedSource, builder);
+        }
+
+        if (node instanceof TableScanNode && ((TableScanNode) node).isBucketed() && !node.getId().equals(partitionedSource)) {
+            builder.add(node.getId());
+        }
+    }
+
     private static void findRemoteSourceNodes(PlanNode node, Builder<RemoteSourceNode> builder)
     {
         for (PlanNode source : node.getSources()) {
@@ -113,7 +113,7 @@ public class PlanFragmenter
         @Override
         public PlanNode visitTableScan(TableScanNode node, RewriteContext<FragmentProperties> context)
         {
-            context.get().setSourceDistribution(node.getId());
+            context.get().setSourceDistribution(node.getId(), node.isBucketed());
             return context.defaultRewrite(node, context.get());
         }
 
@@ -186,6 +186,7 @@ public class PlanFragmenter
 
         private Optional<PlanDistribution> distribution = Optional.empty();
         private PlanNodeId distributeBy;
+        private boolean bucketedSource;
 
         public List<SubPlan> getChildren()
         {
@@ -231,8 +232,14 @@ public class PlanFragmenter
             return this;
         }
 
-        public FragmentProperties setSourceDistribution(PlanNodeId source)
+        public FragmentProperties setSourceDistribution(PlanNodeId source, boolean bucketed)
         {
+            if (distribution.isPresent() && distribution.get() == PlanDistribution.SOURCE && bucketedSource && bucketed) {
+                // another bucketed table is read in the same fragment; its splits
+                // are scheduled on the nodes that process the same buckets of the partitioned source
+                return this;
+            }
+
             if (distribution.isPresent()) {
                 // If already SINGLE or COORDINATOR_ONLY, leave it as is (this is for single-node execution)
                 checkState(distribution.get() == PlanDistribution.SINGLE || distribution.get() == PlanDistribution.COORDINATOR_ONLY,
@@ -243,6 +250,7 @@ public class PlanFragmenter
             else {
                 distribution = Optional.of(PlanDistribution.SOURCE);
                 this.distributeBy = source;
+                this.bucketedSource = bucketed;
             }
 
             return this;
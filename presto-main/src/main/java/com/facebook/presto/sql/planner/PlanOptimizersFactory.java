@@ -18,6 +18,11 @@ import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.split.SplitManager;
 import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.facebook.presto.sql.parser.SqlParser;
+import com.facebook.presto.sql.planner.iterative.IterativeOptimizer;
+import com.facebook.presto.sql.planner.iterative.RuleStatsRecorder;
+import com.facebook.presto.sql.planner.iterative.rule.MergeFilters;
+import com.facebook.presto.sql.planner.iterative.rule.MergeLimits;
+import com.facebook.presto.sql.planner.iterative.rule.RemoveRedundantIdentityProjections;
 import com.facebook.presto.sql.planner.optimizations.AddExchanges;
 import com.facebook.presto.sql.planner.optimizations.BeginTableWrite;
 import com.facebook.presto.sql.planner.optimizations.CanonicalizeExpressions;
@@ -35,6 +40,7 @@ import com.facebook.presto.sql.planner.optimizations.PruneRedundantProjections;
 import com.facebook.presto.sql.planner.optimizations.PruneUnreferencedOutputs;
 import com.facebook.presto.sql.planner.optimizations.SetFlatteningOptimizer;
 import com.facebook.presto.sql.planner.optimizations.SimplifyExpressions;
+import com.facebook.presto.sql.planner.optimizations.StreamingAggregationOptimizer;
 import com.facebook.presto.sql.planner.optimizations.UnaliasSymbolReferences;
 import com.facebook.presto.sql.planner.optimizations.WindowFilterPushDown;
 import com.google.common.collect.ImmutableList;
@@ -50,12 +56,22 @@ public class PlanOptimizersFactory
     private final List<PlanOptimizer> optimizers;
 
     @Inject
+    public PlanOptimizersFactory(Metadata metadata, SqlParser sqlParser, SplitManager splitManager, IndexManager indexManager, FeaturesConfig featuresConfig, RuleStatsRecorder ruleStats)
+    {
+        this(metadata, sqlParser, splitManager, indexManager, featuresConfig, ruleStats, false);
+    }
+
     public PlanOptimizersFactory(Metadata metadata, SqlParser sqlParser, SplitManager splitManager, IndexManager indexManager, FeaturesConfig featuresConfig)
     {
-        this(metadata, sqlParser, splitManager, indexManager, featuresConfig, false);
+        this(metadata, sqlParser, splitManager, indexManager, featuresConfig, new RuleStatsRecorder(), false);
     }
 
     public PlanOptimizersFactory(Metadata metadata, SqlParser sqlParser, SplitManager splitManager, IndexManager indexManager, FeaturesConfig featuresConfig, boolean forceSingleNode)
+    {
+        this(metadata, sqlParser, splitManager, indexManager, featuresConfig, new RuleStatsRecorder(), forceSingleNode);
+    }
+
+    public PlanOptimizersFactory(Metadata metadata, SqlParser sqlParser, SplitManager splitManager, IndexManager indexManager, FeaturesConfig featuresConfig, RuleStatsRecorder ruleStats, boolean forceSingleNode)
     {
         ImmutableList.Builder<PlanOptimizer> builder = ImmutableList.builder();
 
@@ -64,7 +80,16 @@ public class PlanOptimizersFactory
                 new SimplifyExpressions(metadata, sqlParser),
                 new UnaliasSymbolReferences(),
                 new PruneRedundantProjections(),
-                new SetFlatteningOptimizer(),
+                new SetFlatteningOptimizer());
+
+        if (featuresConfig.isIterativeOptimizerEnabled()) {
+            builder.add(new IterativeOptimizer(ruleStats, ImmutableList.of(
+                    new MergeFilters(),
+                    new MergeLimits(),
+                    new RemoveRedundantIdentityProjections())));
+        }
+
+        builder.add(
                 new LimitPushDown(), // Run the LimitPushDown after flattening set operators to make it easier to do the set flattening
                 new PredicatePushDown(metadata, sqlParser, splitManager),
                 new PredicatePushDown(metadata, sqlParser, splitManager), // Run predicate push down one more time in case we can leverage new information from generated partitions
@@ -87,9 +112,11 @@ public class PlanOptimizersFactory
         builder.add(new BeginTableWrite(metadata)); // HACK! see comments in BeginTableWrite
 
         if (!forceSingleNode) {
-            builder.add(new AddExchanges(metadata, featuresConfig.isDistributedIndexJoinsEnabled(), featuresConfig.isDistributedJoinsEnabled()));
+            builder.add(new AddExchanges(metadata, featuresConfig.isDistributedIndexJoinsEnabled(), featuresConfig.isDistributedJoinsEnabled(), featuresConfig.isBucketExecutionEnabled()));
         }
 
+        builder.add(new StreamingAggregationOptimizer(metadata, featuresConfig.isStreamingAggregationEnabled())); // This must run after AddExchanges, which creates the partial aggregations
+
         // TODO: consider adding a formal final plan sanitization optimizer that prepares the plan for transmission/execution/logging
         // TODO: figure out how to improve the set flattening optimizer so that it can run at any point
 
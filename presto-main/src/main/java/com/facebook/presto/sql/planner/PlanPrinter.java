@@ -273,8 +273,9 @@ public class PlanPrinter
             if (node.getSampleWeight().isPresent()) {
                 sampleWeight = format("[sampleWeight = %s]", node.getSampleWeight().get());
             }
+            String streaming = node.isStreaming() ? "[streaming]" : "";
 
-            print(indent, "- Aggregate%s%s%s => [%s]", type, key, sampleWeight, formatOutputs(node.getOutputSymbols()));
+            print(indent, "- Aggregate%s%s%s%s => [%s]", type, key, sampleWeight, streaming, formatOutputs(node.getOutputSymbols()));
 
             for (Map.Entry<Symbol, FunctionCall> entry : node.getAggregations().entrySet()) {
                 if (node.getMasks().containsKey(entry.getKey())) {
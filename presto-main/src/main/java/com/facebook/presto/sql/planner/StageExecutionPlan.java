@@ -15,9 +15,12 @@ package com.facebook.presto.sql.planner;
 
 import com.facebook.presto.split.SplitSource;
 import com.facebook.presto.sql.planner.plan.OutputNode;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
@@ -28,13 +31,27 @@ public class StageExecutionPlan
 {
     private final PlanFragment fragment;
     private final Optional<SplitSource> dataSource;
+    private final Map<PlanNodeId, SplitSource> colocatedDataSources;
+    private final Optional<List<String>> bucketNodes;
     private final List<StageExecutionPlan> subStages;
     private final Optional<List<String>> fieldNames;
 
     public StageExecutionPlan(PlanFragment fragment, Optional<SplitSource> dataSource, List<StageExecutionPlan> subStages)
+    {
+        this(fragment, dataSource, ImmutableMap.of(), Optional.empty(), subStages);
+    }
+
+    public StageExecutionPlan(
+            PlanFragment fragment,
+            Optional<SplitSource> dataSource,
+            Map<PlanNodeId, SplitSource> colocatedDataSources,
+            Optional<List<String>> bucketNodes,
+            List<StageExecutionPlan> subStages)
     {
         this.fragment = checkNotNull(fragment, "fragment is null");
         this.dataSource = checkNotNull(dataSource, "dataSource is null");
+        this.colocatedDataSources = ImmutableMap.copyOf(checkNotNull(colocatedDataSources, "colocatedDataSources is null"));
+        this.bucketNodes = checkNotNull(bucketNodes, "bucketNodes is null");
         this.subStages = ImmutableList.copyOf(checkNotNull(subStages, "dependencies is null"));
 
         fieldNames = (fragment.getRoot() instanceof OutputNode) ?
@@ -58,6 +75,19 @@ public class StageExecutionPlan
         return dataSource;
     }
 
+    public Map<PlanNodeId, SplitSource> getColocatedDataSources()
+    {
+        return colocatedDataSources;
+    }
+
+    /**
+     * Nodes that must process each bucket of a bucketed fragment, indexed by bucket number.
+     */
+    public Optional<List<String>> getBucketNodes()
+    {
+        return bucketNodes;
+    }
+
     public List<StageExecutionPlan> getSubStages()
     {
         return subStages;
@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.iterative;
+
+import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.facebook.presto.sql.planner.plan.PlanVisitor;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.concurrent.Immutable;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Placeholder for a group in the {@link Memo}. Plans stored in the memo reference
+ * their sources through group references so that a rewrite of a subtree does not
+ * require rebuilding its ancestors. Group references never leave the optimizer.
+ */
+@Immutable
+public class GroupReference
+        extends PlanNode
+{
+    private final int groupId;
+    private final List<Symbol> outputs;
+
+    public GroupReference(PlanNodeId id, int groupId, List<Symbol> outputs)
+    {
+        super(id);
+        this.groupId = groupId;
+        this.outputs = ImmutableList.copyOf(checkNotNull(outputs, "outputs is null"));
+    }
+
+    public int getGroupId()
+    {
+        return groupId;
+    }
+
+    @Override
+    public List<PlanNode> getSources()
+    {
+        return ImmutableList.of();
+    }
+
+    @Override
+    public List<Symbol> getOutputSymbols()
+    {
+        return outputs;
+    }
+
+    @Override
+    public <C, R> R accept(PlanVisitor<C, R> visitor, C context)
+    {
+        return visitor.visitGroupReference(this, context);
+    }
+}
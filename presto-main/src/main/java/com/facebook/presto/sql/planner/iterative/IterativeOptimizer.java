@@ -0,0 +1,156 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.iterative;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
+import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.SymbolAllocator;
+import com.facebook.presto.sql.planner.optimizations.PlanOptimizer;
+import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Applies a set of local rewrite rules to a plan until no rule makes progress.
+ * <p>
+ * The plan is stored in a {@link Memo}, so a rule application only replaces the node
+ * of a single group instead of rewriting the whole tree. A group is re-explored only
+ * when the group itself or one of its sources changed, so the amount of work is
+ * proportional to the number of transformations rather than to the plan size
+ * times the number of passes.
+ */
+public class IterativeOptimizer
+        extends PlanOptimizer
+{
+    private final ListMultimap<Class<? extends PlanNode>, Rule> rules;
+    private final RuleStatsRecorder stats;
+
+    public IterativeOptimizer(RuleStatsRecorder stats, Iterable<? extends Rule> rules)
+    {
+        this.stats = checkNotNull(stats, "stats is null");
+        checkNotNull(rules, "rules is null");
+
+        ImmutableListMultimap.Builder<Class<? extends PlanNode>, Rule> builder = ImmutableListMultimap.builder();
+        for (Rule rule : rules) {
+            builder.put(rule.getPattern(), rule);
+        }
+        this.rules = builder.build();
+
+        // make the stats of all rules visible before they are first invoked
+        stats.registerAll(this.rules.values());
+    }
+
+    @Override
+    public PlanNode optimize(PlanNode plan, Session session, Map<Symbol, Type> types, SymbolAllocator symbolAllocator, PlanNodeIdAllocator idAllocator)
+    {
+        checkNotNull(plan, "plan is null");
+        checkNotNull(session, "session is null");
+        checkNotNull(types, "types is null");
+        checkNotNull(symbolAllocator, "symbolAllocator is null");
+        checkNotNull(idAllocator, "idAllocator is null");
+
+        Memo memo = new Memo(idAllocator, plan);
+        Context context = new Context(memo, idAllocator, symbolAllocator);
+        if (!exploreGroup(memo.getRootGroup(), context)) {
+            // nothing changed, so hand back the original tree
+            return plan;
+        }
+        return memo.extract();
+    }
+
+    private boolean exploreGroup(int group, Context context)
+    {
+        // fixpoint on the node itself, then on its sources; a change in
+        // a source may enable more rules for this node, so repeat
+        boolean progress = exploreNode(group, context);
+
+        while (exploreChildren(group, context)) {
+            progress = true;
+            if (!exploreNode(group, context)) {
+                break;
+            }
+        }
+
+        return progress;
+    }
+
+    private boolean exploreNode(int group, Context context)
+    {
+        PlanNode node = context.memo.getNode(group);
+
+        boolean progress = false;
+        boolean done = false;
+        while (!done) {
+            done = true;
+            for (Rule rule : rules.get(node.getClass())) {
+                long start = System.nanoTime();
+                Optional<PlanNode> transformed = rule.apply(node, context.lookup, context.idAllocator, context.symbolAllocator);
+                stats.record(rule, System.nanoTime() - start, transformed.isPresent());
+
+                if (transformed.isPresent()) {
+                    node = context.memo.replace(group, transformed.get());
+                    progress = true;
+                    // the node may have a different type now, so start over with its rules
+                    done = false;
+                    break;
+                }
+            }
+        }
+
+        return progress;
+    }
+
+    private boolean exploreChildren(int group, Context context)
+    {
+        boolean progress = false;
+
+        List<PlanNode> sources = context.memo.getNode(group).getSources();
+        for (PlanNode source : sources) {
+            if (exploreGroup(((GroupReference) source).getGroupId(), context)) {
+                progress = true;
+            }
+        }
+
+        return progress;
+    }
+
+    public RuleStatsRecorder getStats()
+    {
+        return stats;
+    }
+
+    private static class Context
+    {
+        private final Memo memo;
+        private final Lookup lookup;
+        private final PlanNodeIdAllocator idAllocator;
+        private final SymbolAllocator symbolAllocator;
+
+        public Context(Memo memo, PlanNodeIdAllocator idAllocator, SymbolAllocator symbolAllocator)
+        {
+            this.memo = memo;
+            this.idAllocator = idAllocator;
+            this.symbolAllocator = symbolAllocator;
+            this.lookup = node -> node instanceof GroupReference ? memo.resolve((GroupReference) node) : node;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.iterative;
+
+import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
+import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.google.common.collect.ImmutableList;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.sql.planner.plan.ChildReplacer.replaceChildren;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Stores a plan as a set of groups, one per plan node. The node stored in a group
+ * refers to its sources through {@link GroupReference}s, so replacing the node of a
+ * group is a constant time operation that does not touch the rest of the plan.
+ * <p>
+ * This class is not thread safe.
+ */
+public class Memo
+{
+    private final PlanNodeIdAllocator idAllocator;
+    private final Map<Integer, PlanNode> groups = new HashMap<>();
+    private final int rootGroup;
+
+    private int nextGroupId;
+
+    public Memo(PlanNodeIdAllocator idAllocator, PlanNode plan)
+    {
+        this.idAllocator = checkNotNull(idAllocator, "idAllocator is null");
+        checkNotNull(plan, "plan is null");
+        rootGroup = insertRecursive(plan);
+    }
+
+    public int getRootGroup()
+    {
+        return rootGroup;
+    }
+
+    public PlanNode getNode(int group)
+    {
+        PlanNode node = groups.get(group);
+        checkArgument(node != null, "Invalid group: %s", group);
+        return node;
+    }
+
+    public PlanNode resolve(GroupReference groupReference)
+    {
+        return getNode(groupReference.getGroupId());
+    }
+
+    /**
+     * Replaces the node stored in the group. Sources of the new node that are not
+     * group references are inserted into the memo as new groups.
+     *
+     * @return the node as stored in the memo
+     */
+    public PlanNode replace(int group, PlanNode node)
+    {
+        checkArgument(groups.containsKey(group), "Invalid group: %s", group);
+        checkArgument(!(node instanceof GroupReference), "Group cannot be replaced with a group reference");
+
+        PlanNode rewritten = insertChildrenAndRewrite(node);
+        groups.put(group, rewritten);
+        return rewritten;
+    }
+
+    /**
+     * @return the plan rooted at the root group with all group references resolved
+     */
+    public PlanNode extract()
+    {
+        return extract(getNode(rootGroup));
+    }
+
+    public int getGroupCount()
+    {
+        return groups.size();
+    }
+
+    private PlanNode extract(PlanNode node)
+    {
+        if (node.getSources().isEmpty()) {
+            return node;
+        }
+
+        ImmutableList.Builder<PlanNode> children = ImmutableList.builder();
+        for (PlanNode source : node.getSources()) {
+            PlanNode resolved = source instanceof GroupReference ? resolve((GroupReference) source) : source;
+            children.add(extract(resolved));
+        }
+        return replaceChildren(node, children.build());
+    }
+
+    private int insertRecursive(PlanNode node)
+    {
+        if (node instanceof GroupReference) {
+            return ((GroupReference) node).getGroupId();
+        }
+
+        int group = nextGroupId++;
+        groups.put(group, insertChildrenAndRewrite(node));
+        return group;
+    }
+
+    private PlanNode insertChildrenAndRewrite(PlanNode node)
+    {
+        List<PlanNode> sources = node.getSources();
+        if (sources.isEmpty()) {
+            return node;
+        }
+
+        boolean changed = false;
+        ImmutableList.Builder<PlanNode> children = ImmutableList.builder();
+        for (PlanNode source : sources) {
+            if (source instanceof GroupReference) {
+                children.add(source);
+            }
+            else {
+                int group = insertRecursive(source);
+                children.add(new GroupReference(idAllocator.getNextId(), group, source.getOutputSymbols()));
+                changed = true;
+            }
+        }
+
+        if (!changed) {
+            return node;
+        }
+        return replaceChildren(node, children.build());
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.iterative;
+
+import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
+import com.facebook.presto.sql.planner.SymbolAllocator;
+import com.facebook.presto.sql.planner.plan.PlanNode;
+
+import java.util.Optional;
+
+/**
+ * A local transformation applied by the {@link IterativeOptimizer}.
+ * <p>
+ * Rules only look at the node they are applied to and, through the {@link Lookup},
+ * at its direct sources. The sources of a node passed to a rule are {@link GroupReference}s.
+ */
+public interface Rule
+{
+    /**
+     * Type of plan node this rule applies to. The optimizer only invokes the rule
+     * for nodes of exactly this class.
+     */
+    Class<? extends PlanNode> getPattern();
+
+    /**
+     * @return the replacement for the node, or empty if the rule does not apply
+     */
+    Optional<PlanNode> apply(PlanNode node, Lookup lookup, PlanNodeIdAllocator idAllocator, SymbolAllocator symbolAllocator);
+}
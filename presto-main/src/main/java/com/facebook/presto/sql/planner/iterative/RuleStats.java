@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.iterative;
+
+import io.airlift.stats.TimeStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+@ThreadSafe
+public class RuleStats
+{
+    private final AtomicLong invocations = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final TimeStat time = new TimeStat(NANOSECONDS);
+
+    public void record(long nanos, boolean hit)
+    {
+        invocations.incrementAndGet();
+        if (hit) {
+            hits.incrementAndGet();
+        }
+        time.add(nanos, NANOSECONDS);
+    }
+
+    @Managed
+    public long getInvocations()
+    {
+        return invocations.get();
+    }
+
+    @Managed
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getTime()
+    {
+        return time;
+    }
+}
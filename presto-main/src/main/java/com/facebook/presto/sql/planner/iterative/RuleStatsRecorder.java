@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.iterative;
+
+import com.google.common.collect.ImmutableMap;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+import org.weakref.jmx.ObjectNames;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.inject.Inject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects invocation counts, hit counts and time spent for every rule
+ * of the {@link IterativeOptimizer}. The stats of each rule are exported
+ * as a separate MBean named after the rule.
+ */
+@ThreadSafe
+public class RuleStatsRecorder
+{
+    private final ConcurrentMap<Class<?>, RuleStats> stats = new ConcurrentHashMap<>();
+    private final RuleStats total = new RuleStats();
+    private final MBeanExporter mbeanExporter;
+
+    public RuleStatsRecorder()
+    {
+        this.mbeanExporter = null;
+    }
+
+    @Inject
+    public RuleStatsRecorder(MBeanExporter mbeanExporter)
+    {
+        this.mbeanExporter = mbeanExporter;
+    }
+
+    public void registerAll(Iterable<? extends Rule> rules)
+    {
+        for (Rule rule : rules) {
+            getOrCreateStats(rule.getClass());
+        }
+    }
+
+    public void record(Rule rule, long nanos, boolean hit)
+    {
+        getOrCreateStats(rule.getClass()).record(nanos, hit);
+        total.record(nanos, hit);
+    }
+
+    public Map<Class<?>, RuleStats> getStats()
+    {
+        return ImmutableMap.copyOf(stats);
+    }
+
+    @Managed
+    @Nested
+    public RuleStats getTotal()
+    {
+        return total;
+    }
+
+    @PreDestroy
+    public void destroy()
+    {
+        if (mbeanExporter == null) {
+            return;
+        }
+        for (Class<?> ruleClass : stats.keySet()) {
+            mbeanExporter.unexport(objectName(ruleClass));
+        }
+    }
+
+    private RuleStats getOrCreateStats(Class<?> ruleClass)
+    {
+        RuleStats ruleStats = stats.get(ruleClass);
+        if (ruleStats != null) {
+            return ruleStats;
+        }
+
+        ruleStats = new RuleStats();
+        if (stats.putIfAbsent(ruleClass, ruleStats) == null) {
+            // export the mbean, after checking for races
+            if (mbeanExporter != null) {
+                mbeanExporter.export(objectName(ruleClass), ruleStats);
+            }
+            return ruleStats;
+        }
+        return stats.get(ruleClass);
+    }
+
+    private static String objectName(Class<?> ruleClass)
+    {
+        return ObjectNames.builder(RuleStats.class, ruleClass.getSimpleName()).build();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.iterative.rule;
+
+import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
+import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.SymbolAllocator;
+import com.facebook.presto.sql.planner.iterative.Lookup;
+import com.facebook.presto.sql.planner.iterative.Rule;
+import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.facebook.presto.sql.planner.plan.ProjectNode;
+import com.facebook.presto.sql.tree.Expression;
+import com.facebook.presto.sql.tree.QualifiedNameReference;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Removes projections that output exactly the symbols of their source, in the same order
+ */
+public class RemoveRedundantIdentityProjections
+        implements Rule
+{
+    @Override
+    public Class<? extends PlanNode> getPattern()
+    {
+        return ProjectNode.class;
+    }
+
+    @Override
+    public Optional<PlanNode> apply(PlanNode node, Lookup lookup, PlanNodeIdAllocator idAllocator, SymbolAllocator symbolAllocator)
+    {
+        ProjectNode project = (ProjectNode) node;
+        PlanNode source = lookup.resolve(project.getSource());
+
+        if (!project.getOutputSymbols().equals(source.getOutputSymbols())) {
+            return Optional.empty();
+        }
+
+        for (Map.Entry<Symbol, Expression> entry : project.getAssignments().entrySet()) {
+            Expression expression = entry.getValue();
+            if (!(expression instanceof QualifiedNameReference && ((QualifiedNameReference) expression).getName().equals(entry.getKey().toQualifiedName()))) {
+                return Optional.empty();
+            }
+        }
+
+        return Optional.of(source);
+    }
+}
@@ -15,9 +15,11 @@ package com.facebook.presto.sql.planner.optimizations;
 
 import com.facebook.presto.Session;
 import com.facebook.presto.SystemSessionProperties;
+import com.facebook.presto.metadata.ColumnHandle;
 import com.facebook.presto.metadata.FunctionInfo;
 import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.metadata.Signature;
+import com.facebook.presto.metadata.TableBucketing;
 import com.facebook.presto.operator.aggregation.InternalAggregationFunction;
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
@@ -33,6 +35,8 @@ import com.facebook.presto.sql.planner.plan.LimitNode;
 import com.facebook.presto.sql.planner.plan.MarkDistinctNode;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.facebook.presto.sql.planner.plan.PlanRewriter;
 import com.facebook.presto.sql.planner.plan.PlanVisitor;
 import com.facebook.presto.sql.planner.plan.RowNumberNode;
 import com.facebook.presto.sql.planner.plan.SemiJoinNode;
@@ -50,14 +54,17 @@ import com.facebook.presto.sql.tree.QualifiedNameReference;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 
 import static com.facebook.presto.SystemSessionProperties.isBigQueryEnabled;
@@ -73,20 +80,49 @@ public class AddExchanges
     private final Metadata metadata;
     private final boolean distributedIndexJoins;
     private final boolean distributedJoins;
+    private final boolean bucketExecution;
 
-    public AddExchanges(Metadata metadata, boolean distributedIndexJoins, boolean distributedJoins)
+    public AddExchanges(Metadata metadata, boolean distributedIndexJoins, boolean distributedJoins, boolean bucketExecution)
     {
         this.metadata = metadata;
         this.distributedIndexJoins = distributedIndexJoins;
         this.distributedJoins = distributedJoins;
+        this.bucketExecution = bucketExecution;
     }
 
     @Override
     public PlanNode optimize(PlanNode plan, Session session, Map<Symbol, Type> types, SymbolAllocator symbolAllocator, PlanNodeIdAllocator idAllocator)
     {
         boolean distributedJoinEnabled = SystemSessionProperties.isDistributedJoinEnabled(session, distributedJoins);
-        PlanWithProperties result = plan.accept(new Rewriter(symbolAllocator, idAllocator, session, distributedIndexJoins, distributedJoinEnabled), null);
-        return result.getNode();
+        boolean bucketExecutionEnabled = SystemSessionProperties.isBucketExecutionEnabled(session, bucketExecution);
+        Rewriter rewriter = new Rewriter(symbolAllocator, idAllocator, session, distributedIndexJoins, distributedJoinEnabled, bucketExecutionEnabled);
+        PlanWithProperties result = plan.accept(rewriter, null);
+
+        if (rewriter.getBucketedScans().isEmpty()) {
+            return result.getNode();
+        }
+        // the exchanges for these scans were removed, so they must be scheduled by bucket
+        return PlanRewriter.rewriteWith(new MarkBucketedScans(rewriter.getBucketedScans()), result.getNode());
+    }
+
+    private static class MarkBucketedScans
+            extends PlanRewriter<Void>
+    {
+        private final Set<PlanNodeId> bucketedScans;
+
+        public MarkBucketedScans(Set<PlanNodeId> bucketedScans)
+        {
+            this.bucketedScans = ImmutableSet.copyOf(bucketedScans);
+        }
+
+        @Override
+        public PlanNode visitTableScan(TableScanNode node, RewriteContext<Void> context)
+        {
+            if (!bucketedScans.contains(node.getId())) {
+                return node;
+            }
+            return new TableScanNode(node.getId(), node.getTable(), node.getOutputSymbols(), node.getAssignments(), node.getOriginalConstraint(), node.getSummarizedPartition(), true);
+        }
     }
 
     private class Rewriter
@@ -97,14 +133,24 @@ public class AddExchanges
         private final Session session;
         private final boolean distributedIndexJoins;
         private final boolean distributedJoins;
+        private final boolean bucketExecution;
 
-        public Rewriter(SymbolAllocator allocator, PlanNodeIdAllocator idAllocator, Session session, boolean distributedIndexJoins, boolean distributedJoins)
+        // table scans whose bucketing is relied upon instead of an exchange
+        private final Set<PlanNodeId> bucketedScans = new HashSet<>();
+
+        public Rewriter(SymbolAllocator allocator, PlanNodeIdAllocator idAllocator, Session session, boolean distributedIndexJoins, boolean distributedJoins, boolean bucketExecution)
         {
             this.allocator = allocator;
             this.idAllocator = idAllocator;
             this.session = session;
             this.distributedIndexJoins = distributedIndexJoins;
             this.distributedJoins = distributedJoins;
+            this.bucketExecution = bucketExecution;
+        }
+
+        public Set<PlanNodeId> getBucketedScans()
+        {
+            return bucketedScans;
         }
 
         @Override
@@ -142,6 +188,12 @@ public class AddExchanges
                 return propagateChildProperties(node, source);
             }
 
+            // all rows of a group are in the same bucket of the table
+            if (source.getProperties().isBucketedOn(node.getGroupBy())) {
+                useBucketing(source.getProperties());
+                return propagateChildProperties(node, source);
+            }
+
             // otherwise, add a partial and final with an exchange in between
             Map<Symbol, Symbol> masks = node.getMasks();
 
@@ -280,9 +332,40 @@ public class AddExchanges
         @Override
         public PlanWithProperties visitTableScan(TableScanNode node, Void context)
         {
+            if (bucketExecution) {
+                Optional<List<Symbol>> bucketSymbols = Optional.empty();
+                Optional<TableBucketing> bucketing = metadata.getTableBucketing(node.getTable());
+                if (bucketing.isPresent()) {
+                    bucketSymbols = getBucketSymbols(node, bucketing.get());
+                }
+                if (bucketSymbols.isPresent()) {
+                    return new PlanWithProperties(node, ActualProperties.of(
+                            PartitioningProperties.bucketed(bucketSymbols.get(), bucketing.get(), ImmutableSet.of(node.getId())),
+                            PlacementProperties.source()));
+                }
+            }
             return new PlanWithProperties(node, ActualProperties.of(PartitioningProperties.arbitrary(), PlacementProperties.source()));
         }
 
+        private Optional<List<Symbol>> getBucketSymbols(TableScanNode node, TableBucketing bucketing)
+        {
+            Map<ColumnHandle, Symbol> columnSymbols = new HashMap<>();
+            for (Symbol symbol : node.getOutputSymbols()) {
+                columnSymbols.put(node.getAssignments().get(symbol), symbol);
+            }
+
+            // the bucketing can only be used if the scan produces all bucket columns
+            ImmutableList.Builder<Symbol> symbols = ImmutableList.builder();
+            for (ColumnHandle column : bucketing.getBucketColumns()) {
+                Symbol symbol = columnSymbols.get(column);
+                if (symbol == null) {
+                    return Optional.empty();
+                }
+                symbols.add(symbol);
+            }
+            return Optional.of(symbols.build());
+        }
+
         @Override
         public PlanWithProperties visitValues(ValuesNode node, Void context)
         {
@@ -309,10 +392,36 @@ public class AddExchanges
             List<Symbol> leftSymbols = Lists.transform(node.getCriteria(), JoinNode.EquiJoinClause::getLeft);
             List<Symbol> rightSymbols = Lists.transform(node.getCriteria(), JoinNode.EquiJoinClause::getRight);
 
+            if (isColocated(node, left.getProperties(), right.getProperties())) {
+                // bucket N of both sides is processed by the same task, so no exchange is needed
+                useBucketing(left.getProperties());
+                useBucketing(right.getProperties());
+
+                PartitioningProperties partitioning = left.getProperties().getPartitioning();
+                return new PlanWithProperties(
+                        new JoinNode(node.getId(),
+                                node.getType(),
+                                left.getNode(),
+                                right.getNode(),
+                                node.getCriteria(),
+                                node.getLeftHashSymbol(),
+                                node.getRightHashSymbol()),
+                        ActualProperties.of(
+                                PartitioningProperties.bucketed(
+                                        partitioning.getKeys().get(),
+                                        partitioning.getBucketing().get(),
+                                        ImmutableSet.<PlanNodeId>builder()
+                                                .addAll(partitioning.getBucketedScans())
+                                                .addAll(right.getProperties().getPartitioning().getBucketedScans())
+                                                .build()),
+                                left.getProperties().getPlacement()));
+            }
+
             PlanNode rightNode;
             if (distributedJoins) {
-                left = enforce(left, Requirements.of(PartitioningProperties.partitioned(leftSymbols, leftHashSymbol)));
-                rightNode = enforce(right, Requirements.of(PartitioningProperties.partitioned(rightSymbols, rightHashSymbol))).getNode();
+                // a bucketed side is not distributed like the hash partitioned exchange of the other side
+                left = enforce(withoutBucketing(left), Requirements.of(PartitioningProperties.partitioned(leftSymbols, leftHashSymbol)));
+                rightNode = enforce(withoutBucketing(right), Requirements.of(PartitioningProperties.partitioned(rightSymbols, rightHashSymbol))).getNode();
             }
             else {
                 rightNode = new ExchangeNode(
@@ -336,6 +445,48 @@ public class AddExchanges
                     left.getProperties());
         }
 
+        private boolean isColocated(JoinNode node, ActualProperties left, ActualProperties right)
+        {
+            if (!left.isBucketed() || !right.isBucketed()) {
+                return false;
+            }
+
+            PartitioningProperties leftPartitioning = left.getPartitioning();
+            PartitioningProperties rightPartitioning = right.getPartitioning();
+            if (!leftPartitioning.getBucketing().get().isCompatibleWith(rightPartitioning.getBucketing().get())) {
+                return false;
+            }
+
+            // the i-th bucket column of the left side must be equal to the i-th bucket column of the right side
+            List<Symbol> leftKeys = leftPartitioning.getKeys().get();
+            List<Symbol> rightKeys = rightPartitioning.getKeys().get();
+            for (int i = 0; i < leftKeys.size(); i++) {
+                Symbol leftKey = leftKeys.get(i);
+                Symbol rightKey = rightKeys.get(i);
+                boolean joined = node.getCriteria().stream()
+                        .anyMatch(clause -> clause.getLeft().equals(leftKey) && clause.getRight().equals(rightKey));
+                if (!joined) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void useBucketing(ActualProperties properties)
+        {
+            if (properties.isBucketed()) {
+                bucketedScans.addAll(properties.getPartitioning().getBucketedScans());
+            }
+        }
+
+        private PlanWithProperties withoutBucketing(PlanWithProperties plan)
+        {
+            if (!plan.getProperties().isBucketed()) {
+                return plan;
+            }
+            return new PlanWithProperties(plan.getNode(), ActualProperties.of(PartitioningProperties.arbitrary(), plan.getProperties().getPlacement()));
+        }
+
         @Override
         public PlanWithProperties visitSemiJoin(SemiJoinNode node, Void context)
         {
@@ -503,6 +654,12 @@ public class AddExchanges
                 return new PlanWithProperties(node, properties);
             }
 
+            // req: partitioned[k], actual: bucketed on a subset of k
+            if (requirements.isPartitionedOnKeys() && properties.isBucketedOn(requirements.getPartitioning().get().getKeys().get())) {
+                useBucketing(properties);
+                return new PlanWithProperties(node, properties);
+            }
+
             // req: partitioned, actual: partitioned on same keys or arbitrary
             if (requirements.isPartitioned() &&
                     properties.isPartitioned() &&
@@ -652,6 +809,11 @@ public class AddExchanges
             return partitioning;
         }
 
+        public PlacementProperties getPlacement()
+        {
+            return placement;
+        }
+
         public boolean isCoordinatorOnly()
         {
             return placement.getType() == PlacementProperties.Type.COORDINATOR_ONLY;
@@ -674,6 +836,19 @@ public class AddExchanges
             return partitioning.getType() == PartitioningProperties.Type.UNPARTITIONED;
         }
 
+        public boolean isBucketed()
+        {
+            return partitioning.getBucketing().isPresent();
+        }
+
+        /**
+         * Returns true if all rows with the same values for the keys are in the same table bucket.
+         */
+        public boolean isBucketedOn(List<Symbol> keys)
+        {
+            return isBucketed() && keys.containsAll(partitioning.getKeys().get());
+        }
+
         @Override
         public String toString()
         {
@@ -693,6 +868,10 @@ public class AddExchanges
         private final Optional<Symbol> hashSymbol;
         private final Optional<List<Symbol>> keys;
 
+        // present if the rows are distributed by the buckets of the scanned tables
+        private final Optional<TableBucketing> bucketing;
+        private final Set<PlanNodeId> bucketedScans;
+
         public static PartitioningProperties arbitrary()
         {
             return new PartitioningProperties(Type.PARTITIONED);
@@ -708,18 +887,28 @@ public class AddExchanges
             return new PartitioningProperties(Type.PARTITIONED, symbols, hashSymbol);
         }
 
+        public static PartitioningProperties bucketed(List<Symbol> symbols, TableBucketing bucketing, Set<PlanNodeId> bucketedScans)
+        {
+            return new PartitioningProperties(Type.PARTITIONED, Optional.of(symbols), Optional.empty(), Optional.of(bucketing), bucketedScans);
+        }
+
         private PartitioningProperties(Type type)
         {
-            this.type = type;
-            this.keys = Optional.empty();
-            this.hashSymbol = Optional.empty();
+            this(type, Optional.empty(), Optional.empty(), Optional.empty(), ImmutableSet.of());
         }
 
         private PartitioningProperties(Type type, List<Symbol> keys, Optional<Symbol> hashSymbol)
+        {
+            this(type, Optional.of(keys), hashSymbol, Optional.empty(), ImmutableSet.of());
+        }
+
+        private PartitioningProperties(Type type, Optional<List<Symbol>> keys, Optional<Symbol> hashSymbol, Optional<TableBucketing> bucketing, Set<PlanNodeId> bucketedScans)
         {
             this.type = type;
-            this.keys = Optional.of(keys);
+            this.keys = keys;
             this.hashSymbol = hashSymbol;
+            this.bucketing = bucketing;
+            this.bucketedScans = ImmutableSet.copyOf(bucketedScans);
         }
 
         public Type getType()
@@ -737,9 +926,22 @@ public class AddExchanges
             return hashSymbol;
         }
 
+        public Optional<TableBucketing> getBucketing()
+        {
+            return bucketing;
+        }
+
+        public Set<PlanNodeId> getBucketedScans()
+        {
+            return bucketedScans;
+        }
+
         @Override
         public String toString()
         {
+            if (type == Type.PARTITIONED && bucketing.isPresent()) {
+                return type.toString() + ": " + keys.get() + " (bucketed)";
+            }
             if (type == Type.PARTITIONED) {
                 return type.toString() + ": " + (keys.isPresent() ? keys.get() : "*");
             }
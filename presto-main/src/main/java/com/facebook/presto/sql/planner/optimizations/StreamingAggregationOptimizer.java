@@ -0,0 +1,244 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.optimizations;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.SystemSessionProperties;
+import com.facebook.presto.metadata.ColumnHandle;
+import com.facebook.presto.metadata.Metadata;
+import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
+import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.SymbolAllocator;
+import com.facebook.presto.sql.planner.plan.AggregationNode;
+import com.facebook.presto.sql.planner.plan.FilterNode;
+import com.facebook.presto.sql.planner.plan.LimitNode;
+import com.facebook.presto.sql.planner.plan.MarkDistinctNode;
+import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.facebook.presto.sql.planner.plan.PlanRewriter;
+import com.facebook.presto.sql.planner.plan.PlanVisitor;
+import com.facebook.presto.sql.planner.plan.ProjectNode;
+import com.facebook.presto.sql.planner.plan.SortNode;
+import com.facebook.presto.sql.planner.plan.TableScanNode;
+import com.facebook.presto.sql.tree.Expression;
+import com.facebook.presto.sql.tree.QualifiedNameReference;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.sql.planner.plan.AggregationNode.Step.PARTIAL;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Marks group by aggregations whose input is already grouped by the group by keys,
+ * so they can be executed by a streaming aggregation instead of a hash aggregation.
+ * <p>
+ * The output of a sort is grouped for the whole stream. The splits of a table are
+ * only grouped individually when the connector reports them as sorted, and a group
+ * may span several splits, which is only correct for partial aggregations.
+ * This must run after {@link AddExchanges}, which creates the partial aggregations.
+ */
+public class StreamingAggregationOptimizer
+        extends PlanOptimizer
+{
+    private final Metadata metadata;
+    private final boolean streamingAggregationEnabled;
+
+    public StreamingAggregationOptimizer(Metadata metadata, boolean streamingAggregationEnabled)
+    {
+        this.metadata = checkNotNull(metadata, "metadata is null");
+        this.streamingAggregationEnabled = streamingAggregationEnabled;
+    }
+
+    @Override
+    public PlanNode optimize(PlanNode plan, Session session, Map<Symbol, Type> types, SymbolAllocator symbolAllocator, PlanNodeIdAllocator idAllocator)
+    {
+        checkNotNull(plan, "plan is null");
+        checkNotNull(session, "session is null");
+        checkNotNull(types, "types is null");
+        checkNotNull(symbolAllocator, "symbolAllocator is null");
+        checkNotNull(idAllocator, "idAllocator is null");
+
+        if (SystemSessionProperties.isStreamingAggregationEnabled(session, streamingAggregationEnabled)) {
+            return PlanRewriter.rewriteWith(new Rewriter(metadata), plan);
+        }
+        return plan;
+    }
+
+    private static class Rewriter
+            extends PlanRewriter<Void>
+    {
+        private final Metadata metadata;
+
+        private Rewriter(Metadata metadata)
+        {
+            this.metadata = metadata;
+        }
+
+        @Override
+        public PlanNode visitAggregation(AggregationNode node, RewriteContext<Void> context)
+        {
+            PlanNode source = context.rewrite(node.getSource());
+
+            boolean streaming = node.isStreaming();
+            if (!streaming && !node.getGroupBy().isEmpty()) {
+                StreamOrder order = source.accept(new StreamOrderExtractor(metadata), null);
+                streaming = order.isGroupedOn(node.getGroupBy()) && (order.isWholeStream() || node.getStep() == PARTIAL);
+            }
+
+            if (source == node.getSource() && streaming == node.isStreaming()) {
+                return node;
+            }
+            return new AggregationNode(
+                    node.getId(),
+                    source,
+                    node.getGroupBy(),
+                    node.getAggregations(),
+                    node.getFunctions(),
+                    node.getMasks(),
+                    node.getStep(),
+                    node.getSampleWeight(),
+                    node.getConfidence(),
+                    node.getHashSymbol(),
+                    streaming);
+        }
+    }
+
+    /**
+     * Derives the order of the rows produced by a plan node within a single driver.
+     */
+    private static class StreamOrderExtractor
+            extends PlanVisitor<Void, StreamOrder>
+    {
+        private final Metadata metadata;
+
+        private StreamOrderExtractor(Metadata metadata)
+        {
+            this.metadata = metadata;
+        }
+
+        @Override
+        protected StreamOrder visitPlan(PlanNode node, Void context)
+        {
+            return StreamOrder.UNORDERED;
+        }
+
+        @Override
+        public StreamOrder visitSort(SortNode node, Void context)
+        {
+            return new StreamOrder(node.getOrderBy(), true);
+        }
+
+        @Override
+        public StreamOrder visitTableScan(TableScanNode node, Void context)
+        {
+            Map<ColumnHandle, Symbol> symbols = new HashMap<>();
+            for (Map.Entry<Symbol, ColumnHandle> entry : node.getAssignments().entrySet()) {
+                symbols.put(entry.getValue(), entry.getKey());
+            }
+
+            // only the leading sort columns that are read by the scan are useful
+            ImmutableList.Builder<Symbol> sortSymbols = ImmutableList.builder();
+            for (ColumnHandle column : metadata.getSortedColumns(node.getTable())) {
+                Symbol symbol = symbols.get(column);
+                if (symbol == null) {
+                    break;
+                }
+                sortSymbols.add(symbol);
+            }
+            return new StreamOrder(sortSymbols.build(), false);
+        }
+
+        @Override
+        public StreamOrder visitProject(ProjectNode node, Void context)
+        {
+            StreamOrder order = node.getSource().accept(this, context);
+
+            Map<Symbol, Symbol> outputs = new HashMap<>();
+            for (Map.Entry<Symbol, Expression> entry : node.getAssignments().entrySet()) {
+                if (entry.getValue() instanceof QualifiedNameReference) {
+                    outputs.putIfAbsent(Symbol.fromQualifiedName(((QualifiedNameReference) entry.getValue()).getName()), entry.getKey());
+                }
+            }
+
+            ImmutableList.Builder<Symbol> sortSymbols = ImmutableList.builder();
+            for (Symbol symbol : order.getSortSymbols()) {
+                Symbol output = outputs.get(symbol);
+                if (output == null) {
+                    break;
+                }
+                sortSymbols.add(output);
+            }
+            return new StreamOrder(sortSymbols.build(), order.isWholeStream());
+        }
+
+        @Override
+        public StreamOrder visitFilter(FilterNode node, Void context)
+        {
+            return node.getSource().accept(this, context);
+        }
+
+        @Override
+        public StreamOrder visitLimit(LimitNode node, Void context)
+        {
+            return node.getSource().accept(this, context);
+        }
+
+        @Override
+        public StreamOrder visitMarkDistinct(MarkDistinctNode node, Void context)
+        {
+            return node.getSource().accept(this, context);
+        }
+    }
+
+    private static class StreamOrder
+    {
+        public static final StreamOrder UNORDERED = new StreamOrder(ImmutableList.of(), true);
+
+        private final List<Symbol> sortSymbols;
+        // false if the rows are only sorted within each split
+        private final boolean wholeStream;
+
+        public StreamOrder(List<Symbol> sortSymbols, boolean wholeStream)
+        {
+            this.sortSymbols = ImmutableList.copyOf(sortSymbols);
+            this.wholeStream = wholeStream;
+        }
+
+        public List<Symbol> getSortSymbols()
+        {
+            return sortSymbols;
+        }
+
+        public boolean isWholeStream()
+        {
+            return wholeStream;
+        }
+
+        /**
+         * Rows with the same values in the symbols are adjacent if the symbols
+         * are exactly the leading sort symbols, in any order.
+         */
+        public boolean isGroupedOn(List<Symbol> symbols)
+        {
+            if (symbols.size() > sortSymbols.size()) {
+                return false;
+            }
+            return ImmutableSet.copyOf(sortSymbols.subList(0, symbols.size())).equals(ImmutableSet.copyOf(symbols));
+        }
+    }
+}
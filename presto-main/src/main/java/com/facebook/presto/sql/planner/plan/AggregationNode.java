@@ -44,6 +44,8 @@ public class AggregationNode
     private final Optional<Symbol> sampleWeight;
     private final double confidence;
     private final Optional<Symbol> hashSymbol;
+    // the rows of each group are adjacent in the input, so groups can be emitted as soon as the key changes
+    private final boolean streaming;
 
     public enum Step
     {
@@ -57,6 +59,11 @@ public class AggregationNode
         this(id, source, groupByKeys, aggregations, functions, masks, Step.SINGLE, sampleWeight, confidence, hashSymbol);
     }
 
+    public AggregationNode(PlanNodeId id, PlanNode source, List<Symbol> groupByKeys, Map<Symbol, FunctionCall> aggregations, Map<Symbol, Signature> functions, Map<Symbol, Symbol> masks, Step step, Optional<Symbol> sampleWeight, double confidence, Optional<Symbol> hashSymbol)
+    {
+        this(id, source, groupByKeys, aggregations, functions, masks, step, sampleWeight, confidence, hashSymbol, false);
+    }
+
     @JsonCreator
     public AggregationNode(@JsonProperty("id") PlanNodeId id,
             @JsonProperty("source") PlanNode source,
@@ -67,7 +74,8 @@ public class AggregationNode
             @JsonProperty("step") Step step,
             @JsonProperty("sampleWeight") Optional<Symbol> sampleWeight,
             @JsonProperty("confidence") double confidence,
-            @JsonProperty("hashSymbol") Optional<Symbol> hashSymbol)
+            @JsonProperty("hashSymbol") Optional<Symbol> hashSymbol,
+            @JsonProperty("streaming") boolean streaming)
     {
         super(id);
 
@@ -84,6 +92,8 @@ public class AggregationNode
         checkArgument(confidence >= 0 && confidence <= 1, "confidence must be in [0, 1]");
         this.confidence = confidence;
         this.hashSymbol = hashSymbol;
+        checkArgument(!streaming || !groupByKeys.isEmpty(), "streaming aggregation requires group by keys");
+        this.streaming = streaming;
     }
 
     @Override
@@ -159,6 +169,12 @@ public class AggregationNode
         return hashSymbol;
     }
 
+    @JsonProperty("streaming")
+    public boolean isStreaming()
+    {
+        return streaming;
+    }
+
     @Override
     public <C, R> R accept(PlanVisitor<C, R> visitor, C context)
     {
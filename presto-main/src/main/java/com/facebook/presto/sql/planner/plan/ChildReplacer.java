@@ -27,6 +27,7 @@ package com.facebook.presto.sql.planner.plan;
  * limitations under the License.
  */
 
+import com.facebook.presto.sql.planner.iterative.GroupReference;
 import com.google.common.collect.Iterables;
 
 import java.util.List;
@@ -142,7 +143,7 @@ public class ChildReplacer
     @Override
     public PlanNode visitAggregation(AggregationNode node, List<PlanNode> newChildren)
     {
-        return new AggregationNode(node.getId(), Iterables.getOnlyElement(newChildren), node.getGroupBy(), node.getAggregations(), node.getFunctions(), node.getMasks(), node.getStep(), node.getSampleWeight(), node.getConfidence(), node.getHashSymbol());
+        return new AggregationNode(node.getId(), Iterables.getOnlyElement(newChildren), node.getGroupBy(), node.getAggregations(), node.getFunctions(), node.getMasks(), node.getStep(), node.getSampleWeight(), node.getConfidence(), node.getHashSymbol(), node.isStreaming());
     }
 
     @Override
@@ -198,4 +199,11 @@ public class ChildReplacer
     {
         return new UnionNode(node.getId(), newChildren, node.getSymbolMapping());
     }
+
+    @Override
+    public PlanNode visitGroupReference(GroupReference node, List<PlanNode> newChildren)
+    {
+        checkArgument(newChildren.isEmpty(), "newChildren is not empty");
+        return node;
+    }
 }
@@ -13,6 +13,8 @@
  */
 package com.facebook.presto.sql.planner.plan;
 
+import com.facebook.presto.sql.planner.iterative.GroupReference;
+
 public class PlanVisitor<C, R>
 {
     protected R visitPlan(PlanNode node, C context)
@@ -144,4 +146,9 @@ public class PlanVisitor<C, R>
     {
         return visitPlan(node, context);
     }
+
+    public R visitGroupReference(GroupReference node, C context)
+    {
+        return visitPlan(node, context);
+    }
 }
@@ -51,6 +51,10 @@ public class TableScanNode
     private final SummarizedPartition summarizedPartition;
     private final boolean partitionsDroppedBySerialization;
 
+    // the scan is scheduled by bucket: all splits of one bucket are processed by the same
+    // driver, on the node processing the same bucket of the other bucketed scans of the fragment
+    private final boolean bucketed;
+
     // HACK!
     //
     // This field exists for the sole purpose of being able to print the original predicates (from the query) in
@@ -64,12 +68,17 @@ public class TableScanNode
 
     public TableScanNode(PlanNodeId id, TableHandle table, List<Symbol> outputSymbols, Map<Symbol, ColumnHandle> assignments, @Nullable Expression originalConstraint, Optional<GeneratedPartitions> generatedPartitions)
     {
-        this(id, table, outputSymbols, assignments, originalConstraint, new SummarizedPartition(generatedPartitions), false);
+        this(id, table, outputSymbols, assignments, originalConstraint, new SummarizedPartition(generatedPartitions), false, false);
     }
 
     public TableScanNode(PlanNodeId id, TableHandle table, List<Symbol> outputSymbols, Map<Symbol, ColumnHandle> assignments, @Nullable Expression originalConstraint, SummarizedPartition summarizedPartition)
     {
-        this(id, table, outputSymbols, assignments, originalConstraint, summarizedPartition, false);
+        this(id, table, outputSymbols, assignments, originalConstraint, summarizedPartition, false, false);
+    }
+
+    public TableScanNode(PlanNodeId id, TableHandle table, List<Symbol> outputSymbols, Map<Symbol, ColumnHandle> assignments, @Nullable Expression originalConstraint, SummarizedPartition summarizedPartition, boolean bucketed)
+    {
+        this(id, table, outputSymbols, assignments, originalConstraint, summarizedPartition, bucketed, false);
     }
 
     @JsonCreator
@@ -77,12 +86,13 @@ public class TableScanNode
             @JsonProperty("table") TableHandle table,
             @JsonProperty("outputSymbols") List<Symbol> outputSymbols,
             @JsonProperty("assignments") Map<Symbol, ColumnHandle> assignments,
-            @JsonProperty("originalConstraint") @Nullable Expression originalConstraint)
+            @JsonProperty("originalConstraint") @Nullable Expression originalConstraint,
+            @JsonProperty("bucketed") boolean bucketed)
     {
-        this(id, table, outputSymbols, assignments, originalConstraint, new SummarizedPartition(Optional.empty()), true);
+        this(id, table, outputSymbols, assignments, originalConstraint, new SummarizedPartition(Optional.empty()), bucketed, true);
     }
 
-    private TableScanNode(PlanNodeId id, TableHandle table, List<Symbol> outputSymbols, Map<Symbol, ColumnHandle> assignments, @Nullable Expression originalConstraint, SummarizedPartition summarizedPartition, boolean partitionsDroppedBySerialization)
+    private TableScanNode(PlanNodeId id, TableHandle table, List<Symbol> outputSymbols, Map<Symbol, ColumnHandle> assignments, @Nullable Expression originalConstraint, SummarizedPartition summarizedPartition, boolean bucketed, boolean partitionsDroppedBySerialization)
     {
         super(id);
 
@@ -97,6 +107,7 @@ public class TableScanNode
         this.assignments = ImmutableMap.copyOf(assignments);
         this.originalConstraint = originalConstraint;
         this.summarizedPartition = summarizedPartition;
+        this.bucketed = bucketed;
         this.partitionsDroppedBySerialization = partitionsDroppedBySerialization;
         checkArgument(summarizedPartition.getPartitionDomainSummary().isNone() || ImmutableSet.copyOf(assignments.values()).containsAll(summarizedPartition.getPartitionDomainSummary().getDomains().keySet()), "Assignments do not include all of the ColumnHandles specified by the Partitions");
     }
@@ -127,6 +138,12 @@ public class TableScanNode
         return originalConstraint;
     }
 
+    @JsonProperty("bucketed")
+    public boolean isBucketed()
+    {
+        return bucketed;
+    }
+
     public Optional<GeneratedPartitions> getGeneratedPartitions()
     {
         // If this exception throws, then we might want to consider making Partitions serializable by Jackson
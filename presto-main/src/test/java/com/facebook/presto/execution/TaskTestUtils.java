@@ -80,6 +80,29 @@ public final class TaskTestUtils
             ImmutableList.<Symbol>of(),
             Optional.empty());
 
+    // splits of a bucketed scan are processed by one driver per bucket
+    public static final PlanFragment BUCKETED_PLAN_FRAGMENT = new PlanFragment(
+            new PlanFragmentId("fragment"),
+            new TableScanNode(
+                    TABLE_SCAN_NODE_ID,
+                    new TableHandle("test", new TestingTableHandle()),
+                    ImmutableList.of(SYMBOL),
+                    ImmutableMap.of(SYMBOL, new ColumnHandle("test", new TestingColumnHandle("column"))),
+                    null,
+                    true),
+            ImmutableMap.<Symbol, Type>of(SYMBOL, VARCHAR),
+            ImmutableList.of(SYMBOL),
+            PlanDistribution.SOURCE,
+            TABLE_SCAN_NODE_ID,
+            OutputPartitioning.NONE,
+            ImmutableList.<Symbol>of(),
+            Optional.empty());
+
+    public static ScheduledSplit createBucketedSplit(long sequenceId, int bucket)
+    {
+        return new ScheduledSplit(sequenceId, new Split("test", TestingSplit.createBucketedSplit(bucket)));
+    }
+
     public static LocalExecutionPlanner createTestingPlanner()
     {
         MetadataManager metadata = new MetadataManager();
@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.sql.parser.ParsingException;
+import com.facebook.presto.sql.parser.SqlParser;
+import com.facebook.presto.sql.tree.Statement;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+public class TestParsedStatementCache
+{
+    @Test
+    public void testCachesByQueryText()
+    {
+        ParsedStatementCache cache = new ParsedStatementCache(new SqlParser(), 10);
+
+        Statement statement = cache.parse("SELECT 1");
+        assertSame(cache.parse("SELECT 1"), statement);
+        assertEquals(cache.getMissCount(), 1);
+        assertEquals(cache.getHitCount(), 1);
+
+        // only identical text is shared
+        Statement other = cache.parse("SELECT  1");
+        assertNotSame(other, statement);
+        assertEquals(other, statement);
+        assertEquals(cache.getMissCount(), 2);
+        assertEquals(cache.getSize(), 2);
+    }
+
+    @Test
+    public void testParseFailuresAreNotCached()
+    {
+        ParsedStatementCache cache = new ParsedStatementCache(new SqlParser(), 10);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.parse("SELECT FROM");
+                fail("expected exception");
+            }
+            catch (ParsingException expected) {
+            }
+        }
+        assertEquals(cache.getMissCount(), 2);
+        assertEquals(cache.getSize(), 0);
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        ParsedStatementCache cache = new ParsedStatementCache(new SqlParser(), 0);
+
+        Statement statement = cache.parse("SELECT 1");
+        assertNotSame(cache.parse("SELECT 1"), statement);
+        assertEquals(cache.getHitCount(), 0);
+        assertEquals(cache.getSize(), 0);
+    }
+}
@@ -29,6 +29,7 @@ public class TestQueryManagerConfig
         ConfigAssertions.assertRecordedDefaults(ConfigAssertions.recordDefaults(QueryManagerConfig.class)
                 .setMaxQueryAge(new Duration(15, TimeUnit.MINUTES))
                 .setMaxQueryHistory(100)
+                .setParsedStatementCacheSize(0)
                 .setClientTimeout(new Duration(5, TimeUnit.MINUTES))
                 .setScheduleSplitBatchSize(1000)
                 .setMaxConcurrentQueries(1000)
@@ -52,6 +53,7 @@ public class TestQueryManagerConfig
                 .put("query.client.timeout", "10s")
                 .put("query.max-age", "30s")
                 .put("query.max-history", "10")
+                .put("query.parsed-statement-cache-size", "500")
                 .put("query.schedule-split-batch-size", "99")
                 .put("query.max-concurrent-queries", "10")
                 .put("query.max-queued-queries", "15")
@@ -70,6 +72,7 @@ public class TestQueryManagerConfig
         QueryManagerConfig expected = new QueryManagerConfig()
                 .setMaxQueryAge(new Duration(30, TimeUnit.SECONDS))
                 .setMaxQueryHistory(10)
+                .setParsedStatementCacheSize(500)
                 .setClientTimeout(new Duration(10, TimeUnit.SECONDS))
                 .setScheduleSplitBatchSize(99)
                 .setMaxConcurrentQueries(10)
@@ -20,6 +20,7 @@ import com.facebook.presto.UnpartitionedPagePartitionFunction;
 import com.facebook.presto.event.query.QueryMonitor;
 import com.facebook.presto.execution.SharedBuffer.BufferState;
 import com.facebook.presto.metadata.NodeVersion;
+import com.facebook.presto.spi.Page;
 import com.facebook.presto.sql.planner.LocalExecutionPlanner;
 import com.google.common.base.Functions;
 import com.google.common.collect.ImmutableList;
@@ -39,10 +40,12 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import static com.facebook.presto.OutputBuffers.INITIAL_EMPTY_OUTPUT_BUFFERS;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.execution.TaskTestUtils.BUCKETED_PLAN_FRAGMENT;
 import static com.facebook.presto.execution.TaskTestUtils.EMPTY_SOURCES;
 import static com.facebook.presto.execution.TaskTestUtils.PLAN_FRAGMENT;
 import static com.facebook.presto.execution.TaskTestUtils.SPLIT;
 import static com.facebook.presto.execution.TaskTestUtils.TABLE_SCAN_NODE_ID;
+import static com.facebook.presto.execution.TaskTestUtils.createBucketedSplit;
 import static com.facebook.presto.execution.TaskTestUtils.createTestingPlanner;
 import static com.facebook.presto.execution.TaskTestUtils.updateTask;
 import static io.airlift.concurrent.Threads.threadsNamed;
@@ -146,6 +149,47 @@ public class TestSqlTask
         assertEquals(taskInfo.getState(), TaskState.FINISHED);
     }
 
+    @Test
+    public void testBucketedQuery()
+            throws Exception
+    {
+        SqlTask sqlTask = createInitialTask();
+        OutputBuffers outputBuffers = INITIAL_EMPTY_OUTPUT_BUFFERS.withBuffer(OUT, new UnpartitionedPagePartitionFunction()).withNoMoreBufferIds();
+
+        // drivers are not created until all splits of the buckets are known
+        TaskInfo taskInfo = sqlTask.updateTask(TEST_SESSION,
+                BUCKETED_PLAN_FRAGMENT,
+                ImmutableList.of(new TaskSource(TABLE_SCAN_NODE_ID, ImmutableSet.of(createBucketedSplit(0, 0), createBucketedSplit(1, 1), createBucketedSplit(2, 0)), false)),
+                outputBuffers);
+        assertEquals(taskInfo.getState(), TaskState.RUNNING);
+        assertEquals(taskInfo.getStats().getTotalDrivers(), 0);
+
+        // one driver reads all splits of a bucket
+        taskInfo = sqlTask.updateTask(TEST_SESSION,
+                BUCKETED_PLAN_FRAGMENT,
+                ImmutableList.of(new TaskSource(TABLE_SCAN_NODE_ID, ImmutableSet.of(createBucketedSplit(3, 1), createBucketedSplit(4, 2)), true)),
+                outputBuffers);
+        assertEquals(taskInfo.getStats().getTotalDrivers(), 3);
+
+        int rows = 0;
+        long token = 0;
+        while (true) {
+            BufferResult results = sqlTask.getTaskResults(OUT, token, new DataSize(1, MEGABYTE)).get();
+            if (results.isBufferClosed()) {
+                break;
+            }
+            for (Page page : results.getPages()) {
+                rows += page.getPositionCount();
+            }
+            token = results.getToken() + results.getPages().size();
+        }
+        assertEquals(rows, 5);
+
+        taskInfo = sqlTask.getTaskInfo(taskInfo.getState()).get(1, SECONDS);
+        assertEquals(taskInfo.getState(), TaskState.FINISHED);
+        assertEquals(taskInfo.getStats().getTotalDrivers(), 3);
+    }
+
     @Test
     public void testCancel()
             throws Exception
@@ -19,6 +19,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
+import java.util.OptionalInt;
 
 public class TestingSplit
         implements ConnectorSplit
@@ -26,12 +27,20 @@ public class TestingSplit
     private static HostAddress localHost = HostAddress.fromString("127.0.0.1");
 
     private List<HostAddress> addresses;
+    private OptionalInt bucket = OptionalInt.empty();
 
     public static TestingSplit createLocalSplit()
     {
         return new TestingSplit(ImmutableList.of(localHost));
     }
 
+    public static TestingSplit createBucketedSplit(int bucket)
+    {
+        TestingSplit split = createLocalSplit();
+        split.bucket = OptionalInt.of(bucket);
+        return split;
+    }
+
     public static TestingSplit createEmptySplit()
     {
         return new TestingSplit(ImmutableList.<HostAddress>of());
@@ -66,6 +75,12 @@ public class TestingSplit
         return addresses;
     }
 
+    @Override
+    public OptionalInt getBucket()
+    {
+        return bucket;
+    }
+
     @Override
     public Object getInfo()
     {
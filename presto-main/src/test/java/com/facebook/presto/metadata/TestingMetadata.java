@@ -19,6 +19,7 @@ import com.facebook.presto.spi.ConnectorInsertTableHandle;
 import com.facebook.presto.spi.ConnectorMetadata;
 import com.facebook.presto.spi.ConnectorOutputTableHandle;
 import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.ConnectorTableBucketing;
 import com.facebook.presto.spi.ConnectorTableHandle;
 import com.facebook.presto.spi.ConnectorTableMetadata;
 import com.facebook.presto.spi.PrestoException;
@@ -34,6 +35,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -48,6 +50,8 @@ public class TestingMetadata
 {
     private final ConcurrentMap<SchemaTableName, ConnectorTableMetadata> tables = new ConcurrentHashMap<>();
     private final ConcurrentMap<SchemaTableName, String> views = new ConcurrentHashMap<>();
+    private final ConcurrentMap<SchemaTableName, ConnectorTableBucketing> bucketings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<SchemaTableName, List<ConnectorColumnHandle>> sortedColumns = new ConcurrentHashMap<>();
 
     @Override
     public List<String> listSchemaNames(ConnectorSession session)
@@ -97,6 +101,28 @@ public class TestingMetadata
         return null;
     }
 
+    @Override
+    public ConnectorTableBucketing getTableBucketing(ConnectorTableHandle tableHandle)
+    {
+        return bucketings.get(getTableName(tableHandle));
+    }
+
+    public void setTableBucketing(SchemaTableName tableName, ConnectorTableBucketing bucketing)
+    {
+        bucketings.put(tableName, bucketing);
+    }
+
+    @Override
+    public List<ConnectorColumnHandle> getSortedColumns(ConnectorTableHandle tableHandle)
+    {
+        return sortedColumns.getOrDefault(getTableName(tableHandle), ImmutableList.of());
+    }
+
+    public void setSortedColumns(SchemaTableName tableName, List<ConnectorColumnHandle> columns)
+    {
+        sortedColumns.put(tableName, ImmutableList.copyOf(columns));
+    }
+
     @Override
     public boolean canCreateSampledTables(ConnectorSession session)
     {
@@ -285,5 +311,26 @@ public class TestingMetadata
         {
             return type;
         }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(name, ordinalPosition, type);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            InMemoryColumnHandle other = (InMemoryColumnHandle) obj;
+            return Objects.equals(this.name, other.name) &&
+                    this.ordinalPosition == other.ordinalPosition &&
+                    Objects.equals(this.type, other.type);
+        }
     }
 }
@@ -18,6 +18,7 @@ import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TestingSplit;
 import com.facebook.presto.metadata.ColumnHandle;
 import com.facebook.presto.metadata.Split;
+import com.facebook.presto.operator.TestTableScanOperator.SplitPageSourceProvider;
 import com.facebook.presto.operator.index.PageRecordSet;
 import com.facebook.presto.spi.ConnectorPageSource;
 import com.facebook.presto.spi.FixedPageSource;
@@ -28,6 +29,7 @@ import com.facebook.presto.split.PageSourceProvider;
 import com.facebook.presto.sql.planner.plan.PlanNodeId;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.testng.annotations.Test;
 
 import java.util.List;
@@ -36,10 +38,13 @@ import java.util.concurrent.ExecutorService;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
 import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
 import static com.facebook.presto.operator.ProjectionFunctions.singleColumn;
+import static com.facebook.presto.operator.TestTableScanOperator.newSplit;
 import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 public class TestScanFilterAndProjectOperator
@@ -117,6 +122,88 @@ public class TestScanFilterAndProjectOperator
         assertEquals(actual, expected);
     }
 
+    @Test
+    public void testMultipleSplits()
+            throws Exception
+    {
+        SplitPageSourceProvider pageSourceProvider = new SplitPageSourceProvider(
+                SequencePageBuilder.createSequencePage(ImmutableList.of(VARCHAR), 10, 0),
+                SequencePageBuilder.createSequencePage(ImmutableList.of(VARCHAR), 20, 100));
+        SourceOperator operator = createOperator(pageSourceProvider, newDriverContext());
+
+        // blocked until the first split arrives
+        ListenableFuture<?> blocked = operator.isBlocked();
+        assertFalse(blocked.isDone());
+        assertFalse(operator.isFinished());
+
+        operator.addSplit(newSplit());
+        assertTrue(blocked.isDone());
+        assertNull(operator.getOutput());
+
+        // the first split is exhausted, so the operator waits for the next one
+        blocked = operator.isBlocked();
+        assertFalse(blocked.isDone());
+        assertFalse(operator.isFinished());
+
+        operator.addSplit(newSplit());
+        assertTrue(blocked.isDone());
+        assertNull(operator.getOutput());
+        assertEquals(pageSourceProvider.getPageSources().size(), 2);
+        assertTrue(pageSourceProvider.getPageSources().get(0).isClosed());
+
+        // rows of both splits are returned in one page once all splits are read
+        operator.noMoreSplits();
+        assertTrue(operator.isBlocked().isDone());
+        assertEquals(operator.getOutput().getPositionCount(), 30);
+        assertTrue(operator.isFinished());
+
+        operator.close();
+        assertTrue(pageSourceProvider.getPageSources().get(1).isClosed());
+    }
+
+    @Test
+    public void testFinishWithPendingSplits()
+            throws Exception
+    {
+        SplitPageSourceProvider pageSourceProvider = new SplitPageSourceProvider(
+                SequencePageBuilder.createSequencePage(ImmutableList.of(VARCHAR), 10, 0),
+                SequencePageBuilder.createSequencePage(ImmutableList.of(VARCHAR), 20, 100));
+        SourceOperator operator = createOperator(pageSourceProvider, newDriverContext());
+
+        operator.addSplit(newSplit());
+        operator.addSplit(newSplit());
+        assertNull(operator.getOutput());
+
+        // the buffered rows are returned, but the pending split is never opened
+        operator.finish();
+        assertFalse(operator.isFinished());
+        assertEquals(operator.getOutput().getPositionCount(), 10);
+        assertTrue(operator.isFinished());
+        assertTrue(operator.isBlocked().isDone());
+
+        // splits added after finish are ignored
+        operator.addSplit(newSplit());
+        operator.noMoreSplits();
+        assertNull(operator.getOutput());
+        assertTrue(operator.isFinished());
+
+        assertEquals(pageSourceProvider.getPageSources().size(), 1);
+        assertTrue(pageSourceProvider.getPageSources().get(0).isClosed());
+    }
+
+    private static SourceOperator createOperator(PageSourceProvider pageSourceProvider, DriverContext driverContext)
+    {
+        ScanFilterAndProjectOperator.ScanFilterAndProjectOperatorFactory factory = new ScanFilterAndProjectOperator.ScanFilterAndProjectOperatorFactory(
+                0,
+                new PlanNodeId("0"),
+                pageSourceProvider,
+                new GenericCursorProcessor(FilterFunctions.TRUE_FUNCTION, ImmutableList.of(singleColumn(VARCHAR, 0))),
+                new GenericPageProcessor(FilterFunctions.TRUE_FUNCTION, ImmutableList.of(singleColumn(VARCHAR, 0))),
+                ImmutableList.<ColumnHandle>of(),
+                ImmutableList.<Type>of(VARCHAR));
+        return factory.createOperator(driverContext);
+    }
+
     public static List<Page> toPages(Operator operator)
     {
         ImmutableList.Builder<Page> outputPages = ImmutableList.builder();
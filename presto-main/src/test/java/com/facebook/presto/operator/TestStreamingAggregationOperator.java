@@ -0,0 +1,156 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.RowPagesBuilder;
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.operator.StreamingAggregationOperator.StreamingAggregationOperatorFactory;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.sql.planner.plan.AggregationNode.Step;
+import com.facebook.presto.testing.MaterializedResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
+import static com.facebook.presto.operator.aggregation.CountAggregation.COUNT;
+import static com.facebook.presto.operator.aggregation.LongSumAggregation.LONG_SUM;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test(singleThreaded = true)
+public class TestStreamingAggregationOperator
+{
+    private ExecutorService executor;
+    private DriverContext driverContext;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test-%s"));
+
+        driverContext = new TaskContext(new TaskId("query", "stage", "task"), executor, TEST_SESSION)
+                .addPipelineContext(true, true)
+                .addDriverContext();
+    }
+
+    @DataProvider(name = "hashEnabledValues")
+    public static Object[][] hashEnabledValuesProvider()
+    {
+        return new Object[][] { { true }, { false } };
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test(dataProvider = "hashEnabledValues")
+    public void testStreamingAggregation(boolean hashEnabled)
+            throws Exception
+    {
+        List<Integer> hashChannels = Ints.asList(0);
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, hashChannels, VARCHAR, BIGINT);
+        List<Page> input = rowPagesBuilder
+                .row("a", 1)
+                .row("a", 2)
+                .row("b", 3)
+                .pageBreak()
+                .row("b", 4)
+                .row(null, 5)
+                .pageBreak()
+                .row(null, 6)
+                .row("c", 7)
+                .build();
+
+        Operator operator = createOperator(rowPagesBuilder);
+
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), VARCHAR, BIGINT, BIGINT)
+                .row("a", 2, 3)
+                .row("b", 2, 7)
+                .row(null, 2, 11)
+                .row("c", 1, 7)
+                .build();
+
+        assertOperatorEquals(operator, input, expected, hashEnabled, ImmutableList.of(1));
+    }
+
+    @Test
+    public void testGroupsAreEmittedBeforeFinish()
+            throws Exception
+    {
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(VARCHAR, BIGINT);
+        List<Page> input = rowPagesBuilder
+                .row("a", 1)
+                .row("b", 2)
+                .pageBreak()
+                .row("b", 3)
+                .build();
+
+        Operator operator = createOperator(rowPagesBuilder);
+
+        operator.addInput(input.get(0));
+        Page output = operator.getOutput();
+        assertNotNull(output);
+        assertEquals(toMaterializedResult(driverContext.getSession(), operator.getTypes(), ImmutableList.of(output)),
+                resultBuilder(driverContext.getSession(), VARCHAR, BIGINT, BIGINT)
+                        .row("a", 1, 1)
+                        .build());
+
+        // group "b" continues in the next page
+        operator.addInput(input.get(1));
+        assertNull(operator.getOutput());
+        assertFalse(operator.isFinished());
+
+        operator.finish();
+        output = operator.getOutput();
+        assertEquals(toMaterializedResult(driverContext.getSession(), operator.getTypes(), ImmutableList.of(output)),
+                resultBuilder(driverContext.getSession(), VARCHAR, BIGINT, BIGINT)
+                        .row("b", 2, 5)
+                        .build());
+        assertTrue(operator.isFinished());
+    }
+
+    private Operator createOperator(RowPagesBuilder rowPagesBuilder)
+    {
+        OperatorFactory operatorFactory = new StreamingAggregationOperatorFactory(
+                0,
+                ImmutableList.of(VARCHAR),
+                Ints.asList(0),
+                Step.SINGLE,
+                ImmutableList.of(COUNT.bind(ImmutableList.of(1), Optional.empty(), Optional.empty(), 1.0),
+                        LONG_SUM.bind(ImmutableList.of(1), Optional.empty(), Optional.empty(), 1.0)),
+                rowPagesBuilder.getHashChannel());
+        return operatorFactory.createOperator(driverContext);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TestingSplit;
+import com.facebook.presto.metadata.ColumnHandle;
+import com.facebook.presto.metadata.Split;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.facebook.presto.spi.FixedPageSource;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.split.PageSourceProvider;
+import com.facebook.presto.sql.planner.plan.PlanNodeId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+
+import static com.facebook.presto.SequencePageBuilder.createSequencePage;
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestTableScanOperator
+{
+    private final ExecutorService executor = newCachedThreadPool(daemonThreadsNamed("test-%s"));
+
+    @AfterClass
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testMultipleSplits()
+            throws Exception
+    {
+        SplitPageSourceProvider pageSourceProvider = new SplitPageSourceProvider(
+                createSequencePage(ImmutableList.of(BIGINT), 10, 0),
+                createSequencePage(ImmutableList.of(BIGINT), 20, 100));
+        SourceOperator operator = createTableScanOperator(pageSourceProvider);
+
+        // blocked until the first split arrives
+        ListenableFuture<?> blocked = operator.isBlocked();
+        assertFalse(blocked.isDone());
+        assertFalse(operator.isFinished());
+        assertNull(operator.getOutput());
+
+        operator.addSplit(newSplit());
+        assertTrue(blocked.isDone());
+        assertTrue(operator.isBlocked().isDone());
+        assertEquals(operator.getOutput().getPositionCount(), 10);
+
+        // the first split is exhausted, so the operator waits for the next one
+        blocked = operator.isBlocked();
+        assertFalse(blocked.isDone());
+        assertFalse(operator.isFinished());
+        assertNull(operator.getOutput());
+
+        operator.addSplit(newSplit());
+        assertTrue(blocked.isDone());
+        assertEquals(operator.getOutput().getPositionCount(), 20);
+        assertEquals(pageSourceProvider.getPageSources().size(), 2);
+        assertTrue(pageSourceProvider.getPageSources().get(0).isClosed());
+
+        operator.noMoreSplits();
+        assertTrue(operator.isBlocked().isDone());
+        assertTrue(operator.isFinished());
+
+        operator.close();
+        assertTrue(pageSourceProvider.getPageSources().get(1).isClosed());
+    }
+
+    @Test
+    public void testNoMoreSplitsUnblocks()
+            throws Exception
+    {
+        SplitPageSourceProvider pageSourceProvider = new SplitPageSourceProvider();
+        SourceOperator operator = createTableScanOperator(pageSourceProvider);
+
+        ListenableFuture<?> blocked = operator.isBlocked();
+        assertFalse(blocked.isDone());
+
+        operator.noMoreSplits();
+        assertTrue(blocked.isDone());
+        assertTrue(operator.isFinished());
+        assertNull(operator.getOutput());
+        assertTrue(pageSourceProvider.getPageSources().isEmpty());
+    }
+
+    @Test
+    public void testFinishWithPendingSplits()
+            throws Exception
+    {
+        SplitPageSourceProvider pageSourceProvider = new SplitPageSourceProvider(
+                createSequencePage(ImmutableList.of(BIGINT), 10, 0),
+                createSequencePage(ImmutableList.of(BIGINT), 20, 100),
+                createSequencePage(ImmutableList.of(BIGINT), 30, 200));
+        SourceOperator operator = createTableScanOperator(pageSourceProvider);
+
+        operator.addSplit(newSplit());
+        operator.addSplit(newSplit());
+        assertEquals(operator.getOutput().getPositionCount(), 10);
+
+        // the pending split is never opened
+        operator.finish();
+        assertTrue(operator.isFinished());
+        assertTrue(operator.isBlocked().isDone());
+        assertNull(operator.getOutput());
+
+        // splits added after finish are ignored
+        operator.addSplit(newSplit());
+        operator.noMoreSplits();
+        assertTrue(operator.isFinished());
+
+        assertEquals(pageSourceProvider.getPageSources().size(), 1);
+        assertTrue(pageSourceProvider.getPageSources().get(0).isClosed());
+    }
+
+    private SourceOperator createTableScanOperator(PageSourceProvider pageSourceProvider)
+    {
+        TableScanOperator.TableScanOperatorFactory factory = new TableScanOperator.TableScanOperatorFactory(
+                0,
+                new PlanNodeId("0"),
+                pageSourceProvider,
+                ImmutableList.<Type>of(BIGINT),
+                ImmutableList.<ColumnHandle>of());
+
+        DriverContext driverContext = new TaskContext(new TaskId("query", "stage", "task"), executor, TEST_SESSION)
+                .addPipelineContext(true, true)
+                .addDriverContext();
+        return factory.createOperator(driverContext);
+    }
+
+    static Split newSplit()
+    {
+        return new Split("test", TestingSplit.createLocalSplit());
+    }
+
+    /**
+     * Returns a page source with the next page for every split.
+     */
+    static class SplitPageSourceProvider
+            implements PageSourceProvider
+    {
+        private final Queue<Page> pages;
+        private final List<TrackingPageSource> pageSources = new ArrayList<>();
+
+        public SplitPageSourceProvider(Page... pages)
+        {
+            this.pages = new ArrayDeque<>(ImmutableList.copyOf(pages));
+        }
+
+        @Override
+        public ConnectorPageSource createPageSource(Split split, List<ColumnHandle> columns)
+        {
+            TrackingPageSource pageSource = new TrackingPageSource(pages.remove());
+            pageSources.add(pageSource);
+            return pageSource;
+        }
+
+        public List<TrackingPageSource> getPageSources()
+        {
+            return pageSources;
+        }
+    }
+
+    static class TrackingPageSource
+            extends FixedPageSource
+    {
+        private boolean closed;
+
+        public TrackingPageSource(Page page)
+        {
+            super(ImmutableList.of(page));
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            closed = true;
+            super.close();
+        }
+
+        public boolean isClosed()
+        {
+            return closed;
+        }
+    }
+}
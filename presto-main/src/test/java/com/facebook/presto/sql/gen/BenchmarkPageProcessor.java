@@ -22,6 +22,7 @@ import com.facebook.presto.spi.Page;
 import com.facebook.presto.spi.PageBuilder;
 import com.facebook.presto.spi.block.Block;
 import com.facebook.presto.spi.type.StandardTypes;
+import com.facebook.presto.sql.planner.CompilerConfig;
 import com.facebook.presto.sql.relational.RowExpression;
 import com.google.common.collect.ImmutableList;
 import io.airlift.slice.Slice;
@@ -74,6 +75,7 @@ public class BenchmarkPageProcessor
     private Page inputPage;
     private PageProcessor handCodedProcessor;
     private PageProcessor compiledProcessor;
+    private PageProcessor columnarProcessor;
 
     @Setup
     public void setup()
@@ -83,6 +85,7 @@ public class BenchmarkPageProcessor
         handCodedProcessor = new Tpch1FilterAndProject();
 
         compiledProcessor = new ExpressionCompiler(new MetadataManager()).compilePageProcessor(FILTER, ImmutableList.of(PROJECT));
+        columnarProcessor = new ExpressionCompiler(new MetadataManager(), new CompilerConfig().setColumnarProcessingEnabled(true)).compilePageProcessor(FILTER, ImmutableList.of(PROJECT));
     }
 
     @Benchmark
@@ -97,6 +100,12 @@ public class BenchmarkPageProcessor
         return execute(inputPage, compiledProcessor);
     }
 
+    @Benchmark
+    public Page compiledColumnar()
+    {
+        return execute(inputPage, columnarProcessor);
+    }
+
     public static void main(String[] args)
             throws RunnerException
     {
@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.gen;
+
+import com.facebook.presto.metadata.MetadataManager;
+import com.facebook.presto.operator.ConjunctStatistics;
+import com.facebook.presto.operator.FilterInfo;
+import com.facebook.presto.operator.PageProcessor;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageBuilder;
+import com.facebook.presto.sql.relational.RowExpression;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static com.facebook.presto.sql.gen.AdaptiveConjunctOrder.REORDER_INTERVAL;
+import static com.facebook.presto.sql.relational.Expressions.call;
+import static com.facebook.presto.sql.relational.Expressions.constant;
+import static com.facebook.presto.sql.relational.Expressions.field;
+import static com.facebook.presto.sql.relational.Signatures.castSignature;
+import static com.facebook.presto.sql.relational.Signatures.comparisonExpressionSignature;
+import static com.facebook.presto.sql.relational.Signatures.logicalExpressionSignature;
+import static com.facebook.presto.sql.tree.ComparisonExpression.Type.GREATER_THAN;
+import static com.facebook.presto.sql.tree.ComparisonExpression.Type.GREATER_THAN_OR_EQUAL;
+import static com.facebook.presto.sql.tree.ComparisonExpression.Type.LESS_THAN;
+import static com.facebook.presto.sql.tree.LogicalBinaryExpression.Type.AND;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class TestAdaptiveConjunctOrder
+{
+    // a >= 0
+    private static final RowExpression NOT_SELECTIVE = call(comparisonExpressionSignature(GREATER_THAN_OR_EQUAL, BIGINT, BIGINT), BOOLEAN, field(0, BIGINT), constant(0L, BIGINT));
+    // b < 100
+    private static final RowExpression SELECTIVE = call(comparisonExpressionSignature(LESS_THAN, BIGINT, BIGINT), BOOLEAN, field(1, BIGINT), constant(100L, BIGINT));
+    // cast(c as bigint) > 0
+    private static final RowExpression CAST_GREATER = call(
+            comparisonExpressionSignature(GREATER_THAN, BIGINT, BIGINT),
+            BOOLEAN,
+            call(castSignature(BIGINT, VARCHAR), BIGINT, field(2, VARCHAR)),
+            constant(0L, BIGINT));
+
+    @Test
+    public void testSelectiveConjunctMovesFirst()
+    {
+        AdaptiveConjunctOrder conjunctOrder = new AdaptiveConjunctOrder(ImmutableList.of(NOT_SELECTIVE, SELECTIVE));
+
+        // not enough evaluations to reorder yet
+        int rows = REORDER_INTERVAL / 4;
+        evaluate(conjunctOrder, rows, 10);
+        assertEquals(conjunctOrder.getOrder(), new int[] {0, 1});
+
+        evaluate(conjunctOrder, REORDER_INTERVAL, 10);
+        assertEquals(conjunctOrder.getOrder(), new int[] {1, 0});
+
+        rows += REORDER_INTERVAL;
+        FilterInfo info = conjunctOrder.getInfo();
+        assertEquals(info.getReorders(), 1);
+        assertConjunct(info.getConjuncts().get(0), SELECTIVE, rows, 20);
+        assertConjunct(info.getConjuncts().get(1), NOT_SELECTIVE, rows, rows);
+    }
+
+    @Test
+    public void testFailingConjunctNotMovedAheadOfGuard()
+    {
+        AdaptiveConjunctOrder conjunctOrder = new AdaptiveConjunctOrder(ImmutableList.of(NOT_SELECTIVE, CAST_GREATER));
+
+        evaluate(conjunctOrder, 10 * REORDER_INTERVAL, 0);
+        assertEquals(conjunctOrder.getOrder(), new int[] {0, 1});
+        assertEquals(conjunctOrder.getInfo().getReorders(), 0);
+    }
+
+    @Test
+    public void testCompiledFilterAdapts()
+            throws Exception
+    {
+        // the static order keeps the conjuncts as written, because they have the same cost
+        RowExpression filter = call(logicalExpressionSignature(AND), BOOLEAN, NOT_SELECTIVE, SELECTIVE);
+        List<RowExpression> projections = ImmutableList.<RowExpression>of(field(1, BIGINT));
+        ExpressionCompiler compiler = new ExpressionCompiler(new MetadataManager());
+        PageProcessor processor = compiler.compilePageProcessor(filter, projections);
+
+        int positions = 2 * REORDER_INTERVAL;
+        Page input = rowPagesBuilder(BIGINT, BIGINT)
+                .addSequencePage(positions, 0, 0)
+                .build()
+                .get(0);
+
+        for (int i = 0; i < 2; i++) {
+            PageBuilder pageBuilder = new PageBuilder(ImmutableList.of(BIGINT));
+            assertEquals(processor.process(null, input, 0, positions, pageBuilder), positions);
+            Page output = pageBuilder.build();
+            assertEquals(output.getPositionCount(), 100);
+            assertEquals(BIGINT.getLong(output.getBlock(0), 99), 99);
+        }
+
+        // all rows are evaluated by a >= 0 in the first call and by b < 100 in the second
+        FilterInfo info = processor.getFilterInfo();
+        assertEquals(info.getReorders(), 1);
+        assertConjunct(info.getConjuncts().get(0), SELECTIVE, 2 * positions, 200);
+        assertConjunct(info.getConjuncts().get(1), NOT_SELECTIVE, positions + 100, positions + 100);
+
+        // every caller gets its own statistics
+        FilterInfo other = compiler.compilePageProcessor(filter, projections).getFilterInfo();
+        assertEquals(other.getReorders(), 0);
+        assertEquals(other.getConjuncts().get(0).getEvaluations(), 0);
+    }
+
+    @Test
+    public void testSingleConjunctIsNotTracked()
+    {
+        PageProcessor processor = new ExpressionCompiler(new MetadataManager()).compilePageProcessor(SELECTIVE, ImmutableList.<RowExpression>of(field(1, BIGINT)));
+        assertNull(processor.getFilterInfo());
+    }
+
+    /**
+     * Evaluates the conjuncts in their current order for the given number of rows, like
+     * the compiled filter does. The first conjunct passes every row and the second one
+     * only passes the given number of rows.
+     */
+    private static void evaluate(AdaptiveConjunctOrder conjunctOrder, int rows, int secondConjunctPasses)
+    {
+        AdaptiveConjunctOrder.Batch batch = conjunctOrder.startBatch();
+        for (int row = 0; row < rows; row++) {
+            for (int index = 0; index < batch.getConjunctCount(); index++) {
+                int conjunct = batch.getConjunct(index);
+                boolean passed = conjunct == 0 || row < secondConjunctPasses;
+                if (!batch.record(conjunct, passed)) {
+                    break;
+                }
+            }
+        }
+        batch.finish();
+    }
+
+    private static void assertConjunct(ConjunctStatistics statistics, RowExpression expression, long evaluations, long passes)
+    {
+        assertEquals(statistics.getExpression(), expression.toString());
+        assertEquals(statistics.getEvaluations(), evaluations);
+        assertEquals(statistics.getPasses(), passes);
+    }
+}
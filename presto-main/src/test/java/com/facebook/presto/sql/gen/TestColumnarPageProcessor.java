@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.gen;
+
+import com.facebook.presto.metadata.MetadataManager;
+import com.facebook.presto.metadata.OperatorType;
+import com.facebook.presto.metadata.Signature;
+import com.facebook.presto.operator.PageProcessor;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageBuilder;
+import com.facebook.presto.spi.type.StandardTypes;
+import com.facebook.presto.sql.planner.CompilerConfig;
+import com.facebook.presto.sql.relational.RowExpression;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.sql.relational.Expressions.call;
+import static com.facebook.presto.sql.relational.Expressions.constant;
+import static com.facebook.presto.sql.relational.Expressions.field;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestColumnarPageProcessor
+{
+    // where a > 5
+    private static final RowExpression FILTER = call(new Signature(OperatorType.GREATER_THAN.name(), StandardTypes.BOOLEAN, StandardTypes.BIGINT, StandardTypes.BIGINT),
+            BOOLEAN,
+            field(0, BIGINT),
+            constant(5L, BIGINT));
+
+    // select a + b, b
+    private static final List<RowExpression> PROJECTIONS = ImmutableList.of(
+            call(new Signature(OperatorType.ADD.name(), StandardTypes.BIGINT, StandardTypes.BIGINT, StandardTypes.BIGINT),
+                    BIGINT,
+                    field(0, BIGINT),
+                    field(1, BIGINT)),
+            field(1, BIGINT));
+
+    @Test
+    public void testMatchesRowProcessing()
+            throws Exception
+    {
+        Page input = rowPagesBuilder(BIGINT, BIGINT)
+                .row(1, 10)
+                .row(6, 20)
+                .row(null, 30)
+                .row(7, null)
+                .row(8, 40)
+                .row(2, 50)
+                .build()
+                .get(0);
+
+        PageProcessor rowProcessor = new ExpressionCompiler(new MetadataManager())
+                .compilePageProcessor(FILTER, PROJECTIONS);
+        PageProcessor columnarProcessor = new ExpressionCompiler(new MetadataManager(), new CompilerConfig().setColumnarProcessingEnabled(true))
+                .compilePageProcessor(FILTER, PROJECTIONS);
+
+        Page expected = process(rowProcessor, input);
+        Page actual = process(columnarProcessor, input);
+
+        assertEquals(actual.getPositionCount(), 3);
+        assertPageEquals(ImmutableList.of(BIGINT, BIGINT), actual, expected);
+    }
+
+    @Test
+    public void testProcessSubRange()
+            throws Exception
+    {
+        Page input = rowPagesBuilder(BIGINT, BIGINT)
+                .addSequencePage(100, 0, 0)
+                .build()
+                .get(0);
+
+        PageProcessor processor = new ExpressionCompiler(new MetadataManager(), new CompilerConfig().setColumnarProcessingEnabled(true))
+                .compilePageProcessor(FILTER, PROJECTIONS);
+
+        PageBuilder pageBuilder = new PageBuilder(ImmutableList.of(BIGINT, BIGINT));
+        assertEquals(processor.process(null, input, 50, 60, pageBuilder), 60);
+        Page output = pageBuilder.build();
+        assertEquals(output.getPositionCount(), 10);
+        assertEquals(BIGINT.getLong(output.getBlock(1), 0), 50);
+        assertEquals(BIGINT.getLong(output.getBlock(0), 9), 59 + 59);
+    }
+
+    @Test
+    public void testStopsWhenPageBuilderIsFull()
+            throws Exception
+    {
+        Page input = rowPagesBuilder(BIGINT, BIGINT)
+                .addSequencePage(100_000, 0, 0)
+                .build()
+                .get(0);
+
+        PageProcessor rowProcessor = new ExpressionCompiler(new MetadataManager())
+                .compilePageProcessor(FILTER, PROJECTIONS);
+        PageProcessor columnarProcessor = new ExpressionCompiler(new MetadataManager(), new CompilerConfig().setColumnarProcessingEnabled(true))
+                .compilePageProcessor(FILTER, PROJECTIONS);
+
+        PageBuilder rowPageBuilder = new PageBuilder(ImmutableList.of(BIGINT, BIGINT));
+        rowProcessor.process(null, input, 0, input.getPositionCount(), rowPageBuilder);
+        int maxRows = rowPageBuilder.getPositionCount();
+
+        int position = 0;
+        int rows = 0;
+        int pages = 0;
+        while (position < input.getPositionCount()) {
+            PageBuilder pageBuilder = new PageBuilder(ImmutableList.of(BIGINT, BIGINT));
+            int next = columnarProcessor.process(null, input, position, input.getPositionCount(), pageBuilder);
+            assertTrue(next > position);
+
+            // the page builder is checked between batches
+            assertTrue(pageBuilder.getPositionCount() <= maxRows + SelectedPositions.BATCH_SIZE);
+            assertEquals(BIGINT.getLong(pageBuilder.build().getBlock(1), 0), Math.max(position, 6));
+
+            rows += pageBuilder.getPositionCount();
+            position = next;
+            pages++;
+        }
+        assertTrue(pages > 1);
+        assertEquals(rows, input.getPositionCount() - 6);
+    }
+
+    private static Page process(PageProcessor processor, Page input)
+    {
+        PageBuilder pageBuilder = new PageBuilder(ImmutableList.of(BIGINT, BIGINT));
+        assertEquals(processor.process(null, input, 0, input.getPositionCount(), pageBuilder), input.getPositionCount());
+        return pageBuilder.build();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.gen;
+
+import com.facebook.presto.metadata.FunctionRegistry;
+import com.facebook.presto.metadata.MetadataManager;
+import com.facebook.presto.sql.relational.CallExpression;
+import com.facebook.presto.sql.relational.RowExpression;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.sql.gen.CommonSubExpressionExtractor.extractCommonSubExpressions;
+import static com.facebook.presto.sql.relational.Expressions.call;
+import static com.facebook.presto.sql.relational.Expressions.constant;
+import static com.facebook.presto.sql.relational.Expressions.field;
+import static com.facebook.presto.sql.relational.Signatures.arithmeticExpressionSignature;
+import static com.facebook.presto.sql.relational.Signatures.switchSignature;
+import static com.facebook.presto.sql.relational.Signatures.whenSignature;
+import static com.facebook.presto.sql.tree.ArithmeticBinaryExpression.Type.ADD;
+import static com.facebook.presto.sql.tree.ArithmeticBinaryExpression.Type.MULTIPLY;
+import static org.testng.Assert.assertEquals;
+
+public class TestCommonSubExpressionExtractor
+{
+    private static final FunctionRegistry REGISTRY = new MetadataManager().getFunctionRegistry();
+
+    private static final CallExpression SUM = call(arithmeticExpressionSignature(ADD, BIGINT, BIGINT, BIGINT), BIGINT, field(0, BIGINT), field(1, BIGINT));
+    private static final CallExpression DOUBLED = call(arithmeticExpressionSignature(MULTIPLY, BIGINT, BIGINT, BIGINT), BIGINT, SUM, constant(2L, BIGINT));
+
+    @Test
+    public void testNoSharedExpressions()
+    {
+        assertEquals(extract(SUM, field(0, BIGINT)), ImmutableList.of());
+        assertEquals(extract(field(0, BIGINT), field(0, BIGINT)), ImmutableList.of());
+    }
+
+    @Test
+    public void testSharedExpression()
+    {
+        assertEquals(extract(SUM, field(0, BIGINT), SUM), ImmutableList.of(SUM));
+        assertEquals(extract(SUM, DOUBLED), ImmutableList.of(SUM));
+    }
+
+    @Test
+    public void testNestedExpressionOnlyUsedByParent()
+    {
+        // a + b is only evaluated as part of (a + b) * 2, which is itself shared
+        assertEquals(extract(DOUBLED, DOUBLED), ImmutableList.of(DOUBLED));
+    }
+
+    @Test
+    public void testNestedExpressionAlsoUsedDirectly()
+    {
+        assertEquals(extract(DOUBLED, DOUBLED, SUM), ImmutableList.of(DOUBLED, SUM));
+    }
+
+    @Test
+    public void testWhenClauseIsNotExtracted()
+    {
+        // the WHEN clause is shared by both cases, but can only be evaluated by its SWITCH
+        CallExpression when = call(whenSignature(BIGINT), BIGINT, constant(1L, BIGINT), SUM);
+        CallExpression withoutElse = call(switchSignature(BIGINT), BIGINT, field(0, BIGINT), when);
+        CallExpression withElse = call(switchSignature(BIGINT), BIGINT, field(0, BIGINT), when, constant(0L, BIGINT));
+        assertEquals(extract(withoutElse, withElse), ImmutableList.of(SUM));
+    }
+
+    private static ImmutableList<CallExpression> extract(RowExpression... expressions)
+    {
+        return ImmutableList.copyOf(extractCommonSubExpressions(REGISTRY, ImmutableList.copyOf(expressions)));
+    }
+}
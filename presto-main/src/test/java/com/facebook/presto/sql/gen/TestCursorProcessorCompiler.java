@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.gen;
+
+import com.facebook.presto.metadata.MetadataManager;
+import com.facebook.presto.operator.CursorProcessor;
+import com.facebook.presto.spi.InMemoryRecordSet;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageBuilder;
+import com.facebook.presto.spi.RecordCursor;
+import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.sql.relational.CallExpression;
+import com.facebook.presto.sql.relational.RowExpression;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.sql.relational.Expressions.call;
+import static com.facebook.presto.sql.relational.Expressions.constant;
+import static com.facebook.presto.sql.relational.Expressions.field;
+import static com.facebook.presto.sql.relational.Signatures.arithmeticExpressionSignature;
+import static com.facebook.presto.sql.relational.Signatures.comparisonExpressionSignature;
+import static com.facebook.presto.sql.tree.ArithmeticBinaryExpression.Type.ADD;
+import static com.facebook.presto.sql.tree.ArithmeticBinaryExpression.Type.MULTIPLY;
+import static com.facebook.presto.sql.tree.ComparisonExpression.Type.GREATER_THAN;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestCursorProcessorCompiler
+{
+    // a + b
+    private static final CallExpression SUM = call(arithmeticExpressionSignature(ADD, BIGINT, BIGINT, BIGINT), BIGINT, field(0, BIGINT), field(1, BIGINT));
+
+    // where a + b > 5
+    private static final RowExpression FILTER = call(comparisonExpressionSignature(GREATER_THAN, BIGINT, BIGINT), BOOLEAN, SUM, constant(5L, BIGINT));
+
+    // select a + b, (a + b) * 2
+    private static final List<RowExpression> PROJECTIONS = ImmutableList.<RowExpression>of(
+            SUM,
+            call(arithmeticExpressionSignature(MULTIPLY, BIGINT, BIGINT, BIGINT), BIGINT, SUM, constant(2L, BIGINT)));
+
+    private static final List<Type> TYPES = ImmutableList.<Type>of(BIGINT, BIGINT);
+
+    @Test
+    public void testCommonSubExpressionsAreEvaluatedPerRow()
+            throws Exception
+    {
+        CursorProcessor processor = new ExpressionCompiler(new MetadataManager())
+                .compileCursorProcessor(FILTER, PROJECTIONS, "key");
+
+        RecordCursor cursor = InMemoryRecordSet.builder(TYPES)
+                .addRow(1L, 2L)
+                .addRow(3L, 4L)
+                .addRow(null, 10L)
+                .addRow(10L, null)
+                .addRow(10L, -1L)
+                .addRow(2L, 2L)
+                .addRow(20L, 0L)
+                .build()
+                .cursor();
+
+        // the first call stops after three rows, so the cached values must not leak into the next call
+        PageBuilder pageBuilder = new PageBuilder(TYPES);
+        assertEquals(processor.process(null, cursor, 3, pageBuilder), 3);
+        assertTrue(processor.process(null, cursor, 100, pageBuilder) > 0);
+        assertEquals(processor.process(null, cursor, 100, pageBuilder), 0);
+
+        Page page = pageBuilder.build();
+        assertEquals(page.getPositionCount(), 3);
+        assertRow(page, 0, 7L, 14L);
+        assertRow(page, 1, 9L, 18L);
+        assertRow(page, 2, 20L, 40L);
+    }
+
+    private static void assertRow(Page page, int position, long sum, long doubled)
+    {
+        assertEquals(BIGINT.getLong(page.getBlock(0), position), sum);
+        assertEquals(BIGINT.getLong(page.getBlock(1), position), doubled);
+    }
+}
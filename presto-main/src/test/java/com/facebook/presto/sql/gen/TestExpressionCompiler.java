@@ -1056,6 +1056,38 @@ public class TestExpressionCompiler
         Futures.allAsList(futures).get();
     }
 
+    @Test
+    public void testCommonSubExpressions()
+            throws Exception
+    {
+        // simple case, including the same WHEN clause in two different cases
+        assertExecute("case bound_long + 1 when 1235 then bound_long + 1 when 0 then 0 else -(bound_long + 1) end", 1235L);
+        assertExecute("case bound_long + 1 when 0 then 0 else -(bound_long + 1) end", -1235L);
+        assertExecute("case bound_long when 1234 then bound_long * 2 end + case bound_long when 1234 then bound_long * 2 else 0 end", 4936L);
+        assertExecute("case bound_long when 0 then bound_long * 2 end + case bound_long when 0 then bound_long * 2 else 0 end", null);
+
+        // searched case
+        assertExecute("case when bound_long + 1 > 1000 then bound_long + 1 when bound_long + 1 > 0 then 0 else bound_long + 1 end", 1235L);
+        assertExecute("case when bound_long + 1 < 0 then 0 when bound_long + 1 < 1000 then 1 else bound_long + 1 end", 1235L);
+        assertExecute("case when upper(bound_string) = 'HELLO' then concat(upper(bound_string), upper(bound_string)) end", "HELLOHELLO");
+
+        // if
+        assertExecute("if(bound_double * 2 > 20, bound_double * 2, -(bound_double * 2))", 12.34 * 2);
+        assertExecute("if(length(bound_string) > 10, length(bound_string), length(bound_string) * 2)", 10L);
+        assertExecute("if(bound_boolean and bound_long > 0, bound_boolean and bound_long > 0, false)", true);
+
+        // coalesce, including a shared expression that is null
+        assertExecute("coalesce(nullif(upper(bound_string), 'HELLO'), lower(upper(bound_string)))", "hello");
+        assertExecute("coalesce(length(bound_null_string), length(bound_null_string) + 1, 7)", 7L);
+        assertExecute("coalesce(length(bound_null_string) * 2, length(bound_string) * 2, length(bound_string))", 10L);
+
+        // shared between the filter conjuncts
+        assertFilter("bound_long + 1 > 1000 and bound_long + 1 < 2000", true);
+        assertFilter("bound_long + 1 > 1000 and bound_long + 1 > 2000", false);
+
+        Futures.allAsList(futures).get();
+    }
+
     private List<String> generateExpression(String expressionPattern, Boolean value)
     {
         return formatExpression(expressionPattern, value, "boolean");
@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.gen;
+
+import com.facebook.presto.sql.relational.RowExpression;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static com.facebook.presto.sql.gen.FilterConjunctOrdering.cannotFail;
+import static com.facebook.presto.sql.gen.FilterConjunctOrdering.orderConjuncts;
+import static com.facebook.presto.sql.relational.Expressions.call;
+import static com.facebook.presto.sql.relational.Expressions.constant;
+import static com.facebook.presto.sql.relational.Expressions.field;
+import static com.facebook.presto.sql.relational.Signatures.arithmeticExpressionSignature;
+import static com.facebook.presto.sql.relational.Signatures.castSignature;
+import static com.facebook.presto.sql.relational.Signatures.comparisonExpressionSignature;
+import static com.facebook.presto.sql.relational.Signatures.likeSignature;
+import static com.facebook.presto.sql.relational.Signatures.logicalExpressionSignature;
+import static com.facebook.presto.sql.tree.ArithmeticBinaryExpression.Type.DIVIDE;
+import static com.facebook.presto.sql.tree.ComparisonExpression.Type.EQUAL;
+import static com.facebook.presto.sql.tree.ComparisonExpression.Type.GREATER_THAN;
+import static com.facebook.presto.sql.tree.LogicalBinaryExpression.Type.AND;
+import static io.airlift.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestFilterConjunctOrdering
+{
+    private static final RowExpression LIKE = call(likeSignature(), BOOLEAN, field(0, VARCHAR), constant(utf8Slice("%foo%"), VARCHAR));
+    private static final RowExpression EQUALS = call(comparisonExpressionSignature(EQUAL, BIGINT, BIGINT), BOOLEAN, field(1, BIGINT), constant(5L, BIGINT));
+    private static final RowExpression GREATER = call(comparisonExpressionSignature(GREATER_THAN, BIGINT, BIGINT), BOOLEAN, field(2, BIGINT), constant(0L, BIGINT));
+    private static final RowExpression CAST_GREATER = call(
+            comparisonExpressionSignature(GREATER_THAN, BIGINT, BIGINT),
+            BOOLEAN,
+            call(castSignature(BIGINT, VARCHAR), BIGINT, field(0, VARCHAR)),
+            constant(0L, BIGINT));
+    private static final RowExpression DIVIDE_GREATER = call(
+            comparisonExpressionSignature(GREATER_THAN, BIGINT, BIGINT),
+            BOOLEAN,
+            call(arithmeticExpressionSignature(DIVIDE, BIGINT, BIGINT, BIGINT), BIGINT, field(1, BIGINT), field(2, BIGINT)),
+            constant(1L, BIGINT));
+
+    @Test
+    public void testCheapConjunctsFirst()
+    {
+        RowExpression filter = and(and(LIKE, EQUALS), GREATER);
+        assertEquals(orderConjuncts(filter), and(and(EQUALS, GREATER), LIKE));
+    }
+
+    @Test
+    public void testOrderPreservedForEqualCost()
+    {
+        RowExpression filter = and(GREATER, and(EQUALS, LIKE));
+        assertSame(orderConjuncts(filter), filter);
+    }
+
+    @Test
+    public void testFailingConjunctNotMovedAheadOfGuard()
+    {
+        // the cast may only run for rows that pass the LIKE
+        RowExpression filter = and(LIKE, CAST_GREATER);
+        assertSame(orderConjuncts(filter), filter);
+    }
+
+    @Test
+    public void testNonFailingConjunctsMovedAheadOfFailingConjuncts()
+    {
+        RowExpression filter = and(and(LIKE, DIVIDE_GREATER), and(CAST_GREATER, EQUALS));
+        assertEquals(orderConjuncts(filter), and(and(and(EQUALS, LIKE), DIVIDE_GREATER), CAST_GREATER));
+
+        assertTrue(cannotFail(and(EQUALS, LIKE)));
+        assertFalse(cannotFail(DIVIDE_GREATER));
+        assertFalse(cannotFail(CAST_GREATER));
+    }
+
+    @Test
+    public void testSingleConjunct()
+    {
+        RowExpression trueConstant = constant(true, BOOLEAN);
+        assertSame(orderConjuncts(trueConstant), trueConstant);
+        assertSame(orderConjuncts(LIKE), LIKE);
+    }
+
+    private static RowExpression and(RowExpression left, RowExpression right)
+    {
+        return call(logicalExpressionSignature(AND), BOOLEAN, left, right);
+    }
+}
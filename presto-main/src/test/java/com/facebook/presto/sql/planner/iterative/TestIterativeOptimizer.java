@@ -0,0 +1,148 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.iterative;
+
+import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
+import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.SymbolAllocator;
+import com.facebook.presto.sql.planner.iterative.rule.MergeFilters;
+import com.facebook.presto.sql.planner.iterative.rule.MergeLimits;
+import com.facebook.presto.sql.planner.iterative.rule.RemoveRedundantIdentityProjections;
+import com.facebook.presto.sql.planner.plan.FilterNode;
+import com.facebook.presto.sql.planner.plan.LimitNode;
+import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.facebook.presto.sql.planner.plan.ProjectNode;
+import com.facebook.presto.sql.planner.plan.ValuesNode;
+import com.facebook.presto.sql.tree.ComparisonExpression;
+import com.facebook.presto.sql.tree.Expression;
+import com.facebook.presto.sql.tree.LongLiteral;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.ObjectNames;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.sql.ExpressionUtils.and;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestIterativeOptimizer
+{
+    private static final Symbol A = new Symbol("a");
+    private static final Map<Symbol, Type> TYPES = ImmutableMap.<Symbol, Type>of(A, BIGINT);
+
+    @Test
+    public void testRewritesToFixpoint()
+    {
+        PlanNodeIdAllocator idAllocator = new PlanNodeIdAllocator();
+        Expression lower = greaterThan(1);
+        Expression upper = lessThan(10);
+
+        ValuesNode values = new ValuesNode(idAllocator.getNextId(), ImmutableList.of(A), ImmutableList.<List<Expression>>of());
+        PlanNode plan = new LimitNode(idAllocator.getNextId(),
+                new LimitNode(idAllocator.getNextId(),
+                        new ProjectNode(idAllocator.getNextId(),
+                                new FilterNode(idAllocator.getNextId(),
+                                        new FilterNode(idAllocator.getNextId(), values, upper),
+                                        lower),
+                                ImmutableMap.<Symbol, Expression>of(A, A.toQualifiedNameReference())),
+                        5),
+                10);
+
+        RuleStatsRecorder stats = new RuleStatsRecorder();
+        PlanNode optimized = newOptimizer(stats).optimize(plan, TEST_SESSION, TYPES, new SymbolAllocator(), idAllocator);
+
+        assertTrue(optimized instanceof LimitNode);
+        assertEquals(((LimitNode) optimized).getCount(), 5);
+
+        PlanNode filter = ((LimitNode) optimized).getSource();
+        assertTrue(filter instanceof FilterNode);
+        assertEquals(((FilterNode) filter).getPredicate(), and(upper, lower));
+        assertSame(((FilterNode) filter).getSource(), values);
+
+        assertEquals(stats.getTotal().getHits(), 3);
+        assertEquals(stats.getStats().get(MergeLimits.class).getHits(), 1);
+        assertEquals(stats.getStats().get(MergeFilters.class).getHits(), 1);
+        assertEquals(stats.getStats().get(RemoveRedundantIdentityProjections.class).getHits(), 1);
+    }
+
+    @Test
+    public void testReturnsOriginalPlanWhenNothingApplies()
+    {
+        PlanNodeIdAllocator idAllocator = new PlanNodeIdAllocator();
+        ValuesNode values = new ValuesNode(idAllocator.getNextId(), ImmutableList.of(A), ImmutableList.<List<Expression>>of());
+        PlanNode plan = new LimitNode(idAllocator.getNextId(), new FilterNode(idAllocator.getNextId(), values, greaterThan(1)), 5);
+
+        RuleStatsRecorder stats = new RuleStatsRecorder();
+        PlanNode optimized = newOptimizer(stats).optimize(plan, TEST_SESSION, TYPES, new SymbolAllocator(), idAllocator);
+
+        assertSame(optimized, plan);
+        assertEquals(stats.getTotal().getHits(), 0);
+        assertEquals(stats.getTotal().getInvocations(), 2);
+    }
+
+    @Test
+    public void testExportsRuleStats()
+            throws Exception
+    {
+        MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+        RuleStatsRecorder stats = new RuleStatsRecorder(new MBeanExporter(mbeanServer));
+
+        PlanNodeIdAllocator idAllocator = new PlanNodeIdAllocator();
+        ValuesNode values = new ValuesNode(idAllocator.getNextId(), ImmutableList.of(A), ImmutableList.<List<Expression>>of());
+        PlanNode plan = new LimitNode(idAllocator.getNextId(), new LimitNode(idAllocator.getNextId(), values, 5), 10);
+
+        newOptimizer(stats).optimize(plan, TEST_SESSION, TYPES, new SymbolAllocator(), idAllocator);
+
+        ObjectName mergeLimits = new ObjectName(ObjectNames.builder(RuleStats.class, MergeLimits.class.getSimpleName()).build());
+        assertEquals(mbeanServer.getAttribute(mergeLimits, "Hits"), 1L);
+
+        // rules are exported before they are first invoked
+        ObjectName mergeFilters = new ObjectName(ObjectNames.builder(RuleStats.class, MergeFilters.class.getSimpleName()).build());
+        assertEquals(mbeanServer.getAttribute(mergeFilters, "Invocations"), 0L);
+
+        stats.destroy();
+        assertFalse(mbeanServer.isRegistered(mergeLimits));
+    }
+
+    private static IterativeOptimizer newOptimizer(RuleStatsRecorder stats)
+    {
+        return new IterativeOptimizer(stats, ImmutableList.of(
+                new MergeFilters(),
+                new MergeLimits(),
+                new RemoveRedundantIdentityProjections()));
+    }
+
+    private static Expression greaterThan(long value)
+    {
+        return new ComparisonExpression(ComparisonExpression.Type.GREATER_THAN, A.toQualifiedNameReference(), new LongLiteral(String.valueOf(value)));
+    }
+
+    private static Expression lessThan(long value)
+    {
+        return new ComparisonExpression(ComparisonExpression.Type.LESS_THAN, A.toQualifiedNameReference(), new LongLiteral(String.valueOf(value)));
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.optimizations;
+
+import com.facebook.presto.metadata.ColumnHandle;
+import com.facebook.presto.metadata.MetadataManager;
+import com.facebook.presto.metadata.Signature;
+import com.facebook.presto.metadata.TableHandle;
+import com.facebook.presto.metadata.TestingMetadata;
+import com.facebook.presto.metadata.TestingMetadata.InMemoryColumnHandle;
+import com.facebook.presto.metadata.TestingMetadata.InMemoryTableHandle;
+import com.facebook.presto.spi.ColumnMetadata;
+import com.facebook.presto.spi.ConnectorColumnHandle;
+import com.facebook.presto.spi.ConnectorTableBucketing;
+import com.facebook.presto.spi.ConnectorTableHandle;
+import com.facebook.presto.spi.ConnectorTableMetadata;
+import com.facebook.presto.spi.SchemaTableName;
+import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
+import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.SymbolAllocator;
+import com.facebook.presto.sql.planner.plan.AggregationNode;
+import com.facebook.presto.sql.planner.plan.ExchangeNode;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.JoinNode.EquiJoinClause;
+import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.facebook.presto.sql.planner.plan.TableScanNode;
+import com.facebook.presto.sql.tree.FunctionCall;
+import com.facebook.presto.sql.tree.QualifiedName;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.DoubleType.DOUBLE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestAddExchanges
+{
+    private static final String CONNECTOR_ID = "test";
+
+    private MetadataManager metadata;
+    private TestingMetadata connectorMetadata;
+    private SymbolAllocator symbolAllocator;
+    private PlanNodeIdAllocator idAllocator;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        connectorMetadata = new TestingMetadata();
+        metadata = new MetadataManager();
+        metadata.addConnectorMetadata(CONNECTOR_ID, CONNECTOR_ID, connectorMetadata);
+        symbolAllocator = new SymbolAllocator();
+        idAllocator = new PlanNodeIdAllocator();
+
+        createBucketedTable("orders", 8, "hash");
+        createBucketedTable("lineitem", 8, "hash");
+        createBucketedTable("lineitem_16", 16, "hash");
+        createBucketedTable("lineitem_murmur", 8, "murmur");
+    }
+
+    @Test
+    public void testColocatedJoin()
+    {
+        TableScanNode orders = tableScan("orders");
+        TableScanNode lineitem = tableScan("lineitem");
+        PlanNode plan = optimize(join(orders, lineitem, "orderkey", "orderkey"));
+
+        assertEquals(countExchanges(plan), 0);
+        assertBucketed(plan, "orders", true);
+        assertBucketed(plan, "lineitem", true);
+    }
+
+    @Test
+    public void testJoinWithDifferentBucketCount()
+    {
+        TableScanNode orders = tableScan("orders");
+        TableScanNode lineitem = tableScan("lineitem_16");
+        PlanNode plan = optimize(join(orders, lineitem, "orderkey", "orderkey"));
+
+        assertTrue(countExchanges(plan) > 0);
+        assertBucketed(plan, "orders", false);
+        assertBucketed(plan, "lineitem_16", false);
+    }
+
+    @Test
+    public void testJoinWithDifferentBucketFunction()
+    {
+        TableScanNode orders = tableScan("orders");
+        TableScanNode lineitem = tableScan("lineitem_murmur");
+        PlanNode plan = optimize(join(orders, lineitem, "orderkey", "orderkey"));
+
+        assertTrue(countExchanges(plan) > 0);
+        assertBucketed(plan, "orders", false);
+        assertBucketed(plan, "lineitem_murmur", false);
+    }
+
+    @Test
+    public void testJoinNotOnBucketColumns()
+    {
+        TableScanNode orders = tableScan("orders");
+        TableScanNode lineitem = tableScan("lineitem");
+        PlanNode plan = optimize(join(orders, lineitem, "value", "value"));
+
+        assertTrue(countExchanges(plan) > 0);
+        assertBucketed(plan, "orders", false);
+        assertBucketed(plan, "lineitem", false);
+    }
+
+    @Test
+    public void testAggregationGroupedByBucketColumns()
+    {
+        TableScanNode orders = tableScan("orders");
+        PlanNode plan = optimize(count(orders, "orderkey"));
+
+        assertEquals(countExchanges(plan), 0);
+        assertBucketed(plan, "orders", true);
+    }
+
+    @Test
+    public void testAggregationGroupedByOtherColumns()
+    {
+        TableScanNode orders = tableScan("orders");
+        PlanNode plan = optimize(count(orders, "value"));
+
+        assertTrue(countExchanges(plan) > 0);
+        assertBucketed(plan, "orders", false);
+    }
+
+    @Test
+    public void testBucketExecutionDisabled()
+    {
+        TableScanNode orders = tableScan("orders");
+        TableScanNode lineitem = tableScan("lineitem");
+        PlanNode plan = new AddExchanges(metadata, false, true, false)
+                .optimize(join(orders, lineitem, "orderkey", "orderkey"), TEST_SESSION, symbolAllocator.getTypes(), symbolAllocator, idAllocator);
+
+        assertTrue(countExchanges(plan) > 0);
+        assertBucketed(plan, "orders", false);
+        assertBucketed(plan, "lineitem", false);
+    }
+
+    private void createBucketedTable(String tableName, int bucketCount, String bucketFunction)
+    {
+        SchemaTableName name = new SchemaTableName("default", tableName);
+        connectorMetadata.createTable(TEST_SESSION.toConnectorSession(), new ConnectorTableMetadata(name, ImmutableList.of(
+                new ColumnMetadata("orderkey", BIGINT, 0, false),
+                new ColumnMetadata("value", DOUBLE, 1, false))));
+
+        ConnectorColumnHandle bucketColumn = new InMemoryColumnHandle("orderkey", 0, BIGINT);
+        connectorMetadata.setTableBucketing(name, new ConnectorTableBucketing(ImmutableList.of(bucketColumn), bucketCount, bucketFunction));
+    }
+
+    private TableScanNode tableScan(String tableName)
+    {
+        ConnectorTableHandle tableHandle = connectorMetadata.getTableHandle(TEST_SESSION.toConnectorSession(), new SchemaTableName("default", tableName));
+
+        ImmutableList.Builder<Symbol> outputs = ImmutableList.builder();
+        ImmutableMap.Builder<Symbol, ColumnHandle> assignments = ImmutableMap.builder();
+        for (ConnectorColumnHandle column : connectorMetadata.getColumnHandles(tableHandle).values()) {
+            InMemoryColumnHandle inMemoryColumn = (InMemoryColumnHandle) column;
+            Symbol symbol = symbolAllocator.newSymbol(tableName + "_" + inMemoryColumn.getName(), inMemoryColumn.getType());
+            outputs.add(symbol);
+            assignments.put(symbol, new ColumnHandle(CONNECTOR_ID, column));
+        }
+        return new TableScanNode(idAllocator.getNextId(), new TableHandle(CONNECTOR_ID, tableHandle), outputs.build(), assignments.build(), null, Optional.empty());
+    }
+
+    private JoinNode join(TableScanNode left, TableScanNode right, String leftColumn, String rightColumn)
+    {
+        return new JoinNode(
+                idAllocator.getNextId(),
+                JoinNode.Type.INNER,
+                left,
+                right,
+                ImmutableList.of(new EquiJoinClause(symbol(left, leftColumn), symbol(right, rightColumn))),
+                Optional.empty(),
+                Optional.empty());
+    }
+
+    private AggregationNode count(TableScanNode source, String groupByColumn)
+    {
+        Signature signature = metadata.resolveFunction(QualifiedName.of("count"), ImmutableList.of(), false).getSignature();
+        Symbol count = symbolAllocator.newSymbol("count", BIGINT);
+        return new AggregationNode(
+                idAllocator.getNextId(),
+                source,
+                ImmutableList.of(symbol(source, groupByColumn)),
+                ImmutableMap.of(count, new FunctionCall(QualifiedName.of("count"), ImmutableList.of())),
+                ImmutableMap.of(count, signature),
+                ImmutableMap.of(),
+                Optional.empty(),
+                1.0,
+                Optional.empty());
+    }
+
+    private PlanNode optimize(PlanNode plan)
+    {
+        return new AddExchanges(metadata, false, true, true).optimize(plan, TEST_SESSION, symbolAllocator.getTypes(), symbolAllocator, idAllocator);
+    }
+
+    private static Symbol symbol(TableScanNode tableScan, String columnName)
+    {
+        for (Map.Entry<Symbol, ColumnHandle> entry : tableScan.getAssignments().entrySet()) {
+            if (((InMemoryColumnHandle) entry.getValue().getConnectorHandle()).getName().equals(columnName)) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalArgumentException("No column " + columnName);
+    }
+
+    private static void assertBucketed(PlanNode plan, String tableName, boolean bucketed)
+    {
+        for (TableScanNode tableScan : findNodes(plan, TableScanNode.class)) {
+            InMemoryTableHandle tableHandle = (InMemoryTableHandle) tableScan.getTable().getConnectorHandle();
+            if (tableHandle.getTableName().getTableName().equals(tableName)) {
+                assertEquals(tableScan.isBucketed(), bucketed, "bucketed scan of " + tableName);
+                return;
+            }
+        }
+        throw new AssertionError("No scan of " + tableName);
+    }
+
+    private static int countExchanges(PlanNode plan)
+    {
+        return findNodes(plan, ExchangeNode.class).size();
+    }
+
+    static <T extends PlanNode> List<T> findNodes(PlanNode node, Class<T> nodeClass)
+    {
+        ImmutableList.Builder<T> nodes = ImmutableList.builder();
+        if (nodeClass.isInstance(node)) {
+            nodes.add(nodeClass.cast(node));
+        }
+        for (PlanNode source : node.getSources()) {
+            nodes.addAll(findNodes(source, nodeClass));
+        }
+        return nodes.build();
+    }
+}
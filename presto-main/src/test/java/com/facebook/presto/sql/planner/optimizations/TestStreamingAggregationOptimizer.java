@@ -0,0 +1,299 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.optimizations;
+
+import com.facebook.presto.metadata.ColumnHandle;
+import com.facebook.presto.metadata.MetadataManager;
+import com.facebook.presto.metadata.Signature;
+import com.facebook.presto.metadata.TableHandle;
+import com.facebook.presto.metadata.TestingMetadata;
+import com.facebook.presto.metadata.TestingMetadata.InMemoryColumnHandle;
+import com.facebook.presto.spi.ColumnMetadata;
+import com.facebook.presto.spi.ConnectorColumnHandle;
+import com.facebook.presto.spi.ConnectorTableHandle;
+import com.facebook.presto.spi.ConnectorTableMetadata;
+import com.facebook.presto.spi.SchemaTableName;
+import com.facebook.presto.spi.block.SortOrder;
+import com.facebook.presto.sql.planner.PlanNodeIdAllocator;
+import com.facebook.presto.sql.planner.Symbol;
+import com.facebook.presto.sql.planner.SymbolAllocator;
+import com.facebook.presto.sql.planner.plan.AggregationNode;
+import com.facebook.presto.sql.planner.plan.AggregationNode.Step;
+import com.facebook.presto.sql.planner.plan.PlanNode;
+import com.facebook.presto.sql.planner.plan.ProjectNode;
+import com.facebook.presto.sql.planner.plan.SortNode;
+import com.facebook.presto.sql.planner.plan.TableScanNode;
+import com.facebook.presto.sql.tree.ArithmeticBinaryExpression;
+import com.facebook.presto.sql.tree.Expression;
+import com.facebook.presto.sql.tree.FunctionCall;
+import com.facebook.presto.sql.tree.LongLiteral;
+import com.facebook.presto.sql.tree.QualifiedName;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.sql.planner.optimizations.TestAddExchanges.findNodes;
+import static com.facebook.presto.sql.planner.plan.AggregationNode.Step.FINAL;
+import static com.facebook.presto.sql.planner.plan.AggregationNode.Step.PARTIAL;
+import static com.facebook.presto.sql.planner.plan.AggregationNode.Step.SINGLE;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static org.testng.Assert.assertEquals;
+
+public class TestStreamingAggregationOptimizer
+{
+    private static final String CONNECTOR_ID = "test";
+    private static final SchemaTableName SORTED_TABLE = new SchemaTableName("default", "sorted");
+    private static final SchemaTableName UNSORTED_TABLE = new SchemaTableName("default", "unsorted");
+
+    private MetadataManager metadata;
+    private TestingMetadata connectorMetadata;
+    private SymbolAllocator symbolAllocator;
+    private PlanNodeIdAllocator idAllocator;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        connectorMetadata = new TestingMetadata();
+        metadata = new MetadataManager();
+        metadata.addConnectorMetadata(CONNECTOR_ID, CONNECTOR_ID, connectorMetadata);
+        symbolAllocator = new SymbolAllocator();
+        idAllocator = new PlanNodeIdAllocator();
+
+        // the splits of the sorted table are sorted by (a, b)
+        createTable(SORTED_TABLE);
+        connectorMetadata.setSortedColumns(SORTED_TABLE, ImmutableList.of(
+                new InMemoryColumnHandle("a", 0, BIGINT),
+                new InMemoryColumnHandle("b", 1, BIGINT)));
+        createTable(UNSORTED_TABLE);
+    }
+
+    @Test
+    public void testSortedInput()
+    {
+        for (Step step : Step.values()) {
+            TableScanNode scan = tableScan(UNSORTED_TABLE);
+            PlanNode sort = sort(scan, symbol(scan, "a"));
+            assertStreaming(aggregation(sort, step, symbol(scan, "a")), true);
+        }
+    }
+
+    @Test
+    public void testSortedSplits()
+    {
+        // a group may span several splits, so only the partial aggregation can stream
+        TableScanNode scan = tableScan(SORTED_TABLE);
+        assertStreaming(aggregation(scan, PARTIAL, symbol(scan, "a")), true);
+
+        scan = tableScan(SORTED_TABLE);
+        assertStreaming(aggregation(scan, SINGLE, symbol(scan, "a")), false);
+
+        scan = tableScan(SORTED_TABLE);
+        assertStreaming(aggregation(scan, FINAL, symbol(scan, "a")), false);
+    }
+
+    @Test
+    public void testUnsortedInput()
+    {
+        TableScanNode scan = tableScan(UNSORTED_TABLE);
+        assertStreaming(aggregation(scan, PARTIAL, symbol(scan, "a")), false);
+    }
+
+    @Test
+    public void testGlobalAggregation()
+    {
+        TableScanNode scan = tableScan(UNSORTED_TABLE);
+        PlanNode sort = sort(scan, symbol(scan, "a"));
+        assertStreaming(aggregation(sort, SINGLE), false);
+    }
+
+    @Test
+    public void testProjectionRenamesSortKey()
+    {
+        TableScanNode scan = tableScan(UNSORTED_TABLE);
+        PlanNode sort = sort(scan, symbol(scan, "a"));
+
+        Symbol renamed = symbolAllocator.newSymbol("renamed", BIGINT);
+        PlanNode project = project(sort, ImmutableMap.of(
+                renamed, symbol(scan, "a").toQualifiedNameReference(),
+                symbol(scan, "b"), symbol(scan, "b").toQualifiedNameReference()));
+        assertStreaming(aggregation(project, SINGLE, renamed), true);
+    }
+
+    @Test
+    public void testProjectionOfSortedSplits()
+    {
+        TableScanNode scan = tableScan(SORTED_TABLE);
+        Symbol renamed = symbolAllocator.newSymbol("renamed", BIGINT);
+        PlanNode project = project(scan, ImmutableMap.of(renamed, symbol(scan, "a").toQualifiedNameReference()));
+        assertStreaming(aggregation(project, PARTIAL, renamed), true);
+
+        scan = tableScan(SORTED_TABLE);
+        renamed = symbolAllocator.newSymbol("renamed", BIGINT);
+        project = project(scan, ImmutableMap.of(renamed, symbol(scan, "a").toQualifiedNameReference()));
+        assertStreaming(aggregation(project, SINGLE, renamed), false);
+    }
+
+    @Test
+    public void testProjectionDropsSortKey()
+    {
+        // the leading sort key a is dropped, so b is no longer grouped
+        TableScanNode scan = tableScan(UNSORTED_TABLE);
+        PlanNode sort = sort(scan, symbol(scan, "a"), symbol(scan, "b"));
+        PlanNode project = project(sort, ImmutableMap.of(symbol(scan, "b"), symbol(scan, "b").toQualifiedNameReference()));
+        assertStreaming(aggregation(project, SINGLE, symbol(scan, "b")), false);
+    }
+
+    @Test
+    public void testProjectionComputesSortKey()
+    {
+        // an expression of the sort key is not known to be sorted
+        TableScanNode scan = tableScan(UNSORTED_TABLE);
+        PlanNode sort = sort(scan, symbol(scan, "a"));
+
+        Symbol computed = symbolAllocator.newSymbol("computed", BIGINT);
+        Expression expression = new ArithmeticBinaryExpression(ArithmeticBinaryExpression.Type.ADD, symbol(scan, "a").toQualifiedNameReference(), new LongLiteral("1"));
+        PlanNode project = project(sort, ImmutableMap.of(computed, expression));
+        assertStreaming(aggregation(project, SINGLE, computed), false);
+    }
+
+    @Test
+    public void testGroupByLeadingSortColumns()
+    {
+        TableScanNode scan = tableScan(UNSORTED_TABLE);
+        PlanNode sort = sort(scan, symbol(scan, "a"), symbol(scan, "b"));
+        assertStreaming(aggregation(sort, SINGLE, symbol(scan, "a")), true);
+
+        // the order of the group by keys does not matter
+        scan = tableScan(UNSORTED_TABLE);
+        sort = sort(scan, symbol(scan, "a"), symbol(scan, "b"));
+        assertStreaming(aggregation(sort, SINGLE, symbol(scan, "b"), symbol(scan, "a")), true);
+    }
+
+    @Test
+    public void testGroupByNonLeadingSortColumns()
+    {
+        TableScanNode scan = tableScan(UNSORTED_TABLE);
+        PlanNode sort = sort(scan, symbol(scan, "a"), symbol(scan, "b"));
+        assertStreaming(aggregation(sort, SINGLE, symbol(scan, "b")), false);
+
+        // c is not a sort column
+        scan = tableScan(UNSORTED_TABLE);
+        sort = sort(scan, symbol(scan, "a"), symbol(scan, "b"));
+        assertStreaming(aggregation(sort, SINGLE, symbol(scan, "a"), symbol(scan, "c")), false);
+
+        scan = tableScan(SORTED_TABLE);
+        assertStreaming(aggregation(scan, PARTIAL, symbol(scan, "b")), false);
+    }
+
+    @Test
+    public void testScanWithoutLeadingSortColumn()
+    {
+        // the scan does not read a, so the order of b is unknown
+        TableScanNode scan = tableScan(SORTED_TABLE, "b", "c");
+        assertStreaming(aggregation(scan, PARTIAL, symbol(scan, "b")), false);
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        TableScanNode scan = tableScan(UNSORTED_TABLE);
+        PlanNode sort = sort(scan, symbol(scan, "a"));
+        PlanNode plan = new StreamingAggregationOptimizer(metadata, false)
+                .optimize(aggregation(sort, SINGLE, symbol(scan, "a")), TEST_SESSION, symbolAllocator.getTypes(), symbolAllocator, idAllocator);
+        assertEquals(getOnlyElement(findNodes(plan, AggregationNode.class)).isStreaming(), false);
+    }
+
+    private void assertStreaming(AggregationNode aggregation, boolean streaming)
+    {
+        PlanNode plan = new StreamingAggregationOptimizer(metadata, true)
+                .optimize(aggregation, TEST_SESSION, symbolAllocator.getTypes(), symbolAllocator, idAllocator);
+        AggregationNode optimized = getOnlyElement(findNodes(plan, AggregationNode.class));
+        assertEquals(optimized.isStreaming(), streaming, "streaming " + optimized.getStep() + " aggregation");
+    }
+
+    private void createTable(SchemaTableName tableName)
+    {
+        connectorMetadata.createTable(TEST_SESSION.toConnectorSession(), new ConnectorTableMetadata(tableName, ImmutableList.of(
+                new ColumnMetadata("a", BIGINT, 0, false),
+                new ColumnMetadata("b", BIGINT, 1, false),
+                new ColumnMetadata("c", BIGINT, 2, false))));
+    }
+
+    private TableScanNode tableScan(SchemaTableName tableName, String... columnNames)
+    {
+        ConnectorTableHandle tableHandle = connectorMetadata.getTableHandle(TEST_SESSION.toConnectorSession(), tableName);
+        List<String> columns = columnNames.length == 0 ? ImmutableList.of("a", "b", "c") : ImmutableList.copyOf(columnNames);
+
+        ImmutableList.Builder<Symbol> outputs = ImmutableList.builder();
+        ImmutableMap.Builder<Symbol, ColumnHandle> assignments = ImmutableMap.builder();
+        for (ConnectorColumnHandle column : connectorMetadata.getColumnHandles(tableHandle).values()) {
+            InMemoryColumnHandle inMemoryColumn = (InMemoryColumnHandle) column;
+            if (columns.contains(inMemoryColumn.getName())) {
+                Symbol symbol = symbolAllocator.newSymbol(inMemoryColumn.getName(), inMemoryColumn.getType());
+                outputs.add(symbol);
+                assignments.put(symbol, new ColumnHandle(CONNECTOR_ID, column));
+            }
+        }
+        return new TableScanNode(idAllocator.getNextId(), new TableHandle(CONNECTOR_ID, tableHandle), outputs.build(), assignments.build(), null, Optional.empty());
+    }
+
+    private SortNode sort(PlanNode source, Symbol... orderBy)
+    {
+        ImmutableMap.Builder<Symbol, SortOrder> orderings = ImmutableMap.builder();
+        for (Symbol symbol : orderBy) {
+            orderings.put(symbol, SortOrder.ASC_NULLS_LAST);
+        }
+        return new SortNode(idAllocator.getNextId(), source, ImmutableList.copyOf(orderBy), orderings.build());
+    }
+
+    private ProjectNode project(PlanNode source, Map<Symbol, Expression> assignments)
+    {
+        return new ProjectNode(idAllocator.getNextId(), source, assignments);
+    }
+
+    private AggregationNode aggregation(PlanNode source, Step step, Symbol... groupBy)
+    {
+        Signature signature = metadata.resolveFunction(QualifiedName.of("count"), ImmutableList.of(), false).getSignature();
+        Symbol count = symbolAllocator.newSymbol("count", BIGINT);
+        return new AggregationNode(
+                idAllocator.getNextId(),
+                source,
+                ImmutableList.copyOf(groupBy),
+                ImmutableMap.of(count, new FunctionCall(QualifiedName.of("count"), ImmutableList.of())),
+                ImmutableMap.of(count, signature),
+                ImmutableMap.of(),
+                step,
+                Optional.empty(),
+                1.0,
+                Optional.empty());
+    }
+
+    private static Symbol symbol(PlanNode node, String columnName)
+    {
+        TableScanNode tableScan = getOnlyElement(findNodes(node, TableScanNode.class));
+        for (Map.Entry<Symbol, ColumnHandle> entry : tableScan.getAssignments().entrySet()) {
+            if (((InMemoryColumnHandle) entry.getValue().getConnectorHandle()).getName().equals(columnName)) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalArgumentException("No column " + columnName);
+    }
+}
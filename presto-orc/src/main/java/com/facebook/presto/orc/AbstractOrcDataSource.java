@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.facebook.presto.orc.OrcDataSourceUtils.getDiskRangeSlice;
 import static com.facebook.presto.orc.OrcDataSourceUtils.mergeAdjacentDiskRanges;
@@ -42,7 +43,7 @@ public abstract class AbstractOrcDataSource
     private final DataSize maxMergeDistance;
     private final DataSize maxBufferSize;
     private final DataSize streamBufferSize;
-    private long readTimeNanos;
+    private final AtomicLong readTimeNanos = new AtomicLong();
 
     public AbstractOrcDataSource(String name, long size, DataSize maxMergeDistance, DataSize maxBufferSize, DataSize streamBufferSize)
     {
@@ -62,7 +63,7 @@ public abstract class AbstractOrcDataSource
     @Override
     public final long getReadTimeNanos()
     {
-        return readTimeNanos;
+        return readTimeNanos.get();
     }
 
     @Override
@@ -79,14 +80,16 @@ public abstract class AbstractOrcDataSource
     }
 
     @Override
-    public final void readFully(long position, byte[] buffer, int bufferOffset, int bufferLength)
+    public final synchronized void readFully(long position, byte[] buffer, int bufferOffset, int bufferLength)
             throws IOException
     {
+        // reads are serialized, because the next stripe can be read by a background thread
+        // while the current stripe is loaded lazily by the reader thread
         long start = System.nanoTime();
 
         readInternal(position, buffer, bufferOffset, bufferLength);
 
-        readTimeNanos += System.nanoTime() - start;
+        readTimeNanos.addAndGet(System.nanoTime() - start);
     }
 
     @Override
@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
+import io.airlift.slice.FixedLengthSliceInput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import sun.nio.ch.DirectBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+/**
+ * Reads a local file through a read only memory mapping. Disk ranges are returned as
+ * slices over the mapping, so stream data is never copied onto the heap.
+ * <p>
+ * The mapping is released when the data source is closed, after which any slice returned
+ * by this data source must no longer be accessed. {@link OrcRecordReader} waits for a
+ * running background read before closing the data source, and copies all values that
+ * escape the reader.
+ */
+public class MemoryMappedOrcDataSource
+        implements OrcDataSource
+{
+    private final String name;
+    private final long size;
+    private final AtomicLong readTimeNanos = new AtomicLong();
+
+    private MappedByteBuffer buffer;
+    private Slice slice;
+
+    public MemoryMappedOrcDataSource(File path)
+            throws IOException
+    {
+        checkNotNull(path, "path is null");
+        this.name = path.getPath();
+
+        try (RandomAccessFile file = new RandomAccessFile(path, "r");
+                FileChannel channel = file.getChannel()) {
+            this.size = channel.size();
+            checkArgument(isMappable(size), "File is too large to be memory mapped: %s", path);
+            // the mapping stays valid after the channel is closed
+            this.buffer = channel.map(READ_ONLY, 0, size);
+        }
+        this.slice = Slices.wrappedBuffer(buffer);
+    }
+
+    public static boolean isMappable(long size)
+    {
+        return size <= Integer.MAX_VALUE;
+    }
+
+    @Override
+    public long getReadTimeNanos()
+    {
+        // pages are faulted in while the streams are decoded, so only explicit copies are timed
+        return readTimeNanos.get();
+    }
+
+    @Override
+    public long getSize()
+    {
+        return size;
+    }
+
+    @Override
+    public void readFully(long position, byte[] buffer)
+            throws IOException
+    {
+        readFully(position, buffer, 0, buffer.length);
+    }
+
+    @Override
+    public synchronized void readFully(long position, byte[] buffer, int bufferOffset, int bufferLength)
+            throws IOException
+    {
+        long start = System.nanoTime();
+
+        getSlice().getBytes(Ints.checkedCast(position), buffer, bufferOffset, bufferLength);
+
+        readTimeNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    @Override
+    public synchronized <K> Map<K, FixedLengthSliceInput> readFully(Map<K, DiskRange> diskRanges)
+            throws IOException
+    {
+        checkNotNull(diskRanges, "diskRanges is null");
+
+        Slice slice = getSlice();
+        ImmutableMap.Builder<K, FixedLengthSliceInput> slices = ImmutableMap.builder();
+        for (Entry<K, DiskRange> entry : diskRanges.entrySet()) {
+            DiskRange diskRange = entry.getValue();
+            slices.put(entry.getKey(), slice.slice(Ints.checkedCast(diskRange.getOffset()), diskRange.getLength()).getInput());
+        }
+        return slices.build();
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (buffer == null) {
+            return;
+        }
+
+        MappedByteBuffer mapping = buffer;
+        buffer = null;
+        slice = null;
+
+        // unmap eagerly instead of waiting for the buffer to be garbage collected,
+        // which can hold on to the address space and the disk space of deleted shards
+        ((DirectBuffer) mapping).cleaner().clean();
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    private Slice getSlice()
+            throws IOException
+    {
+        if (slice == null) {
+            throw new IOException("Data source is closed: " + name);
+        }
+        return slice;
+    }
+}
@@ -19,6 +19,10 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.Map;
 
+/**
+ * Implementations must be thread safe, because {@link OrcRecordReader} can read the next
+ * stripe from a background thread while the current stripe is being decoded.
+ */
 public interface OrcDataSource
         extends Closeable
 {
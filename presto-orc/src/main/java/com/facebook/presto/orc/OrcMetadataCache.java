@@ -0,0 +1,261 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc;
+
+import com.facebook.presto.orc.metadata.RowGroupIndex;
+import com.facebook.presto.orc.metadata.StripeFooter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.airlift.units.DataSize;
+import org.weakref.jmx.Managed;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.base.Throwables.propagateIfInstanceOf;
+import static io.airlift.units.DataSize.Unit.BYTE;
+
+/**
+ * Caches the parsed file tails, stripe footers and row group indexes of ORC and DWRF files
+ * across queries. Entries are keyed by {@link OrcFileId}, so a file rewritten in place is not
+ * served stale metadata.
+ * <p>
+ * The size of an entry is the serialized size of the metadata it was parsed from. A cache
+ * with a maximum size of zero is disabled and always reads the metadata from the file.
+ */
+public class OrcMetadataCache
+{
+    private final Cache<CacheKey, CacheEntry> cache;
+    private final AtomicLong retainedSize = new AtomicLong();
+
+    public OrcMetadataCache(DataSize maxSize)
+    {
+        checkNotNull(maxSize, "maxSize is null");
+        if (maxSize.toBytes() == 0) {
+            cache = null;
+        }
+        else {
+            cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maxSize.toBytes())
+                    .weigher((CacheKey key, CacheEntry entry) -> entry.getSize())
+                    .removalListener((RemovalNotification<CacheKey, CacheEntry> notification) -> retainedSize.addAndGet(-notification.getValue().getSize()))
+                    .recordStats()
+                    .build();
+        }
+    }
+
+    public static OrcMetadataCache disabled()
+    {
+        return new OrcMetadataCache(new DataSize(0, BYTE));
+    }
+
+    public OrcFileTail getFileTail(OrcFileId fileId, MetadataLoader<OrcFileTail> loader)
+            throws IOException
+    {
+        return get(new CacheKey(fileId, -1, -1), () -> {
+            OrcFileTail fileTail = loader.load();
+            return new CacheEntry(fileTail, fileTail.getSerializedSize());
+        });
+    }
+
+    public StripeFooter getStripeFooter(OrcFileId fileId, long stripeOffset, int serializedSize, MetadataLoader<StripeFooter> loader)
+            throws IOException
+    {
+        return get(new CacheKey(fileId, stripeOffset, -1), () -> new CacheEntry(loader.load(), serializedSize));
+    }
+
+    /**
+     * @return the cached row group indexes of the column, or null if they are not cached
+     */
+    @SuppressWarnings("unchecked")
+    public List<RowGroupIndex> getRowGroupIndexesIfPresent(OrcFileId fileId, long stripeOffset, int column)
+    {
+        if (cache == null) {
+            return null;
+        }
+        CacheEntry entry = cache.getIfPresent(new CacheKey(fileId, stripeOffset, column));
+        if (entry == null) {
+            return null;
+        }
+        return (List<RowGroupIndex>) entry.getValue();
+    }
+
+    public List<RowGroupIndex> getRowGroupIndexes(OrcFileId fileId, long stripeOffset, int column, int serializedSize, MetadataLoader<List<RowGroupIndex>> loader)
+            throws IOException
+    {
+        return get(new CacheKey(fileId, stripeOffset, column), () -> new CacheEntry(loader.load(), serializedSize));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(CacheKey key, EntryLoader loader)
+            throws IOException
+    {
+        if (cache == null) {
+            return (T) loader.load().getValue();
+        }
+
+        try {
+            return (T) cache.get(key, () -> {
+                CacheEntry entry = loader.load();
+                retainedSize.addAndGet(entry.getSize());
+                return entry;
+            }).getValue();
+        }
+        catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw propagate(e.getCause());
+        }
+    }
+
+    @Managed
+    public long getHitCount()
+    {
+        return stats().hitCount();
+    }
+
+    @Managed
+    public long getMissCount()
+    {
+        return stats().missCount();
+    }
+
+    @Managed
+    public double getHitRate()
+    {
+        return stats().hitRate();
+    }
+
+    @Managed
+    public long getEvictionCount()
+    {
+        return stats().evictionCount();
+    }
+
+    @Managed
+    public long getEntryCount()
+    {
+        return cache == null ? 0 : cache.size();
+    }
+
+    @Managed
+    public long getRetainedSizeInBytes()
+    {
+        return retainedSize.get();
+    }
+
+    @Managed
+    public void flushCache()
+    {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    private CacheStats stats()
+    {
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    public interface MetadataLoader<T>
+    {
+        T load()
+                throws IOException;
+    }
+
+    private interface EntryLoader
+    {
+        CacheEntry load()
+                throws IOException;
+    }
+
+    private static final class CacheEntry
+    {
+        private final Object value;
+        private final int size;
+
+        private CacheEntry(Object value, int size)
+        {
+            this.value = checkNotNull(value, "value is null");
+            this.size = size;
+        }
+
+        public Object getValue()
+        {
+            return value;
+        }
+
+        public int getSize()
+        {
+            return size;
+        }
+    }
+
+    /**
+     * The file tail has no stripe offset, and stripe footers have no column.
+     */
+    private static final class CacheKey
+    {
+        private final OrcFileId fileId;
+        private final long stripeOffset;
+        private final int column;
+
+        private CacheKey(OrcFileId fileId, long stripeOffset, int column)
+        {
+            this.fileId = checkNotNull(fileId, "fileId is null");
+            this.stripeOffset = stripeOffset;
+            this.column = column;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return Objects.equals(this.fileId, other.fileId) &&
+                    this.stripeOffset == other.stripeOffset &&
+                    this.column == other.column;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(fileId, stripeOffset, column);
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("fileId", fileId)
+                    .add("stripeOffset", stripeOffset)
+                    .add("column", column)
+                    .toString();
+        }
+    }
+}
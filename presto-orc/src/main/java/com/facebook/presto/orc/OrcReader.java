@@ -24,15 +24,19 @@ import com.google.common.primitives.Ints;
 import io.airlift.log.Logger;
 import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
+import io.airlift.units.DataSize;
 import org.joda.time.DateTimeZone;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
 import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.units.DataSize.Unit.BYTE;
 
 public class OrcReader
 {
@@ -45,18 +49,38 @@ public class OrcReader
 
     private final OrcDataSource orcDataSource;
     private final MetadataReader metadataReader;
+    private final OrcFileId fileId;
+    private final OrcMetadataCache metadataCache;
     private final CompressionKind compressionKind;
     private final int bufferSize;
     private final Footer footer;
     private final Metadata metadata;
 
-    // This is based on the Apache Hive ORC code
     public OrcReader(OrcDataSource orcDataSource, MetadataReader metadataReader)
             throws IOException
+    {
+        this(orcDataSource, metadataReader, new OrcFileId(orcDataSource.toString(), orcDataSource.getSize(), 0), OrcMetadataCache.disabled());
+    }
+
+    public OrcReader(OrcDataSource orcDataSource, MetadataReader metadataReader, OrcFileId fileId, OrcMetadataCache metadataCache)
+            throws IOException
     {
         this.orcDataSource = checkNotNull(orcDataSource, "orcDataSource is null");
         this.metadataReader = checkNotNull(metadataReader, "metadataReader is null");
+        this.fileId = checkNotNull(fileId, "fileId is null");
+        this.metadataCache = checkNotNull(metadataCache, "metadataCache is null");
+
+        OrcFileTail fileTail = metadataCache.getFileTail(fileId, () -> readFileTail(orcDataSource, metadataReader));
+        this.compressionKind = fileTail.getCompressionKind();
+        this.bufferSize = fileTail.getBufferSize();
+        this.footer = fileTail.getFooter();
+        this.metadata = fileTail.getMetadata();
+    }
 
+    // This is based on the Apache Hive ORC code
+    private static OrcFileTail readFileTail(OrcDataSource orcDataSource, MetadataReader metadataReader)
+            throws IOException
+    {
         //
         // Read the file tail:
         //
@@ -90,9 +114,9 @@ public class OrcReader
         checkOrcVersion(orcDataSource, postScript.getVersion());
 
         // check compression codec is supported
-        this.compressionKind = postScript.getCompression();
+        CompressionKind compressionKind = postScript.getCompression();
 
-        this.bufferSize = Ints.checkedCast(postScript.getCompressionBlockSize());
+        int bufferSize = Ints.checkedCast(postScript.getCompressionBlockSize());
 
         int footerSize = Ints.checkedCast(postScript.getFooterLength());
         int metadataSize = Ints.checkedCast(postScript.getMetadataLength());
@@ -118,13 +142,19 @@ public class OrcReader
 
         // read metadata
         Slice metadataSlice = completeFooterSlice.slice(0, metadataSize);
-        InputStream metadataInputStream = new OrcInputStream(orcDataSource.toString(), metadataSlice.getInput(), compressionKind, bufferSize);
-        this.metadata = metadataReader.readMetadata(metadataInputStream);
+        Metadata metadata;
+        try (InputStream metadataInputStream = new OrcInputStream(orcDataSource.toString(), metadataSlice.getInput(), compressionKind, bufferSize)) {
+            metadata = metadataReader.readMetadata(metadataInputStream);
+        }
 
         // read footer
         Slice footerSlice = completeFooterSlice.slice(metadataSize, footerSize);
-        InputStream footerInputStream = new OrcInputStream(orcDataSource.toString(), footerSlice.getInput(), compressionKind, bufferSize);
-        this.footer = metadataReader.readFooter(footerInputStream);
+        Footer footer;
+        try (InputStream footerInputStream = new OrcInputStream(orcDataSource.toString(), footerSlice.getInput(), compressionKind, bufferSize)) {
+            footer = metadataReader.readFooter(footerInputStream);
+        }
+
+        return new OrcFileTail(compressionKind, bufferSize, footer, metadata, completeFooterSize);
     }
 
     public List<String> getColumnNames()
@@ -165,6 +195,23 @@ public class OrcReader
             long length,
             DateTimeZone hiveStorageTimeZone)
             throws IOException
+    {
+        return createRecordReader(includedColumns, predicate, offset, length, hiveStorageTimeZone, sameThreadExecutor(), new DataSize(0, BYTE));
+    }
+
+    /**
+     * @param prefetchExecutor executor used to read the next stripe while the current stripe is decoded
+     * @param maxPrefetchSize maximum size of the streams of a stripe read in the background, zero disables prefetching
+     */
+    public OrcRecordReader createRecordReader(
+            Set<Integer> includedColumns,
+            OrcPredicate predicate,
+            long offset,
+            long length,
+            DateTimeZone hiveStorageTimeZone,
+            Executor prefetchExecutor,
+            DataSize maxPrefetchSize)
+            throws IOException
     {
         return new OrcRecordReader(
                 checkNotNull(includedColumns, "includedColumns is null"),
@@ -181,7 +228,11 @@ public class OrcReader
                 bufferSize,
                 footer.getRowsInRowGroup(),
                 checkNotNull(hiveStorageTimeZone, "hiveStorageTimeZone is null"),
-                metadataReader);
+                metadataReader,
+                fileId,
+                metadataCache,
+                checkNotNull(prefetchExecutor, "prefetchExecutor is null"),
+                checkNotNull(maxPrefetchSize, "maxPrefetchSize is null"));
     }
 
     /**
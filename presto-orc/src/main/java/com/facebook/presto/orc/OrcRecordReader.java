@@ -19,29 +19,44 @@ import com.facebook.presto.orc.metadata.CompressionKind;
 import com.facebook.presto.orc.metadata.MetadataReader;
 import com.facebook.presto.orc.metadata.OrcType;
 import com.facebook.presto.orc.metadata.OrcType.OrcTypeKind;
+import com.facebook.presto.orc.metadata.StripeFooter;
 import com.facebook.presto.orc.metadata.StripeInformation;
 import com.facebook.presto.orc.metadata.StripeStatistics;
 import com.facebook.presto.orc.reader.StreamReader;
 import com.facebook.presto.orc.reader.StreamReaders;
+import com.facebook.presto.orc.stream.DecompressionBufferPool;
 import com.facebook.presto.orc.stream.StreamSources;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.primitives.Ints;
+import io.airlift.slice.FixedLengthSliceInput;
+import io.airlift.units.DataSize;
 import org.joda.time.DateTimeZone;
 
+import javax.annotation.concurrent.GuardedBy;
+
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.base.Throwables.propagateIfInstanceOf;
 
 public class OrcRecordReader
 {
     private final OrcDataSource orcDataSource;
+    private final PrefetchOrcDataSource prefetchDataSource;
 
     private final StreamReader[] streamReaders;
 
@@ -52,7 +67,21 @@ public class OrcRecordReader
 
     private final List<StripeInformation> stripes;
     private final StripeReader stripeReader;
+    private final DecompressionBufferPool bufferPool;
     private int currentStripe = -1;
+    // stripe being read, its buffers are released when the reader moves to the next stripe
+    private Stripe openStripe;
+
+    private final StripeReader prefetchStripeReader;
+    private final Executor prefetchExecutor;
+    private final long maxPrefetchBytes;
+    private FutureTask<PrefetchedStripe> prefetchedStripe;
+    private long prefetchWaitNanos;
+    // held by a running prefetch, so the data source is not closed underneath it
+    private final Object prefetchLock = new Object();
+    @GuardedBy("prefetchLock")
+    private boolean closed;
+    private volatile boolean closing;
 
     private Iterator<RowGroup> rowGroups = ImmutableList.<RowGroup>of().iterator();
     private long currentGroupRowCount;
@@ -73,7 +102,11 @@ public class OrcRecordReader
             int bufferSize,
             int rowsInRowGroup,
             DateTimeZone hiveStorageTimeZone,
-            MetadataReader metadataReader)
+            MetadataReader metadataReader,
+            OrcFileId fileId,
+            OrcMetadataCache metadataCache,
+            Executor prefetchExecutor,
+            DataSize maxPrefetchSize)
             throws IOException
     {
         checkNotNull(includedColumns, "includedColumns is null");
@@ -84,6 +117,7 @@ public class OrcRecordReader
         checkNotNull(types, "types is null");
         checkNotNull(compressionKind, "compressionKind is null");
         checkNotNull(hiveStorageTimeZone, "hiveStorageTimeZone is null");
+        checkNotNull(maxPrefetchSize, "maxPrefetchSize is null");
 
         // reduce the included columns to the set that is also present
         ImmutableSet.Builder<Integer> presentColumns = ImmutableSet.builder();
@@ -118,6 +152,8 @@ public class OrcRecordReader
         this.totalRowCount = totalRowCount;
         this.stripes = stripes.build();
 
+        // decompression buffers are shared by the streams of all stripes
+        bufferPool = new DecompressionBufferPool();
         stripeReader = new StripeReader(
                 orcDataSource,
                 compressionKind,
@@ -126,7 +162,26 @@ public class OrcRecordReader
                 this.presentColumns,
                 rowsInRowGroup,
                 predicate,
-                metadataReader);
+                metadataReader,
+                fileId,
+                metadataCache,
+                bufferPool);
+
+        this.prefetchExecutor = checkNotNull(prefetchExecutor, "prefetchExecutor is null");
+        this.maxPrefetchBytes = maxPrefetchSize.toBytes();
+        this.prefetchDataSource = new PrefetchOrcDataSource(orcDataSource);
+        prefetchStripeReader = new StripeReader(
+                prefetchDataSource,
+                compressionKind,
+                types,
+                bufferSize,
+                this.presentColumns,
+                rowsInRowGroup,
+                predicate,
+                metadataReader,
+                fileId,
+                metadataCache,
+                bufferPool);
 
         streamReaders = createStreamReaders(orcDataSource, types, hiveStorageTimeZone, this.presentColumns);
     }
@@ -172,12 +227,63 @@ public class OrcRecordReader
         return splitLength;
     }
 
+    /**
+     * Gets the time the reader thread spent reading data or waiting for data read in the
+     * background. The time spent by background reads is not included.
+     */
+    public long getReadTimeNanos()
+    {
+        return orcDataSource.getReadTimeNanos() - prefetchDataSource.getBackgroundReadTimeNanos() + prefetchWaitNanos;
+    }
+
+    public long getPrefetchWaitNanos()
+    {
+        return prefetchWaitNanos;
+    }
+
     public void close()
             throws IOException
     {
+        closing = true;
+        if (prefetchedStripe != null) {
+            // the prefetch is not interrupted, since an interrupted channel read closes the file
+            if (!prefetchedStripe.cancel(false)) {
+                closePrefetchedStripe(prefetchedStripe);
+            }
+            prefetchedStripe = null;
+        }
+        if (openStripe != null) {
+            openStripe.close();
+            openStripe = null;
+        }
+        // wait for a running prefetch to finish before the data source is closed
+        synchronized (prefetchLock) {
+            closed = true;
+        }
+        bufferPool.close();
         orcDataSource.close();
     }
 
+    private static void closePrefetchedStripe(FutureTask<PrefetchedStripe> task)
+            throws IOException
+    {
+        PrefetchedStripe prefetched;
+        try {
+            prefetched = task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        catch (ExecutionException e) {
+            // the failure is irrelevant once the reader is closed
+            return;
+        }
+        if (prefetched != null && prefetched.getStripe() != null) {
+            prefetched.getStripe().close();
+        }
+    }
+
     public boolean isColumnPresent(int hiveColumnIndex)
     {
         return presentColumns.contains(hiveColumnIndex);
@@ -243,13 +349,35 @@ public class OrcRecordReader
     private void advanceToNextStripe()
             throws IOException
     {
+        if (openStripe != null) {
+            openStripe.close();
+            openStripe = null;
+        }
+
         currentStripe++;
         if (currentStripe >= stripes.size()) {
             return;
         }
 
         StripeInformation stripeInformation = stripes.get(currentStripe);
-        Stripe stripe = stripeReader.readStripe(stripeInformation);
+        Stripe stripe;
+        if (prefetchedStripe != null) {
+            PrefetchedStripe prefetched = getPrefetchedStripe();
+            if (prefetched.isLoaded()) {
+                stripe = prefetched.getStripe();
+            }
+            else {
+                stripe = stripeReader.readStripe(stripeInformation, prefetched.getStripeFooter());
+            }
+        }
+        else {
+            stripe = stripeReader.readStripe(stripeInformation);
+        }
+
+        // read the next stripe while this one is decoded
+        prefetchNextStripe();
+
+        openStripe = stripe;
         if (stripe != null) {
             // Give readers access to dictionary streams
             StreamSources dictionaryStreamSources = stripe.getDictionaryStreamSources();
@@ -267,6 +395,69 @@ public class OrcRecordReader
         }
     }
 
+    private void prefetchNextStripe()
+    {
+        if (maxPrefetchBytes == 0 || currentStripe + 1 >= stripes.size()) {
+            return;
+        }
+
+        StripeInformation stripe = stripes.get(currentStripe + 1);
+        FutureTask<PrefetchedStripe> task = new FutureTask<>(() -> {
+            synchronized (prefetchLock) {
+                if (closed || closing) {
+                    return null;
+                }
+                prefetchDataSource.startBackgroundRead();
+                try {
+                    StripeFooter stripeFooter = prefetchStripeReader.readStripeFooter(stripe);
+                    if (prefetchStripeReader.getIncludedStreamsLength(stripeFooter) > maxPrefetchBytes) {
+                        // too large to buffer, so the reader thread reads the stripe when it is needed
+                        return new PrefetchedStripe(stripeFooter, null, false);
+                    }
+                    Stripe prefetched = prefetchStripeReader.readStripe(stripe, stripeFooter);
+                    if (closing && prefetched != null) {
+                        // the reader was closed while the stripe was read, and nobody will take it
+                        prefetched.close();
+                        return null;
+                    }
+                    return new PrefetchedStripe(stripeFooter, prefetched, true);
+                }
+                finally {
+                    prefetchDataSource.finishBackgroundRead();
+                }
+            }
+        });
+
+        try {
+            prefetchExecutor.execute(task);
+            prefetchedStripe = task;
+        }
+        catch (RejectedExecutionException ignored) {
+            // the stripe is read when it is needed
+        }
+    }
+
+    private PrefetchedStripe getPrefetchedStripe()
+            throws IOException
+    {
+        long start = System.nanoTime();
+        try {
+            return prefetchedStripe.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading stripe of " + orcDataSource);
+        }
+        catch (ExecutionException e) {
+            propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw propagate(e.getCause());
+        }
+        finally {
+            prefetchedStripe = null;
+            prefetchWaitNanos += System.nanoTime() - start;
+        }
+    }
+
     private static StreamReader[] createStreamReaders(OrcDataSource orcDataSource,
             List<OrcType> types,
             DateTimeZone hiveStorageTimeZone,
@@ -324,4 +515,127 @@ public class OrcRecordReader
         }
         return statistics.build();
     }
+
+    private static class PrefetchedStripe
+    {
+        private final StripeFooter stripeFooter;
+        private final Stripe stripe;
+        private final boolean loaded;
+
+        public PrefetchedStripe(StripeFooter stripeFooter, Stripe stripe, boolean loaded)
+        {
+            this.stripeFooter = checkNotNull(stripeFooter, "stripeFooter is null");
+            this.stripe = stripe;
+            this.loaded = loaded;
+        }
+
+        public StripeFooter getStripeFooter()
+        {
+            return stripeFooter;
+        }
+
+        /**
+         * @return the stripe, or null if all row groups of the stripe were skipped
+         */
+        public Stripe getStripe()
+        {
+            return stripe;
+        }
+
+        public boolean isLoaded()
+        {
+            return loaded;
+        }
+    }
+
+    /**
+     * Tracks the time spent by background reads, so it can be excluded from the read time
+     * of the reader thread. Only reads made by the prefetch task are counted, so streams
+     * that are loaded lazily by the reader thread are never subtracted from its read time.
+     */
+    private static class PrefetchOrcDataSource
+            implements OrcDataSource
+    {
+        private final OrcDataSource delegate;
+        private final AtomicLong backgroundReadTimeNanos = new AtomicLong();
+        private volatile Thread backgroundThread;
+
+        public PrefetchOrcDataSource(OrcDataSource delegate)
+        {
+            this.delegate = checkNotNull(delegate, "delegate is null");
+        }
+
+        public void startBackgroundRead()
+        {
+            backgroundThread = Thread.currentThread();
+        }
+
+        public void finishBackgroundRead()
+        {
+            backgroundThread = null;
+        }
+
+        public long getBackgroundReadTimeNanos()
+        {
+            return backgroundReadTimeNanos.get();
+        }
+
+        @Override
+        public long getReadTimeNanos()
+        {
+            return delegate.getReadTimeNanos();
+        }
+
+        @Override
+        public long getSize()
+        {
+            return delegate.getSize();
+        }
+
+        @Override
+        public void readFully(long position, byte[] buffer)
+                throws IOException
+        {
+            readFully(position, buffer, 0, buffer.length);
+        }
+
+        @Override
+        public void readFully(long position, byte[] buffer, int bufferOffset, int bufferLength)
+                throws IOException
+        {
+            long start = System.nanoTime();
+            try {
+                delegate.readFully(position, buffer, bufferOffset, bufferLength);
+            }
+            finally {
+                recordReadTime(start);
+            }
+        }
+
+        @Override
+        public <K> Map<K, FixedLengthSliceInput> readFully(Map<K, DiskRange> diskRanges)
+                throws IOException
+        {
+            long start = System.nanoTime();
+            try {
+                return delegate.readFully(diskRanges);
+            }
+            finally {
+                recordReadTime(start);
+            }
+        }
+
+        private void recordReadTime(long start)
+        {
+            if (Thread.currentThread() == backgroundThread) {
+                backgroundReadTimeNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return delegate.toString();
+        }
+    }
 }
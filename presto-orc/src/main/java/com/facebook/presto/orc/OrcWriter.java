@@ -0,0 +1,338 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc;
+
+import com.facebook.presto.orc.metadata.ColumnEncoding;
+import com.facebook.presto.orc.metadata.ColumnStatistics;
+import com.facebook.presto.orc.metadata.CompressionKind;
+import com.facebook.presto.orc.metadata.Footer;
+import com.facebook.presto.orc.metadata.Metadata;
+import com.facebook.presto.orc.metadata.MetadataWriter;
+import com.facebook.presto.orc.metadata.OrcType;
+import com.facebook.presto.orc.metadata.RowGroupIndex;
+import com.facebook.presto.orc.metadata.Stream;
+import com.facebook.presto.orc.metadata.StripeFooter;
+import com.facebook.presto.orc.metadata.StripeInformation;
+import com.facebook.presto.orc.metadata.StripeStatistics;
+import com.facebook.presto.orc.stream.OrcOutputBuffer;
+import com.facebook.presto.orc.stream.StreamDataOutput;
+import com.facebook.presto.orc.writer.ColumnWriter;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.primitives.Ints;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.airlift.units.DataSize;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.facebook.presto.orc.metadata.ColumnEncoding.ColumnEncodingKind.DIRECT;
+import static com.facebook.presto.orc.metadata.ColumnStatistics.mergeColumnStatistics;
+import static com.facebook.presto.orc.metadata.OrcType.OrcTypeKind.STRUCT;
+import static com.facebook.presto.orc.metadata.Stream.StreamKind.ROW_INDEX;
+import static com.facebook.presto.orc.writer.ColumnWriters.createColumnWriter;
+import static com.facebook.presto.orc.writer.ColumnWriters.toOrcTypeKind;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+
+/**
+ * Writes pages to an ORC file. Values are encoded directly from the blocks of the pages,
+ * column by column, without going through the Hive object inspectors.
+ * <p>
+ * The file contains a single struct with one field per column. A stripe is finished when
+ * it reaches the maximum number of rows or the maximum buffered size, and stripes always
+ * end at a row group boundary unless the buffered size limit is hit.
+ */
+public class OrcWriter
+        implements Closeable
+{
+    public static final int DEFAULT_STRIPE_MAX_ROW_COUNT = 10_000_000;
+    public static final DataSize DEFAULT_STRIPE_MAX_SIZE = new DataSize(64, MEGABYTE);
+    public static final int DEFAULT_ROW_GROUP_MAX_ROW_COUNT = 10_000;
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private static final Slice MAGIC = Slices.utf8Slice("ORC");
+
+    private final CountingOutputStream output;
+    private final List<Type> types;
+    private final CompressionKind compression;
+    private final MetadataWriter metadataWriter;
+    private final int stripeMaxRowCount;
+    private final long stripeMaxBytes;
+    private final int rowGroupMaxRowCount;
+    private final int bufferSize;
+
+    private final List<OrcType> orcTypes;
+    private final List<ColumnWriter> columnWriters;
+
+    private final List<StripeInformation> stripes = new ArrayList<>();
+    private final List<StripeStatistics> stripeStatistics = new ArrayList<>();
+    private final List<Integer> rowGroupRowCounts = new ArrayList<>();
+    private long fileRowCount;
+    private int stripeRowCount;
+    private int rowGroupRowCount;
+    private boolean closed;
+
+    public OrcWriter(OutputStream output, List<String> columnNames, List<Type> types, CompressionKind compression, MetadataWriter metadataWriter)
+            throws IOException
+    {
+        this(output, columnNames, types, compression, metadataWriter, DEFAULT_STRIPE_MAX_ROW_COUNT, DEFAULT_STRIPE_MAX_SIZE, DEFAULT_ROW_GROUP_MAX_ROW_COUNT);
+    }
+
+    public OrcWriter(
+            OutputStream output,
+            List<String> columnNames,
+            List<Type> types,
+            CompressionKind compression,
+            MetadataWriter metadataWriter,
+            int stripeMaxRowCount,
+            DataSize stripeMaxSize,
+            int rowGroupMaxRowCount)
+            throws IOException
+    {
+        this.output = new CountingOutputStream(checkNotNull(output, "output is null"));
+        checkNotNull(columnNames, "columnNames is null");
+        this.types = ImmutableList.copyOf(checkNotNull(types, "types is null"));
+        checkArgument(columnNames.size() == types.size(), "columnNames and types have different sizes");
+        this.compression = checkNotNull(compression, "compression is null");
+        this.metadataWriter = checkNotNull(metadataWriter, "metadataWriter is null");
+        checkArgument(stripeMaxRowCount > 0, "stripeMaxRowCount must be positive");
+        this.stripeMaxRowCount = stripeMaxRowCount;
+        this.stripeMaxBytes = checkNotNull(stripeMaxSize, "stripeMaxSize is null").toBytes();
+        checkArgument(rowGroupMaxRowCount > 0, "rowGroupMaxRowCount must be positive");
+        this.rowGroupMaxRowCount = rowGroupMaxRowCount;
+        this.bufferSize = DEFAULT_BUFFER_SIZE;
+
+        ImmutableList.Builder<OrcType> orcTypes = ImmutableList.builder();
+        ImmutableList.Builder<Integer> fieldTypeIndexes = ImmutableList.builder();
+        ImmutableList.Builder<ColumnWriter> columnWriters = ImmutableList.builder();
+        for (int field = 0; field < types.size(); field++) {
+            // column 0 is the root struct
+            int column = field + 1;
+            Type type = types.get(field);
+            fieldTypeIndexes.add(column);
+            columnWriters.add(createColumnWriter(column, type, compression, bufferSize));
+        }
+        orcTypes.add(new OrcType(STRUCT, fieldTypeIndexes.build(), columnNames));
+        for (Type type : types) {
+            orcTypes.add(new OrcType(toOrcTypeKind(type), ImmutableList.<Integer>of(), ImmutableList.<String>of()));
+        }
+        this.orcTypes = orcTypes.build();
+        this.columnWriters = columnWriters.build();
+
+        this.output.write(MAGIC.getBytes());
+    }
+
+    public long getWrittenBytes()
+    {
+        return output.getCount();
+    }
+
+    public long getBufferedBytes()
+    {
+        long bufferedBytes = 0;
+        for (ColumnWriter columnWriter : columnWriters) {
+            bufferedBytes += columnWriter.getBufferedBytes();
+        }
+        return bufferedBytes;
+    }
+
+    public long getRetainedBytes()
+    {
+        long retainedBytes = 0;
+        for (ColumnWriter columnWriter : columnWriters) {
+            retainedBytes += columnWriter.getRetainedBytes();
+        }
+        return retainedBytes;
+    }
+
+    public long getRowCount()
+    {
+        return fileRowCount + stripeRowCount;
+    }
+
+    public void write(Page page)
+            throws IOException
+    {
+        checkState(!closed, "writer is closed");
+        checkNotNull(page, "page is null");
+        checkArgument(page.getChannelCount() == columnWriters.size(), "page has %s channels, but writer has %s columns", page.getChannelCount(), columnWriters.size());
+
+        int offset = 0;
+        while (offset < page.getPositionCount()) {
+            // split the page at row group boundaries, so the index positions line up
+            int length = Math.min(page.getPositionCount() - offset, rowGroupMaxRowCount - rowGroupRowCount);
+            for (int channel = 0; channel < columnWriters.size(); channel++) {
+                columnWriters.get(channel).writeBlock(page.getBlock(channel).getRegion(offset, length));
+            }
+            offset += length;
+            rowGroupRowCount += length;
+            stripeRowCount += length;
+
+            if (rowGroupRowCount == rowGroupMaxRowCount) {
+                finishRowGroup();
+            }
+            if (stripeRowCount >= stripeMaxRowCount || getBufferedBytes() >= stripeMaxBytes) {
+                flushStripe();
+            }
+        }
+    }
+
+    private void finishRowGroup()
+    {
+        for (ColumnWriter columnWriter : columnWriters) {
+            columnWriter.finishRowGroup();
+        }
+        rowGroupRowCounts.add(rowGroupRowCount);
+        rowGroupRowCount = 0;
+    }
+
+    private void flushStripe()
+            throws IOException
+    {
+        if (stripeRowCount == 0) {
+            return;
+        }
+        if (rowGroupRowCount > 0) {
+            finishRowGroup();
+        }
+
+        for (ColumnWriter columnWriter : columnWriters) {
+            columnWriter.close();
+        }
+
+        long stripeOffset = output.getCount();
+        ImmutableList.Builder<Stream> streams = ImmutableList.builder();
+
+        // the root struct only has the row counts in its index
+        ImmutableList.Builder<RowGroupIndex> rootRowGroupIndexes = ImmutableList.builder();
+        for (int rowCount : rowGroupRowCounts) {
+            rootRowGroupIndexes.add(new RowGroupIndex(ImmutableList.<Integer>of(), createStructStatistics(rowCount)));
+        }
+        streams.add(writeRowIndexes(0, rootRowGroupIndexes.build()));
+        for (int field = 0; field < columnWriters.size(); field++) {
+            streams.add(writeRowIndexes(field + 1, columnWriters.get(field).getRowGroupIndexes()));
+        }
+        long indexLength = output.getCount() - stripeOffset;
+
+        for (ColumnWriter columnWriter : columnWriters) {
+            for (StreamDataOutput dataStream : columnWriter.getDataStreams()) {
+                dataStream.writeData(output);
+                streams.add(dataStream.getStream());
+            }
+        }
+        long dataLength = output.getCount() - stripeOffset - indexLength;
+
+        ImmutableList.Builder<ColumnEncoding> columnEncodings = ImmutableList.builder();
+        ImmutableList.Builder<ColumnStatistics> columnStatistics = ImmutableList.builder();
+        columnEncodings.add(new ColumnEncoding(DIRECT, 0));
+        columnStatistics.add(createStructStatistics(stripeRowCount));
+        for (ColumnWriter columnWriter : columnWriters) {
+            columnEncodings.add(columnWriter.getColumnEncoding());
+            columnStatistics.add(columnWriter.getStripeStatistics());
+        }
+
+        OrcOutputBuffer footerBuffer = new OrcOutputBuffer(compression, bufferSize);
+        metadataWriter.writeStripeFooter(footerBuffer, new StripeFooter(streams.build(), columnEncodings.build()));
+        footerBuffer.close();
+        footerBuffer.writeDataTo(output);
+        long footerLength = footerBuffer.getOutputDataSize();
+
+        stripes.add(new StripeInformation(stripeRowCount, stripeOffset, indexLength, dataLength, footerLength));
+        stripeStatistics.add(new StripeStatistics(columnStatistics.build()));
+
+        fileRowCount += stripeRowCount;
+        stripeRowCount = 0;
+        rowGroupRowCounts.clear();
+        for (ColumnWriter columnWriter : columnWriters) {
+            columnWriter.reset();
+        }
+    }
+
+    private Stream writeRowIndexes(int column, List<RowGroupIndex> rowGroupIndexes)
+            throws IOException
+    {
+        OrcOutputBuffer buffer = new OrcOutputBuffer(compression, bufferSize);
+        metadataWriter.writeRowIndexes(buffer, rowGroupIndexes);
+        buffer.close();
+        buffer.writeDataTo(output);
+        return new Stream(column, ROW_INDEX, Ints.checkedCast(buffer.getOutputDataSize()), false);
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            flushStripe();
+
+            OrcOutputBuffer metadataBuffer = new OrcOutputBuffer(compression, bufferSize);
+            metadataWriter.writeMetadata(metadataBuffer, new Metadata(stripeStatistics));
+            metadataBuffer.close();
+            metadataBuffer.writeDataTo(output);
+
+            Footer footer = new Footer(fileRowCount, rowGroupMaxRowCount, stripes, orcTypes, createFileStatistics());
+            OrcOutputBuffer footerBuffer = new OrcOutputBuffer(compression, bufferSize);
+            metadataWriter.writeFooter(footerBuffer, footer);
+            footerBuffer.close();
+            footerBuffer.writeDataTo(output);
+
+            // the post script is never compressed, and the last byte of the file is its length
+            int postScriptLength = metadataWriter.writePostScript(
+                    output,
+                    Ints.checkedCast(footerBuffer.getOutputDataSize()),
+                    Ints.checkedCast(metadataBuffer.getOutputDataSize()),
+                    compression,
+                    bufferSize);
+            checkState(postScriptLength < 256, "post script is too large: %s bytes", postScriptLength);
+            output.write(postScriptLength);
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    private List<ColumnStatistics> createFileStatistics()
+    {
+        ImmutableList.Builder<ColumnStatistics> fileStatistics = ImmutableList.builder();
+        fileStatistics.add(createStructStatistics(fileRowCount));
+        for (int field = 0; field < types.size(); field++) {
+            List<ColumnStatistics> columnStatistics = new ArrayList<>();
+            for (StripeStatistics stripe : stripeStatistics) {
+                // entry 0 is the root struct
+                columnStatistics.add(stripe.getColumnStatistics().get(field + 1));
+            }
+            fileStatistics.add(mergeColumnStatistics(columnStatistics));
+        }
+        return fileStatistics.build();
+    }
+
+    private static ColumnStatistics createStructStatistics(long rowCount)
+    {
+        return new ColumnStatistics(rowCount, null, null, null, null, null);
+    }
+}
@@ -14,9 +14,12 @@
 package com.facebook.presto.orc;
 
 import com.facebook.presto.orc.metadata.ColumnEncoding;
+import com.facebook.presto.orc.stream.OrcInputStream;
 import com.facebook.presto.orc.stream.StreamSources;
 import com.google.common.collect.ImmutableList;
 
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
@@ -28,13 +31,15 @@ public class Stripe
     private final List<ColumnEncoding> columnEncodings;
     private final List<RowGroup> rowGroups;
     private final StreamSources dictionaryStreamSources;
+    private final List<OrcInputStream> inputStreams;
 
-    public Stripe(long rowCount, List<ColumnEncoding> columnEncodings, List<RowGroup> rowGroups, StreamSources dictionaryStreamSources)
+    public Stripe(long rowCount, List<ColumnEncoding> columnEncodings, List<RowGroup> rowGroups, StreamSources dictionaryStreamSources, Collection<OrcInputStream> inputStreams)
     {
         this.rowCount = rowCount;
         this.columnEncodings = checkNotNull(columnEncodings, "columnEncodings is null");
         this.rowGroups = ImmutableList.copyOf(checkNotNull(rowGroups, "rowGroups is null"));
         this.dictionaryStreamSources = checkNotNull(dictionaryStreamSources, "dictionaryStreamSources is null");
+        this.inputStreams = ImmutableList.copyOf(checkNotNull(inputStreams, "inputStreams is null"));
     }
 
     public long getRowCount()
@@ -57,6 +62,18 @@ public class Stripe
         return dictionaryStreamSources;
     }
 
+    /**
+     * Returns the decompression buffers of the stripe to the pool. The streams of
+     * the stripe must not be read afterwards.
+     */
+    public void close()
+            throws IOException
+    {
+        for (OrcInputStream inputStream : inputStreams) {
+            inputStream.close();
+        }
+    }
+
     @Override
     public String toString()
     {
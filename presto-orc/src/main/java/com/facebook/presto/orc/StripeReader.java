@@ -27,6 +27,7 @@ import com.facebook.presto.orc.metadata.Stream;
 import com.facebook.presto.orc.metadata.Stream.StreamKind;
 import com.facebook.presto.orc.metadata.StripeFooter;
 import com.facebook.presto.orc.metadata.StripeInformation;
+import com.facebook.presto.orc.stream.DecompressionBufferPool;
 import com.facebook.presto.orc.stream.OrcInputStream;
 import com.facebook.presto.orc.stream.StreamSource;
 import com.facebook.presto.orc.stream.StreamSources;
@@ -73,6 +74,9 @@ public class StripeReader
     private final int rowsInRowGroup;
     private final OrcPredicate predicate;
     private final MetadataReader metadataReader;
+    private final OrcFileId fileId;
+    private final OrcMetadataCache metadataCache;
+    private final DecompressionBufferPool bufferPool;
 
     public StripeReader(OrcDataSource orcDataSource,
             CompressionKind compressionKind,
@@ -81,7 +85,10 @@ public class StripeReader
             Set<Integer> includedColumns,
             int rowsInRowGroup,
             OrcPredicate predicate,
-            MetadataReader metadataReader)
+            MetadataReader metadataReader,
+            OrcFileId fileId,
+            OrcMetadataCache metadataCache,
+            DecompressionBufferPool bufferPool)
     {
         this.orcDataSource = checkNotNull(orcDataSource, "orcDataSource is null");
         this.compressionKind = checkNotNull(compressionKind, "compressionKind is null");
@@ -91,13 +98,20 @@ public class StripeReader
         this.rowsInRowGroup = rowsInRowGroup;
         this.predicate = checkNotNull(predicate, "predicate is null");
         this.metadataReader = checkNotNull(metadataReader, "metadataReader is null");
+        this.fileId = checkNotNull(fileId, "fileId is null");
+        this.metadataCache = checkNotNull(metadataCache, "metadataCache is null");
+        this.bufferPool = checkNotNull(bufferPool, "bufferPool is null");
     }
 
     public Stripe readStripe(StripeInformation stripe)
             throws IOException
     {
-        // read the stripe footer
-        StripeFooter stripeFooter = readStripeFooter(stripe);
+        return readStripe(stripe, readStripeFooter(stripe));
+    }
+
+    public Stripe readStripe(StripeInformation stripe, StripeFooter stripeFooter)
+            throws IOException
+    {
         List<ColumnEncoding> columnEncodings = stripeFooter.getColumnEncodings();
 
         // get streams for selected columns
@@ -115,21 +129,31 @@ public class StripeReader
         }
 
         if (stripe.getNumberOfRows() > 10_000 || hasRowGroupDictionary) {
+            // row indexes that are already cached do not need to be read from the file
+            Map<Integer, List<RowGroupIndex>> cachedColumnIndexes = getCachedColumnIndexes(stripe.getOffset(), streams);
+
             // determine ranges of the stripe to read
             Map<StreamId, DiskRange> diskRanges = getDiskRanges(stripeFooter.getStreams());
             diskRanges = Maps.filterKeys(diskRanges, Predicates.in(streams.keySet()));
+            if (cachedColumnIndexes != null) {
+                diskRanges = Maps.filterKeys(diskRanges, streamId -> streamId.getStreamKind() != ROW_INDEX);
+            }
 
             // read the file regions
             Map<StreamId, OrcInputStream> streamsData = readDiskRanges(stripe.getOffset(), diskRanges);
 
             // read the row index for each column
-            Map<Integer, List<RowGroupIndex>> columnIndexes = readColumnIndexes(streams, streamsData);
+            Map<Integer, List<RowGroupIndex>> columnIndexes = cachedColumnIndexes;
+            if (columnIndexes == null) {
+                columnIndexes = readColumnIndexes(stripe.getOffset(), streams, streamsData);
+            }
 
             // select the row groups matching the tuple domain
             Set<Integer> selectedRowGroups = selectRowGroups(stripe, columnIndexes);
 
             // if all row groups are skipped, return null
             if (selectedRowGroups.isEmpty()) {
+                closeStreams(streamsData);
                 return null;
             }
 
@@ -149,9 +173,10 @@ public class StripeReader
                         selectedRowGroups,
                         columnEncodings);
 
-                return new Stripe(stripe.getNumberOfRows(), columnEncodings, rowGroups, dictionaryStreamSources);
+                return new Stripe(stripe.getNumberOfRows(), columnEncodings, rowGroups, dictionaryStreamSources, streamsData.values());
             }
             catch (InvalidCheckpointException e) {
+                closeStreams(streamsData);
                 // The ORC file contains a corrupt checkpoint stream
                 // If the file does not have a row group dictionary, treat the stripe as a single row group. Otherwise,
                 // we must fail because the length of the row group dictionary is contained in the checkpoint stream.
@@ -186,7 +211,29 @@ public class StripeReader
         }
         RowGroup rowGroup = new RowGroup(0, stripe.getNumberOfRows(), new StreamSources(builder.build()));
 
-        return new Stripe(stripe.getNumberOfRows(), columnEncodings, ImmutableList.of(rowGroup), dictionaryStreamSources);
+        return new Stripe(stripe.getNumberOfRows(), columnEncodings, ImmutableList.of(rowGroup), dictionaryStreamSources, streamsData.values());
+    }
+
+    private static void closeStreams(Map<StreamId, OrcInputStream> streamsData)
+            throws IOException
+    {
+        for (OrcInputStream stream : streamsData.values()) {
+            stream.close();
+        }
+    }
+
+    /**
+     * @return the total length of the streams of the included columns
+     */
+    public long getIncludedStreamsLength(StripeFooter stripeFooter)
+    {
+        long length = 0;
+        for (Stream stream : stripeFooter.getStreams()) {
+            if (includedOrcColumns.contains(stream.getColumn())) {
+                length += stream.getLength();
+            }
+        }
+        return length;
     }
 
     public Map<StreamId, OrcInputStream> readDiskRanges(long stripeOffset, Map<StreamId, DiskRange> diskRanges)
@@ -211,7 +258,7 @@ public class StripeReader
         String sourceName = orcDataSource.toString();
         ImmutableMap.Builder<StreamId, OrcInputStream> streamsBuilder = ImmutableMap.builder();
         for (Entry<StreamId, FixedLengthSliceInput> entry : streamsData.entrySet()) {
-            streamsBuilder.put(entry.getKey(), new OrcInputStream(sourceName, entry.getValue(), compressionKind, bufferSize));
+            streamsBuilder.put(entry.getKey(), new OrcInputStream(sourceName, entry.getValue(), compressionKind, bufferSize, bufferPool));
         }
         return streamsBuilder.build();
     }
@@ -311,14 +358,35 @@ public class StripeReader
         long offset = stripe.getOffset() + stripe.getIndexLength() + stripe.getDataLength();
         int tailLength = Ints.checkedCast(stripe.getFooterLength());
 
-        // read the footer
-        byte[] tailBuffer = new byte[tailLength];
-        orcDataSource.readFully(offset, tailBuffer);
-        InputStream inputStream = new OrcInputStream(orcDataSource.toString(), Slices.wrappedBuffer(tailBuffer).getInput(), compressionKind, bufferSize);
-        return metadataReader.readStripeFooter(types, inputStream);
+        return metadataCache.getStripeFooter(fileId, stripe.getOffset(), tailLength, () -> {
+            // read the footer
+            byte[] tailBuffer = new byte[tailLength];
+            orcDataSource.readFully(offset, tailBuffer);
+            try (InputStream inputStream = new OrcInputStream(orcDataSource.toString(), Slices.wrappedBuffer(tailBuffer).getInput(), compressionKind, bufferSize)) {
+                return metadataReader.readStripeFooter(types, inputStream);
+            }
+        });
+    }
+
+    /**
+     * @return the row indexes of all included columns, or null if any of them is not cached
+     */
+    private Map<Integer, List<RowGroupIndex>> getCachedColumnIndexes(long stripeOffset, Map<StreamId, Stream> streams)
+    {
+        ImmutableMap.Builder<Integer, List<RowGroupIndex>> columnIndexes = ImmutableMap.builder();
+        for (Stream stream : streams.values()) {
+            if (stream.getStreamKind() == ROW_INDEX) {
+                List<RowGroupIndex> rowGroupIndexes = metadataCache.getRowGroupIndexesIfPresent(fileId, stripeOffset, stream.getColumn());
+                if (rowGroupIndexes == null) {
+                    return null;
+                }
+                columnIndexes.put(stream.getColumn(), rowGroupIndexes);
+            }
+        }
+        return columnIndexes.build();
     }
 
-    private Map<Integer, List<RowGroupIndex>> readColumnIndexes(Map<StreamId, Stream> streams, Map<StreamId, OrcInputStream> streamsData)
+    private Map<Integer, List<RowGroupIndex>> readColumnIndexes(long stripeOffset, Map<StreamId, Stream> streams, Map<StreamId, OrcInputStream> streamsData)
             throws IOException
     {
         ImmutableMap.Builder<Integer, List<RowGroupIndex>> columnIndexes = ImmutableMap.builder();
@@ -326,7 +394,13 @@ public class StripeReader
             Stream stream = entry.getValue();
             if (stream.getStreamKind() == ROW_INDEX) {
                 OrcInputStream inputStream = streamsData.get(entry.getKey());
-                columnIndexes.put(stream.getColumn(), metadataReader.readRowIndexes(inputStream));
+                List<RowGroupIndex> rowGroupIndexes = metadataCache.getRowGroupIndexes(
+                        fileId,
+                        stripeOffset,
+                        stream.getColumn(),
+                        Ints.checkedCast(stream.getLength()),
+                        () -> metadataReader.readRowIndexes(inputStream));
+                columnIndexes.put(stream.getColumn(), rowGroupIndexes);
             }
         }
         return columnIndexes.build();
@@ -13,6 +13,10 @@
  */
 package com.facebook.presto.orc.metadata;
 
+import io.airlift.slice.Slices;
+
+import java.util.List;
+
 public class ColumnStatistics
 {
     private final Long numberOfValues;
@@ -71,4 +75,102 @@ public class ColumnStatistics
     {
         return stringStatistics;
     }
+
+    /**
+     * Combines the statistics of consecutive parts of a column, such as the row groups
+     * of a stripe. A range statistic is only kept if every part has it.
+     */
+    public static ColumnStatistics mergeColumnStatistics(List<ColumnStatistics> stats)
+    {
+        long numberOfValues = 0;
+        for (ColumnStatistics stat : stats) {
+            numberOfValues += stat.getNumberOfValues();
+        }
+
+        return new ColumnStatistics(
+                numberOfValues,
+                mergeBooleanStatistics(stats),
+                mergeIntegerStatistics(stats),
+                mergeDoubleStatistics(stats),
+                mergeStringStatistics(stats),
+                null);
+    }
+
+    private static BooleanStatistics mergeBooleanStatistics(List<ColumnStatistics> stats)
+    {
+        boolean hasStatistics = false;
+        long trueValueCount = 0;
+        for (ColumnStatistics stat : stats) {
+            BooleanStatistics booleanStatistics = stat.getBooleanStatistics();
+            if (booleanStatistics == null) {
+                // a part without values has no statistics
+                if (stat.getNumberOfValues() == 0) {
+                    continue;
+                }
+                return null;
+            }
+            hasStatistics = true;
+            trueValueCount += booleanStatistics.getTrueValueCount();
+        }
+        return hasStatistics ? new BooleanStatistics(trueValueCount) : null;
+    }
+
+    private static IntegerStatistics mergeIntegerStatistics(List<ColumnStatistics> stats)
+    {
+        Long min = null;
+        Long max = null;
+        for (ColumnStatistics stat : stats) {
+            IntegerStatistics integerStatistics = stat.getIntegerStatistics();
+            if (integerStatistics == null || integerStatistics.getMin() == null || integerStatistics.getMax() == null) {
+                if (stat.getNumberOfValues() == 0) {
+                    continue;
+                }
+                return null;
+            }
+            min = (min == null) ? integerStatistics.getMin() : Math.min(min, integerStatistics.getMin());
+            max = (max == null) ? integerStatistics.getMax() : Math.max(max, integerStatistics.getMax());
+        }
+        return (min == null) ? null : new IntegerStatistics(min, max);
+    }
+
+    private static DoubleStatistics mergeDoubleStatistics(List<ColumnStatistics> stats)
+    {
+        Double min = null;
+        Double max = null;
+        for (ColumnStatistics stat : stats) {
+            DoubleStatistics doubleStatistics = stat.getDoubleStatistics();
+            if (doubleStatistics == null || doubleStatistics.getMin() == null || doubleStatistics.getMax() == null) {
+                if (stat.getNumberOfValues() == 0) {
+                    continue;
+                }
+                return null;
+            }
+            min = (min == null) ? doubleStatistics.getMin() : Math.min(min, doubleStatistics.getMin());
+            max = (max == null) ? doubleStatistics.getMax() : Math.max(max, doubleStatistics.getMax());
+        }
+        return (min == null) ? null : new DoubleStatistics(min, max);
+    }
+
+    private static StringStatistics mergeStringStatistics(List<ColumnStatistics> stats)
+    {
+        String min = null;
+        String max = null;
+        for (ColumnStatistics stat : stats) {
+            StringStatistics stringStatistics = stat.getStringStatistics();
+            if (stringStatistics == null || stringStatistics.getMin() == null || stringStatistics.getMax() == null) {
+                if (stat.getNumberOfValues() == 0) {
+                    continue;
+                }
+                return null;
+            }
+            // compare in UTF-8 byte order, which is the order used when the statistics were collected
+            if (min == null || Slices.utf8Slice(stringStatistics.getMin()).compareTo(Slices.utf8Slice(min)) < 0) {
+                min = stringStatistics.getMin();
+            }
+            if (max == null || Slices.utf8Slice(stringStatistics.getMax()).compareTo(Slices.utf8Slice(max)) > 0) {
+                max = stringStatistics.getMax();
+            }
+        }
+        return (min == null) ? null : new StringStatistics(min, max);
+    }
 }
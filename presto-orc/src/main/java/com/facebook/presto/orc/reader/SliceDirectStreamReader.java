@@ -24,7 +24,7 @@ import com.facebook.presto.orc.stream.LongStream;
 import com.facebook.presto.orc.stream.StreamSource;
 import com.facebook.presto.orc.stream.StreamSources;
 import com.google.common.primitives.Ints;
-import io.airlift.slice.Slices;
+import io.airlift.slice.Slice;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -40,12 +40,11 @@ import static com.facebook.presto.orc.reader.OrcReaderUtils.castOrcVector;
 import static com.facebook.presto.orc.stream.MissingStreamSource.missingStreamSource;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static io.airlift.slice.Slices.EMPTY_SLICE;
 
 public class SliceDirectStreamReader
         implements StreamReader
 {
-    private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
-
     private final StreamDescriptor streamDescriptor;
 
     private int readOffset;
@@ -134,19 +133,20 @@ public class SliceDirectStreamReader
             }
         }
 
-        byte[] data = EMPTY_BYTE_ARRAY;
+        Slice data = EMPTY_SLICE;
         if (totalLength > 0) {
             if (dataStream == null) {
                 throw new OrcCorruptionException("Value is not null but data stream is not present");
             }
-            data = dataStream.next(totalLength);
+            // the values reference the decompressed data, so the bytes are not copied
+            data = dataStream.nextSlice(totalLength);
         }
 
         int offset = 0;
         for (int i = 0; i < nextBatchSize; i++) {
             if (!isNullVector[i]) {
                 int length = lengthVector[i];
-                sliceVector.vector[i] = Slices.wrappedBuffer(data, offset, length);
+                sliceVector.vector[i] = data.slice(offset, length);
                 offset += length;
             }
             else {
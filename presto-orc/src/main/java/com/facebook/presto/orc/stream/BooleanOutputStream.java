@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.stream;
+
+import com.facebook.presto.orc.metadata.CompressionKind;
+import com.facebook.presto.orc.metadata.Stream.StreamKind;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Bit packed booleans stored in a byte run length encoded stream, the write side of {@link BooleanStream}.
+ */
+public class BooleanOutputStream
+        implements ValueOutputStream
+{
+    private final ByteOutputStream byteOutputStream;
+    private final List<Integer> bitOffsets = new ArrayList<>();
+
+    private int data;
+    private int bitsInData;
+
+    public BooleanOutputStream(CompressionKind compression, int bufferSize)
+    {
+        this.byteOutputStream = new ByteOutputStream(compression, bufferSize);
+        // the byte stream records its own initial checkpoint
+        bitOffsets.add(0);
+    }
+
+    public void writeBoolean(boolean value)
+    {
+        if (value) {
+            data |= 0x1 << (7 - bitsInData);
+        }
+        bitsInData++;
+
+        if (bitsInData == 8) {
+            flushData();
+        }
+    }
+
+    public void writeBooleans(int count, boolean value)
+    {
+        while (count > 0 && bitsInData != 0) {
+            writeBoolean(value);
+            count--;
+        }
+
+        byte fullByte = value ? (byte) 0xFF : 0;
+        while (count >= 8) {
+            byteOutputStream.writeByte(fullByte);
+            count -= 8;
+        }
+
+        while (count > 0) {
+            writeBoolean(value);
+            count--;
+        }
+    }
+
+    @Override
+    public void recordCheckpoint()
+    {
+        // the partially filled byte will be the first byte after the byte stream
+        // checkpoint, so the checkpoint only needs the number of bits to skip in it
+        byteOutputStream.recordCheckpoint();
+        bitOffsets.add(bitsInData);
+    }
+
+    @Override
+    public List<List<Integer>> getCheckpoints()
+    {
+        List<List<Integer>> byteCheckpoints = byteOutputStream.getCheckpoints();
+        checkState(byteCheckpoints.size() == bitOffsets.size(), "byte and bit checkpoints do not match");
+
+        ImmutableList.Builder<List<Integer>> checkpoints = ImmutableList.builder();
+        for (int i = 0; i < byteCheckpoints.size(); i++) {
+            checkpoints.add(ImmutableList.<Integer>builder()
+                    .addAll(byteCheckpoints.get(i))
+                    .add(bitOffsets.get(i))
+                    .build());
+        }
+        return checkpoints.build();
+    }
+
+    @Override
+    public void close()
+    {
+        if (bitsInData > 0) {
+            flushData();
+        }
+        byteOutputStream.close();
+    }
+
+    @Override
+    public StreamDataOutput getStreamDataOutput(int column, StreamKind streamKind)
+    {
+        return byteOutputStream.getStreamDataOutput(column, streamKind);
+    }
+
+    @Override
+    public long getBufferedBytes()
+    {
+        return byteOutputStream.getBufferedBytes();
+    }
+
+    @Override
+    public long getRetainedBytes()
+    {
+        return byteOutputStream.getRetainedBytes();
+    }
+
+    @Override
+    public void reset()
+    {
+        data = 0;
+        bitsInData = 0;
+        byteOutputStream.reset();
+        bitOffsets.clear();
+        bitOffsets.add(0);
+    }
+
+    private void flushData()
+    {
+        byteOutputStream.writeByte((byte) data);
+        data = 0;
+        bitsInData = 0;
+    }
+}
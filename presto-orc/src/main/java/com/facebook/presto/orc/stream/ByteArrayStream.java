@@ -14,6 +14,7 @@
 package com.facebook.presto.orc.stream;
 
 import com.facebook.presto.orc.checkpoint.ByteArrayStreamCheckpoint;
+import io.airlift.slice.Slice;
 
 import java.io.IOException;
 
@@ -39,6 +40,16 @@ public class ByteArrayStream
         return data;
     }
 
+    /**
+     * Reads the next {@code length} bytes without copying them when possible. The returned
+     * slice can reference the decompression buffer of the stream.
+     */
+    public Slice nextSlice(int length)
+            throws IOException
+    {
+        return inputStream.readSlice(length);
+    }
+
     public void next(int length, byte[] data)
             throws IOException
     {
@@ -0,0 +1,182 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.stream;
+
+import com.facebook.presto.orc.metadata.CompressionKind;
+import com.facebook.presto.orc.metadata.Stream;
+import com.facebook.presto.orc.metadata.Stream.StreamKind;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.facebook.presto.orc.stream.OrcStreamUtils.MIN_REPEAT_SIZE;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Byte run length encoding, the write side of {@link ByteStream}.
+ */
+public class ByteOutputStream
+        implements ValueOutputStream
+{
+    private static final int MAX_LITERAL_SIZE = 128;
+    private static final int MAX_REPEAT_SIZE = 127 + MIN_REPEAT_SIZE;
+
+    private final OrcOutputBuffer buffer;
+    private final List<List<Integer>> checkpoints = new ArrayList<>();
+
+    private final byte[] literals = new byte[MAX_REPEAT_SIZE];
+    private int literalCount;
+    private boolean repeat;
+    private int tailRunLength;
+
+    private boolean closed;
+
+    public ByteOutputStream(CompressionKind compression, int bufferSize)
+    {
+        this.buffer = new OrcOutputBuffer(compression, bufferSize);
+        recordCheckpoint();
+    }
+
+    // This is based on the Apache Hive ORC code
+    public void writeByte(byte value)
+    {
+        checkState(!closed, "stream is closed");
+
+        if (literalCount == 0) {
+            literals[literalCount++] = value;
+            tailRunLength = 1;
+        }
+        else if (repeat) {
+            if (value == literals[0]) {
+                literalCount++;
+                if (literalCount == MAX_REPEAT_SIZE) {
+                    flushValues();
+                }
+            }
+            else {
+                flushValues();
+                literals[literalCount++] = value;
+                tailRunLength = 1;
+            }
+        }
+        else {
+            if (value == literals[literalCount - 1]) {
+                tailRunLength++;
+            }
+            else {
+                tailRunLength = 1;
+            }
+
+            if (tailRunLength == MIN_REPEAT_SIZE) {
+                if (literalCount + 1 == MIN_REPEAT_SIZE) {
+                    repeat = true;
+                    literalCount++;
+                }
+                else {
+                    // write the literals before the run
+                    literalCount -= MIN_REPEAT_SIZE - 1;
+                    flushValues();
+                    literals[0] = value;
+                    repeat = true;
+                    literalCount = MIN_REPEAT_SIZE;
+                }
+            }
+            else {
+                literals[literalCount++] = value;
+                if (literalCount == MAX_LITERAL_SIZE) {
+                    flushValues();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void recordCheckpoint()
+    {
+        checkState(!closed, "stream is closed");
+        flushValues();
+
+        ImmutableList.Builder<Integer> positions = ImmutableList.builder();
+        buffer.addCheckpoint(positions);
+        // runs are never split across checkpoints
+        positions.add(0);
+        checkpoints.add(positions.build());
+    }
+
+    @Override
+    public List<List<Integer>> getCheckpoints()
+    {
+        return ImmutableList.copyOf(checkpoints);
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        flushValues();
+        buffer.close();
+    }
+
+    @Override
+    public StreamDataOutput getStreamDataOutput(int column, StreamKind streamKind)
+    {
+        checkState(closed, "stream is not closed");
+        return new StreamDataOutput(new Stream(column, streamKind, Ints.checkedCast(buffer.getOutputDataSize()), false), buffer);
+    }
+
+    @Override
+    public long getBufferedBytes()
+    {
+        return buffer.getOutputDataSize() + literalCount;
+    }
+
+    @Override
+    public long getRetainedBytes()
+    {
+        return buffer.getRetainedSize() + literals.length;
+    }
+
+    @Override
+    public void reset()
+    {
+        closed = false;
+        literalCount = 0;
+        repeat = false;
+        tailRunLength = 0;
+        buffer.reset();
+        checkpoints.clear();
+        recordCheckpoint();
+    }
+
+    private void flushValues()
+    {
+        if (literalCount == 0) {
+            return;
+        }
+
+        if (repeat) {
+            buffer.write(literalCount - MIN_REPEAT_SIZE);
+            buffer.write(literals[0]);
+        }
+        else {
+            buffer.write(-literalCount);
+            buffer.write(literals, 0, literalCount);
+        }
+        repeat = false;
+        tailRunLength = 0;
+        literalCount = 0;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.stream;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Inflater;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Decompression buffers shared by the streams of a reader. The streams of a stripe
+ * return their buffers when the reader moves to the next stripe, so the buffers are
+ * reused by the streams of the following stripes instead of being allocated again.
+ * The pool also holds the inflaters of the reader, which are ended when the pool is closed.
+ */
+@ThreadSafe
+public final class DecompressionBufferPool
+{
+    @GuardedBy("this")
+    private final List<byte[]> buffers = new ArrayList<>();
+    @GuardedBy("this")
+    private final List<Inflater> inflaters = new ArrayList<>();
+    @GuardedBy("this")
+    private boolean closed;
+
+    /**
+     * Gets a buffer of at least {@code minSize} bytes. A new buffer is sized to the next power of
+     * two, so a stream that has to grow its buffer a few times ends with a buffer close to its
+     * largest chunk.
+     */
+    public synchronized byte[] allocate(int minSize, int maxSize)
+    {
+        checkArgument(minSize <= maxSize, "minSize is greater than maxSize");
+
+        // use the smallest pooled buffer that is large enough
+        int bestIndex = -1;
+        for (int i = 0; i < buffers.size(); i++) {
+            int length = buffers.get(i).length;
+            if (length >= minSize && (bestIndex < 0 || length < buffers.get(bestIndex).length)) {
+                bestIndex = i;
+            }
+        }
+        if (bestIndex >= 0) {
+            return buffers.remove(bestIndex);
+        }
+
+        int size = Integer.highestOneBit(Math.max(minSize - 1, 1)) << 1;
+        return new byte[Math.max(minSize, Math.min(size, maxSize))];
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not use the buffer afterwards.
+     */
+    public synchronized void release(byte[] buffer)
+    {
+        buffers.add(checkNotNull(buffer, "buffer is null"));
+    }
+
+    /**
+     * Gets an inflater for raw deflate data. Inflaters are expensive to create, so they are
+     * reused by all streams of the pool.
+     */
+    public synchronized Inflater allocateInflater()
+    {
+        if (!inflaters.isEmpty()) {
+            return inflaters.remove(inflaters.size() - 1);
+        }
+        return new Inflater(true);
+    }
+
+    /**
+     * Returns an inflater to the pool. An inflater returned after the pool is closed is ended.
+     */
+    public synchronized void release(Inflater inflater)
+    {
+        checkNotNull(inflater, "inflater is null");
+        if (closed) {
+            inflater.end();
+            return;
+        }
+        inflater.reset();
+        inflaters.add(inflater);
+    }
+
+    /**
+     * Ends the pooled inflaters, which releases their native memory.
+     */
+    public synchronized void close()
+    {
+        closed = true;
+        for (Inflater inflater : inflaters) {
+            inflater.end();
+        }
+        inflaters.clear();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.facebook.presto.orc.stream.OrcStreamUtils.readFully;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+
+/**
+ * Unpacks big endian bit packed values, as written by the ORC run length encodings.
+ * The packed bytes are read from the stream in bulk, and the common bit widths are
+ * decoded with specialized loops.
+ */
+final class LongBitPacker
+{
+    // values are unpacked in groups, so the packed bytes of a group always end at a byte boundary
+    private static final int GROUP_SIZE = 64;
+
+    private final byte[] bytes = new byte[GROUP_SIZE * SIZE_OF_LONG];
+
+    public void unpack(long[] buffer, int offset, int length, int bitSize, InputStream input)
+            throws IOException
+    {
+        while (length > 0) {
+            int groupLength = Math.min(length, GROUP_SIZE);
+            unpackGroup(buffer, offset, groupLength, bitSize, input);
+            offset += groupLength;
+            length -= groupLength;
+        }
+    }
+
+    private void unpackGroup(long[] buffer, int offset, int length, int bitSize, InputStream input)
+            throws IOException
+    {
+        int byteCount = ((length * bitSize) + 7) / 8;
+        readFully(input, bytes, 0, byteCount);
+
+        switch (bitSize) {
+            case 1:
+                unpack1(buffer, offset, length, bytes);
+                break;
+            case 2:
+                unpack2(buffer, offset, length, bytes);
+                break;
+            case 4:
+                unpack4(buffer, offset, length, bytes);
+                break;
+            case 8:
+                unpack8(buffer, offset, length, bytes);
+                break;
+            case 16:
+                unpack16(buffer, offset, length, bytes);
+                break;
+            case 24:
+                unpack24(buffer, offset, length, bytes);
+                break;
+            case 32:
+                unpack32(buffer, offset, length, bytes);
+                break;
+            case 40:
+            case 48:
+            case 56:
+            case 64:
+                unpackBytes(buffer, offset, length, bitSize / 8, bytes);
+                break;
+            default:
+                unpackGeneric(buffer, offset, length, bitSize, bytes);
+        }
+    }
+
+    private static void unpack1(long[] buffer, int offset, int length, byte[] bytes)
+    {
+        for (int i = 0; i < length; i++) {
+            buffer[offset + i] = (bytes[i >>> 3] >>> (7 - (i & 7))) & 0b1;
+        }
+    }
+
+    private static void unpack2(long[] buffer, int offset, int length, byte[] bytes)
+    {
+        for (int i = 0; i < length; i++) {
+            buffer[offset + i] = (bytes[i >>> 2] >>> ((3 - (i & 3)) * 2)) & 0b11;
+        }
+    }
+
+    private static void unpack4(long[] buffer, int offset, int length, byte[] bytes)
+    {
+        for (int i = 0; i < length; i++) {
+            buffer[offset + i] = (bytes[i >>> 1] >>> ((1 - (i & 1)) * 4)) & 0b1111;
+        }
+    }
+
+    private static void unpack8(long[] buffer, int offset, int length, byte[] bytes)
+    {
+        for (int i = 0; i < length; i++) {
+            buffer[offset + i] = bytes[i] & 0xFF;
+        }
+    }
+
+    private static void unpack16(long[] buffer, int offset, int length, byte[] bytes)
+    {
+        for (int i = 0, position = 0; i < length; i++, position += 2) {
+            buffer[offset + i] = ((bytes[position] & 0xFFL) << 8) |
+                    (bytes[position + 1] & 0xFFL);
+        }
+    }
+
+    private static void unpack24(long[] buffer, int offset, int length, byte[] bytes)
+    {
+        for (int i = 0, position = 0; i < length; i++, position += 3) {
+            buffer[offset + i] = ((bytes[position] & 0xFFL) << 16) |
+                    ((bytes[position + 1] & 0xFFL) << 8) |
+                    (bytes[position + 2] & 0xFFL);
+        }
+    }
+
+    private static void unpack32(long[] buffer, int offset, int length, byte[] bytes)
+    {
+        for (int i = 0, position = 0; i < length; i++, position += 4) {
+            buffer[offset + i] = ((bytes[position] & 0xFFL) << 24) |
+                    ((bytes[position + 1] & 0xFFL) << 16) |
+                    ((bytes[position + 2] & 0xFFL) << 8) |
+                    (bytes[position + 3] & 0xFFL);
+        }
+    }
+
+    private static void unpackBytes(long[] buffer, int offset, int length, int byteWidth, byte[] bytes)
+    {
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            long value = 0;
+            for (int j = 0; j < byteWidth; j++) {
+                value = (value << 8) | (bytes[position++] & 0xFFL);
+            }
+            buffer[offset + i] = value;
+        }
+    }
+
+    // This is based on the Apache Hive ORC code
+    private static void unpackGeneric(long[] buffer, int offset, int length, int bitSize, byte[] bytes)
+    {
+        int position = 0;
+        int bitsLeft = 0;
+        int current = 0;
+
+        for (int i = offset; i < (offset + length); i++) {
+            long result = 0;
+            int bitsLeftToRead = bitSize;
+            while (bitsLeftToRead > bitsLeft) {
+                result <<= bitsLeft;
+                result |= current & ((1 << bitsLeft) - 1);
+                bitsLeftToRead -= bitsLeft;
+                current = bytes[position++] & 0xFF;
+                bitsLeft = 8;
+            }
+
+            // handle the left over bits
+            if (bitsLeftToRead > 0) {
+                result <<= bitsLeftToRead;
+                bitsLeft -= bitsLeftToRead;
+                result |= (current >> bitsLeft) & ((1 << bitsLeftToRead) - 1);
+            }
+            buffer[i] = result;
+        }
+    }
+}
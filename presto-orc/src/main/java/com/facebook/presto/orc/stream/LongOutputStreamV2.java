@@ -0,0 +1,296 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.stream;
+
+import com.facebook.presto.orc.metadata.CompressionKind;
+import com.facebook.presto.orc.metadata.Stream;
+import com.facebook.presto.orc.metadata.Stream.StreamKind;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.facebook.presto.orc.stream.OrcStreamUtils.MIN_REPEAT_SIZE;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Integer run length encoding version 2. Values are encoded with the SHORT_REPEAT,
+ * DELTA (fixed delta only) and DIRECT sub-encodings, which {@link LongStreamV2} and
+ * the Apache Hive ORC reader both understand.
+ */
+public class LongOutputStreamV2
+        implements ValueOutputStream
+{
+    private static final int MAX_LITERAL_SIZE = 512;
+    private static final int MAX_SHORT_REPEAT_SIZE = 10;
+
+    private static final int SHORT_REPEAT = 0;
+    private static final int DIRECT = 1;
+    private static final int DELTA = 3;
+
+    private final OrcOutputBuffer buffer;
+    private final boolean signed;
+    private final List<List<Integer>> checkpoints = new ArrayList<>();
+
+    private final long[] values = new long[MAX_LITERAL_SIZE];
+    private final long[] encoded = new long[MAX_LITERAL_SIZE];
+    private int valueCount;
+
+    private boolean closed;
+
+    public LongOutputStreamV2(CompressionKind compression, int bufferSize, boolean signed)
+    {
+        this.buffer = new OrcOutputBuffer(compression, bufferSize);
+        this.signed = signed;
+        recordCheckpoint();
+    }
+
+    public void writeLong(long value)
+    {
+        checkState(!closed, "stream is closed");
+        values[valueCount] = value;
+        valueCount++;
+        if (valueCount == MAX_LITERAL_SIZE) {
+            flushValues();
+        }
+    }
+
+    @Override
+    public void recordCheckpoint()
+    {
+        checkState(!closed, "stream is closed");
+        flushValues();
+
+        ImmutableList.Builder<Integer> positions = ImmutableList.builder();
+        buffer.addCheckpoint(positions);
+        // runs are never split across checkpoints
+        positions.add(0);
+        checkpoints.add(positions.build());
+    }
+
+    @Override
+    public List<List<Integer>> getCheckpoints()
+    {
+        return ImmutableList.copyOf(checkpoints);
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        flushValues();
+        buffer.close();
+    }
+
+    @Override
+    public StreamDataOutput getStreamDataOutput(int column, StreamKind streamKind)
+    {
+        checkState(closed, "stream is not closed");
+        return new StreamDataOutput(new Stream(column, streamKind, Ints.checkedCast(buffer.getOutputDataSize()), false), buffer);
+    }
+
+    @Override
+    public long getBufferedBytes()
+    {
+        return buffer.getOutputDataSize() + (valueCount * 8L);
+    }
+
+    @Override
+    public long getRetainedBytes()
+    {
+        return buffer.getRetainedSize() + ((values.length + encoded.length) * 8L);
+    }
+
+    @Override
+    public void reset()
+    {
+        closed = false;
+        valueCount = 0;
+        buffer.reset();
+        checkpoints.clear();
+        recordCheckpoint();
+    }
+
+    private void flushValues()
+    {
+        int literalStart = 0;
+        int position = 0;
+        while (position < valueCount) {
+            int runLength = fixedDeltaRunLength(position);
+            if (runLength >= MIN_REPEAT_SIZE) {
+                writeDirect(literalStart, position - literalStart);
+                writeRun(position, runLength);
+                position += runLength;
+                literalStart = position;
+            }
+            else {
+                position++;
+            }
+        }
+        writeDirect(literalStart, valueCount - literalStart);
+        valueCount = 0;
+    }
+
+    private int fixedDeltaRunLength(int start)
+    {
+        if (start + 1 >= valueCount) {
+            return valueCount - start;
+        }
+
+        long delta = values[start + 1] - values[start];
+        int end = start + 2;
+        while (end < valueCount && values[end] - values[end - 1] == delta) {
+            end++;
+        }
+        return end - start;
+    }
+
+    private void writeRun(int offset, int length)
+    {
+        long delta = values[offset + 1] - values[offset];
+        if (delta == 0 && length <= MAX_SHORT_REPEAT_SIZE) {
+            // header: encoding (2 bits), value width in bytes - 1 (3 bits), run length - 3 (3 bits)
+            long value = encode(values[offset]);
+            int width = Math.max(1, (bitsRequired(value) + 7) / 8);
+            buffer.write((SHORT_REPEAT << 6) | ((width - 1) << 3) | (length - MIN_REPEAT_SIZE));
+
+            // the value is stored big endian
+            for (int i = width - 1; i >= 0; i--) {
+                buffer.write((int) (value >>> (i * 8)));
+            }
+            return;
+        }
+
+        // header: encoding (2 bits), delta width 0 for a fixed delta (5 bits), run length - 1 (9 bits)
+        buffer.write((DELTA << 6) | (((length - 1) >>> 8) & 0x01));
+        buffer.write((length - 1) & 0xFF);
+        if (signed) {
+            writeSignedVInt(values[offset]);
+        }
+        else {
+            writeUnsignedVInt(values[offset]);
+        }
+        writeSignedVInt(delta);
+    }
+
+    private void writeDirect(int offset, int length)
+    {
+        if (length == 0) {
+            return;
+        }
+
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            long value = encode(values[offset + i]);
+            encoded[i] = value;
+            bits |= value;
+        }
+        int width = LongDecode.getClosestFixedBits(bitsRequired(bits));
+
+        // header: encoding (2 bits), encoded value width (5 bits), run length - 1 (9 bits)
+        buffer.write((DIRECT << 6) | (encodeBitWidth(width) << 1) | (((length - 1) >>> 8) & 0x01));
+        buffer.write((length - 1) & 0xFF);
+        writeBitPackedLongs(encoded, length, width);
+    }
+
+    // This is based on the Apache Hive ORC code
+    private void writeBitPackedLongs(long[] input, int length, int width)
+    {
+        int bitsLeft = 8;
+        int current = 0;
+        for (int i = 0; i < length; i++) {
+            long value = input[i];
+            int bitsToWrite = width;
+            while (bitsToWrite > bitsLeft) {
+                // add the bits to the bottom of the current word
+                current |= (int) (value >>> (bitsToWrite - bitsLeft));
+                // subtract out the bits we just added
+                bitsToWrite -= bitsLeft;
+                // zero out the bits above bitsToWrite
+                value &= (1L << bitsToWrite) - 1;
+                buffer.write(current);
+                current = 0;
+                bitsLeft = 8;
+            }
+            bitsLeft -= bitsToWrite;
+            current |= (int) (value << bitsLeft);
+            if (bitsLeft == 0) {
+                buffer.write(current);
+                current = 0;
+                bitsLeft = 8;
+            }
+        }
+
+        if (bitsLeft != 8) {
+            buffer.write(current);
+        }
+    }
+
+    private long encode(long value)
+    {
+        if (signed) {
+            return (value << 1) ^ (value >> 63);
+        }
+        return value;
+    }
+
+    private void writeSignedVInt(long value)
+    {
+        writeUnsignedVInt((value << 1) ^ (value >> 63));
+    }
+
+    private void writeUnsignedVInt(long value)
+    {
+        while ((value & ~0x7FL) != 0) {
+            buffer.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.write((int) value);
+    }
+
+    private static int bitsRequired(long value)
+    {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Inverse of {@link LongDecode#decodeBitWidth(int)}.
+     */
+    private static int encodeBitWidth(int width)
+    {
+        if (width <= 24) {
+            return width - 1;
+        }
+        switch (width) {
+            case 26:
+                return 24;
+            case 28:
+                return 25;
+            case 30:
+                return 26;
+            case 32:
+                return 27;
+            case 40:
+                return 28;
+            case 48:
+                return 29;
+            case 56:
+                return 30;
+            case 64:
+                return 31;
+        }
+        throw new IllegalArgumentException("Unsupported bit width " + width);
+    }
+}
@@ -18,20 +18,38 @@ import com.facebook.presto.orc.checkpoint.LongStreamCheckpoint;
 import com.facebook.presto.orc.checkpoint.LongStreamDwrfCheckpoint;
 import com.facebook.presto.orc.metadata.OrcType.OrcTypeKind;
 import com.google.common.primitives.Ints;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
 
 import java.io.IOException;
 
+import static com.facebook.presto.orc.metadata.OrcType.OrcTypeKind.INT;
+import static com.facebook.presto.orc.metadata.OrcType.OrcTypeKind.LONG;
+import static com.facebook.presto.orc.metadata.OrcType.OrcTypeKind.SHORT;
 import static com.facebook.presto.orc.stream.LongDecode.readDwrfLong;
+import static com.facebook.presto.orc.stream.LongDecode.readVInt;
+import static com.facebook.presto.orc.stream.OrcStreamUtils.readFully;
+import static com.facebook.presto.orc.stream.OrcStreamUtils.skipFully;
 import static com.google.common.base.Preconditions.checkPositionIndex;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+import static io.airlift.slice.SizeOf.SIZE_OF_SHORT;
 
 public class LongStreamDwrf
         implements LongStream
 {
+    // values are decoded in bulk in groups of this size
+    private static final int MAX_BUFFERED_VALUES = 1024;
+
     private final OrcInputStream input;
     private final OrcTypeKind orcTypeKind;
     private final boolean signed;
     private final boolean usesVInt;
 
+    private long[] values;
+    private byte[] buffer;
+    private Slice bufferSlice;
+
     public LongStreamDwrf(OrcInputStream input, OrcTypeKind type, boolean signed, boolean usesVInt)
     {
         this.input = input;
@@ -58,7 +76,12 @@ public class LongStreamDwrf
     public void skip(int items)
             throws IOException
     {
-        // there is no fast way to skip values
+        if (!usesVInt) {
+            skipFully(input, (long) items * getFixedWidth());
+            return;
+        }
+
+        // there is no fast way to skip variable length values
         for (int i = 0; i < items; i++) {
             next();
         }
@@ -69,8 +92,12 @@ public class LongStreamDwrf
             throws IOException
     {
         long sum = 0;
-        for (int i = 0; i < items; i++) {
-            sum += next();
+        for (int offset = 0; offset < items; offset += MAX_BUFFERED_VALUES) {
+            int count = Math.min(items - offset, MAX_BUFFERED_VALUES);
+            readValues(count);
+            for (int i = 0; i < count; i++) {
+                sum += values[i];
+            }
         }
         return sum;
     }
@@ -89,8 +116,9 @@ public class LongStreamDwrf
         checkPositionIndex(items, vector.length);
         checkPositionIndex(items, Vector.MAX_VECTOR_LENGTH);
 
+        readValues(items);
         for (int i = 0; i < items; i++) {
-            vector[i] = Ints.checkedCast(next());
+            vector[i] = Ints.checkedCast(values[i]);
         }
     }
 
@@ -98,9 +126,14 @@ public class LongStreamDwrf
     public void nextIntVector(int items, int[] vector, boolean[] isNull)
             throws IOException
     {
+        checkPositionIndex(items, vector.length);
+        checkPositionIndex(items, Vector.MAX_VECTOR_LENGTH);
+
+        readValues(countNonNull(items, isNull));
+        int index = 0;
         for (int i = 0; i < items; i++) {
             if (!isNull[i]) {
-                vector[i] = Ints.checkedCast(next());
+                vector[i] = Ints.checkedCast(values[index++]);
             }
         }
     }
@@ -111,8 +144,10 @@ public class LongStreamDwrf
     {
         checkPositionIndex(items, vector.length);
 
-        for (int i = 0; i < items; i++) {
-            vector[i] = next();
+        for (int offset = 0; offset < items; offset += MAX_BUFFERED_VALUES) {
+            int count = Math.min(items - offset, MAX_BUFFERED_VALUES);
+            readValues(count);
+            System.arraycopy(values, 0, vector, offset, count);
         }
     }
 
@@ -120,10 +155,88 @@ public class LongStreamDwrf
     public void nextLongVector(int items, long[] vector, boolean[] isNull)
             throws IOException
     {
+        checkPositionIndex(items, vector.length);
+        checkPositionIndex(items, Vector.MAX_VECTOR_LENGTH);
+
+        readValues(countNonNull(items, isNull));
+        int index = 0;
         for (int i = 0; i < items; i++) {
             if (!isNull[i]) {
-                vector[i] = next();
+                vector[i] = values[index++];
             }
         }
     }
+
+    private static int countNonNull(int items, boolean[] isNull)
+    {
+        checkPositionIndex(items, isNull.length);
+
+        int count = 0;
+        for (int i = 0; i < items; i++) {
+            if (!isNull[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Decodes the next {@code count} values into the values buffer.
+     */
+    private void readValues(int count)
+            throws IOException
+    {
+        checkPositionIndex(count, MAX_BUFFERED_VALUES);
+        if (values == null) {
+            values = new long[MAX_BUFFERED_VALUES];
+        }
+
+        if (usesVInt) {
+            for (int i = 0; i < count; i++) {
+                values[i] = readVInt(signed, input);
+            }
+            return;
+        }
+
+        // fixed width values are little endian, so read all the bytes at once
+        int width = getFixedWidth();
+        if (buffer == null) {
+            buffer = new byte[MAX_BUFFERED_VALUES * SIZE_OF_LONG];
+            bufferSlice = Slices.wrappedBuffer(buffer);
+        }
+        readFully(input, buffer, 0, count * width);
+
+        if (orcTypeKind == SHORT) {
+            for (int i = 0; i < count; i++) {
+                // short values are not sign extended
+                values[i] = bufferSlice.getShort(i * SIZE_OF_SHORT) & 0xFFFF;
+            }
+        }
+        else if (orcTypeKind == INT) {
+            for (int i = 0; i < count; i++) {
+                values[i] = bufferSlice.getInt(i * SIZE_OF_INT);
+            }
+        }
+        else {
+            for (int i = 0; i < count; i++) {
+                values[i] = bufferSlice.getLong(i * SIZE_OF_LONG);
+            }
+        }
+    }
+
+    private int getFixedWidth()
+    {
+        if (orcTypeKind == SHORT) {
+            return SIZE_OF_SHORT;
+        }
+        else if (orcTypeKind == INT) {
+            return SIZE_OF_INT;
+        }
+        else if (orcTypeKind == LONG) {
+            return SIZE_OF_LONG;
+        }
+        else {
+            throw new IllegalArgumentException(orcTypeKind + " type is not supported");
+        }
+    }
 }
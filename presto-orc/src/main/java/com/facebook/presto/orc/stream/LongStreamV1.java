@@ -21,6 +21,7 @@ import com.google.common.primitives.Ints;
 import java.io.IOException;
 
 import static com.facebook.presto.orc.stream.OrcStreamUtils.MIN_REPEAT_SIZE;
+import static com.google.common.base.Preconditions.checkPositionIndex;
 
 public class LongStreamV1
         implements LongStream
@@ -140,8 +141,25 @@ public class LongStreamV1
             throws IOException
     {
         long sum = 0;
-        for (int i = 0; i < items; i++) {
-            sum += next();
+        while (items > 0) {
+            if (used == numLiterals) {
+                readValues();
+            }
+            int chunk = Math.min(items, numLiterals - used);
+            if (repeat) {
+                long value = literals[0] + ((long) used * delta);
+                for (int i = 0; i < chunk; i++) {
+                    sum += value;
+                    value += delta;
+                }
+            }
+            else {
+                for (int i = used; i < used + chunk; i++) {
+                    sum += literals[i];
+                }
+            }
+            used += chunk;
+            items -= chunk;
         }
         return sum;
     }
@@ -150,8 +168,26 @@ public class LongStreamV1
     public void nextLongVector(int items, long[] vector)
             throws IOException
     {
-        for (int i = 0; i < items; i++) {
-            vector[i] = next();
+        checkPositionIndex(items, vector.length);
+
+        int offset = 0;
+        while (offset < items) {
+            if (used == numLiterals) {
+                readValues();
+            }
+            int chunk = Math.min(items - offset, numLiterals - used);
+            if (repeat) {
+                long value = literals[0] + ((long) used * delta);
+                for (int i = offset; i < offset + chunk; i++) {
+                    vector[i] = value;
+                    value += delta;
+                }
+            }
+            else {
+                System.arraycopy(literals, used, vector, offset, chunk);
+            }
+            used += chunk;
+            offset += chunk;
         }
     }
 
@@ -159,6 +195,9 @@ public class LongStreamV1
     public void nextLongVector(int items, long[] vector, boolean[] isNull)
             throws IOException
     {
+        checkPositionIndex(items, vector.length);
+        checkPositionIndex(items, isNull.length);
+
         for (int i = 0; i < items; i++) {
             if (!isNull[i]) {
                 vector[i] = next();
@@ -170,8 +209,28 @@ public class LongStreamV1
     public void nextIntVector(int items, int[] vector)
             throws IOException
     {
-        for (int i = 0; i < items; i++) {
-            vector[i] = Ints.checkedCast(next());
+        checkPositionIndex(items, vector.length);
+
+        int offset = 0;
+        while (offset < items) {
+            if (used == numLiterals) {
+                readValues();
+            }
+            int chunk = Math.min(items - offset, numLiterals - used);
+            if (repeat) {
+                long value = literals[0] + ((long) used * delta);
+                for (int i = offset; i < offset + chunk; i++) {
+                    vector[i] = Ints.checkedCast(value);
+                    value += delta;
+                }
+            }
+            else {
+                for (int i = 0; i < chunk; i++) {
+                    vector[offset + i] = Ints.checkedCast(literals[used + i]);
+                }
+            }
+            used += chunk;
+            offset += chunk;
         }
     }
 
@@ -179,6 +238,9 @@ public class LongStreamV1
     public void nextIntVector(int items, int[] vector, boolean[] isNull)
             throws IOException
     {
+        checkPositionIndex(items, vector.length);
+        checkPositionIndex(items, isNull.length);
+
         for (int i = 0; i < items; i++) {
             if (!isNull[i]) {
                 vector[i] = Ints.checkedCast(next());
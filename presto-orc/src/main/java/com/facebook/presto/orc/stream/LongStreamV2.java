@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import static com.facebook.presto.orc.stream.OrcStreamUtils.MIN_REPEAT_SIZE;
+import static com.google.common.base.Preconditions.checkPositionIndex;
 
 /**
  * @see {@link org.apache.hadoop.hive.ql.io.orc.RunLengthIntegerWriterV2} for description of various lightweight compression techniques.
@@ -31,6 +32,7 @@ public class LongStreamV2
         implements LongStream
 {
     private static final int MAX_LITERAL_SIZE = 512;
+    private static final int MAX_PATCH_LIST_SIZE = 0b1_1111;
 
     private enum EncodingType
     {
@@ -40,6 +42,9 @@ public class LongStreamV2
     private final OrcInputStream input;
     private final boolean signed;
     private final long[] literals = new long[MAX_LITERAL_SIZE];
+    private final long[] unpacked = new long[MAX_LITERAL_SIZE];
+    private final long[] unpackedPatch = new long[MAX_PATCH_LIST_SIZE];
+    private final LongBitPacker packer = new LongBitPacker();
     private int numLiterals;
     private int used;
     private final boolean skipCorrupt;
@@ -108,8 +113,10 @@ public class LongStreamV2
             long fixedDelta = LongDecode.readSignedVInt(input);
 
             // add fixed deltas to adjacent values
+            long value = firstVal;
             for (int i = 0; i < length; i++) {
-                literals[numLiterals++] = literals[numLiterals - 2] + fixedDelta;
+                value += fixedDelta;
+                literals[numLiterals++] = value;
             }
         }
         else {
@@ -122,18 +129,21 @@ public class LongStreamV2
             // write the unpacked values, add it to previous value and store final
             // value to result buffer. if the delta base value is negative then it
             // is a decreasing sequence else an increasing sequence
-            readBitPackedLongs(literals, numLiterals, length, fixedBits, input);
-            while (length > 0) {
-                if (deltaBase < 0) {
-                    literals[numLiterals] = prevVal - literals[numLiterals];
+            packer.unpack(literals, numLiterals, length, fixedBits, input);
+            int end = numLiterals + length;
+            if (deltaBase < 0) {
+                for (int i = numLiterals; i < end; i++) {
+                    prevVal -= literals[i];
+                    literals[i] = prevVal;
                 }
-                else {
-                    literals[numLiterals] = prevVal + literals[numLiterals];
+            }
+            else {
+                for (int i = numLiterals; i < end; i++) {
+                    prevVal += literals[i];
+                    literals[i] = prevVal;
                 }
-                prevVal = literals[numLiterals];
-                length--;
-                numLiterals++;
             }
+            numLiterals = end;
         }
     }
 
@@ -178,18 +188,14 @@ public class LongStreamV2
         }
 
         // unpack the data blob
-        long[] unpacked = new long[length];
-        readBitPackedLongs(unpacked, 0, length, fb, input);
-
-        // unpack the patch blob
-        long[] unpackedPatch = new long[patchListLength];
+        packer.unpack(unpacked, 0, length, fb, input);
 
         if ((patchWidth + patchGapWidth) > 64 && !skipCorrupt) {
             throw new OrcCorruptionException("ORC file is corrupt");
         }
 
         int bitSize = LongDecode.getClosestFixedBits(patchWidth + patchGapWidth);
-        readBitPackedLongs(unpackedPatch, 0, patchListLength, bitSize, input);
+        packer.unpack(unpackedPatch, 0, patchListLength, bitSize, input);
 
         // apply the patch directly when decoding the packed data
         int patchIndex = 0;
@@ -212,7 +218,7 @@ public class LongStreamV2
         actualGap += currentGap;
 
         // unpack data blob, patch it (if required), add base to get final result
-        for (int i = 0; i < unpacked.length; i++) {
+        for (int i = 0; i < length; i++) {
             if (i == actualGap) {
                 // extract the patch value
                 long patchedValue = unpacked[i] | (currentPatch << fb);
@@ -266,7 +272,7 @@ public class LongStreamV2
         length += 1;
 
         // write the unpacked values and zigzag decode to result buffer
-        readBitPackedLongs(literals, numLiterals, length, fixedBits, input);
+        packer.unpack(literals, numLiterals, length, fixedBits, input);
         if (signed) {
             for (int i = 0; i < length; i++) {
                 literals[numLiterals] = LongDecode.zigzagDecode(literals[numLiterals]);
@@ -305,34 +311,6 @@ public class LongStreamV2
         }
     }
 
-    // This comes from the Apache Hive ORC code
-    private static void readBitPackedLongs(long[] buffer, int offset, int len, int bitSize, InputStream input)
-            throws IOException
-    {
-        int bitsLeft = 0;
-        int current = 0;
-
-        for (int i = offset; i < (offset + len); i++) {
-            long result = 0;
-            int bitsLeftToRead = bitSize;
-            while (bitsLeftToRead > bitsLeft) {
-                result <<= bitsLeft;
-                result |= current & ((1 << bitsLeft) - 1);
-                bitsLeftToRead -= bitsLeft;
-                current = input.read();
-                bitsLeft = 8;
-            }
-
-            // handle the left over bits
-            if (bitsLeftToRead > 0) {
-                result <<= bitsLeftToRead;
-                bitsLeft -= bitsLeftToRead;
-                result |= (current >> bitsLeft) & ((1 << bitsLeftToRead) - 1);
-            }
-            buffer[i] = result;
-        }
-    }
-
     /**
      * Read n bytes in big endian order and convert to long.
      */
@@ -408,8 +386,17 @@ public class LongStreamV2
             throws IOException
     {
         long sum = 0;
-        for (int i = 0; i < items; i++) {
-            sum += next();
+        while (items > 0) {
+            if (used == numLiterals) {
+                numLiterals = 0;
+                used = 0;
+                readValues();
+            }
+            int end = used + Math.min(items, numLiterals - used);
+            items -= end - used;
+            for (; used < end; used++) {
+                sum += literals[used];
+            }
         }
         return sum;
     }
@@ -418,8 +405,19 @@ public class LongStreamV2
     public void nextLongVector(int items, long[] vector)
             throws IOException
     {
-        for (int i = 0; i < items; i++) {
-            vector[i] = next();
+        checkPositionIndex(items, vector.length);
+
+        int offset = 0;
+        while (offset < items) {
+            if (used == numLiterals) {
+                numLiterals = 0;
+                used = 0;
+                readValues();
+            }
+            int chunk = Math.min(items - offset, numLiterals - used);
+            System.arraycopy(literals, used, vector, offset, chunk);
+            used += chunk;
+            offset += chunk;
         }
     }
 
@@ -427,9 +425,17 @@ public class LongStreamV2
     public void nextLongVector(int items, long[] vector, boolean[] isNull)
             throws IOException
     {
+        checkPositionIndex(items, vector.length);
+        checkPositionIndex(items, isNull.length);
+
         for (int i = 0; i < items; i++) {
             if (!isNull[i]) {
-                vector[i] = next();
+                if (used == numLiterals) {
+                    numLiterals = 0;
+                    used = 0;
+                    readValues();
+                }
+                vector[i] = literals[used++];
             }
         }
     }
@@ -438,8 +444,21 @@ public class LongStreamV2
     public void nextIntVector(int items, int[] vector)
             throws IOException
     {
-        for (int i = 0; i < items; i++) {
-            vector[i] = Ints.checkedCast(next());
+        checkPositionIndex(items, vector.length);
+
+        int offset = 0;
+        while (offset < items) {
+            if (used == numLiterals) {
+                numLiterals = 0;
+                used = 0;
+                readValues();
+            }
+            int chunk = Math.min(items - offset, numLiterals - used);
+            for (int i = 0; i < chunk; i++) {
+                vector[offset + i] = Ints.checkedCast(literals[used + i]);
+            }
+            used += chunk;
+            offset += chunk;
         }
     }
 
@@ -447,9 +466,17 @@ public class LongStreamV2
     public void nextIntVector(int items, int[] vector, boolean[] isNull)
             throws IOException
     {
+        checkPositionIndex(items, vector.length);
+        checkPositionIndex(items, isNull.length);
+
         for (int i = 0; i < items; i++) {
             if (!isNull[i]) {
-                vector[i] = Ints.checkedCast(next());
+                if (used == numLiterals) {
+                    numLiterals = 0;
+                    used = 0;
+                    readValues();
+                }
+                vector[i] = Ints.checkedCast(literals[used++]);
             }
         }
     }
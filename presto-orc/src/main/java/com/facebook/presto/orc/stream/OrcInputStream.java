@@ -24,7 +24,6 @@ import org.iq80.snappy.Snappy;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
@@ -43,19 +42,42 @@ public final class OrcInputStream
         extends InputStream
 {
     public static final int EXPECTED_COMPRESSION_RATIO = 5;
+
     private final String source;
     private final FixedLengthSliceInput compressedSliceInput;
     private final CompressionKind compressionKind;
     private final int maxBufferSize;
+    private final DecompressionBufferPool bufferPool;
+    // a private pool is closed with the stream
+    private final boolean ownsBufferPool;
 
     private int currentCompressedBlockOffset;
     private FixedLengthSliceInput current;
 
+    // heap copy of a compressed chunk that is not backed by an array
+    private byte[] compressedBuffer;
+
     private byte[] buffer;
+    // the buffer is referenced by slices returned to the caller, so it must not be reused
+    private boolean bufferShared;
+    // the current chunk was decompressed into the buffer
+    private boolean currentInBuffer;
 
     public OrcInputStream(String source, FixedLengthSliceInput sliceInput, CompressionKind compressionKind, int bufferSize)
+    {
+        this(source, sliceInput, compressionKind, bufferSize, new DecompressionBufferPool(), true);
+    }
+
+    public OrcInputStream(String source, FixedLengthSliceInput sliceInput, CompressionKind compressionKind, int bufferSize, DecompressionBufferPool bufferPool)
+    {
+        this(source, sliceInput, compressionKind, bufferSize, bufferPool, false);
+    }
+
+    private OrcInputStream(String source, FixedLengthSliceInput sliceInput, CompressionKind compressionKind, int bufferSize, DecompressionBufferPool bufferPool, boolean ownsBufferPool)
     {
         this.source = checkNotNull(source, "source is null");
+        this.bufferPool = checkNotNull(bufferPool, "bufferPool is null");
+        this.ownsBufferPool = ownsBufferPool;
 
         checkNotNull(sliceInput, "sliceInput is null");
 
@@ -73,11 +95,19 @@ public final class OrcInputStream
         }
     }
 
+    /**
+     * Closes the stream and returns the decompression buffer to the pool.
+     */
     @Override
     public void close()
             throws IOException
     {
         current = null;
+        compressedBuffer = null;
+        releaseBuffer();
+        if (ownsBufferPool) {
+            bufferPool.close();
+        }
     }
 
     @Override
@@ -131,6 +161,34 @@ public final class OrcInputStream
         return current.read(b, off, length);
     }
 
+    /**
+     * Reads the next {@code length} bytes. If the bytes are in a single decompressed chunk and
+     * cover at least half of it, the returned slice references the decompression buffer, and the
+     * buffer is no longer reused by this stream. Otherwise the bytes are copied, so a small value
+     * does not retain a whole buffer.
+     */
+    public Slice readSlice(int length)
+            throws IOException
+    {
+        if (length == 0) {
+            return EMPTY_SLICE;
+        }
+
+        if (current != null && current.remaining() == 0) {
+            advance();
+        }
+
+        if (current != null && current.remaining() >= length && currentInBuffer && length >= current.length() / 2) {
+            Slice slice = current.readSlice(length);
+            bufferShared = true;
+            return slice;
+        }
+
+        byte[] data = new byte[length];
+        OrcStreamUtils.readFully(this, data, 0, length);
+        return Slices.wrappedBuffer(data);
+    }
+
     public long getCheckpoint()
     {
         // if the decompressed buffer is empty, return a checkpoint starting at the next block
@@ -153,6 +211,7 @@ public final class OrcInputStream
             }
             compressedSliceInput.setPosition(compressedBlockOffset);
             current = EMPTY_SLICE.getInput();
+            currentInBuffer = false;
             discardedBuffer = true;
         }
         else {
@@ -211,8 +270,10 @@ public final class OrcInputStream
 
         if (isUncompressed) {
             current = chunk.getInput();
+            currentInBuffer = false;
         }
         else {
+            chunk = getHeapSlice(chunk);
             int uncompressedSize;
             if (compressionKind == ZLIB) {
                 uncompressedSize = decompressZip(chunk);
@@ -222,6 +283,7 @@ public final class OrcInputStream
             }
 
             current = Slices.wrappedBuffer(buffer, 0, uncompressedSize).getInput();
+            currentInBuffer = true;
         }
     }
 
@@ -236,11 +298,27 @@ public final class OrcInputStream
                 .toString();
     }
 
+    /**
+     * The decompressors only accept arrays, so a chunk of an off-heap slice, for example a
+     * memory mapped file, is copied to a buffer that is reused for the following chunks.
+     */
+    private Slice getHeapSlice(Slice chunk)
+    {
+        if (chunk.getBase() instanceof byte[]) {
+            return chunk;
+        }
+        if (compressedBuffer == null || compressedBuffer.length < chunk.length()) {
+            compressedBuffer = new byte[chunk.length()];
+        }
+        chunk.getBytes(0, compressedBuffer, 0, chunk.length());
+        return Slices.wrappedBuffer(compressedBuffer, 0, chunk.length());
+    }
+
     // This comes from the Apache Hive ORC code
     private int decompressZip(Slice in)
             throws IOException
     {
-        Inflater inflater = new Inflater(true);
+        Inflater inflater = bufferPool.allocateInflater();
         try {
             inflater.setInput((byte[]) in.getBase(), (int) (in.getAddress() - ARRAY_BYTE_BASE_OFFSET), in.length());
             allocateOrGrowBuffer(in.length() * EXPECTED_COMPRESSION_RATIO, false);
@@ -267,7 +345,7 @@ public final class OrcInputStream
             throw new OrcCorruptionException(e, "Invalid compressed stream");
         }
         finally {
-            inflater.end();
+            bufferPool.release(inflater);
         }
     }
 
@@ -287,13 +365,28 @@ public final class OrcInputStream
 
     private void allocateOrGrowBuffer(int size, boolean copyExistingData)
     {
+        if (bufferShared) {
+            // the current buffer belongs to the slices returned by readSlice
+            buffer = null;
+            bufferShared = false;
+        }
+
         if (buffer == null || buffer.length < size) {
+            byte[] newBuffer = bufferPool.allocate(Math.min(size, maxBufferSize), maxBufferSize);
             if (copyExistingData && buffer != null) {
-                buffer = Arrays.copyOfRange(buffer, 0, Math.min(size, maxBufferSize));
-            }
-            else {
-                buffer = new byte[Math.min(size, maxBufferSize)];
+                System.arraycopy(buffer, 0, newBuffer, 0, Math.min(buffer.length, newBuffer.length));
             }
+            releaseBuffer();
+            buffer = newBuffer;
+        }
+    }
+
+    private void releaseBuffer()
+    {
+        if (buffer != null && !bufferShared) {
+            bufferPool.release(buffer);
         }
+        buffer = null;
+        bufferShared = false;
     }
 }
@@ -0,0 +1,275 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.stream;
+
+import com.facebook.presto.orc.metadata.CompressionKind;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import org.iq80.snappy.Snappy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import static com.facebook.presto.orc.metadata.CompressionKind.SNAPPY;
+import static com.facebook.presto.orc.metadata.CompressionKind.UNCOMPRESSED;
+import static com.facebook.presto.orc.metadata.CompressionKind.ZLIB;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.airlift.slice.SizeOf.SIZE_OF_DOUBLE;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+
+/**
+ * Buffers the bytes of a single ORC stream, compressing them in chunks of at most
+ * {@code maxBufferSize} bytes. This is the write side of {@link OrcInputStream}.
+ */
+public class OrcOutputBuffer
+        extends OutputStream
+{
+    private static final int CHUNK_HEADER_SIZE = 3;
+
+    private final CompressionKind compressionKind;
+    private final int maxBufferSize;
+
+    private final DynamicSliceOutput compressedOutputStream;
+
+    private final byte[] buffer;
+    private final Slice bufferSlice;
+    private int bufferPosition;
+
+    private byte[] compressionBuffer = new byte[0];
+
+    public OrcOutputBuffer(CompressionKind compressionKind, int maxBufferSize)
+    {
+        this.compressionKind = checkNotNull(compressionKind, "compressionKind is null");
+        checkArgument(maxBufferSize > 0, "maxBufferSize must be at least 1");
+        checkArgument(maxBufferSize < (1 << 23), "maxBufferSize must be less than 8MB");
+        this.maxBufferSize = maxBufferSize;
+
+        this.buffer = new byte[maxBufferSize];
+        this.bufferSlice = Slices.wrappedBuffer(buffer);
+        this.compressedOutputStream = new DynamicSliceOutput(1024);
+    }
+
+    /**
+     * Appends the position of the next byte written to this buffer in the format
+     * expected by {@link com.facebook.presto.orc.checkpoint.InputStreamCheckpoint}.
+     */
+    public void addCheckpoint(ImmutableList.Builder<Integer> positions)
+    {
+        if (compressionKind == UNCOMPRESSED) {
+            positions.add(compressedOutputStream.size() + bufferPosition);
+        }
+        else {
+            // the buffer is flushed as soon as it is full, so the next byte
+            // is always in the chunk that starts at the end of the output
+            positions.add(compressedOutputStream.size());
+            positions.add(bufferPosition);
+        }
+    }
+
+    /**
+     * @return the number of bytes buffered, which is the final size of the stream after {@link #close()}
+     */
+    public long getOutputDataSize()
+    {
+        return compressedOutputStream.size() + bufferPosition;
+    }
+
+    public long getRetainedSize()
+    {
+        return compressedOutputStream.getUnderlyingSlice().length() + buffer.length + compressionBuffer.length;
+    }
+
+    @Override
+    public void write(int value)
+    {
+        buffer[bufferPosition] = (byte) value;
+        bufferPosition++;
+        flushBufferIfFull();
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length)
+    {
+        while (length > 0) {
+            int chunk = Math.min(length, maxBufferSize - bufferPosition);
+            System.arraycopy(bytes, offset, buffer, bufferPosition, chunk);
+            bufferPosition += chunk;
+            offset += chunk;
+            length -= chunk;
+            flushBufferIfFull();
+        }
+    }
+
+    public void writeBytes(Slice slice, int offset, int length)
+    {
+        while (length > 0) {
+            int chunk = Math.min(length, maxBufferSize - bufferPosition);
+            slice.getBytes(offset, buffer, bufferPosition, chunk);
+            bufferPosition += chunk;
+            offset += chunk;
+            length -= chunk;
+            flushBufferIfFull();
+        }
+    }
+
+    public void writeLong(long value)
+    {
+        if (maxBufferSize - bufferPosition >= SIZE_OF_LONG) {
+            bufferSlice.setLong(bufferPosition, value);
+            bufferPosition += SIZE_OF_LONG;
+            flushBufferIfFull();
+        }
+        else {
+            // value spans two chunks; write it little endian one byte at a time
+            for (int i = 0; i < SIZE_OF_LONG; i++) {
+                write((int) (value >>> (i * 8)));
+            }
+        }
+    }
+
+    public void writeDouble(double value)
+    {
+        if (maxBufferSize - bufferPosition >= SIZE_OF_DOUBLE) {
+            bufferSlice.setDouble(bufferPosition, value);
+            bufferPosition += SIZE_OF_DOUBLE;
+            flushBufferIfFull();
+        }
+        else {
+            writeLong(Double.doubleToRawLongBits(value));
+        }
+    }
+
+    /**
+     * Compresses any remaining buffered bytes. No data may be written after this call until {@link #reset()}.
+     */
+    @Override
+    public void close()
+    {
+        flushBuffer();
+    }
+
+    public void writeDataTo(OutputStream outputStream)
+            throws IOException
+    {
+        checkArgument(bufferPosition == 0, "buffer has not been closed");
+        compressedOutputStream.getUnderlyingSlice().getBytes(0, outputStream, compressedOutputStream.size());
+    }
+
+    public void reset()
+    {
+        compressedOutputStream.reset();
+        bufferPosition = 0;
+    }
+
+    private void flushBufferIfFull()
+    {
+        if (bufferPosition == maxBufferSize) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer()
+    {
+        if (bufferPosition == 0) {
+            return;
+        }
+
+        if (compressionKind == UNCOMPRESSED) {
+            compressedOutputStream.writeBytes(buffer, 0, bufferPosition);
+            bufferPosition = 0;
+            return;
+        }
+
+        int compressedSize;
+        if (compressionKind == SNAPPY) {
+            compressedSize = compressSnappy(bufferPosition);
+        }
+        else if (compressionKind == ZLIB) {
+            compressedSize = compressZlib(bufferPosition);
+        }
+        else {
+            throw new IllegalStateException("Unsupported compression " + compressionKind);
+        }
+
+        // store the chunk uncompressed if compression did not help
+        if (compressedSize >= 0 && compressedSize < bufferPosition) {
+            writeChunkHeader(compressedSize, false);
+            compressedOutputStream.writeBytes(compressionBuffer, 0, compressedSize);
+        }
+        else {
+            writeChunkHeader(bufferPosition, true);
+            compressedOutputStream.writeBytes(buffer, 0, bufferPosition);
+        }
+        bufferPosition = 0;
+    }
+
+    private void writeChunkHeader(int length, boolean original)
+    {
+        int header = (length << 1) | (original ? 1 : 0);
+        compressedOutputStream.writeByte(header & 0xFF);
+        compressedOutputStream.writeByte((header >>> 8) & 0xFF);
+        compressedOutputStream.writeByte((header >>> 16) & 0xFF);
+    }
+
+    private int compressSnappy(int length)
+    {
+        int maxCompressedLength = Snappy.maxCompressedLength(length);
+        if (compressionBuffer.length < maxCompressedLength) {
+            compressionBuffer = new byte[maxCompressedLength];
+        }
+        return Snappy.compress(buffer, 0, length, compressionBuffer, 0);
+    }
+
+    /**
+     * @return the compressed size, or -1 if the data did not compress
+     */
+    private int compressZlib(int length)
+    {
+        if (compressionBuffer.length < length) {
+            compressionBuffer = new byte[length];
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(buffer, 0, length);
+            deflater.finish();
+
+            int compressedSize = 0;
+            while (!deflater.finished()) {
+                if (compressedSize == length) {
+                    return -1;
+                }
+                compressedSize += deflater.deflate(compressionBuffer, compressedSize, length - compressedSize);
+            }
+            return compressedSize;
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("compressionKind", compressionKind)
+                .add("outputDataSize", getOutputDataSize())
+                .toString();
+    }
+}
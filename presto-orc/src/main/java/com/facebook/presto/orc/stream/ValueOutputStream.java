@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.stream;
+
+import com.facebook.presto.orc.metadata.Stream.StreamKind;
+
+import java.util.List;
+
+/**
+ * Write side of a {@link ValueStream}. The stream records a checkpoint at the start of
+ * every row group so the row group index can point readers at the row group.
+ */
+public interface ValueOutputStream
+{
+    /**
+     * Records the current position of the stream as the start of the next row group.
+     * Any buffered values are encoded first so the checkpoint never points into the
+     * middle of a run.
+     */
+    void recordCheckpoint();
+
+    /**
+     * @return one position list per recorded checkpoint, in the order they were recorded
+     */
+    List<List<Integer>> getCheckpoints();
+
+    /**
+     * Encodes any buffered values. No values may be written after this call until {@link #reset()}.
+     */
+    void close();
+
+    StreamDataOutput getStreamDataOutput(int column, StreamKind streamKind);
+
+    long getBufferedBytes();
+
+    long getRetainedBytes();
+
+    /**
+     * Discards all data and checkpoints, and records the initial checkpoint for a new stripe.
+     */
+    void reset();
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.writer;
+
+import com.facebook.presto.orc.metadata.ColumnEncoding;
+import com.facebook.presto.orc.metadata.ColumnStatistics;
+import com.facebook.presto.orc.metadata.RowGroupIndex;
+import com.facebook.presto.orc.stream.StreamDataOutput;
+import com.facebook.presto.spi.block.Block;
+
+import java.util.List;
+
+/**
+ * Encodes the values of one column of a stripe. Values are appended a block at a time
+ * and the column is closed at the end of the stripe, after which its streams and row
+ * group indexes can be written. {@link #reset()} prepares the writer for the next stripe.
+ */
+public interface ColumnWriter
+{
+    void writeBlock(Block block);
+
+    /**
+     * Marks the end of the current row group.
+     */
+    void finishRowGroup();
+
+    /**
+     * Marks the end of the stripe. The current row group must have been finished.
+     */
+    void close();
+
+    ColumnEncoding getColumnEncoding();
+
+    ColumnStatistics getStripeStatistics();
+
+    List<RowGroupIndex> getRowGroupIndexes();
+
+    List<StreamDataOutput> getDataStreams();
+
+    /**
+     * @return the estimated size of the encoded data of the current stripe
+     */
+    long getBufferedBytes();
+
+    long getRetainedBytes();
+
+    void reset();
+}
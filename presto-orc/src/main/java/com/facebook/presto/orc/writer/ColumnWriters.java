@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.writer;
+
+import com.facebook.presto.orc.metadata.ColumnStatistics;
+import com.facebook.presto.orc.metadata.CompressionKind;
+import com.facebook.presto.orc.metadata.OrcType.OrcTypeKind;
+import com.facebook.presto.orc.metadata.RowGroupIndex;
+import com.facebook.presto.orc.stream.ValueOutputStream;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.facebook.presto.spi.type.VarbinaryType.VARBINARY;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static com.google.common.base.Preconditions.checkArgument;
+
+public final class ColumnWriters
+{
+    private ColumnWriters()
+    {
+    }
+
+    /**
+     * Values are stored using the ORC type that matches the Java representation of the
+     * Presto type, so for example a DATE column is stored as an ORC LONG.
+     */
+    public static OrcTypeKind toOrcTypeKind(Type type)
+    {
+        Class<?> javaType = type.getJavaType();
+        if (javaType == boolean.class) {
+            return OrcTypeKind.BOOLEAN;
+        }
+        if (javaType == long.class) {
+            return OrcTypeKind.LONG;
+        }
+        if (javaType == double.class) {
+            return OrcTypeKind.DOUBLE;
+        }
+        if (javaType == Slice.class) {
+            if (type.equals(VARCHAR)) {
+                return OrcTypeKind.STRING;
+            }
+            if (type.equals(VARBINARY)) {
+                return OrcTypeKind.BINARY;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+
+    public static ColumnWriter createColumnWriter(int column, Type type, CompressionKind compression, int bufferSize)
+    {
+        switch (toOrcTypeKind(type)) {
+            case BOOLEAN:
+                return new BooleanColumnWriter(column, type, compression, bufferSize);
+            case LONG:
+                return new LongColumnWriter(column, type, compression, bufferSize);
+            case DOUBLE:
+                return new DoubleColumnWriter(column, type, compression, bufferSize);
+            case STRING:
+                return new SliceColumnWriter(column, type, true, compression, bufferSize);
+            case BINARY:
+                return new SliceColumnWriter(column, type, false, compression, bufferSize);
+            default:
+                throw new IllegalArgumentException("Unsupported type: " + type);
+        }
+    }
+
+    /**
+     * Builds the row group indexes from the checkpoints of the streams of a column. The
+     * positions of each row group are the concatenated checkpoints of the streams, in the
+     * order the reader consumes them, so the streams must be passed in that order.
+     *
+     * @param presentStream the present stream, or null if the stripe does not contain a present stream
+     */
+    static List<RowGroupIndex> buildRowGroupIndexes(List<ColumnStatistics> rowGroupStatistics, ValueOutputStream presentStream, ValueOutputStream... dataStreams)
+    {
+        List<List<List<Integer>>> streamCheckpoints = new ArrayList<>();
+        if (presentStream != null) {
+            streamCheckpoints.add(presentStream.getCheckpoints());
+        }
+        for (ValueOutputStream dataStream : dataStreams) {
+            streamCheckpoints.add(dataStream.getCheckpoints());
+        }
+        return buildRowGroupIndexes(rowGroupStatistics, streamCheckpoints);
+    }
+
+    static List<RowGroupIndex> buildRowGroupIndexes(List<ColumnStatistics> rowGroupStatistics, List<List<List<Integer>>> streamCheckpoints)
+    {
+        ImmutableList.Builder<RowGroupIndex> rowGroupIndexes = ImmutableList.builder();
+        for (int rowGroup = 0; rowGroup < rowGroupStatistics.size(); rowGroup++) {
+            ImmutableList.Builder<Integer> positions = ImmutableList.builder();
+            for (List<List<Integer>> checkpoints : streamCheckpoints) {
+                // each stream records a checkpoint at the start of every row group and one after the last
+                checkArgument(checkpoints.size() > rowGroup, "stream is missing checkpoint for row group %s", rowGroup);
+                positions.addAll(checkpoints.get(rowGroup));
+            }
+            rowGroupIndexes.add(new RowGroupIndex(positions.build(), rowGroupStatistics.get(rowGroup)));
+        }
+        return rowGroupIndexes.build();
+    }
+}
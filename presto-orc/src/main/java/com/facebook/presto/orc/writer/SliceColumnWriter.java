@@ -0,0 +1,291 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.writer;
+
+import com.facebook.presto.orc.metadata.ColumnEncoding;
+import com.facebook.presto.orc.metadata.ColumnStatistics;
+import com.facebook.presto.orc.metadata.CompressionKind;
+import com.facebook.presto.orc.metadata.RowGroupIndex;
+import com.facebook.presto.orc.metadata.StringStatistics;
+import com.facebook.presto.orc.stream.BooleanOutputStream;
+import com.facebook.presto.orc.stream.ByteArrayOutputStream;
+import com.facebook.presto.orc.stream.LongOutputStreamV2;
+import com.facebook.presto.orc.stream.StreamDataOutput;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.facebook.presto.orc.metadata.ColumnEncoding.ColumnEncodingKind.DICTIONARY_V2;
+import static com.facebook.presto.orc.metadata.ColumnEncoding.ColumnEncodingKind.DIRECT_V2;
+import static com.facebook.presto.orc.metadata.ColumnStatistics.mergeColumnStatistics;
+import static com.facebook.presto.orc.metadata.Stream.StreamKind.DATA;
+import static com.facebook.presto.orc.metadata.Stream.StreamKind.DICTIONARY_DATA;
+import static com.facebook.presto.orc.metadata.Stream.StreamKind.LENGTH;
+import static com.facebook.presto.orc.metadata.Stream.StreamKind.PRESENT;
+import static com.facebook.presto.orc.writer.ColumnWriters.buildRowGroupIndexes;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+
+/**
+ * Writes a varchar or varbinary column. The values of a stripe are collected in a
+ * dictionary, and when the stripe is closed the column is written either dictionary
+ * encoded or direct, depending on how many distinct values the stripe contains.
+ */
+public class SliceColumnWriter
+        implements ColumnWriter
+{
+    // use a dictionary only if the number of distinct values is at most this fraction of the values
+    private static final double DICTIONARY_KEY_SIZE_THRESHOLD = 0.8;
+    private static final int EXPECTED_DICTIONARY_ENTRIES = 1024;
+
+    private final int column;
+    private final Type type;
+    private final boolean string;
+
+    private final BooleanOutputStream presentStream;
+    private final LongOutputStreamV2 dataStream;
+    private final LongOutputStreamV2 lengthStream;
+    private final ByteArrayOutputStream bytesStream;
+
+    private final SliceDictionaryBuilder dictionary = new SliceDictionaryBuilder(EXPECTED_DICTIONARY_ENTRIES);
+
+    // dictionary id of each non-null value of the stripe
+    private int[] values = new int[EXPECTED_DICTIONARY_ENTRIES];
+    private int valueCount;
+    // number of non-null values at the end of each row group
+    private final List<Integer> rowGroupValueCounts = new ArrayList<>();
+
+    private final List<ColumnStatistics> rowGroupColumnStatistics = new ArrayList<>();
+    private boolean hasNull;
+    private boolean closed;
+    private boolean dictionaryEncoded;
+
+    private long nonNullValueCount;
+    private Slice minimum;
+    private Slice maximum;
+
+    public SliceColumnWriter(int column, Type type, boolean string, CompressionKind compression, int bufferSize)
+    {
+        checkArgument(column >= 0, "column is negative");
+        this.column = column;
+        this.type = checkNotNull(type, "type is null");
+        checkArgument(type.getJavaType() == Slice.class, "type is not a slice type: %s", type);
+        this.string = string;
+        this.presentStream = new BooleanOutputStream(compression, bufferSize);
+        this.dataStream = new LongOutputStreamV2(compression, bufferSize, false);
+        this.lengthStream = new LongOutputStreamV2(compression, bufferSize, false);
+        this.bytesStream = new ByteArrayOutputStream(compression, bufferSize);
+    }
+
+    @Override
+    public void writeBlock(Block block)
+    {
+        checkState(!closed, "writer is closed");
+        for (int position = 0; position < block.getPositionCount(); position++) {
+            if (block.isNull(position)) {
+                presentStream.writeBoolean(false);
+                hasNull = true;
+                continue;
+            }
+
+            presentStream.writeBoolean(true);
+            if (valueCount == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[valueCount] = dictionary.putIfAbsent(block, position);
+            valueCount++;
+
+            nonNullValueCount++;
+            if (string) {
+                int length = block.getLength(position);
+                if (minimum == null || block.bytesCompare(position, 0, length, minimum, 0, minimum.length()) < 0) {
+                    minimum = Slices.copyOf(block.getSlice(position, 0, length));
+                }
+                if (maximum == null || block.bytesCompare(position, 0, length, maximum, 0, maximum.length()) > 0) {
+                    maximum = Slices.copyOf(block.getSlice(position, 0, length));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void finishRowGroup()
+    {
+        checkState(!closed, "writer is closed");
+        StringStatistics stringStatistics = null;
+        if (string && nonNullValueCount > 0) {
+            stringStatistics = new StringStatistics(minimum.toStringUtf8(), maximum.toStringUtf8());
+        }
+        rowGroupColumnStatistics.add(new ColumnStatistics(nonNullValueCount, null, null, null, stringStatistics, null));
+        rowGroupValueCounts.add(valueCount);
+
+        nonNullValueCount = 0;
+        minimum = null;
+        maximum = null;
+
+        presentStream.recordCheckpoint();
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        presentStream.close();
+
+        dictionaryEncoded = dictionary.size() <= DICTIONARY_KEY_SIZE_THRESHOLD * valueCount;
+        if (dictionaryEncoded) {
+            writeDictionaryEncoded();
+        }
+        else {
+            writeDirect();
+        }
+
+        dataStream.close();
+        lengthStream.close();
+        bytesStream.close();
+    }
+
+    private void writeDictionaryEncoded()
+    {
+        int valueIndex = 0;
+        for (int rowGroup = 0; rowGroup < rowGroupValueCounts.size(); rowGroup++) {
+            if (rowGroup > 0) {
+                dataStream.recordCheckpoint();
+            }
+            int rowGroupEnd = rowGroupValueCounts.get(rowGroup);
+            for (; valueIndex < rowGroupEnd; valueIndex++) {
+                dataStream.writeLong(values[valueIndex]);
+            }
+        }
+
+        // entries are stored back to back in id order, so the dictionary bytes can be copied at once
+        for (int id = 0; id < dictionary.size(); id++) {
+            lengthStream.writeLong(dictionary.getEntryLength(id));
+        }
+        bytesStream.writeSlice(dictionary.getRawSlice(), 0, (int) dictionary.getSizeInBytes());
+    }
+
+    private void writeDirect()
+    {
+        Slice rawSlice = dictionary.getRawSlice();
+        int valueIndex = 0;
+        for (int rowGroup = 0; rowGroup < rowGroupValueCounts.size(); rowGroup++) {
+            if (rowGroup > 0) {
+                bytesStream.recordCheckpoint();
+                lengthStream.recordCheckpoint();
+            }
+            int rowGroupEnd = rowGroupValueCounts.get(rowGroup);
+            for (; valueIndex < rowGroupEnd; valueIndex++) {
+                int id = values[valueIndex];
+                int length = dictionary.getEntryLength(id);
+                bytesStream.writeSlice(rawSlice, dictionary.getEntryOffset(id), length);
+                lengthStream.writeLong(length);
+            }
+        }
+    }
+
+    @Override
+    public ColumnEncoding getColumnEncoding()
+    {
+        checkState(closed, "writer is not closed");
+        if (dictionaryEncoded) {
+            return new ColumnEncoding(DICTIONARY_V2, dictionary.size());
+        }
+        return new ColumnEncoding(DIRECT_V2, 0);
+    }
+
+    @Override
+    public ColumnStatistics getStripeStatistics()
+    {
+        checkState(closed, "writer is not closed");
+        return mergeColumnStatistics(rowGroupColumnStatistics);
+    }
+
+    @Override
+    public List<RowGroupIndex> getRowGroupIndexes()
+    {
+        checkState(closed, "writer is not closed");
+        if (dictionaryEncoded) {
+            return buildRowGroupIndexes(rowGroupColumnStatistics, hasNull ? presentStream : null, dataStream);
+        }
+        return buildRowGroupIndexes(rowGroupColumnStatistics, hasNull ? presentStream : null, bytesStream, lengthStream);
+    }
+
+    @Override
+    public List<StreamDataOutput> getDataStreams()
+    {
+        checkState(closed, "writer is not closed");
+        ImmutableList.Builder<StreamDataOutput> outputDataStreams = ImmutableList.builder();
+        if (hasNull) {
+            outputDataStreams.add(presentStream.getStreamDataOutput(column, PRESENT));
+        }
+        if (dictionaryEncoded) {
+            outputDataStreams.add(dataStream.getStreamDataOutput(column, DATA));
+            outputDataStreams.add(lengthStream.getStreamDataOutput(column, LENGTH));
+            outputDataStreams.add(bytesStream.getStreamDataOutput(column, DICTIONARY_DATA));
+        }
+        else {
+            outputDataStreams.add(bytesStream.getStreamDataOutput(column, DATA));
+            outputDataStreams.add(lengthStream.getStreamDataOutput(column, LENGTH));
+        }
+        return outputDataStreams.build();
+    }
+
+    @Override
+    public long getBufferedBytes()
+    {
+        if (closed) {
+            return presentStream.getBufferedBytes() + dataStream.getBufferedBytes() + lengthStream.getBufferedBytes() + bytesStream.getBufferedBytes();
+        }
+        return presentStream.getBufferedBytes() + dictionary.getSizeInBytes() + ((long) valueCount * SIZE_OF_INT);
+    }
+
+    @Override
+    public long getRetainedBytes()
+    {
+        return presentStream.getRetainedBytes() +
+                dataStream.getRetainedBytes() +
+                lengthStream.getRetainedBytes() +
+                bytesStream.getRetainedBytes() +
+                dictionary.getRetainedSizeInBytes() +
+                ((long) values.length * SIZE_OF_INT);
+    }
+
+    @Override
+    public void reset()
+    {
+        closed = false;
+        presentStream.reset();
+        dataStream.reset();
+        lengthStream.reset();
+        bytesStream.reset();
+        dictionary.reset();
+        valueCount = 0;
+        rowGroupValueCounts.clear();
+        rowGroupColumnStatistics.clear();
+        hasNull = false;
+        dictionaryEncoded = false;
+        nonNullValueCount = 0;
+        minimum = null;
+        maximum = null;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.writer;
+
+import com.facebook.presto.spi.block.Block;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+
+import java.util.Arrays;
+
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+
+/**
+ * Assigns consecutive ids to the distinct values of a variable width column. The bytes
+ * of the entries are stored back to back in insertion order, so the dictionary can be
+ * written to a stream without copying the entries individually.
+ */
+public class SliceDictionaryBuilder
+{
+    private static final int EMPTY_SLOT = -1;
+    private static final float FILL_RATIO = 0.75f;
+
+    private final DynamicSliceOutput sliceOutput;
+
+    // offsets[id] is the start of the entry, and offsets[id + 1] is the end
+    private int[] offsets;
+    private int[] hashes;
+    private int entryCount;
+
+    private int[] hashTable;
+    private int hashMask;
+    private int maxFill;
+
+    public SliceDictionaryBuilder(int expectedEntries)
+    {
+        sliceOutput = new DynamicSliceOutput(expectedEntries * 16);
+        offsets = new int[expectedEntries + 1];
+        hashes = new int[expectedEntries];
+
+        int hashSize = arraySize(expectedEntries);
+        hashTable = new int[hashSize];
+        Arrays.fill(hashTable, EMPTY_SLOT);
+        hashMask = hashSize - 1;
+        maxFill = calculateMaxFill(hashSize);
+    }
+
+    public int size()
+    {
+        return entryCount;
+    }
+
+    public long getSizeInBytes()
+    {
+        return sliceOutput.size();
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        return sliceOutput.getUnderlyingSlice().length() + (((long) offsets.length + hashes.length + hashTable.length) * SIZE_OF_INT);
+    }
+
+    /**
+     * @return the raw bytes of all entries; only the first {@link #getSizeInBytes()} bytes are valid
+     */
+    public Slice getRawSlice()
+    {
+        return sliceOutput.getUnderlyingSlice();
+    }
+
+    public int getEntryOffset(int id)
+    {
+        return offsets[id];
+    }
+
+    public int getEntryLength(int id)
+    {
+        return offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * @return the id of the value at the position, adding the value to the dictionary if necessary
+     */
+    public int putIfAbsent(Block block, int position)
+    {
+        int length = block.getLength(position);
+        int hash = block.hash(position, 0, length);
+
+        int slot = mix(hash) & hashMask;
+        while (hashTable[slot] != EMPTY_SLOT) {
+            int id = hashTable[slot];
+            if (hashes[id] == hash && getEntryLength(id) == length && block.bytesEqual(position, 0, sliceOutput.getUnderlyingSlice(), offsets[id], length)) {
+                return id;
+            }
+            slot = (slot + 1) & hashMask;
+        }
+
+        int id = addEntry(block, position, length, hash);
+        hashTable[slot] = id;
+        if (entryCount >= maxFill) {
+            rehash();
+        }
+        return id;
+    }
+
+    public void reset()
+    {
+        sliceOutput.reset();
+        entryCount = 0;
+        Arrays.fill(hashTable, EMPTY_SLOT);
+    }
+
+    private int addEntry(Block block, int position, int length, int hash)
+    {
+        int id = entryCount;
+        if (id + 1 >= offsets.length) {
+            int newSize = offsets.length * 2;
+            offsets = Arrays.copyOf(offsets, newSize);
+            hashes = Arrays.copyOf(hashes, newSize);
+        }
+
+        sliceOutput.writeBytes(block.getSlice(position, 0, length));
+        offsets[id + 1] = offsets[id] + length;
+        hashes[id] = hash;
+        entryCount++;
+        return id;
+    }
+
+    private void rehash()
+    {
+        int newSize = hashTable.length * 2;
+        int[] newHashTable = new int[newSize];
+        Arrays.fill(newHashTable, EMPTY_SLOT);
+        int newMask = newSize - 1;
+
+        for (int id = 0; id < entryCount; id++) {
+            int slot = mix(hashes[id]) & newMask;
+            while (newHashTable[slot] != EMPTY_SLOT) {
+                slot = (slot + 1) & newMask;
+            }
+            newHashTable[slot] = id;
+        }
+
+        hashTable = newHashTable;
+        hashMask = newMask;
+        maxFill = calculateMaxFill(newSize);
+    }
+
+    private static int mix(int hash)
+    {
+        // spread the bits, since the block hash may not be well distributed in the low bits
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int arraySize(int expectedEntries)
+    {
+        int size = Integer.highestOneBit(Math.max((int) Math.ceil(expectedEntries / FILL_RATIO), 2) - 1) << 1;
+        return Math.max(size, 16);
+    }
+
+    private static int calculateMaxFill(int hashSize)
+    {
+        int maxFill = (int) Math.ceil(hashSize * FILL_RATIO);
+        if (maxFill == hashSize) {
+            maxFill--;
+        }
+        return maxFill;
+    }
+}
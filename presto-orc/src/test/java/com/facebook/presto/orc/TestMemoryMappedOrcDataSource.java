@@ -0,0 +1,175 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc;
+
+import com.facebook.presto.orc.metadata.CompressionKind;
+import com.facebook.presto.orc.metadata.OrcMetadataReader;
+import com.facebook.presto.orc.metadata.OrcMetadataWriter;
+import com.facebook.presto.spi.PageBuilder;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import io.airlift.slice.FixedLengthSliceInput;
+import io.airlift.slice.Slice;
+import org.joda.time.DateTimeZone;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.orc.metadata.CompressionKind.SNAPPY;
+import static com.facebook.presto.orc.metadata.CompressionKind.ZLIB;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static io.airlift.slice.Slices.utf8Slice;
+import static io.airlift.slice.Slices.wrappedBuffer;
+import static org.testng.Assert.assertEquals;
+
+public class TestMemoryMappedOrcDataSource
+{
+    private static final int FILE_SIZE = 10_000;
+
+    private File file;
+    private byte[] data;
+
+    @BeforeMethod
+    public void setup()
+            throws IOException
+    {
+        file = File.createTempFile("presto-orc-", ".orc");
+
+        data = new byte[FILE_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        Files.write(data, file);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void testReadFully()
+            throws IOException
+    {
+        try (MemoryMappedOrcDataSource dataSource = new MemoryMappedOrcDataSource(file)) {
+            assertEquals(dataSource.getSize(), FILE_SIZE);
+
+            byte[] buffer = new byte[100];
+            dataSource.readFully(1234, buffer);
+            assertEquals(wrappedBuffer(buffer), wrappedBuffer(data, 1234, 100));
+
+            dataSource.readFully(FILE_SIZE - 10, buffer, 90, 10);
+            assertEquals(wrappedBuffer(buffer, 90, 10), wrappedBuffer(data, FILE_SIZE - 10, 10));
+        }
+    }
+
+    @Test
+    public void testReadDiskRanges()
+            throws IOException
+    {
+        try (MemoryMappedOrcDataSource dataSource = new MemoryMappedOrcDataSource(file)) {
+            Map<String, FixedLengthSliceInput> inputs = dataSource.readFully(ImmutableMap.of(
+                    "first", new DiskRange(0, 10),
+                    "overlap", new DiskRange(5, 100),
+                    "last", new DiskRange(FILE_SIZE - 1000, 1000)));
+
+            assertInput(inputs.get("first"), 0, 10);
+            assertInput(inputs.get("overlap"), 5, 100);
+            assertInput(inputs.get("last"), FILE_SIZE - 1000, 1000);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "Data source is closed: .*")
+    public void testReadAfterClose()
+            throws IOException
+    {
+        MemoryMappedOrcDataSource dataSource = new MemoryMappedOrcDataSource(file);
+        dataSource.close();
+        // closing twice is allowed
+        dataSource.close();
+
+        dataSource.readFully(0, new byte[10]);
+    }
+
+    @Test
+    public void testReadZlibFile()
+            throws IOException
+    {
+        assertReadCompressedFile(ZLIB);
+    }
+
+    @Test
+    public void testReadSnappyFile()
+            throws IOException
+    {
+        assertReadCompressedFile(SNAPPY);
+    }
+
+    private void assertReadCompressedFile(CompressionKind compression)
+            throws IOException
+    {
+        List<Type> types = ImmutableList.<Type>of(BIGINT, VARCHAR);
+        int rowCount = 10_000;
+        try (OrcWriter writer = new OrcWriter(new BufferedOutputStream(new FileOutputStream(file)), ImmutableList.of("bigint", "varchar"), types, compression, new OrcMetadataWriter())) {
+            PageBuilder pageBuilder = new PageBuilder(types);
+            for (int row = 0; row < rowCount; row++) {
+                BIGINT.writeLong(pageBuilder.getBlockBuilder(0), row);
+                VARCHAR.writeSlice(pageBuilder.getBlockBuilder(1), utf8Slice("value " + row));
+                pageBuilder.declarePosition();
+            }
+            writer.write(pageBuilder.build());
+        }
+
+        // the streams are slices over the mapping, which have no backing array
+        try (MemoryMappedOrcDataSource dataSource = new MemoryMappedOrcDataSource(file)) {
+            OrcReader orcReader = new OrcReader(dataSource, new OrcMetadataReader());
+            assertEquals(orcReader.getCompressionKind(), compression);
+
+            OrcRecordReader recordReader = orcReader.createRecordReader(ImmutableSet.of(0, 1), OrcPredicate.TRUE, DateTimeZone.UTC);
+            LongVector bigintVector = new LongVector(Vector.MAX_VECTOR_LENGTH);
+            SliceVector varcharVector = new SliceVector(Vector.MAX_VECTOR_LENGTH);
+            int row = 0;
+            for (int batchSize = recordReader.nextBatch(); batchSize >= 0; batchSize = recordReader.nextBatch()) {
+                recordReader.readVector(0, bigintVector);
+                recordReader.readVector(1, varcharVector);
+                for (int i = 0; i < batchSize; i++) {
+                    assertEquals(bigintVector.vector[i], row);
+                    assertEquals(varcharVector.vector[i], utf8Slice("value " + row));
+                    row++;
+                }
+            }
+            assertEquals(row, rowCount);
+            recordReader.close();
+        }
+    }
+
+    private void assertInput(FixedLengthSliceInput input, int offset, int length)
+    {
+        assertEquals(input.length(), length);
+        Slice slice = input.readSlice(length);
+        assertEquals(slice, wrappedBuffer(data, offset, length));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc;
+
+import com.facebook.presto.orc.metadata.RowGroupIndex;
+import com.facebook.presto.orc.metadata.StripeFooter;
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+public class TestOrcMetadataCache
+{
+    private static final OrcFileId FILE = new OrcFileId("file", 100, 1);
+
+    @Test
+    public void testStripeFooter()
+            throws Exception
+    {
+        OrcMetadataCache cache = new OrcMetadataCache(new DataSize(1000, BYTE));
+        AtomicInteger loads = new AtomicInteger();
+
+        StripeFooter footer = cache.getStripeFooter(FILE, 3, 10, () -> createStripeFooter(loads));
+        assertSame(cache.getStripeFooter(FILE, 3, 10, () -> createStripeFooter(loads)), footer);
+        assertEquals(loads.get(), 1);
+        assertEquals(cache.getHitCount(), 1);
+        assertEquals(cache.getMissCount(), 1);
+        assertEquals(cache.getRetainedSizeInBytes(), 10);
+
+        // another stripe of the same file
+        cache.getStripeFooter(FILE, 4, 10, () -> createStripeFooter(loads));
+        assertEquals(loads.get(), 2);
+
+        // the file was rewritten
+        cache.getStripeFooter(new OrcFileId("file", 100, 2), 3, 10, () -> createStripeFooter(loads));
+        assertEquals(loads.get(), 3);
+        assertEquals(cache.getEntryCount(), 3);
+    }
+
+    @Test
+    public void testRowGroupIndexes()
+            throws Exception
+    {
+        OrcMetadataCache cache = new OrcMetadataCache(new DataSize(1000, BYTE));
+        assertNull(cache.getRowGroupIndexesIfPresent(FILE, 3, 1));
+
+        List<RowGroupIndex> indexes = ImmutableList.of();
+        assertSame(cache.getRowGroupIndexes(FILE, 3, 1, 10, () -> indexes), indexes);
+        assertSame(cache.getRowGroupIndexesIfPresent(FILE, 3, 1), indexes);
+        assertNull(cache.getRowGroupIndexesIfPresent(FILE, 3, 2));
+    }
+
+    @Test
+    public void testEviction()
+            throws Exception
+    {
+        OrcMetadataCache cache = new OrcMetadataCache(new DataSize(100, BYTE));
+        AtomicInteger loads = new AtomicInteger();
+        for (int stripe = 0; stripe < 20; stripe++) {
+            cache.getStripeFooter(FILE, stripe, 10, () -> createStripeFooter(loads));
+        }
+        assertEquals(loads.get(), 20);
+        assertEquals(cache.getEntryCount(), cache.getRetainedSizeInBytes() / 10);
+        assertEquals(cache.getEntryCount() + cache.getEvictionCount(), 20);
+
+        cache.flushCache();
+        assertEquals(cache.getEntryCount(), 0);
+        assertEquals(cache.getRetainedSizeInBytes(), 0);
+    }
+
+    @Test
+    public void testDisabled()
+            throws Exception
+    {
+        OrcMetadataCache cache = OrcMetadataCache.disabled();
+        AtomicInteger loads = new AtomicInteger();
+        cache.getStripeFooter(FILE, 3, 10, () -> createStripeFooter(loads));
+        cache.getStripeFooter(FILE, 3, 10, () -> createStripeFooter(loads));
+        assertEquals(loads.get(), 2);
+        assertEquals(cache.getEntryCount(), 0);
+        assertNull(cache.getRowGroupIndexesIfPresent(FILE, 3, 1));
+    }
+
+    @Test
+    public void testLoadFailure()
+    {
+        OrcMetadataCache cache = new OrcMetadataCache(new DataSize(1000, BYTE));
+        try {
+            cache.getStripeFooter(FILE, 3, 10, () -> {
+                throw new IOException("test");
+            });
+            fail("expected IOException");
+        }
+        catch (IOException e) {
+            assertEquals(e.getMessage(), "test");
+        }
+        assertEquals(cache.getEntryCount(), 0);
+    }
+
+    private static StripeFooter createStripeFooter(AtomicInteger loads)
+    {
+        loads.incrementAndGet();
+        return new StripeFooter(ImmutableList.of(), ImmutableList.of());
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc;
+
+import com.facebook.presto.orc.metadata.OrcMetadataReader;
+import com.facebook.presto.orc.metadata.OrcMetadataWriter;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.block.BlockBuilderStatus;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.slice.FixedLengthSliceInput;
+import io.airlift.units.DataSize;
+import org.joda.time.DateTimeZone;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+import static com.facebook.presto.orc.metadata.CompressionKind.ZLIB;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestOrcRecordReaderPrefetch
+{
+    private static final List<Type> TYPES = ImmutableList.<Type>of(BIGINT);
+    private static final int ROW_COUNT = 12_345;
+    private static final int STRIPE_MAX_ROW_COUNT = 5_000;
+
+    private File file;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp()
+            throws Exception
+    {
+        file = File.createTempFile("test", ".orc");
+        executor = newCachedThreadPool();
+
+        try (OrcWriter writer = new OrcWriter(
+                new BufferedOutputStream(new FileOutputStream(file)),
+                ImmutableList.of("value"),
+                TYPES,
+                ZLIB,
+                new OrcMetadataWriter(),
+                STRIPE_MAX_ROW_COUNT,
+                new DataSize(64, MEGABYTE),
+                1_000)) {
+            BlockBuilder blockBuilder = BIGINT.createBlockBuilder(new BlockBuilderStatus(), ROW_COUNT);
+            for (int row = 0; row < ROW_COUNT; row++) {
+                BIGINT.writeLong(blockBuilder, row);
+            }
+            writer.write(new Page(blockBuilder.build()));
+        }
+    }
+
+    @AfterMethod
+    public void tearDown()
+            throws Exception
+    {
+        executor.shutdownNow();
+        file.delete();
+    }
+
+    @Test
+    public void testPrefetch()
+            throws Exception
+    {
+        // stripes are read in the background
+        assertRows(createRecordReader(new FileOrcDataSource(file, new DataSize(1, MEGABYTE)), new DataSize(64, MEGABYTE)));
+
+        // stripes are larger than the prefetch limit, so only the footers are read in the background
+        assertRows(createRecordReader(new FileOrcDataSource(file, new DataSize(1, MEGABYTE)), new DataSize(1, BYTE)));
+    }
+
+    @Test
+    public void testCloseWaitsForPrefetch()
+            throws Exception
+    {
+        BlockingOrcDataSource dataSource = new BlockingOrcDataSource(new FileOrcDataSource(file, new DataSize(1, MEGABYTE)));
+        OrcRecordReader recordReader = createRecordReader(dataSource, new DataSize(64, MEGABYTE));
+
+        // reading the first stripe starts the prefetch of the second one
+        assertTrue(recordReader.nextBatch() > 0);
+        assertTrue(dataSource.awaitBackgroundRead());
+
+        executor.execute(() -> {
+            try {
+                MILLISECONDS.sleep(100);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            dataSource.release();
+        });
+        recordReader.close();
+
+        assertTrue(dataSource.isClosed());
+        assertFalse(dataSource.wasClosedDuringBackgroundRead());
+    }
+
+    private OrcRecordReader createRecordReader(OrcDataSource dataSource, DataSize maxPrefetchSize)
+            throws IOException
+    {
+        OrcReader orcReader = new OrcReader(dataSource, new OrcMetadataReader());
+        return orcReader.createRecordReader(ImmutableSet.of(0), OrcPredicate.TRUE, 0, file.length(), DateTimeZone.UTC, executor, maxPrefetchSize);
+    }
+
+    private static void assertRows(OrcRecordReader recordReader)
+            throws IOException
+    {
+        LongVector vector = new LongVector(Vector.MAX_VECTOR_LENGTH);
+        long row = 0;
+        for (int batchSize = recordReader.nextBatch(); batchSize >= 0; batchSize = recordReader.nextBatch()) {
+            recordReader.readVector(0, vector);
+            for (int i = 0; i < batchSize; i++) {
+                assertEquals(vector.vector[i], row);
+                row++;
+            }
+        }
+        assertEquals(row, ROW_COUNT);
+        recordReader.close();
+    }
+
+    /**
+     * Blocks reads from threads other than the one that created it until it is released.
+     */
+    private static class BlockingOrcDataSource
+            implements OrcDataSource
+    {
+        private final OrcDataSource delegate;
+        private final Thread ownerThread = Thread.currentThread();
+        private final CountDownLatch backgroundReadStarted = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile boolean backgroundReadRunning;
+        private volatile boolean closed;
+        private volatile boolean closedDuringBackgroundRead;
+
+        public BlockingOrcDataSource(OrcDataSource delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        public boolean awaitBackgroundRead()
+                throws InterruptedException
+        {
+            return backgroundReadStarted.await(10, SECONDS);
+        }
+
+        public void release()
+        {
+            released.countDown();
+        }
+
+        public boolean isClosed()
+        {
+            return closed;
+        }
+
+        public boolean wasClosedDuringBackgroundRead()
+        {
+            return closedDuringBackgroundRead;
+        }
+
+        @Override
+        public long getReadTimeNanos()
+        {
+            return delegate.getReadTimeNanos();
+        }
+
+        @Override
+        public long getSize()
+        {
+            return delegate.getSize();
+        }
+
+        @Override
+        public void readFully(long position, byte[] buffer)
+                throws IOException
+        {
+            readFully(position, buffer, 0, buffer.length);
+        }
+
+        @Override
+        public void readFully(long position, byte[] buffer, int bufferOffset, int bufferLength)
+                throws IOException
+        {
+            boolean background = startRead();
+            try {
+                delegate.readFully(position, buffer, bufferOffset, bufferLength);
+            }
+            finally {
+                finishRead(background);
+            }
+        }
+
+        @Override
+        public <K> Map<K, FixedLengthSliceInput> readFully(Map<K, DiskRange> diskRanges)
+                throws IOException
+        {
+            boolean background = startRead();
+            try {
+                return delegate.readFully(diskRanges);
+            }
+            finally {
+                finishRead(background);
+            }
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            closedDuringBackgroundRead = backgroundReadRunning;
+            closed = true;
+            delegate.close();
+        }
+
+        private boolean startRead()
+                throws IOException
+        {
+            if (Thread.currentThread() == ownerThread) {
+                return false;
+            }
+            backgroundReadRunning = true;
+            backgroundReadStarted.countDown();
+            try {
+                released.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            return true;
+        }
+
+        private void finishRead(boolean background)
+        {
+            if (background) {
+                backgroundReadRunning = false;
+            }
+        }
+    }
+}
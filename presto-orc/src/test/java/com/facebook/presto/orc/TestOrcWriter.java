@@ -0,0 +1,266 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc;
+
+import com.facebook.presto.orc.metadata.ColumnStatistics;
+import com.facebook.presto.orc.metadata.CompressionKind;
+import com.facebook.presto.orc.metadata.Footer;
+import com.facebook.presto.orc.metadata.IntegerStatistics;
+import com.facebook.presto.orc.metadata.OrcMetadataReader;
+import com.facebook.presto.orc.metadata.OrcMetadataWriter;
+import com.facebook.presto.spi.PageBuilder;
+import com.facebook.presto.spi.block.BlockBuilder;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.slice.Slice;
+import io.airlift.units.DataSize;
+import org.joda.time.DateTimeZone;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.facebook.presto.orc.metadata.CompressionKind.SNAPPY;
+import static com.facebook.presto.orc.metadata.CompressionKind.UNCOMPRESSED;
+import static com.facebook.presto.orc.metadata.CompressionKind.ZLIB;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.spi.type.DoubleType.DOUBLE;
+import static com.facebook.presto.spi.type.VarbinaryType.VARBINARY;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static io.airlift.slice.Slices.utf8Slice;
+import static io.airlift.slice.Slices.wrappedBuffer;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static org.testng.Assert.assertEquals;
+
+public class TestOrcWriter
+{
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT, BIGINT, DOUBLE, VARCHAR, BOOLEAN, VARBINARY);
+    private static final List<String> NAMES = ImmutableList.of("row", "bigint", "double", "varchar", "boolean", "varbinary");
+
+    private static final int ROW_COUNT = 12_345;
+    private static final int PAGE_SIZE = 777;
+    private static final int STRIPE_MAX_ROW_COUNT = 5_000;
+    private static final int ROW_GROUP_MAX_ROW_COUNT = 1_000;
+
+    private File file;
+
+    @BeforeMethod
+    public void setUp()
+            throws Exception
+    {
+        file = File.createTempFile("test", ".orc");
+    }
+
+    @AfterMethod
+    public void tearDown()
+            throws Exception
+    {
+        file.delete();
+    }
+
+    @Test
+    public void testRoundTrip()
+            throws Exception
+    {
+        for (CompressionKind compression : Arrays.asList(UNCOMPRESSED, ZLIB, SNAPPY)) {
+            List<List<Object>> rows = createRows();
+            writeFile(compression, rows);
+
+            OrcReader orcReader = createOrcReader();
+            Footer footer = orcReader.getFooter();
+            assertEquals(footer.getNumberOfRows(), ROW_COUNT);
+            assertEquals(footer.getStripes().size(), 3);
+            assertEquals(orcReader.getColumnNames(), NAMES);
+            assertEquals(orcReader.getCompressionKind(), compression);
+
+            assertRows(orcReader, OrcPredicate.TRUE, rows);
+        }
+    }
+
+    @Test
+    public void testSkipRowGroups()
+            throws Exception
+    {
+        List<List<Object>> rows = createRows();
+        writeFile(ZLIB, rows);
+
+        // only read the row groups starting at an even thousand, so the reader has to seek using the row indexes
+        OrcPredicate predicate = new OrcPredicate()
+        {
+            @Override
+            public boolean matches(long numberOfRows, Map<Integer, ColumnStatistics> statisticsByColumnIndex)
+            {
+                if (numberOfRows > ROW_GROUP_MAX_ROW_COUNT) {
+                    return true;
+                }
+                IntegerStatistics rowStatistics = statisticsByColumnIndex.get(0).getIntegerStatistics();
+                return (rowStatistics.getMin() / ROW_GROUP_MAX_ROW_COUNT) % 2 == 0;
+            }
+        };
+
+        List<List<Object>> expectedRows = new ArrayList<>();
+        for (int row = 0; row < ROW_COUNT; row++) {
+            if ((row / ROW_GROUP_MAX_ROW_COUNT) % 2 == 0) {
+                expectedRows.add(rows.get(row));
+            }
+        }
+
+        assertRows(createOrcReader(), predicate, expectedRows);
+    }
+
+    @Test
+    public void testEmptyFile()
+            throws Exception
+    {
+        writeFile(SNAPPY, ImmutableList.<List<Object>>of());
+
+        OrcReader orcReader = createOrcReader();
+        assertEquals(orcReader.getFooter().getNumberOfRows(), 0);
+        assertEquals(orcReader.getFooter().getStripes().size(), 0);
+        assertEquals(orcReader.getColumnNames(), NAMES);
+    }
+
+    private void writeFile(CompressionKind compression, List<List<Object>> rows)
+            throws IOException
+    {
+        try (OrcWriter writer = new OrcWriter(
+                new BufferedOutputStream(new FileOutputStream(file)),
+                NAMES,
+                TYPES,
+                compression,
+                new OrcMetadataWriter(),
+                STRIPE_MAX_ROW_COUNT,
+                new DataSize(64, MEGABYTE),
+                ROW_GROUP_MAX_ROW_COUNT)) {
+            PageBuilder pageBuilder = new PageBuilder(TYPES);
+            for (List<Object> row : rows) {
+                for (int channel = 0; channel < TYPES.size(); channel++) {
+                    appendValue(TYPES.get(channel), pageBuilder.getBlockBuilder(channel), row.get(channel));
+                }
+                pageBuilder.declarePosition();
+                if (pageBuilder.getPositionCount() == PAGE_SIZE) {
+                    writer.write(pageBuilder.build());
+                    pageBuilder.reset();
+                }
+            }
+            if (!pageBuilder.isEmpty()) {
+                writer.write(pageBuilder.build());
+            }
+        }
+    }
+
+    private OrcReader createOrcReader()
+            throws IOException
+    {
+        return new OrcReader(new FileOrcDataSource(file, new DataSize(1, MEGABYTE)), new OrcMetadataReader());
+    }
+
+    private static void assertRows(OrcReader orcReader, OrcPredicate predicate, List<List<Object>> expectedRows)
+            throws IOException
+    {
+        assertRows(orcReader.createRecordReader(ImmutableSet.of(0, 1, 2, 3, 4, 5), predicate, DateTimeZone.UTC), expectedRows);
+    }
+
+    private static void assertRows(OrcRecordReader recordReader, List<List<Object>> expectedRows)
+            throws IOException
+    {
+        LongVector rowVector = new LongVector(Vector.MAX_VECTOR_LENGTH);
+        LongVector bigintVector = new LongVector(Vector.MAX_VECTOR_LENGTH);
+        DoubleVector doubleVector = new DoubleVector(Vector.MAX_VECTOR_LENGTH);
+        SliceVector varcharVector = new SliceVector(Vector.MAX_VECTOR_LENGTH);
+        BooleanVector booleanVector = new BooleanVector(Vector.MAX_VECTOR_LENGTH);
+        SliceVector varbinaryVector = new SliceVector(Vector.MAX_VECTOR_LENGTH);
+
+        int rowIndex = 0;
+        for (int batchSize = recordReader.nextBatch(); batchSize >= 0; batchSize = recordReader.nextBatch()) {
+            recordReader.readVector(0, rowVector);
+            recordReader.readVector(1, bigintVector);
+            recordReader.readVector(2, doubleVector);
+            recordReader.readVector(3, varcharVector);
+            recordReader.readVector(4, booleanVector);
+            recordReader.readVector(5, varbinaryVector);
+
+            for (int i = 0; i < batchSize; i++) {
+                List<Object> expected = expectedRows.get(rowIndex);
+                assertEquals(rowVector.vector[i], expected.get(0));
+                assertEquals(bigintVector.isNull[i] ? null : bigintVector.vector[i], expected.get(1));
+                assertEquals(doubleVector.isNull[i] ? null : doubleVector.vector[i], expected.get(2));
+                assertEquals(varcharVector.vector[i], expected.get(3));
+                assertEquals(booleanVector.isNull[i] ? null : booleanVector.vector[i], expected.get(4));
+                assertEquals(varbinaryVector.vector[i], expected.get(5));
+                rowIndex++;
+            }
+        }
+        assertEquals(rowIndex, expectedRows.size());
+        recordReader.close();
+    }
+
+    private static List<List<Object>> createRows()
+    {
+        Random random = new Random(42);
+        List<List<Object>> rows = new ArrayList<>();
+        for (int row = 0; row < ROW_COUNT; row++) {
+            // mix repeated, sequential and random values, so all integer encodings are used
+            Long bigint;
+            if (row % 7 == 0) {
+                bigint = null;
+            }
+            else if (row % 3 == 0) {
+                bigint = random.nextLong();
+            }
+            else {
+                bigint = (long) (row / 10);
+            }
+            Double doubleValue = (row % 11 == 0) ? null : row * 0.5;
+            // low cardinality values are dictionary encoded
+            Slice varchar = (row % 13 == 0) ? null : utf8Slice("value " + (row % 100));
+            Boolean booleanValue = (row % 17 == 0) ? null : (row % 3 == 0);
+            // unique values are direct encoded
+            Slice varbinary = (row % 19 == 0) ? null : wrappedBuffer(Long.toString(random.nextLong()).getBytes());
+
+            rows.add(Arrays.<Object>asList((long) row, bigint, doubleValue, varchar, booleanValue, varbinary));
+        }
+        return rows;
+    }
+
+    private static void appendValue(Type type, BlockBuilder blockBuilder, Object value)
+    {
+        if (value == null) {
+            blockBuilder.appendNull();
+        }
+        else if (type.getJavaType() == boolean.class) {
+            type.writeBoolean(blockBuilder, (Boolean) value);
+        }
+        else if (type.getJavaType() == long.class) {
+            type.writeLong(blockBuilder, (Long) value);
+        }
+        else if (type.getJavaType() == double.class) {
+            type.writeDouble(blockBuilder, (Double) value);
+        }
+        else {
+            type.writeSlice(blockBuilder, (Slice) value);
+        }
+    }
+}
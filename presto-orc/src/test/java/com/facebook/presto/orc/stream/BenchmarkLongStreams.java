@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.stream;
+
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.facebook.presto.orc.Vector.MAX_VECTOR_LENGTH;
+import static com.facebook.presto.orc.metadata.CompressionKind.UNCOMPRESSED;
+import static com.facebook.presto.orc.metadata.OrcType.OrcTypeKind.LONG;
+import static com.facebook.presto.orc.metadata.Stream.StreamKind.DATA;
+
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(3)
+@Warmup(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class BenchmarkLongStreams
+{
+    private static final int VALUE_COUNT = 1_000_000;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    @Benchmark
+    public long[] readRleV2(BenchmarkData data)
+            throws IOException
+    {
+        return readValues(new LongStreamV2(createInputStream(data.getRleV2()), true, false), data.getVector());
+    }
+
+    @Benchmark
+    public long[] readDwrfFixedWidth(BenchmarkData data)
+            throws IOException
+    {
+        return readValues(new LongStreamDwrf(createInputStream(data.getDwrf()), LONG, true, false), data.getVector());
+    }
+
+    private static long[] readValues(LongStream stream, long[] vector)
+            throws IOException
+    {
+        for (int position = 0; position < VALUE_COUNT; position += MAX_VECTOR_LENGTH) {
+            stream.nextLongVector(Math.min(MAX_VECTOR_LENGTH, VALUE_COUNT - position), vector);
+        }
+        return vector;
+    }
+
+    private static OrcInputStream createInputStream(Slice slice)
+    {
+        return new OrcInputStream("benchmark", slice.getInput(), UNCOMPRESSED, BUFFER_SIZE);
+    }
+
+    public enum Encoding
+    {
+        // encoded with delta runs
+        SEQUENCE {
+            @Override
+            long getValue(Random random, int position)
+            {
+                return position;
+            }
+        },
+        // encoded with short repeat runs
+        REPEAT {
+            @Override
+            long getValue(Random random, int position)
+            {
+                return position / 10;
+            }
+        },
+        // encoded with narrow bit packed runs
+        SMALL_RANDOM {
+            @Override
+            long getValue(Random random, int position)
+            {
+                return random.nextInt(1000);
+            }
+        },
+        // encoded with 64 bit wide bit packed runs
+        LARGE_RANDOM {
+            @Override
+            long getValue(Random random, int position)
+            {
+                return random.nextLong();
+            }
+        };
+
+        abstract long getValue(Random random, int position);
+    }
+
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        @Param({"SEQUENCE", "REPEAT", "SMALL_RANDOM", "LARGE_RANDOM"})
+        private Encoding encoding;
+
+        private final long[] vector = new long[MAX_VECTOR_LENGTH];
+        private Slice rleV2;
+        private Slice dwrf;
+
+        @Setup
+        public void setup()
+        {
+            Random random = new Random(42);
+            LongOutputStreamV2 rleV2Output = new LongOutputStreamV2(UNCOMPRESSED, BUFFER_SIZE, true);
+            DynamicSliceOutput dwrfOutput = new DynamicSliceOutput(VALUE_COUNT * 8);
+            for (int position = 0; position < VALUE_COUNT; position++) {
+                long value = encoding.getValue(random, position);
+                rleV2Output.writeLong(value);
+                dwrfOutput.writeLong(value);
+            }
+            rleV2Output.close();
+
+            DynamicSliceOutput output = new DynamicSliceOutput(VALUE_COUNT * 8);
+            try {
+                rleV2Output.getStreamDataOutput(0, DATA).writeData(output);
+            }
+            catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            rleV2 = output.slice();
+            dwrf = dwrfOutput.slice();
+        }
+
+        public long[] getVector()
+        {
+            return vector;
+        }
+
+        public Slice getRleV2()
+        {
+            return rleV2;
+        }
+
+        public Slice getDwrf()
+        {
+            return dwrf;
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkLongStreams.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
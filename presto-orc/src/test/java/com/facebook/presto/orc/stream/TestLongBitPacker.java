@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.stream;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestLongBitPacker
+{
+    private static final int END_MARKER = 0xAB;
+
+    @Test
+    public void testUnpack()
+            throws Exception
+    {
+        Random random = new Random(0);
+        LongBitPacker packer = new LongBitPacker();
+        for (int bitSize = 1; bitSize <= 64; bitSize++) {
+            long mask = (bitSize == 64) ? -1 : (1L << bitSize) - 1;
+            for (int length : new int[] {1, 7, 63, 64, 65, 200, 512}) {
+                long[] values = new long[length];
+                for (int i = 0; i < length; i++) {
+                    values[i] = random.nextLong() & mask;
+                }
+
+                InputStream input = new ByteArrayInputStream(pack(values, bitSize));
+                long[] unpacked = new long[length + 2];
+                packer.unpack(unpacked, 1, length, bitSize, input);
+
+                assertEquals(Arrays.copyOfRange(unpacked, 1, length + 1), values, "bitSize " + bitSize + ", length " + length);
+                assertEquals(unpacked[0], 0);
+                assertEquals(unpacked[length + 1], 0);
+                // the packed values end at a byte boundary
+                assertEquals(input.read(), END_MARKER);
+            }
+        }
+    }
+
+    private static byte[] pack(long[] values, int bitSize)
+    {
+        byte[] bytes = new byte[(((values.length * bitSize) + 7) / 8) + 1];
+        int bitPosition = 0;
+        for (long value : values) {
+            for (int bit = bitSize - 1; bit >= 0; bit--) {
+                if (((value >>> bit) & 1) != 0) {
+                    bytes[bitPosition >>> 3] |= 0x80 >>> (bitPosition & 7);
+                }
+                bitPosition++;
+            }
+        }
+        bytes[bytes.length - 1] = (byte) END_MARKER;
+        return bytes;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc.stream;
+
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static com.facebook.presto.orc.metadata.CompressionKind.ZLIB;
+import static io.airlift.slice.Slices.wrappedBuffer;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+public class TestOrcInputStream
+{
+    private static final int BUFFER_SIZE = 1024;
+
+    @Test
+    public void testReadSliceDoesNotCopy()
+            throws Exception
+    {
+        byte[] first = createChunk('a');
+        byte[] second = createChunk('b');
+        OrcInputStream input = new OrcInputStream("test", compress(first, second).getInput(), ZLIB, BUFFER_SIZE, new DecompressionBufferPool());
+
+        // the first value is in a single chunk, so it references the decompression buffer
+        Slice value = input.readSlice(600);
+        assertEquals(value.getBytes(), Arrays.copyOf(first, 600));
+
+        // this value spans both chunks, so it is copied
+        Slice spanning = input.readSlice(BUFFER_SIZE);
+        assertEquals(spanning.getBytes(0, BUFFER_SIZE - 600), Arrays.copyOfRange(first, 600, BUFFER_SIZE));
+        assertEquals(spanning.getBytes(BUFFER_SIZE - 600, 600), Arrays.copyOf(second, 600));
+
+        // decompressing the second chunk must not overwrite the first value
+        assertEquals(value.getBytes(), Arrays.copyOf(first, 600));
+    }
+
+    @Test
+    public void testSmallSliceIsCopied()
+            throws Exception
+    {
+        DecompressionBufferPool bufferPool = new DecompressionBufferPool();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        bufferPool.release(buffer);
+
+        OrcInputStream input = new OrcInputStream("test", compress(createChunk('a')).getInput(), ZLIB, BUFFER_SIZE, bufferPool);
+        Slice value = input.readSlice(10);
+        assertNotSame(value.getBase(), buffer);
+
+        // the value does not retain the buffer, so closing the stream returns it
+        input.close();
+        assertSame(bufferPool.allocate(BUFFER_SIZE, BUFFER_SIZE), buffer);
+        assertEquals(value.getBytes(), Arrays.copyOf(createChunk('a'), 10));
+    }
+
+    @Test
+    public void testBuffersAreReused()
+            throws Exception
+    {
+        DecompressionBufferPool bufferPool = new DecompressionBufferPool();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        bufferPool.release(buffer);
+
+        OrcInputStream input = new OrcInputStream("test", compress(createChunk('a')).getInput(), ZLIB, BUFFER_SIZE, bufferPool);
+        assertEquals(input.read(), 'a');
+
+        // the stream is using the pooled buffer
+        assertNotSame(bufferPool.allocate(BUFFER_SIZE, BUFFER_SIZE), buffer);
+
+        // closing the stream returns the buffer
+        input.close();
+        assertSame(bufferPool.allocate(BUFFER_SIZE, BUFFER_SIZE), buffer);
+    }
+
+    @Test
+    public void testSharedBuffersAreNotReused()
+            throws Exception
+    {
+        DecompressionBufferPool bufferPool = new DecompressionBufferPool();
+        OrcInputStream input = new OrcInputStream("test", compress(createChunk('a')).getInput(), ZLIB, BUFFER_SIZE, bufferPool);
+        Slice value = input.readSlice(BUFFER_SIZE / 2);
+        input.close();
+
+        byte[] buffer = bufferPool.allocate(BUFFER_SIZE, BUFFER_SIZE);
+        Arrays.fill(buffer, (byte) 'x');
+        assertEquals(value.getBytes(), Arrays.copyOf(createChunk('a'), BUFFER_SIZE / 2));
+    }
+
+    @Test
+    public void testInflatersAreReused()
+            throws Exception
+    {
+        DecompressionBufferPool bufferPool = new DecompressionBufferPool();
+        Inflater inflater = bufferPool.allocateInflater();
+        bufferPool.release(inflater);
+
+        OrcInputStream input = new OrcInputStream("test", compress(createChunk('a')).getInput(), ZLIB, BUFFER_SIZE, bufferPool);
+        assertEquals(input.read(), 'a');
+        input.close();
+
+        // the stream returned the inflater after decompressing the chunk
+        assertSame(bufferPool.allocateInflater(), inflater);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class, expectedExceptionsMessageRegExp = "Inflater has been closed")
+    public void testClosingPoolEndsInflaters()
+    {
+        DecompressionBufferPool bufferPool = new DecompressionBufferPool();
+        Inflater inflater = bufferPool.allocateInflater();
+        bufferPool.release(inflater);
+        bufferPool.close();
+
+        inflater.getRemaining();
+    }
+
+    private static byte[] createChunk(char value)
+    {
+        byte[] chunk = new byte[BUFFER_SIZE];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) (value + (i % 7));
+        }
+        return chunk;
+    }
+
+    private static Slice compress(byte[]... chunks)
+            throws IOException
+    {
+        DynamicSliceOutput output = new DynamicSliceOutput(BUFFER_SIZE);
+        for (byte[] chunk : chunks) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setInput(chunk);
+            deflater.finish();
+            byte[] compressed = new byte[BUFFER_SIZE * 2];
+            int length = deflater.deflate(compressed);
+            deflater.end();
+
+            // 3 byte header with the chunk length, the low bit is not set for compressed chunks
+            int header = length << 1;
+            output.writeByte(header & 0xFF);
+            output.writeByte((header >>> 8) & 0xFF);
+            output.writeByte((header >>> 16) & 0xFF);
+            output.writeBytes(wrappedBuffer(compressed, 0, length));
+        }
+        return output.slice();
+    }
+}
@@ -38,6 +38,11 @@ public class RaptorInsertTableHandle
     private final String externalBatchId;
     private final List<RaptorColumnHandle> sortColumnHandles;
     private final List<SortOrder> sortOrders;
+    @Nullable
+    private final RaptorColumnHandle temporalColumnHandle;
+    private final List<RaptorColumnHandle> bucketColumnHandles;
+    @Nullable
+    private final Integer bucketCount;
 
     @JsonCreator
     public RaptorInsertTableHandle(
@@ -47,7 +52,10 @@ public class RaptorInsertTableHandle
             @JsonProperty("columnTypes") List<Type> columnTypes,
             @JsonProperty("externalBatchId") @Nullable String externalBatchId,
             @JsonProperty("sortColumnHandles") List<RaptorColumnHandle> sortColumnHandles,
-            @JsonProperty("sortOrders") List<SortOrder> sortOrders)
+            @JsonProperty("sortOrders") List<SortOrder> sortOrders,
+            @JsonProperty("temporalColumnHandle") @Nullable RaptorColumnHandle temporalColumnHandle,
+            @JsonProperty("bucketColumnHandles") List<RaptorColumnHandle> bucketColumnHandles,
+            @JsonProperty("bucketCount") @Nullable Integer bucketCount)
     {
         checkArgument(tableId > 0, "tableId must be greater than zero");
 
@@ -59,6 +67,10 @@ public class RaptorInsertTableHandle
 
         this.sortOrders = ImmutableList.copyOf(checkNotNull(sortOrders, "sortOrders is null"));
         this.sortColumnHandles = ImmutableList.copyOf(checkNotNull(sortColumnHandles, "sortColumnHandles is null"));
+        this.temporalColumnHandle = temporalColumnHandle;
+        this.bucketColumnHandles = ImmutableList.copyOf(checkNotNull(bucketColumnHandles, "bucketColumnHandles is null"));
+        checkArgument(bucketColumnHandles.isEmpty() == (bucketCount == null), "bucketColumnHandles and bucketCount must be specified together");
+        this.bucketCount = bucketCount;
     }
 
     @JsonProperty
@@ -104,6 +116,26 @@ public class RaptorInsertTableHandle
         return sortOrders;
     }
 
+    @Nullable
+    @JsonProperty
+    public RaptorColumnHandle getTemporalColumnHandle()
+    {
+        return temporalColumnHandle;
+    }
+
+    @JsonProperty
+    public List<RaptorColumnHandle> getBucketColumnHandles()
+    {
+        return bucketColumnHandles;
+    }
+
+    @Nullable
+    @JsonProperty
+    public Integer getBucketCount()
+    {
+        return bucketCount;
+    }
+
     @Override
     public String toString()
     {
@@ -14,6 +14,7 @@
 package com.facebook.presto.raptor;
 
 import com.facebook.presto.raptor.metadata.ColumnInfo;
+import com.facebook.presto.raptor.metadata.Distribution;
 import com.facebook.presto.raptor.metadata.ForMetadata;
 import com.facebook.presto.raptor.metadata.MetadataDao;
 import com.facebook.presto.raptor.metadata.MetadataDaoUtils;
@@ -22,12 +23,14 @@ import com.facebook.presto.raptor.metadata.ShardManager;
 import com.facebook.presto.raptor.metadata.Table;
 import com.facebook.presto.raptor.metadata.TableColumn;
 import com.facebook.presto.raptor.metadata.ViewResult;
+import com.facebook.presto.raptor.storage.StorageService;
 import com.facebook.presto.spi.ColumnMetadata;
 import com.facebook.presto.spi.ConnectorColumnHandle;
 import com.facebook.presto.spi.ConnectorInsertTableHandle;
 import com.facebook.presto.spi.ConnectorMetadata;
 import com.facebook.presto.spi.ConnectorOutputTableHandle;
 import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.ConnectorTableBucketing;
 import com.facebook.presto.spi.ConnectorTableHandle;
 import com.facebook.presto.spi.ConnectorTableMetadata;
 import com.facebook.presto.spi.PrestoException;
@@ -36,9 +39,11 @@ import com.facebook.presto.spi.SchemaTablePrefix;
 import com.facebook.presto.spi.ViewNotFoundException;
 import com.facebook.presto.spi.type.StandardTypes;
 import com.facebook.presto.spi.type.Type;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimaps;
 import io.airlift.json.JsonCodec;
 import io.airlift.slice.Slice;
@@ -60,26 +65,39 @@ import static com.facebook.presto.raptor.metadata.MetadataDaoUtils.createMetadat
 import static com.facebook.presto.raptor.metadata.SqlUtils.runIgnoringConstraintViolation;
 import static com.facebook.presto.raptor.util.Types.checkType;
 import static com.facebook.presto.spi.StandardErrorCode.ALREADY_EXISTS;
+import static com.facebook.presto.spi.StandardErrorCode.INVALID_SESSION_PROPERTY;
 import static com.facebook.presto.spi.StandardErrorCode.NOT_FOUND;
+import static com.facebook.presto.spi.StandardErrorCode.NOT_SUPPORTED;
 import static com.facebook.presto.spi.block.SortOrder.ASC_NULLS_FIRST;
 import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.DateType.DATE;
+import static com.facebook.presto.spi.type.TimestampType.TIMESTAMP;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
 import static java.util.Collections.nCopies;
+import static java.util.Locale.ENGLISH;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 
 public class RaptorMetadata
         implements ConnectorMetadata
 {
+    // comma separated column names, applied to tables created in the session
+    public static final String SORT_COLUMNS_PROPERTY = "sort_columns";
+    public static final String TEMPORAL_COLUMN_PROPERTY = "temporal_column";
+    public static final String BUCKET_COLUMNS_PROPERTY = "bucket_columns";
+    public static final String BUCKET_COUNT_PROPERTY = "bucket_count";
+
     private final IDBI dbi;
     private final MetadataDao dao;
     private final ShardManager shardManager;
+    private final StorageService storageService;
     private final JsonCodec<ShardInfo> shardInfoCodec;
     private final String connectorId;
 
     @Inject
-    public RaptorMetadata(RaptorConnectorId connectorId, @ForMetadata IDBI dbi, ShardManager shardManager, JsonCodec<ShardInfo> shardInfoCodec)
+    public RaptorMetadata(RaptorConnectorId connectorId, @ForMetadata IDBI dbi, ShardManager shardManager, StorageService storageService, JsonCodec<ShardInfo> shardInfoCodec)
     {
         checkNotNull(connectorId, "connectorId is null");
 
@@ -87,6 +105,7 @@ public class RaptorMetadata
         this.dbi = checkNotNull(dbi, "dbi is null");
         this.dao = dbi.onDemand(MetadataDao.class);
         this.shardManager = checkNotNull(shardManager, "shardManager is null");
+        this.storageService = checkNotNull(storageService, "storageService is null");
         this.shardInfoCodec = checkNotNull(shardInfoCodec, "shardInfoCodec is null");
 
         createMetadataTablesWithRetry(dao);
@@ -128,12 +147,16 @@ public class RaptorMetadata
         if (sampleWeightColumnHandle != null) {
             sampleWeightColumnHandle = new RaptorColumnHandle(connectorId, SAMPLE_WEIGHT_COLUMN_NAME, sampleWeightColumnHandle.getColumnId(), BIGINT);
         }
+
+        Distribution distribution = dao.getTableDistribution(table.getTableId());
         return new RaptorTableHandle(
                 connectorId,
                 tableName.getSchemaName(),
                 tableName.getTableName(),
                 table.getTableId(),
-                sampleWeightColumnHandle);
+                sampleWeightColumnHandle,
+                (distribution == null) ? null : distribution.getDistributionId(),
+                (distribution == null) ? null : distribution.getBucketCount());
     }
 
     @Override
@@ -177,6 +200,27 @@ public class RaptorMetadata
         return checkType(tableHandle, RaptorTableHandle.class, "tableHandle").getSampleWeightColumnHandle();
     }
 
+    @Override
+    public ConnectorTableBucketing getTableBucketing(ConnectorTableHandle tableHandle)
+    {
+        // tables of the same distribution hash rows the same way and share the bucket assignments,
+        // but shards can only be moved to the node of their bucket by restoring them from backup
+        RaptorTableHandle handle = checkType(tableHandle, RaptorTableHandle.class, "tableHandle");
+        if ((handle.getDistributionId() == null) || !storageService.isBackupAvailable()) {
+            return null;
+        }
+        List<ConnectorColumnHandle> bucketColumns = ImmutableList.copyOf(getBucketColumnHandles(handle.getTableId()));
+        return new ConnectorTableBucketing(bucketColumns, handle.getBucketCount(), "raptor:" + handle.getDistributionId());
+    }
+
+    @Override
+    public List<ConnectorColumnHandle> getSortedColumns(ConnectorTableHandle tableHandle)
+    {
+        // every shard is written sorted on the sort columns, and each split reads one shard
+        long tableId = checkType(tableHandle, RaptorTableHandle.class, "tableHandle").getTableId();
+        return ImmutableList.copyOf(getSortColumnHandles(tableId));
+    }
+
     @Override
     public boolean canCreateSampledTables(ConnectorSession session)
     {
@@ -217,15 +261,15 @@ public class RaptorMetadata
     {
         Long newTableId = dbi.inTransaction((handle, status) -> runIgnoringConstraintViolation(() -> {
             MetadataDao dao = handle.attach(MetadataDao.class);
-            long tableId = dao.insertTable(connectorId, tableMetadata.getTable().getSchemaName(), tableMetadata.getTable().getTableName());
+            long tableId = dao.insertTable(connectorId, tableMetadata.getTable().getSchemaName(), tableMetadata.getTable().getTableName(), null, null);
             int ordinalPosition = 0;
             for (ColumnMetadata column : tableMetadata.getColumns()) {
                 long columnId = ordinalPosition + 1;
-                dao.insertColumn(tableId, columnId, column.getName(), ordinalPosition, column.getType().getTypeSignature().toString());
+                dao.insertColumn(tableId, columnId, column.getName(), ordinalPosition, column.getType().getTypeSignature().toString(), null, null);
                 ordinalPosition++;
             }
             if (tableMetadata.isSampled()) {
-                dao.insertColumn(tableId, ordinalPosition + 1, SAMPLE_WEIGHT_COLUMN_NAME, ordinalPosition, StandardTypes.BIGINT);
+                dao.insertColumn(tableId, ordinalPosition + 1, SAMPLE_WEIGHT_COLUMN_NAME, ordinalPosition, StandardTypes.BIGINT, null, null);
             }
             return tableId;
         }));
@@ -244,7 +288,9 @@ public class RaptorMetadata
                 tableMetadata.getTable().getSchemaName(),
                 tableMetadata.getTable().getTableName(),
                 newTableId,
-                sampleWeightColumnHandle);
+                sampleWeightColumnHandle,
+                null,
+                null);
     }
 
     @Override
@@ -288,14 +334,90 @@ public class RaptorMetadata
             columnTypes.add(BIGINT);
         }
 
+        Map<String, RaptorColumnHandle> columnHandleMap = Maps.uniqueIndex(columnHandles.build(), RaptorColumnHandle::getColumnName);
+
+        ImmutableList.Builder<RaptorColumnHandle> sortColumnHandles = ImmutableList.builder();
+        for (String columnName : getColumnNamesProperty(session, SORT_COLUMNS_PROPERTY)) {
+            sortColumnHandles.add(getPropertyColumnHandle(columnHandleMap, SORT_COLUMNS_PROPERTY, columnName));
+        }
+        List<RaptorColumnHandle> sortColumns = sortColumnHandles.build();
+
+        RaptorColumnHandle temporalColumnHandle = null;
+        List<String> temporalColumnNames = getColumnNamesProperty(session, TEMPORAL_COLUMN_PROPERTY);
+        if (!temporalColumnNames.isEmpty()) {
+            if (temporalColumnNames.size() > 1) {
+                throw new PrestoException(INVALID_SESSION_PROPERTY, format("Only one column can be specified in %s", TEMPORAL_COLUMN_PROPERTY));
+            }
+            temporalColumnHandle = getPropertyColumnHandle(columnHandleMap, TEMPORAL_COLUMN_PROPERTY, temporalColumnNames.get(0));
+            Type type = temporalColumnHandle.getColumnType();
+            if (!type.equals(DATE) && !type.equals(TIMESTAMP)) {
+                throw new PrestoException(INVALID_SESSION_PROPERTY, format("Temporal column must be of type DATE or TIMESTAMP: %s", temporalColumnHandle.getColumnName()));
+            }
+        }
+
+        ImmutableList.Builder<RaptorColumnHandle> bucketColumnHandles = ImmutableList.builder();
+        for (String columnName : getColumnNamesProperty(session, BUCKET_COLUMNS_PROPERTY)) {
+            bucketColumnHandles.add(getPropertyColumnHandle(columnHandleMap, BUCKET_COLUMNS_PROPERTY, columnName));
+        }
+        List<RaptorColumnHandle> bucketColumns = bucketColumnHandles.build();
+
+        Integer bucketCount = getBucketCountProperty(session);
+        if (bucketColumns.isEmpty() != (bucketCount == null)) {
+            throw new PrestoException(INVALID_SESSION_PROPERTY, format("%s and %s must be specified together", BUCKET_COLUMNS_PROPERTY, BUCKET_COUNT_PROPERTY));
+        }
+        if ((bucketCount != null) && !storageService.isBackupAvailable()) {
+            throw new PrestoException(NOT_SUPPORTED, "Bucketed tables require a backup store");
+        }
+
         return new RaptorOutputTableHandle(
                 tableMetadata.getTable().getSchemaName(),
                 tableMetadata.getTable().getTableName(),
                 columnHandles.build(),
                 columnTypes.build(),
                 sampleWeightColumnHandle,
-                ImmutableList.of(),
-                ImmutableList.of());
+                sortColumns,
+                nCopies(sortColumns.size(), ASC_NULLS_FIRST),
+                temporalColumnHandle,
+                bucketColumns,
+                bucketCount);
+    }
+
+    @Nullable
+    private static Integer getBucketCountProperty(ConnectorSession session)
+    {
+        String value = session.getProperties().get(BUCKET_COUNT_PROPERTY);
+        if (value == null) {
+            return null;
+        }
+        int bucketCount;
+        try {
+            bucketCount = Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e) {
+            throw new PrestoException(INVALID_SESSION_PROPERTY, format("%s must be an integer: %s", BUCKET_COUNT_PROPERTY, value));
+        }
+        if (bucketCount <= 0) {
+            throw new PrestoException(INVALID_SESSION_PROPERTY, format("%s must be greater than zero: %s", BUCKET_COUNT_PROPERTY, value));
+        }
+        return bucketCount;
+    }
+
+    private static List<String> getColumnNamesProperty(ConnectorSession session, String property)
+    {
+        String value = session.getProperties().get(property);
+        if (value == null) {
+            return ImmutableList.of();
+        }
+        return Splitter.on(',').trimResults().omitEmptyStrings().splitToList(value.toLowerCase(ENGLISH));
+    }
+
+    private static RaptorColumnHandle getPropertyColumnHandle(Map<String, RaptorColumnHandle> columnHandles, String property, String columnName)
+    {
+        RaptorColumnHandle handle = columnHandles.get(columnName);
+        if ((handle == null) || handle.getColumnName().equals(SAMPLE_WEIGHT_COLUMN_NAME)) {
+            throw new PrestoException(INVALID_SESSION_PROPERTY, format("Column %s in %s does not exist", columnName, property));
+        }
+        return handle;
     }
 
     @Override
@@ -303,13 +425,22 @@ public class RaptorMetadata
     {
         RaptorOutputTableHandle table = checkType(outputTableHandle, RaptorOutputTableHandle.class, "outputTableHandle");
 
+        Long distributionId = null;
+        if (table.getBucketCount() != null) {
+            distributionId = getOrCreateDistribution(table.getBucketColumnHandles(), table.getBucketCount()).getDistributionId();
+        }
+        Long tableDistributionId = distributionId;
+
         long newTableId = dbi.inTransaction((dbiHandle, status) -> {
             MetadataDao dao = dbiHandle.attach(MetadataDao.class);
-            long tableId = dao.insertTable(connectorId, table.getSchemaName(), table.getTableName());
+            Long temporalColumnId = (table.getTemporalColumnHandle() == null) ? null : table.getTemporalColumnHandle().getColumnId();
+            long tableId = dao.insertTable(connectorId, table.getSchemaName(), table.getTableName(), temporalColumnId, tableDistributionId);
             for (int i = 0; i < table.getColumnTypes().size(); i++) {
                 RaptorColumnHandle column = table.getColumnHandles().get(i);
                 Type columnType = table.getColumnTypes().get(i);
-                dao.insertColumn(tableId, i + 1, column.getColumnName(), i, columnType.getTypeSignature().toString());
+                Integer sortOrdinalPosition = getOrdinalPosition(table.getSortColumnHandles(), column);
+                Integer bucketOrdinalPosition = getOrdinalPosition(table.getBucketColumnHandles(), column);
+                dao.insertColumn(tableId, i + 1, column.getColumnName(), i, columnType.getTypeSignature().toString(), sortOrdinalPosition, bucketOrdinalPosition);
             }
             return tableId;
         });
@@ -321,6 +452,33 @@ public class RaptorMetadata
         shardManager.commitShards(newTableId, columns, parseFragments(fragments), Optional.empty());
     }
 
+    @Nullable
+    private static Integer getOrdinalPosition(List<RaptorColumnHandle> columns, RaptorColumnHandle column)
+    {
+        int position = columns.indexOf(column);
+        return (position < 0) ? null : position;
+    }
+
+    private Distribution getOrCreateDistribution(List<RaptorColumnHandle> bucketColumns, int bucketCount)
+    {
+        String columnTypes = bucketColumns.stream()
+                .map(column -> column.getColumnType().getTypeSignature().toString())
+                .collect(joining(","));
+
+        Distribution distribution = dao.getDistribution(columnTypes, bucketCount);
+        if (distribution == null) {
+            // another table may create the same distribution concurrently
+            runIgnoringConstraintViolation(() -> {
+                dao.insertDistribution(columnTypes, bucketCount);
+            });
+            distribution = dao.getDistribution(columnTypes, bucketCount);
+        }
+        if (distribution == null) {
+            throw new PrestoException(RAPTOR_ERROR, format("Failed to create distribution: %s, %s buckets", columnTypes, bucketCount));
+        }
+        return distribution;
+    }
+
     @Override
     public ConnectorInsertTableHandle beginInsert(ConnectorSession session, ConnectorTableHandle tableHandle)
     {
@@ -335,13 +493,34 @@ public class RaptorMetadata
 
         String externalBatchId = session.getProperties().get("external_batch_id");
         List<RaptorColumnHandle> sortColumnHandles = getSortColumnHandles(tableId);
+
+        Long temporalColumnId = dao.getTemporalColumnId(tableId);
+        RaptorColumnHandle temporalColumnHandle = null;
+        if (temporalColumnId != null) {
+            temporalColumnHandle = getRaptorColumnHandle(dao.getTableColumn(tableId, temporalColumnId));
+        }
+
+        Distribution distribution = dao.getTableDistribution(tableId);
+        List<RaptorColumnHandle> bucketColumnHandles = (distribution == null) ? ImmutableList.of() : getBucketColumnHandles(tableId);
+        Integer bucketCount = (distribution == null) ? null : distribution.getBucketCount();
+
         return new RaptorInsertTableHandle(connectorId,
                 tableId,
                 columnHandles.build(),
                 columnTypes.build(),
                 externalBatchId,
                 sortColumnHandles,
-                nCopies(sortColumnHandles.size(), ASC_NULLS_FIRST));
+                nCopies(sortColumnHandles.size(), ASC_NULLS_FIRST),
+                temporalColumnHandle,
+                bucketColumnHandles,
+                bucketCount);
+    }
+
+    private List<RaptorColumnHandle> getBucketColumnHandles(long tableId)
+    {
+        return dao.listBucketColumns(tableId).stream()
+                .map(this::getRaptorColumnHandle)
+                .collect(toList());
     }
 
     private List<RaptorColumnHandle> getSortColumnHandles(long tableId)
@@ -26,6 +26,7 @@ import java.util.List;
 
 import static com.facebook.presto.raptor.util.MetadataUtil.checkSchemaName;
 import static com.facebook.presto.raptor.util.MetadataUtil.checkTableName;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public class RaptorOutputTableHandle
@@ -39,6 +40,11 @@ public class RaptorOutputTableHandle
     private final RaptorColumnHandle sampleWeightColumnHandle;
     private final List<RaptorColumnHandle> sortColumnHandles;
     private final List<SortOrder> sortOrders;
+    @Nullable
+    private final RaptorColumnHandle temporalColumnHandle;
+    private final List<RaptorColumnHandle> bucketColumnHandles;
+    @Nullable
+    private final Integer bucketCount;
 
     @JsonCreator
     public RaptorOutputTableHandle(
@@ -48,7 +54,10 @@ public class RaptorOutputTableHandle
             @JsonProperty("columnTypes") List<Type> columnTypes,
             @JsonProperty("sampleWeightColumnHandle") @Nullable RaptorColumnHandle sampleWeightColumnHandle,
             @JsonProperty("sortColumnHandles") List<RaptorColumnHandle> sortColumnHandles,
-            @JsonProperty("sortOrders") List<SortOrder> sortOrders)
+            @JsonProperty("sortOrders") List<SortOrder> sortOrders,
+            @JsonProperty("temporalColumnHandle") @Nullable RaptorColumnHandle temporalColumnHandle,
+            @JsonProperty("bucketColumnHandles") List<RaptorColumnHandle> bucketColumnHandles,
+            @JsonProperty("bucketCount") @Nullable Integer bucketCount)
     {
         this.schemaName = checkSchemaName(schemaName);
         this.tableName = checkTableName(tableName);
@@ -57,6 +66,10 @@ public class RaptorOutputTableHandle
         this.sampleWeightColumnHandle = sampleWeightColumnHandle;
         this.sortOrders = checkNotNull(sortOrders, "sortOrders is null");
         this.sortColumnHandles = checkNotNull(sortColumnHandles, "sortColumnHandles is null");
+        this.temporalColumnHandle = temporalColumnHandle;
+        this.bucketColumnHandles = ImmutableList.copyOf(checkNotNull(bucketColumnHandles, "bucketColumnHandles is null"));
+        checkArgument(bucketColumnHandles.isEmpty() == (bucketCount == null), "bucketColumnHandles and bucketCount must be specified together");
+        this.bucketCount = bucketCount;
     }
 
     @JsonProperty
@@ -102,6 +115,26 @@ public class RaptorOutputTableHandle
         return sortOrders;
     }
 
+    @Nullable
+    @JsonProperty
+    public RaptorColumnHandle getTemporalColumnHandle()
+    {
+        return temporalColumnHandle;
+    }
+
+    @JsonProperty
+    public List<RaptorColumnHandle> getBucketColumnHandles()
+    {
+        return bucketColumnHandles;
+    }
+
+    @Nullable
+    @JsonProperty
+    public Integer getBucketCount()
+    {
+        return bucketCount;
+    }
+
     @Override
     public String toString()
     {
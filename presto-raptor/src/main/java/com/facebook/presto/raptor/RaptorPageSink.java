@@ -14,9 +14,8 @@
 package com.facebook.presto.raptor;
 
 import com.facebook.presto.raptor.metadata.ShardInfo;
+import com.facebook.presto.raptor.storage.OrganizedPageWriter;
 import com.facebook.presto.raptor.storage.StorageManager;
-import com.facebook.presto.raptor.storage.StoragePageSink;
-import com.facebook.presto.raptor.util.PageBuffer;
 import com.facebook.presto.spi.ConnectorPageSink;
 import com.facebook.presto.spi.Page;
 import com.facebook.presto.spi.PageSorter;
@@ -24,7 +23,6 @@ import com.facebook.presto.spi.block.Block;
 import com.facebook.presto.spi.block.SortOrder;
 import com.facebook.presto.spi.type.Type;
 import com.google.common.collect.ImmutableList;
-import com.google.common.primitives.Ints;
 import io.airlift.json.JsonCodec;
 import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
@@ -32,27 +30,18 @@ import io.airlift.slice.Slices;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.base.Preconditions.checkState;
-import static java.util.stream.Collectors.toList;
 
 public class RaptorPageSink
         implements ConnectorPageSink
 {
-    private final StoragePageSink storagePageSink;
+    private final OrganizedPageWriter pageWriter;
     private final JsonCodec<ShardInfo> shardInfoCodec;
     private final int sampleWeightField;
 
-    private final PageSorter pageSorter;
-    private final List<Type> columnTypes;
-    private final List<Type> sortTypes;
-    private final List<Integer> sortFields;
-    private final List<SortOrder> sortOrders;
-
-    private final PageBuffer pageBuffer;
-
     public RaptorPageSink(
             PageSorter pageSorter,
             StorageManager storageManager,
@@ -61,23 +50,16 @@ public class RaptorPageSink
             List<Type> columnTypes,
             Optional<Long> sampleWeightColumnId,
             List<Long> sortColumnIds,
-            List<SortOrder> sortOrders)
+            List<SortOrder> sortOrders,
+            Optional<Long> temporalColumnId,
+            List<Long> bucketColumnIds,
+            OptionalInt bucketCount)
     {
-        this.pageSorter = checkNotNull(pageSorter, "pageSorter is null");
-        this.columnTypes = ImmutableList.copyOf(checkNotNull(columnTypes, "columnTypes is null"));
-
-        checkNotNull(storageManager, "storageManager is null");
-        this.storagePageSink = storageManager.createStoragePageSink(columnIds, columnTypes);
+        this.pageWriter = new OrganizedPageWriter(storageManager, pageSorter, columnIds, columnTypes, sortColumnIds, sortOrders, temporalColumnId, bucketColumnIds, bucketCount);
         this.shardInfoCodec = checkNotNull(shardInfoCodec, "shardInfoCodec is null");
 
         checkNotNull(sampleWeightColumnId, "sampleWeightColumnId is null");
         this.sampleWeightField = columnIds.indexOf(sampleWeightColumnId.orElse(-1L));
-
-        this.sortFields = ImmutableList.copyOf(sortColumnIds.stream().map(columnIds::indexOf).collect(toList()));
-        this.sortTypes = ImmutableList.copyOf(sortFields.stream().map(columnTypes::get).collect(toList()));
-        this.sortOrders = ImmutableList.copyOf(checkNotNull(sortOrders, "sortOrders is null"));
-
-        this.pageBuffer = storageManager.createPageBuffer();
     }
 
     @Override
@@ -87,20 +69,17 @@ public class RaptorPageSink
             return;
         }
 
-        flushPageBufferIfNecessary(page.getPositionCount());
-
         if (sampleWeightField >= 0) {
             page = createPageWithSampleWeightBlock(page, sampleWeightBlock);
         }
 
-        pageBuffer.add(page);
+        pageWriter.appendPage(page);
     }
 
     @Override
     public Collection<Slice> commit()
     {
-        flushPages(pageBuffer.getPages());
-        List<ShardInfo> shards = storagePageSink.commit();
+        List<ShardInfo> shards = pageWriter.commit();
 
         ImmutableList.Builder<Slice> fragments = ImmutableList.builder();
         for (ShardInfo shard : shards) {
@@ -135,50 +114,4 @@ public class RaptorPageSink
         }
         return new Page(blocks);
     }
-
-    private void flushPageBufferIfNecessary(int rowsToAdd)
-    {
-        if (shouldFlush(rowsToAdd)) {
-            flushPages(pageBuffer.getPages());
-            pageBuffer.reset();
-            storagePageSink.flush();
-        }
-    }
-
-    /**
-     * Flushes pages in the PageBuffer to StoragePageSink if ANY of the following is true:
-     * <ul>
-     * <li>rows written to the StoragePageSink >= maxRowsCount</li>
-     * <li>pageBuffer has maximum allowable bytes</li>
-     * <li>pageBuffer has more than Integer.MAX_VALUE rows (PagesSorter.sort can sort Integer.MAX_VALUE rows at a time)</li>
-     * </ul>
-     */
-    private boolean shouldFlush(int rowsToAdd)
-    {
-        return storagePageSink.isFull() || !pageBuffer.canAddRows(rowsToAdd);
-    }
-
-    private void flushPages(List<Page> pages)
-    {
-        if (pages.isEmpty()) {
-            return;
-        }
-
-        if (sortFields.isEmpty()) {
-            storagePageSink.appendPages(pages);
-        }
-        else {
-            checkState(pageBuffer.getRowCount() <= Integer.MAX_VALUE);
-
-            long[] orderedAddresses = pageSorter.sort(columnTypes, pages, sortTypes, sortFields, sortOrders, Ints.checkedCast(pageBuffer.getRowCount()));
-            int[] orderedPageIndex = new int[orderedAddresses.length];
-            int[] orderedPositionIndex = new int[orderedAddresses.length];
-            for (int i = 0; i < orderedAddresses.length; i++) {
-                orderedPageIndex[i] = pageSorter.decodePageIndex(orderedAddresses[i]);
-                orderedPositionIndex[i] = pageSorter.decodePositionIndex(orderedAddresses[i]);
-            }
-
-            storagePageSink.appendPages(pages, orderedPageIndex, orderedPositionIndex);
-        }
-    }
 }
@@ -26,6 +26,7 @@ import javax.inject.Inject;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 import static com.facebook.presto.raptor.util.Types.checkType;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -58,7 +59,10 @@ public class RaptorPageSinkProvider
                 handle.getColumnTypes(),
                 optionalColumnId(handle.getSampleWeightColumnHandle()),
                 toColumnIds(handle.getSortColumnHandles()),
-                handle.getSortOrders());
+                handle.getSortOrders(),
+                optionalColumnId(handle.getTemporalColumnHandle()),
+                toColumnIds(handle.getBucketColumnHandles()),
+                optionalBucketCount(handle.getBucketCount()));
     }
 
     @Override
@@ -73,7 +77,10 @@ public class RaptorPageSinkProvider
                 handle.getColumnTypes(),
                 Optional.empty(),
                 toColumnIds(handle.getSortColumnHandles()),
-                handle.getSortOrders());
+                handle.getSortOrders(),
+                optionalColumnId(handle.getTemporalColumnHandle()),
+                toColumnIds(handle.getBucketColumnHandles()),
+                optionalBucketCount(handle.getBucketCount()));
     }
 
     private static List<Long> toColumnIds(List<RaptorColumnHandle> columnHandles)
@@ -85,4 +92,9 @@ public class RaptorPageSinkProvider
     {
         return Optional.ofNullable(handle).map(RaptorColumnHandle::getColumnId);
     }
+
+    private static OptionalInt optionalBucketCount(Integer bucketCount)
+    {
+        return (bucketCount == null) ? OptionalInt.empty() : OptionalInt.of(bucketCount);
+    }
 }
@@ -21,6 +21,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.UUID;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
@@ -32,16 +34,19 @@ public class RaptorSplit
     private final UUID shardUuid;
     private final List<HostAddress> addresses;
     private final TupleDomain<RaptorColumnHandle> effectivePredicate;
+    private final Optional<Integer> bucketNumber;
 
     @JsonCreator
     public RaptorSplit(
             @JsonProperty("shardUuid") UUID shardUuid,
             @JsonProperty("addresses") List<HostAddress> addresses,
-            @JsonProperty("effectivePredicate") TupleDomain<RaptorColumnHandle> effectivePredicate)
+            @JsonProperty("effectivePredicate") TupleDomain<RaptorColumnHandle> effectivePredicate,
+            @JsonProperty("bucketNumber") Optional<Integer> bucketNumber)
     {
         this.shardUuid = checkNotNull(shardUuid, "shardUuid is null");
         this.addresses = ImmutableList.copyOf(checkNotNull(addresses, "addresses is null"));
         this.effectivePredicate = checkNotNull(effectivePredicate, "effectivePredicate is null");
+        this.bucketNumber = checkNotNull(bucketNumber, "bucketNumber is null");
     }
 
     @Override
@@ -70,6 +75,18 @@ public class RaptorSplit
         return effectivePredicate;
     }
 
+    @JsonProperty
+    public Optional<Integer> getBucketNumber()
+    {
+        return bucketNumber;
+    }
+
+    @Override
+    public OptionalInt getBucket()
+    {
+        return bucketNumber.map(OptionalInt::of).orElse(OptionalInt.empty());
+    }
+
     @Override
     public Object getInfo()
     {
@@ -82,6 +99,7 @@ public class RaptorSplit
         return toStringHelper(this)
                 .add("shardUuid", shardUuid)
                 .add("hosts", addresses)
+                .add("bucketNumber", bucketNumber.orElse(null))
                 .toString();
     }
 }
@@ -30,12 +30,15 @@ import com.facebook.presto.spi.NodeManager;
 import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.TupleDomain;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import javax.inject.Inject;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
@@ -50,6 +53,7 @@ import static com.google.common.collect.Iterators.limit;
 import static com.google.common.collect.Iterators.transform;
 import static com.google.common.collect.Maps.uniqueIndex;
 import static java.lang.String.format;
+import static java.util.stream.Collectors.toSet;
 
 public class RaptorSplitManager
         implements ConnectorSplitManager
@@ -85,7 +89,54 @@ public class RaptorSplitManager
         RaptorPartition partition = checkType(getOnlyElement(partitions), RaptorPartition.class, "partition");
         TupleDomain<RaptorColumnHandle> effectivePredicate = toRaptorTupleDomain(partition.getEffectivePredicate());
 
-        return new RaptorSplitSource(raptorTableHandle.getTableId(), effectivePredicate);
+        return new RaptorSplitSource(raptorTableHandle.getTableId(), effectivePredicate, getBucketNodes(raptorTableHandle));
+    }
+
+    @Override
+    public List<String> getBucketNodes(ConnectorTableHandle tableHandle)
+    {
+        return getBucketNodes(checkType(tableHandle, RaptorTableHandle.class, "tableHandle")).orElse(null);
+    }
+
+    private Optional<List<String>> getBucketNodes(RaptorTableHandle table)
+    {
+        // shards are moved to the node of their bucket by restoring them from backup
+        if ((table.getDistributionId() == null) || !storageManager.isBackupAvailable()) {
+            return Optional.empty();
+        }
+        long distributionId = table.getDistributionId();
+
+        Set<String> activeNodes = nodeManager.getActiveDatasourceNodes(connectorId).stream()
+                .map(Node::getNodeIdentifier)
+                .collect(toSet());
+        if (activeNodes.isEmpty()) {
+            throw new PrestoException(NO_NODES_AVAILABLE, "No nodes available to run query");
+        }
+
+        Map<Integer, String> assignments = shardManager.getBucketAssignments(distributionId);
+        Map<String, Integer> bucketsPerNode = new HashMap<>();
+        for (String node : activeNodes) {
+            bucketsPerNode.put(node, 0);
+        }
+        for (String node : assignments.values()) {
+            bucketsPerNode.computeIfPresent(node, (key, count) -> count + 1);
+        }
+
+        ImmutableList.Builder<String> bucketNodes = ImmutableList.builder();
+        for (int bucket = 0; bucket < table.getBucketCount(); bucket++) {
+            String node = assignments.get(bucket);
+            if ((node == null) || !activeNodes.contains(node)) {
+                // assign new buckets and buckets of nodes that are gone to the node with the fewest buckets
+                node = bucketsPerNode.entrySet().stream()
+                        .min(Map.Entry.comparingByValue())
+                        .get()
+                        .getKey();
+                bucketsPerNode.put(node, bucketsPerNode.get(node) + 1);
+                shardManager.assignBucket(distributionId, bucket, node);
+            }
+            bucketNodes.add(node);
+        }
+        return Optional.of(bucketNodes.build());
     }
 
     private static List<HostAddress> getAddressesForNodes(Map<String, Node> nodeMap, Iterable<String> nodeIdentifiers)
@@ -125,10 +176,12 @@ public class RaptorSplitManager
         private final Map<String, Node> nodesById = uniqueIndex(nodeManager.getActiveNodes(), Node::getNodeIdentifier);
         private final TupleDomain<RaptorColumnHandle> effectivePredicate;
         private final CloseableIterator<ShardNodes> iterator;
+        private final Optional<List<String>> bucketNodes;
 
-        public RaptorSplitSource(long tableId, TupleDomain<RaptorColumnHandle> effectivePredicate)
+        public RaptorSplitSource(long tableId, TupleDomain<RaptorColumnHandle> effectivePredicate, Optional<List<String>> bucketNodes)
         {
             this.effectivePredicate = checkNotNull(effectivePredicate, "effectivePredicate is null");
+            this.bucketNodes = checkNotNull(bucketNodes, "bucketNodes is null");
             this.iterator = shardManager.getShardNodes(tableId, effectivePredicate);
         }
 
@@ -160,6 +213,22 @@ public class RaptorSplitManager
         {
             UUID shardId = shard.getShardUuid();
             Collection<String> nodeIds = shard.getNodeIdentifiers();
+            Optional<Integer> bucketNumber = shard.getBucketNumber().isPresent() ? Optional.of(shard.getBucketNumber().getAsInt()) : Optional.empty();
+
+            if (bucketNodes.isPresent() && bucketNumber.isPresent()) {
+                // read the shard on the node of its bucket, which restores it from backup if needed
+                String nodeId = bucketNodes.get().get(bucketNumber.get());
+                Node node = nodesById.get(nodeId);
+                if (node == null) {
+                    throw new PrestoException(NO_NODES_AVAILABLE, format("Node %s for bucket %s is not available", nodeId, bucketNumber.get()));
+                }
+                if (!nodeIds.equals(ImmutableSet.of(nodeId))) {
+                    // the bucket node becomes the only owner, so compaction on the
+                    // other nodes does not rewrite the shard without the bucket node
+                    shardManager.moveShard(shardId, nodeId);
+                }
+                return new RaptorSplit(shardId, ImmutableList.of(node.getHostAndPort()), effectivePredicate, bucketNumber);
+            }
 
             List<HostAddress> addresses = getAddressesForNodes(nodesById, nodeIds);
 
@@ -179,7 +248,7 @@ public class RaptorSplitManager
                 addresses = ImmutableList.of(node.getHostAndPort());
             }
 
-            return new RaptorSplit(shardId, addresses, effectivePredicate);
+            return new RaptorSplit(shardId, addresses, effectivePredicate, bucketNumber);
         }
     }
 }
@@ -35,6 +35,10 @@ public final class RaptorTableHandle
     private final long tableId;
     @Nullable
     private final RaptorColumnHandle sampleWeightColumnHandle;
+    @Nullable
+    private final Long distributionId;
+    @Nullable
+    private final Integer bucketCount;
 
     @JsonCreator
     public RaptorTableHandle(
@@ -42,7 +46,9 @@ public final class RaptorTableHandle
             @JsonProperty("schemaName") String schemaName,
             @JsonProperty("tableName") String tableName,
             @JsonProperty("tableId") long tableId,
-            @JsonProperty("sampleWeightColumnHandle") @Nullable RaptorColumnHandle sampleWeightColumnHandle)
+            @JsonProperty("sampleWeightColumnHandle") @Nullable RaptorColumnHandle sampleWeightColumnHandle,
+            @JsonProperty("distributionId") @Nullable Long distributionId,
+            @JsonProperty("bucketCount") @Nullable Integer bucketCount)
     {
         this.connectorId = checkNotNull(connectorId, "connectorId is null");
         this.schemaName = checkSchemaName(schemaName);
@@ -52,6 +58,10 @@ public final class RaptorTableHandle
         this.tableId = tableId;
 
         this.sampleWeightColumnHandle = sampleWeightColumnHandle;
+
+        checkArgument((distributionId == null) == (bucketCount == null), "distributionId and bucketCount must be specified together");
+        this.distributionId = distributionId;
+        this.bucketCount = bucketCount;
     }
 
     @JsonProperty
@@ -85,6 +95,20 @@ public final class RaptorTableHandle
         return sampleWeightColumnHandle;
     }
 
+    @Nullable
+    @JsonProperty
+    public Long getDistributionId()
+    {
+        return distributionId;
+    }
+
+    @Nullable
+    @JsonProperty
+    public Integer getBucketCount()
+    {
+        return bucketCount;
+    }
+
     @Override
     public String toString()
     {
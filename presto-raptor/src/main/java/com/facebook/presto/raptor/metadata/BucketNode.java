@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.raptor.metadata;
+
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class BucketNode
+{
+    private final int bucketNumber;
+    private final String nodeIdentifier;
+
+    public BucketNode(int bucketNumber, String nodeIdentifier)
+    {
+        checkArgument(bucketNumber >= 0, "bucketNumber is negative");
+        this.bucketNumber = bucketNumber;
+        this.nodeIdentifier = checkNotNull(nodeIdentifier, "nodeIdentifier is null");
+    }
+
+    public int getBucketNumber()
+    {
+        return bucketNumber;
+    }
+
+    public String getNodeIdentifier()
+    {
+        return nodeIdentifier;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        BucketNode other = (BucketNode) obj;
+        return Objects.equals(this.bucketNumber, other.bucketNumber) &&
+                Objects.equals(this.nodeIdentifier, other.nodeIdentifier);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(bucketNumber, nodeIdentifier);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("bucketNumber", bucketNumber)
+                .add("nodeIdentifier", nodeIdentifier)
+                .toString();
+    }
+
+    public static class Mapper
+            implements ResultSetMapper<BucketNode>
+    {
+        @Override
+        public BucketNode map(int index, ResultSet r, StatementContext ctx)
+                throws SQLException
+        {
+            return new BucketNode(
+                    r.getInt("bucket_number"),
+                    r.getString("node_identifier"));
+        }
+    }
+}
@@ -18,10 +18,12 @@ import com.facebook.presto.raptor.util.CloseableIterator;
 import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.TupleDomain;
 import com.facebook.presto.spi.type.Type;
+import com.google.common.base.Joiner;
 import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.ExecutionError;
 import com.google.common.util.concurrent.UncheckedExecutionException;
@@ -32,7 +34,13 @@ import org.skife.jdbi.v2.exceptions.DBIException;
 
 import javax.inject.Inject;
 
+import java.sql.Connection;
 import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -41,25 +49,37 @@ import java.util.Set;
 import java.util.StringJoiner;
 import java.util.UUID;
 
+import static com.facebook.presto.raptor.RaptorErrorCode.RAPTOR_ERROR;
 import static com.facebook.presto.raptor.RaptorErrorCode.RAPTOR_EXTERNAL_BATCH_ALREADY_EXISTS;
 import static com.facebook.presto.raptor.metadata.ShardManagerDaoUtils.createShardTablesWithRetry;
 import static com.facebook.presto.raptor.metadata.ShardPredicate.jdbcType;
 import static com.facebook.presto.raptor.metadata.SqlUtils.runIgnoringConstraintViolation;
 import static com.facebook.presto.raptor.storage.ShardStats.MAX_BINARY_INDEX_SIZE;
+import static com.facebook.presto.raptor.util.UuidUtil.uuidFromBytes;
+import static com.facebook.presto.raptor.util.UuidUtil.uuidToBytes;
 import static com.facebook.presto.spi.StandardErrorCode.INTERNAL_ERROR;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Iterables.partition;
 import static java.lang.String.format;
+import static java.util.Collections.nCopies;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
 public class DatabaseShardManager
         implements ShardManager
 {
     private static final String INDEX_TABLE_PREFIX = "x_shards_t";
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int DEFAULT_SHARD_PAGE_SIZE = 10_000;
+    private static final long DEFAULT_MAX_CACHED_SHARDS = 1_000_000;
 
     private static final Logger log = Logger.get(DatabaseShardManager.class);
 
     private final IDBI dbi;
     private final ShardManagerDao dao;
+    private final int shardPageSize;
+    private final ShardListCache shardListCache;
 
     private final LoadingCache<String, Long> nodeIdCache = CacheBuilder.newBuilder()
             .maximumSize(10_000)
@@ -72,11 +92,31 @@ public class DatabaseShardManager
                 }
             });
 
+    // node identifiers never change, so they can be cached forever
+    private final LoadingCache<Long, String> nodeIdentifierCache = CacheBuilder.newBuilder()
+            .maximumSize(10_000)
+            .build(new CacheLoader<Long, String>()
+            {
+                @Override
+                public String load(Long nodeId)
+                {
+                    return loadNodeIdentifier(nodeId);
+                }
+            });
+
     @Inject
     public DatabaseShardManager(@ForMetadata IDBI dbi)
     {
+        this(dbi, DEFAULT_SHARD_PAGE_SIZE, DEFAULT_MAX_CACHED_SHARDS);
+    }
+
+    public DatabaseShardManager(IDBI dbi, int shardPageSize, long maxCachedShards)
+    {
+        checkArgument(shardPageSize > 0, "shardPageSize must be greater than zero");
         this.dbi = checkNotNull(dbi, "dbi is null");
         this.dao = dbi.onDemand(ShardManagerDao.class);
+        this.shardPageSize = shardPageSize;
+        this.shardListCache = new ShardListCache(maxCachedShards);
 
         // keep retrying if database is unavailable when the server starts
         createShardTablesWithRetry(dao);
@@ -106,6 +146,8 @@ public class DatabaseShardManager
         try (Handle handle = dbi.open()) {
             handle.execute(sql);
         }
+
+        runIgnoringConstraintViolation(() -> dao.insertTableShardVersion(tableId));
     }
 
     @Override
@@ -116,26 +158,13 @@ public class DatabaseShardManager
             throw new PrestoException(RAPTOR_EXTERNAL_BATCH_ALREADY_EXISTS, "External batch already exists: " + externalBatchId.get());
         }
 
-        Set<String> identifiers = shards.stream()
-                .map(ShardInfo::getNodeIdentifiers)
-                .flatMap(Collection::stream)
-                .collect(toSet());
-        Map<String, Long> nodeIds = Maps.toMap(identifiers, this::getOrCreateNodeId);
+        Map<String, Long> nodeIds = getNodeIds(shards);
 
         dbi.inTransaction((handle, status) -> {
             ShardManagerDao dao = handle.attach(ShardManagerDao.class);
 
-            try (IndexInserter indexInserter = new IndexInserter(handle.getConnection(), tableId, columns)) {
-                for (ShardInfo shard : shards) {
-                    long shardId = dao.insertShard(shard.getShardUuid(), tableId, shard.getRowCount(), shard.getDataSize());
-
-                    for (String nodeIdentifier : shard.getNodeIdentifiers()) {
-                        dao.insertShardNode(shardId, nodeIds.get(nodeIdentifier));
-                    }
-
-                    indexInserter.insert(shardId, shard.getShardUuid(), shard.getColumnStats());
-                }
-            }
+            insertShards(handle.getConnection(), tableId, columns, shards, nodeIds);
+            dao.incrementTableShardVersion(tableId);
 
             if (externalBatchId.isPresent()) {
                 dao.insertExternalBatch(externalBatchId.get());
@@ -144,10 +173,41 @@ public class DatabaseShardManager
         });
     }
 
+    @Override
+    public void replaceShards(long tableId, List<ColumnInfo> columns, Set<UUID> oldShardUuids, Collection<ShardInfo> newShards)
+    {
+        Map<String, Long> nodeIds = getNodeIds(newShards);
+
+        dbi.inTransaction((handle, status) -> {
+            ShardManagerDao dao = handle.attach(ShardManagerDao.class);
+
+            for (List<UUID> shardUuids : partition(oldShardUuids, MAX_BATCH_SIZE)) {
+                deleteShards(handle.getConnection(), tableId, shardUuids);
+            }
+
+            insertShards(handle.getConnection(), tableId, columns, newShards, nodeIds);
+            dao.incrementTableShardVersion(tableId);
+            return null;
+        });
+    }
+
     @Override
     public CloseableIterator<ShardNodes> getShardNodes(long tableId, TupleDomain<RaptorColumnHandle> effectivePredicate)
     {
-        return new ShardIterator(tableId, effectivePredicate, dbi.open().getConnection());
+        Long version = dao.getTableShardVersion(tableId);
+        if (version != null) {
+            CloseableIterator<ShardNodes> cached = shardListCache.get(tableId, effectivePredicate, version);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        CloseableIterator<ShardNodes> iterator = new ShardIterator(tableId, effectivePredicate, shardPageSize, this::getNodeIdentifier, dbi.open().getConnection());
+        if (version == null) {
+            // the shards of tables created before versions were tracked are never cached
+            return iterator;
+        }
+        return shardListCache.cacheOnCompletion(tableId, effectivePredicate, version, iterator);
     }
 
     @Override
@@ -156,6 +216,40 @@ public class DatabaseShardManager
         return dao.getNodeShards(nodeIdentifier);
     }
 
+    @Override
+    public Set<ShardMetadata> getNodeShardMetadata(String nodeIdentifier)
+    {
+        return dao.getNodeShardMetadata(nodeIdentifier);
+    }
+
+    @Override
+    public Map<UUID, ColumnStats> getShardColumnRanges(long tableId, ColumnInfo column)
+    {
+        if (jdbcType(column.getType()) == null) {
+            return ImmutableMap.of();
+        }
+
+        long columnId = column.getColumnId();
+        String sql = format("SELECT shard_uuid, %s, %s FROM %s", minColumn(columnId), maxColumn(columnId), shardIndexTable(tableId));
+
+        ImmutableMap.Builder<UUID, ColumnStats> ranges = ImmutableMap.builder();
+        try (Handle handle = dbi.open();
+                Statement statement = handle.getConnection().createStatement();
+                ResultSet resultSet = statement.executeQuery(sql)) {
+            while (resultSet.next()) {
+                Object min = resultSet.getObject(2);
+                Object max = resultSet.getObject(3);
+                if ((min != null) && (max != null)) {
+                    ranges.put(uuidFromBytes(resultSet.getBytes(1)), new ColumnStats(columnId, min, max));
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw new PrestoException(RAPTOR_ERROR, "Failed to read shard index for table " + tableId, e);
+        }
+        return ranges.build();
+    }
+
     @Override
     public void dropTableShards(long tableId)
     {
@@ -163,8 +257,10 @@ public class DatabaseShardManager
             ShardManagerDao dao = handle.attach(ShardManagerDao.class);
             dao.dropShardNodes(tableId);
             dao.dropShards(tableId);
+            dao.dropTableShardVersion(tableId);
             return null;
         });
+        shardListCache.invalidate(tableId);
 
         try (Handle handle = dbi.open()) {
             handle.execute("DROP TABLE " + shardIndexTable(tableId));
@@ -179,8 +275,225 @@ public class DatabaseShardManager
     {
         long nodeId = getOrCreateNodeId(nodeIdentifier);
 
-        // assigning a shard is idempotent
-        runIgnoringConstraintViolation(() -> dao.insertShardNode(shardUuid, nodeId));
+        dbi.inTransaction((handle, status) -> {
+            ShardManagerDao dao = handle.attach(ShardManagerDao.class);
+
+            // the shard may have been moved away from the node before
+            dao.deleteDeletedShardNode(shardUuid, nodeId);
+
+            // assigning a shard is idempotent
+            runIgnoringConstraintViolation(() -> dao.insertShardNode(shardUuid, nodeId));
+            dao.incrementShardTableVersion(shardUuid);
+            return null;
+        });
+    }
+
+    @Override
+    public void moveShard(UUID shardUuid, String nodeIdentifier)
+    {
+        long nodeId = getOrCreateNodeId(nodeIdentifier);
+
+        dbi.inTransaction((handle, status) -> {
+            ShardManagerDao dao = handle.attach(ShardManagerDao.class);
+
+            // moving a shard is idempotent, so conflicts with a concurrent move are ignored
+            dao.deleteDeletedShardNode(shardUuid, nodeId);
+            runIgnoringConstraintViolation(() -> dao.insertDeletedOtherShardNodes(shardUuid, nodeId));
+            dao.deleteOtherShardNodes(shardUuid, nodeId);
+            runIgnoringConstraintViolation(() -> dao.insertShardNode(shardUuid, nodeId));
+            dao.incrementShardTableVersion(shardUuid);
+            return null;
+        });
+    }
+
+    @Override
+    public Map<Integer, String> getBucketAssignments(long distributionId)
+    {
+        ImmutableMap.Builder<Integer, String> assignments = ImmutableMap.builder();
+        for (BucketNode bucketNode : dao.getBucketNodes(distributionId)) {
+            assignments.put(bucketNode.getBucketNumber(), bucketNode.getNodeIdentifier());
+        }
+        return assignments.build();
+    }
+
+    @Override
+    public void assignBucket(long distributionId, int bucketNumber, String nodeIdentifier)
+    {
+        long nodeId = getOrCreateNodeId(nodeIdentifier);
+
+        if (dao.updateBucketNode(distributionId, bucketNumber, nodeId) == 0) {
+            // another assignment may have been inserted concurrently, which overrides this one
+            runIgnoringConstraintViolation(() -> dao.insertBucketNode(distributionId, bucketNumber, nodeId));
+        }
+    }
+
+    private Map<String, Long> getNodeIds(Collection<ShardInfo> shards)
+    {
+        Set<String> identifiers = shards.stream()
+                .map(ShardInfo::getNodeIdentifiers)
+                .flatMap(Collection::stream)
+                .collect(toSet());
+        return Maps.toMap(identifiers, this::getOrCreateNodeId);
+    }
+
+    private static void insertShards(Connection connection, long tableId, List<ColumnInfo> columns, Collection<ShardInfo> shards, Map<String, Long> nodeIds)
+            throws SQLException
+    {
+        try (IndexInserter indexInserter = new IndexInserter(connection, tableId, columns)) {
+            for (List<ShardInfo> batch : partition(shards, MAX_BATCH_SIZE)) {
+                Map<UUID, Long> shardIds = insertShardBatch(connection, tableId, batch);
+                insertShardNodeBatch(connection, batch, shardIds, nodeIds);
+
+                for (ShardInfo shard : batch) {
+                    indexInserter.insert(shardIds.get(shard.getShardUuid()), shard.getShardUuid(), shard.getColumnStats());
+                }
+                indexInserter.execute();
+            }
+        }
+    }
+
+    private static Map<UUID, Long> insertShardBatch(Connection connection, long tableId, List<ShardInfo> shards)
+            throws SQLException
+    {
+        String sql = "" +
+                "INSERT INTO shards (shard_uuid, table_id, create_time, row_count, data_size, bucket_number)\n" +
+                "VALUES " + repeat("(?, ?, CURRENT_TIMESTAMP, ?, ?, ?)", shards.size());
+
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (ShardInfo shard : shards) {
+                statement.setBytes(index++, uuidToBytes(shard.getShardUuid()));
+                statement.setLong(index++, tableId);
+                statement.setLong(index++, shard.getRowCount());
+                statement.setLong(index++, shard.getDataSize());
+                if (shard.getBucketNumber().isPresent()) {
+                    statement.setInt(index++, shard.getBucketNumber().get());
+                }
+                else {
+                    statement.setNull(index++, Types.INTEGER);
+                }
+            }
+            statement.executeUpdate();
+        }
+
+        // not all drivers return the generated keys of a multi-row insert
+        String query = "SELECT shard_uuid, shard_id FROM shards WHERE shard_uuid IN (" + repeat("?", shards.size()) + ")";
+
+        ImmutableMap.Builder<UUID, Long> shardIds = ImmutableMap.builder();
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            bindUuids(statement, 1, shards.stream().map(ShardInfo::getShardUuid).collect(toList()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    shardIds.put(uuidFromBytes(resultSet.getBytes("shard_uuid")), resultSet.getLong("shard_id"));
+                }
+            }
+        }
+        return shardIds.build();
+    }
+
+    private static void insertShardNodeBatch(Connection connection, List<ShardInfo> shards, Map<UUID, Long> shardIds, Map<String, Long> nodeIds)
+            throws SQLException
+    {
+        int rows = shards.stream().mapToInt(shard -> shard.getNodeIdentifiers().size()).sum();
+        if (rows == 0) {
+            return;
+        }
+
+        String sql = "INSERT INTO shard_nodes (shard_id, node_id) VALUES " + repeat("(?, ?)", rows);
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (ShardInfo shard : shards) {
+                for (String nodeIdentifier : shard.getNodeIdentifiers()) {
+                    statement.setLong(index++, shardIds.get(shard.getShardUuid()));
+                    statement.setLong(index++, nodeIds.get(nodeIdentifier));
+                }
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    private static void deleteShards(Connection connection, long tableId, List<UUID> shardUuids)
+            throws SQLException
+    {
+        String uuids = repeat("?", shardUuids.size());
+
+        // queries may still read the files, so they are deleted later by the shard cleaner
+        try (PreparedStatement statement = connection.prepareStatement("" +
+                "INSERT INTO deleted_shard_nodes (shard_uuid, node_id, delete_time)\n" +
+                "SELECT s.shard_uuid, sn.node_id, CURRENT_TIMESTAMP\n" +
+                "FROM shards s\n" +
+                "JOIN shard_nodes sn ON (s.shard_id = sn.shard_id)\n" +
+                "WHERE s.shard_uuid IN (" + uuids + ")")) {
+            bindUuids(statement, 1, shardUuids);
+            statement.executeUpdate();
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("" +
+                "INSERT INTO deleted_shards (shard_uuid, delete_time)\n" +
+                "SELECT shard_uuid, CURRENT_TIMESTAMP\n" +
+                "FROM shards\n" +
+                "WHERE shard_uuid IN (" + uuids + ")")) {
+            bindUuids(statement, 1, shardUuids);
+            statement.executeUpdate();
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("" +
+                "DELETE FROM shard_nodes WHERE shard_id IN (\n" +
+                "  SELECT shard_id\n" +
+                "  FROM shards\n" +
+                "  WHERE shard_uuid IN (" + uuids + "))")) {
+            bindUuids(statement, 1, shardUuids);
+            statement.executeUpdate();
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "DELETE FROM shards WHERE table_id = ? AND shard_uuid IN (" + uuids + ")")) {
+            statement.setLong(1, tableId);
+            bindUuids(statement, 2, shardUuids);
+            if (statement.executeUpdate() != shardUuids.size()) {
+                // some shards were dropped or replaced concurrently, so roll back everything
+                throw new PrestoException(RAPTOR_ERROR, format("Shards no longer exist in table %s: %s", tableId, shardUuids));
+            }
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "DELETE FROM " + shardIndexTable(tableId) + " WHERE shard_uuid IN (" + uuids + ")")) {
+            bindUuids(statement, 1, shardUuids);
+            statement.executeUpdate();
+        }
+    }
+
+    private static void bindUuids(PreparedStatement statement, int firstIndex, List<UUID> uuids)
+            throws SQLException
+    {
+        int index = firstIndex;
+        for (UUID uuid : uuids) {
+            statement.setBytes(index++, uuidToBytes(uuid));
+        }
+    }
+
+    private static String repeat(String value, int count)
+    {
+        return Joiner.on(", ").join(nCopies(count, value));
+    }
+
+    private String getNodeIdentifier(long nodeId)
+    {
+        try {
+            return nodeIdentifierCache.getUnchecked(nodeId);
+        }
+        catch (UncheckedExecutionException | ExecutionError e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private String loadNodeIdentifier(long nodeId)
+    {
+        String nodeIdentifier = dao.getNodeIdentifier(nodeId);
+        if (nodeIdentifier == null) {
+            throw new PrestoException(INTERNAL_ERROR, "node does not exist: " + nodeId);
+        }
+        return nodeIdentifier;
     }
 
     private long getOrCreateNodeId(String nodeIdentifier)
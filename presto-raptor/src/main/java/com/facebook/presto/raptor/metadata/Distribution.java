@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.raptor.metadata;
+
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A hash distribution shared by all tables with the same bucket column types
+ * and bucket count. Buckets of a distribution are assigned to nodes, so the
+ * same bucket of all tables in a distribution is stored on the same node.
+ */
+public class Distribution
+{
+    private final long distributionId;
+    private final String columnTypes;
+    private final int bucketCount;
+
+    public Distribution(long distributionId, String columnTypes, int bucketCount)
+    {
+        checkArgument(bucketCount > 0, "bucketCount must be greater than zero");
+        this.distributionId = distributionId;
+        this.columnTypes = checkNotNull(columnTypes, "columnTypes is null");
+        this.bucketCount = bucketCount;
+    }
+
+    public long getDistributionId()
+    {
+        return distributionId;
+    }
+
+    public String getColumnTypes()
+    {
+        return columnTypes;
+    }
+
+    public int getBucketCount()
+    {
+        return bucketCount;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        Distribution other = (Distribution) obj;
+        return Objects.equals(this.distributionId, other.distributionId) &&
+                Objects.equals(this.columnTypes, other.columnTypes) &&
+                Objects.equals(this.bucketCount, other.bucketCount);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(distributionId, columnTypes, bucketCount);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("distributionId", distributionId)
+                .add("columnTypes", columnTypes)
+                .add("bucketCount", bucketCount)
+                .toString();
+    }
+
+    public static class Mapper
+            implements ResultSetMapper<Distribution>
+    {
+        @Override
+        public Distribution map(int index, ResultSet r, StatementContext ctx)
+                throws SQLException
+        {
+            return new Distribution(
+                    r.getLong("distribution_id"),
+                    r.getString("column_types"),
+                    r.getInt("bucket_count"));
+        }
+    }
+}
@@ -30,6 +30,8 @@ public interface MetadataDao
             "  catalog_name VARCHAR(255) NOT NULL,\n" +
             "  schema_name VARCHAR(255) NOT NULL,\n" +
             "  table_name VARCHAR(255) NOT NULL,\n" +
+            "  temporal_column_id BIGINT DEFAULT NULL,\n" +
+            "  distribution_id BIGINT DEFAULT NULL,\n" +
             "  UNIQUE (catalog_name, schema_name, table_name)\n" +
             ")")
     void createTableTables();
@@ -41,6 +43,7 @@ public interface MetadataDao
             "  ordinal_position INT NOT NULL,\n" +
             "  data_type VARCHAR(255) NOT NULL,\n" +
             "  sort_ordinal_position INT DEFAULT NULL,\n" +
+            "  bucket_ordinal_position INT DEFAULT NULL,\n" +
             "  PRIMARY KEY (table_id, column_id),\n" +
             "  UNIQUE (table_id, column_name),\n" +
             "  UNIQUE (table_id, ordinal_position),\n" +
@@ -57,6 +60,14 @@ public interface MetadataDao
             ")")
     void createTableViews();
 
+    @SqlUpdate("CREATE TABLE IF NOT EXISTS distributions (\n" +
+            "  distribution_id BIGINT PRIMARY KEY AUTO_INCREMENT,\n" +
+            "  column_types VARCHAR(1024) NOT NULL,\n" +
+            "  bucket_count INT NOT NULL,\n" +
+            "  UNIQUE (column_types, bucket_count)\n" +
+            ")")
+    void createTableDistributions();
+
     @SqlQuery("SELECT table_id FROM tables\n" +
             "WHERE catalog_name = :catalogName\n" +
             "  AND schema_name = :schemaName\n" +
@@ -129,6 +140,36 @@ public interface MetadataDao
             "ORDER BY c.sort_ordinal_position")
     List<TableColumn> listSortColumns(@Bind("tableId") long tableId);
 
+    @SqlQuery("SELECT temporal_column_id\n" +
+            "FROM tables\n" +
+            "WHERE table_id = :tableId")
+    Long getTemporalColumnId(@Bind("tableId") long tableId);
+
+    @SqlQuery("SELECT t.schema_name, t.table_name,\n" +
+            "  c.column_id, c.column_name, c.ordinal_position, c.data_type\n" +
+            "FROM tables t\n" +
+            "JOIN columns c ON (t.table_id = c.table_id)\n" +
+            "WHERE t.table_id = :tableId\n" +
+            "  AND c.bucket_ordinal_position IS NOT NULL\n" +
+            "ORDER BY c.bucket_ordinal_position")
+    List<TableColumn> listBucketColumns(@Bind("tableId") long tableId);
+
+    @SqlQuery("SELECT d.distribution_id, d.column_types, d.bucket_count\n" +
+            "FROM tables t\n" +
+            "JOIN distributions d ON (t.distribution_id = d.distribution_id)\n" +
+            "WHERE t.table_id = :tableId")
+    @Mapper(Distribution.Mapper.class)
+    Distribution getTableDistribution(@Bind("tableId") long tableId);
+
+    @SqlQuery("SELECT distribution_id, column_types, bucket_count\n" +
+            "FROM distributions\n" +
+            "WHERE column_types = :columnTypes\n" +
+            "  AND bucket_count = :bucketCount")
+    @Mapper(Distribution.Mapper.class)
+    Distribution getDistribution(
+            @Bind("columnTypes") String columnTypes,
+            @Bind("bucketCount") int bucketCount);
+
     @SqlQuery("SELECT catalog_name, schema_name, table_name, data\n" +
             "FROM views\n" +
             "WHERE (catalog_name = :catalogName OR :catalogName IS NULL)\n" +
@@ -150,22 +191,33 @@ public interface MetadataDao
             @Bind("schemaName") String schemaName,
             @Bind("tableName") String tableName);
 
-    @SqlUpdate("INSERT INTO tables (catalog_name, schema_name, table_name)\n" +
-            "VALUES (:catalogName, :schemaName, :tableName)")
+    @SqlUpdate("INSERT INTO tables (catalog_name, schema_name, table_name, temporal_column_id, distribution_id)\n" +
+            "VALUES (:catalogName, :schemaName, :tableName, :temporalColumnId, :distributionId)")
     @GetGeneratedKeys
     long insertTable(
             @Bind("catalogName") String catalogName,
             @Bind("schemaName") String schemaName,
-            @Bind("tableName") String tableName);
+            @Bind("tableName") String tableName,
+            @Bind("temporalColumnId") Long temporalColumnId,
+            @Bind("distributionId") Long distributionId);
 
-    @SqlUpdate("INSERT INTO columns (table_id, column_id, column_name, ordinal_position, data_type)\n" +
-            "VALUES (:tableId, :columnId, :columnName, :ordinalPosition, :dataType)")
+    @SqlUpdate("INSERT INTO columns (table_id, column_id, column_name, ordinal_position, data_type, sort_ordinal_position, bucket_ordinal_position)\n" +
+            "VALUES (:tableId, :columnId, :columnName, :ordinalPosition, :dataType, :sortOrdinalPosition, :bucketOrdinalPosition)")
     void insertColumn(
             @Bind("tableId") long tableId,
             @Bind("columnId") long columnId,
             @Bind("columnName") String columnName,
             @Bind("ordinalPosition") int ordinalPosition,
-            @Bind("dataType") String dataType);
+            @Bind("dataType") String dataType,
+            @Bind("sortOrdinalPosition") Integer sortOrdinalPosition,
+            @Bind("bucketOrdinalPosition") Integer bucketOrdinalPosition);
+
+    @SqlUpdate("INSERT INTO distributions (column_types, bucket_count)\n" +
+            "VALUES (:columnTypes, :bucketCount)")
+    @GetGeneratedKeys
+    long insertDistribution(
+            @Bind("columnTypes") String columnTypes,
+            @Bind("bucketCount") int bucketCount);
 
     @SqlUpdate("UPDATE tables SET\n" +
             "  schema_name = :newSchemaName\n" +
@@ -52,6 +52,7 @@ public final class MetadataDaoUtils
         dao.createTableTables();
         dao.createTableColumns();
         dao.createTableViews();
+        dao.createTableDistributions();
     }
 
     private static void sleep(Duration duration)
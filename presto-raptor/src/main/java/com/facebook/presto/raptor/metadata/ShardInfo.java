@@ -19,6 +19,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
@@ -33,6 +34,7 @@ public class ShardInfo
     private final List<ColumnStats> columnStats;
     private final long rowCount;
     private final long dataSize;
+    private final Optional<Integer> bucketNumber;
 
     @JsonCreator
     public ShardInfo(
@@ -40,7 +42,8 @@ public class ShardInfo
             @JsonProperty("nodeIdentifiers") Set<String> nodeIdentifiers,
             @JsonProperty("columnStats") List<ColumnStats> columnStats,
             @JsonProperty("rowCount") long rowCount,
-            @JsonProperty("dataSize") long dataSize)
+            @JsonProperty("dataSize") long dataSize,
+            @JsonProperty("bucketNumber") Optional<Integer> bucketNumber)
     {
         this.shardUuid = checkNotNull(shardUuid, "shardUuid is null");
         this.nodeIdentifiers = ImmutableSet.copyOf(checkNotNull(nodeIdentifiers, "nodeIdentifiers is null"));
@@ -50,6 +53,7 @@ public class ShardInfo
         checkArgument(dataSize >= 0, "dataSize must be positive");
         this.rowCount = rowCount;
         this.dataSize = dataSize;
+        this.bucketNumber = checkNotNull(bucketNumber, "bucketNumber is null");
     }
 
     @JsonProperty
@@ -82,6 +86,12 @@ public class ShardInfo
         return dataSize;
     }
 
+    @JsonProperty
+    public Optional<Integer> getBucketNumber()
+    {
+        return bucketNumber;
+    }
+
     @Override
     public String toString()
     {
@@ -91,6 +101,7 @@ public class ShardInfo
                 .add("columnStats", columnStats)
                 .add("rowCount", rowCount)
                 .add("dataSize", dataSize)
+                .add("bucketNumber", bucketNumber.orElse(null))
                 .toString();
     }
 }
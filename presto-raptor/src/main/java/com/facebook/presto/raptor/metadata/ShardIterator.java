@@ -26,48 +26,73 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Wrapper;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalInt;
 import java.util.UUID;
+import java.util.function.LongFunction;
 
 import static com.facebook.presto.raptor.RaptorErrorCode.RAPTOR_ERROR;
 import static com.facebook.presto.raptor.metadata.DatabaseShardManager.shardIndexTable;
+import static com.facebook.presto.raptor.metadata.SqlUtils.getOptionalInt;
 import static com.facebook.presto.raptor.util.UuidUtil.uuidFromBytes;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-
+import static java.sql.Connection.TRANSACTION_REPEATABLE_READ;
+
+/**
+ * Lists the shards of a table in pages of shard IDs, so that each query only
+ * reads a bounded number of rows.
+ * <p>
+ * All pages are read up front in a single repeatable read transaction, so the
+ * listing is one consistent snapshot of the table: paging by shard ID across
+ * separate transactions would list a shard twice if it were replaced by a
+ * compaction while the listing is in progress. The connection is released as
+ * soon as the listing has been read, rather than being held open while the
+ * splits are scheduled.
+ */
 final class ShardIterator
         extends AbstractIterator<ShardNodes>
         implements CloseableIterator<ShardNodes>
 {
     private static final Logger log = Logger.get(ShardIterator.class);
 
+    private final ShardPredicate predicate;
+    private final int pageSize;
+    private final LongFunction<String> nodeIdentifiers;
     private final Connection connection;
     private final PreparedStatement statement;
-    private final ResultSet resultSet;
 
-    private boolean done;
-    private UUID currentShardId;
-    private ImmutableSet.Builder<String> nodes = ImmutableSet.builder();
+    private long lastShardId = Long.MIN_VALUE;
+    private Iterator<ShardNodes> shards;
 
-    public ShardIterator(long tableId, TupleDomain<RaptorColumnHandle> effectivePredicate, Connection connection)
+    public ShardIterator(long tableId, TupleDomain<RaptorColumnHandle> effectivePredicate, int pageSize, LongFunction<String> nodeIdentifiers, Connection connection)
     {
-        ShardPredicate predicate = ShardPredicate.create(effectivePredicate);
+        checkArgument(pageSize > 0, "pageSize must be greater than zero");
+        this.predicate = ShardPredicate.create(effectivePredicate);
+        this.pageSize = pageSize;
+        this.nodeIdentifiers = checkNotNull(nodeIdentifiers, "nodeIdentifiers is null");
 
         String sql = "" +
-                "SELECT shard_uuid, node_identifier\n" +
-                "FROM " + shardIndexTable(tableId) + " t\n" +
-                "LEFT JOIN shard_nodes sn ON (t.shard_id = sn.shard_id)\n" +
-                "LEFT JOIN nodes n ON (sn.node_id = n.node_id)\n" +
-                "WHERE " + predicate.getPredicate() + "\n" +
-                "ORDER BY shard_uuid";
+                "SELECT x.shard_id, x.shard_uuid, s.bucket_number, sn.node_id\n" +
+                "FROM (\n" +
+                "  SELECT t.shard_id, t.shard_uuid\n" +
+                "  FROM " + shardIndexTable(tableId) + " t\n" +
+                "  WHERE (" + predicate.getPredicate() + ")\n" +
+                "    AND t.shard_id > ?\n" +
+                "  ORDER BY t.shard_id\n" +
+                "  LIMIT " + pageSize + "\n" +
+                ") x\n" +
+                "JOIN shards s ON (x.shard_id = s.shard_id)\n" +
+                "LEFT JOIN shard_nodes sn ON (x.shard_id = sn.shard_id)\n" +
+                "ORDER BY x.shard_id";
 
         log.debug("Executing shard query:\n%s", sql);
 
         this.connection = checkNotNull(connection, "connection is null");
         try {
             statement = connection.prepareStatement(sql);
-            enableStreamingResults(statement);
-            predicate.bind(statement);
-            resultSet = statement.executeQuery();
         }
         catch (SQLException e) {
             close();
@@ -78,12 +103,21 @@ final class ShardIterator
     @Override
     protected ShardNodes computeNext()
     {
-        try {
-            return compute();
+        if (shards == null) {
+            try {
+                shards = readShards().iterator();
+            }
+            catch (SQLException e) {
+                throw new PrestoException(RAPTOR_ERROR, e);
+            }
+            finally {
+                close();
+            }
         }
-        catch (SQLException e) {
-            throw new PrestoException(RAPTOR_ERROR, e);
+        if (!shards.hasNext()) {
+            return endOfData();
         }
+        return shards.next();
     }
 
     @SuppressWarnings({"UnusedDeclaration", "EmptyTryBlock"})
@@ -91,8 +125,7 @@ final class ShardIterator
     public void close()
     {
         // use try-with-resources to close everything properly
-        try (ResultSet resultSet = this.resultSet;
-                Statement statement = this.statement;
+        try (Statement statement = this.statement;
                 Connection connection = this.connection) {
             // do nothing
         }
@@ -100,55 +133,73 @@ final class ShardIterator
         }
     }
 
-    private ShardNodes compute()
+    private List<ShardNodes> readShards()
             throws SQLException
     {
-        if (done) {
-            return endOfData();
-        }
-
-        while (resultSet.next()) {
-            UUID shardId = uuidFromBytes(resultSet.getBytes("shard_uuid"));
-            String nodeId = resultSet.getString("node_identifier");
-
-            ShardNodes value = null;
-            if ((currentShardId != null) && !shardId.equals(currentShardId)) {
-                value = new ShardNodes(currentShardId, nodes.build());
-                nodes = ImmutableSet.builder();
-            }
-
-            currentShardId = shardId;
-            if (nodeId != null) {
-                nodes.add(nodeId);
-            }
-
-            if (value != null) {
-                return value;
+        int isolation = connection.getTransactionIsolation();
+        connection.setTransactionIsolation(TRANSACTION_REPEATABLE_READ);
+        connection.setAutoCommit(false);
+        try {
+            List<ShardNodes> shards = new ArrayList<>();
+            boolean full;
+            do {
+                full = readPage(shards);
             }
+            while (full);
+            connection.commit();
+            return shards;
         }
-        done = true;
-
-        if (currentShardId != null) {
-            return new ShardNodes(currentShardId, nodes.build());
+        catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+        finally {
+            connection.setAutoCommit(true);
+            connection.setTransactionIsolation(isolation);
         }
-        return endOfData();
     }
 
-    private static void enableStreamingResults(Statement statement)
+    /**
+     * Reads the next page of shards into the list and returns whether the page was full.
+     */
+    private boolean readPage(List<ShardNodes> shards)
             throws SQLException
     {
-        if (isWrapperFor(statement, com.mysql.jdbc.Statement.class)) {
-            statement.unwrap(com.mysql.jdbc.Statement.class).enableStreamingResults();
-        }
-    }
+        predicate.bind(statement);
+        statement.setLong(predicate.getParameterCount() + 1, lastShardId);
+
+        int count = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            long currentShardId = Long.MIN_VALUE;
+            UUID shardUuid = null;
+            OptionalInt bucketNumber = OptionalInt.empty();
+            ImmutableSet.Builder<String> nodes = ImmutableSet.builder();
+
+            while (resultSet.next()) {
+                long shardId = resultSet.getLong("shard_id");
+                if (shardId != currentShardId) {
+                    if (shardUuid != null) {
+                        shards.add(new ShardNodes(shardUuid, nodes.build(), bucketNumber));
+                        count++;
+                    }
+                    currentShardId = shardId;
+                    shardUuid = uuidFromBytes(resultSet.getBytes("shard_uuid"));
+                    bucketNumber = getOptionalInt(resultSet, "bucket_number");
+                    nodes = ImmutableSet.builder();
+                }
+
+                long nodeId = resultSet.getLong("node_id");
+                if (!resultSet.wasNull()) {
+                    nodes.add(nodeIdentifiers.apply(nodeId));
+                }
+            }
 
-    private static boolean isWrapperFor(Wrapper wrapper, Class<?> clazz)
-    {
-        try {
-            return wrapper.isWrapperFor(clazz);
-        }
-        catch (SQLException ignored) {
-            return false;
+            if (shardUuid != null) {
+                shards.add(new ShardNodes(shardUuid, nodes.build(), bucketNumber));
+                count++;
+                lastShardId = currentShardId;
+            }
         }
+        return count == pageSize;
     }
 }
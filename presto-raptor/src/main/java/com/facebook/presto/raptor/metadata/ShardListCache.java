@@ -0,0 +1,227 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.raptor.metadata;
+
+import com.facebook.presto.raptor.RaptorColumnHandle;
+import com.facebook.presto.raptor.util.CloseableIterator;
+import com.facebook.presto.spi.TupleDomain;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Caches the shards of a table by predicate. Every entry is tagged with the shard version
+ * of the table that was current before the shards were listed, and is only used while the
+ * table still has that version. A shard listing is only cached once it has been fully read.
+ */
+final class ShardListCache
+{
+    private final long maxShards;
+    private final Cache<CacheKey, CacheEntry> cache;
+
+    public ShardListCache(long maxShards)
+    {
+        checkArgument(maxShards >= 0, "maxShards is negative");
+        this.maxShards = maxShards;
+        // the weight limit is split across segments, so use a single segment
+        // to allow caching a listing of up to the full size
+        this.cache = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(maxShards)
+                .weigher((CacheKey key, CacheEntry entry) -> entry.getShards().size())
+                .build();
+    }
+
+    /**
+     * @return the cached shards, or null if there are no shards cached for the version
+     */
+    public CloseableIterator<ShardNodes> get(long tableId, TupleDomain<RaptorColumnHandle> predicate, long version)
+    {
+        CacheEntry entry = cache.getIfPresent(new CacheKey(tableId, predicate));
+        if ((entry == null) || (entry.getVersion() != version)) {
+            return null;
+        }
+        return new ListIterator(entry.getShards().iterator());
+    }
+
+    /**
+     * Wraps the iterator, so that the shards are cached when the iterator is exhausted.
+     */
+    public CloseableIterator<ShardNodes> cacheOnCompletion(long tableId, TupleDomain<RaptorColumnHandle> predicate, long version, CloseableIterator<ShardNodes> iterator)
+    {
+        return new CachingIterator(new CacheKey(tableId, predicate), version, iterator);
+    }
+
+    public void invalidate(long tableId)
+    {
+        cache.asMap().keySet().removeIf(key -> key.getTableId() == tableId);
+    }
+
+    public long size()
+    {
+        return cache.size();
+    }
+
+    private static class CacheKey
+    {
+        private final long tableId;
+        private final TupleDomain<RaptorColumnHandle> predicate;
+
+        public CacheKey(long tableId, TupleDomain<RaptorColumnHandle> predicate)
+        {
+            this.tableId = tableId;
+            this.predicate = checkNotNull(predicate, "predicate is null");
+        }
+
+        public long getTableId()
+        {
+            return tableId;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if ((obj == null) || (getClass() != obj.getClass())) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return (this.tableId == other.tableId) &&
+                    Objects.equals(this.predicate, other.predicate);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(tableId, predicate);
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("tableId", tableId)
+                    .add("predicate", predicate)
+                    .toString();
+        }
+    }
+
+    private static class CacheEntry
+    {
+        private final long version;
+        private final List<ShardNodes> shards;
+
+        public CacheEntry(long version, List<ShardNodes> shards)
+        {
+            this.version = version;
+            this.shards = ImmutableList.copyOf(checkNotNull(shards, "shards is null"));
+        }
+
+        public long getVersion()
+        {
+            return version;
+        }
+
+        public List<ShardNodes> getShards()
+        {
+            return shards;
+        }
+    }
+
+    private static class ListIterator
+            implements CloseableIterator<ShardNodes>
+    {
+        private final Iterator<ShardNodes> iterator;
+
+        public ListIterator(Iterator<ShardNodes> iterator)
+        {
+            this.iterator = checkNotNull(iterator, "iterator is null");
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public ShardNodes next()
+        {
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private class CachingIterator
+            implements CloseableIterator<ShardNodes>
+    {
+        private final CacheKey key;
+        private final long version;
+        private final CloseableIterator<ShardNodes> iterator;
+        private List<ShardNodes> shards = new ArrayList<>();
+
+        public CachingIterator(CacheKey key, long version, CloseableIterator<ShardNodes> iterator)
+        {
+            this.key = checkNotNull(key, "key is null");
+            this.version = version;
+            this.iterator = checkNotNull(iterator, "iterator is null");
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (iterator.hasNext()) {
+                return true;
+            }
+            if (shards != null) {
+                cache.put(key, new CacheEntry(version, shards));
+                shards = null;
+            }
+            return false;
+        }
+
+        @Override
+        public ShardNodes next()
+        {
+            ShardNodes shard = iterator.next();
+            if (shards != null) {
+                shards.add(shard);
+                if (shards.size() > maxShards) {
+                    // too large to cache
+                    shards = null;
+                }
+            }
+            return shard;
+        }
+
+        @Override
+        public void close()
+        {
+            iterator.close();
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.facebook.presto.spi.TupleDomain;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -35,6 +36,12 @@ public interface ShardManager
      */
     void commitShards(long tableId, List<ColumnInfo> columns, Collection<ShardInfo> shards, Optional<String> externalBatchId);
 
+    /**
+     * Atomically replace shards of a table with new shards containing the same data.
+     * Fails without making any changes if any of the old shards no longer exists.
+     */
+    void replaceShards(long tableId, List<ColumnInfo> columns, Set<UUID> oldShardUuids, Collection<ShardInfo> newShards);
+
     /**
      * Return the shard nodes a given table.
      */
@@ -45,6 +52,17 @@ public interface ShardManager
      */
     Set<UUID> getNodeShards(String nodeIdentifier);
 
+    /**
+     * Return the metadata for the shards of a given node.
+     */
+    Set<ShardMetadata> getNodeShardMetadata(String nodeIdentifier);
+
+    /**
+     * Return the minimum and maximum values of a column for the shards of a table,
+     * as recorded in the shard index. Shards without values for the column are omitted.
+     */
+    Map<UUID, ColumnStats> getShardColumnRanges(long tableId, ColumnInfo column);
+
     /**
      * Drop all shards in a given table.
      */
@@ -54,4 +72,20 @@ public interface ShardManager
      * Assign a shard to a node.
      */
     void assignShard(UUID shardUuid, String nodeIdentifier);
+
+    /**
+     * Assign a shard to a node, which becomes the only node of the shard.
+     * The copies on the other nodes are deleted later by the shard cleaner.
+     */
+    void moveShard(UUID shardUuid, String nodeIdentifier);
+
+    /**
+     * Return the nodes assigned to the buckets of a distribution, keyed by bucket number.
+     */
+    Map<Integer, String> getBucketAssignments(long distributionId);
+
+    /**
+     * Assign a bucket of a distribution to a node, replacing any existing assignment.
+     */
+    void assignBucket(long distributionId, int bucketNumber, String nodeIdentifier);
 }
@@ -24,6 +24,7 @@ import org.skife.jdbi.v2.sqlobject.customizers.Mapper;
 import org.skife.jdbi.v2.sqlobject.customizers.RegisterArgumentFactory;
 import org.skife.jdbi.v2.sqlobject.customizers.RegisterMapperFactory;
 
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -47,6 +48,7 @@ public interface ShardManagerDao
             "  create_time DATETIME NOT NULL,\n" +
             "  row_count BIGINT NOT NULL,\n" +
             "  data_size BIGINT NOT NULL,\n" +
+            "  bucket_number INT DEFAULT NULL,\n" +
             "  UNIQUE (shard_uuid)\n" +
             ")")
     void createTableShards();
@@ -66,17 +68,48 @@ public interface ShardManagerDao
             ")")
     void createTableExternalBatches();
 
+    @SqlUpdate("CREATE TABLE IF NOT EXISTS buckets (\n" +
+            "  distribution_id BIGINT NOT NULL,\n" +
+            "  bucket_number INT NOT NULL,\n" +
+            "  node_id BIGINT NOT NULL,\n" +
+            "  PRIMARY KEY (distribution_id, bucket_number),\n" +
+            "  FOREIGN KEY (node_id) REFERENCES nodes (node_id)\n" +
+            ")")
+    void createTableBuckets();
+
+    @SqlUpdate("CREATE TABLE IF NOT EXISTS table_shard_versions (\n" +
+            "  table_id BIGINT PRIMARY KEY,\n" +
+            "  shard_version BIGINT NOT NULL\n" +
+            ")")
+    void createTableShardVersions();
+
+    @SqlUpdate("CREATE TABLE IF NOT EXISTS deleted_shards (\n" +
+            "  shard_uuid BINARY(16) PRIMARY KEY,\n" +
+            "  delete_time DATETIME NOT NULL\n" +
+            ")")
+    void createTableDeletedShards();
+
+    @SqlUpdate("CREATE TABLE IF NOT EXISTS deleted_shard_nodes (\n" +
+            "  shard_uuid BINARY(16) NOT NULL,\n" +
+            "  node_id BIGINT NOT NULL,\n" +
+            "  delete_time DATETIME NOT NULL,\n" +
+            "  PRIMARY KEY (shard_uuid, node_id),\n" +
+            "  FOREIGN KEY (node_id) REFERENCES nodes (node_id)\n" +
+            ")")
+    void createTableDeletedShardNodes();
+
     @SqlUpdate("INSERT INTO nodes (node_identifier) VALUES (:nodeIdentifier)")
     void insertNode(@Bind("nodeIdentifier") String nodeIdentifier);
 
-    @SqlUpdate("INSERT INTO shards (shard_uuid, table_id, create_time, row_count, data_size)\n" +
-            "VALUES (:shardUuid, :tableId, CURRENT_TIMESTAMP, :rowCount, :dataSize)")
+    @SqlUpdate("INSERT INTO shards (shard_uuid, table_id, create_time, row_count, data_size, bucket_number)\n" +
+            "VALUES (:shardUuid, :tableId, CURRENT_TIMESTAMP, :rowCount, :dataSize, :bucketNumber)")
     @GetGeneratedKeys
     long insertShard(
             @Bind("shardUuid") UUID shardUuid,
             @Bind("tableId") long tableId,
             @Bind("rowCount") long rowCount,
-            @Bind("dataSize") long dataSize);
+            @Bind("dataSize") long dataSize,
+            @Bind("bucketNumber") Integer bucketNumber);
 
     @SqlUpdate("INSERT INTO shard_nodes (shard_id, node_id)\n" +
             "VALUES (:shardId, :nodeId)\n")
@@ -89,6 +122,30 @@ public interface ShardManagerDao
     @SqlQuery("SELECT node_id FROM nodes WHERE node_identifier = :nodeIdentifier")
     Long getNodeId(@Bind("nodeIdentifier") String nodeIdentifier);
 
+    @SqlQuery("SELECT node_identifier FROM nodes WHERE node_id = :nodeId")
+    String getNodeIdentifier(@Bind("nodeId") long nodeId);
+
+    @SqlUpdate("INSERT INTO table_shard_versions (table_id, shard_version)\n" +
+            "VALUES (:tableId, 0)")
+    void insertTableShardVersion(@Bind("tableId") long tableId);
+
+    @SqlQuery("SELECT shard_version FROM table_shard_versions WHERE table_id = :tableId")
+    Long getTableShardVersion(@Bind("tableId") long tableId);
+
+    @SqlUpdate("UPDATE table_shard_versions SET shard_version = shard_version + 1\n" +
+            "WHERE table_id = :tableId")
+    void incrementTableShardVersion(@Bind("tableId") long tableId);
+
+    @SqlUpdate("UPDATE table_shard_versions SET shard_version = shard_version + 1\n" +
+            "WHERE table_id = (\n" +
+            "  SELECT table_id\n" +
+            "  FROM shards\n" +
+            "  WHERE shard_uuid = :shardUuid)")
+    void incrementShardTableVersion(@Bind("shardUuid") UUID shardUuid);
+
+    @SqlUpdate("DELETE FROM table_shard_versions WHERE table_id = :tableId")
+    void dropTableShardVersion(@Bind("tableId") long tableId);
+
     @SqlQuery("SELECT shard_uuid FROM shards WHERE table_id = :tableId")
     List<UUID> getShards(@Bind("tableId") long tableId);
 
@@ -99,6 +156,14 @@ public interface ShardManagerDao
             "WHERE n.node_identifier = :nodeIdentifier")
     Set<UUID> getNodeShards(@Bind("nodeIdentifier") String nodeIdentifier);
 
+    @SqlQuery("SELECT s.table_id, s.shard_uuid, s.row_count, s.data_size, s.bucket_number\n" +
+            "FROM shards s\n" +
+            "JOIN shard_nodes sn ON (s.shard_id = sn.shard_id)\n" +
+            "JOIN nodes n ON (sn.node_id = n.node_id)\n" +
+            "WHERE n.node_identifier = :nodeIdentifier")
+    @Mapper(ShardMetadata.Mapper.class)
+    Set<ShardMetadata> getNodeShardMetadata(@Bind("nodeIdentifier") String nodeIdentifier);
+
     @SqlQuery("SELECT s.shard_uuid, n.node_identifier\n" +
             "FROM shards s\n" +
             "JOIN shard_nodes sn ON (s.shard_id = sn.shard_id)\n" +
@@ -107,6 +172,28 @@ public interface ShardManagerDao
     @Mapper(ShardNode.Mapper.class)
     List<ShardNode> getShardNodes(@Bind("tableId") long tableId);
 
+    @SqlQuery("SELECT b.bucket_number, n.node_identifier\n" +
+            "FROM buckets b\n" +
+            "JOIN nodes n ON (b.node_id = n.node_id)\n" +
+            "WHERE b.distribution_id = :distributionId")
+    @Mapper(BucketNode.Mapper.class)
+    List<BucketNode> getBucketNodes(@Bind("distributionId") long distributionId);
+
+    @SqlUpdate("INSERT INTO buckets (distribution_id, bucket_number, node_id)\n" +
+            "VALUES (:distributionId, :bucketNumber, :nodeId)")
+    void insertBucketNode(
+            @Bind("distributionId") long distributionId,
+            @Bind("bucketNumber") int bucketNumber,
+            @Bind("nodeId") long nodeId);
+
+    @SqlUpdate("UPDATE buckets SET node_id = :nodeId\n" +
+            "WHERE distribution_id = :distributionId\n" +
+            "  AND bucket_number = :bucketNumber")
+    int updateBucketNode(
+            @Bind("distributionId") long distributionId,
+            @Bind("bucketNumber") int bucketNumber,
+            @Bind("nodeId") long nodeId);
+
     @VisibleForTesting
     @SqlQuery("SELECT node_identifier FROM nodes")
     Set<String> getAllNodesInUse();
@@ -120,6 +207,48 @@ public interface ShardManagerDao
     @SqlUpdate("DELETE FROM shards WHERE table_id = :tableId")
     void dropShards(@Bind("tableId") long tableId);
 
+    @SqlQuery("SELECT shard_uuid\n" +
+            "FROM deleted_shards\n" +
+            "WHERE delete_time < :maxDeleteTime")
+    Set<UUID> getDeletedShards(@Bind("maxDeleteTime") Timestamp maxDeleteTime);
+
+    @SqlUpdate("DELETE FROM deleted_shards WHERE shard_uuid = :shardUuid")
+    void deleteDeletedShard(@Bind("shardUuid") UUID shardUuid);
+
+    @SqlQuery("SELECT d.shard_uuid\n" +
+            "FROM deleted_shard_nodes d\n" +
+            "JOIN nodes n ON (d.node_id = n.node_id)\n" +
+            "WHERE n.node_identifier = :nodeIdentifier\n" +
+            "  AND d.delete_time < :maxDeleteTime")
+    Set<UUID> getDeletedShardNodes(
+            @Bind("nodeIdentifier") String nodeIdentifier,
+            @Bind("maxDeleteTime") Timestamp maxDeleteTime);
+
+    @SqlUpdate("DELETE FROM deleted_shard_nodes\n" +
+            "WHERE shard_uuid = :shardUuid\n" +
+            "  AND node_id = (SELECT node_id FROM nodes WHERE node_identifier = :nodeIdentifier)")
+    void deleteDeletedShardNode(
+            @Bind("shardUuid") UUID shardUuid,
+            @Bind("nodeIdentifier") String nodeIdentifier);
+
+    @SqlUpdate("INSERT INTO deleted_shard_nodes (shard_uuid, node_id, delete_time)\n" +
+            "SELECT s.shard_uuid, sn.node_id, CURRENT_TIMESTAMP\n" +
+            "FROM shards s\n" +
+            "JOIN shard_nodes sn ON (s.shard_id = sn.shard_id)\n" +
+            "WHERE s.shard_uuid = :shardUuid\n" +
+            "  AND sn.node_id <> :nodeId")
+    void insertDeletedOtherShardNodes(@Bind("shardUuid") UUID shardUuid, @Bind("nodeId") long nodeId);
+
+    @SqlUpdate("DELETE FROM shard_nodes\n" +
+            "WHERE shard_id = (SELECT shard_id FROM shards WHERE shard_uuid = :shardUuid)\n" +
+            "  AND node_id <> :nodeId")
+    void deleteOtherShardNodes(@Bind("shardUuid") UUID shardUuid, @Bind("nodeId") long nodeId);
+
+    @SqlUpdate("DELETE FROM deleted_shard_nodes\n" +
+            "WHERE shard_uuid = :shardUuid\n" +
+            "  AND node_id = :nodeId")
+    void deleteDeletedShardNode(@Bind("shardUuid") UUID shardUuid, @Bind("nodeId") long nodeId);
+
     @SqlUpdate("INSERT INTO external_batches (external_batch_id, successful)\n" +
             "VALUES (:externalBatchId, TRUE)")
     void insertExternalBatch(@Bind("externalBatchId") String externalBatchId);
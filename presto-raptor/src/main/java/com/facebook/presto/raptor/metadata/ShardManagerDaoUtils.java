@@ -47,6 +47,10 @@ public final class ShardManagerDaoUtils
         dao.createTableShards();
         dao.createTableShardNodes();
         dao.createTableExternalBatches();
+        dao.createTableBuckets();
+        dao.createTableShardVersions();
+        dao.createTableDeletedShards();
+        dao.createTableDeletedShardNodes();
     }
 
     private static void sleep(Duration duration)
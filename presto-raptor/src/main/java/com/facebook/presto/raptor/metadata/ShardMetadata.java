@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.raptor.metadata;
+
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.UUID;
+
+import static com.facebook.presto.raptor.metadata.SqlUtils.getOptionalInt;
+import static com.facebook.presto.raptor.util.UuidUtil.uuidFromBytes;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class ShardMetadata
+{
+    private final long tableId;
+    private final UUID shardUuid;
+    private final long rowCount;
+    private final long dataSize;
+    private final OptionalInt bucketNumber;
+
+    public ShardMetadata(long tableId, UUID shardUuid, long rowCount, long dataSize, OptionalInt bucketNumber)
+    {
+        checkArgument(rowCount >= 0, "rowCount is negative");
+        checkArgument(dataSize >= 0, "dataSize is negative");
+
+        this.tableId = tableId;
+        this.shardUuid = checkNotNull(shardUuid, "shardUuid is null");
+        this.rowCount = rowCount;
+        this.dataSize = dataSize;
+        this.bucketNumber = checkNotNull(bucketNumber, "bucketNumber is null");
+    }
+
+    public long getTableId()
+    {
+        return tableId;
+    }
+
+    public UUID getShardUuid()
+    {
+        return shardUuid;
+    }
+
+    public long getRowCount()
+    {
+        return rowCount;
+    }
+
+    public long getDataSize()
+    {
+        return dataSize;
+    }
+
+    public OptionalInt getBucketNumber()
+    {
+        return bucketNumber;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        ShardMetadata other = (ShardMetadata) obj;
+        return Objects.equals(this.tableId, other.tableId) &&
+                Objects.equals(this.shardUuid, other.shardUuid) &&
+                Objects.equals(this.rowCount, other.rowCount) &&
+                Objects.equals(this.dataSize, other.dataSize) &&
+                Objects.equals(this.bucketNumber, other.bucketNumber);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(tableId, shardUuid, rowCount, dataSize, bucketNumber);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("tableId", tableId)
+                .add("shardUuid", shardUuid)
+                .add("rowCount", rowCount)
+                .add("dataSize", dataSize)
+                .add("bucketNumber", bucketNumber.isPresent() ? bucketNumber.getAsInt() : null)
+                .toString();
+    }
+
+    public static class Mapper
+            implements ResultSetMapper<ShardMetadata>
+    {
+        @Override
+        public ShardMetadata map(int index, ResultSet r, StatementContext ctx)
+                throws SQLException
+        {
+            return new ShardMetadata(
+                    r.getLong("table_id"),
+                    uuidFromBytes(r.getBytes("shard_uuid")),
+                    r.getLong("row_count"),
+                    r.getLong("data_size"),
+                    getOptionalInt(r, "bucket_number"));
+        }
+    }
+}
@@ -16,6 +16,7 @@ package com.facebook.presto.raptor.metadata;
 import com.google.common.collect.ImmutableSet;
 
 import java.util.Objects;
+import java.util.OptionalInt;
 import java.util.Set;
 import java.util.UUID;
 
@@ -26,11 +27,13 @@ public class ShardNodes
 {
     private final UUID shardUuid;
     private final Set<String> nodeIdentifiers;
+    private final OptionalInt bucketNumber;
 
-    public ShardNodes(UUID shardUuid, Set<String> nodeIdentifiers)
+    public ShardNodes(UUID shardUuid, Set<String> nodeIdentifiers, OptionalInt bucketNumber)
     {
         this.shardUuid = checkNotNull(shardUuid, "shardUuid is null");
         this.nodeIdentifiers = ImmutableSet.copyOf(checkNotNull(nodeIdentifiers, "nodeIdentifiers is null"));
+        this.bucketNumber = checkNotNull(bucketNumber, "bucketNumber is null");
     }
 
     public UUID getShardUuid()
@@ -43,6 +46,11 @@ public class ShardNodes
         return nodeIdentifiers;
     }
 
+    public OptionalInt getBucketNumber()
+    {
+        return bucketNumber;
+    }
+
     @Override
     public boolean equals(Object obj)
     {
@@ -54,13 +62,14 @@ public class ShardNodes
         }
         ShardNodes other = (ShardNodes) obj;
         return Objects.equals(this.shardUuid, other.shardUuid) &&
-                Objects.equals(this.nodeIdentifiers, other.nodeIdentifiers);
+                Objects.equals(this.nodeIdentifiers, other.nodeIdentifiers) &&
+                Objects.equals(this.bucketNumber, other.bucketNumber);
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(shardUuid, nodeIdentifiers);
+        return Objects.hash(shardUuid, nodeIdentifiers, bucketNumber);
     }
 
     @Override
@@ -69,6 +78,7 @@ public class ShardNodes
         return toStringHelper(this)
                 .add("shardUuid", shardUuid)
                 .add("nodeIdentifiers", nodeIdentifiers)
+                .add("bucketNumber", bucketNumber.isPresent() ? bucketNumber.getAsInt() : null)
                 .toString();
     }
 }
@@ -65,6 +65,11 @@ class ShardPredicate
         return predicate;
     }
 
+    public int getParameterCount()
+    {
+        return types.size();
+    }
+
     public void bind(PreparedStatement statement)
             throws SQLException
     {
@@ -16,7 +16,9 @@ package com.facebook.presto.raptor.metadata;
 import com.google.common.base.Throwables;
 import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
 
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.OptionalInt;
 import java.util.concurrent.Callable;
 
 import static java.util.concurrent.Executors.callable;
@@ -72,4 +74,14 @@ public final class SqlUtils
             throw e;
         }
     }
+
+    /**
+     * Read a nullable integer column from the current row.
+     */
+    public static OptionalInt getOptionalInt(ResultSet resultSet, String name)
+            throws SQLException
+    {
+        int value = resultSet.getInt(name);
+        return resultSet.wasNull() ? OptionalInt.empty() : OptionalInt.of(value);
+    }
 }
@@ -13,69 +13,41 @@
  */
 package com.facebook.presto.raptor.storage;
 
+import com.facebook.presto.orc.OrcWriter;
+import com.facebook.presto.orc.metadata.OrcMetadataWriter;
 import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageBuilder;
 import com.facebook.presto.spi.PrestoException;
-import com.facebook.presto.spi.block.Block;
-import com.facebook.presto.spi.classloader.ThreadContextClassLoader;
 import com.facebook.presto.spi.type.Type;
 import com.facebook.presto.spi.type.VarbinaryType;
 import com.facebook.presto.spi.type.VarcharType;
-import com.google.common.base.Joiner;
-import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import io.airlift.slice.Slice;
-import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.hive.ql.io.orc.OrcFile;
-import org.apache.hadoop.hive.ql.io.orc.OrcOutputFormat;
-import org.apache.hadoop.hive.ql.io.orc.OrcSerde;
-import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
-import org.apache.hadoop.hive.serde2.objectinspector.SettableStructObjectInspector;
-import org.apache.hadoop.hive.serde2.objectinspector.StructField;
-import org.apache.hadoop.mapred.JobConf;
 
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Properties;
 
+import static com.facebook.presto.orc.metadata.CompressionKind.SNAPPY;
 import static com.facebook.presto.raptor.RaptorErrorCode.RAPTOR_ERROR;
-import static com.facebook.presto.spi.StandardErrorCode.INTERNAL_ERROR;
 import static com.facebook.presto.spi.StandardErrorCode.NOT_SUPPORTED;
 import static com.google.common.base.Functions.toStringFunction;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Iterables.transform;
-import static java.util.stream.Collectors.toList;
-import static org.apache.hadoop.hive.metastore.api.hive_metastoreConstants.META_TABLE_COLUMNS;
-import static org.apache.hadoop.hive.metastore.api.hive_metastoreConstants.META_TABLE_COLUMN_TYPES;
-import static org.apache.hadoop.hive.ql.exec.FileSinkOperator.RecordWriter;
-import static org.apache.hadoop.hive.ql.io.orc.CompressionKind.SNAPPY;
-import static org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory.getStandardStructObjectInspector;
-import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory.javaBooleanObjectInspector;
-import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory.javaByteArrayObjectInspector;
-import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory.javaDoubleObjectInspector;
-import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory.javaLongObjectInspector;
-import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory.javaStringObjectInspector;
 
 public class OrcFileWriter
         implements Closeable
 {
-    private static final JobConf JOB_CONF = createJobConf();
-    private static final Constructor<? extends RecordWriter> WRITER_CONSTRUCTOR = getOrcWriterConstructor();
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
 
     private final List<Type> columnTypes;
-
-    private final OrcSerde serializer;
-    private final RecordWriter recordWriter;
-    private final SettableStructObjectInspector tableInspector;
-    private final List<StructField> structFields;
-    private final Object row;
+    private final OrcWriter orcWriter;
 
     private long rowCount;
     private long uncompressedSize;
@@ -85,29 +57,19 @@ public class OrcFileWriter
         this.columnTypes = ImmutableList.copyOf(checkNotNull(columnTypes, "columnTypes is null"));
         checkArgument(columnIds.size() == columnTypes.size(), "ids and types mismatch");
         checkArgument(isUnique(columnIds), "ids must be unique");
+        // fail early for types that cannot be stored
+        for (Type type : columnTypes) {
+            toStorageType(type);
+        }
 
-        List<StorageType> storageTypes = ImmutableList.copyOf(toStorageTypes(columnTypes));
-        Iterable<String> hiveTypeNames = storageTypes.stream().map(StorageType::getHiveTypeName).collect(toList());
         List<String> columnNames = ImmutableList.copyOf(transform(columnIds, toStringFunction()));
-
-        Properties properties = new Properties();
-        properties.setProperty(META_TABLE_COLUMNS, Joiner.on(',').join(columnNames));
-        properties.setProperty(META_TABLE_COLUMN_TYPES, Joiner.on(':').join(hiveTypeNames));
-
-        serializer = createSerializer(JOB_CONF, properties);
-        recordWriter = createRecordWriter(new Path(target.toURI()), JOB_CONF);
-
-        tableInspector = getStandardStructObjectInspector(columnNames, getJavaObjectInspectors(storageTypes));
-        structFields = ImmutableList.copyOf(tableInspector.getAllStructFieldRefs());
-        row = tableInspector.create();
+        orcWriter = createOrcWriter(target, columnNames, this.columnTypes);
     }
 
     public void appendPages(List<Page> pages)
     {
         for (Page page : pages) {
-            for (int position = 0; position < page.getPositionCount(); position++) {
-                appendRow(page, position);
-            }
+            writePage(page);
         }
         updateDataSize(pages);
     }
@@ -115,9 +77,21 @@ public class OrcFileWriter
     public void appendPages(List<Page> inputPages, int[] pageIndexes, int[] positionIndexes)
     {
         checkArgument(pageIndexes.length == positionIndexes.length, "pageIndexes and positionIndexes do not match");
+        PageBuilder pageBuilder = new PageBuilder(columnTypes);
         for (int i = 0; i < pageIndexes.length; i++) {
             Page page = inputPages.get(pageIndexes[i]);
-            appendRow(page, positionIndexes[i]);
+            checkArgument(page.getChannelCount() == columnTypes.size(), "channelCount does not match");
+            for (int channel = 0; channel < columnTypes.size(); channel++) {
+                columnTypes.get(channel).appendTo(page.getBlock(channel), positionIndexes[i], pageBuilder.getBlockBuilder(channel));
+            }
+            pageBuilder.declarePosition();
+            if (pageBuilder.isFull()) {
+                writePage(pageBuilder.build());
+                pageBuilder.reset();
+            }
+        }
+        if (!pageBuilder.isEmpty()) {
+            writePage(pageBuilder.build());
         }
         updateDataSize(inputPages);
     }
@@ -129,27 +103,23 @@ public class OrcFileWriter
         }
     }
 
-    private void appendRow(Page page, int position)
+    private void writePage(Page page)
     {
         checkArgument(page.getChannelCount() == columnTypes.size(), "channelCount does not match");
-        for (int channel = 0; channel < page.getChannelCount(); channel++) {
-            Object value = getValue(position, page.getBlock(channel), columnTypes.get(channel));
-            tableInspector.setStructFieldData(row, structFields.get(channel), value);
-        }
         try {
-            recordWriter.write(serializer.serialize(row, tableInspector));
+            orcWriter.write(page);
         }
         catch (IOException e) {
-            throw new PrestoException(RAPTOR_ERROR, "Failed to write record", e);
+            throw new PrestoException(RAPTOR_ERROR, "Failed to write data", e);
         }
-        rowCount++;
+        rowCount += page.getPositionCount();
     }
 
     @Override
     public void close()
     {
         try {
-            recordWriter.close(false);
+            orcWriter.close();
         }
         catch (IOException e) {
             throw new PrestoException(RAPTOR_ERROR, "Failed to close writer", e);
@@ -166,69 +136,21 @@ public class OrcFileWriter
         return uncompressedSize;
     }
 
-    private static OrcSerde createSerializer(Configuration conf, Properties properties)
-    {
-        OrcSerde serde = new OrcSerde();
-        serde.initialize(conf, properties);
-        return serde;
-    }
-
-    private static RecordWriter createRecordWriter(Path target, JobConf conf)
-    {
-        try (ThreadContextClassLoader ignored = new ThreadContextClassLoader(FileSystem.class.getClassLoader());
-                FileSystem fileSystem = new SyncingFileSystem()) {
-            OrcFile.WriterOptions options = OrcFile.writerOptions(conf)
-                    .fileSystem(fileSystem)
-                    .compress(SNAPPY);
-            return WRITER_CONSTRUCTOR.newInstance(target, options);
-        }
-        catch (ReflectiveOperationException | IOException e) {
-            throw new PrestoException(RAPTOR_ERROR, "Failed to create writer", e);
-        }
-    }
-
-    private static Constructor<? extends RecordWriter> getOrcWriterConstructor()
+    private static OrcWriter createOrcWriter(File target, List<String> columnNames, List<Type> columnTypes)
     {
         try {
-            String writerClassName = OrcOutputFormat.class.getName() + "$OrcRecordWriter";
-            Constructor<? extends RecordWriter> constructor = OrcOutputFormat.class.getClassLoader()
-                    .loadClass(writerClassName).asSubclass(RecordWriter.class)
-                    .getDeclaredConstructor(Path.class, OrcFile.WriterOptions.class);
-            constructor.setAccessible(true);
-            return constructor;
-        }
-        catch (ReflectiveOperationException e) {
-            throw Throwables.propagate(e);
+            SyncingFileOutputStream output = new SyncingFileOutputStream(target);
+            try {
+                return new OrcWriter(new BufferedOutputStream(output, OUTPUT_BUFFER_SIZE), columnNames, columnTypes, SNAPPY, new OrcMetadataWriter());
+            }
+            catch (IOException | RuntimeException e) {
+                output.close();
+                throw e;
+            }
         }
-    }
-
-    private static JobConf createJobConf()
-    {
-        JobConf jobConf = new JobConf();
-        jobConf.setClassLoader(JobConf.class.getClassLoader());
-        return new JobConf();
-    }
-
-    private static List<ObjectInspector> getJavaObjectInspectors(List<StorageType> types)
-    {
-        return types.stream().map(OrcFileWriter::getJavaObjectInspector).collect(toList());
-    }
-
-    private static ObjectInspector getJavaObjectInspector(StorageType type)
-    {
-        switch (type) {
-            case BOOLEAN:
-                return javaBooleanObjectInspector;
-            case LONG:
-                return javaLongObjectInspector;
-            case DOUBLE:
-                return javaDoubleObjectInspector;
-            case STRING:
-                return javaStringObjectInspector;
-            case BYTES:
-                return javaByteArrayObjectInspector;
+        catch (IOException e) {
+            throw new PrestoException(RAPTOR_ERROR, "Failed to create writer", e);
         }
-        throw new PrestoException(INTERNAL_ERROR, "Unhandled storage type: " + type);
     }
 
     private static <T> boolean isUnique(Collection<T> items)
@@ -236,11 +158,6 @@ public class OrcFileWriter
         return new HashSet<>(items).size() == items.size();
     }
 
-    private static List<StorageType> toStorageTypes(List<Type> columnTypes)
-    {
-        return columnTypes.stream().map(OrcFileWriter::toStorageType).collect(toList());
-    }
-
     private static StorageType toStorageType(Type type)
     {
         Class<?> javaType = type.getJavaType();
@@ -264,26 +181,26 @@ public class OrcFileWriter
         throw new PrestoException(NOT_SUPPORTED, "No storage type for type: " + type);
     }
 
-    private static Object getValue(int position, Block block, Type type)
+    /**
+     * Shard files must be durable once the writer is closed, since the shard
+     * is committed to the metadata right after.
+     */
+    private static class SyncingFileOutputStream
+            extends FileOutputStream
     {
-        if (block.isNull(position)) {
-            return null;
-        }
-        if (type.getJavaType() == boolean.class) {
-            return type.getBoolean(block, position);
+        public SyncingFileOutputStream(File file)
+                throws IOException
+        {
+            super(file);
         }
-        if (type.getJavaType() == long.class) {
-            return type.getLong(block, position);
-        }
-        if (type.getJavaType() == double.class) {
-            return type.getDouble(block, position);
-        }
-        if (type.getJavaType() == Slice.class) {
-            if (type.equals(VarcharType.VARCHAR)) {
-                return new String(type.getSlice(block, position).getBytes());
-            }
-            return type.getSlice(block, position).getBytes();
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            flush();
+            getFD().sync();
+            super.close();
         }
-        throw new AssertionError("unimplemented type: " + type);
     }
 }
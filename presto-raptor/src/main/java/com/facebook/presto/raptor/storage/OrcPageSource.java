@@ -237,6 +237,7 @@ public class OrcPageSource
         @Override
         public void load(LazyFixedWidthBlock block)
         {
+            checkState(!closed, "Page source is closed");
             checkState(batchId == expectedBatchId);
             try {
                 BooleanVector vector = new BooleanVector(batchSize);
@@ -266,6 +267,7 @@ public class OrcPageSource
         @Override
         public void load(LazyFixedWidthBlock block)
         {
+            checkState(!closed, "Page source is closed");
             checkState(batchId == expectedBatchId);
             try {
                 // TODO to add an ORC int vector
@@ -302,6 +304,7 @@ public class OrcPageSource
         @Override
         public void load(LazyFixedWidthBlock block)
         {
+            checkState(!closed, "Page source is closed");
             checkState(batchId == expectedBatchId);
             try {
                 LongVector vector = new LongVector(batchSize);
@@ -331,6 +334,7 @@ public class OrcPageSource
         @Override
         public void load(LazyFixedWidthBlock block)
         {
+            checkState(!closed, "Page source is closed");
             checkState(batchId == expectedBatchId);
             try {
                 DoubleVector vector = new DoubleVector(batchSize);
@@ -360,6 +364,7 @@ public class OrcPageSource
         @Override
         public void load(LazySliceArrayBlock block)
         {
+            checkState(!closed, "Page source is closed");
             checkState(batchId == expectedBatchId);
             try {
                 SliceVector vector = new SliceVector(batchSize);
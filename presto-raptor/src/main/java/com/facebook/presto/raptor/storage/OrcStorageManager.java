@@ -14,7 +14,10 @@
 package com.facebook.presto.raptor.storage;
 
 import com.facebook.presto.orc.FileOrcDataSource;
+import com.facebook.presto.orc.MemoryMappedOrcDataSource;
 import com.facebook.presto.orc.OrcDataSource;
+import com.facebook.presto.orc.OrcFileId;
+import com.facebook.presto.orc.OrcMetadataCache;
 import com.facebook.presto.orc.OrcPredicate;
 import com.facebook.presto.orc.OrcReader;
 import com.facebook.presto.orc.OrcRecordReader;
@@ -47,6 +50,7 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
@@ -70,6 +74,8 @@ public class OrcStorageManager
     private final String nodeId;
     private final StorageService storageService;
     private final DataSize orcMaxMergeDistance;
+    private final boolean orcMemoryMappedReads;
+    private final OrcMetadataCache metadataCache;
     private final ShardRecoveryManager recoveryManager;
     private final Duration recoveryTimeout;
     private final long maxShardRows;
@@ -81,11 +87,14 @@ public class OrcStorageManager
             CurrentNodeId currentNodeId,
             StorageService storageService,
             StorageManagerConfig config,
-            ShardRecoveryManager recoveryManager)
+            ShardRecoveryManager recoveryManager,
+            OrcMetadataCache metadataCache)
     {
         this(currentNodeId.toString(),
                 storageService,
                 config.getOrcMaxMergeDistance(),
+                config.isOrcMemoryMappedReads(),
+                metadataCache,
                 recoveryManager,
                 config.getShardRecoveryTimeout(),
                 config.getMaxShardRows(),
@@ -97,6 +106,8 @@ public class OrcStorageManager
             String nodeId,
             StorageService storageService,
             DataSize orcMaxMergeDistance,
+            boolean orcMemoryMappedReads,
+            OrcMetadataCache metadataCache,
             ShardRecoveryManager recoveryManager,
             Duration shardRecoveryTimeout,
             long maxShardRows,
@@ -106,6 +117,8 @@ public class OrcStorageManager
         this.nodeId = checkNotNull(nodeId, "nodeId is null");
         this.storageService = checkNotNull(storageService, "storageService is null");
         this.orcMaxMergeDistance = checkNotNull(orcMaxMergeDistance, "orcMaxMergeDistance is null");
+        this.orcMemoryMappedReads = orcMemoryMappedReads;
+        this.metadataCache = checkNotNull(metadataCache, "metadataCache is null");
         this.recoveryManager = checkNotNull(recoveryManager, "recoveryManager is null");
         this.recoveryTimeout = checkNotNull(shardRecoveryTimeout, "shardRecoveryTimeout is null");
 
@@ -121,7 +134,7 @@ public class OrcStorageManager
         OrcDataSource dataSource = openShard(shardUuid);
 
         try {
-            OrcReader reader = new OrcReader(dataSource, new OrcMetadataReader());
+            OrcReader reader = new OrcReader(dataSource, new OrcMetadataReader(), getFileId(storageService.getStorageFile(shardUuid)), metadataCache);
 
             Map<Long, Integer> indexMap = columnIdIndex(reader.getColumnNames());
             ImmutableSet.Builder<Integer> includedColumns = ImmutableSet.builder();
@@ -221,6 +234,9 @@ public class OrcStorageManager
         }
 
         try {
+            if (orcMemoryMappedReads && MemoryMappedOrcDataSource.isMappable(file.length())) {
+                return new MemoryMappedOrcDataSource(file);
+            }
             return new FileOrcDataSource(file, orcMaxMergeDistance);
         }
         catch (IOException e) {
@@ -231,7 +247,7 @@ public class OrcStorageManager
     private List<ColumnStats> computeShardStats(File file, List<Long> columnIds, List<Type> types)
     {
         try (OrcDataSource dataSource = new FileOrcDataSource(file, orcMaxMergeDistance)) {
-            OrcReader reader = new OrcReader(dataSource, new OrcMetadataReader());
+            OrcReader reader = new OrcReader(dataSource, new OrcMetadataReader(), getFileId(file), metadataCache);
 
             ImmutableList.Builder<ColumnStats> list = ImmutableList.builder();
             for (int i = 0; i < columnIds.size(); i++) {
@@ -244,6 +260,12 @@ public class OrcStorageManager
         }
     }
 
+    private static OrcFileId getFileId(File file)
+    {
+        file = file.getAbsoluteFile();
+        return new OrcFileId(file.getPath(), file.length(), file.lastModified());
+    }
+
     private static OrcPredicate getPredicate(TupleDomain<RaptorColumnHandle> effectivePredicate, Map<Long, Integer> indexMap)
     {
         ImmutableList.Builder<ColumnReference<RaptorColumnHandle>> columns = ImmutableList.builder();
@@ -322,7 +344,7 @@ public class OrcStorageManager
                 long rowCount = writer.getRowCount();
                 long dataSize = stagingFile.length();  // compressed size
 
-                shards.add(new ShardInfo(shardUuid, nodes, columns, rowCount, dataSize));
+                shards.add(new ShardInfo(shardUuid, nodes, columns, rowCount, dataSize, Optional.empty()));
 
                 writer = null;
                 shardUuid = null;
@@ -0,0 +1,295 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.raptor.storage;
+
+import com.facebook.presto.raptor.metadata.ShardInfo;
+import com.facebook.presto.raptor.util.PageBuffer;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageBuilder;
+import com.facebook.presto.spi.PageSorter;
+import com.facebook.presto.spi.block.Block;
+import com.facebook.presto.spi.block.SortOrder;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static com.facebook.presto.spi.type.DateType.DATE;
+import static com.facebook.presto.spi.type.TimestampType.TIMESTAMP;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.floorDiv;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Writes pages to shards following the organization of the table.
+ * <p>
+ * If the table is distributed, rows are hashed on the bucket columns and each
+ * shard only contains rows of a single bucket. If the table has a temporal column,
+ * rows are bucketed by day and each shard only contains rows of a single day, so
+ * the shard index can prune shards on time ranges. If the table has sort columns,
+ * the rows of each shard are sorted.
+ */
+public class OrganizedPageWriter
+{
+    static final long NULL_DAY = Long.MIN_VALUE;
+    private static final int NO_BUCKET = -1;
+    private static final long MILLIS_PER_DAY = DAYS.toMillis(1);
+
+    private final StorageManager storageManager;
+    private final PageSorter pageSorter;
+    private final List<Long> columnIds;
+    private final List<Type> columnTypes;
+    private final List<Type> sortTypes;
+    private final List<Integer> sortFields;
+    private final List<SortOrder> sortOrders;
+    private final int temporalField;
+    private final List<Integer> bucketFields;
+    private final int bucketCount;
+
+    private final PageBuffer pageBuffer;
+    private final Map<ShardKey, List<Page>> shardPages = new HashMap<>();
+    private final Map<Integer, StoragePageSink> bucketPageSinks = new HashMap<>();
+
+    public OrganizedPageWriter(
+            StorageManager storageManager,
+            PageSorter pageSorter,
+            List<Long> columnIds,
+            List<Type> columnTypes,
+            List<Long> sortColumnIds,
+            List<SortOrder> sortOrders,
+            Optional<Long> temporalColumnId,
+            List<Long> bucketColumnIds,
+            OptionalInt bucketCount)
+    {
+        this.storageManager = checkNotNull(storageManager, "storageManager is null");
+        this.pageSorter = checkNotNull(pageSorter, "pageSorter is null");
+        this.columnIds = ImmutableList.copyOf(checkNotNull(columnIds, "columnIds is null"));
+        this.columnTypes = ImmutableList.copyOf(checkNotNull(columnTypes, "columnTypes is null"));
+        checkArgument(columnIds.size() == columnTypes.size(), "columnIds and columnTypes must have the same size");
+
+        this.sortFields = ImmutableList.copyOf(sortColumnIds.stream().map(columnIds::indexOf).collect(toList()));
+        checkArgument(!sortFields.contains(-1), "sort columns must be table columns");
+        this.sortTypes = ImmutableList.copyOf(sortFields.stream().map(columnTypes::get).collect(toList()));
+        this.sortOrders = ImmutableList.copyOf(checkNotNull(sortOrders, "sortOrders is null"));
+        checkArgument(sortFields.size() == sortOrders.size(), "sortColumnIds and sortOrders must have the same size");
+
+        checkNotNull(temporalColumnId, "temporalColumnId is null");
+        this.temporalField = columnIds.indexOf(temporalColumnId.orElse(-1L));
+        if (temporalColumnId.isPresent()) {
+            checkArgument(temporalField >= 0, "temporal column must be a table column");
+            Type temporalType = columnTypes.get(temporalField);
+            checkArgument(temporalType.equals(DATE) || temporalType.equals(TIMESTAMP), "temporal column must be DATE or TIMESTAMP, not %s", temporalType);
+        }
+
+        this.bucketFields = ImmutableList.copyOf(bucketColumnIds.stream().map(columnIds::indexOf).collect(toList()));
+        checkArgument(!bucketFields.contains(-1), "bucket columns must be table columns");
+        checkNotNull(bucketCount, "bucketCount is null");
+        checkArgument(bucketFields.isEmpty() != bucketCount.isPresent(), "bucket columns and bucket count must be specified together");
+        this.bucketCount = bucketCount.orElse(0);
+        checkArgument(bucketFields.isEmpty() || (this.bucketCount > 0), "bucketCount must be greater than zero");
+
+        this.pageBuffer = storageManager.createPageBuffer();
+    }
+
+    public void appendPage(Page page)
+    {
+        if (page.getPositionCount() == 0) {
+            return;
+        }
+
+        if (!pageBuffer.canAddRows(page.getPositionCount())) {
+            flush();
+        }
+
+        // the page buffer only tracks the limits, the pages are grouped by shard
+        pageBuffer.add(page);
+        for (Map.Entry<ShardKey, Page> entry : partitionPage(page).entrySet()) {
+            shardPages.computeIfAbsent(entry.getKey(), key -> new ArrayList<>()).add(entry.getValue());
+        }
+    }
+
+    public List<ShardInfo> commit()
+    {
+        flush();
+
+        ImmutableList.Builder<ShardInfo> shards = ImmutableList.builder();
+        for (Map.Entry<Integer, StoragePageSink> entry : bucketPageSinks.entrySet()) {
+            int bucket = entry.getKey();
+            for (ShardInfo shard : entry.getValue().commit()) {
+                shards.add((bucket == NO_BUCKET) ? shard : withBucketNumber(shard, bucket));
+            }
+        }
+        return shards.build();
+    }
+
+    private void flush()
+    {
+        // each group of pages is written to its own shard
+        for (Map.Entry<ShardKey, List<Page>> entry : shardPages.entrySet()) {
+            StoragePageSink storagePageSink = getStoragePageSink(entry.getKey().getBucket());
+            writePages(storagePageSink, entry.getValue());
+            storagePageSink.flush();
+        }
+        shardPages.clear();
+        pageBuffer.reset();
+    }
+
+    private StoragePageSink getStoragePageSink(int bucket)
+    {
+        return bucketPageSinks.computeIfAbsent(bucket, key -> storageManager.createStoragePageSink(columnIds, columnTypes));
+    }
+
+    private void writePages(StoragePageSink storagePageSink, List<Page> pages)
+    {
+        if (sortFields.isEmpty()) {
+            storagePageSink.appendPages(pages);
+            return;
+        }
+
+        long rowCount = pages.stream().mapToLong(Page::getPositionCount).sum();
+        checkState(rowCount <= Integer.MAX_VALUE);
+
+        long[] orderedAddresses = pageSorter.sort(columnTypes, pages, sortTypes, sortFields, sortOrders, Ints.checkedCast(rowCount));
+        int[] orderedPageIndex = new int[orderedAddresses.length];
+        int[] orderedPositionIndex = new int[orderedAddresses.length];
+        for (int i = 0; i < orderedAddresses.length; i++) {
+            orderedPageIndex[i] = pageSorter.decodePageIndex(orderedAddresses[i]);
+            orderedPositionIndex[i] = pageSorter.decodePositionIndex(orderedAddresses[i]);
+        }
+
+        storagePageSink.appendPages(pages, orderedPageIndex, orderedPositionIndex);
+    }
+
+    private Map<ShardKey, Page> partitionPage(Page page)
+    {
+        if ((temporalField < 0) && bucketFields.isEmpty()) {
+            return ImmutableMap.of(new ShardKey(NO_BUCKET, NULL_DAY), page);
+        }
+
+        ShardKey[] keys = new ShardKey[page.getPositionCount()];
+        boolean singleKey = true;
+        for (int position = 0; position < keys.length; position++) {
+            int bucket = bucketFields.isEmpty() ? NO_BUCKET : bucket(page, position);
+            long day = (temporalField < 0) ? NULL_DAY : day(columnTypes.get(temporalField), page.getBlock(temporalField), position);
+            keys[position] = new ShardKey(bucket, day);
+            singleKey &= keys[position].equals(keys[0]);
+        }
+        if (singleKey) {
+            return ImmutableMap.of(keys[0], page);
+        }
+
+        Map<ShardKey, PageBuilder> pageBuilders = new HashMap<>();
+        for (int position = 0; position < keys.length; position++) {
+            PageBuilder pageBuilder = pageBuilders.computeIfAbsent(keys[position], key -> new PageBuilder(columnTypes));
+            pageBuilder.declarePosition();
+            for (int channel = 0; channel < columnTypes.size(); channel++) {
+                columnTypes.get(channel).appendTo(page.getBlock(channel), position, pageBuilder.getBlockBuilder(channel));
+            }
+        }
+
+        ImmutableMap.Builder<ShardKey, Page> pages = ImmutableMap.builder();
+        for (Map.Entry<ShardKey, PageBuilder> entry : pageBuilders.entrySet()) {
+            pages.put(entry.getKey(), entry.getValue().build());
+        }
+        return pages.build();
+    }
+
+    private int bucket(Page page, int position)
+    {
+        int hash = 0;
+        for (int field : bucketFields) {
+            Block block = page.getBlock(field);
+            int valueHash = block.isNull(position) ? 0 : columnTypes.get(field).hash(block, position);
+            hash = (31 * hash) + valueHash;
+        }
+        return (hash & Integer.MAX_VALUE) % bucketCount;
+    }
+
+    private static long day(Type type, Block block, int position)
+    {
+        if (block.isNull(position)) {
+            return NULL_DAY;
+        }
+        return getDay(type, type.getLong(block, position));
+    }
+
+    /**
+     * Returns the day of a DATE or TIMESTAMP value.
+     */
+    static long getDay(Type type, long value)
+    {
+        if (type.equals(DATE)) {
+            return value;
+        }
+        return floorDiv(value, MILLIS_PER_DAY);
+    }
+
+    private static ShardInfo withBucketNumber(ShardInfo shard, int bucket)
+    {
+        return new ShardInfo(
+                shard.getShardUuid(),
+                shard.getNodeIdentifiers(),
+                shard.getColumnStats(),
+                shard.getRowCount(),
+                shard.getDataSize(),
+                Optional.of(bucket));
+    }
+
+    private static final class ShardKey
+    {
+        private final int bucket;
+        private final long day;
+
+        private ShardKey(int bucket, long day)
+        {
+            this.bucket = bucket;
+            this.day = day;
+        }
+
+        public int getBucket()
+        {
+            return bucket;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if ((obj == null) || (getClass() != obj.getClass())) {
+                return false;
+            }
+            ShardKey other = (ShardKey) obj;
+            return (this.bucket == other.bucket) && (this.day == other.day);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(bucket, day);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.raptor.storage;
+
+import com.facebook.presto.raptor.metadata.ForMetadata;
+import com.facebook.presto.raptor.metadata.ShardManagerDao;
+import com.facebook.presto.raptor.util.CurrentNodeId;
+import com.google.common.annotations.VisibleForTesting;
+import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+import org.skife.jdbi.v2.IDBI;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import java.io.File;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Deletes the files of shards that were removed from the shard metadata, such as
+ * the shards replaced by compaction, and the local files of shards that were moved
+ * to another node. The removals are recorded in the same transaction that makes
+ * them, so no file is leaked when a node restarts. The files are kept for the
+ * retention period, because queries that were scheduled before the removal may
+ * still read them.
+ */
+public class ShardCleaner
+{
+    private static final Logger log = Logger.get(ShardCleaner.class);
+
+    private final ShardManagerDao dao;
+    private final String nodeIdentifier;
+    private final StorageService storageService;
+    private final Duration cleanerInterval;
+    private final Duration retention;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicLong localShardsDeleted = new AtomicLong();
+    private final AtomicLong backupShardsDeleted = new AtomicLong();
+
+    private final ScheduledExecutorService executor = newScheduledThreadPool(1, daemonThreadsNamed("shard-cleaner"));
+
+    @Inject
+    public ShardCleaner(@ForMetadata IDBI dbi, CurrentNodeId currentNodeId, StorageService storageService, StorageManagerConfig config)
+    {
+        this(dbi,
+                currentNodeId.toString(),
+                storageService,
+                config.getShardCleanerInterval(),
+                config.getDeletedShardRetention());
+    }
+
+    public ShardCleaner(IDBI dbi, String nodeIdentifier, StorageService storageService, Duration cleanerInterval, Duration retention)
+    {
+        this.dao = checkNotNull(dbi, "dbi is null").onDemand(ShardManagerDao.class);
+        this.nodeIdentifier = checkNotNull(nodeIdentifier, "nodeIdentifier is null");
+        this.storageService = checkNotNull(storageService, "storageService is null");
+        this.cleanerInterval = checkNotNull(cleanerInterval, "cleanerInterval is null");
+        this.retention = checkNotNull(retention, "retention is null");
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        if (started.compareAndSet(false, true)) {
+            executor.scheduleWithFixedDelay(() -> {
+                try {
+                    Timestamp maxDeleteTime = new Timestamp(System.currentTimeMillis() - retention.toMillis());
+                    cleanLocalShards(maxDeleteTime);
+                    cleanBackupShards(maxDeleteTime);
+                }
+                catch (Throwable t) {
+                    log.error(t, "Error cleaning deleted shards");
+                }
+            }, cleanerInterval.toMillis(), cleanerInterval.toMillis(), MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Deletes the local files of the shards that were removed from or moved away from
+     * this node before the given time.
+     */
+    @VisibleForTesting
+    void cleanLocalShards(Timestamp maxDeleteTime)
+    {
+        for (UUID shardUuid : dao.getDeletedShardNodes(nodeIdentifier, maxDeleteTime)) {
+            if (deleteFile(storageService.getStorageFile(shardUuid))) {
+                dao.deleteDeletedShardNode(shardUuid, nodeIdentifier);
+                localShardsDeleted.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Deletes the backup files of the shards that were removed before the given time.
+     * Any node may do this, as the backup store is shared by all nodes.
+     */
+    @VisibleForTesting
+    void cleanBackupShards(Timestamp maxDeleteTime)
+    {
+        for (UUID shardUuid : dao.getDeletedShards(maxDeleteTime)) {
+            // backups are either configured on all nodes or on none
+            if (storageService.isBackupAvailable() && !deleteFile(storageService.getBackupFile(shardUuid))) {
+                continue;
+            }
+            dao.deleteDeletedShard(shardUuid);
+            backupShardsDeleted.incrementAndGet();
+        }
+    }
+
+    private static boolean deleteFile(File file)
+    {
+        if (file.exists() && !file.delete()) {
+            log.warn("Failed to delete shard file: %s", file);
+            return false;
+        }
+        return true;
+    }
+
+    @Managed
+    public long getLocalShardsDeleted()
+    {
+        return localShardsDeleted.get();
+    }
+
+    @Managed
+    public long getBackupShardsDeleted()
+    {
+        return backupShardsDeleted.get();
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.raptor.storage;
+
+import com.facebook.presto.raptor.metadata.ColumnInfo;
+import com.facebook.presto.raptor.metadata.ColumnStats;
+import com.facebook.presto.raptor.metadata.Distribution;
+import com.facebook.presto.raptor.metadata.ForMetadata;
+import com.facebook.presto.raptor.metadata.MetadataDao;
+import com.facebook.presto.raptor.metadata.ShardInfo;
+import com.facebook.presto.raptor.metadata.ShardManager;
+import com.facebook.presto.raptor.metadata.ShardMetadata;
+import com.facebook.presto.raptor.metadata.TableColumn;
+import com.facebook.presto.raptor.util.CurrentNodeId;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.log.Logger;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.skife.jdbi.v2.IDBI;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.facebook.presto.raptor.RaptorErrorCode.RAPTOR_ERROR;
+import static com.facebook.presto.raptor.storage.OrganizedPageWriter.NULL_DAY;
+import static com.facebook.presto.raptor.storage.OrganizedPageWriter.getDay;
+import static com.facebook.presto.spi.block.SortOrder.ASC_NULLS_FIRST;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Sets.newConcurrentHashSet;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.lang.String.format;
+import static java.util.Collections.nCopies;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Periodically merges the small shards stored on this node into larger shards.
+ * Small shards are created by frequent small inserts and make queries slower,
+ * because every shard is a split with its own per file overhead.
+ */
+public class ShardCompactionManager
+{
+    private static final Logger log = Logger.get(ShardCompactionManager.class);
+
+    private final MetadataDao metadataDao;
+    private final String nodeIdentifier;
+    private final ShardManager shardManager;
+    private final StorageService storageService;
+    private final ShardCompactor compactor;
+    private final boolean compactionEnabled;
+    private final Duration compactionInterval;
+    private final long maxShardRows;
+    private final long maxShardSize;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Set<UUID> shardsInProgress = newConcurrentHashSet();
+    private final Set<UUID> uncompactableShards = newConcurrentHashSet();
+
+    private final AtomicLong compactionsCompleted = new AtomicLong();
+    private final AtomicLong compactionsFailed = new AtomicLong();
+    private final AtomicLong shardsCompacted = new AtomicLong();
+    private final AtomicLong shardsCreated = new AtomicLong();
+    private final AtomicLong bytesCompacted = new AtomicLong();
+
+    private final ScheduledExecutorService scheduledExecutor = newScheduledThreadPool(1, daemonThreadsNamed("shard-compaction-discovery"));
+    private final ExecutorService compactionExecutor;
+
+    @Inject
+    public ShardCompactionManager(
+            @ForMetadata IDBI dbi,
+            CurrentNodeId currentNodeId,
+            ShardManager shardManager,
+            StorageService storageService,
+            ShardCompactor compactor,
+            StorageManagerConfig config)
+    {
+        this(dbi,
+                currentNodeId.toString(),
+                shardManager,
+                storageService,
+                compactor,
+                config.isCompactionEnabled(),
+                config.getCompactionInterval(),
+                config.getCompactionThreads(),
+                config.getMaxShardRows(),
+                config.getMaxShardSize());
+    }
+
+    public ShardCompactionManager(
+            IDBI dbi,
+            String nodeIdentifier,
+            ShardManager shardManager,
+            StorageService storageService,
+            ShardCompactor compactor,
+            boolean compactionEnabled,
+            Duration compactionInterval,
+            int compactionThreads,
+            long maxShardRows,
+            DataSize maxShardSize)
+    {
+        this.metadataDao = checkNotNull(dbi, "dbi is null").onDemand(MetadataDao.class);
+        this.nodeIdentifier = checkNotNull(nodeIdentifier, "nodeIdentifier is null");
+        this.shardManager = checkNotNull(shardManager, "shardManager is null");
+        this.storageService = checkNotNull(storageService, "storageService is null");
+        this.compactor = checkNotNull(compactor, "compactor is null");
+        this.compactionEnabled = compactionEnabled;
+        this.compactionInterval = checkNotNull(compactionInterval, "compactionInterval is null");
+
+        checkArgument(compactionThreads > 0, "compactionThreads must be > 0");
+        this.compactionExecutor = newFixedThreadPool(compactionThreads, daemonThreadsNamed("shard-compaction-%s"));
+
+        checkArgument(maxShardRows > 0, "maxShardRows must be > 0");
+        this.maxShardRows = maxShardRows;
+        this.maxShardSize = checkNotNull(maxShardSize, "maxShardSize is null").toBytes();
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        if (!compactionEnabled) {
+            return;
+        }
+        if (started.compareAndSet(false, true)) {
+            scheduledExecutor.scheduleWithFixedDelay(() -> {
+                try {
+                    enqueueCompactions();
+                }
+                catch (Throwable t) {
+                    log.error(t, "Error creating shard compaction tasks");
+                }
+            }, compactionInterval.toMillis(), compactionInterval.toMillis(), MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        compactionExecutor.shutdownNow();
+        scheduledExecutor.shutdownNow();
+    }
+
+    private void enqueueCompactions()
+    {
+        Set<ShardMetadata> shards = shardManager.getNodeShardMetadata(nodeIdentifier);
+
+        // forget about shards that no longer exist
+        Set<UUID> shardUuids = shards.stream().map(ShardMetadata::getShardUuid).collect(toSet());
+        uncompactableShards.retainAll(shardUuids);
+
+        Map<Long, List<ShardMetadata>> candidates = shards.stream()
+                .filter(shard -> !shardsInProgress.contains(shard.getShardUuid()))
+                .filter(shard -> !uncompactableShards.contains(shard.getShardUuid()))
+                .collect(groupingBy(ShardMetadata::getTableId));
+
+        for (Map.Entry<Long, List<ShardMetadata>> entry : candidates.entrySet()) {
+            long tableId = entry.getKey();
+            for (Set<ShardMetadata> group : groupTableShards(tableId, entry.getValue())) {
+                Set<UUID> groupUuids = group.stream().map(ShardMetadata::getShardUuid).collect(toSet());
+                shardsInProgress.addAll(groupUuids);
+                compactionExecutor.execute(() -> {
+                    try {
+                        compactShards(tableId, group);
+                        compactionsCompleted.incrementAndGet();
+                    }
+                    catch (Throwable t) {
+                        compactionsFailed.incrementAndGet();
+                        log.warn(t, "Error compacting shards %s of table %s", groupUuids, tableId);
+                    }
+                    finally {
+                        shardsInProgress.removeAll(groupUuids);
+                    }
+                });
+            }
+        }
+    }
+
+    private List<Set<ShardMetadata>> groupTableShards(long tableId, List<ShardMetadata> shards)
+    {
+        // shards of a distributed table contain a single bucket, so only merge shards of the same bucket
+        Map<OptionalInt, List<ShardMetadata>> buckets = shards.stream().collect(groupingBy(ShardMetadata::getBucketNumber));
+
+        ImmutableList.Builder<Set<ShardMetadata>> groups = ImmutableList.builder();
+        for (List<ShardMetadata> bucketShards : buckets.values()) {
+            groups.addAll(groupBucketShards(tableId, bucketShards));
+        }
+        return groups.build();
+    }
+
+    private List<Set<ShardMetadata>> groupBucketShards(long tableId, List<ShardMetadata> shards)
+    {
+        Long temporalColumnId = metadataDao.getTemporalColumnId(tableId);
+        if (temporalColumnId == null) {
+            return groupShards(shards, maxShardRows, maxShardSize);
+        }
+        TableColumn temporalColumn = metadataDao.getTableColumn(tableId, temporalColumnId);
+        if (temporalColumn == null) {
+            return ImmutableList.of();
+        }
+
+        // shards of a temporal table contain a single day, so only merge shards of the same day
+        ColumnInfo column = new ColumnInfo(temporalColumn.getColumnId(), temporalColumn.getDataType());
+        Map<UUID, ColumnStats> ranges = shardManager.getShardColumnRanges(tableId, column);
+        Map<Long, List<ShardMetadata>> days = new HashMap<>();
+        for (ShardMetadata shard : shards) {
+            OptionalLong day = getShardDay(column.getType(), ranges.get(shard.getShardUuid()));
+            if (day.isPresent()) {
+                days.computeIfAbsent(day.getAsLong(), key -> new ArrayList<>()).add(shard);
+            }
+        }
+
+        ImmutableList.Builder<Set<ShardMetadata>> groups = ImmutableList.builder();
+        for (List<ShardMetadata> dayShards : days.values()) {
+            groups.addAll(groupShards(dayShards, maxShardRows, maxShardSize));
+        }
+        return groups.build();
+    }
+
+    /**
+     * Returns the day of the temporal column values in a shard, or empty if the shard spans multiple days.
+     */
+    @VisibleForTesting
+    static OptionalLong getShardDay(Type type, @Nullable ColumnStats range)
+    {
+        if (range == null) {
+            // shard only contains nulls for the temporal column
+            return OptionalLong.of(NULL_DAY);
+        }
+        long minDay = getDay(type, ((Number) range.getMin()).longValue());
+        long maxDay = getDay(type, ((Number) range.getMax()).longValue());
+        if (minDay != maxDay) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(minDay);
+    }
+
+    /**
+     * Groups the shards that are not full so that each group fits into a single shard.
+     * Only groups of at least two shards are returned.
+     */
+    @VisibleForTesting
+    static List<Set<ShardMetadata>> groupShards(Collection<ShardMetadata> shards, long maxShardRows, long maxShardSize)
+    {
+        List<ShardMetadata> candidates = shards.stream()
+                .filter(shard -> (shard.getRowCount() < maxShardRows) && (shard.getDataSize() < maxShardSize))
+                .sorted(Comparator.comparingLong(ShardMetadata::getDataSize))
+                .collect(toList());
+
+        ImmutableList.Builder<Set<ShardMetadata>> groups = ImmutableList.builder();
+        List<ShardMetadata> group = new ArrayList<>();
+        long rowCount = 0;
+        long dataSize = 0;
+        for (ShardMetadata shard : candidates) {
+            if ((rowCount + shard.getRowCount() > maxShardRows) || (dataSize + shard.getDataSize() > maxShardSize)) {
+                if (group.size() > 1) {
+                    groups.add(ImmutableSet.copyOf(group));
+                }
+                group.clear();
+                rowCount = 0;
+                dataSize = 0;
+            }
+            group.add(shard);
+            rowCount += shard.getRowCount();
+            dataSize += shard.getDataSize();
+        }
+        if (group.size() > 1) {
+            groups.add(ImmutableSet.copyOf(group));
+        }
+        return groups.build();
+    }
+
+    @VisibleForTesting
+    void compactShards(long tableId, Set<ShardMetadata> shards)
+    {
+        List<TableColumn> tableColumns = metadataDao.getTableColumns(tableId);
+        if (tableColumns.isEmpty()) {
+            // table was dropped
+            return;
+        }
+        List<ColumnInfo> columns = tableColumns.stream()
+                .map(column -> new ColumnInfo(column.getColumnId(), column.getDataType()))
+                .collect(toList());
+        List<Long> sortColumnIds = metadataDao.listSortColumns(tableId).stream()
+                .map(TableColumn::getColumnId)
+                .collect(toList());
+
+        Set<UUID> oldShardUuids = shards.stream().map(ShardMetadata::getShardUuid).collect(toSet());
+        Optional<Long> temporalColumnId = Optional.ofNullable(metadataDao.getTemporalColumnId(tableId));
+        List<Long> bucketColumnIds = metadataDao.listBucketColumns(tableId).stream()
+                .map(TableColumn::getColumnId)
+                .collect(toList());
+        Distribution distribution = metadataDao.getTableDistribution(tableId);
+        OptionalInt bucketCount = (distribution == null) ? OptionalInt.empty() : OptionalInt.of(distribution.getBucketCount());
+
+        List<ShardInfo> newShards = compactor.compact(
+                oldShardUuids,
+                columns,
+                sortColumnIds,
+                nCopies(sortColumnIds.size(), ASC_NULLS_FIRST),
+                temporalColumnId,
+                bucketColumnIds,
+                bucketCount);
+        Set<UUID> newShardUuids = newShards.stream().map(ShardInfo::getShardUuid).collect(toSet());
+
+        if (newShards.size() >= shards.size()) {
+            // the data size limits are for uncompressed data, so shards that
+            // are small on disk can still be too large to be merged together
+            uncompactableShards.addAll(oldShardUuids);
+            deleteShardFiles(newShardUuids);
+            return;
+        }
+
+        long oldRowCount = shards.stream().mapToLong(ShardMetadata::getRowCount).sum();
+        long newRowCount = newShards.stream().mapToLong(ShardInfo::getRowCount).sum();
+        if (oldRowCount != newRowCount) {
+            deleteShardFiles(newShardUuids);
+            throw new PrestoException(RAPTOR_ERROR, format("Compaction of table %s produced %s rows instead of %s", tableId, newRowCount, oldRowCount));
+        }
+
+        // the files of the old shards are deleted later by the shard cleaner
+        try {
+            shardManager.replaceShards(tableId, columns, oldShardUuids, newShards);
+        }
+        catch (RuntimeException e) {
+            deleteShardFiles(newShardUuids);
+            throw e;
+        }
+
+        shardsCompacted.addAndGet(shards.size());
+        shardsCreated.addAndGet(newShards.size());
+        bytesCompacted.addAndGet(shards.stream().mapToLong(ShardMetadata::getDataSize).sum());
+    }
+
+    private void deleteShardFiles(Set<UUID> shardUuids)
+    {
+        for (UUID shardUuid : shardUuids) {
+            deleteFile(storageService.getStorageFile(shardUuid));
+            if (storageService.isBackupAvailable()) {
+                deleteFile(storageService.getBackupFile(shardUuid));
+            }
+        }
+    }
+
+    private static void deleteFile(File file)
+    {
+        if (file.exists() && !file.delete()) {
+            log.warn("Failed to delete shard file: %s", file);
+        }
+    }
+
+    @Managed
+    public long getCompactionsCompleted()
+    {
+        return compactionsCompleted.get();
+    }
+
+    @Managed
+    public long getCompactionsFailed()
+    {
+        return compactionsFailed.get();
+    }
+
+    @Managed
+    public long getShardsCompacted()
+    {
+        return shardsCompacted.get();
+    }
+
+    @Managed
+    public long getShardsCreated()
+    {
+        return shardsCreated.get();
+    }
+
+    @Managed
+    public long getBytesCompacted()
+    {
+        return bytesCompacted.get();
+    }
+
+    @Managed
+    public int getShardsInProgress()
+    {
+        return shardsInProgress.size();
+    }
+}
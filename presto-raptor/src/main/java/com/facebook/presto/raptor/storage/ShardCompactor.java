@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.raptor.storage;
+
+import com.facebook.presto.raptor.metadata.ColumnInfo;
+import com.facebook.presto.raptor.metadata.ShardInfo;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.PageSorter;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.TupleDomain;
+import com.facebook.presto.spi.block.SortOrder;
+import com.facebook.presto.spi.type.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.RateLimiter;
+import io.airlift.units.DataSize;
+
+import javax.inject.Inject;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.facebook.presto.raptor.RaptorErrorCode.RAPTOR_ERROR;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.Math.max;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Rewrites a set of shards of a table into new shards. The new shards are written
+ * to local storage (and backup), but are not committed to the shard metadata.
+ */
+public class ShardCompactor
+{
+    private final StorageManager storageManager;
+    private final PageSorter pageSorter;
+    private final RateLimiter rateLimiter;
+
+    @Inject
+    public ShardCompactor(StorageManager storageManager, PageSorter pageSorter, StorageManagerConfig config)
+    {
+        this(storageManager, pageSorter, config.getMaxCompactionRate());
+    }
+
+    public ShardCompactor(StorageManager storageManager, PageSorter pageSorter, DataSize maxCompactionRate)
+    {
+        this.storageManager = checkNotNull(storageManager, "storageManager is null");
+        this.pageSorter = checkNotNull(pageSorter, "pageSorter is null");
+        checkNotNull(maxCompactionRate, "maxCompactionRate is null");
+        this.rateLimiter = RateLimiter.create(maxCompactionRate.toBytes());
+    }
+
+    /**
+     * Merge the shards into as few shards as the shard size limits and the
+     * organization of the table (sort columns, temporal column and buckets) allow.
+     */
+    public List<ShardInfo> compact(
+            Set<UUID> shardUuids,
+            List<ColumnInfo> columns,
+            List<Long> sortColumnIds,
+            List<SortOrder> sortOrders,
+            Optional<Long> temporalColumnId,
+            List<Long> bucketColumnIds,
+            OptionalInt bucketCount)
+    {
+        List<Long> columnIds = ImmutableList.copyOf(columns.stream().map(ColumnInfo::getColumnId).collect(toList()));
+        List<Type> columnTypes = ImmutableList.copyOf(columns.stream().map(ColumnInfo::getType).collect(toList()));
+
+        OrganizedPageWriter writer = new OrganizedPageWriter(storageManager, pageSorter, columnIds, columnTypes, sortColumnIds, sortOrders, temporalColumnId, bucketColumnIds, bucketCount);
+
+        for (UUID shardUuid : shardUuids) {
+            try (ConnectorPageSource pageSource = storageManager.getPageSource(shardUuid, columnIds, columnTypes, TupleDomain.all())) {
+                while (!pageSource.isFinished()) {
+                    Page page = pageSource.getNextPage();
+                    if ((page == null) || (page.getPositionCount() == 0)) {
+                        continue;
+                    }
+
+                    // lazy blocks can only be loaded before the next page is read
+                    page.assureLoaded();
+                    rateLimiter.acquire(max(1, Ints.saturatedCast(page.getSizeInBytes())));
+
+                    writer.appendPage(page);
+                }
+            }
+            catch (IOException e) {
+                throw new PrestoException(RAPTOR_ERROR, "Failed to read shard for compaction: " + shardUuid, e);
+            }
+        }
+
+        return writer.commit();
+    }
+}
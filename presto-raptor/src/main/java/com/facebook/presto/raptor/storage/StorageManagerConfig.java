@@ -19,6 +19,7 @@ import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import io.airlift.units.MaxDataSize;
 import io.airlift.units.MinDataSize;
+import io.airlift.units.MinDuration;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.Max;
@@ -37,12 +38,22 @@ public class StorageManagerConfig
     private Duration shardRecoveryTimeout = new Duration(30, TimeUnit.SECONDS);
     private Duration missingShardDiscoveryInterval = new Duration(5, TimeUnit.MINUTES);
     private DataSize orcMaxMergeDistance = new DataSize(1, MEGABYTE);
+    private DataSize orcMetadataCacheSize = new DataSize(32, MEGABYTE);
+    private boolean orcMemoryMappedReads;
     private int recoveryThreads = 10;
 
     private long maxShardRows = 1_000_000;
     private DataSize maxShardSize = new DataSize(256, MEGABYTE);
     private DataSize maxBufferSize = new DataSize(256, MEGABYTE);
 
+    private boolean compactionEnabled = true;
+    private Duration compactionInterval = new Duration(1, TimeUnit.HOURS);
+    private int compactionThreads = 2;
+    private DataSize maxCompactionRate = new DataSize(64, MEGABYTE);
+
+    private Duration shardCleanerInterval = new Duration(5, TimeUnit.MINUTES);
+    private Duration deletedShardRetention = new Duration(1, TimeUnit.HOURS);
+
     @NotNull
     public File getDataDirectory()
     {
@@ -84,6 +95,33 @@ public class StorageManagerConfig
         return this;
     }
 
+    @NotNull
+    public DataSize getOrcMetadataCacheSize()
+    {
+        return orcMetadataCacheSize;
+    }
+
+    @Config("storage.orc.metadata-cache-size")
+    @ConfigDescription("Maximum size of the parsed shard metadata cached across queries (0 to disable)")
+    public StorageManagerConfig setOrcMetadataCacheSize(DataSize orcMetadataCacheSize)
+    {
+        this.orcMetadataCacheSize = orcMetadataCacheSize;
+        return this;
+    }
+
+    public boolean isOrcMemoryMappedReads()
+    {
+        return orcMemoryMappedReads;
+    }
+
+    @Config("storage.orc.memory-mapped-reads")
+    @ConfigDescription("Read shard files through a memory mapping instead of copying them onto the heap")
+    public StorageManagerConfig setOrcMemoryMappedReads(boolean orcMemoryMappedReads)
+    {
+        this.orcMemoryMappedReads = orcMemoryMappedReads;
+        return this;
+    }
+
     public Duration getShardRecoveryTimeout()
     {
         return shardRecoveryTimeout;
@@ -167,4 +205,90 @@ public class StorageManagerConfig
         this.maxBufferSize = maxBufferSize;
         return this;
     }
+
+    public boolean isCompactionEnabled()
+    {
+        return compactionEnabled;
+    }
+
+    @Config("storage.compaction-enabled")
+    @ConfigDescription("Merge small shards on each node into larger shards in the background")
+    public StorageManagerConfig setCompactionEnabled(boolean compactionEnabled)
+    {
+        this.compactionEnabled = compactionEnabled;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1s")
+    public Duration getCompactionInterval()
+    {
+        return compactionInterval;
+    }
+
+    @Config("storage.compaction-interval")
+    @ConfigDescription("How often to check the local shards for compaction")
+    public StorageManagerConfig setCompactionInterval(Duration compactionInterval)
+    {
+        this.compactionInterval = compactionInterval;
+        return this;
+    }
+
+    @Min(1)
+    public int getCompactionThreads()
+    {
+        return compactionThreads;
+    }
+
+    @Config("storage.max-compaction-threads")
+    @ConfigDescription("Maximum number of threads to use for compaction")
+    public StorageManagerConfig setCompactionThreads(int compactionThreads)
+    {
+        this.compactionThreads = compactionThreads;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1MB")
+    public DataSize getMaxCompactionRate()
+    {
+        return maxCompactionRate;
+    }
+
+    @Config("storage.max-compaction-rate")
+    @ConfigDescription("Maximum rate per second at which shard data is read for compaction")
+    public StorageManagerConfig setMaxCompactionRate(DataSize maxCompactionRate)
+    {
+        this.maxCompactionRate = maxCompactionRate;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1s")
+    public Duration getShardCleanerInterval()
+    {
+        return shardCleanerInterval;
+    }
+
+    @Config("storage.shard-cleaner-interval")
+    @ConfigDescription("How often to delete the files of deleted shards")
+    public StorageManagerConfig setShardCleanerInterval(Duration shardCleanerInterval)
+    {
+        this.shardCleanerInterval = shardCleanerInterval;
+        return this;
+    }
+
+    @NotNull
+    public Duration getDeletedShardRetention()
+    {
+        return deletedShardRetention;
+    }
+
+    @Config("storage.deleted-shard-retention")
+    @ConfigDescription("How long to keep the files of deleted shards for queries that are still reading them")
+    public StorageManagerConfig setDeletedShardRetention(Duration deletedShardRetention)
+    {
+        this.deletedShardRetention = deletedShardRetention;
+        return this;
+    }
 }
@@ -13,17 +13,31 @@
  */
 package com.facebook.presto.raptor.storage;
 
+import com.facebook.presto.orc.OrcMetadataCache;
 import com.facebook.presto.raptor.metadata.DatabaseShardManager;
 import com.facebook.presto.raptor.metadata.ShardManager;
 import com.google.inject.Binder;
 import com.google.inject.Module;
+import com.google.inject.Provides;
 import com.google.inject.Scopes;
 
+import javax.inject.Singleton;
+
+import static com.google.common.base.Preconditions.checkNotNull;
 import static io.airlift.configuration.ConfigurationModule.bindConfig;
+import static org.weakref.jmx.ObjectNames.generatedNameOf;
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
 
 public class StorageModule
         implements Module
 {
+    private final String connectorId;
+
+    public StorageModule(String connectorId)
+    {
+        this.connectorId = checkNotNull(connectorId, "connectorId is null");
+    }
+
     @Override
     public void configure(Binder binder)
     {
@@ -32,5 +46,19 @@ public class StorageModule
         binder.bind(StorageService.class).to(FileStorageService.class).in(Scopes.SINGLETON);
         binder.bind(ShardManager.class).to(DatabaseShardManager.class).in(Scopes.SINGLETON);
         binder.bind(ShardRecoveryManager.class).in(Scopes.SINGLETON);
+        binder.bind(ShardCompactor.class).in(Scopes.SINGLETON);
+        binder.bind(ShardCompactionManager.class).in(Scopes.SINGLETON);
+        binder.bind(ShardCleaner.class).in(Scopes.SINGLETON);
+
+        newExporter(binder).export(OrcMetadataCache.class).as(generatedNameOf(OrcMetadataCache.class, connectorId));
+        newExporter(binder).export(ShardCompactionManager.class).as(generatedNameOf(ShardCompactionManager.class, connectorId));
+        newExporter(binder).export(ShardCleaner.class).as(generatedNameOf(ShardCleaner.class, connectorId));
+    }
+
+    @Singleton
+    @Provides
+    public OrcMetadataCache createOrcMetadataCache(StorageManagerConfig config)
+    {
+        return new OrcMetadataCache(config.getOrcMetadataCacheSize());
     }
 }
@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.raptor.metadata;
+
+import com.facebook.presto.raptor.RaptorColumnHandle;
+import com.facebook.presto.raptor.util.CloseableIterator;
+import com.facebook.presto.spi.TupleDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static java.util.stream.Collectors.toSet;
+
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(3)
+@Warmup(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class BenchmarkShardManager
+{
+    private static final long TABLE_ID = 1;
+    private static final long EMPTY_TABLE_ID = 2;
+    private static final List<ColumnInfo> COLUMNS = ImmutableList.of(new ColumnInfo(1, BIGINT));
+
+    @Benchmark
+    public int listShards(BenchmarkData data)
+    {
+        int count = 0;
+        try (CloseableIterator<ShardNodes> iterator = data.shardManager.getShardNodes(TABLE_ID, TupleDomain.<RaptorColumnHandle>all())) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int commitAndReplaceShards(BenchmarkData data)
+    {
+        List<ShardInfo> shards = createShards(data.shardCount);
+        data.shardManager.commitShards(EMPTY_TABLE_ID, COLUMNS, shards, Optional.empty());
+
+        Set<UUID> shardUuids = shards.stream()
+                .map(ShardInfo::getShardUuid)
+                .collect(toSet());
+        data.shardManager.replaceShards(EMPTY_TABLE_ID, COLUMNS, shardUuids, ImmutableList.of());
+        return shardUuids.size();
+    }
+
+    private static List<ShardInfo> createShards(int shardCount)
+    {
+        ImmutableList.Builder<ShardInfo> shards = ImmutableList.builder();
+        for (int i = 0; i < shardCount; i++) {
+            List<ColumnStats> columnStats = ImmutableList.of(new ColumnStats(1, (long) i, (long) i + 100));
+            shards.add(new ShardInfo(UUID.randomUUID(), ImmutableSet.of("node" + (i % 10)), columnStats, 1000, 100_000, Optional.empty()));
+        }
+        return shards.build();
+    }
+
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        @Param({ "1000", "10000", "100000" })
+        private int shardCount;
+
+        @Param({ "true", "false" })
+        private boolean cacheShards;
+
+        private Handle dummyHandle;
+        private ShardManager shardManager;
+
+        @Setup
+        public void setup()
+        {
+            DBI dbi = new DBI("jdbc:h2:mem:benchmark" + System.nanoTime());
+            // keep the in-memory database alive
+            dummyHandle = dbi.open();
+
+            shardManager = new DatabaseShardManager(dbi, 1000, cacheShards ? shardCount : 0);
+            shardManager.createTable(TABLE_ID, COLUMNS);
+            shardManager.createTable(EMPTY_TABLE_ID, COLUMNS);
+            shardManager.commitShards(TABLE_ID, COLUMNS, createShards(shardCount), Optional.empty());
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            dummyHandle.close();
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkShardManager.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -21,6 +21,7 @@ import com.facebook.presto.spi.Range;
 import com.facebook.presto.spi.SortedRangeSet;
 import com.facebook.presto.spi.TupleDomain;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Files;
 import io.airlift.slice.Slice;
@@ -33,15 +34,19 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Set;
 import java.util.UUID;
 
+import static com.facebook.presto.raptor.RaptorErrorCode.RAPTOR_ERROR;
 import static com.facebook.presto.raptor.RaptorErrorCode.RAPTOR_EXTERNAL_BATCH_ALREADY_EXISTS;
 import static com.facebook.presto.raptor.storage.ShardStats.MAX_BINARY_INDEX_SIZE;
 import static com.facebook.presto.spi.Range.greaterThan;
@@ -65,6 +70,7 @@ import static org.testng.Assert.fail;
 @Test(singleThreaded = true)
 public class TestDatabaseShardManager
 {
+    private IDBI dbi;
     private Handle dummyHandle;
     private File dataDir;
     private ShardManager shardManager;
@@ -72,7 +78,7 @@ public class TestDatabaseShardManager
     @BeforeMethod
     public void setup()
     {
-        IDBI dbi = new DBI("jdbc:h2:mem:test" + System.nanoTime());
+        dbi = new DBI("jdbc:h2:mem:test" + System.nanoTime());
         dummyHandle = dbi.open();
         dataDir = Files.createTempDir();
         shardManager = new DatabaseShardManager(dbi);
@@ -118,12 +124,249 @@ public class TestDatabaseShardManager
         shardManager.commitShards(tableId, columns, shardNodes, Optional.empty());
 
         ShardNodes actual = getOnlyElement(getShardNodes(tableId, TupleDomain.all()));
-        assertEquals(actual, new ShardNodes(shard, ImmutableSet.of("node1")));
+        assertEquals(actual, new ShardNodes(shard, ImmutableSet.of("node1"), OptionalInt.empty()));
 
         shardManager.assignShard(shard, "node2");
 
         actual = getOnlyElement(getShardNodes(tableId, TupleDomain.all()));
-        assertEquals(actual, new ShardNodes(shard, ImmutableSet.of("node1", "node2")));
+        assertEquals(actual, new ShardNodes(shard, ImmutableSet.of("node1", "node2"), OptionalInt.empty()));
+    }
+
+    @Test
+    public void testMoveShard()
+    {
+        long tableId = 1;
+        UUID shard = UUID.randomUUID();
+        List<ColumnInfo> columns = ImmutableList.of(new ColumnInfo(1, BIGINT));
+
+        shardManager.createTable(tableId, columns);
+        shardManager.commitShards(tableId, columns, ImmutableList.of(shardInfo(shard, "node1")), Optional.empty());
+        shardManager.assignShard(shard, "node2");
+
+        shardManager.moveShard(shard, "node3");
+
+        ShardNodes actual = getOnlyElement(getShardNodes(tableId, TupleDomain.all()));
+        assertEquals(actual, new ShardNodes(shard, ImmutableSet.of("node3"), OptionalInt.empty()));
+
+        // the copies on the other nodes are deleted by the shard cleaner, but not the backup
+        ShardManagerDao dao = dbi.onDemand(ShardManagerDao.class);
+        Timestamp maxDeleteTime = new Timestamp(Long.MAX_VALUE);
+        assertEquals(dao.getDeletedShardNodes("node1", maxDeleteTime), ImmutableSet.of(shard));
+        assertEquals(dao.getDeletedShardNodes("node2", maxDeleteTime), ImmutableSet.of(shard));
+        assertEquals(dao.getDeletedShardNodes("node3", maxDeleteTime), ImmutableSet.of());
+        assertEquals(dao.getDeletedShards(maxDeleteTime), ImmutableSet.of());
+
+        // moving the shard back keeps its file on the node
+        shardManager.moveShard(shard, "node1");
+        shardManager.moveShard(shard, "node1");
+
+        actual = getOnlyElement(getShardNodes(tableId, TupleDomain.all()));
+        assertEquals(actual, new ShardNodes(shard, ImmutableSet.of("node1"), OptionalInt.empty()));
+        assertEquals(dao.getDeletedShardNodes("node1", maxDeleteTime), ImmutableSet.of());
+        assertEquals(dao.getDeletedShardNodes("node3", maxDeleteTime), ImmutableSet.of(shard));
+    }
+
+    @Test
+    public void testReplaceShards()
+    {
+        long tableId = 1;
+        UUID shard1 = UUID.randomUUID();
+        UUID shard2 = UUID.randomUUID();
+        UUID shard3 = UUID.randomUUID();
+        List<ShardInfo> shards = ImmutableList.of(shardInfo(shard1, "node1"), shardInfo(shard2, "node1"), shardInfo(shard3, "node1"));
+        List<ColumnInfo> columns = ImmutableList.of(new ColumnInfo(1, BIGINT));
+
+        shardManager.createTable(tableId, columns);
+        shardManager.commitShards(tableId, columns, shards, Optional.empty());
+
+        UUID newShard = UUID.randomUUID();
+        shardManager.replaceShards(tableId, columns, ImmutableSet.of(shard1, shard2), ImmutableList.of(shardInfo(newShard, "node1")));
+
+        Set<ShardNodes> expected = ImmutableSet.of(
+                new ShardNodes(shard3, ImmutableSet.of("node1"), OptionalInt.empty()),
+                new ShardNodes(newShard, ImmutableSet.of("node1"), OptionalInt.empty()));
+        assertEquals(getShardNodes(tableId, TupleDomain.all()), expected);
+        assertEquals(shardManager.getNodeShards("node1"), ImmutableSet.of(shard3, newShard));
+
+        // replacing a shard that no longer exists must not change anything
+        try {
+            shardManager.replaceShards(tableId, columns, ImmutableSet.of(shard3, shard1), ImmutableList.of(shardInfo(UUID.randomUUID(), "node1")));
+            fail("expected exception");
+        }
+        catch (PrestoException e) {
+            assertEquals(e.getErrorCode(), RAPTOR_ERROR.toErrorCode());
+        }
+        assertEquals(getShardNodes(tableId, TupleDomain.all()), expected);
+    }
+
+    @Test
+    public void testManyShards()
+    {
+        // small pages and more shards than fit in a single insert batch
+        ShardManager shardManager = new DatabaseShardManager(dbi, 7, 0);
+
+        long tableId = 1;
+        ImmutableList.Builder<ShardInfo> builder = ImmutableList.builder();
+        for (int i = 0; i < 2500; i++) {
+            Set<String> nodes = (i % 3 == 0) ? ImmutableSet.of("node1", "node2") : ImmutableSet.of("node" + (i % 3));
+            builder.add(new ShardInfo(UUID.randomUUID(), nodes, ImmutableList.of(), i, i * 10, Optional.empty()));
+        }
+        List<ShardInfo> shards = builder.build();
+        List<ColumnInfo> columns = ImmutableList.of(new ColumnInfo(1, BIGINT));
+
+        shardManager.createTable(tableId, columns);
+        shardManager.commitShards(tableId, columns, shards, Optional.empty());
+
+        try (CloseableIterator<ShardNodes> iterator = shardManager.getShardNodes(tableId, TupleDomain.all())) {
+            assertEquals(ImmutableSet.copyOf(iterator), toShardNodes(shards));
+        }
+
+        Set<UUID> oldShards = shards.subList(0, 1500).stream()
+                .map(ShardInfo::getShardUuid)
+                .collect(toSet());
+        shardManager.replaceShards(tableId, columns, oldShards, ImmutableList.of());
+
+        try (CloseableIterator<ShardNodes> iterator = shardManager.getShardNodes(tableId, TupleDomain.all())) {
+            assertEquals(ImmutableSet.copyOf(iterator), toShardNodes(shards.subList(1500, 2500)));
+        }
+    }
+
+    @Test
+    public void testShardListingIsConsistentSnapshot()
+    {
+        ShardManager shardManager = new DatabaseShardManager(dbi, 3, 0);
+
+        long tableId = 1;
+        List<ShardInfo> shards = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            shards.add(shardInfo(UUID.randomUUID(), "node1"));
+        }
+        List<ColumnInfo> columns = ImmutableList.of(new ColumnInfo(1, BIGINT));
+
+        shardManager.createTable(tableId, columns);
+        shardManager.commitShards(tableId, columns, shards, Optional.empty());
+
+        try (CloseableIterator<ShardNodes> iterator = shardManager.getShardNodes(tableId, TupleDomain.all())) {
+            List<ShardNodes> actual = new ArrayList<>();
+            actual.add(iterator.next());
+
+            // compact shards that were already listed into new shards, which sort after the remaining
+            // pages; listing both would return the rows of the compacted shards twice
+            Set<UUID> oldShards = shards.subList(0, 6).stream()
+                    .map(ShardInfo::getShardUuid)
+                    .collect(toSet());
+            shardManager.replaceShards(tableId, columns, oldShards, ImmutableList.of(shardInfo(UUID.randomUUID(), "node2"), shardInfo(UUID.randomUUID(), "node2")));
+
+            iterator.forEachRemaining(actual::add);
+            assertEquals(actual.size(), shards.size());
+            assertEquals(ImmutableSet.copyOf(actual), toShardNodes(shards));
+        }
+    }
+
+    @Test
+    public void testShardListCache()
+    {
+        long tableId = 1;
+        List<ShardInfo> shards = ImmutableList.of(shardInfo(UUID.randomUUID(), "node1"), shardInfo(UUID.randomUUID(), "node2"));
+        List<ColumnInfo> columns = ImmutableList.of(new ColumnInfo(1, BIGINT));
+
+        shardManager.createTable(tableId, columns);
+        shardManager.commitShards(tableId, columns, shards, Optional.empty());
+        assertEquals(getShardNodes(tableId, TupleDomain.all()), toShardNodes(shards));
+
+        // changes made behind the back of the shard manager are not visible until the table changes
+        dummyHandle.execute("DELETE FROM shard_nodes");
+        assertEquals(getShardNodes(tableId, TupleDomain.all()), toShardNodes(shards));
+
+        ShardInfo shard = shardInfo(UUID.randomUUID(), "node3");
+        shardManager.commitShards(tableId, columns, ImmutableList.of(shard), Optional.empty());
+
+        Set<ShardNodes> expected = ImmutableSet.of(
+                new ShardNodes(shards.get(0).getShardUuid(), ImmutableSet.of(), OptionalInt.empty()),
+                new ShardNodes(shards.get(1).getShardUuid(), ImmutableSet.of(), OptionalInt.empty()),
+                new ShardNodes(shard.getShardUuid(), ImmutableSet.of("node3"), OptionalInt.empty()));
+        assertEquals(getShardNodes(tableId, TupleDomain.all()), expected);
+    }
+
+    @Test
+    public void testGetNodeShardMetadata()
+    {
+        long tableId = 1;
+        UUID shard1 = UUID.randomUUID();
+        UUID shard2 = UUID.randomUUID();
+        List<ShardInfo> shards = ImmutableList.of(
+                new ShardInfo(shard1, ImmutableSet.of("node1"), ImmutableList.of(), 10, 100, Optional.empty()),
+                new ShardInfo(shard2, ImmutableSet.of("node2"), ImmutableList.of(), 20, 200, Optional.empty()));
+        List<ColumnInfo> columns = ImmutableList.of(new ColumnInfo(1, BIGINT));
+
+        shardManager.createTable(tableId, columns);
+        shardManager.commitShards(tableId, columns, shards, Optional.empty());
+
+        assertEquals(shardManager.getNodeShardMetadata("node1"), ImmutableSet.of(new ShardMetadata(tableId, shard1, 10, 100, OptionalInt.empty())));
+        assertEquals(shardManager.getNodeShardMetadata("node2"), ImmutableSet.of(new ShardMetadata(tableId, shard2, 20, 200, OptionalInt.empty())));
+        assertEquals(shardManager.getNodeShardMetadata("node3"), ImmutableSet.of());
+    }
+
+    @Test
+    public void testBucketAssignments()
+    {
+        long distributionId = 3;
+        assertEquals(shardManager.getBucketAssignments(distributionId), ImmutableMap.of());
+
+        shardManager.assignBucket(distributionId, 0, "node1");
+        shardManager.assignBucket(distributionId, 1, "node2");
+        assertEquals(shardManager.getBucketAssignments(distributionId), ImmutableMap.of(0, "node1", 1, "node2"));
+
+        shardManager.assignBucket(distributionId, 1, "node1");
+        assertEquals(shardManager.getBucketAssignments(distributionId), ImmutableMap.of(0, "node1", 1, "node1"));
+        assertEquals(shardManager.getBucketAssignments(distributionId + 1), ImmutableMap.of());
+    }
+
+    @Test
+    public void testShardBucketNumber()
+    {
+        long tableId = 1;
+        UUID shard1 = UUID.randomUUID();
+        UUID shard2 = UUID.randomUUID();
+        List<ShardInfo> shards = ImmutableList.of(
+                new ShardInfo(shard1, ImmutableSet.of("node1"), ImmutableList.of(), 10, 100, Optional.of(7)),
+                new ShardInfo(shard2, ImmutableSet.of("node1"), ImmutableList.of(), 10, 100, Optional.empty()));
+        List<ColumnInfo> columns = ImmutableList.of(new ColumnInfo(1, BIGINT));
+
+        shardManager.createTable(tableId, columns);
+        shardManager.commitShards(tableId, columns, shards, Optional.empty());
+
+        assertEquals(getShardNodes(tableId, TupleDomain.all()), ImmutableSet.of(
+                new ShardNodes(shard1, ImmutableSet.of("node1"), OptionalInt.of(7)),
+                new ShardNodes(shard2, ImmutableSet.of("node1"), OptionalInt.empty())));
+        assertEquals(shardManager.getNodeShardMetadata("node1"), ImmutableSet.of(
+                new ShardMetadata(tableId, shard1, 10, 100, OptionalInt.of(7)),
+                new ShardMetadata(tableId, shard2, 10, 100, OptionalInt.empty())));
+    }
+
+    @Test
+    public void testGetShardColumnRanges()
+    {
+        long tableId = 1;
+        UUID shard1 = UUID.randomUUID();
+        UUID shard2 = UUID.randomUUID();
+        UUID shard3 = UUID.randomUUID();
+        List<ShardInfo> shards = ImmutableList.of(
+                new ShardInfo(shard1, ImmutableSet.of("node1"), ImmutableList.of(new ColumnStats(1, 5L, 10L)), 10, 100, Optional.empty()),
+                new ShardInfo(shard2, ImmutableSet.of("node1"), ImmutableList.of(new ColumnStats(1, 20L, 20L)), 10, 100, Optional.empty()),
+                new ShardInfo(shard3, ImmutableSet.of("node1"), ImmutableList.of(), 10, 100, Optional.empty()));
+        ColumnInfo column = new ColumnInfo(1, BIGINT);
+        List<ColumnInfo> columns = ImmutableList.of(column);
+
+        shardManager.createTable(tableId, columns);
+        shardManager.commitShards(tableId, columns, shards, Optional.empty());
+
+        Map<UUID, ColumnStats> ranges = shardManager.getShardColumnRanges(tableId, column);
+        assertEquals(ranges.keySet(), ImmutableSet.of(shard1, shard2));
+        assertEquals(((Number) ranges.get(shard1).getMin()).longValue(), 5);
+        assertEquals(((Number) ranges.get(shard1).getMax()).longValue(), 10);
+        assertEquals(((Number) ranges.get(shard2).getMin()).longValue(), 20);
+        assertEquals(((Number) ranges.get(shard2).getMax()).longValue(), 20);
     }
 
     @Test
@@ -349,13 +592,13 @@ public class TestDatabaseShardManager
 
     private static ShardInfo shardInfo(UUID shardUuid, String nodeId, List<ColumnStats> columnStats)
     {
-        return new ShardInfo(shardUuid, ImmutableSet.of(nodeId), columnStats, 0, 0);
+        return new ShardInfo(shardUuid, ImmutableSet.of(nodeId), columnStats, 0, 0, Optional.empty());
     }
 
     private static Set<ShardNodes> toShardNodes(List<ShardInfo> shards)
     {
         return shards.stream()
-                .map(shard -> new ShardNodes(shard.getShardUuid(), shard.getNodeIdentifiers()))
+                .map(shard -> new ShardNodes(shard.getShardUuid(), shard.getNodeIdentifiers(), OptionalInt.empty()))
                 .collect(toSet());
     }
 
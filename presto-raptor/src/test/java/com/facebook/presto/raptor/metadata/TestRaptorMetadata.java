@@ -15,12 +15,17 @@ package com.facebook.presto.raptor.metadata;
 
 import com.facebook.presto.raptor.RaptorColumnHandle;
 import com.facebook.presto.raptor.RaptorConnectorId;
+import com.facebook.presto.raptor.RaptorInsertTableHandle;
 import com.facebook.presto.raptor.RaptorMetadata;
 import com.facebook.presto.raptor.RaptorTableHandle;
+import com.facebook.presto.raptor.storage.FileStorageService;
+import com.facebook.presto.raptor.storage.StorageService;
 import com.facebook.presto.spi.ColumnMetadata;
 import com.facebook.presto.spi.ConnectorColumnHandle;
 import com.facebook.presto.spi.ConnectorMetadata;
+import com.facebook.presto.spi.ConnectorOutputTableHandle;
 import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.ConnectorTableBucketing;
 import com.facebook.presto.spi.ConnectorTableHandle;
 import com.facebook.presto.spi.ConnectorTableMetadata;
 import com.facebook.presto.spi.PrestoException;
@@ -30,18 +35,27 @@ import com.facebook.presto.type.TypeRegistry;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
 import io.airlift.json.JsonCodec;
+import io.airlift.testing.FileUtils;
 import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.Handle;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static com.facebook.presto.metadata.MetadataUtil.TableMetadataBuilder.tableMetadataBuilder;
+import static com.facebook.presto.raptor.RaptorMetadata.BUCKET_COLUMNS_PROPERTY;
+import static com.facebook.presto.raptor.RaptorMetadata.BUCKET_COUNT_PROPERTY;
+import static com.facebook.presto.raptor.RaptorMetadata.SORT_COLUMNS_PROPERTY;
+import static com.facebook.presto.raptor.RaptorMetadata.TEMPORAL_COLUMN_PROPERTY;
 import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.DateType.DATE;
 import static com.facebook.presto.spi.type.DoubleType.DOUBLE;
 import static com.facebook.presto.spi.type.TimeZoneKey.UTC_KEY;
 import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
@@ -49,6 +63,7 @@ import static io.airlift.json.JsonCodec.jsonCodec;
 import static io.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static io.airlift.testing.Assertions.assertInstanceOf;
 import static java.util.Locale.ENGLISH;
+import static java.util.stream.Collectors.toList;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
@@ -63,6 +78,7 @@ public class TestRaptorMetadata
     private static final SchemaTableName DEFAULT_TEST_ORDERS = new SchemaTableName("test", "orders");
 
     private Handle dummyHandle;
+    private File dataDir;
     private ConnectorMetadata metadata;
 
     @BeforeMethod
@@ -73,13 +89,16 @@ public class TestRaptorMetadata
         DBI dbi = new DBI("jdbc:h2:mem:test" + System.nanoTime());
         dbi.registerMapper(new TableColumn.Mapper(typeRegistry));
         dummyHandle = dbi.open();
-        metadata = new RaptorMetadata(new RaptorConnectorId("default"), dbi, new DatabaseShardManager(dbi), SHARD_INFO_CODEC);
+        dataDir = Files.createTempDir();
+        StorageService storageService = new FileStorageService(dataDir, Optional.of(new File(dataDir, "backup")));
+        metadata = new RaptorMetadata(new RaptorConnectorId("default"), dbi, new DatabaseShardManager(dbi), storageService, SHARD_INFO_CODEC);
     }
 
     @AfterMethod
     public void cleanupDatabase()
     {
         dummyHandle.close();
+        FileUtils.deleteRecursively(dataDir);
     }
 
     @Test
@@ -194,6 +213,112 @@ public class TestRaptorMetadata
         assertEquals(metadata.getViews(SESSION, test.toSchemaTablePrefix()).get(test), "bbb");
     }
 
+    @Test
+    public void testCreateTableWithOrganization()
+    {
+        ConnectorSession session = createSession(ImmutableMap.of(
+                SORT_COLUMNS_PROPERTY, "custkey, OrderKey",
+                TEMPORAL_COLUMN_PROPERTY, "orderdate"));
+
+        ConnectorOutputTableHandle outputHandle = metadata.beginCreateTable(session, getOrganizedOrdersTable());
+        metadata.commitCreateTable(outputHandle, ImmutableList.of());
+
+        ConnectorTableHandle tableHandle = metadata.getTableHandle(SESSION, DEFAULT_TEST_ORDERS);
+        List<String> sortColumns = metadata.getSortedColumns(tableHandle).stream()
+                .map(handle -> ((RaptorColumnHandle) handle).getColumnName())
+                .collect(toList());
+        assertEquals(sortColumns, ImmutableList.of("custkey", "orderkey"));
+
+        RaptorInsertTableHandle insertHandle = (RaptorInsertTableHandle) metadata.beginInsert(SESSION, tableHandle);
+        assertEquals(insertHandle.getTemporalColumnHandle().getColumnName(), "orderdate");
+        assertEquals(insertHandle.getSortColumnHandles().size(), 2);
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "Temporal column must be of type DATE or TIMESTAMP: totalprice")
+    public void testInvalidTemporalColumnType()
+    {
+        ConnectorSession session = createSession(ImmutableMap.of(TEMPORAL_COLUMN_PROPERTY, "totalprice"));
+        metadata.beginCreateTable(session, getOrganizedOrdersTable());
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "Column foo in sort_columns does not exist")
+    public void testInvalidSortColumn()
+    {
+        ConnectorSession session = createSession(ImmutableMap.of(SORT_COLUMNS_PROPERTY, "orderkey,foo"));
+        metadata.beginCreateTable(session, getOrganizedOrdersTable());
+    }
+
+    @Test
+    public void testCreateBucketedTable()
+    {
+        ConnectorSession session = createSession(ImmutableMap.of(
+                BUCKET_COLUMNS_PROPERTY, "orderkey",
+                BUCKET_COUNT_PROPERTY, "16"));
+
+        ConnectorOutputTableHandle outputHandle = metadata.beginCreateTable(session, getOrganizedOrdersTable());
+        metadata.commitCreateTable(outputHandle, ImmutableList.of());
+
+        RaptorTableHandle tableHandle = (RaptorTableHandle) metadata.getTableHandle(SESSION, DEFAULT_TEST_ORDERS);
+        assertEquals(tableHandle.getDistributionId(), Long.valueOf(1));
+        assertEquals(tableHandle.getBucketCount(), Integer.valueOf(16));
+
+        ConnectorTableBucketing bucketing = metadata.getTableBucketing(tableHandle);
+        assertEquals(bucketing.getBucketCount(), 16);
+        assertEquals(bucketing.getBucketColumns().size(), 1);
+        assertEquals(((RaptorColumnHandle) bucketing.getBucketColumns().get(0)).getColumnName(), "orderkey");
+
+        RaptorInsertTableHandle insertHandle = (RaptorInsertTableHandle) metadata.beginInsert(SESSION, tableHandle);
+        assertEquals(insertHandle.getBucketCount(), Integer.valueOf(16));
+        assertEquals(insertHandle.getBucketColumnHandles().size(), 1);
+
+        // a table bucketed on columns of the same types shares the distribution
+        SchemaTableName otherTable = new SchemaTableName("test", "lineitem");
+        ConnectorTableMetadata lineitem = tableMetadataBuilder(otherTable)
+                .column("orderkey", BIGINT)
+                .column("quantity", DOUBLE)
+                .build();
+        metadata.commitCreateTable(metadata.beginCreateTable(session, lineitem), ImmutableList.of());
+
+        ConnectorTableHandle otherHandle = metadata.getTableHandle(SESSION, otherTable);
+        assertEquals(metadata.getTableBucketing(otherHandle).getBucketFunction(), bucketing.getBucketFunction());
+
+        ConnectorTableHandle unbucketed = metadata.createTable(SESSION, tableMetadataBuilder(new SchemaTableName("test", "unbucketed"))
+                .column("orderkey", BIGINT)
+                .build());
+        assertNull(metadata.getTableBucketing(unbucketed));
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "bucket_columns and bucket_count must be specified together")
+    public void testBucketColumnsWithoutCount()
+    {
+        ConnectorSession session = createSession(ImmutableMap.of(BUCKET_COLUMNS_PROPERTY, "orderkey"));
+        metadata.beginCreateTable(session, getOrganizedOrdersTable());
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "bucket_count must be greater than zero: 0")
+    public void testInvalidBucketCount()
+    {
+        ConnectorSession session = createSession(ImmutableMap.of(
+                BUCKET_COLUMNS_PROPERTY, "orderkey",
+                BUCKET_COUNT_PROPERTY, "0"));
+        metadata.beginCreateTable(session, getOrganizedOrdersTable());
+    }
+
+    private static ConnectorSession createSession(Map<String, String> properties)
+    {
+        return new ConnectorSession("user", UTC_KEY, ENGLISH, System.currentTimeMillis(), properties);
+    }
+
+    private static ConnectorTableMetadata getOrganizedOrdersTable()
+    {
+        return tableMetadataBuilder(DEFAULT_TEST_ORDERS)
+                .column("orderkey", BIGINT)
+                .column("custkey", BIGINT)
+                .column("totalprice", DOUBLE)
+                .column("orderdate", DATE)
+                .build();
+    }
+
     private static ConnectorTableMetadata getOrdersTable()
     {
         return tableMetadataBuilder(DEFAULT_TEST_ORDERS)
@@ -26,10 +26,12 @@ import com.facebook.presto.raptor.storage.FileStorageService;
 import com.facebook.presto.raptor.storage.ShardRecoveryManager;
 import com.facebook.presto.raptor.storage.StorageManager;
 import com.facebook.presto.raptor.storage.StorageService;
+import com.facebook.presto.raptor.util.CloseableIterator;
 import com.facebook.presto.spi.ConnectorColumnHandle;
 import com.facebook.presto.spi.ConnectorPartition;
 import com.facebook.presto.spi.ConnectorPartitionResult;
 import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.ConnectorSplit;
 import com.facebook.presto.spi.ConnectorSplitSource;
 import com.facebook.presto.spi.ConnectorTableHandle;
 import com.facebook.presto.spi.ConnectorTableMetadata;
@@ -38,7 +40,11 @@ import com.facebook.presto.spi.TupleDomain;
 import com.facebook.presto.spi.type.BigintType;
 import com.facebook.presto.type.TypeRegistry;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.io.Files;
 import io.airlift.json.JsonCodec;
 import io.airlift.testing.FileUtils;
@@ -54,9 +60,12 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import static com.facebook.presto.raptor.RaptorMetadata.BUCKET_COLUMNS_PROPERTY;
+import static com.facebook.presto.raptor.RaptorMetadata.BUCKET_COUNT_PROPERTY;
 import static com.facebook.presto.raptor.metadata.TestDatabaseShardManager.shardInfo;
 import static com.facebook.presto.raptor.storage.TestOrcStorageManager.createOrcStorageManager;
 import static com.facebook.presto.raptor.util.Types.checkType;
@@ -84,6 +93,7 @@ public class TestRaptorSplitManager
     private RaptorSplitManager raptorSplitManager;
     private ConnectorTableHandle tableHandle;
     private ShardManager shardManager;
+    private RaptorMetadata metadata;
     private StorageManager storageManagerWithBackup;
 
     @BeforeMethod
@@ -108,7 +118,7 @@ public class TestRaptorSplitManager
         nodeManager.addNode("raptor", new PrestoNode(nodeName, new URI("http://127.0.0.1/"), NodeVersion.UNKNOWN));
 
         RaptorConnectorId connectorId = new RaptorConnectorId("raptor");
-        RaptorMetadata metadata = new RaptorMetadata(connectorId, dbi, shardManager, SHARD_INFO_CODEC);
+        metadata = new RaptorMetadata(connectorId, dbi, shardManager, storageServiceWithBackup, SHARD_INFO_CODEC);
 
         tableHandle = metadata.createTable(SESSION, TEST_TABLE);
 
@@ -187,6 +197,55 @@ public class TestRaptorSplitManager
         assertEquals(Iterables.getOnlyElement(Iterables.getOnlyElement(partitionSplit.getNextBatch(1)).getAddresses()), node.getHostAndPort());
     }
 
+    @Test
+    public void testBucketedTable()
+            throws InterruptedException, URISyntaxException
+    {
+        InMemoryNodeManager nodeManager = new InMemoryNodeManager();
+        PrestoNode node1 = new PrestoNode("node1", new URI("http://127.0.0.1:1/"), NodeVersion.UNKNOWN);
+        PrestoNode node2 = new PrestoNode("node2", new URI("http://127.0.0.1:2/"), NodeVersion.UNKNOWN);
+        nodeManager.addNode("raptor", node1, node2);
+        RaptorSplitManager raptorSplitManagerWithBackup = new RaptorSplitManager(new RaptorConnectorId("raptor"), nodeManager, shardManager, storageManagerWithBackup);
+
+        ConnectorSession session = new ConnectorSession("user", UTC_KEY, ENGLISH, System.currentTimeMillis(), ImmutableMap.of(
+                BUCKET_COLUMNS_PROPERTY, "bar",
+                BUCKET_COUNT_PROPERTY, "4"));
+        ConnectorTableMetadata bucketedTable = TableMetadataBuilder.tableMetadataBuilder("demo", "bucketed_table")
+                .column("foo", VARCHAR)
+                .column("bar", BigintType.BIGINT)
+                .build();
+        metadata.commitCreateTable(metadata.beginCreateTable(session, bucketedTable), ImmutableList.of());
+        RaptorTableHandle bucketedHandle = (RaptorTableHandle) metadata.getTableHandle(SESSION, bucketedTable.getTable());
+
+        // buckets are spread evenly over the nodes and the assignment is stable
+        List<String> bucketNodes = raptorSplitManagerWithBackup.getBucketNodes(bucketedHandle);
+        assertEquals(bucketNodes.size(), 4);
+        assertEquals(ImmutableMultiset.copyOf(bucketNodes).count("node1"), 2);
+        assertEquals(ImmutableMultiset.copyOf(bucketNodes).count("node2"), 2);
+        assertEquals(raptorSplitManagerWithBackup.getBucketNodes(bucketedHandle), bucketNodes);
+
+        // the shard is read on the node of its bucket
+        UUID shardUuid = UUID.randomUUID();
+        String otherNode = bucketNodes.get(1).equals("node1") ? "node2" : "node1";
+        List<ColumnInfo> columns = metadata.getColumnHandles(bucketedHandle).values().stream()
+                .map(handle -> checkType(handle, RaptorColumnHandle.class, "columnHandle"))
+                .map(ColumnInfo::fromHandle)
+                .collect(toList());
+        ShardInfo shard = new ShardInfo(shardUuid, ImmutableSet.of(otherNode), ImmutableList.of(), 10, 100, Optional.of(1));
+        shardManager.commitShards(bucketedHandle.getTableId(), columns, ImmutableList.of(shard), Optional.empty());
+
+        ConnectorPartitionResult result = raptorSplitManagerWithBackup.getPartitions(bucketedHandle, TupleDomain.<ConnectorColumnHandle>all());
+        ConnectorSplit split = Iterables.getOnlyElement(raptorSplitManagerWithBackup.getPartitionSplits(bucketedHandle, result.getPartitions()).getNextBatch(1000));
+        assertEquals(split.getBucket(), OptionalInt.of(1));
+        PrestoNode bucketNode = bucketNodes.get(1).equals("node1") ? node1 : node2;
+        assertEquals(split.getAddresses(), ImmutableList.of(bucketNode.getHostAndPort()));
+
+        // the shard is moved to the bucket node, which restores it from backup
+        try (CloseableIterator<ShardNodes> iterator = shardManager.getShardNodes(bucketedHandle.getTableId(), TupleDomain.all())) {
+            assertEquals(Iterators.getOnlyElement(iterator).getNodeIdentifiers(), ImmutableSet.of(bucketNodes.get(1)));
+        }
+    }
+
     @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "No nodes available to run query")
     public void testNoNodes()
             throws InterruptedException, URISyntaxException
@@ -107,7 +107,7 @@ public class TestShardManagerDao
     @Test
     public void testInsertShard()
     {
-        long shardId = dao.insertShard(UUID.randomUUID(), 5, 13, 42);
+        long shardId = dao.insertShard(UUID.randomUUID(), 5, 13, 42, null);
 
         List<Map<String, Object>> shards = handle.select(
                 "SELECT table_id , row_count, data_size FROM shards WHERE shard_id = ?",
@@ -130,7 +130,7 @@ public class TestShardManagerDao
 
         long tableId = 1;
         UUID shard = UUID.randomUUID();
-        dao.insertShard(shard, tableId, 0, 0);
+        dao.insertShard(shard, tableId, 0, 0, null);
 
         dao.insertShardNode(shard, nodeId);
 
@@ -162,10 +162,10 @@ public class TestShardManagerDao
 
         long tableId = 1;
 
-        long shardId1 = dao.insertShard(shardUuid1, tableId, 0, 0);
-        long shardId2 = dao.insertShard(shardUuid2, tableId, 0, 0);
-        long shardId3 = dao.insertShard(shardUuid3, tableId, 0, 0);
-        long shardId4 = dao.insertShard(shardUuid4, tableId, 0, 0);
+        long shardId1 = dao.insertShard(shardUuid1, tableId, 0, 0, null);
+        long shardId2 = dao.insertShard(shardUuid2, tableId, 0, 0, null);
+        long shardId3 = dao.insertShard(shardUuid3, tableId, 0, 0, null);
+        long shardId4 = dao.insertShard(shardUuid4, tableId, 0, 0, null);
 
         assertEquals(dao.getShards(tableId), ImmutableList.of(shardUuid1, shardUuid2, shardUuid3, shardUuid4));
 
@@ -218,10 +218,10 @@ public class TestShardManagerDao
         UUID shardUuid3 = UUID.randomUUID();
         UUID shardUuid4 = UUID.randomUUID();
 
-        long shardId1 = dao.insertShard(shardUuid1, tableId, 0, 0);
-        long shardId2 = dao.insertShard(shardUuid2, tableId, 0, 0);
-        long shardId3 = dao.insertShard(shardUuid3, tableId, 0, 0);
-        long shardId4 = dao.insertShard(shardUuid4, tableId, 0, 0);
+        long shardId1 = dao.insertShard(shardUuid1, tableId, 0, 0, null);
+        long shardId2 = dao.insertShard(shardUuid2, tableId, 0, 0, null);
+        long shardId3 = dao.insertShard(shardUuid3, tableId, 0, 0, null);
+        long shardId4 = dao.insertShard(shardUuid4, tableId, 0, 0, null);
 
         List<UUID> shards = dao.getShards(tableId);
         assertEquals(shards.size(), 4);
@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.raptor.storage;
+
+import com.facebook.presto.raptor.metadata.ColumnInfo;
+import com.facebook.presto.raptor.metadata.DatabaseShardManager;
+import com.facebook.presto.raptor.metadata.ShardInfo;
+import com.facebook.presto.raptor.metadata.ShardManager;
+import com.facebook.presto.raptor.metadata.ShardManagerDao;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.units.Duration;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.google.common.io.Files.createTempDir;
+import static com.google.common.io.Files.write;
+import static io.airlift.testing.FileUtils.deleteRecursively;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test(singleThreaded = true)
+public class TestShardCleaner
+{
+    private static final List<ColumnInfo> COLUMNS = ImmutableList.of(new ColumnInfo(1, BIGINT));
+    private static final Timestamp MIN_DELETE_TIME = new Timestamp(0);
+    private static final Timestamp MAX_DELETE_TIME = new Timestamp(Long.MAX_VALUE);
+
+    private Handle dummyHandle;
+    private File temporary;
+    private StorageService storageService;
+    private ShardManager shardManager;
+    private ShardManagerDao dao;
+    private ShardCleaner cleaner;
+
+    @BeforeMethod
+    public void setup()
+            throws Exception
+    {
+        temporary = createTempDir();
+        storageService = new FileStorageService(new File(temporary, "data"), Optional.of(new File(temporary, "backup")));
+        storageService.start();
+
+        DBI dbi = new DBI("jdbc:h2:mem:test" + System.nanoTime());
+        dummyHandle = dbi.open();
+        shardManager = new DatabaseShardManager(dbi);
+        dao = dbi.onDemand(ShardManagerDao.class);
+        cleaner = new ShardCleaner(dbi, "node1", storageService, new Duration(1, HOURS), new Duration(1, HOURS));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown()
+    {
+        if (dummyHandle != null) {
+            dummyHandle.close();
+        }
+        deleteRecursively(temporary);
+    }
+
+    @Test
+    public void testCleanReplacedShards()
+            throws Exception
+    {
+        long tableId = 1;
+        UUID replaced = UUID.randomUUID();
+        UUID kept = UUID.randomUUID();
+        UUID created = UUID.randomUUID();
+        for (UUID shardUuid : ImmutableList.of(replaced, kept, created)) {
+            createShardFiles(shardUuid);
+        }
+
+        shardManager.createTable(tableId, COLUMNS);
+        shardManager.commitShards(tableId, COLUMNS, ImmutableList.of(shardInfo(replaced, "node1", "node2"), shardInfo(kept, "node1")), Optional.empty());
+        shardManager.replaceShards(tableId, COLUMNS, ImmutableSet.of(replaced), ImmutableList.of(shardInfo(created, "node1")));
+
+        assertEquals(dao.getDeletedShards(MAX_DELETE_TIME), ImmutableSet.of(replaced));
+        assertEquals(dao.getDeletedShardNodes("node1", MAX_DELETE_TIME), ImmutableSet.of(replaced));
+        assertEquals(dao.getDeletedShardNodes("node2", MAX_DELETE_TIME), ImmutableSet.of(replaced));
+
+        // files are kept until the retention period has passed
+        cleaner.cleanLocalShards(MIN_DELETE_TIME);
+        cleaner.cleanBackupShards(MIN_DELETE_TIME);
+        assertTrue(storageService.getStorageFile(replaced).exists());
+        assertTrue(storageService.getBackupFile(replaced).exists());
+
+        cleaner.cleanLocalShards(MAX_DELETE_TIME);
+        assertFalse(storageService.getStorageFile(replaced).exists());
+        assertTrue(storageService.getBackupFile(replaced).exists());
+        assertEquals(dao.getDeletedShardNodes("node1", MAX_DELETE_TIME), ImmutableSet.of());
+        assertEquals(dao.getDeletedShardNodes("node2", MAX_DELETE_TIME), ImmutableSet.of(replaced));
+
+        cleaner.cleanBackupShards(MAX_DELETE_TIME);
+        assertFalse(storageService.getBackupFile(replaced).exists());
+        assertEquals(dao.getDeletedShards(MAX_DELETE_TIME), ImmutableSet.of());
+
+        for (UUID shardUuid : ImmutableList.of(kept, created)) {
+            assertTrue(storageService.getStorageFile(shardUuid).exists());
+            assertTrue(storageService.getBackupFile(shardUuid).exists());
+        }
+        assertEquals(cleaner.getLocalShardsDeleted(), 1);
+        assertEquals(cleaner.getBackupShardsDeleted(), 1);
+    }
+
+    private void createShardFiles(UUID shardUuid)
+            throws IOException
+    {
+        for (File file : ImmutableList.of(storageService.getStorageFile(shardUuid), storageService.getBackupFile(shardUuid))) {
+            storageService.createParents(file);
+            write("shard", file, UTF_8);
+        }
+    }
+
+    private static ShardInfo shardInfo(UUID shardUuid, String... nodeIdentifiers)
+    {
+        Set<String> nodes = ImmutableSet.copyOf(nodeIdentifiers);
+        return new ShardInfo(shardUuid, nodes, ImmutableList.of(), 1, 1, Optional.empty());
+    }
+}
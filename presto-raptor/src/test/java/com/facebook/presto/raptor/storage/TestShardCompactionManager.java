@@ -0,0 +1,281 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.raptor.storage;
+
+import com.facebook.presto.PagesIndexPageSorter;
+import com.facebook.presto.RowPagesBuilder;
+import com.facebook.presto.metadata.InMemoryNodeManager;
+import com.facebook.presto.raptor.metadata.ColumnInfo;
+import com.facebook.presto.raptor.metadata.ColumnStats;
+import com.facebook.presto.raptor.metadata.DatabaseShardManager;
+import com.facebook.presto.raptor.metadata.MetadataDao;
+import com.facebook.presto.raptor.metadata.ShardInfo;
+import com.facebook.presto.raptor.metadata.ShardManager;
+import com.facebook.presto.raptor.metadata.ShardManagerDao;
+import com.facebook.presto.raptor.metadata.ShardMetadata;
+import com.facebook.presto.raptor.metadata.TableColumn;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.type.TypeRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.raptor.RaptorErrorCode.RAPTOR_ERROR;
+import static com.facebook.presto.raptor.metadata.MetadataDaoUtils.createMetadataTablesWithRetry;
+import static com.facebook.presto.raptor.storage.OrganizedPageWriter.NULL_DAY;
+import static com.facebook.presto.raptor.storage.ShardCompactionManager.getShardDay;
+import static com.facebook.presto.raptor.storage.ShardCompactionManager.groupShards;
+import static com.facebook.presto.raptor.storage.TestOrcStorageManager.createOrcStorageManager;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.DateType.DATE;
+import static com.facebook.presto.spi.type.TimestampType.TIMESTAMP;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.common.io.Files.createTempDir;
+import static io.airlift.testing.FileUtils.deleteRecursively;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toSet;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+@Test(singleThreaded = true)
+public class TestShardCompactionManager
+{
+    private static final long MAX_SHARD_ROWS = 1000;
+    private static final long MAX_SHARD_SIZE = 100;
+    private static final String CURRENT_NODE = "node";
+    private static final List<ColumnInfo> COLUMNS = ImmutableList.of(new ColumnInfo(1, BIGINT));
+    private static final Timestamp MAX_DELETE_TIME = new Timestamp(Long.MAX_VALUE);
+
+    private Handle dummyHandle;
+    private File temporary;
+    private StorageService storageService;
+    private OrcStorageManager storageManager;
+    private ShardManager shardManager;
+    private ShardManagerDao shardManagerDao;
+    private ShardCompactionManager compactionManager;
+    private long tableId;
+
+    @BeforeMethod
+    public void setup()
+            throws Exception
+    {
+        temporary = createTempDir();
+        storageService = new FileStorageService(new File(temporary, "data"), Optional.of(new File(temporary, "backup")));
+        storageService.start();
+
+        DBI dbi = new DBI("jdbc:h2:mem:test" + System.nanoTime());
+        dbi.registerMapper(new TableColumn.Mapper(new TypeRegistry()));
+        dummyHandle = dbi.open();
+        MetadataDao metadataDao = dbi.onDemand(MetadataDao.class);
+        createMetadataTablesWithRetry(metadataDao);
+        shardManager = new DatabaseShardManager(dbi);
+        shardManagerDao = dbi.onDemand(ShardManagerDao.class);
+
+        ShardRecoveryManager recoveryManager = new ShardRecoveryManager(storageService, new InMemoryNodeManager(), shardManager, new Duration(5, MINUTES), 10);
+        storageManager = createOrcStorageManager(storageService, recoveryManager);
+        ShardCompactor compactor = new ShardCompactor(storageManager, new PagesIndexPageSorter(), new DataSize(100, MEGABYTE));
+        compactionManager = new ShardCompactionManager(dbi, CURRENT_NODE, shardManager, storageService, compactor, false, new Duration(1, HOURS), 1, MAX_SHARD_ROWS, new DataSize(1, MEGABYTE));
+
+        tableId = metadataDao.insertTable("raptor", "test", "test", null, null);
+        metadataDao.insertColumn(tableId, 1, "value", 0, BIGINT.getTypeSignature().toString(), null, null);
+        shardManager.createTable(tableId, COLUMNS);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown()
+    {
+        if (dummyHandle != null) {
+            dummyHandle.close();
+        }
+        deleteRecursively(temporary);
+    }
+
+    @Test
+    public void testCompactShards()
+            throws Exception
+    {
+        List<ShardInfo> shards = ImmutableList.of(writeShard(1, 2), writeShard(3), writeShard(4, 5, 6));
+        shardManager.commitShards(tableId, COLUMNS, shards, Optional.empty());
+
+        compactionManager.compactShards(tableId, shardManager.getNodeShardMetadata(CURRENT_NODE));
+
+        ShardMetadata compacted = getOnlyElement(shardManager.getNodeShardMetadata(CURRENT_NODE));
+        assertEquals(compacted.getRowCount(), 6);
+        assertTrue(storageService.getStorageFile(compacted.getShardUuid()).exists());
+        assertTrue(storageService.getBackupFile(compacted.getShardUuid()).exists());
+
+        // the old shards are recorded for the shard cleaner, which deletes their files later
+        for (ShardInfo shard : shards) {
+            assertTrue(storageService.getStorageFile(shard.getShardUuid()).exists());
+        }
+        assertEquals(shardManagerDao.getDeletedShards(MAX_DELETE_TIME), shardUuids(shards));
+        assertEquals(shardManagerDao.getDeletedShardNodes(CURRENT_NODE, MAX_DELETE_TIME), shardUuids(shards));
+    }
+
+    @Test
+    public void testCompactShardsRowCountMismatch()
+            throws Exception
+    {
+        List<ShardInfo> shards = ImmutableList.of(writeShard(1, 2), writeShard(3));
+        shardManager.commitShards(tableId, COLUMNS, shards, Optional.empty());
+
+        ImmutableSet.Builder<ShardMetadata> group = ImmutableSet.builder();
+        for (ShardMetadata shard : shardManager.getNodeShardMetadata(CURRENT_NODE)) {
+            group.add(new ShardMetadata(tableId, shard.getShardUuid(), shard.getRowCount() + 1, shard.getDataSize(), shard.getBucketNumber()));
+        }
+
+        Set<File> files = listShardFiles();
+        try {
+            compactionManager.compactShards(tableId, group.build());
+            fail("expected exception");
+        }
+        catch (PrestoException e) {
+            assertEquals(e.getErrorCode(), RAPTOR_ERROR.toErrorCode());
+        }
+
+        // the new shard files are deleted and the old shards are unchanged
+        assertEquals(listShardFiles(), files);
+        assertEquals(shardManager.getNodeShards(CURRENT_NODE), shardUuids(shards));
+        assertEquals(shardManagerDao.getDeletedShards(MAX_DELETE_TIME), ImmutableSet.of());
+    }
+
+    @Test
+    public void testCompactShardsRollbackOnReplaceFailure()
+            throws Exception
+    {
+        List<ShardInfo> shards = ImmutableList.of(writeShard(1, 2), writeShard(3));
+        shardManager.commitShards(tableId, COLUMNS, shards, Optional.empty());
+
+        // the shard is written but not committed, so replacing it fails
+        ShardInfo uncommitted = writeShard(4);
+        Set<ShardMetadata> group = ImmutableSet.<ShardMetadata>builder()
+                .addAll(shardManager.getNodeShardMetadata(CURRENT_NODE))
+                .add(new ShardMetadata(tableId, uncommitted.getShardUuid(), uncommitted.getRowCount(), uncommitted.getDataSize(), OptionalInt.empty()))
+                .build();
+
+        Set<File> files = listShardFiles();
+        try {
+            compactionManager.compactShards(tableId, group);
+            fail("expected exception");
+        }
+        catch (PrestoException e) {
+            assertEquals(e.getErrorCode(), RAPTOR_ERROR.toErrorCode());
+        }
+
+        assertEquals(listShardFiles(), files);
+        assertEquals(shardManager.getNodeShards(CURRENT_NODE), shardUuids(shards));
+        assertEquals(shardManagerDao.getDeletedShards(MAX_DELETE_TIME), ImmutableSet.of());
+        assertEquals(shardManagerDao.getDeletedShardNodes(CURRENT_NODE, MAX_DELETE_TIME), ImmutableSet.of());
+    }
+
+    @Test
+    public void testGroupShards()
+    {
+        ShardMetadata shard1 = shard(1, 100, 10);
+        ShardMetadata shard2 = shard(1, 200, 20);
+        ShardMetadata shard3 = shard(1, 300, 30);
+        ShardMetadata shard4 = shard(1, 400, 60);
+
+        List<Set<ShardMetadata>> groups = groupShards(ImmutableList.of(shard4, shard3, shard2, shard1), MAX_SHARD_ROWS, MAX_SHARD_SIZE);
+        assertEquals(groups, ImmutableList.of(ImmutableSet.of(shard1, shard2, shard3)));
+    }
+
+    @Test
+    public void testGroupShardsByRowCount()
+    {
+        ShardMetadata shard1 = shard(1, 600, 1);
+        ShardMetadata shard2 = shard(1, 500, 2);
+        ShardMetadata shard3 = shard(1, 400, 3);
+        ShardMetadata shard4 = shard(1, 500, 4);
+
+        List<Set<ShardMetadata>> groups = groupShards(ImmutableList.of(shard1, shard2, shard3, shard4), MAX_SHARD_ROWS, MAX_SHARD_SIZE);
+        assertEquals(groups, ImmutableList.of(ImmutableSet.of(shard2, shard3)));
+    }
+
+    @Test
+    public void testGroupShardsSkipsFullShards()
+    {
+        ShardMetadata shard1 = shard(1, MAX_SHARD_ROWS, 10);
+        ShardMetadata shard2 = shard(1, 10, MAX_SHARD_SIZE);
+        ShardMetadata shard3 = shard(1, 10, 10);
+
+        assertEquals(groupShards(ImmutableList.of(shard1, shard2, shard3), MAX_SHARD_ROWS, MAX_SHARD_SIZE), ImmutableList.of());
+    }
+
+    @Test
+    public void testGetShardDay()
+    {
+        long millisPerDay = DAYS.toMillis(1);
+        assertEquals(getShardDay(DATE, new ColumnStats(1, 15L, 15L)), OptionalLong.of(15));
+        assertEquals(getShardDay(DATE, new ColumnStats(1, 15L, 16L)), OptionalLong.empty());
+        assertEquals(getShardDay(TIMESTAMP, new ColumnStats(1, 3 * millisPerDay, 4 * millisPerDay - 1)), OptionalLong.of(3));
+        assertEquals(getShardDay(TIMESTAMP, new ColumnStats(1, -1L, 0L)), OptionalLong.empty());
+        assertEquals(getShardDay(DATE, null), OptionalLong.of(NULL_DAY));
+    }
+
+    private ShardInfo writeShard(long... values)
+    {
+        RowPagesBuilder pages = rowPagesBuilder(BIGINT);
+        for (long value : values) {
+            pages.row(value);
+        }
+        StoragePageSink sink = storageManager.createStoragePageSink(ImmutableList.of(1L), ImmutableList.of(BIGINT));
+        sink.appendPages(pages.build());
+        return getOnlyElement(sink.commit());
+    }
+
+    private Set<File> listShardFiles()
+            throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(temporary.toPath())) {
+            return paths.map(Path::toFile)
+                    .filter(File::isFile)
+                    .collect(toSet());
+        }
+    }
+
+    private static Set<UUID> shardUuids(List<ShardInfo> shards)
+    {
+        return shards.stream().map(ShardInfo::getShardUuid).collect(toSet());
+    }
+
+    private static ShardMetadata shard(long tableId, long rowCount, long dataSize)
+    {
+        return new ShardMetadata(tableId, UUID.randomUUID(), rowCount, dataSize, OptionalInt.empty());
+    }
+}
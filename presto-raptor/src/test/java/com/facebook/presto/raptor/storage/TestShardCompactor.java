@@ -0,0 +1,225 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.raptor.storage;
+
+import com.facebook.presto.PagesIndexPageSorter;
+import com.facebook.presto.metadata.InMemoryNodeManager;
+import com.facebook.presto.raptor.metadata.ColumnInfo;
+import com.facebook.presto.raptor.metadata.DatabaseShardManager;
+import com.facebook.presto.raptor.metadata.ShardInfo;
+import com.facebook.presto.raptor.metadata.ShardManager;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.Page;
+import com.facebook.presto.spi.TupleDomain;
+import com.facebook.presto.spi.type.Type;
+import com.facebook.presto.testing.MaterializedResult;
+import com.facebook.presto.testing.MaterializedRow;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.raptor.storage.TestOrcStorageManager.createOrcStorageManager;
+import static com.facebook.presto.spi.block.SortOrder.ASC_NULLS_FIRST;
+import static com.facebook.presto.spi.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.type.DateType.DATE;
+import static com.facebook.presto.spi.type.TimeZoneKey.UTC_KEY;
+import static com.facebook.presto.spi.type.VarcharType.VARCHAR;
+import static com.facebook.presto.testing.MaterializedResult.materializeSourceDataStream;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.common.io.Files.createTempDir;
+import static io.airlift.testing.FileUtils.deleteRecursively;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.Locale.ENGLISH;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test(singleThreaded = true)
+public class TestShardCompactor
+{
+    private static final ConnectorSession SESSION = new ConnectorSession("user", UTC_KEY, ENGLISH, System.currentTimeMillis(), null);
+    private static final List<ColumnInfo> COLUMNS = ImmutableList.of(new ColumnInfo(1, BIGINT), new ColumnInfo(2, VARCHAR));
+    private static final List<Long> COLUMN_IDS = ImmutableList.of(1L, 2L);
+    private static final List<Type> COLUMN_TYPES = ImmutableList.of(BIGINT, VARCHAR);
+
+    private Handle dummyHandle;
+    private File temporary;
+    private OrcStorageManager storageManager;
+    private ShardCompactor compactor;
+
+    @BeforeMethod
+    public void setup()
+            throws Exception
+    {
+        temporary = createTempDir();
+        StorageService storageService = new FileStorageService(new File(temporary, "data"), Optional.of(new File(temporary, "backup")));
+        storageService.start();
+
+        IDBI dbi = new DBI("jdbc:h2:mem:test" + System.nanoTime());
+        dummyHandle = dbi.open();
+        ShardManager shardManager = new DatabaseShardManager(dbi);
+        ShardRecoveryManager recoveryManager = new ShardRecoveryManager(storageService, new InMemoryNodeManager(), shardManager, new Duration(5, MINUTES), 10);
+
+        storageManager = createOrcStorageManager(storageService, recoveryManager);
+        compactor = new ShardCompactor(storageManager, new PagesIndexPageSorter(), new DataSize(100, MEGABYTE));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown()
+    {
+        if (dummyHandle != null) {
+            dummyHandle.close();
+        }
+        deleteRecursively(temporary);
+    }
+
+    @Test
+    public void testCompactUnsorted()
+    {
+        Set<UUID> shards = ImmutableSet.of(
+                writeShard(3, "c", 1, "a", 2, "b"),
+                writeShard(6, "f", 4, "d"),
+                writeShard(5, "e"));
+
+        List<ShardInfo> compacted = compactor.compact(shards, COLUMNS, ImmutableList.of(), ImmutableList.of(), Optional.empty(), ImmutableList.of(), OptionalInt.empty());
+
+        ShardInfo shard = getOnlyElement(compacted);
+        assertEquals(shard.getRowCount(), 6);
+        assertEquals(ImmutableMultiset.copyOf(readShard(shard.getShardUuid())), ImmutableMultiset.of(1L, 2L, 3L, 4L, 5L, 6L));
+    }
+
+    @Test
+    public void testCompactSorted()
+    {
+        Set<UUID> shards = ImmutableSet.of(
+                writeShard(3, "c", 1, "a", 2, "b"),
+                writeShard(6, "f", 4, "d"),
+                writeShard(5, "e"));
+
+        List<ShardInfo> compacted = compactor.compact(shards, COLUMNS, ImmutableList.of(1L), ImmutableList.of(ASC_NULLS_FIRST), Optional.empty(), ImmutableList.of(), OptionalInt.empty());
+
+        ShardInfo shard = getOnlyElement(compacted);
+        assertEquals(shard.getRowCount(), 6);
+        assertEquals(readShard(shard.getShardUuid()), ImmutableList.of(1L, 2L, 3L, 4L, 5L, 6L));
+    }
+
+    @Test
+    public void testCompactIntoMultipleShards()
+    {
+        // the storage manager limits shards to 100 rows
+        Set<UUID> shards = ImmutableSet.of(
+                writeShard(sequence(0, 80)),
+                writeShard(sequence(80, 160)));
+
+        List<ShardInfo> compacted = compactor.compact(shards, COLUMNS, ImmutableList.of(), ImmutableList.of(), Optional.empty(), ImmutableList.of(), OptionalInt.empty());
+
+        assertEquals(compacted.stream().mapToLong(ShardInfo::getRowCount).sum(), 160);
+        assertTrue(compacted.size() >= 2);
+        assertEquals(compacted.stream().map(ShardInfo::getShardUuid).collect(toSet()).size(), compacted.size());
+    }
+
+    @Test
+    public void testCompactTemporal()
+    {
+        List<ColumnInfo> columns = ImmutableList.of(new ColumnInfo(1, DATE), new ColumnInfo(2, BIGINT));
+        List<Long> columnIds = ImmutableList.of(1L, 2L);
+        List<Type> columnTypes = ImmutableList.of(DATE, BIGINT);
+
+        Set<UUID> shards = ImmutableSet.of(
+                writeShard(columnIds, columnTypes, rowPagesBuilder(columnTypes).row(20L, 3L).row(21L, 1L).row(20L, 2L).build()),
+                writeShard(columnIds, columnTypes, rowPagesBuilder(columnTypes).row(21L, 4L).row(null, 5L).build()));
+
+        List<ShardInfo> compacted = compactor.compact(shards, columns, ImmutableList.of(2L), ImmutableList.of(ASC_NULLS_FIRST), Optional.of(1L), ImmutableList.of(), OptionalInt.empty());
+
+        // one shard per day
+        assertEquals(compacted.size(), 3);
+        assertEquals(compacted.stream().mapToLong(ShardInfo::getRowCount).sum(), 5);
+        for (ShardInfo shard : compacted) {
+            List<MaterializedRow> rows = readRows(shard.getShardUuid(), columnIds, columnTypes);
+            assertEquals(rows.stream().map(row -> row.getField(0)).distinct().count(), 1);
+            List<Long> values = rows.stream().map(row -> (Long) row.getField(1)).collect(toList());
+            assertEquals(values, values.stream().sorted().collect(toList()));
+        }
+    }
+
+    private UUID writeShard(Object... values)
+    {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < values.length; i += 2) {
+            rows.add(new Object[] {values[i], values[i + 1]});
+        }
+        List<Page> pages = rowPagesBuilder(COLUMN_TYPES)
+                .rows(rows.toArray(new Object[rows.size()][]))
+                .build();
+
+        return writeShard(COLUMN_IDS, COLUMN_TYPES, pages);
+    }
+
+    private UUID writeShard(List<Long> columnIds, List<Type> columnTypes, List<Page> pages)
+    {
+        StoragePageSink sink = storageManager.createStoragePageSink(columnIds, columnTypes);
+        sink.appendPages(pages);
+        return getOnlyElement(sink.commit()).getShardUuid();
+    }
+
+    private List<Long> readShard(UUID shardUuid)
+    {
+        ImmutableList.Builder<Long> values = ImmutableList.builder();
+        for (MaterializedRow row : readRows(shardUuid, COLUMN_IDS, COLUMN_TYPES)) {
+            values.add((Long) row.getField(0));
+        }
+        return values.build();
+    }
+
+    private List<MaterializedRow> readRows(UUID shardUuid, List<Long> columnIds, List<Type> columnTypes)
+    {
+        try (ConnectorPageSource pageSource = storageManager.getPageSource(shardUuid, columnIds, columnTypes, TupleDomain.all())) {
+            MaterializedResult result = materializeSourceDataStream(SESSION, pageSource, columnTypes);
+            return result.getMaterializedRows();
+        }
+        catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Object[] sequence(int start, int end)
+    {
+        List<Object> values = new ArrayList<>();
+        for (long i = start; i < end; i++) {
+            values.add(i);
+            values.add(String.valueOf(i));
+        }
+        return values.toArray();
+    }
+}
@@ -29,6 +29,7 @@ import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
 import static io.airlift.testing.ValidationAssertions.assertFailsValidation;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.TimeUnit.HOURS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
@@ -41,12 +42,20 @@ public class TestStorageManagerConfig
                 .setDataDirectory(null)
                 .setBackupDirectory(null)
                 .setOrcMaxMergeDistance(new DataSize(1, MEGABYTE))
+                .setOrcMetadataCacheSize(new DataSize(32, MEGABYTE))
+                .setOrcMemoryMappedReads(false)
                 .setShardRecoveryTimeout(new Duration(30, SECONDS))
                 .setMissingShardDiscoveryInterval(new Duration(5, MINUTES))
                 .setRecoveryThreads(10)
                 .setMaxShardRows(1_000_000)
                 .setMaxShardSize(new DataSize(256, MEGABYTE))
-                .setMaxBufferSize(new DataSize(256, MEGABYTE)));
+                .setMaxBufferSize(new DataSize(256, MEGABYTE))
+                .setCompactionEnabled(true)
+                .setCompactionInterval(new Duration(1, HOURS))
+                .setCompactionThreads(2)
+                .setMaxCompactionRate(new DataSize(64, MEGABYTE))
+                .setShardCleanerInterval(new Duration(5, MINUTES))
+                .setDeletedShardRetention(new Duration(1, HOURS)));
 
     }
 
@@ -57,24 +66,40 @@ public class TestStorageManagerConfig
                 .put("storage.data-directory", "/data")
                 .put("storage.backup-directory", "/backup")
                 .put("storage.orc.max-merge-distance", "16kB")
+                .put("storage.orc.metadata-cache-size", "5MB")
+                .put("storage.orc.memory-mapped-reads", "true")
                 .put("storage.shard-recovery-timeout", "1m")
                 .put("storage.missing-shard-discovery-interval", "4m")
                 .put("storage.max-recovery-threads", "12")
                 .put("storage.max-shard-rows", "10000")
                 .put("storage.max-shard-size", "10MB")
                 .put("storage.max-buffer-size", "512MB")
+                .put("storage.compaction-enabled", "false")
+                .put("storage.compaction-interval", "4h")
+                .put("storage.max-compaction-threads", "3")
+                .put("storage.max-compaction-rate", "10MB")
+                .put("storage.shard-cleaner-interval", "10m")
+                .put("storage.deleted-shard-retention", "2h")
                 .build();
 
         StorageManagerConfig expected = new StorageManagerConfig()
                 .setDataDirectory(new File("/data"))
                 .setBackupDirectory(new File("/backup"))
                 .setOrcMaxMergeDistance(new DataSize(16, KILOBYTE))
+                .setOrcMetadataCacheSize(new DataSize(5, MEGABYTE))
+                .setOrcMemoryMappedReads(true)
                 .setShardRecoveryTimeout(new Duration(1, MINUTES))
                 .setMissingShardDiscoveryInterval(new Duration(4, MINUTES))
                 .setRecoveryThreads(12)
                 .setMaxShardRows(10_000)
                 .setMaxShardSize(new DataSize(10, MEGABYTE))
-                .setMaxBufferSize(new DataSize(512, MEGABYTE));
+                .setMaxBufferSize(new DataSize(512, MEGABYTE))
+                .setCompactionEnabled(false)
+                .setCompactionInterval(new Duration(4, HOURS))
+                .setCompactionThreads(3)
+                .setMaxCompactionRate(new DataSize(10, MEGABYTE))
+                .setShardCleanerInterval(new Duration(10, MINUTES))
+                .setDeletedShardRetention(new Duration(2, HOURS));
 
         assertFullMapping(properties, expected);
     }
@@ -16,6 +16,7 @@ package com.facebook.presto.spi;
 import io.airlift.slice.Slice;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +51,28 @@ public interface ConnectorMetadata
      */
     ConnectorColumnHandle getSampleWeightColumnHandle(ConnectorTableHandle tableHandle);
 
+    /**
+     * Returns the bucketing of the table, or null if the table is not bucketed.
+     * The splits of a bucketed table must report their bucket with {@link ConnectorSplit#getBucket()}.
+     *
+     * @throws RuntimeException if the table handle is no longer valid
+     */
+    default ConnectorTableBucketing getTableBucketing(ConnectorTableHandle tableHandle)
+    {
+        return null;
+    }
+
+    /**
+     * Returns the columns by which the rows of every split of the table are sorted,
+     * most significant first, or an empty list if the splits are not sorted.
+     *
+     * @throws RuntimeException if the table handle is no longer valid
+     */
+    default List<ConnectorColumnHandle> getSortedColumns(ConnectorTableHandle tableHandle)
+    {
+        return Collections.emptyList();
+    }
+
     /**
      * Returns true if this catalog supports creation of sampled tables
      */
@@ -14,6 +14,7 @@
 package com.facebook.presto.spi;
 
 import java.util.List;
+import java.util.OptionalInt;
 
 public interface ConnectorSplit
 {
@@ -22,4 +23,14 @@ public interface ConnectorSplit
     List<HostAddress> getAddresses();
 
     Object getInfo();
+
+    /**
+     * Returns the bucket of the table this split reads, or empty if the table is not bucketed.
+     *
+     * @see ConnectorMetadata#getTableBucketing(ConnectorTableHandle)
+     */
+    default OptionalInt getBucket()
+    {
+        return OptionalInt.empty();
+    }
 }
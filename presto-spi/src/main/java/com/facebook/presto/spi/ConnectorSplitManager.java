@@ -30,4 +30,15 @@ public interface ConnectorSplitManager
      * Gets the Splits for the specified Partitions in the indicated table.
      */
     ConnectorSplitSource getPartitionSplits(ConnectorTableHandle table, List<ConnectorPartition> partitions);
+
+    /**
+     * Gets the identifiers of the nodes that must process each bucket of a bucketed table,
+     * indexed by bucket number, or null if the buckets can be processed on any node.
+     *
+     * @see ConnectorMetadata#getTableBucketing(ConnectorTableHandle)
+     */
+    default List<String> getBucketNodes(ConnectorTableHandle table)
+    {
+        return null;
+    }
 }
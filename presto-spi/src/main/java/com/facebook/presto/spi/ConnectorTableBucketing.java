@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Describes how the rows of a table are distributed into buckets.
+ * <p>
+ * All rows with the same values in the bucket columns are in the same bucket.
+ * Tables of the same connector with the same bucket function and bucket count
+ * must assign equal values to the same bucket, so the buckets with the same
+ * number of such tables can be joined without redistributing the rows.
+ */
+public final class ConnectorTableBucketing
+{
+    private final List<ConnectorColumnHandle> bucketColumns;
+    private final int bucketCount;
+    private final String bucketFunction;
+
+    public ConnectorTableBucketing(List<ConnectorColumnHandle> bucketColumns, int bucketCount, String bucketFunction)
+    {
+        requireNonNull(bucketColumns, "bucketColumns is null");
+        requireNonNull(bucketFunction, "bucketFunction is null");
+        if (bucketColumns.isEmpty()) {
+            throw new IllegalArgumentException("bucketColumns is empty");
+        }
+        if (bucketCount <= 0) {
+            throw new IllegalArgumentException("bucketCount must be greater than zero");
+        }
+
+        this.bucketColumns = Collections.unmodifiableList(new ArrayList<>(bucketColumns));
+        this.bucketCount = bucketCount;
+        this.bucketFunction = bucketFunction;
+    }
+
+    public List<ConnectorColumnHandle> getBucketColumns()
+    {
+        return bucketColumns;
+    }
+
+    public int getBucketCount()
+    {
+        return bucketCount;
+    }
+
+    /**
+     * Identifies how the values of the bucket columns are mapped to buckets.
+     */
+    public String getBucketFunction()
+    {
+        return bucketFunction;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(bucketColumns, bucketCount, bucketFunction);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        ConnectorTableBucketing other = (ConnectorTableBucketing) obj;
+        return Objects.equals(this.bucketColumns, other.bucketColumns) &&
+                this.bucketCount == other.bucketCount &&
+                Objects.equals(this.bucketFunction, other.bucketFunction);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("ConnectorTableBucketing{");
+        sb.append("bucketColumns=").append(bucketColumns);
+        sb.append(", bucketCount=").append(bucketCount);
+        sb.append(", bucketFunction=").append(bucketFunction);
+        sb.append('}');
+        return sb.toString();
+    }
+}
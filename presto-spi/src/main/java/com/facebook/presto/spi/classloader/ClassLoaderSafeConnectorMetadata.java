@@ -19,6 +19,7 @@ import com.facebook.presto.spi.ConnectorInsertTableHandle;
 import com.facebook.presto.spi.ConnectorMetadata;
 import com.facebook.presto.spi.ConnectorOutputTableHandle;
 import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.ConnectorTableBucketing;
 import com.facebook.presto.spi.ConnectorTableHandle;
 import com.facebook.presto.spi.ConnectorTableMetadata;
 import com.facebook.presto.spi.SchemaTableName;
@@ -83,6 +84,22 @@ public class ClassLoaderSafeConnectorMetadata
         }
     }
 
+    @Override
+    public ConnectorTableBucketing getTableBucketing(ConnectorTableHandle tableHandle)
+    {
+        try (ThreadContextClassLoader ignored = new ThreadContextClassLoader(classLoader)) {
+            return delegate.getTableBucketing(tableHandle);
+        }
+    }
+
+    @Override
+    public List<ConnectorColumnHandle> getSortedColumns(ConnectorTableHandle tableHandle)
+    {
+        try (ThreadContextClassLoader ignored = new ThreadContextClassLoader(classLoader)) {
+            return delegate.getSortedColumns(tableHandle);
+        }
+    }
+
     @Override
     public boolean canCreateSampledTables(ConnectorSession session)
     {
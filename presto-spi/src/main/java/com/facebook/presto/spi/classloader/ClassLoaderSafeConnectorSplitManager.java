@@ -53,6 +53,14 @@ public final class ClassLoaderSafeConnectorSplitManager
         }
     }
 
+    @Override
+    public List<String> getBucketNodes(ConnectorTableHandle table)
+    {
+        try (ThreadContextClassLoader ignored = new ThreadContextClassLoader(classLoader)) {
+            return delegate.getBucketNodes(table);
+        }
+    }
+
     @Override
     public String toString()
     {